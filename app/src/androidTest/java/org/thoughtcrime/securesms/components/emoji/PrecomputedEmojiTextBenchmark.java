@@ -0,0 +1,133 @@
+package org.thoughtcrime.securesms.components.emoji;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Binds long, emoji dense message bodies to an {@link EmojiTextView} on the main thread, the way a
+ * conversation row does, and reports how long each bind takes to set, measure and lay out the text,
+ * first with {@link EmojiTextView#setText(CharSequence)} and then with bodies made ahead of time by
+ * {@link PrecomputedEmojiText}. The difference is the main thread time saved per row in a frame.
+ */
+@Ignore("Benchmarks, run manually")
+public final class PrecomputedEmojiTextBenchmark {
+
+  private static final String TAG = Log.tag(PrecomputedEmojiTextBenchmark.class);
+
+  private static final int   BODIES     = 100;
+  private static final int   WIDTH_DP   = 280;
+  private static final int   WARMUP     = 3;
+  private static final int   ITERATIONS = 5;
+  private static final int[] EMOJI      = { 0x1F600, 0x1F602, 0x1F60D, 0x1F44D, 0x2764, 0x1F389, 0x1F525, 0x1F914 };
+
+  @Test
+  public void bind_emoji_bodies() {
+    Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    Context         context         = instrumentation.getTargetContext();
+    List<String>    bodies          = createBodies();
+    EmojiTextView[] view            = new EmojiTextView[1];
+
+    instrumentation.runOnMainSync(() -> view[0] = new EmojiTextView(context));
+
+    PrecomputedTextCompat.Params params      = TextViewCompat.getTextMetricsParams(view[0]);
+    List<PrecomputedEmojiText>   precomputed = new ArrayList<>(BODIES);
+
+    long precomputeStart = System.nanoTime();
+    for (String body : bodies) {
+      precomputed.add(PrecomputedEmojiText.create(context, body, params, false));
+    }
+    long precomputeNanos = System.nanoTime() - precomputeStart;
+
+    int    width            = (int) (WIDTH_DP * context.getResources().getDisplayMetrics().density);
+    long[] plainNanos       = new long[1];
+    long[] precomputedNanos = new long[1];
+
+    instrumentation.runOnMainSync(() -> {
+      for (int i = 0; i < WARMUP; i++) {
+        bindAll(view[0], bodies, width);
+        bindAllPrecomputed(view[0], precomputed, width);
+      }
+
+      for (int i = 0; i < ITERATIONS; i++) {
+        plainNanos[0]       += bindAll(view[0], bodies, width);
+        precomputedNanos[0] += bindAllPrecomputed(view[0], precomputed, width);
+      }
+    });
+
+    long binds = (long) BODIES * ITERATIONS;
+
+    Log.i(TAG, String.format(Locale.US, "%d bodies x %d iterations: setText %.1f us per bind, precomputed %.1f us per bind on the main thread, plus %.1f us per body in the background",
+                                           BODIES, ITERATIONS,
+                                           TimeUnit.NANOSECONDS.toMicros(plainNanos[0]) / (float) binds,
+                                           TimeUnit.NANOSECONDS.toMicros(precomputedNanos[0]) / (float) binds,
+                                           TimeUnit.NANOSECONDS.toMicros(precomputeNanos) / (float) BODIES));
+  }
+
+  private static long bindAll(@NonNull EmojiTextView view, @NonNull List<String> bodies, int width) {
+    long start = System.nanoTime();
+
+    for (String body : bodies) {
+      view.setText(body);
+      measureAndLayout(view, width);
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  private static long bindAllPrecomputed(@NonNull EmojiTextView view, @NonNull List<PrecomputedEmojiText> bodies, int width) {
+    long start = System.nanoTime();
+
+    for (PrecomputedEmojiText body : bodies) {
+      assertTrue(view.setPrecomputedText(body));
+      measureAndLayout(view, width);
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  private static void measureAndLayout(@NonNull View view, int width) {
+    view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.AT_MOST),
+                 View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+  }
+
+  /**
+   * Bodies of around 600 characters, with an emoji every few words.
+   */
+  private static @NonNull List<String> createBodies() {
+    List<String> bodies = new ArrayList<>(BODIES);
+
+    for (int i = 0; i < BODIES; i++) {
+      StringBuilder body = new StringBuilder();
+
+      for (int word = 0; body.length() < 600; word++) {
+        if (word % 4 == 3) {
+          body.appendCodePoint(EMOJI[(i + word) % EMOJI.length]).append(' ');
+        } else {
+          body.append("message").append(i).append('_').append(word).append(' ');
+        }
+      }
+
+      bodies.add(body.toString());
+    }
+
+    return bodies;
+  }
+}
@@ -0,0 +1,68 @@
+package org.thoughtcrime.securesms.conversation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.database.MmsSmsDatabase;
+import org.thoughtcrime.securesms.database.model.MessageRecord;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.thoughtcrime.securesms.conversation.ConversationPagingTest.PAGE_SIZE;
+import static org.thoughtcrime.securesms.conversation.ConversationPagingTest.keyOf;
+
+/**
+ * Manual benchmarks for paging through a conversation, using the conversation that
+ * {@link ConversationPagingTest} sets up.
+ */
+@Ignore("Benchmarks, run manually")
+public final class ConversationPagingBenchmark {
+
+  private static final String TAG = Log.tag(ConversationPagingBenchmark.class);
+
+  private final ConversationPagingTest conversation = new ConversationPagingTest();
+
+  @Before
+  public void setUp() {
+    conversation.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    conversation.tearDown();
+  }
+
+  /**
+   * Reads a page at offsets of 0, 10k and 200k into a 300k message conversation, with an offset, with
+   * a cold seek (as when jumping to a position) and with a seek from the end of the previous page (as
+   * when scrolling).
+   */
+  @Test
+  public void read_pages_of_300k_messages() {
+    conversation.insertMessages(new Random(300_000), 300_000, 30_000);
+
+    for (int start : new int[] { 0, 10_000, 200_000 }) {
+      long offsetStart = System.nanoTime();
+      conversation.readOffsetPage(start);
+      long offsetMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - offsetStart);
+
+      long coldStart = System.nanoTime();
+      conversation.readSeekPage(null, start);
+      long coldMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - coldStart);
+
+      List<MessageRecord>    previous = start > 0 ? conversation.readOffsetPage(start - PAGE_SIZE) : null;
+      MmsSmsDatabase.PageKey after    = previous != null ? keyOf(previous, previous.size() - 1) : null;
+
+      long warmStart = System.nanoTime();
+      conversation.readSeekPage(after, 0);
+      long warmMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - warmStart);
+
+      Log.i(TAG, String.format(Locale.US, "Offset %d: offset %d ms, cold seek %d ms, seek from previous page %d ms", start, offsetMillis, coldMillis, warmMillis));
+    }
+  }
+}
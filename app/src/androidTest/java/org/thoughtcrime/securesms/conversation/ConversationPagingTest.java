@@ -0,0 +1,260 @@
+package org.thoughtcrime.securesms.conversation;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.mms.pdu_alt.PduHeaders;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.paging.PagedDataSource;
+import org.thoughtcrime.securesms.conversation.ConversationData.MessageRequestData;
+import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.database.MmsDatabase;
+import org.thoughtcrime.securesms.database.MmsSmsColumns;
+import org.thoughtcrime.securesms.database.MmsSmsDatabase;
+import org.thoughtcrime.securesms.database.SQLiteDatabase;
+import org.thoughtcrime.securesms.database.SmsDatabase;
+import org.thoughtcrime.securesms.database.model.MessageRecord;
+import org.thoughtcrime.securesms.recipients.Recipient;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pages through a conversation in the app database, where many messages share a received date,
+ * with {@link ConversationDataSource} and {@link MmsSmsDatabase#getConversation(long, MmsSmsDatabase.PageKey, long, long)},
+ * and checks that seeking returns exactly the rows that paging with an offset does.
+ */
+public final class ConversationPagingTest {
+
+  static final int PAGE_SIZE = 100;
+
+  private static final String E164 = "+15555550139";
+
+  private static final PagedDataSource.CancellationSignal NOT_CANCELED = () -> false;
+
+  private Context        context;
+  private MmsSmsDatabase mmsSmsDatabase;
+  private RecipientId    recipientId;
+  private long           threadId;
+
+  @Before
+  public void setUp() {
+    context        = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    mmsSmsDatabase = DatabaseFactory.getMmsSmsDatabase(context);
+    recipientId    = DatabaseFactory.getRecipientDatabase(context).getOrInsertFromE164(E164);
+
+    Long existing = DatabaseFactory.getThreadDatabase(context).getThreadIdFor(recipientId);
+
+    if (existing != null) {
+      DatabaseFactory.getThreadDatabase(context).deleteConversation(existing);
+    }
+
+    threadId = DatabaseFactory.getThreadDatabase(context).getThreadIdFor(Recipient.resolved(recipientId));
+  }
+
+  @After
+  public void tearDown() {
+    DatabaseFactory.getThreadDatabase(context).deleteConversation(threadId);
+  }
+
+  @Test
+  public void dataSource_scrolling_matches_offset_paging_with_duplicate_dates() {
+    int count = insertMessagesWithDuplicateDates();
+
+    ConversationDataSource dataSource = new ConversationDataSource(context, threadId, new MessageRequestData(true));
+
+    assertEquals(count, dataSource.size());
+
+    for (int start = 0; start < count; start += PAGE_SIZE) {
+      assertEquals("Page at " + start, keys(readOffsetPage(start)), keys(load(dataSource, start)));
+    }
+  }
+
+  @Test
+  public void dataSource_jumping_then_scrolling_matches_offset_paging_with_duplicate_dates() {
+    int count = insertMessagesWithDuplicateDates();
+
+    ConversationDataSource dataSource = new ConversationDataSource(context, threadId, new MessageRequestData(true));
+
+    assertEquals(count, dataSource.size());
+
+    for (int start : new int[] { 1_000, 1_100, 1_200, 300, 400, 1_150, 1_250, 0, 100, count - 50 }) {
+      assertEquals("Page at " + start, keys(readOffsetPage(start)), keys(load(dataSource, start)));
+    }
+  }
+
+  @Test
+  public void getConversation_seeking_from_every_row_matches_offset_paging_with_duplicate_dates() {
+    int count = insertMessagesWithDuplicateDates();
+
+    List<MessageRecord> all = readOffsetPage(0, count);
+
+    assertEquals(count, all.size());
+
+    for (int start = 0; start < count; start += 37) {
+      List<String> expected = keys(all.subList(start, Math.min(count, start + PAGE_SIZE)));
+
+      assertEquals("Cold seek to " + start, expected, keys(readSeekPage(null, start)));
+
+      if (start > 0) {
+        MmsSmsDatabase.PageKey after = keyOf(all, start - 1);
+
+        assertEquals("Seek from row " + (start - 1), expected, keys(readSeekPage(after, 0)));
+      }
+    }
+  }
+
+  @Test
+  public void getMessagePositionInConversation_unknown_message() {
+    insertMessages(new Random(1), 10, 3);
+
+    assertEquals(-1, mmsSmsDatabase.getMessagePositionInConversation(threadId, 1));
+  }
+
+  @Test
+  public void getMessagePositionInConversation_known_message() {
+    insertMessages(new Random(1), 300, 3);
+
+    List<MessageRecord> all = readOffsetPage(0, 300);
+
+    for (int i = 0; i < all.size(); i += 17) {
+      long dateReceived = all.get(i).getDateReceived();
+      int  position     = mmsSmsDatabase.getMessagePositionInConversation(threadId, dateReceived);
+
+      assertEquals(dateReceived, all.get(position).getDateReceived());
+      assertTrue(position == 0 || all.get(position - 1).getDateReceived() != dateReceived);
+    }
+  }
+
+  /**
+   * 2000 messages a few milliseconds apart, so most received dates are shared by a couple of
+   * messages, plus a run of more than a page of messages received at the same time.
+   */
+  private int insertMessagesWithDuplicateDates() {
+    Random random = new Random(2_000);
+    long   date   = insertMessages(random, 1_000, 3);
+
+    insertMessages(random, date + 1, 250, 1);
+    insertMessages(random, date + 2, 750, 3);
+
+    return 2_000;
+  }
+
+  long insertMessages(@NonNull Random random, int count, int maxGap) {
+    return insertMessages(random, 1_500_000_000_000L, count, maxGap);
+  }
+
+  /**
+   * Roughly 70% sms and 30% mms, each {@code random.nextInt(maxGap)} milliseconds after the last.
+   *
+   * @return The received date of the last message.
+   */
+  private long insertMessages(@NonNull Random random, long date, int count, int maxGap) {
+    SQLiteDatabase db   = DatabaseFactory.getInstance(context).getRawDatabase();
+    long           type = MmsSmsColumns.Types.getOutgoingEncryptedMessageType();
+
+    db.beginTransaction();
+    try {
+      for (int i = 0; i < count; i++) {
+        date += random.nextInt(maxGap);
+
+        ContentValues values = new ContentValues();
+        values.put(MmsSmsColumns.THREAD_ID, threadId);
+        values.put(MmsSmsColumns.RECIPIENT_ID, recipientId.toLong());
+        values.put(MmsSmsColumns.BODY, "Message " + i);
+
+        // sms keeps its received date in "date", mms its sent date
+        if (random.nextInt(10) < 7) {
+          values.put("date", date);
+          values.put("date_sent", date - 5);
+          values.put(SmsDatabase.TYPE, type);
+          db.insert(SmsDatabase.TABLE_NAME, null, values);
+        } else {
+          values.put("date_received", date);
+          values.put("date", date - 5);
+          values.put(MmsDatabase.MESSAGE_BOX, type);
+          values.put(MmsDatabase.MESSAGE_TYPE, PduHeaders.MESSAGE_TYPE_SEND_REQ);
+          db.insert(MmsDatabase.TABLE_NAME, null, values);
+        }
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+
+    return date;
+  }
+
+  private @NonNull List<MessageRecord> load(@NonNull ConversationDataSource dataSource, int start) {
+    List<MessageRecord> records = new ArrayList<>(PAGE_SIZE);
+
+    for (ConversationMessage message : dataSource.load(start, PAGE_SIZE, NOT_CANCELED)) {
+      records.add(message.getMessageRecord());
+    }
+
+    return records;
+  }
+
+  @NonNull List<MessageRecord> readOffsetPage(int start) {
+    return readOffsetPage(start, PAGE_SIZE);
+  }
+
+  private @NonNull List<MessageRecord> readOffsetPage(int start, int length) {
+    try (MmsSmsDatabase.Reader reader = MmsSmsDatabase.readerFor(mmsSmsDatabase.getConversation(threadId, start, length))) {
+      return readAll(reader);
+    }
+  }
+
+  @NonNull List<MessageRecord> readSeekPage(@Nullable MmsSmsDatabase.PageKey after, long skip) {
+    try (MmsSmsDatabase.Reader reader = MmsSmsDatabase.readerFor(mmsSmsDatabase.getConversation(threadId, after, skip, PAGE_SIZE))) {
+      return readAll(reader);
+    }
+  }
+
+  private static @NonNull List<MessageRecord> readAll(@NonNull MmsSmsDatabase.Reader reader) {
+    List<MessageRecord> records = new ArrayList<>();
+    MessageRecord       record;
+
+    while ((record = reader.getNext()) != null) {
+      records.add(record);
+    }
+
+    return records;
+  }
+
+  /**
+   * The key {@link ConversationDataSource} would anchor on for the row at the position.
+   */
+  static @NonNull MmsSmsDatabase.PageKey keyOf(@NonNull List<MessageRecord> records, int position) {
+    long dateReceived = records.get(position).getDateReceived();
+    int  index        = 0;
+
+    for (int i = position - 1; i >= 0 && records.get(i).getDateReceived() == dateReceived; i--) {
+      index++;
+    }
+
+    return new MmsSmsDatabase.PageKey(dateReceived, index);
+  }
+
+  private static @NonNull List<String> keys(@NonNull List<MessageRecord> records) {
+    List<String> keys = new ArrayList<>(records.size());
+
+    for (MessageRecord record : records) {
+      keys.add((record.isMms() ? "mms " : "sms ") + record.getId());
+    }
+
+    return keys;
+  }
+}
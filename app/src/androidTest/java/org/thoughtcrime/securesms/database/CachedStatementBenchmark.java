@@ -0,0 +1,60 @@
+package org.thoughtcrime.securesms.database;
+
+import android.content.ContentValues;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.thoughtcrime.securesms.database.CachedStatementTest.insertWithCachedStatements;
+import static org.thoughtcrime.securesms.database.CachedStatementTest.insertWithContentValues;
+
+/**
+ * Manual benchmarks for {@link CachedStatement}, using the database that {@link CachedStatementTest}
+ * sets up.
+ */
+@Ignore("Benchmarks, run manually")
+public final class CachedStatementBenchmark {
+
+  private static final String TAG = Log.tag(CachedStatementBenchmark.class);
+
+  private final CachedStatementTest database = new CachedStatementTest();
+
+  @Before
+  public void setUp() {
+    database.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    database.tearDown();
+  }
+
+  /**
+   * Inserts 100k messages, each with an attachment and three group receipts, in batched
+   * transactions as a message drain would, once through {@link ContentValues} and once with cached
+   * statements.
+   */
+  @Test
+  public void insert_100k_messages() {
+    int messages = 100_000;
+
+    long contentValuesStart = System.nanoTime();
+    insertWithContentValues(new SQLiteDatabase(database.connection), 0, messages);
+    long contentValuesMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - contentValuesStart);
+
+    long cachedStart = System.nanoTime();
+    insertWithCachedStatements(new SQLiteDatabase(database.connection, null, database.statements), messages, messages);
+    long cachedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cachedStart);
+
+    assertEquals(2 * messages, database.count("mms"));
+
+    Log.i(TAG, String.format(Locale.US, "ContentValues: %d ms, cached statements: %d ms", contentValuesMillis, cachedMillis));
+  }
+}
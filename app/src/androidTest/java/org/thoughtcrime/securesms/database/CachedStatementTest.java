@@ -0,0 +1,214 @@
+package org.thoughtcrime.securesms.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import net.sqlcipher.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public final class CachedStatementTest {
+
+  private static final String PASSWORD   = "cached-statement-test";
+  private static final int    BATCH_SIZE = 500;
+  private static final int    RECEIPTS   = 3;
+
+  private static final String CREATE_MESSAGES    = "CREATE TABLE mms (_id INTEGER PRIMARY KEY, thread_id INTEGER, body TEXT, date_sent INTEGER, date_received INTEGER, type INTEGER, read INTEGER DEFAULT 0)";
+  private static final String CREATE_ATTACHMENTS = "CREATE TABLE part (_id INTEGER PRIMARY KEY, mid INTEGER, ct TEXT, data_size INTEGER, digest BLOB, unique_id INTEGER)";
+  private static final String CREATE_RECEIPTS    = "CREATE TABLE group_receipts (_id INTEGER PRIMARY KEY, mms_id INTEGER, address INTEGER, status INTEGER, timestamp INTEGER)";
+
+  private static final CachedStatement INSERT_MESSAGE    = CachedStatement.insert("mms", "thread_id", "body", "date_sent", "date_received", "type");
+  private static final CachedStatement INSERT_ATTACHMENT = CachedStatement.insert("part", "mid", "ct", "data_size", "digest", "unique_id");
+  private static final CachedStatement INSERT_RECEIPT    = CachedStatement.insert("group_receipts", "mms_id", "address", "status", "timestamp");
+  private static final CachedStatement UPDATE_RECEIPT    = CachedStatement.update("group_receipts", "mms_id = ? AND address = ? AND status < ?", "status", "timestamp");
+
+  net.sqlcipher.database.SQLiteDatabase connection;
+  CompiledStatementCache                statements;
+
+  private File file;
+
+  @Before
+  public void setUp() {
+    Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    file = context.getDatabasePath("cached-statement-test.db");
+    file.getParentFile().mkdirs();
+    file.delete();
+
+    net.sqlcipher.database.SQLiteDatabase.loadLibs(context);
+
+    connection = net.sqlcipher.database.SQLiteDatabase.openOrCreateDatabase(file, PASSWORD, null, new SqlCipherDatabaseHook());
+    statements = new CompiledStatementCache();
+
+    connection.execSQL(CREATE_MESSAGES);
+    connection.execSQL(CREATE_ATTACHMENTS);
+    connection.execSQL(CREATE_RECEIPTS);
+  }
+
+  @After
+  public void tearDown() {
+    statements.clear();
+    connection.close();
+    file.delete();
+  }
+
+  @Test
+  public void insert_matches_content_values() {
+    SQLiteDatabase db = new SQLiteDatabase(connection, null, statements);
+
+    insertWithContentValues(db, 0, 10);
+    insertWithCachedStatements(db, 0, 10);
+
+    assertEquals(20, count("mms"));
+    assertEquals(20, count("part"));
+    assertEquals(20 * RECEIPTS, count("group_receipts"));
+
+    for (int i = 1; i <= 10; i++) {
+      assertEquals(withoutId(row("mms", i)), withoutId(row("mms", i + 10)));
+    }
+  }
+
+  @Test
+  public void insert_outside_of_transaction_and_binds_null() {
+    SQLiteDatabase db = new SQLiteDatabase(connection, null, statements);
+
+    long id = db.insert(INSERT_MESSAGE, args -> args.add(1)
+                                                    .add((String) null)
+                                                    .add(2)
+                                                    .add(3)
+                                                    .add(4));
+
+    assertNotEquals(-1, id);
+    assertEquals(id + "|1|null|2|3|4|0", row("mms", id));
+  }
+
+  @Test
+  public void update_binds_where_arguments_after_columns() {
+    SQLiteDatabase db = new SQLiteDatabase(connection, null, statements);
+
+    insertWithCachedStatements(db, 0, 1);
+
+    assertEquals(1, db.update(UPDATE_RECEIPT, args -> args.add(2).add(500).add(1).add(100).add(2)));
+    assertEquals(0, db.update(UPDATE_RECEIPT, args -> args.add(1).add(600).add(1).add(100).add(1)));
+    assertEquals("1|1|100|2|500", row("group_receipts", 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void wrong_argument_count_throws() {
+    new SQLiteDatabase(connection, null, statements).insert(INSERT_RECEIPT, args -> args.add(1).add(2));
+  }
+
+  @Test
+  public void works_without_a_cache() {
+    SQLiteDatabase db = new SQLiteDatabase(connection);
+
+    insertWithCachedStatements(db, 0, 5);
+
+    assertEquals(5, count("mms"));
+  }
+
+  static void insertWithContentValues(SQLiteDatabase db, int first, int count) {
+    for (int batch = first; batch < first + count; batch += BATCH_SIZE) {
+      db.beginTransaction();
+      try {
+        for (int i = batch; i < Math.min(batch + BATCH_SIZE, first + count); i++) {
+          ContentValues message = new ContentValues(5);
+          message.put("thread_id", i % 50);
+          message.put("body", "Message " + i);
+          message.put("date_sent", i);
+          message.put("date_received", i + 1);
+          message.put("type", 87);
+
+          long messageId = db.insert("mms", null, message);
+
+          ContentValues attachment = new ContentValues(5);
+          attachment.put("mid", messageId);
+          attachment.put("ct", "image/jpeg");
+          attachment.put("data_size", 1024 + i);
+          attachment.put("digest", new byte[] { (byte) i, 1, 2, 3 });
+          attachment.put("unique_id", i);
+
+          db.insert("part", null, attachment);
+
+          for (int receipt = 0; receipt < RECEIPTS; receipt++) {
+            ContentValues values = new ContentValues(4);
+            values.put("mms_id", messageId);
+            values.put("address", receipt + 100);
+            values.put("status", 0);
+            values.put("timestamp", i);
+
+            db.insert("group_receipts", null, values);
+          }
+        }
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+    }
+  }
+
+  static void insertWithCachedStatements(SQLiteDatabase db, int first, int count) {
+    for (int batch = first; batch < first + count; batch += BATCH_SIZE) {
+      db.beginTransaction();
+      try {
+        for (int i = batch; i < Math.min(batch + BATCH_SIZE, first + count); i++) {
+          int  index     = i;
+          long messageId = db.insert(INSERT_MESSAGE, args -> args.add(index % 50)
+                                                                 .add("Message " + index)
+                                                                 .add(index)
+                                                                 .add(index + 1)
+                                                                 .add(87));
+
+          db.insert(INSERT_ATTACHMENT, args -> args.add(messageId)
+                                                   .add("image/jpeg")
+                                                   .add(1024 + index)
+                                                   .add(new byte[] { (byte) index, 1, 2, 3 })
+                                                   .add(index));
+
+          for (int receipt = 0; receipt < RECEIPTS; receipt++) {
+            int address = receipt + 100;
+            db.insert(INSERT_RECEIPT, args -> args.add(messageId)
+                                                  .add(address)
+                                                  .add(0)
+                                                  .add(index));
+          }
+        }
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+    }
+  }
+
+  int count(String table) {
+    try (Cursor cursor = connection.rawQuery("SELECT COUNT(*) FROM " + table, (String[]) null)) {
+      cursor.moveToFirst();
+      return cursor.getInt(0);
+    }
+  }
+
+  private static String withoutId(String row) {
+    return row.substring(row.indexOf('|'));
+  }
+
+  private String row(String table, long id) {
+    try (Cursor cursor = connection.rawQuery("SELECT * FROM " + table + " WHERE _id = ?", new String[] { String.valueOf(id) })) {
+      cursor.moveToFirst();
+
+      StringBuilder row = new StringBuilder();
+      for (int i = 0; i < cursor.getColumnCount(); i++) {
+        row.append(i == 0 ? "" : "|").append(cursor.getString(i));
+      }
+      return row.toString();
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package org.thoughtcrime.securesms.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.mms.pdu_alt.PduHeaders;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thoughtcrime.securesms.attachments.Attachment;
+import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
+import org.thoughtcrime.securesms.database.model.MediaMmsMessageRecord;
+import org.thoughtcrime.securesms.database.model.MessageRecord;
+import org.thoughtcrime.securesms.recipients.Recipient;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads conversations from the app database, whose rows don't carry their attachments, and checks
+ * that the attachments {@link MmsDatabase.Reader} fetches a batch at a time are the ones
+ * {@link AttachmentDatabase#getAttachmentsForMessage(long)} returns for each message.
+ */
+public final class ConversationAttachmentsTest {
+
+  private static final String E164 = "+15555550141";
+
+  private Context            context;
+  private AttachmentDatabase attachmentDatabase;
+  private MmsSmsDatabase     mmsSmsDatabase;
+  private RecipientId        recipientId;
+  private long               threadId;
+
+  @Before
+  public void setUp() {
+    context            = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    attachmentDatabase = DatabaseFactory.getAttachmentDatabase(context);
+    mmsSmsDatabase     = DatabaseFactory.getMmsSmsDatabase(context);
+    recipientId        = DatabaseFactory.getRecipientDatabase(context).getOrInsertFromE164(E164);
+
+    Long existing = DatabaseFactory.getThreadDatabase(context).getThreadIdFor(recipientId);
+
+    if (existing != null) {
+      DatabaseFactory.getThreadDatabase(context).deleteConversation(existing);
+    }
+
+    threadId = DatabaseFactory.getThreadDatabase(context).getThreadIdFor(Recipient.resolved(recipientId));
+  }
+
+  @After
+  public void tearDown() {
+    DatabaseFactory.getThreadDatabase(context).deleteConversation(threadId);
+  }
+
+  @Test
+  public void getAttachmentsForMessages_matches_getAttachmentsForMessage() {
+    List<Long> mmsIds = insertMessages(300);
+
+    Map<Long, List<DatabaseAttachment>> batch = attachmentDatabase.getAttachmentsForMessages(mmsIds);
+
+    for (long mmsId : mmsIds) {
+      List<DatabaseAttachment> expected = attachmentDatabase.getAttachmentsForMessage(mmsId);
+      List<DatabaseAttachment> actual   = batch.containsKey(mmsId) ? batch.get(mmsId) : Collections.emptyList();
+
+      assertEquals("Message " + mmsId, expected, actual);
+      assertFalse("Message " + mmsId, batch.containsKey(mmsId) && actual.isEmpty());
+
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getMmsId(), actual.get(i).getMmsId());
+        assertEquals(expected.get(i).getContentType(), actual.get(i).getContentType());
+        assertEquals(expected.get(i).getSize(), actual.get(i).getSize());
+        assertEquals(expected.get(i).getFileName(), actual.get(i).getFileName());
+      }
+    }
+  }
+
+  @Test
+  public void getAttachmentsForMessages_no_messages() {
+    assertTrue(attachmentDatabase.getAttachmentsForMessages(Collections.emptyList()).isEmpty());
+  }
+
+  @Test
+  public void reader_whole_conversation_crosses_batch_boundaries() {
+    List<Long> mmsIds = insertMessages(3_000);
+
+    assertTrue("Needs more than two batches of mms", mmsIds.size() > 1_000);
+
+    assertReaderMatchesPerMessage(mmsSmsDatabase.getConversation(threadId), mmsSmsDatabase.getConversationCount(threadId), true);
+  }
+
+  /**
+   * Pages of 1200 rows hold about 600 mms, so each one needs a second batch part way through.
+   */
+  @Test
+  public void reader_pages_crossing_batch_boundaries() {
+    insertMessages(3_000);
+
+    int count = mmsSmsDatabase.getConversationCount(threadId);
+
+    for (int start = 0; start < count; start += 450) {
+      assertReaderMatchesPerMessage(mmsSmsDatabase.getConversation(threadId, start, 1_200), Math.min(1_200, count - start), true);
+    }
+  }
+
+  @Test
+  public void reader_conversation_without_attachments() {
+    Random random = new Random(4);
+
+    for (int i = 0; i < 20; i++) {
+      insertMms(random, i, 0);
+    }
+
+    assertReaderMatchesPerMessage(mmsSmsDatabase.getConversation(threadId), 20, false);
+  }
+
+  private void assertReaderMatchesPerMessage(@NonNull Cursor cursor, int expectedCount, boolean expectAttachments) {
+    int mmsWithAttachments = 0;
+    int count              = 0;
+
+    try (MmsSmsDatabase.Reader reader = MmsSmsDatabase.readerFor(cursor)) {
+      MessageRecord record;
+
+      while ((record = reader.getNext()) != null) {
+        count++;
+
+        if (!record.isMms()) {
+          continue;
+        }
+
+        List<Attachment> expected = new ArrayList<>(attachmentDatabase.getAttachmentsForMessage(record.getId()));
+        List<Attachment> actual   = ((MediaMmsMessageRecord) record).getSlideDeck().asAttachments();
+
+        assertEquals("Message " + record.getId(), expected, actual);
+
+        if (!expected.isEmpty()) {
+          mmsWithAttachments++;
+        }
+      }
+    }
+
+    assertEquals(expectedCount, count);
+    assertEquals(expectAttachments, mmsWithAttachments > 0);
+  }
+
+  /**
+   * Roughly half sms. Of the mms, about a fifth have no attachments and the rest have up to three.
+   *
+   * @return The ids of the mms messages.
+   */
+  private @NonNull List<Long> insertMessages(int count) {
+    Random         random = new Random(count);
+    List<Long>     mmsIds = new ArrayList<>();
+    SQLiteDatabase db     = DatabaseFactory.getInstance(context).getRawDatabase();
+
+    db.beginTransaction();
+    try {
+      for (int i = 0; i < count; i++) {
+        if (random.nextBoolean()) {
+          ContentValues values = new ContentValues();
+          values.put(SmsDatabase.THREAD_ID, threadId);
+          values.put(SmsDatabase.RECIPIENT_ID, recipientId.toLong());
+          values.put(SmsDatabase.DATE_RECEIVED, 1_500_000_000_000L + i);
+          values.put(SmsDatabase.DATE_SENT, 1_500_000_000_000L + i);
+          values.put(SmsDatabase.BODY, "Message " + i);
+          values.put(SmsDatabase.TYPE, MmsSmsColumns.Types.getOutgoingEncryptedMessageType());
+          db.insert(SmsDatabase.TABLE_NAME, null, values);
+        } else {
+          mmsIds.add(insertMms(random, i, random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(3)));
+        }
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+
+    return mmsIds;
+  }
+
+  private long insertMms(@NonNull Random random, int i, int attachments) {
+    SQLiteDatabase db     = DatabaseFactory.getInstance(context).getRawDatabase();
+    ContentValues  values = new ContentValues();
+
+    values.put(MmsDatabase.THREAD_ID, threadId);
+    values.put(MmsDatabase.RECIPIENT_ID, recipientId.toLong());
+    values.put(MmsDatabase.DATE_RECEIVED, 1_500_000_000_000L + i);
+    values.put(MmsDatabase.DATE_SENT, 1_500_000_000_000L + i);
+    values.put(MmsDatabase.BODY, "Message " + i);
+    values.put(MmsDatabase.MESSAGE_BOX, MmsSmsColumns.Types.getOutgoingEncryptedMessageType());
+    values.put(MmsDatabase.MESSAGE_TYPE, PduHeaders.MESSAGE_TYPE_SEND_REQ);
+    values.put(MmsDatabase.PART_COUNT, attachments);
+
+    long mmsId = db.insert(MmsDatabase.TABLE_NAME, null, values);
+
+    for (int part = 0; part < attachments; part++) {
+      ContentValues partValues = new ContentValues();
+      partValues.put(AttachmentDatabase.MMS_ID, mmsId);
+      partValues.put(AttachmentDatabase.CONTENT_TYPE, "image/jpeg");
+      partValues.put(AttachmentDatabase.SIZE, 1 + random.nextInt(100_000));
+      partValues.put(AttachmentDatabase.FILE_NAME, "image" + part + ".jpg");
+      partValues.put(AttachmentDatabase.UNIQUE_ID, 1_500_000_000_000L + i * 4L + part);
+      partValues.put(AttachmentDatabase.TRANSFER_STATE, AttachmentDatabase.TRANSFER_PROGRESS_DONE);
+      db.insert(AttachmentDatabase.TABLE_NAME, null, partValues);
+    }
+
+    return mmsId;
+  }
+}
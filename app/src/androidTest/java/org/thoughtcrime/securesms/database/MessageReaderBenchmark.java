@@ -0,0 +1,153 @@
+package org.thoughtcrime.securesms.database;
+
+import android.database.MatrixCursor;
+import android.os.Debug;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.mms.pdu_alt.PduHeaders;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.database.documents.NetworkFailure;
+import org.thoughtcrime.securesms.database.documents.NetworkFailureList;
+import org.thoughtcrime.securesms.database.model.MessageRecord;
+import org.thoughtcrime.securesms.recipients.Recipient;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+import org.thoughtcrime.securesms.util.JsonUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reads 10k mixed sms and mms rows, shaped like the conversation query, through
+ * {@link MmsSmsDatabase.Reader} and reports time and allocations per row. Rows come from a
+ * {@link MatrixCursor} so that only the readers are measured, not the conversation query.
+ * Attachments are still looked up from the attachment table a batch at a time, as they are for a
+ * real page. Run on a registered install, since rows are attributed to the local recipient.
+ */
+@Ignore("Benchmarks, run manually")
+public final class MessageReaderBenchmark {
+
+  private static final String TAG = Log.tag(MessageReaderBenchmark.class);
+
+  private static final int ROWS       = 10_000;
+  private static final int WARMUP     = 3;
+  private static final int ITERATIONS = 5;
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void read_10k_mixed_rows() throws Exception {
+    MatrixCursor cursor = createCursor(Recipient.self().getId());
+
+    for (int i = 0; i < WARMUP; i++) {
+      readAll(cursor);
+    }
+
+    long totalNanos = 0;
+    long totalCount = 0;
+    long totalBytes = 0;
+
+    Debug.startAllocCounting();
+    try {
+      for (int i = 0; i < ITERATIONS; i++) {
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+
+        long start = System.nanoTime();
+        readAll(cursor);
+        totalNanos += System.nanoTime() - start;
+
+        totalCount += Debug.getThreadAllocCount();
+        totalBytes += Debug.getThreadAllocSize();
+      }
+    } finally {
+      Debug.stopAllocCounting();
+    }
+
+    long rows = (long) ROWS * ITERATIONS;
+
+    Log.i(TAG, String.format(Locale.US, "%d rows x %d iterations: %.1f ms per iteration, %.1f us per row, %.1f allocations per row, %.0f bytes per row",
+                                           ROWS, ITERATIONS,
+                                           TimeUnit.NANOSECONDS.toMicros(totalNanos) / 1000f / ITERATIONS,
+                                           TimeUnit.NANOSECONDS.toMicros(totalNanos) / (float) rows,
+                                           totalCount / (float) rows,
+                                           totalBytes / (float) rows));
+  }
+
+  private static void readAll(@NonNull MatrixCursor cursor) {
+    cursor.moveToPosition(-1);
+
+    int count = 0;
+
+    MmsSmsDatabase.Reader reader = new MmsSmsDatabase.Reader(cursor);
+    MessageRecord         record;
+
+    while ((record = reader.getNext()) != null) {
+      if (record.getId() >= 0) {
+        count++;
+      }
+    }
+
+    assertEquals(ROWS, count);
+  }
+
+  /**
+   * Roughly 70% sms and 30% mms. A few rows have quotes or network failures.
+   */
+  private static @NonNull MatrixCursor createCursor(@NonNull RecipientId recipientId) throws IOException {
+    String[]     columns = MmsSmsDatabase.PROJECTION;
+    MatrixCursor cursor  = new MatrixCursor(columns, ROWS);
+    String       failure = JsonUtils.toJson(new NetworkFailureList(Collections.singletonList(new NetworkFailure(recipientId))));
+    long         type    = MmsSmsColumns.Types.BASE_INBOX_TYPE | MmsSmsColumns.Types.SECURE_MESSAGE_BIT | MmsSmsColumns.Types.PUSH_MESSAGE_BIT;
+
+    for (int i = 0; i < ROWS; i++) {
+      Map<String, Object> row  = new HashMap<>();
+      boolean             mms  = i % 10 >= 7;
+      long                date = 1_600_000_000_000L - i * 1000L;
+
+      row.put(MmsSmsColumns.ID, (long) i + 1);
+      row.put(MmsSmsColumns.THREAD_ID, 1L);
+      row.put(MmsSmsColumns.RECIPIENT_ID, recipientId.toLong());
+      row.put(MmsSmsColumns.NORMALIZED_DATE_SENT, date - 500);
+      row.put(MmsSmsColumns.NORMALIZED_DATE_RECEIVED, date);
+      row.put(MmsSmsColumns.DATE_SERVER, date - 100);
+      row.put(MmsSmsColumns.BODY, "Message number " + i + ", which is about as long as a typical message.");
+      row.put(MmsSmsColumns.NOTIFIED_TIMESTAMP, date);
+      row.put(MmsSmsDatabase.TRANSPORT, mms ? MmsSmsDatabase.MMS_TRANSPORT : MmsSmsDatabase.SMS_TRANSPORT);
+
+      if (i % 50 == 0) {
+        row.put(MmsDatabase.NETWORK_FAILURE, failure);
+      }
+
+      if (mms) {
+        row.put(MmsDatabase.MESSAGE_TYPE, (long) PduHeaders.MESSAGE_TYPE_RETRIEVE_CONF);
+        row.put(MmsDatabase.MESSAGE_BOX, type);
+
+        if (i % 20 == 0) {
+          row.put(MmsDatabase.QUOTE_ID, date - 60_000);
+          row.put(MmsDatabase.QUOTE_AUTHOR, recipientId.toLong());
+          row.put(MmsDatabase.QUOTE_BODY, "Quoted message");
+        }
+      } else {
+        row.put(SmsDatabase.TYPE, type);
+      }
+
+      Object[] values = new Object[columns.length];
+      for (int c = 0; c < columns.length; c++) {
+        values[c] = row.get(columns[c]);
+      }
+
+      cursor.addRow(values);
+    }
+
+    return cursor;
+  }
+}
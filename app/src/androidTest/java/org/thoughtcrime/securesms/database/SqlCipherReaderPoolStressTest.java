@@ -0,0 +1,193 @@
+package org.thoughtcrime.securesms.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import net.sqlcipher.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs reads on several threads while another thread bulk inserts in batched transactions, once on
+ * a single connection and once in WAL mode with a {@link SqlCipherReaderPool}, and logs read latency
+ * percentiles for both.
+ */
+public final class SqlCipherReaderPoolStressTest {
+
+  private static final String TAG = Log.tag(SqlCipherReaderPoolStressTest.class);
+
+  private static final String PASSWORD       = "reader-pool-stress-test";
+  private static final int    ROWS           = 20_000;
+  private static final int    BATCH_SIZE     = 250;
+  private static final int    THREADS        = 50;
+  private static final int    READER_THREADS = 3;
+
+  private Context context;
+  private File    file;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    file    = context.getDatabasePath("reader-pool-stress-test.db");
+
+    net.sqlcipher.database.SQLiteDatabase.loadLibs(context);
+    deleteDatabase();
+  }
+
+  @After
+  public void tearDown() {
+    deleteDatabase();
+  }
+
+  @Test
+  public void concurrent_reads_during_bulk_inserts() throws InterruptedException {
+    Result singleConnection = run(false);
+    deleteDatabase();
+    Result wal = run(true);
+
+    String report = String.format(Locale.US, "Single connection: %s%nWAL + %d readers: %s", singleConnection, READER_THREADS, wal);
+
+    Log.i(TAG, report);
+
+    assertTrue(singleConnection.latencies.size() > 0);
+    assertTrue(wal.latencies.size() > 0);
+  }
+
+  private Result run(boolean wal) throws InterruptedException {
+    file.getParentFile().mkdirs();
+
+    SqlCipherDatabaseHook                 hook    = new SqlCipherDatabaseHook();
+    net.sqlcipher.database.SQLiteDatabase primary = net.sqlcipher.database.SQLiteDatabase.openOrCreateDatabase(file, PASSWORD, null, hook);
+    SqlCipherReaderPool                   readers = null;
+
+    if (wal) {
+      try (Cursor cursor = primary.rawQuery("PRAGMA journal_mode = WAL", (String[]) null)) {
+        assertTrue(cursor.moveToFirst());
+        assertEquals("wal", cursor.getString(0).toLowerCase(Locale.US));
+      }
+      primary.rawExecSQL("PRAGMA synchronous = NORMAL;");
+      readers = new SqlCipherReaderPool(file.getPath(), PASSWORD, hook, READER_THREADS);
+    }
+
+    SQLiteDatabase db = new SQLiteDatabase(primary, readers, null);
+
+    db.execSQL("CREATE TABLE message (_id INTEGER PRIMARY KEY, thread_id INTEGER, body TEXT, date INTEGER)");
+    db.execSQL("CREATE INDEX message_thread_date_index ON message (thread_id, date)");
+
+    AtomicBoolean    writing   = new AtomicBoolean(true);
+    CountDownLatch   done      = new CountDownLatch(READER_THREADS);
+    List<List<Long>> latencies = new ArrayList<>();
+    long             start     = System.nanoTime();
+
+    for (int i = 0; i < READER_THREADS; i++) {
+      List<Long> threadLatencies = new ArrayList<>();
+      latencies.add(threadLatencies);
+
+      new Thread(() -> {
+        Random random = new Random();
+
+        while (writing.get()) {
+          long readStart = System.nanoTime();
+
+          try (Cursor cursor = db.query("message", null, "thread_id = ?", new String[] { String.valueOf(random.nextInt(THREADS)) }, null, null, "date DESC", "50")) {
+            while (cursor.moveToNext()) {
+              cursor.getString(2);
+            }
+          }
+
+          threadLatencies.add(System.nanoTime() - readStart);
+        }
+
+        done.countDown();
+      }).start();
+    }
+
+    Random random = new Random(1);
+
+    for (int inserted = 0; inserted < ROWS; inserted += BATCH_SIZE) {
+      db.beginTransaction();
+      try {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+          ContentValues values = new ContentValues(3);
+          values.put("thread_id", random.nextInt(THREADS));
+          values.put("body", "Message body " + (inserted + i));
+          values.put("date", inserted + i);
+
+          db.insert("message", null, values);
+        }
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+    }
+
+    long insertMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    writing.set(false);
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+
+    try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM message", (String[]) null)) {
+      assertTrue(cursor.moveToFirst());
+      assertEquals(ROWS, cursor.getInt(0));
+    }
+
+    if (readers != null) {
+      readers.close();
+    }
+    primary.close();
+
+    List<Long> all = new ArrayList<>();
+    for (List<Long> threadLatencies : latencies) {
+      all.addAll(threadLatencies);
+    }
+
+    return new Result(insertMillis, all);
+  }
+
+  private void deleteDatabase() {
+    for (String suffix : new String[] { "", "-wal", "-shm", "-journal" }) {
+      new File(file.getPath() + suffix).delete();
+    }
+  }
+
+  private static final class Result {
+    private final long       insertMillis;
+    private final List<Long> latencies;
+
+    private Result(long insertMillis, List<Long> latencies) {
+      this.insertMillis = insertMillis;
+      this.latencies    = latencies;
+
+      Collections.sort(latencies);
+    }
+
+    private double percentileMillis(double percentile) {
+      int index = (int) Math.min(latencies.size() - 1, Math.ceil(percentile / 100 * latencies.size()) - 1);
+      return latencies.get(Math.max(0, index)) / 1_000_000d;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "inserts: %d ms, reads: %d, p50: %.2f ms, p90: %.2f ms, p99: %.2f ms, max: %.2f ms",
+                           insertMillis, latencies.size(), percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(100));
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.thoughtcrime.securesms.providers;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.thoughtcrime.securesms.providers.BlobProviderStressTest.MEMORY_BUDGET;
+import static org.thoughtcrime.securesms.providers.BlobProviderStressTest.THREADS;
+import static org.thoughtcrime.securesms.providers.BlobProviderStressTest.randomBytes;
+import static org.thoughtcrime.securesms.providers.BlobProviderStressTest.runOnThreads;
+
+/**
+ * Manual benchmarks for {@link BlobProvider}, using the helpers from {@link BlobProviderStressTest}.
+ */
+@Ignore("Benchmarks, run manually")
+public final class BlobProviderBenchmark {
+
+  private static final String TAG = Log.tag(BlobProviderBenchmark.class);
+
+  private final BlobProviderStressTest blobs = new BlobProviderStressTest();
+
+  private Context context;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    blobs.setUp();
+  }
+
+  /**
+   * Reads eight 4mb disk blobs one after the other and then all at once.
+   */
+  @Test
+  public void read_eight_blobs_concurrently() throws Exception {
+    BlobProvider provider = blobs.createProvider(MEMORY_BUDGET);
+    Random       random   = new Random(8);
+    List<Uri>    uris     = new ArrayList<>(THREADS);
+
+    for (int i = 0; i < THREADS; i++) {
+      byte[] data = randomBytes(random, 4 * 1024 * 1024);
+      uris.add(provider.forData(new ByteArrayInputStream(data), data.length).createForSingleSessionOnDisk(context));
+    }
+
+    long sequentialStart = System.nanoTime();
+    for (Uri uri : uris) {
+      blobs.read(provider, uri);
+    }
+    long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sequentialStart);
+
+    long concurrentStart = System.nanoTime();
+    runOnThreads(thread -> blobs.read(provider, uris.get(thread)));
+    long concurrentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - concurrentStart);
+
+    for (Uri uri : uris) {
+      provider.delete(context, uri);
+    }
+
+    Log.i(TAG, String.format(Locale.US, "%d x 4mb blobs: %d ms one at a time, %d ms concurrently", THREADS, sequentialMillis, concurrentMillis));
+  }
+}
@@ -0,0 +1,154 @@
+package org.thoughtcrime.securesms.providers;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.core.util.StreamUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Creates, reads and deletes blobs from several threads at once, with a memory budget small enough
+ * that in-memory blobs are spilled to disk while they're being read.
+ */
+public final class BlobProviderStressTest {
+
+  static final int THREADS       = 8;
+  static final int MEMORY_BUDGET = 256 * 1024;
+
+  private static final int BLOBS         = 200;
+  private static final int MAX_BLOB_SIZE = 64 * 1024;
+
+  private Context context;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+  }
+
+  @Test
+  public void concurrent_memory_blobs_survive_spilling() throws Exception {
+    BlobProvider provider = createProvider(MEMORY_BUDGET);
+
+    runOnThreads(thread -> {
+      Random random = new Random(thread);
+
+      for (int i = 0; i < BLOBS; i++) {
+        byte[]  data      = randomBytes(random, 1 + random.nextInt(MAX_BLOB_SIZE));
+        boolean singleUse = random.nextInt(4) == 0;
+        Uri     uri       = singleUse ? provider.forData(data).createForSingleUseInMemory()
+                                      : provider.forData(data).createForSingleSessionInMemory();
+
+        if (!singleUse) {
+          assertEquals(data.length, provider.calculateFileSize(context, uri));
+          assertArrayEquals(data, read(provider, uri));
+        }
+
+        assertArrayEquals(data, read(provider, uri));
+
+        if (singleUse) {
+          assertUnreadable(provider, uri);
+        } else {
+          provider.delete(context, uri);
+          assertUnreadable(provider, uri);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void concurrent_disk_blobs() throws Exception {
+    BlobProvider provider = createProvider(MEMORY_BUDGET);
+
+    runOnThreads(thread -> {
+      Random random = new Random(thread);
+
+      for (int i = 0; i < BLOBS / 4; i++) {
+        byte[] data = randomBytes(random, 1 + random.nextInt(MAX_BLOB_SIZE));
+        Uri    uri  = provider.forData(new ByteArrayInputStream(data), data.length).createForSingleSessionOnDisk(context);
+
+        assertEquals(data.length, provider.calculateFileSize(context, uri));
+        assertArrayEquals(data, read(provider, uri));
+
+        try (InputStream stream = provider.getStream(context, uri, data.length / 2)) {
+          assertArrayEquals(Arrays.copyOfRange(data, data.length / 2, data.length), StreamUtil.readFully(stream));
+        }
+
+        provider.delete(context, uri);
+      }
+    });
+  }
+
+  @NonNull BlobProvider createProvider(long memoryBudget) {
+    BlobProvider provider = new BlobProvider(memoryBudget);
+    provider.initialize(context);
+    return provider;
+  }
+
+  @NonNull byte[] read(@NonNull BlobProvider provider, @NonNull Uri uri) throws IOException {
+    try (InputStream stream = provider.getStream(context, uri)) {
+      return StreamUtil.readFully(stream);
+    }
+  }
+
+  private void assertUnreadable(@NonNull BlobProvider provider, @NonNull Uri uri) {
+    try {
+      read(provider, uri);
+      fail("Read blob that should be gone: " + uri);
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  static @NonNull byte[] randomBytes(@NonNull Random random, int length) {
+    byte[] data = new byte[length];
+    random.nextBytes(data);
+    return data;
+  }
+
+  static void runOnThreads(@NonNull ThreadBody body) throws InterruptedException {
+    CountDownLatch             done  = new CountDownLatch(THREADS);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+
+    for (int i = 0; i < THREADS; i++) {
+      int thread = i;
+
+      new Thread(() -> {
+        try {
+          body.run(thread);
+        } catch (Throwable t) {
+          error.compareAndSet(null, t);
+        } finally {
+          done.countDown();
+        }
+      }).start();
+    }
+
+    assertTrue(done.await(2, TimeUnit.MINUTES));
+
+    if (error.get() != null) {
+      throw new AssertionError(error.get());
+    }
+  }
+
+  interface ThreadBody {
+    void run(int thread) throws Exception;
+  }
+}
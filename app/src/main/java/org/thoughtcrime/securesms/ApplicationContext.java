@@ -81,7 +81,11 @@ import org.webrtc.voiceengine.WebRtcAudioManager;
 import org.webrtc.voiceengine.WebRtcAudioUtils;
 import org.whispersystems.libsignal.logging.SignalProtocolLoggerProvider;
 
+import java.io.File;
+import java.io.IOException;
 import java.security.Security;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -96,6 +100,8 @@ public class ApplicationContext extends MultiDexApplication implements AppForegr
 
   private static final String TAG = Log.tag(ApplicationContext.class);
 
+  private static final long TRACE_RING_SIZE = 8 * 1024 * 1024;
+
   private PersistentLogger persistentLogger;
 
   public static ApplicationContext getInstance(Context context) {
@@ -121,28 +127,28 @@ public class ApplicationContext extends MultiDexApplication implements AppForegr
                                 Log.i(TAG, "onCreate()");
                             })
                             .addBlocking("crash-handling", this::initializeCrashHandling)
-                            .addBlocking("eat-db", () -> DatabaseFactory.getInstance(this))
-                            .addBlocking("app-dependencies", this::initializeAppDependencies)
-                            .addBlocking("notification-channels", () -> NotificationChannels.create(this))
-                            .addBlocking("first-launch", this::initializeFirstEverAppLaunch)
-                            .addBlocking("app-migrations", this::initializeApplicationMigrations)
-                            .addBlocking("ring-rtc", this::initializeRingRtc)
-                            .addBlocking("mark-registration", () -> RegistrationUtil.maybeMarkRegistrationComplete(this))
-                            .addBlocking("lifecycle-observer", () -> ApplicationDependencies.getAppForegroundObserver().addListener(this))
-                            .addBlocking("message-retriever", this::initializeMessageRetrieval)
-                            .addBlocking("dynamic-theme", () -> DynamicTheme.setDefaultDayNightMode(this))
-                            .addBlocking("vector-compat", () -> {
-                              if (Build.VERSION.SDK_INT < 21) {
-                                AppCompatDelegate.setCompatVectorFromResourcesEnabled(true);
-                              }
-                            })
-                            .addBlocking("proxy-init", () -> {
+                            .addBackgroundBlocking("eat-db", Collections.singletonList("crash-handling"), () -> DatabaseFactory.getInstance(this))
+                            .addBackgroundBlocking("ring-rtc", Collections.singletonList("crash-handling"), this::initializeRingRtc)
+                            .addBackgroundBlocking("blob-provider", Collections.singletonList("crash-handling"), this::initializeBlobProvider)
+                            .addBlocking("app-dependencies", Collections.singletonList("crash-handling"), this::initializeAppDependencies)
+                            .addBackgroundBlocking("notification-channels", Collections.singletonList("app-dependencies"), () -> NotificationChannels.create(this))
+                            .addBackgroundBlocking("proxy-init", Collections.singletonList("app-dependencies"), () -> {
                               if (SignalStore.proxy().isProxyEnabled()) {
                                 Log.w(TAG, "Proxy detected. Enabling Conscrypt.setUseEngineSocketByDefault()");
                                 Conscrypt.setUseEngineSocketByDefault(true);
                               }
                             })
-                            .addBlocking("blob-provider", this::initializeBlobProvider)
+                            .addBlocking("lifecycle-observer", Collections.singletonList("app-dependencies"), () -> ApplicationDependencies.getAppForegroundObserver().addListener(this))
+                            .addBlocking("dynamic-theme", Collections.singletonList("app-dependencies"), () -> DynamicTheme.setDefaultDayNightMode(this))
+                            .addBlocking("vector-compat", Collections.emptyList(), () -> {
+                              if (Build.VERSION.SDK_INT < 21) {
+                                AppCompatDelegate.setCompatVectorFromResourcesEnabled(true);
+                              }
+                            })
+                            .addBlocking("first-launch", Arrays.asList("eat-db", "app-dependencies"), this::initializeFirstEverAppLaunch)
+                            .addBlocking("app-migrations", Arrays.asList("first-launch", "notification-channels"), this::initializeApplicationMigrations)
+                            .addBlocking("mark-registration", Collections.singletonList("app-migrations"), () -> RegistrationUtil.maybeMarkRegistrationComplete(this))
+                            .addBlocking("message-retriever", Arrays.asList("app-migrations", "proxy-init", "ring-rtc"), this::initializeMessageRetrieval)
                             .addBlocking("feature-flags", FeatureFlags::init)
                             .addNonBlocking(this::initializeRevealableMessageManager)
                             .addNonBlocking(this::initializeGcmCheck)
@@ -195,6 +201,8 @@ public class ApplicationContext extends MultiDexApplication implements AppForegr
     ApplicationDependencies.getMessageNotifier().clearVisibleThread();
     ApplicationDependencies.getFrameRateTracker().end();
     ApplicationDependencies.getShakeToReport().disable();
+
+    SignalExecutors.BOUNDED.execute(() -> DatabaseFactory.getInstance(this).checkpoint());
   }
 
   public PersistentLogger getPersistentLogger() {
@@ -237,6 +245,14 @@ public class ApplicationContext extends MultiDexApplication implements AppForegr
     org.signal.core.util.logging.Log.initialize(FeatureFlags::internalUser, new AndroidLogger(), persistentLogger);
 
     SignalProtocolLoggerProvider.setProvider(new CustomSignalProtocolLogger());
+
+    if (FeatureFlags.internalUser()) {
+      try {
+        Tracer.getInstance().startStreaming(new File(getCacheDir(), "trace"), LogSecretProvider.getOrCreateAttachmentSecret(this), TRACE_RING_SIZE);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to start streaming trace, keeping it in memory.", e);
+      }
+    }
   }
 
   private void initializeCrashHandling() {
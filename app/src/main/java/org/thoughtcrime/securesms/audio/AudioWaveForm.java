@@ -10,6 +10,7 @@ import android.util.LruCache;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.annotation.WorkerThread;
 import androidx.core.util.Consumer;
@@ -20,6 +21,7 @@ import org.signal.core.util.ThreadUtil;
 import org.signal.core.util.concurrent.SignalExecutors;
 import org.signal.core.util.logging.Log;
 import org.thoughtcrime.securesms.attachments.Attachment;
+import org.thoughtcrime.securesms.attachments.AttachmentId;
 import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
 import org.thoughtcrime.securesms.database.AttachmentDatabase;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
@@ -28,10 +30,15 @@ import org.thoughtcrime.securesms.media.DecryptableUriMediaInput;
 import org.thoughtcrime.securesms.media.MediaInput;
 import org.thoughtcrime.securesms.mms.AudioSlide;
 import org.thoughtcrime.securesms.util.concurrent.SerialExecutor;
+import org.thoughtcrime.securesms.util.concurrent.SettableFuture;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
@@ -43,6 +50,8 @@ public final class AudioWaveForm {
   private static final int BAR_COUNT       = 46;
   private static final int SAMPLES_PER_BAR =  4;
 
+  private static final int MAX_GENERATION_ATTEMPTS = 3;
+
   private final Context    context;
   private final AudioSlide slide;
 
@@ -51,8 +60,9 @@ public final class AudioWaveForm {
     this.slide   = slide;
   }
 
-  private static final LruCache<String, AudioFileInfo> WAVE_FORM_CACHE        = new LruCache<>(200);
-  private static final Executor                        AUDIO_DECODER_EXECUTOR = new SerialExecutor(SignalExecutors.BOUNDED);
+  private static final LruCache<String, AudioFileInfo>                  WAVE_FORM_CACHE        = new LruCache<>(200);
+  private static final Executor                                         AUDIO_DECODER_EXECUTOR = new SerialExecutor(SignalExecutors.BOUNDED);
+  private static final Map<AttachmentId, SettableFuture<AudioFileInfo>> IN_FLIGHT              = new HashMap<>();
 
   @AnyThread
   public void getWaveForm(@NonNull Consumer<AudioFileInfo> onSuccess, @NonNull Runnable onFailure) {
@@ -80,52 +90,189 @@ public final class AudioWaveForm {
     }
 
     AUDIO_DECODER_EXECUTOR.execute(() -> {
-      AudioFileInfo cachedInExecutor = WAVE_FORM_CACHE.get(cacheKey);
-      if (cachedInExecutor != null) {
-        Log.i(TAG, "Loaded wave form from cache inside executor" + cacheKey);
-        ThreadUtil.runOnMain(() -> onSuccess.accept(cachedInExecutor));
-        return;
-      }
+      try {
+        AudioFileInfo fileInfo = getOrGenerateWaveForm(context, (DatabaseAttachment) attachment, uri);
 
-      AudioHash audioHash = attachment.getAudioHash();
-      if (audioHash != null) {
-        AudioFileInfo audioFileInfo = AudioFileInfo.fromDatabaseProtobuf(audioHash.getAudioWaveForm());
-        if (audioFileInfo.waveForm.length == 0) {
-          Log.w(TAG, "Recovering from a wave form generation error  " + cacheKey);
-          ThreadUtil.runOnMain(onFailure);
-          return;
-        } else if (audioFileInfo.waveForm.length != BAR_COUNT) {
-          Log.w(TAG, "Wave form from database does not match bar count, regenerating " + cacheKey);
+        if (fileInfo != null) {
+          ThreadUtil.runOnMain(() -> onSuccess.accept(fileInfo));
         } else {
-          WAVE_FORM_CACHE.put(cacheKey, audioFileInfo);
-          Log.i(TAG, "Loaded wave form from DB " + cacheKey);
-          ThreadUtil.runOnMain(() -> onSuccess.accept(audioFileInfo));
-          return;
+          ThreadUtil.runOnMain(onFailure);
         }
+      } catch (Throwable e) {
+        Log.w(TAG, "Failed to create audio wave form for " + cacheKey, e);
+        ThreadUtil.runOnMain(onFailure);
       }
+    });
+  }
 
-      try {
-        AttachmentDatabase attachmentDatabase = DatabaseFactory.getAttachmentDatabase(context);
-        DatabaseAttachment dbAttachment       = (DatabaseAttachment) attachment;
-        long               startTime          = System.currentTimeMillis();
+  /**
+   * Generates and stores the wave form for an audio attachment if it doesn't already have one, so
+   * that it's ready by the time the attachment is shown.
+   */
+  @WorkerThread
+  public static void precompute(@NonNull Context context, @NonNull DatabaseAttachment attachment) throws IOException {
+    Uri uri = attachment.getUri();
+
+    if (uri == null) {
+      Log.w(TAG, "No data for " + attachment.getAttachmentId());
+      return;
+    }
+
+    getOrGenerateWaveForm(context.getApplicationContext(), attachment, uri);
+  }
+
+  /**
+   * Only generation of the same attachment is serialized, so that a wave form being precomputed in
+   * the background and the same wave form being requested for display are only generated once,
+   * while a wave form that's already stored never waits on another attachment's decode.
+   *
+   * @return The wave form, or null if a previous attempt to generate it failed.
+   */
+  @WorkerThread
+  private static @Nullable AudioFileInfo getOrGenerateWaveForm(@NonNull Context context, @NonNull DatabaseAttachment attachment, @NonNull Uri uri) throws IOException {
+    String        cacheKey = uri.toString();
+    AudioFileInfo cached   = WAVE_FORM_CACHE.get(cacheKey);
 
-        attachmentDatabase.writeAudioHash(dbAttachment.getAttachmentId(), AudioWaveFormData.getDefaultInstance());
+    if (cached != null) {
+      Log.i(TAG, "Loaded wave form from cache inside executor" + cacheKey);
+      return cached;
+    }
 
-        Log.i(TAG, String.format("Starting wave form generation (%s)", cacheKey));
+    AudioHash         audioHash = attachment.getAudioHash();
+    AudioWaveFormData stored    = audioHash != null ? audioHash.getAudioWaveForm() : readStoredWaveForm(context, attachment.getAttachmentId());
 
-        AudioFileInfo fileInfo = generateWaveForm(uri);
+    if (!needsGeneration(stored)) {
+      return fromStored(stored, cacheKey);
+    }
 
-        Log.i(TAG, String.format(Locale.US, "Audio wave form generation time %d ms (%s)", System.currentTimeMillis() - startTime, cacheKey));
+    AttachmentId                  attachmentId = attachment.getAttachmentId();
+    SettableFuture<AudioFileInfo> generation;
+    boolean                       generating   = false;
 
-        attachmentDatabase.writeAudioHash(dbAttachment.getAttachmentId(), fileInfo.toDatabaseProtobuf());
+    synchronized (IN_FLIGHT) {
+      generation = IN_FLIGHT.get(attachmentId);
 
-        WAVE_FORM_CACHE.put(cacheKey, fileInfo);
-        ThreadUtil.runOnMain(() -> onSuccess.accept(fileInfo));
-      } catch (Throwable e) {
-        Log.w(TAG, "Failed to create audio wave form for " + cacheKey, e);
-        ThreadUtil.runOnMain(onFailure);
+      if (generation == null) {
+        generation = new SettableFuture<>();
+        generating = true;
+        IN_FLIGHT.put(attachmentId, generation);
       }
-    });
+    }
+
+    if (!generating) {
+      Log.i(TAG, "Waiting for wave form already being generated " + cacheKey);
+      return await(generation);
+    }
+
+    try {
+      AudioFileInfo fileInfo = generateIfNeeded(context, attachmentId, uri);
+      generation.set(fileInfo);
+      return fileInfo;
+    } catch (IOException | RuntimeException e) {
+      generation.setException(e);
+      throw e;
+    } finally {
+      synchronized (IN_FLIGHT) {
+        IN_FLIGHT.remove(attachmentId);
+      }
+    }
+  }
+
+  /**
+   * Re-checks the cache and the stored wave form, as another generation of the same attachment may
+   * have just finished, and generates it if there's still nothing usable.
+   * <p>
+   * The attempt is recorded before decoding, so that a decode that keeps taking the process down is
+   * given up on after a few attempts, while one that was merely interrupted, by the process being
+   * killed for example, is tried again. The wave form is only marked as failed if decoding fails.
+   */
+  @WorkerThread
+  private static @Nullable AudioFileInfo generateIfNeeded(@NonNull Context context, @NonNull AttachmentId attachmentId, @NonNull Uri uri) throws IOException {
+    String        cacheKey = uri.toString();
+    AudioFileInfo cached   = WAVE_FORM_CACHE.get(cacheKey);
+
+    if (cached != null) {
+      return cached;
+    }
+
+    AttachmentDatabase attachmentDatabase = DatabaseFactory.getAttachmentDatabase(context);
+    AudioWaveFormData  stored             = readStoredWaveForm(context, attachmentId);
+
+    if (!needsGeneration(stored)) {
+      return fromStored(stored, cacheKey);
+    }
+
+    int attempts = stored != null && stored.getWaveForm().isEmpty() ? stored.getGenerationAttempts() : 0;
+
+    attachmentDatabase.writeAudioHash(attachmentId, AudioWaveFormData.newBuilder().setGenerationAttempts(attempts + 1).build());
+
+    long startTime = System.currentTimeMillis();
+
+    Log.i(TAG, String.format(Locale.US, "Starting wave form generation, attempt %d (%s)", attempts + 1, cacheKey));
+
+    AudioFileInfo fileInfo;
+
+    try {
+      fileInfo = generateWaveForm(context, uri);
+    } catch (IOException | RuntimeException e) {
+      attachmentDatabase.writeAudioHash(attachmentId, AudioWaveFormData.getDefaultInstance());
+      throw e;
+    }
+
+    Log.i(TAG, String.format(Locale.US, "Audio wave form generation time %d ms (%s)", System.currentTimeMillis() - startTime, cacheKey));
+
+    attachmentDatabase.writeAudioHash(attachmentId, fileInfo.toDatabaseProtobuf());
+
+    WAVE_FORM_CACHE.put(cacheKey, fileInfo);
+    return fileInfo;
+  }
+
+  private static @Nullable AudioWaveFormData readStoredWaveForm(@NonNull Context context, @NonNull AttachmentId attachmentId) {
+    DatabaseAttachment current   = DatabaseFactory.getAttachmentDatabase(context).getAttachment(attachmentId);
+    AudioHash          audioHash = current != null ? current.getAudioHash() : null;
+
+    return audioHash != null ? audioHash.getAudioWaveForm() : null;
+  }
+
+  /**
+   * A wave form needs generating if there isn't one, if an earlier attempt was interrupted and
+   * there are attempts left, or if it was stored with a different bar count.
+   */
+  private static boolean needsGeneration(@Nullable AudioWaveFormData stored) {
+    if (stored == null) {
+      return true;
+    } else if (stored.getWaveForm().isEmpty()) {
+      return stored.getGenerationAttempts() > 0 && stored.getGenerationAttempts() < MAX_GENERATION_ATTEMPTS;
+    } else {
+      return stored.getWaveForm().size() != BAR_COUNT;
+    }
+  }
+
+  private static @Nullable AudioFileInfo fromStored(@NonNull AudioWaveFormData stored, @NonNull String cacheKey) {
+    AudioFileInfo audioFileInfo = AudioFileInfo.fromDatabaseProtobuf(stored);
+
+    if (audioFileInfo.waveForm.length == 0) {
+      Log.w(TAG, "Recovering from a wave form generation error  " + cacheKey);
+      return null;
+    }
+
+    WAVE_FORM_CACHE.put(cacheKey, audioFileInfo);
+    Log.i(TAG, "Loaded wave form from DB " + cacheKey);
+    return audioFileInfo;
+  }
+
+  private static @Nullable AudioFileInfo await(@NonNull SettableFuture<AudioFileInfo> generation) throws IOException {
+    try {
+      return generation.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
   }
 
   /**
@@ -135,11 +282,8 @@ public final class AudioWaveForm {
    */
   @WorkerThread
   @RequiresApi(api = 23)
-  private @NonNull AudioFileInfo generateWaveForm(@NonNull Uri uri) throws IOException {
+  private static @NonNull AudioFileInfo generateWaveForm(@NonNull Context context, @NonNull Uri uri) throws IOException {
     try (MediaInput dataSource = DecryptableUriMediaInput.createForUri(context, uri)) {
-      long[] wave        = new long[BAR_COUNT];
-      int[]  waveSamples = new int[BAR_COUNT];
-
       MediaExtractor extractor = dataSource.createExtractor();
 
       if (extractor.getTrackCount() == 0) {
@@ -173,6 +317,7 @@ public final class AudioWaveForm {
 
       extractor.selectTrack(0);
 
+      WaveFormAccumulator   accumulator     = new WaveFormAccumulator(BAR_COUNT, totalDurationUs);
       long                  kTimeOutUs      = 5000;
       MediaCodec.BufferInfo info            = new MediaCodec.BufferInfo();
       boolean               sawInputEOS     = false;
@@ -203,13 +348,13 @@ public final class AudioWaveForm {
               sawInputEOS ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
 
             if (!sawInputEOS) {
-              int barSampleIndex = (int) (SAMPLES_PER_BAR * (wave.length * extractor.getSampleTime()) / totalDurationUs);
+              int barSampleIndex = (int) (SAMPLES_PER_BAR * (BAR_COUNT * extractor.getSampleTime()) / totalDurationUs);
               sawInputEOS = !extractor.advance();
-              int nextBarSampleIndex = (int) (SAMPLES_PER_BAR * (wave.length * extractor.getSampleTime()) / totalDurationUs);
+              int nextBarSampleIndex = (int) (SAMPLES_PER_BAR * (BAR_COUNT * extractor.getSampleTime()) / totalDurationUs);
               while (!sawInputEOS && nextBarSampleIndex == barSampleIndex) {
                 sawInputEOS = !extractor.advance();
                 if (!sawInputEOS) {
-                  nextBarSampleIndex = (int) (SAMPLES_PER_BAR * (wave.length * extractor.getSampleTime()) / totalDurationUs);
+                  nextBarSampleIndex = (int) (SAMPLES_PER_BAR * (BAR_COUNT * extractor.getSampleTime()) / totalDurationUs);
                 }
               }
             }
@@ -225,16 +370,11 @@ public final class AudioWaveForm {
             }
 
             ByteBuffer buf = codecOutputBuffers[outputBufferIndex];
-            int barIndex = (int) ((wave.length * info.presentationTimeUs) / totalDurationUs);
-            long total = 0;
-            for (int i = 0; i < info.size; i += 2 * 4) {
-              short aShort = buf.getShort(i);
-              total += Math.abs(aShort);
-            }
-            if (barIndex >= 0 && barIndex < wave.length) {
-              wave[barIndex] += total;
-              waveSamples[barIndex] += info.size / 2;
-            }
+            buf.limit(info.offset + info.size);
+            buf.position(info.offset);
+
+            accumulator.add(info.presentationTimeUs, buf.slice().order(ByteOrder.nativeOrder()).asShortBuffer());
+
             codec.releaseOutputBuffer(outputBufferIndex, false);
             if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
               sawOutputEOS = true;
@@ -251,25 +391,7 @@ public final class AudioWaveForm {
       codec.release();
       extractor.release();
 
-      float[] floats = new float[BAR_COUNT];
-      byte[]  bytes  = new byte[BAR_COUNT];
-      float   max    = 0;
-
-      for (int i = 0; i < BAR_COUNT; i++) {
-        if (waveSamples[i] == 0) continue;
-
-        floats[i] = wave[i] / (float) waveSamples[i];
-        if (floats[i] > max) {
-          max = floats[i];
-        }
-      }
-
-      for (int i = 0; i < BAR_COUNT; i++) {
-        float normalized = floats[i] / max;
-        bytes[i] = (byte) (255 * normalized);
-      }
-
-      return new AudioFileInfo(totalDurationUs, bytes);
+      return new AudioFileInfo(totalDurationUs, accumulator.toWaveForm());
     }
   }
 
@@ -0,0 +1,94 @@
+package org.thoughtcrime.securesms.audio;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Reduces decoded 16-bit PCM to a fixed number of bars. Each bar is the mean sample magnitude over
+ * its slice of the audio, scaled so that the loudest bar is 255.
+ */
+final class WaveFormAccumulator {
+
+  /**
+   * Small enough that a chunk's sum of magnitudes can't overflow an int.
+   */
+  private static final int CHUNK_SIZE = 4096;
+
+  private final long    durationUs;
+  private final long[]  totals;
+  private final long[]  counts;
+  private final short[] chunk = new short[CHUNK_SIZE];
+
+  WaveFormAccumulator(int barCount, long durationUs) {
+    this.durationUs = durationUs;
+    this.totals     = new long[barCount];
+    this.counts     = new long[barCount];
+  }
+
+  /**
+   * Adds a buffer of samples that starts at the provided time to the bar that time falls in.
+   * Consumes the buffer.
+   */
+  void add(long presentationTimeUs, @NonNull ShortBuffer samples) {
+    int bar = (int) ((totals.length * presentationTimeUs) / durationUs);
+
+    if (bar < 0 || bar >= totals.length) {
+      return;
+    }
+
+    counts[bar] += samples.remaining();
+    totals[bar] += sumOfMagnitudes(samples, chunk);
+  }
+
+  @NonNull byte[] toWaveForm() {
+    float[] means = new float[totals.length];
+    byte[]  bytes = new byte[totals.length];
+    float   max   = 0;
+
+    for (int i = 0; i < totals.length; i++) {
+      if (counts[i] == 0) continue;
+
+      means[i] = totals[i] / (float) counts[i];
+      if (means[i] > max) {
+        max = means[i];
+      }
+    }
+
+    if (max == 0) {
+      return bytes;
+    }
+
+    for (int i = 0; i < totals.length; i++) {
+      bytes[i] = (byte) (255 * (means[i] / max));
+    }
+
+    return bytes;
+  }
+
+  /**
+   * Sums the magnitudes of the remaining samples. They're copied out in bulk a chunk at a time, so
+   * that the inner loop is over a plain array rather than a read per sample from a (usually direct)
+   * buffer, which keeps it simple enough for the compiler to vectorize.
+   */
+  @VisibleForTesting
+  static long sumOfMagnitudes(@NonNull ShortBuffer samples, @NonNull short[] chunk) {
+    long total = 0;
+
+    while (samples.hasRemaining()) {
+      int count = Math.min(samples.remaining(), chunk.length);
+      int sum   = 0;
+
+      samples.get(chunk, 0, count);
+
+      for (int i = 0; i < count; i++) {
+        sum += Math.abs(chunk[i]);
+      }
+
+      total += sum;
+    }
+
+    return total;
+  }
+}
@@ -12,18 +12,23 @@ import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.widget.TextView;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import org.signal.core.util.ThreadUtil;
 import org.signal.core.util.logging.Log;
 import org.thoughtcrime.securesms.components.emoji.parsing.EmojiDrawInfo;
 import org.thoughtcrime.securesms.components.emoji.parsing.EmojiParser;
+import org.thoughtcrime.securesms.emoji.EmojiPage;
 import org.thoughtcrime.securesms.emoji.EmojiPageCache;
 import org.thoughtcrime.securesms.emoji.EmojiSource;
 import org.thoughtcrime.securesms.util.DeviceProperties;
 import org.thoughtcrime.securesms.util.FutureTaskListener;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 class EmojiProvider {
@@ -68,6 +73,50 @@ class EmojiProvider {
     return getEmojiDrawable(context, drawInfo);
   }
 
+  /**
+   * Emojifies text that will be shown with the given paint, without needing the view it will be
+   * shown in, so that it can be done off the main thread. The spans have to be attached to that
+   * view with {@link #attach(EmojiSpan, TextView)} before the emoji are drawn.
+   *
+   * @return The spans added to the text.
+   */
+  @WorkerThread
+  static @NonNull List<EmojiSpan> emojify(@NonNull Context context,
+                                          @NonNull EmojiParser.CandidateList matches,
+                                          @NonNull Spannable text,
+                                          @NonNull Paint paint)
+  {
+    List<EmojiSpan> spans                = new ArrayList<>(matches.size());
+    int             lowMemoryDecodeScale = DeviceProperties.isLowMemoryDevice(context) ? 2 : 1;
+    EmojiSource     source               = EmojiSource.getLatest();
+
+    for (EmojiParser.Candidate candidate : matches) {
+      if (candidate.getDrawInfo() != null) {
+        EmojiSpan span = new EmojiSpan(new EmojiDrawable(source, candidate.getDrawInfo(), lowMemoryDecodeScale), paint);
+
+        text.setSpan(span, candidate.getStartIndex(), candidate.getEndIndex(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        spans.add(span);
+      }
+    }
+
+    return spans;
+  }
+
+  /**
+   * Points a span made by {@link #emojify(Context, EmojiParser.CandidateList, Spannable, Paint)} at
+   * the view it is shown in, and loads its emoji if it hasn't been already.
+   */
+  @MainThread
+  static void attach(@NonNull EmojiSpan span, @NonNull TextView tv) {
+    Drawable drawable = span.getDrawable();
+
+    drawable.setCallback(tv);
+
+    if (drawable instanceof EmojiDrawable && !((EmojiDrawable) drawable).hasBitmap()) {
+      loadBitmap(tv.getContext(), (EmojiDrawable) drawable);
+    }
+  }
+
   private static @Nullable Drawable getEmojiDrawable(@NonNull Context context, @Nullable EmojiDrawInfo drawInfo) {
     if (drawInfo == null) {
       return null;
@@ -77,8 +126,14 @@ class EmojiProvider {
     final EmojiSource   source               = EmojiSource.getLatest();
     final EmojiDrawable drawable             = new EmojiDrawable(source, drawInfo, lowMemoryDecodeScale);
 
+    loadBitmap(context, drawable);
+
+    return drawable;
+  }
+
+  private static void loadBitmap(@NonNull Context context, @NonNull EmojiDrawable drawable) {
     EmojiPageCache.INSTANCE
-                  .load(context, drawInfo.getPage(), lowMemoryDecodeScale)
+                  .load(context, drawable.page, drawable.lowMemoryDecodeScale)
                   .addListener(new FutureTaskListener<Bitmap>() {
                     @Override
                     public void onSuccess(Bitmap result) {
@@ -90,14 +145,14 @@ class EmojiProvider {
                       Log.d(TAG, "Failed to load emoji bitmap resource", exception);
                     }
                   });
-
-    return drawable;
   }
 
   static final class EmojiDrawable extends Drawable {
-    private final float intrinsicWidth;
-    private final float intrinsicHeight;
-    private final Rect  emojiBounds;
+    private final float     intrinsicWidth;
+    private final float     intrinsicHeight;
+    private final Rect      emojiBounds;
+    private final EmojiPage page;
+    private final int       lowMemoryDecodeScale;
 
     private Bitmap bmp;
 
@@ -126,6 +181,9 @@ class EmojiProvider {
                                   yStart,
                                   xStart + glyphWidth,
                                   yStart + glyphHeight);
+
+      this.page                 = info.getPage();
+      this.lowMemoryDecodeScale = lowMemoryDecodeScale;
     }
 
     @Override
@@ -140,6 +198,10 @@ class EmojiProvider {
                         PAINT);
     }
 
+    boolean hasBitmap() {
+      return bmp != null;
+    }
+
     public void setBitmap(Bitmap bitmap) {
       ThreadUtil.assertMainThread();
       if (bmp == null || !bmp.sameAs(bitmap)) {
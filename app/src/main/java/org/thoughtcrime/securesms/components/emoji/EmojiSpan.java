@@ -25,6 +25,17 @@ public class EmojiSpan extends AnimatingImageSpan {
     getDrawable().setBounds(0, 0, size, size);
   }
 
+  /**
+   * For text emojified away from the view it will be shown in. The drawable has no callback until
+   * the span is attached to a view with {@link EmojiProvider#attach(EmojiSpan, TextView)}.
+   */
+  EmojiSpan(@NonNull Drawable drawable, @NonNull Paint paint) {
+    super(drawable, null);
+    fm   = paint.getFontMetricsInt();
+    size = Math.abs(fm.descent) + Math.abs(fm.ascent);
+    getDrawable().setBounds(0, 0, size, size);
+  }
+
   @Override
   public int getSize(@NonNull Paint paint, CharSequence text, int start, int end, FontMetricsInt fm) {
     if (fm != null && this.fm != null) {
@@ -49,6 +49,7 @@ public class EmojiTextView extends AppCompatTextView {
   private boolean      renderMentions;
 
   private MentionRendererDelegate mentionRendererDelegate;
+  private PrecomputedEmojiText    precomputedText;
 
   public EmojiTextView(Context context) {
     this(context, null);
@@ -95,15 +96,7 @@ public class EmojiTextView extends AppCompatTextView {
     EmojiParser.CandidateList candidates = isInEditMode() ? null : EmojiProvider.getCandidates(text);
 
     if (scaleEmojis && candidates != null && candidates.allEmojis) {
-      int   emojis = candidates.size();
-      float scale  = 1.0f;
-
-      if (emojis <= 8) scale += 0.25f;
-      if (emojis <= 6) scale += 0.25f;
-      if (emojis <= 4) scale += 0.25f;
-      if (emojis <= 2) scale += 0.25f;
-
-      super.setTextSize(TypedValue.COMPLEX_UNIT_PX, originalFontSize * scale);
+      super.setTextSize(TypedValue.COMPLEX_UNIT_PX, originalFontSize * getEmojiScale(candidates.size()));
     } else if (scaleEmojis) {
       super.setTextSize(TypedValue.COMPLEX_UNIT_PX, originalFontSize);
     }
@@ -116,6 +109,7 @@ public class EmojiTextView extends AppCompatTextView {
     previousOverflowText = overflowText;
     previousBufferType   = type;
     useSystemEmoji       = useSystemEmoji();
+    precomputedText      = null;
 
     if (useSystemEmoji || candidates == null || candidates.size() == 0) {
       super.setText(new SpannableStringBuilder(Optional.fromNullable(text).or("")).append(Optional.fromNullable(overflowText).or("")), BufferType.NORMAL);
@@ -143,9 +137,67 @@ public class EmojiTextView extends AppCompatTextView {
     }
   }
 
+  /**
+   * Shows text that was emojified and measured ahead of time for this view.
+   *
+   * @return false, leaving the view as it was, if the text was not made for this view's current text
+   *         metrics and emoji setting, or would need ellipsizing or overflow text added. The text
+   *         should then be set as usual.
+   */
+  public boolean setPrecomputedText(@NonNull PrecomputedEmojiText precomputed) {
+    if (isInEditMode() || overflowText != null || precomputed.isSystemEmoji() != useSystemEmoji()) {
+      return false;
+    }
+
+    if (getEllipsize() == TextUtils.TruncateAt.END && (maxLength <= 0 || precomputed.length() > maxLength + 1)) {
+      return false;
+    }
+
+    float textSize = getTextSize();
+
+    if (scaleEmojis) {
+      super.setTextSize(TypedValue.COMPLEX_UNIT_PX, originalFontSize * precomputed.getEmojiScale());
+    }
+
+    if (!TextViewCompat.getTextMetricsParams(this).equals(precomputed.getText().getParams())) {
+      super.setTextSize(TypedValue.COMPLEX_UNIT_PX, textSize);
+      return false;
+    }
+
+    TextViewCompat.setPrecomputedText(this, precomputed.getText());
+    precomputed.attach(this);
+
+    previousText         = null;
+    previousOverflowText = null;
+    previousBufferType   = null;
+    useSystemEmoji       = precomputed.isSystemEmoji();
+    precomputedText      = precomputed;
+
+    if (getLayoutParams() != null && getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT) {
+      requestLayout();
+    }
+
+    return true;
+  }
+
   public void setOverflowText(@Nullable CharSequence overflowText) {
+    if (Util.equals(this.overflowText, overflowText)) {
+      return;
+    }
+
     this.overflowText = overflowText;
-    setText(previousText, BufferType.SPANNABLE);
+    setText(precomputedText != null ? precomputedText.getSource() : previousText, BufferType.SPANNABLE);
+  }
+
+  static float getEmojiScale(int emojis) {
+    float scale = 1.0f;
+
+    if (emojis <= 8) scale += 0.25f;
+    if (emojis <= 6) scale += 0.25f;
+    if (emojis <= 4) scale += 0.25f;
+    if (emojis <= 2) scale += 0.25f;
+
+    return scale;
   }
 
   private void ellipsizeAnyTextForMaxLength() {
@@ -223,7 +275,7 @@ public class EmojiTextView extends AppCompatTextView {
   protected void onSizeChanged(int w, int h, int oldw, int oldh) {
     super.onSizeChanged(w, h, oldw, oldh);
 
-    if (!sizeChangeInProgress) {
+    if (!sizeChangeInProgress && precomputedText == null) {
       sizeChangeInProgress = true;
       setText(previousText, previousBufferType);
       sizeChangeInProgress = false;
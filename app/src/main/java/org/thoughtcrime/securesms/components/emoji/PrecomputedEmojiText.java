@@ -0,0 +1,121 @@
+package org.thoughtcrime.securesms.components.emoji;
+
+import android.content.Context;
+import android.os.Build;
+import android.text.SpannableStringBuilder;
+import android.text.TextPaint;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.core.text.PrecomputedTextCompat;
+
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiParser;
+import org.thoughtcrime.securesms.keyvalue.SignalStore;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Text that has been emojified and measured ahead of time, off the main thread, the way an
+ * {@link EmojiTextView} with the given text metrics would show it. Setting it on such a view with
+ * {@link EmojiTextView#setPrecomputedText(PrecomputedEmojiText)} then only has to break it into
+ * lines, rather than find the emoji and measure every glyph again.
+ */
+public final class PrecomputedEmojiText {
+
+  private final CharSequence          source;
+  private final PrecomputedTextCompat text;
+  private final List<EmojiSpan>       emojiSpans;
+  private final float                 emojiScale;
+  private final boolean               systemEmoji;
+
+  private PrecomputedEmojiText(@NonNull CharSequence source,
+                               @NonNull PrecomputedTextCompat text,
+                               @NonNull List<EmojiSpan> emojiSpans,
+                               float emojiScale,
+                               boolean systemEmoji)
+  {
+    this.source      = source;
+    this.text        = text;
+    this.emojiSpans  = emojiSpans;
+    this.emojiScale  = emojiScale;
+    this.systemEmoji = systemEmoji;
+  }
+
+  /**
+   * @param params      The text metrics of the view the text will be shown in, at its unscaled text size.
+   * @param scaleEmojis Whether that view scales up text that is only a few emoji.
+   */
+  @WorkerThread
+  public static @NonNull PrecomputedEmojiText create(@NonNull Context context,
+                                                     @NonNull CharSequence source,
+                                                     @NonNull PrecomputedTextCompat.Params params,
+                                                     boolean scaleEmojis)
+  {
+    boolean                   systemEmoji = SignalStore.settings().isPreferSystemEmoji();
+    EmojiParser.CandidateList candidates  = EmojiProvider.getCandidates(source);
+    float                     emojiScale  = 1.0f;
+
+    if (scaleEmojis && candidates != null && candidates.allEmojis) {
+      emojiScale = EmojiTextView.getEmojiScale(candidates.size());
+      params     = withTextSize(params, params.getTextPaint().getTextSize() * emojiScale);
+    }
+
+    SpannableStringBuilder text       = new SpannableStringBuilder(source);
+    List<EmojiSpan>        emojiSpans = Collections.emptyList();
+
+    if (!systemEmoji && candidates != null && candidates.size() > 0) {
+      emojiSpans = EmojiProvider.emojify(context, candidates, text, params.getTextPaint());
+    }
+
+    return new PrecomputedEmojiText(source, PrecomputedTextCompat.create(text, params), emojiSpans, emojiScale, systemEmoji);
+  }
+
+  /**
+   * The text as it was before it was emojified.
+   */
+  public @NonNull CharSequence getSource() {
+    return source;
+  }
+
+  /**
+   * The emojified text. Spans that don't affect text metrics, like links, may be added and removed.
+   */
+  public @NonNull PrecomputedTextCompat getText() {
+    return text;
+  }
+
+  public int length() {
+    return text.length();
+  }
+
+  float getEmojiScale() {
+    return emojiScale;
+  }
+
+  public boolean isSystemEmoji() {
+    return systemEmoji;
+  }
+
+  @MainThread
+  void attach(@NonNull EmojiTextView view) {
+    for (EmojiSpan span : emojiSpans) {
+      EmojiProvider.attach(span, view);
+    }
+  }
+
+  private static @NonNull PrecomputedTextCompat.Params withTextSize(@NonNull PrecomputedTextCompat.Params params, float textSize) {
+    TextPaint paint = new TextPaint(params.getTextPaint());
+    paint.setTextSize(textSize);
+
+    PrecomputedTextCompat.Params.Builder builder = new PrecomputedTextCompat.Params.Builder(paint).setTextDirection(params.getTextDirection());
+
+    if (Build.VERSION.SDK_INT >= 23) {
+      builder.setBreakStrategy(params.getBreakStrategy())
+             .setHyphenationFrequency(params.getHyphenationFrequency());
+    }
+
+    return builder.build();
+  }
+}
@@ -180,6 +180,19 @@ class InternalSettingsFragment : DSLSettingsFragment(R.string.preferences__inter
 
       dividerPref()
 
+      sectionHeaderPref(R.string.preferences__internal_database)
+
+      switchPref(
+        title = DSLSettingsText.from(R.string.preferences__internal_database_wal),
+        summary = DSLSettingsText.from(R.string.preferences__internal_database_wal_description),
+        isChecked = state.databaseWal,
+        onClick = {
+          viewModel.setDatabaseWal(!state.databaseWal)
+        }
+      )
+
+      dividerPref()
+
       sectionHeaderPref(R.string.preferences__internal_conversations_and_shortcuts)
 
       clickPref(
@@ -3,8 +3,10 @@ package org.thoughtcrime.securesms.components.settings.app.internal
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.ViewModelProvider
+import org.thoughtcrime.securesms.dependencies.ApplicationDependencies
 import org.thoughtcrime.securesms.keyvalue.InternalValues
 import org.thoughtcrime.securesms.keyvalue.SignalStore
+import org.thoughtcrime.securesms.util.TextSecurePreferences
 import org.thoughtcrime.securesms.util.livedata.Store
 
 class InternalSettingsViewModel(private val repository: InternalSettingsRepository) : ViewModel() {
@@ -65,6 +67,11 @@ class InternalSettingsViewModel(private val repository: InternalSettingsReposito
     refresh()
   }
 
+  fun setDatabaseWal(enabled: Boolean) {
+    TextSecurePreferences.setDatabaseWalEnabled(ApplicationDependencies.getApplication(), enabled)
+    refresh()
+  }
+
   private fun refresh() {
     store.update { getState().copy(emojiVersion = it.emojiVersion) }
   }
@@ -79,6 +86,7 @@ class InternalSettingsViewModel(private val repository: InternalSettingsReposito
     disableAutoMigrationNotification = SignalStore.internalValues().disableGv1AutoMigrateNotification(),
     forceCensorship = SignalStore.internalValues().forcedCensorship(),
     useBuiltInEmojiSet = SignalStore.internalValues().forceBuiltInEmoji(),
+    databaseWal = TextSecurePreferences.isDatabaseWalEnabled(ApplicationDependencies.getApplication()),
     emojiVersion = null
   )
 
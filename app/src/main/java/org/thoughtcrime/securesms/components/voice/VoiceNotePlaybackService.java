@@ -41,7 +41,6 @@ import org.thoughtcrime.securesms.database.MmsSmsDatabase;
 import org.thoughtcrime.securesms.database.model.MmsMessageRecord;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobs.MultiDeviceViewedUpdateJob;
-import org.thoughtcrime.securesms.jobs.SendViewedReceiptJob;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.util.FeatureFlags;
 import org.thoughtcrime.securesms.video.exo.AttachmentMediaSourceFactory;
@@ -223,9 +222,9 @@ public class VoiceNotePlaybackService extends MediaBrowserServiceCompat {
         MessageDatabase.MarkedMessageInfo markedMessageInfo = messageDatabase.setIncomingMessageViewed(messageId);
 
         if (markedMessageInfo != null) {
-          ApplicationDependencies.getJobManager().add(new SendViewedReceiptJob(markedMessageInfo.getThreadId(),
-                                                                               recipientId,
-                                                                               markedMessageInfo.getSyncMessageId().getTimetamp()));
+          ApplicationDependencies.getReceiptAggregator().addViewedReceipt(markedMessageInfo.getThreadId(),
+                                                                          recipientId,
+                                                                          markedMessageInfo.getSyncMessageId().getTimetamp());
           MultiDeviceViewedUpdateJob.enqueue(Collections.singletonList(markedMessageInfo.getSyncMessageId()));
         }
       });
@@ -8,6 +8,7 @@ import androidx.annotation.Nullable;
 import com.annimon.stream.Stream;
 
 import org.signal.core.util.logging.Log;
+import org.signal.paging.PageAnchors;
 import org.signal.paging.PagedDataSource;
 import org.thoughtcrime.securesms.conversation.ConversationData.MessageRequestData;
 import org.thoughtcrime.securesms.conversation.ConversationMessage.ConversationMessageFactory;
@@ -32,20 +33,25 @@ class ConversationDataSource implements PagedDataSource<ConversationMessage> {
 
   private static final String TAG = Log.tag(ConversationDataSource.class);
 
-  private final Context            context;
-  private final long               threadId;
-  private final MessageRequestData messageRequestData;
+  private final Context                             context;
+  private final long                                threadId;
+  private final MessageRequestData                  messageRequestData;
+  private final PageAnchors<MmsSmsDatabase.PageKey> anchors;
 
   ConversationDataSource(@NonNull Context context, long threadId, @NonNull MessageRequestData messageRequestData) {
     this.context            = context;
     this.threadId           = threadId;
     this.messageRequestData = messageRequestData;
+    this.anchors            = new PageAnchors<>();
   }
 
   @Override
   public int size() {
     long startTime = System.currentTimeMillis();
-    int  size      = DatabaseFactory.getMmsSmsDatabase(context).getConversationCount(threadId) + (messageRequestData.includeWarningUpdateMessage() ? 1 : 0);
+
+    anchors.clear();
+
+    int size = getSize();
 
     Log.d(TAG, "size() for thread " + threadId + ": " + (System.currentTimeMillis() - startTime) + " ms");
 
@@ -54,12 +60,17 @@ class ConversationDataSource implements PagedDataSource<ConversationMessage> {
 
   @Override
   public @NonNull List<ConversationMessage> load(int start, int length, @NonNull CancellationSignal cancellationSignal) {
-    Stopwatch           stopwatch     = new Stopwatch("load(" + start + ", " + length + "), thread " + threadId);
-    MmsSmsDatabase      db            = DatabaseFactory.getMmsSmsDatabase(context);
-    List<MessageRecord> records       = new ArrayList<>(length);
-    MentionHelper       mentionHelper = new MentionHelper();
+    Stopwatch                                  stopwatch     = new Stopwatch("load(" + start + ", " + length + "), thread " + threadId);
+    MmsSmsDatabase                             db            = DatabaseFactory.getMmsSmsDatabase(context);
+    List<MessageRecord>                        records       = new ArrayList<>(length);
+    MentionHelper                              mentionHelper = new MentionHelper();
+    long                                       version       = anchors.getVersion();
+    PageAnchors.Anchor<MmsSmsDatabase.PageKey> anchor        = anchors.floor(start - 1);
+
+    MmsSmsDatabase.PageKey after = anchor != null ? anchor.getKey() : null;
+    long                   skip  = anchor != null ? start - anchor.getPosition() - 1 : start;
 
-    try (MmsSmsDatabase.Reader reader = MmsSmsDatabase.readerFor(db.getConversation(threadId, start, length))) {
+    try (MmsSmsDatabase.Reader reader = MmsSmsDatabase.readerFor(db.getConversation(threadId, after, skip, length))) {
       MessageRecord record;
       while ((record = reader.getNext()) != null && !cancellationSignal.isCanceled()) {
         records.add(record);
@@ -67,7 +78,11 @@ class ConversationDataSource implements PagedDataSource<ConversationMessage> {
       }
     }
 
-    if (messageRequestData.includeWarningUpdateMessage() && (start + length >= size())) {
+    if (!cancellationSignal.isCanceled()) {
+      addAnchor(version, start, records);
+    }
+
+    if (messageRequestData.includeWarningUpdateMessage() && (start + length >= getSize())) {
       records.add(new InMemoryMessageRecord.NoGroupsInCommon(threadId, messageRequestData.isGroup()));
     }
 
@@ -82,11 +97,45 @@ class ConversationDataSource implements PagedDataSource<ConversationMessage> {
                                                .toList();
 
     stopwatch.split("conversion");
+
+    if (!cancellationSignal.isCanceled()) {
+      PrecomputedMessageBody.precompute(context, messages);
+    }
+
+    stopwatch.split("precompute");
     stopwatch.stop(TAG);
 
     return messages;
   }
 
+  private int getSize() {
+    return DatabaseFactory.getMmsSmsDatabase(context).getConversationCount(threadId) + (messageRequestData.includeWarningUpdateMessage() ? 1 : 0);
+  }
+
+  /**
+   * Remembers the last row of a page, so the next page can be read by seeking from it. If every row
+   * in the page has the same received date then we can't tell the row's index among the rows with
+   * that date, so no anchor is added.
+   */
+  private void addAnchor(long version, int start, @NonNull List<MessageRecord> records) {
+    if (records.isEmpty()) {
+      return;
+    }
+
+    long lastDateReceived = records.get(records.size() - 1).getDateReceived();
+
+    if (records.get(0).getDateReceived() == lastDateReceived && start > 0) {
+      return;
+    }
+
+    int index = 0;
+    for (int i = records.size() - 2; i >= 0 && records.get(i).getDateReceived() == lastDateReceived; i--) {
+      index++;
+    }
+
+    anchors.put(version, start + records.size() - 1, new MmsSmsDatabase.PageKey(lastDateReceived, index));
+  }
+
   private static class MentionHelper {
 
     private Collection<Long>         messageIds          = new LinkedList<>();
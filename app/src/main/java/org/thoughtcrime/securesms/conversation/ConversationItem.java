@@ -54,6 +54,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.core.content.ContextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -156,7 +157,7 @@ public final class ConversationItem extends RelativeLayout implements BindableCo
   private static final String TAG = Log.tag(ConversationItem.class);
 
   private static final int MAX_MEASURE_CALLS       = 3;
-  private static final int MAX_BODY_DISPLAY_LENGTH = 1000;
+          static final int MAX_BODY_DISPLAY_LENGTH = 1000;
 
   private static final Rect SWIPE_RECT = new Rect();
 
@@ -654,6 +655,8 @@ public final class ConversationItem extends RelativeLayout implements BindableCo
     bodyText.setTextSize(TypedValue.COMPLEX_UNIT_SP, SignalStore.settings().getMessageFontSize());
     bodyText.setMovementMethod(LongClickMovementMethod.getInstance(getContext()));
 
+    PrecomputedMessageBody.setTextMetrics(TextViewCompat.getTextMetricsParams(bodyText));
+
     if (messageRecord.isRemoteDelete()) {
       String deletedMessage = context.getString(messageRecord.isOutgoing() ? R.string.ConversationItem_you_deleted_this_message : R.string.ConversationItem_this_message_was_deleted);
       SpannableString italics = new SpannableString(deletedMessage);
@@ -669,13 +672,6 @@ public final class ConversationItem extends RelativeLayout implements BindableCo
     } else if (isCaptionlessMms(messageRecord)) {
       bodyText.setVisibility(View.GONE);
     } else {
-      Spannable styledText = conversationMessage.getDisplayBody(getContext());
-      if (messageRequestAccepted) {
-        linkifyMessageBody(styledText, batchSelected.isEmpty());
-      }
-      styledText = SearchUtil.getHighlightedSpan(locale, () -> new BackgroundColorSpan(Color.YELLOW), styledText, searchQuery);
-      styledText = SearchUtil.getHighlightedSpan(locale, () -> new ForegroundColorSpan(Color.BLACK), styledText, searchQuery);
-
       if (hasExtraText(messageRecord)) {
         bodyText.setOverflowText(getLongMessageSpan(messageRecord));
       } else {
@@ -688,11 +684,55 @@ public final class ConversationItem extends RelativeLayout implements BindableCo
         bodyText.setMentionBackgroundTint(ContextCompat.getColor(context, R.color.transparent_black_40));
       }
 
-      bodyText.setText(StringUtil.trim(styledText));
+      PrecomputedMessageBody precomputedBody = searchQuery == null ? PrecomputedMessageBody.get(context, conversationMessage) : null;
+
+      if (precomputedBody == null || !setPrecomputedBodyText(precomputedBody, messageRequestAccepted)) {
+        Spannable styledText = conversationMessage.getDisplayBody(getContext());
+        if (messageRequestAccepted) {
+          linkifyMessageBody(styledText, batchSelected.isEmpty());
+        }
+        styledText = SearchUtil.getHighlightedSpan(locale, () -> new BackgroundColorSpan(Color.YELLOW), styledText, searchQuery);
+        styledText = SearchUtil.getHighlightedSpan(locale, () -> new ForegroundColorSpan(Color.BLACK), styledText, searchQuery);
+
+        bodyText.setText(StringUtil.trim(styledText));
+      }
+
       bodyText.setVisibility(View.VISIBLE);
     }
   }
 
+  /**
+   * Sets a body that was emojified and measured ahead of time, with the same clickable links and
+   * mentions that {@link #linkifyMessageBody(Spannable, boolean)} would add.
+   *
+   * @return false if the body view couldn't use it, in which case the body should be set as usual.
+   */
+  private boolean setPrecomputedBodyText(@NonNull PrecomputedMessageBody precomputedBody, boolean messageRequestAccepted) {
+    Spannable text = precomputedBody.getText().getText();
+
+    for (URLSpan span : text.getSpans(0, text.length(), URLSpan.class)) {
+      text.removeSpan(span);
+    }
+
+    for (MentionClickableSpan span : text.getSpans(0, text.length(), MentionClickableSpan.class)) {
+      text.removeSpan(span);
+    }
+
+    if (messageRequestAccepted) {
+      if (batchSelected.isEmpty()) {
+        for (PrecomputedMessageBody.Link link : precomputedBody.getLinks()) {
+          text.setSpan(new InterceptableLongClickCopyLinkSpan(link.getUrl(), urlClickListener), link.getStart(), link.getEnd(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+      }
+
+      for (Annotation annotation : MentionAnnotation.getMentionAnnotations(text)) {
+        text.setSpan(new MentionClickableSpan(RecipientId.from(annotation.getValue())), text.getSpanStart(annotation), text.getSpanEnd(annotation), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+      }
+    }
+
+    return bodyText.setPrecomputedText(precomputedBody.getText());
+  }
+
   private void setMediaAttributes(@NonNull  MessageRecord                messageRecord,
                                   @NonNull  Optional<MessageRecord>      previousRecord,
                                   @NonNull  Optional<MessageRecord>      nextRecord,
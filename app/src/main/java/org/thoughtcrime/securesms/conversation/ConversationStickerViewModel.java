@@ -45,6 +45,7 @@ class ConversationStickerViewModel extends ViewModel {
     };
 
     application.getContentResolver().registerContentObserver(DatabaseContentProviders.StickerPack.CONTENT_URI, true, packObserver);
+    repository.preloadStickersByEmoji();
   }
 
   @NonNull LiveData<List<StickerRecord>> getStickerResults() {
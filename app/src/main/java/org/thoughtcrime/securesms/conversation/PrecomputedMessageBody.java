@@ -0,0 +1,189 @@
+package org.thoughtcrime.securesms.conversation;
+
+import android.content.Context;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.TextUtils;
+import android.text.style.URLSpan;
+import android.text.util.Linkify;
+import android.util.LruCache;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.text.PrecomputedTextCompat;
+
+import org.thoughtcrime.securesms.components.emoji.PrecomputedEmojiText;
+import org.thoughtcrime.securesms.database.model.MessageRecord;
+import org.thoughtcrime.securesms.database.model.MmsMessageRecord;
+import org.thoughtcrime.securesms.keyvalue.SignalStore;
+import org.thoughtcrime.securesms.linkpreview.LinkPreviewUtil;
+import org.thoughtcrime.securesms.util.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The body of a {@link ConversationItem}, emojified and measured ahead of time by
+ * {@link ConversationDataSource} with its links already found, so that binding it doesn't have to
+ * do any of that on the main thread.
+ * <p>
+ * Bodies are cached by message and content. They're made with the text metrics that bodies were
+ * last bound with, so none are made until the first body has been bound, and they're made again
+ * if the font size, emoji setting or anything else about the metrics changes.
+ */
+final class PrecomputedMessageBody {
+
+  private static final int CACHE_SIZE   = 500;
+  private static final int LINK_PATTERN = Linkify.WEB_URLS | Linkify.EMAIL_ADDRESSES | Linkify.PHONE_NUMBERS;
+
+  private static final LruCache<String, PrecomputedMessageBody> CACHE = new LruCache<>(CACHE_SIZE);
+
+  private static volatile PrecomputedTextCompat.Params textMetrics;
+
+  private final CharSequence                 source;
+  private final PrecomputedTextCompat.Params params;
+  private final PrecomputedEmojiText         text;
+  private final List<Link>                   links;
+
+  private PrecomputedMessageBody(@NonNull CharSequence source,
+                                 @NonNull PrecomputedTextCompat.Params params,
+                                 @NonNull PrecomputedEmojiText text,
+                                 @NonNull List<Link> links)
+  {
+    this.source = source;
+    this.params = params;
+    this.text   = text;
+    this.links  = links;
+  }
+
+  /**
+   * Remembers the text metrics of a body view, at its unscaled text size, for bodies made from now on.
+   */
+  @MainThread
+  static void setTextMetrics(@NonNull PrecomputedTextCompat.Params params) {
+    if (!params.equals(textMetrics)) {
+      textMetrics = params;
+    }
+  }
+
+  /**
+   * Makes and caches the bodies of any of the messages that aren't already cached for the current
+   * text metrics and emoji setting.
+   */
+  @WorkerThread
+  static void precompute(@NonNull Context context, @NonNull List<ConversationMessage> messages) {
+    PrecomputedTextCompat.Params params = textMetrics;
+
+    if (params == null) {
+      return;
+    }
+
+    boolean systemEmoji = SignalStore.settings().isPreferSystemEmoji();
+
+    for (ConversationMessage message : messages) {
+      MessageRecord record = message.getMessageRecord();
+
+      if (record.isUpdate() || record.isRemoteDelete() || hasExtraText(record)) {
+        continue;
+      }
+
+      CharSequence source = StringUtil.trim(message.getDisplayBody(context));
+
+      if (source.length() == 0) {
+        continue;
+      }
+
+      String                 key    = getKey(record, source);
+      PrecomputedMessageBody cached = CACHE.get(key);
+
+      if (cached != null && cached.isFor(source) && cached.params.equals(params) && cached.text.isSystemEmoji() == systemEmoji) {
+        continue;
+      }
+
+      PrecomputedEmojiText text = PrecomputedEmojiText.create(context, source, params, true);
+
+      CACHE.put(key, new PrecomputedMessageBody(source, params, text, findLinks(source)));
+    }
+  }
+
+  /**
+   * @return The cached body of the message, if there is one for its current content.
+   */
+  @MainThread
+  static @Nullable PrecomputedMessageBody get(@NonNull Context context, @NonNull ConversationMessage message) {
+    CharSequence           source = StringUtil.trim(message.getDisplayBody(context));
+    PrecomputedMessageBody body   = CACHE.get(getKey(message.getMessageRecord(), source));
+
+    return body != null && body.isFor(source) ? body : null;
+  }
+
+  @NonNull PrecomputedEmojiText getText() {
+    return text;
+  }
+
+  /**
+   * Links that {@link Linkify} finds in the body and that are legal to show.
+   */
+  @NonNull List<Link> getLinks() {
+    return links;
+  }
+
+  private boolean isFor(@NonNull CharSequence source) {
+    return TextUtils.equals(this.source, source);
+  }
+
+  private static boolean hasExtraText(@NonNull MessageRecord record) {
+    return (record.isMms() && ((MmsMessageRecord) record).getSlideDeck().getTextSlide() != null) ||
+           record.getBody().length() > ConversationItem.MAX_BODY_DISPLAY_LENGTH;
+  }
+
+  private static @NonNull String getKey(@NonNull MessageRecord record, @NonNull CharSequence source) {
+    return (record.isMms() ? "MMS::" : "SMS::") + record.getId() + "::" + source.toString().hashCode();
+  }
+
+  private static @NonNull List<Link> findLinks(@NonNull CharSequence source) {
+    Spannable spannable = new SpannableString(source);
+
+    if (!Linkify.addLinks(spannable, LINK_PATTERN)) {
+      return Collections.emptyList();
+    }
+
+    URLSpan[]  urlSpans = spannable.getSpans(0, spannable.length(), URLSpan.class);
+    List<Link> links    = new ArrayList<>(urlSpans.length);
+
+    for (URLSpan urlSpan : urlSpans) {
+      if (LinkPreviewUtil.isLegalUrl(urlSpan.getURL())) {
+        links.add(new Link(urlSpan.getURL(), spannable.getSpanStart(urlSpan), spannable.getSpanEnd(urlSpan)));
+      }
+    }
+
+    return links;
+  }
+
+  static final class Link {
+    private final String url;
+    private final int    start;
+    private final int    end;
+
+    private Link(@NonNull String url, int start, int end) {
+      this.url   = url;
+      this.start = start;
+      this.end   = end;
+    }
+
+    @NonNull String getUrl() {
+      return url;
+    }
+
+    int getStart() {
+      return start;
+    }
+
+    int getEnd() {
+      return end;
+    }
+  }
+}
@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import org.signal.core.util.logging.Log;
+import org.signal.paging.PageAnchors;
 import org.signal.paging.PagedDataSource;
 import org.thoughtcrime.securesms.conversationlist.model.Conversation;
 import org.thoughtcrime.securesms.conversationlist.model.ConversationReader;
@@ -17,6 +18,7 @@ import org.thoughtcrime.securesms.database.ThreadDatabase;
 import org.thoughtcrime.securesms.database.model.ThreadRecord;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.recipients.Recipient;
+import org.thoughtcrime.securesms.util.CursorUtil;
 import org.thoughtcrime.securesms.util.Stopwatch;
 
 import java.util.ArrayList;
@@ -96,6 +98,8 @@ abstract class ConversationListDataSource implements PagedDataSource<Conversatio
   @VisibleForTesting
   static class UnarchivedConversationListDataSource extends ConversationListDataSource {
 
+    private final PageAnchors<ThreadDatabase.PageKey> unpinnedAnchors = new PageAnchors<>();
+
     private int totalCount;
     private int pinnedCount;
     private int archivedCount;
@@ -107,6 +111,8 @@ abstract class ConversationListDataSource implements PagedDataSource<Conversatio
 
     @Override
     protected int getTotalCount() {
+      unpinnedAnchors.clear();
+
       int unarchivedCount = threadDatabase.getUnarchivedConversationListCount();
 
       pinnedCount   = threadDatabase.getPinnedConversationListCount();
@@ -153,7 +159,7 @@ abstract class ConversationListDataSource implements PagedDataSource<Conversatio
       }
 
       long   unpinnedOffset = Math.max(0, offset - pinnedCount - getHeaderOffset());
-      Cursor unpinnedCursor = threadDatabase.getUnarchivedConversationList(false, unpinnedOffset, limit);
+      Cursor unpinnedCursor = getUnpinnedCursor(unpinnedOffset, limit);
       cursors.add(unpinnedCursor);
 
       if (offset + originalLimit >= totalCount && hasArchivedFooter()) {
@@ -165,6 +171,28 @@ abstract class ConversationListDataSource implements PagedDataSource<Conversatio
       return new MergeCursor(cursors.toArray(new Cursor[]{}));
     }
 
+    /**
+     * Seeks from the last unpinned thread of an earlier page when we have one, and remembers the last
+     * thread of this page so the next one can do the same.
+     */
+    private Cursor getUnpinnedCursor(long offset, long limit) {
+      long                                       version = unpinnedAnchors.getVersion();
+      PageAnchors.Anchor<ThreadDatabase.PageKey> anchor  = unpinnedAnchors.floor((int) offset - 1);
+
+      Cursor cursor = anchor != null ? threadDatabase.getUnarchivedConversationList(anchor.getKey(), offset - anchor.getPosition() - 1, limit)
+                                     : threadDatabase.getUnarchivedConversationList(false, offset, limit);
+
+      if (cursor.moveToLast()) {
+        ThreadDatabase.PageKey key = new ThreadDatabase.PageKey(CursorUtil.requireLong(cursor, ThreadDatabase.DATE),
+                                                                CursorUtil.requireLong(cursor, ThreadDatabase.ID));
+        unpinnedAnchors.put(version, (int) offset + cursor.getPosition(), key);
+      }
+
+      cursor.moveToPosition(-1);
+
+      return cursor;
+    }
+
     @VisibleForTesting
     int getHeaderOffset() {
       return (hasPinnedHeader() ? 1 : 0) + (hasUnpinnedHeader() ? 1 : 0);
@@ -60,6 +60,7 @@ import org.thoughtcrime.securesms.util.FileUtils;
 import org.thoughtcrime.securesms.util.JsonUtils;
 import org.thoughtcrime.securesms.util.MediaUtil;
 import org.thoughtcrime.securesms.util.SetUtil;
+import org.thoughtcrime.securesms.util.SqlUtil;
 import org.thoughtcrime.securesms.util.StorageUtil;
 import org.thoughtcrime.securesms.video.EncryptedMediaDataSource;
 import org.whispersystems.libsignal.util.guava.Optional;
@@ -270,6 +271,41 @@ public class AttachmentDatabase extends Database {
     }
   }
 
+  /**
+   * Reads the attachments of many messages with a single indexed query, rather than having them
+   * aggregated into every message row. Each message's attachments are in the same order as
+   * {@link #getAttachmentsForMessage(long)} returns them, and messages without attachments have no
+   * entry in the result. Keep the number of ids below SQLite's bound variable limit.
+   */
+  public @NonNull Map<Long, List<DatabaseAttachment>> getAttachmentsForMessages(@NonNull Collection<Long> mmsIds) {
+    Map<Long, List<DatabaseAttachment>> results = new HashMap<>();
+
+    if (mmsIds.isEmpty()) {
+      return results;
+    }
+
+    SQLiteDatabase database = databaseHelper.getReadableDatabase();
+    SqlUtil.Query  query    = SqlUtil.buildCollectionQuery(MMS_ID, mmsIds);
+
+    try (Cursor cursor = database.query(TABLE_NAME, PROJECTION, query.getWhere(), query.getWhereArgs(), null, null, MMS_ID + " ASC, " + UNIQUE_ID + " ASC, " + ROW_ID + " ASC")) {
+      Columns columns = new Columns(cursor);
+
+      while (cursor.moveToNext()) {
+        DatabaseAttachment       attachment  = readAttachment(cursor, columns);
+        List<DatabaseAttachment> attachments = results.get(attachment.getMmsId());
+
+        if (attachments == null) {
+          attachments = new LinkedList<>();
+          results.put(attachment.getMmsId(), attachments);
+        }
+
+        attachments.add(attachment);
+      }
+    }
+
+    return results;
+  }
+
   public boolean hasAttachment(@NonNull AttachmentId id) {
     SQLiteDatabase database = databaseHelper.getReadableDatabase();
 
@@ -1168,46 +1204,118 @@ public class AttachmentDatabase extends Database {
 
         return result;
       } else {
-        String contentType = cursor.getString(cursor.getColumnIndexOrThrow(CONTENT_TYPE));
-        return Collections.singletonList(new DatabaseAttachment(new AttachmentId(cursor.getLong(cursor.getColumnIndexOrThrow(ROW_ID)),
-                                                                                 cursor.getLong(cursor.getColumnIndexOrThrow(UNIQUE_ID))),
-                                                                cursor.getLong(cursor.getColumnIndexOrThrow(MMS_ID)),
-                                                                !cursor.isNull(cursor.getColumnIndexOrThrow(DATA)),
-                                                                MediaUtil.isImageType(contentType) || MediaUtil.isVideoType(contentType),
-                                                                contentType,
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(TRANSFER_STATE)),
-                                                                cursor.getLong(cursor.getColumnIndexOrThrow(SIZE)),
-                                                                cursor.getString(cursor.getColumnIndexOrThrow(FILE_NAME)),
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(CDN_NUMBER)),
-                                                                cursor.getString(cursor.getColumnIndexOrThrow(CONTENT_LOCATION)),
-                                                                cursor.getString(cursor.getColumnIndexOrThrow(CONTENT_DISPOSITION)),
-                                                                cursor.getString(cursor.getColumnIndexOrThrow(NAME)),
-                                                                cursor.getBlob(cursor.getColumnIndexOrThrow(DIGEST)),
-                                                                cursor.getString(cursor.getColumnIndexOrThrow(FAST_PREFLIGHT_ID)),
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(VOICE_NOTE)) == 1,
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(BORDERLESS)) == 1,
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(VIDEO_GIF)) == 1,
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(WIDTH)),
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(HEIGHT)),
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(QUOTE)) == 1,
-                                                                cursor.getString(cursor.getColumnIndexOrThrow(CAPTION)),
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(STICKER_ID)) >= 0
-                                                                    ? new StickerLocator(CursorUtil.requireString(cursor, STICKER_PACK_ID),
-                                                                                         CursorUtil.requireString(cursor, STICKER_PACK_KEY),
-                                                                                         CursorUtil.requireInt(cursor, STICKER_ID),
-                                                                                         CursorUtil.requireString(cursor, STICKER_EMOJI))
-                                                                    : null,
-                                                                MediaUtil.isAudioType(contentType) ? null : BlurHash.parseOrNull(cursor.getString(cursor.getColumnIndexOrThrow(VISUAL_HASH))),
-                                                                MediaUtil.isAudioType(contentType) ? AudioHash.parseOrNull(cursor.getString(cursor.getColumnIndexOrThrow(VISUAL_HASH))) : null,
-                                                                TransformProperties.parse(cursor.getString(cursor.getColumnIndexOrThrow(TRANSFORM_PROPERTIES))),
-                                                                cursor.getInt(cursor.getColumnIndexOrThrow(DISPLAY_ORDER)),
-                                                                cursor.getLong(cursor.getColumnIndexOrThrow(UPLOAD_TIMESTAMP))));
+        return Collections.singletonList(readAttachment(cursor, new Columns(cursor)));
       }
     } catch (JSONException e) {
       throw new AssertionError(e);
     }
   }
 
+  private static @NonNull DatabaseAttachment readAttachment(@NonNull Cursor cursor, @NonNull Columns columns) {
+    String contentType = cursor.getString(columns.contentType);
+
+    return new DatabaseAttachment(new AttachmentId(cursor.getLong(columns.rowId), cursor.getLong(columns.uniqueId)),
+                                  cursor.getLong(columns.mmsId),
+                                  !cursor.isNull(columns.data),
+                                  MediaUtil.isImageType(contentType) || MediaUtil.isVideoType(contentType),
+                                  contentType,
+                                  cursor.getInt(columns.transferState),
+                                  cursor.getLong(columns.size),
+                                  cursor.getString(columns.fileName),
+                                  cursor.getInt(columns.cdnNumber),
+                                  cursor.getString(columns.contentLocation),
+                                  cursor.getString(columns.contentDisposition),
+                                  cursor.getString(columns.name),
+                                  cursor.getBlob(columns.digest),
+                                  cursor.getString(columns.fastPreflightId),
+                                  cursor.getInt(columns.voiceNote) == 1,
+                                  cursor.getInt(columns.borderless) == 1,
+                                  cursor.getInt(columns.videoGif) == 1,
+                                  cursor.getInt(columns.width),
+                                  cursor.getInt(columns.height),
+                                  cursor.getInt(columns.quote) == 1,
+                                  cursor.getString(columns.caption),
+                                  cursor.getInt(columns.stickerId) >= 0
+                                      ? new StickerLocator(cursor.getString(columns.stickerPackId),
+                                                           cursor.getString(columns.stickerPackKey),
+                                                           cursor.getInt(columns.stickerId),
+                                                           cursor.getString(columns.stickerEmoji))
+                                      : null,
+                                  MediaUtil.isAudioType(contentType) ? null : BlurHash.parseOrNull(cursor.getString(columns.visualHash)),
+                                  MediaUtil.isAudioType(contentType) ? AudioHash.parseOrNull(cursor.getString(columns.visualHash)) : null,
+                                  TransformProperties.parse(cursor.getString(columns.transformProperties)),
+                                  cursor.getInt(columns.displayOrder),
+                                  cursor.getLong(columns.uploadTimestamp));
+  }
+
+  /**
+   * Column indices for {@link #readAttachment}, resolved once per cursor rather than looked up by
+   * name for every row.
+   */
+  private static final class Columns {
+    private final int contentType;
+    private final int rowId;
+    private final int uniqueId;
+    private final int data;
+    private final int mmsId;
+    private final int transferState;
+    private final int size;
+    private final int fileName;
+    private final int cdnNumber;
+    private final int contentLocation;
+    private final int contentDisposition;
+    private final int name;
+    private final int digest;
+    private final int fastPreflightId;
+    private final int voiceNote;
+    private final int borderless;
+    private final int videoGif;
+    private final int width;
+    private final int height;
+    private final int quote;
+    private final int caption;
+    private final int stickerId;
+    private final int stickerPackId;
+    private final int stickerPackKey;
+    private final int stickerEmoji;
+    private final int visualHash;
+    private final int transformProperties;
+    private final int displayOrder;
+    private final int uploadTimestamp;
+
+    private Columns(@NonNull Cursor cursor) {
+      this.contentType         = cursor.getColumnIndex(CONTENT_TYPE);
+      this.rowId               = cursor.getColumnIndex(ROW_ID);
+      this.uniqueId            = cursor.getColumnIndex(UNIQUE_ID);
+      this.data                = cursor.getColumnIndex(DATA);
+      this.mmsId               = cursor.getColumnIndex(MMS_ID);
+      this.transferState       = cursor.getColumnIndex(TRANSFER_STATE);
+      this.size                = cursor.getColumnIndex(SIZE);
+      this.fileName            = cursor.getColumnIndex(FILE_NAME);
+      this.cdnNumber           = cursor.getColumnIndex(CDN_NUMBER);
+      this.contentLocation     = cursor.getColumnIndex(CONTENT_LOCATION);
+      this.contentDisposition  = cursor.getColumnIndex(CONTENT_DISPOSITION);
+      this.name                = cursor.getColumnIndex(NAME);
+      this.digest              = cursor.getColumnIndex(DIGEST);
+      this.fastPreflightId     = cursor.getColumnIndex(FAST_PREFLIGHT_ID);
+      this.voiceNote           = cursor.getColumnIndex(VOICE_NOTE);
+      this.borderless          = cursor.getColumnIndex(BORDERLESS);
+      this.videoGif            = cursor.getColumnIndex(VIDEO_GIF);
+      this.width               = cursor.getColumnIndex(WIDTH);
+      this.height              = cursor.getColumnIndex(HEIGHT);
+      this.quote               = cursor.getColumnIndex(QUOTE);
+      this.caption             = cursor.getColumnIndex(CAPTION);
+      this.stickerId           = cursor.getColumnIndex(STICKER_ID);
+      this.stickerPackId       = cursor.getColumnIndex(STICKER_PACK_ID);
+      this.stickerPackKey      = cursor.getColumnIndex(STICKER_PACK_KEY);
+      this.stickerEmoji        = cursor.getColumnIndex(STICKER_EMOJI);
+      this.visualHash          = cursor.getColumnIndex(VISUAL_HASH);
+      this.transformProperties = cursor.getColumnIndex(TRANSFORM_PROPERTIES);
+      this.displayOrder        = cursor.getColumnIndex(DISPLAY_ORDER);
+      this.uploadTimestamp     = cursor.getColumnIndex(UPLOAD_TIMESTAMP);
+    }
+  }
+
   private AttachmentId insertAttachment(long mmsId, Attachment attachment, boolean quote)
       throws MmsException
   {
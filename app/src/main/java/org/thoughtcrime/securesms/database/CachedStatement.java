@@ -0,0 +1,170 @@
+package org.thoughtcrime.securesms.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.sqlcipher.database.SQLiteStatement;
+
+/**
+ * An insert or update over a fixed set of columns, run with
+ * {@link SQLiteDatabase#insert(CachedStatement, Binder)} or
+ * {@link SQLiteDatabase#update(CachedStatement, Binder)}. Its compiled form is kept for reuse, and
+ * its arguments are bound directly in column order rather than going through
+ * {@link android.content.ContentValues}.
+ * <p>
+ * Meant to be created once, as a constant, by tables with hot write paths.
+ */
+public final class CachedStatement {
+
+  private static final String[] CONFLICT_VALUES = { "", " OR ROLLBACK", " OR ABORT", " OR FAIL", " OR IGNORE", " OR REPLACE" };
+
+  private final String  table;
+  private final String  sql;
+  private final String  explainSql;
+  private final int     argumentCount;
+  private final boolean insert;
+
+  private CachedStatement(@NonNull String table, @NonNull String sql, @Nullable String explainSql, int argumentCount, boolean insert) {
+    this.table         = table;
+    this.sql           = sql;
+    this.explainSql    = explainSql;
+    this.argumentCount = argumentCount;
+    this.insert        = insert;
+  }
+
+  public static @NonNull CachedStatement insert(@NonNull String table, @NonNull String... columns) {
+    return insert(table, SQLiteDatabase.CONFLICT_NONE, columns);
+  }
+
+  public static @NonNull CachedStatement insert(@NonNull String table, int conflictAlgorithm, @NonNull String... columns) {
+    StringBuilder sql = new StringBuilder("INSERT").append(CONFLICT_VALUES[conflictAlgorithm])
+                                                   .append(" INTO ").append(table).append(" (");
+
+    for (int i = 0; i < columns.length; i++) {
+      sql.append(i == 0 ? "" : ", ").append(columns[i]);
+    }
+
+    sql.append(") VALUES (");
+
+    for (int i = 0; i < columns.length; i++) {
+      sql.append(i == 0 ? "?" : ", ?");
+    }
+
+    sql.append(")");
+
+    return new CachedStatement(table, sql.toString(), null, columns.length, true);
+  }
+
+  /**
+   * @param whereClause Arguments for the where clause are bound after the ones for the columns.
+   */
+  public static @NonNull CachedStatement update(@NonNull String table, @NonNull String whereClause, @NonNull String... columns) {
+    StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+
+    for (int i = 0; i < columns.length; i++) {
+      sql.append(i == 0 ? "" : ", ").append(columns[i]).append(" = ?");
+    }
+
+    sql.append(" WHERE ").append(whereClause);
+
+    return new CachedStatement(table, sql.toString(), "SELECT rowid FROM " + table + " WHERE " + whereClause, columns.length + countArguments(whereClause), false);
+  }
+
+  @NonNull String getTable() {
+    return table;
+  }
+
+  @NonNull String getSql() {
+    return sql;
+  }
+
+  /**
+   * A statement with the same plan, for the {@link QueryProfiler}.
+   */
+  @Nullable String getExplainSql() {
+    return explainSql;
+  }
+
+  boolean isInsert() {
+    return insert;
+  }
+
+  void bind(@NonNull SQLiteStatement statement, @NonNull Binder binder) {
+    Arguments arguments = new Arguments(statement);
+
+    statement.clearBindings();
+    binder.bind(arguments);
+
+    if (arguments.index != argumentCount) {
+      throw new IllegalArgumentException("Bound " + arguments.index + " arguments, expected " + argumentCount + " for: " + sql);
+    }
+  }
+
+  private static int countArguments(@NonNull String whereClause) {
+    int count = 0;
+
+    for (int i = 0; i < whereClause.length(); i++) {
+      if (whereClause.charAt(i) == '?') {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  public interface Binder {
+    void bind(@NonNull Arguments arguments);
+  }
+
+  /**
+   * Binds arguments in order: the columns the statement was created with, then for updates, the
+   * where clause.
+   */
+  public static final class Arguments {
+
+    private final SQLiteStatement statement;
+
+    private int index;
+
+    private Arguments(@NonNull SQLiteStatement statement) {
+      this.statement = statement;
+    }
+
+    public @NonNull Arguments add(long value) {
+      statement.bindLong(++index, value);
+      return this;
+    }
+
+    public @NonNull Arguments add(boolean value) {
+      return add(value ? 1 : 0);
+    }
+
+    public @NonNull Arguments add(double value) {
+      statement.bindDouble(++index, value);
+      return this;
+    }
+
+    public @NonNull Arguments add(@Nullable String value) {
+      if (value == null) {
+        return addNull();
+      }
+
+      statement.bindString(++index, value);
+      return this;
+    }
+
+    public @NonNull Arguments add(@Nullable byte[] value) {
+      if (value == null) {
+        return addNull();
+      }
+
+      statement.bindBlob(++index, value);
+      return this;
+    }
+
+    public @NonNull Arguments addNull() {
+      statement.bindNull(++index);
+      return this;
+    }
+  }
+}
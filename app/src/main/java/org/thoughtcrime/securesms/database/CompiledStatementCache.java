@@ -0,0 +1,64 @@
+package org.thoughtcrime.securesms.database;
+
+import androidx.annotation.NonNull;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statements compiled against the writable connection, kept so that a {@link CachedStatement} is
+ * only parsed and planned the first time it is run.
+ * <p>
+ * A compiled statement belongs to the connection it was compiled on and holds its bindings between
+ * uses, so it may only be used while holding that connection's lock. If the connection changes, the
+ * statements compiled against the old one are dropped.
+ */
+public final class CompiledStatementCache {
+
+  private static final int MAX_SIZE = 64;
+
+  private final Map<String, SQLiteStatement> statements;
+
+  private SQLiteDatabase connection;
+
+  public CompiledStatementCache() {
+    this.statements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+        if (size() > MAX_SIZE) {
+          eldest.getValue().close();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  synchronized @NonNull SQLiteStatement get(@NonNull SQLiteDatabase db, @NonNull String sql) {
+    if (connection != db) {
+      clear();
+      connection = db;
+    }
+
+    SQLiteStatement statement = statements.get(sql);
+
+    if (statement == null) {
+      statement = db.compileStatement(sql);
+      statements.put(sql, statement);
+    }
+
+    return statement;
+  }
+
+  public synchronized void clear() {
+    for (SQLiteStatement statement : statements.values()) {
+      statement.close();
+    }
+
+    statements.clear();
+    connection = null;
+  }
+}
@@ -253,6 +253,13 @@ public class DatabaseFactory {
     databaseHelper.getWritableDatabase();
   }
 
+  /**
+   * Checkpoints the write-ahead log, if the database is using one.
+   */
+  public void checkpoint() {
+    databaseHelper.checkpoint();
+  }
+
   public SQLiteDatabase getRawDatabase() {
     return databaseHelper.getWritableDatabase().getSqlCipherDatabase();
   }
@@ -39,6 +39,9 @@ public class GroupReceiptDatabase extends Database {
       "CREATE INDEX IF NOT EXISTS group_receipt_mms_id_index ON " + TABLE_NAME + " (" + MMS_ID + ");",
   };
 
+  private static final CachedStatement INSERT = CachedStatement.insert(TABLE_NAME, MMS_ID, RECIPIENT_ID, STATUS, TIMESTAMP);
+  private static final CachedStatement UPDATE = CachedStatement.update(TABLE_NAME, MMS_ID + " = ? AND " + RECIPIENT_ID + " = ? AND " + STATUS + " < ?", STATUS, TIMESTAMP);
+
   public GroupReceiptDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
     super(context, databaseHelper);
   }
@@ -49,13 +52,10 @@ public class GroupReceiptDatabase extends Database {
     db.beginTransaction();
     try {
       for (RecipientId recipientId : recipientIds) {
-        ContentValues values = new ContentValues(4);
-        values.put(MMS_ID, mmsId);
-        values.put(RECIPIENT_ID, recipientId.serialize());
-        values.put(STATUS, status);
-        values.put(TIMESTAMP, timestamp);
-
-        db.insert(TABLE_NAME, null, values);
+        db.insert(INSERT, args -> args.add(mmsId)
+                                      .add(recipientId.toLong())
+                                      .add(status)
+                                      .add(timestamp));
       }
       db.setTransactionSuccessful();
     } finally {
@@ -64,13 +64,13 @@ public class GroupReceiptDatabase extends Database {
   }
 
   public void update(@NonNull RecipientId recipientId, long mmsId, int status, long timestamp) {
-    SQLiteDatabase db     = databaseHelper.getWritableDatabase();
-    ContentValues  values = new ContentValues(2);
-    values.put(STATUS, status);
-    values.put(TIMESTAMP, timestamp);
+    SQLiteDatabase db = databaseHelper.getWritableDatabase();
 
-    db.update(TABLE_NAME, values, MMS_ID + " = ? AND " + RECIPIENT_ID + " = ? AND " + STATUS + " < ?",
-              new String[] {String.valueOf(mmsId), recipientId.serialize(), String.valueOf(status)});
+    db.update(UPDATE, args -> args.add(status)
+                                  .add(timestamp)
+                                  .add(mmsId)
+                                  .add(recipientId.toLong())
+                                  .add(status));
   }
 
   public void setUnidentified(Collection<Pair<RecipientId, Boolean>> results, long mmsId) {
@@ -5,6 +5,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.annimon.stream.Stream;
 
@@ -19,7 +20,12 @@ import org.thoughtcrime.securesms.jobmanager.persistence.DependencySpec;
 import org.thoughtcrime.securesms.jobmanager.persistence.FullSpec;
 import org.thoughtcrime.securesms.jobmanager.persistence.JobSpec;
 import org.thoughtcrime.securesms.util.CursorUtil;
+import org.thoughtcrime.securesms.util.SqlUtil;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -29,6 +35,7 @@ public class JobDatabase extends SQLiteOpenHelper implements SignalDatabase {
 
   private static final int    DATABASE_VERSION = 1;
   private static final String DATABASE_NAME    = "signal-jobmanager.db";
+  private static final int    ID_BATCH_SIZE    = 500;
 
   private static final class Jobs {
     private static final String TABLE_NAME            = "job_spec";
@@ -57,6 +64,8 @@ public class JobDatabase extends SQLiteOpenHelper implements SignalDatabase {
                                                                                     SERIALIZED_DATA       + " TEXT, " +
                                                                                     SERIALIZED_INPUT_DATA + " TEXT DEFAULT NULL, " +
                                                                                     IS_RUNNING            + " INTEGER)";
+
+    private static final String[] PROJECTION_WITHOUT_DATA = new String[] { JOB_SPEC_ID, FACTORY_KEY, QUEUE_KEY, CREATE_TIME, NEXT_RUN_ATTEMPT_TIME, RUN_ATTEMPT, MAX_ATTEMPTS, LIFESPAN, IS_RUNNING };
   }
 
   private static final class Constraints {
@@ -167,10 +176,14 @@ public class JobDatabase extends SQLiteOpenHelper implements SignalDatabase {
     }
   }
 
+  /**
+   * Reads every job without its serialized data, which is only needed once a job runs and makes up
+   * most of what's stored. Use {@link #getJobSpecs(Collection)} to read the data when it's needed.
+   */
   public synchronized @NonNull List<JobSpec> getAllJobSpecs() {
     List<JobSpec> jobs = new LinkedList<>();
 
-    try (Cursor cursor = getReadableDatabase().query(Jobs.TABLE_NAME, null, null, null, null, null, Jobs.CREATE_TIME + ", " + Jobs.ID + " ASC")) {
+    try (Cursor cursor = getReadableDatabase().query(Jobs.TABLE_NAME, Jobs.PROJECTION_WITHOUT_DATA, null, null, null, null, Jobs.CREATE_TIME + ", " + Jobs.ID + " ASC")) {
       while (cursor != null && cursor.moveToNext()) {
         jobs.add(jobSpecFromCursor(cursor));
       }
@@ -179,6 +192,32 @@ public class JobDatabase extends SQLiteOpenHelper implements SignalDatabase {
     return jobs;
   }
 
+  /**
+   * Reads the given jobs with their serialized data.
+   */
+  public synchronized @NonNull List<JobSpec> getJobSpecs(@NonNull Collection<String> ids) {
+    List<JobSpec> jobs  = new ArrayList<>(ids.size());
+    List<String>  batch = new ArrayList<>(ID_BATCH_SIZE);
+
+    for (Iterator<String> iterator = ids.iterator(); iterator.hasNext(); ) {
+      batch.add(iterator.next());
+
+      if (batch.size() == ID_BATCH_SIZE || !iterator.hasNext()) {
+        SqlUtil.Query query = SqlUtil.buildCollectionQuery(Jobs.JOB_SPEC_ID, batch);
+
+        try (Cursor cursor = getReadableDatabase().query(Jobs.TABLE_NAME, null, query.getWhere(), query.getWhereArgs(), null, null, null)) {
+          while (cursor != null && cursor.moveToNext()) {
+            jobs.add(jobSpecFromCursor(cursor));
+          }
+        }
+
+        batch.clear();
+      }
+    }
+
+    return jobs;
+  }
+
   public synchronized void updateJobRunningState(@NonNull String id, boolean isRunning) {
     ContentValues contentValues = new ContentValues();
     contentValues.put(Jobs.IS_RUNNING, isRunning ? 1 : 0);
@@ -189,7 +228,7 @@ public class JobDatabase extends SQLiteOpenHelper implements SignalDatabase {
     getWritableDatabase().update(Jobs.TABLE_NAME, contentValues, query, args);
   }
 
-  public synchronized void updateJobAfterRetry(@NonNull String id, boolean isRunning, int runAttempt, long nextRunAttemptTime, @NonNull String serializedData) {
+  public synchronized void updateJobAfterRetry(@NonNull String id, boolean isRunning, int runAttempt, long nextRunAttemptTime, @NonNull byte[] serializedData) {
     ContentValues contentValues = new ContentValues();
     contentValues.put(Jobs.IS_RUNNING, isRunning ? 1 : 0);
     contentValues.put(Jobs.RUN_ATTEMPT, runAttempt);
@@ -231,10 +270,13 @@ public class JobDatabase extends SQLiteOpenHelper implements SignalDatabase {
               values.put(Jobs.RUN_ATTEMPT, job.getRunAttempt());
               values.put(Jobs.MAX_ATTEMPTS, job.getMaxAttempts());
               values.put(Jobs.LIFESPAN, job.getLifespan());
-              values.put(Jobs.SERIALIZED_DATA, job.getSerializedData());
-              values.put(Jobs.SERIALIZED_INPUT_DATA, job.getSerializedInputData());
               values.put(Jobs.IS_RUNNING, job.isRunning() ? 1 : 0);
 
+              if (job.getSerializedData() != null) {
+                values.put(Jobs.SERIALIZED_DATA, job.getSerializedData());
+                values.put(Jobs.SERIALIZED_INPUT_DATA, job.getSerializedInputData());
+              }
+
               String   query = Jobs.JOB_SPEC_ID + " = ?";
               String[] args  = new String[]{ job.getId() };
 
@@ -344,12 +386,28 @@ public class JobDatabase extends SQLiteOpenHelper implements SignalDatabase {
                        cursor.getInt(cursor.getColumnIndexOrThrow(Jobs.RUN_ATTEMPT)),
                        cursor.getInt(cursor.getColumnIndexOrThrow(Jobs.MAX_ATTEMPTS)),
                        cursor.getLong(cursor.getColumnIndexOrThrow(Jobs.LIFESPAN)),
-                       cursor.getString(cursor.getColumnIndexOrThrow(Jobs.SERIALIZED_DATA)),
-                       cursor.getString(cursor.getColumnIndexOrThrow(Jobs.SERIALIZED_INPUT_DATA)),
+                       getData(cursor, Jobs.SERIALIZED_DATA),
+                       getData(cursor, Jobs.SERIALIZED_INPUT_DATA),
                        cursor.getInt(cursor.getColumnIndexOrThrow(Jobs.IS_RUNNING)) == 1,
                        false);
   }
 
+  /**
+   * Data is stored as a blob, but jobs written before that still have JSON text, which is read back
+   * as its bytes. Null if the column wasn't queried.
+   */
+  private static @Nullable byte[] getData(@NonNull Cursor cursor, @NonNull String column) {
+    int index = cursor.getColumnIndex(column);
+
+    if (index < 0 || cursor.isNull(index)) {
+      return null;
+    } else if (cursor.getType(index) == Cursor.FIELD_TYPE_BLOB) {
+      return cursor.getBlob(index);
+    } else {
+      return cursor.getString(index).getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
   private @NonNull ConstraintSpec constraintSpecFromCursor(@NonNull Cursor cursor) {
     return new ConstraintSpec(cursor.getString(cursor.getColumnIndexOrThrow(Constraints.JOB_SPEC_ID)),
                               cursor.getString(cursor.getColumnIndexOrThrow(Constraints.FACTORY_KEY)),
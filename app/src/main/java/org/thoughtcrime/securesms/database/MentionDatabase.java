@@ -1,6 +1,5 @@
 package org.thoughtcrime.securesms.database;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.text.TextUtils;
@@ -45,6 +44,8 @@ public class MentionDatabase extends Database {
     "CREATE INDEX IF NOT EXISTS mention_recipient_id_thread_id_index ON " + TABLE_NAME + " (" + RECIPIENT_ID + ", " + THREAD_ID + ");"
   };
 
+  private static final CachedStatement INSERT = CachedStatement.insert(TABLE_NAME, THREAD_ID, MESSAGE_ID, RECIPIENT_ID, RANGE_START, RANGE_LENGTH);
+
   public MentionDatabase(@NonNull Context context, @NonNull SQLCipherOpenHelper databaseHelper) {
     super(context, databaseHelper);
   }
@@ -55,13 +56,11 @@ public class MentionDatabase extends Database {
     db.beginTransaction();
     try {
       for (Mention mention : mentions) {
-        ContentValues values = new ContentValues();
-        values.put(THREAD_ID, threadId);
-        values.put(MESSAGE_ID, messageId);
-        values.put(RECIPIENT_ID, mention.getRecipientId().toLong());
-        values.put(RANGE_START, mention.getStart());
-        values.put(RANGE_LENGTH, mention.getLength());
-        db.insert(TABLE_NAME, null, values);
+        db.insert(INSERT, args -> args.add(threadId)
+                                      .add(messageId)
+                                      .add(mention.getRecipientId().toLong())
+                                      .add(mention.getStart())
+                                      .add(mention.getLength()));
       }
 
       db.setTransactionSuccessful();
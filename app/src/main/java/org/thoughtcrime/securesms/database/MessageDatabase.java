@@ -404,18 +404,23 @@ public abstract class MessageDatabase extends Database implements MmsSmsColumns
   }
 
   protected static List<ReactionRecord> parseReactions(@NonNull Cursor cursor) {
-    byte[] raw = cursor.getBlob(cursor.getColumnIndexOrThrow(REACTIONS));
+    return parseReactions(cursor.getBlob(cursor.getColumnIndexOrThrow(REACTIONS)));
+  }
 
+  protected static List<ReactionRecord> parseReactions(@Nullable byte[] raw) {
     if (raw != null) {
       try {
-        return Stream.of(ReactionList.parseFrom(raw).getReactionsList())
-                     .map(r -> {
-                       return new ReactionRecord(r.getEmoji(),
-                                                 RecipientId.from(r.getAuthor()),
-                                                 r.getSentTime(),
-                                                 r.getReceivedTime());
-                     })
-                     .toList();
+        List<ReactionList.Reaction> parsed    = ReactionList.parseFrom(raw).getReactionsList();
+        List<ReactionRecord>        reactions = new ArrayList<>(parsed.size());
+
+        for (ReactionList.Reaction r : parsed) {
+          reactions.add(new ReactionRecord(r.getEmoji(),
+                                           RecipientId.from(r.getAuthor()),
+                                           r.getSentTime(),
+                                           r.getReceivedTime()));
+        }
+
+        return reactions;
       } catch (InvalidProtocolBufferException e) {
         Log.w(TAG, "[parseReactions] Failed to parse reaction list!", e);
         return Collections.emptyList();
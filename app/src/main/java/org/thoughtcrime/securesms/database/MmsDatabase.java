@@ -42,6 +42,7 @@ import org.thoughtcrime.securesms.attachments.MmsNotificationAttachment;
 import org.thoughtcrime.securesms.contactshare.Contact;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatch;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatchList;
+import org.thoughtcrime.securesms.database.documents.LazyDocumentList;
 import org.thoughtcrime.securesms.database.documents.NetworkFailure;
 import org.thoughtcrime.securesms.database.documents.NetworkFailureList;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
@@ -1156,9 +1157,9 @@ public class MmsDatabase extends MessageDatabase {
         boolean           quoteMissing       = cursor.getInt(cursor.getColumnIndexOrThrow(QUOTE_MISSING)) == 1;
         List<Attachment>  quoteAttachments   = Stream.of(associatedAttachments).filter(Attachment::isQuote).map(a -> (Attachment)a).toList();
         List<Mention>     quoteMentions      = parseQuoteMentions(context, cursor);
-        List<Contact>     contacts           = getSharedContacts(cursor, associatedAttachments);
+        List<Contact>     contacts           = getSharedContacts(CursorUtil.requireString(cursor, SHARED_CONTACTS), associatedAttachments);
         Set<Attachment>   contactAttachments = new HashSet<>(Stream.of(contacts).map(Contact::getAvatarAttachment).filter(a -> a != null).toList());
-        List<LinkPreview> previews           = getLinkPreviews(cursor, associatedAttachments);
+        List<LinkPreview> previews           = getLinkPreviews(CursorUtil.requireString(cursor, LINK_PREVIEWS), associatedAttachments);
         Set<Attachment>   previewAttachments = Stream.of(previews).filter(lp -> lp.getThumbnail().isPresent()).map(lp -> lp.getThumbnail().get()).collect(Collectors.toSet());
         List<Attachment>  attachments        = Stream.of(associatedAttachments).filterNot(Attachment::isQuote)
                                                                                .filterNot(contactAttachments::contains)
@@ -1215,9 +1216,7 @@ public class MmsDatabase extends MessageDatabase {
     }
   }
 
-  private static List<Contact> getSharedContacts(@NonNull Cursor cursor, @NonNull List<DatabaseAttachment> attachments) {
-    String serializedContacts = cursor.getString(cursor.getColumnIndexOrThrow(SHARED_CONTACTS));
-
+  private static List<Contact> getSharedContacts(@Nullable String serializedContacts, @NonNull List<DatabaseAttachment> attachments) {
     if (TextUtils.isEmpty(serializedContacts)) {
       return Collections.emptyList();
     }
@@ -1253,9 +1252,7 @@ public class MmsDatabase extends MessageDatabase {
     return Collections.emptyList();
   }
 
-  private static List<LinkPreview> getLinkPreviews(@NonNull Cursor cursor, @NonNull List<DatabaseAttachment> attachments) {
-    String serializedPreviews = cursor.getString(cursor.getColumnIndexOrThrow(LINK_PREVIEWS));
-
+  private static List<LinkPreview> getLinkPreviews(@Nullable String serializedPreviews, @NonNull List<DatabaseAttachment> attachments) {
     if (TextUtils.isEmpty(serializedPreviews)) {
       return Collections.emptyList();
     }
@@ -1958,12 +1955,24 @@ public class MmsDatabase extends MessageDatabase {
 
   public static class Reader implements MessageDatabase.Reader {
 
+    private static final int ATTACHMENT_BATCH_SIZE = 500;
+
     private final Cursor  cursor;
     private final Context context;
+    private final Columns columns;
+    private final boolean readReceiptsEnabled;
+    private final boolean hasAttachmentJson;
+
+    private Map<Long, List<DatabaseAttachment>> attachmentBatch      = Collections.emptyMap();
+    private int                                 attachmentBatchStart = -1;
+    private int                                 attachmentBatchEnd   = -1;
 
     public Reader(Cursor cursor) {
-      this.cursor  = cursor;
-      this.context = ApplicationDependencies.getApplication();
+      this.cursor              = cursor;
+      this.context             = ApplicationDependencies.getApplication();
+      this.columns             = cursor != null ? new Columns(cursor) : null;
+      this.readReceiptsEnabled = TextSecurePreferences.isReadReceiptsEnabled(context);
+      this.hasAttachmentJson   = cursor != null && cursor.getColumnIndex(AttachmentDatabase.ATTACHMENT_JSON_ALIAS) != -1;
     }
 
     @Override
@@ -1976,36 +1985,36 @@ public class MmsDatabase extends MessageDatabase {
 
     @Override
     public MessageRecord getCurrent() {
-      long mmsType = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.MESSAGE_TYPE));
+      long mmsType = cursor.getLong(columns.messageType);
 
       if (mmsType == PduHeaders.MESSAGE_TYPE_NOTIFICATION_IND) {
-        return getNotificationMmsMessageRecord(cursor);
+        return getNotificationMmsMessageRecord();
       } else {
-        return getMediaMmsMessageRecord(cursor);
+        return getMediaMmsMessageRecord();
       }
     }
 
-    private NotificationMmsMessageRecord getNotificationMmsMessageRecord(Cursor cursor) {
-      long      id                   = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.ID));
-      long      dateSent             = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.NORMALIZED_DATE_SENT));
-      long      dateReceived         = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.NORMALIZED_DATE_RECEIVED));
-      long      threadId             = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.THREAD_ID));
-      long      mailbox              = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.MESSAGE_BOX));
-      long      recipientId          = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.RECIPIENT_ID));
-      int       addressDeviceId      = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.ADDRESS_DEVICE_ID));
+    private NotificationMmsMessageRecord getNotificationMmsMessageRecord() {
+      long      id                   = cursor.getLong(columns.id);
+      long      dateSent             = cursor.getLong(columns.normalizedDateSent);
+      long      dateReceived         = cursor.getLong(columns.normalizedDateReceived);
+      long      threadId             = cursor.getLong(columns.threadId);
+      long      mailbox              = cursor.getLong(columns.messageBox);
+      long      recipientId          = cursor.getLong(columns.recipientId);
+      int       addressDeviceId      = cursor.getInt(columns.addressDeviceId);
       Recipient recipient            = Recipient.live(RecipientId.from(recipientId)).get();
 
-      String    contentLocation      = cursor.getString(cursor.getColumnIndexOrThrow(MmsDatabase.CONTENT_LOCATION));
-      String    transactionId        = cursor.getString(cursor.getColumnIndexOrThrow(MmsDatabase.TRANSACTION_ID));
-      long      messageSize          = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.MESSAGE_SIZE));
-      long      expiry               = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.EXPIRY));
-      int       status               = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.STATUS));
-      int       deliveryReceiptCount = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.DELIVERY_RECEIPT_COUNT));
-      int       readReceiptCount     = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.READ_RECEIPT_COUNT));
-      int       subscriptionId       = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.SUBSCRIPTION_ID));
-      int       viewedReceiptCount   = cursor.getInt(cursor.getColumnIndexOrThrow(MmsSmsColumns.VIEWED_RECEIPT_COUNT));
-
-      if (!TextSecurePreferences.isReadReceiptsEnabled(context)) {
+      String    contentLocation      = cursor.getString(columns.contentLocation);
+      String    transactionId        = cursor.getString(columns.transactionId);
+      long      messageSize          = cursor.getLong(columns.messageSize);
+      long      expiry               = cursor.getLong(columns.expiry);
+      int       status               = cursor.getInt(columns.status);
+      int       deliveryReceiptCount = cursor.getInt(columns.deliveryReceiptCount);
+      int       readReceiptCount     = cursor.getInt(columns.readReceiptCount);
+      int       subscriptionId       = cursor.getInt(columns.subscriptionId);
+      int       viewedReceiptCount   = cursor.getInt(columns.viewedReceiptCount);
+
+      if (!readReceiptsEnabled) {
         readReceiptCount = 0;
       }
 
@@ -2028,47 +2037,45 @@ public class MmsDatabase extends MessageDatabase {
                                               readReceiptCount, viewedReceiptCount);
     }
 
-    private MediaMmsMessageRecord getMediaMmsMessageRecord(Cursor cursor) {
-      long                 id                   = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.ID));
-      long                 dateSent             = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.NORMALIZED_DATE_SENT));
-      long                 dateReceived         = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.NORMALIZED_DATE_RECEIVED));
-      long                 dateServer           = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.DATE_SERVER));
-      long                 box                  = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.MESSAGE_BOX));
-      long                 threadId             = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.THREAD_ID));
-      long                 recipientId          = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.RECIPIENT_ID));
-      int                  addressDeviceId      = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.ADDRESS_DEVICE_ID));
-      int                  deliveryReceiptCount = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.DELIVERY_RECEIPT_COUNT));
-      int                  readReceiptCount     = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.READ_RECEIPT_COUNT));
-      String               body                 = cursor.getString(cursor.getColumnIndexOrThrow(MmsDatabase.BODY));
-      int                  partCount            = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.PART_COUNT));
-      String               mismatchDocument     = cursor.getString(cursor.getColumnIndexOrThrow(MmsDatabase.MISMATCHED_IDENTITIES));
-      String               networkDocument      = cursor.getString(cursor.getColumnIndexOrThrow(MmsDatabase.NETWORK_FAILURE));
-      int                  subscriptionId       = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.SUBSCRIPTION_ID));
-      long                 expiresIn            = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.EXPIRES_IN));
-      long                 expireStarted        = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.EXPIRE_STARTED));
-      boolean              unidentified         = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.UNIDENTIFIED)) == 1;
-      boolean              isViewOnce           = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.VIEW_ONCE))   == 1;
-      boolean              remoteDelete         = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.REMOTE_DELETED))   == 1;
-      List<ReactionRecord> reactions            = parseReactions(cursor);
-      boolean              mentionsSelf         = CursorUtil.requireBoolean(cursor, MENTIONS_SELF);
-      long                 notifiedTimestamp    = CursorUtil.requireLong(cursor, NOTIFIED_TIMESTAMP);
-      int                  viewedReceiptCount   = cursor.getInt(cursor.getColumnIndexOrThrow(MmsSmsColumns.VIEWED_RECEIPT_COUNT));
-
-      if (!TextSecurePreferences.isReadReceiptsEnabled(context)) {
+    private MediaMmsMessageRecord getMediaMmsMessageRecord() {
+      long                 id                   = cursor.getLong(columns.id);
+      long                 dateSent             = cursor.getLong(columns.normalizedDateSent);
+      long                 dateReceived         = cursor.getLong(columns.normalizedDateReceived);
+      long                 dateServer           = cursor.getLong(columns.dateServer);
+      long                 box                  = cursor.getLong(columns.messageBox);
+      long                 threadId             = cursor.getLong(columns.threadId);
+      long                 recipientId          = cursor.getLong(columns.recipientId);
+      int                  addressDeviceId      = cursor.getInt(columns.addressDeviceId);
+      int                  deliveryReceiptCount = cursor.getInt(columns.deliveryReceiptCount);
+      int                  readReceiptCount     = cursor.getInt(columns.readReceiptCount);
+      String               body                 = cursor.getString(columns.body);
+      int                  partCount            = cursor.getInt(columns.partCount);
+      String               mismatchDocument     = cursor.getString(columns.mismatchedIdentities);
+      String               networkDocument      = cursor.getString(columns.networkFailure);
+      int                  subscriptionId       = cursor.getInt(columns.subscriptionId);
+      long                 expiresIn            = cursor.getLong(columns.expiresIn);
+      long                 expireStarted        = cursor.getLong(columns.expireStarted);
+      boolean              unidentified         = cursor.getInt(columns.unidentified) == 1;
+      boolean              isViewOnce           = cursor.getLong(columns.viewOnce)      == 1;
+      boolean              remoteDelete         = cursor.getLong(columns.remoteDeleted) == 1;
+      List<ReactionRecord> reactions            = parseReactions(cursor.getBlob(columns.reactions));
+      boolean              mentionsSelf         = cursor.getInt(columns.mentionsSelf) != 0;
+      long                 notifiedTimestamp    = cursor.getLong(columns.notifiedTimestamp);
+      int                  viewedReceiptCount   = cursor.getInt(columns.viewedReceiptCount);
+
+      if (!readReceiptsEnabled) {
         readReceiptCount   = 0;
         viewedReceiptCount = 0;
       }
 
       Recipient                 recipient          = Recipient.live(RecipientId.from(recipientId)).get();
-      List<IdentityKeyMismatch> mismatches         = getMismatchedIdentities(mismatchDocument);
-      List<NetworkFailure>      networkFailures    = getFailures(networkDocument);
-      List<DatabaseAttachment>  attachments        = DatabaseFactory.getAttachmentDatabase(context).getAttachment(cursor);
-      List<Contact>             contacts           = getSharedContacts(cursor, attachments);
-      Set<Attachment>           contactAttachments = Stream.of(contacts).map(Contact::getAvatarAttachment).withoutNulls().collect(Collectors.toSet());
-      List<LinkPreview>         previews           = getLinkPreviews(cursor, attachments);
-      Set<Attachment>           previewAttachments = Stream.of(previews).filter(lp -> lp.getThumbnail().isPresent()).map(lp -> lp.getThumbnail().get()).collect(Collectors.toSet());
-      SlideDeck                 slideDeck          = getSlideDeck(Stream.of(attachments).filterNot(contactAttachments::contains).filterNot(previewAttachments::contains).toList());
-      Quote                     quote              = getQuote(cursor);
+      List<IdentityKeyMismatch> mismatches         = LazyDocumentList.identityKeyMismatches(mismatchDocument);
+      List<NetworkFailure>      networkFailures    = LazyDocumentList.networkFailures(networkDocument);
+      List<DatabaseAttachment>  attachments        = getAttachments(id);
+      List<Contact>             contacts           = getSharedContacts(cursor.getString(columns.sharedContacts), attachments);
+      List<LinkPreview>         previews           = getLinkPreviews(cursor.getString(columns.linkPreviews), attachments);
+      SlideDeck                 slideDeck          = getSlideDeck(getMessageAttachments(attachments, contacts, previews));
+      Quote                     quote              = getQuote(attachments);
 
       return new MediaMmsMessageRecord(id, recipient, recipient,
                                        addressDeviceId, dateSent, dateReceived, dateServer, deliveryReceiptCount,
@@ -2078,28 +2085,61 @@ public class MmsDatabase extends MessageDatabase {
                                        remoteDelete, mentionsSelf, notifiedTimestamp, viewedReceiptCount);
     }
 
-    private List<IdentityKeyMismatch> getMismatchedIdentities(String document) {
-      if (!TextUtils.isEmpty(document)) {
-        try {
-          return JsonUtils.fromJson(document, IdentityKeyMismatchList.class).getList();
-        } catch (IOException e) {
-          Log.w(TAG, e);
-        }
+    /**
+     * Queries from this class aggregate each message's attachments into its row. The conversation
+     * query doesn't, so instead we look ahead from the current row and fetch the attachments for the
+     * next batch of messages at once, which covers a whole page with a single query.
+     */
+    private @NonNull List<DatabaseAttachment> getAttachments(long messageId) {
+      if (hasAttachmentJson) {
+        return DatabaseFactory.getAttachmentDatabase(context).getAttachment(cursor);
       }
 
-      return new LinkedList<>();
+      int position = cursor.getPosition();
+
+      if (position < attachmentBatchStart || position >= attachmentBatchEnd) {
+        loadAttachmentBatch(position);
+      }
+
+      List<DatabaseAttachment> attachments = attachmentBatch.get(messageId);
+      return attachments != null ? attachments : Collections.emptyList();
     }
 
-    private List<NetworkFailure> getFailures(String document) {
-      if (!TextUtils.isEmpty(document)) {
-        try {
-          return JsonUtils.fromJson(document, NetworkFailureList.class).getList();
-        } catch (IOException ioe) {
-          Log.w(TAG, ioe);
-        }
+    private void loadAttachmentBatch(int position) {
+      List<Long> messageIds = new ArrayList<>();
+
+      try {
+        do {
+          if (columns.transport == -1 || MmsSmsDatabase.MMS_TRANSPORT.equals(cursor.getString(columns.transport))) {
+            messageIds.add(cursor.getLong(columns.id));
+          }
+        } while (messageIds.size() < ATTACHMENT_BATCH_SIZE && cursor.moveToNext());
+
+        attachmentBatchStart = position;
+        attachmentBatchEnd   = cursor.isAfterLast() ? Integer.MAX_VALUE : cursor.getPosition() + 1;
+      } finally {
+        cursor.moveToPosition(position);
       }
 
-      return new LinkedList<>();
+      attachmentBatch = DatabaseFactory.getAttachmentDatabase(context).getAttachmentsForMessages(messageIds);
+    }
+
+    /**
+     * Most messages have no shared contacts or link previews, in which case every attachment belongs
+     * to the message itself and there's nothing to filter out.
+     */
+    private static @NonNull List<DatabaseAttachment> getMessageAttachments(@NonNull List<DatabaseAttachment> attachments,
+                                                                           @NonNull List<Contact> contacts,
+                                                                           @NonNull List<LinkPreview> previews)
+    {
+      if (contacts.isEmpty() && previews.isEmpty()) {
+        return attachments;
+      }
+
+      Set<Attachment> contactAttachments = Stream.of(contacts).map(Contact::getAvatarAttachment).withoutNulls().collect(Collectors.toSet());
+      Set<Attachment> previewAttachments = Stream.of(previews).filter(lp -> lp.getThumbnail().isPresent()).map(lp -> lp.getThumbnail().get()).collect(Collectors.toSet());
+
+      return Stream.of(attachments).filterNot(contactAttachments::contains).filterNot(previewAttachments::contains).toList();
     }
 
     private SlideDeck getSlideDeck(@NonNull List<DatabaseAttachment> attachments) {
@@ -2110,28 +2150,28 @@ public class MmsDatabase extends MessageDatabase {
       return new SlideDeck(context, messageAttachments);
     }
 
-    private @Nullable Quote getQuote(@NonNull Cursor cursor) {
-      long                       quoteId          = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.QUOTE_ID));
-      long                       quoteAuthor      = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.QUOTE_AUTHOR));
-      CharSequence               quoteText        = cursor.getString(cursor.getColumnIndexOrThrow(MmsDatabase.QUOTE_BODY));
-      boolean                    quoteMissing     = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.QUOTE_MISSING)) == 1;
-      List<Mention>              quoteMentions    = parseQuoteMentions(context, cursor);
-      List<DatabaseAttachment>   attachments      = DatabaseFactory.getAttachmentDatabase(context).getAttachment(cursor);
+    private @Nullable Quote getQuote(@NonNull List<DatabaseAttachment> attachments) {
+      long quoteId     = cursor.getLong(columns.quoteId);
+      long quoteAuthor = cursor.getLong(columns.quoteAuthor);
+
+      if (quoteId <= 0 || quoteAuthor <= 0) {
+        return null;
+      }
+
+      CharSequence               quoteText        = cursor.getString(columns.quoteBody);
+      boolean                    quoteMissing     = cursor.getInt(columns.quoteMissing) == 1;
+      List<Mention>              quoteMentions    = MentionUtil.bodyRangeListToMentions(context, cursor.getBlob(columns.quoteMentions));
       List<? extends Attachment> quoteAttachments = Stream.of(attachments).filter(Attachment::isQuote).toList();
       SlideDeck                  quoteDeck        = new SlideDeck(context, quoteAttachments);
 
-      if (quoteId > 0 && quoteAuthor > 0) {
-        if (quoteText != null && !quoteMentions.isEmpty()) {
-          MentionUtil.UpdatedBodyAndMentions updated = MentionUtil.updateBodyAndMentionsWithDisplayNames(context, quoteText, quoteMentions);
-
-          quoteText     = updated.getBody();
-          quoteMentions = updated.getMentions();
-        }
+      if (quoteText != null && !quoteMentions.isEmpty()) {
+        MentionUtil.UpdatedBodyAndMentions updated = MentionUtil.updateBodyAndMentionsWithDisplayNames(context, quoteText, quoteMentions);
 
-        return new Quote(quoteId, RecipientId.from(quoteAuthor), quoteText, quoteMissing, quoteDeck, quoteMentions);
-      } else {
-        return null;
+        quoteText     = updated.getBody();
+        quoteMentions = updated.getMentions();
       }
+
+      return new Quote(quoteId, RecipientId.from(quoteAuthor), quoteText, quoteMissing, quoteDeck, quoteMentions);
     }
 
     @Override
@@ -2140,6 +2180,92 @@ public class MmsDatabase extends MessageDatabase {
         cursor.close();
       }
     }
+
+    /**
+     * Column indices, resolved once per cursor rather than looked up by name for every row. A column
+     * the cursor doesn't have is -1, which fails when it's read like any other missing column.
+     */
+    private static final class Columns {
+      private final int messageType;
+      private final int id;
+      private final int normalizedDateSent;
+      private final int normalizedDateReceived;
+      private final int threadId;
+      private final int messageBox;
+      private final int recipientId;
+      private final int addressDeviceId;
+      private final int contentLocation;
+      private final int transactionId;
+      private final int messageSize;
+      private final int expiry;
+      private final int status;
+      private final int deliveryReceiptCount;
+      private final int readReceiptCount;
+      private final int subscriptionId;
+      private final int viewedReceiptCount;
+      private final int dateServer;
+      private final int body;
+      private final int partCount;
+      private final int mismatchedIdentities;
+      private final int networkFailure;
+      private final int expiresIn;
+      private final int expireStarted;
+      private final int unidentified;
+      private final int viewOnce;
+      private final int remoteDeleted;
+      private final int reactions;
+      private final int mentionsSelf;
+      private final int notifiedTimestamp;
+      private final int sharedContacts;
+      private final int linkPreviews;
+      private final int quoteId;
+      private final int quoteAuthor;
+      private final int quoteBody;
+      private final int quoteMissing;
+      private final int quoteMentions;
+      private final int transport;
+
+      private Columns(@NonNull Cursor cursor) {
+        this.messageType            = cursor.getColumnIndex(MmsDatabase.MESSAGE_TYPE);
+        this.id                     = cursor.getColumnIndex(MmsDatabase.ID);
+        this.normalizedDateSent     = cursor.getColumnIndex(MmsDatabase.NORMALIZED_DATE_SENT);
+        this.normalizedDateReceived = cursor.getColumnIndex(MmsDatabase.NORMALIZED_DATE_RECEIVED);
+        this.threadId               = cursor.getColumnIndex(MmsDatabase.THREAD_ID);
+        this.messageBox             = cursor.getColumnIndex(MmsDatabase.MESSAGE_BOX);
+        this.recipientId            = cursor.getColumnIndex(MmsDatabase.RECIPIENT_ID);
+        this.addressDeviceId        = cursor.getColumnIndex(MmsDatabase.ADDRESS_DEVICE_ID);
+        this.contentLocation        = cursor.getColumnIndex(MmsDatabase.CONTENT_LOCATION);
+        this.transactionId          = cursor.getColumnIndex(MmsDatabase.TRANSACTION_ID);
+        this.messageSize            = cursor.getColumnIndex(MmsDatabase.MESSAGE_SIZE);
+        this.expiry                 = cursor.getColumnIndex(MmsDatabase.EXPIRY);
+        this.status                 = cursor.getColumnIndex(MmsDatabase.STATUS);
+        this.deliveryReceiptCount   = cursor.getColumnIndex(MmsDatabase.DELIVERY_RECEIPT_COUNT);
+        this.readReceiptCount       = cursor.getColumnIndex(MmsDatabase.READ_RECEIPT_COUNT);
+        this.subscriptionId         = cursor.getColumnIndex(MmsDatabase.SUBSCRIPTION_ID);
+        this.viewedReceiptCount     = cursor.getColumnIndex(MmsSmsColumns.VIEWED_RECEIPT_COUNT);
+        this.dateServer             = cursor.getColumnIndex(MmsDatabase.DATE_SERVER);
+        this.body                   = cursor.getColumnIndex(MmsDatabase.BODY);
+        this.partCount              = cursor.getColumnIndex(MmsDatabase.PART_COUNT);
+        this.mismatchedIdentities   = cursor.getColumnIndex(MmsDatabase.MISMATCHED_IDENTITIES);
+        this.networkFailure         = cursor.getColumnIndex(MmsDatabase.NETWORK_FAILURE);
+        this.expiresIn              = cursor.getColumnIndex(MmsDatabase.EXPIRES_IN);
+        this.expireStarted          = cursor.getColumnIndex(MmsDatabase.EXPIRE_STARTED);
+        this.unidentified           = cursor.getColumnIndex(MmsDatabase.UNIDENTIFIED);
+        this.viewOnce               = cursor.getColumnIndex(MmsDatabase.VIEW_ONCE);
+        this.remoteDeleted          = cursor.getColumnIndex(MmsDatabase.REMOTE_DELETED);
+        this.reactions              = cursor.getColumnIndex(REACTIONS);
+        this.mentionsSelf           = cursor.getColumnIndex(MENTIONS_SELF);
+        this.notifiedTimestamp      = cursor.getColumnIndex(NOTIFIED_TIMESTAMP);
+        this.sharedContacts         = cursor.getColumnIndex(MmsDatabase.SHARED_CONTACTS);
+        this.linkPreviews           = cursor.getColumnIndex(MmsDatabase.LINK_PREVIEWS);
+        this.quoteId                = cursor.getColumnIndex(MmsDatabase.QUOTE_ID);
+        this.quoteAuthor            = cursor.getColumnIndex(MmsDatabase.QUOTE_AUTHOR);
+        this.quoteBody              = cursor.getColumnIndex(MmsDatabase.QUOTE_BODY);
+        this.quoteMissing           = cursor.getColumnIndex(MmsDatabase.QUOTE_MISSING);
+        this.quoteMentions          = cursor.getColumnIndex(MmsDatabase.QUOTE_MENTIONS);
+        this.transport              = cursor.getColumnIndex(MmsSmsDatabase.TRANSPORT);
+      }
+    }
   }
 
   private long generatePduCompatTimestamp() {
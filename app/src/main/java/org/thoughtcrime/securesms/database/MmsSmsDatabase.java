@@ -21,6 +21,7 @@ import android.database.Cursor;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.annimon.stream.Stream;
 
@@ -53,55 +54,57 @@ public class MmsSmsDatabase extends Database {
   public static final String MMS_TRANSPORT = "mms";
   public static final String SMS_TRANSPORT = "sms";
 
-  private static final String[] PROJECTION = {MmsSmsColumns.ID,
-                                              MmsSmsColumns.UNIQUE_ROW_ID,
-                                              SmsDatabase.BODY,
-                                              SmsDatabase.TYPE,
-                                              MmsSmsColumns.THREAD_ID,
-                                              SmsDatabase.RECIPIENT_ID,
-                                              SmsDatabase.ADDRESS_DEVICE_ID,
-                                              SmsDatabase.SUBJECT,
-                                              MmsSmsColumns.NORMALIZED_DATE_SENT,
-                                              MmsSmsColumns.NORMALIZED_DATE_RECEIVED,
-                                              MmsSmsColumns.DATE_SERVER,
-                                              MmsDatabase.MESSAGE_TYPE,
-                                              MmsDatabase.MESSAGE_BOX,
-                                              SmsDatabase.STATUS,
-                                              MmsSmsColumns.UNIDENTIFIED,
-                                              MmsSmsColumns.REACTIONS,
-                                              MmsDatabase.PART_COUNT,
-                                              MmsDatabase.CONTENT_LOCATION,
-                                              MmsDatabase.TRANSACTION_ID,
-                                              MmsDatabase.MESSAGE_SIZE,
-                                              MmsDatabase.EXPIRY,
-                                              MmsDatabase.STATUS,
-                                              MmsSmsColumns.DELIVERY_RECEIPT_COUNT,
-                                              MmsSmsColumns.READ_RECEIPT_COUNT,
-                                              MmsSmsColumns.MISMATCHED_IDENTITIES,
-                                              MmsDatabase.NETWORK_FAILURE,
-                                              MmsSmsColumns.SUBSCRIPTION_ID,
-                                              MmsSmsColumns.EXPIRES_IN,
-                                              MmsSmsColumns.EXPIRE_STARTED,
-                                              MmsSmsColumns.NOTIFIED,
-                                              TRANSPORT,
-                                              AttachmentDatabase.ATTACHMENT_JSON_ALIAS,
-                                              MmsDatabase.QUOTE_ID,
-                                              MmsDatabase.QUOTE_AUTHOR,
-                                              MmsDatabase.QUOTE_BODY,
-                                              MmsDatabase.QUOTE_MISSING,
-                                              MmsDatabase.QUOTE_ATTACHMENT,
-                                              MmsDatabase.QUOTE_MENTIONS,
-                                              MmsDatabase.SHARED_CONTACTS,
-                                              MmsDatabase.LINK_PREVIEWS,
-                                              MmsDatabase.VIEW_ONCE,
-                                              MmsSmsColumns.READ,
-                                              MmsSmsColumns.REACTIONS,
-                                              MmsSmsColumns.REACTIONS_UNREAD,
-                                              MmsSmsColumns.REACTIONS_LAST_SEEN,
-                                              MmsSmsColumns.REMOTE_DELETED,
-                                              MmsDatabase.MENTIONS_SELF,
-                                              MmsSmsColumns.NOTIFIED_TIMESTAMP,
-                                              MmsSmsColumns.VIEWED_RECEIPT_COUNT};
+  private static final String CONVERSATION_ORDER = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC, " + MmsSmsColumns.ID + " DESC, " + TRANSPORT + " DESC";
+
+  @VisibleForTesting
+  static final String[] PROJECTION = {MmsSmsColumns.ID,
+                                      MmsSmsColumns.UNIQUE_ROW_ID,
+                                      SmsDatabase.BODY,
+                                      SmsDatabase.TYPE,
+                                      MmsSmsColumns.THREAD_ID,
+                                      SmsDatabase.RECIPIENT_ID,
+                                      SmsDatabase.ADDRESS_DEVICE_ID,
+                                      SmsDatabase.SUBJECT,
+                                      MmsSmsColumns.NORMALIZED_DATE_SENT,
+                                      MmsSmsColumns.NORMALIZED_DATE_RECEIVED,
+                                      MmsSmsColumns.DATE_SERVER,
+                                      MmsDatabase.MESSAGE_TYPE,
+                                      MmsDatabase.MESSAGE_BOX,
+                                      SmsDatabase.STATUS,
+                                      MmsSmsColumns.UNIDENTIFIED,
+                                      MmsSmsColumns.REACTIONS,
+                                      MmsDatabase.PART_COUNT,
+                                      MmsDatabase.CONTENT_LOCATION,
+                                      MmsDatabase.TRANSACTION_ID,
+                                      MmsDatabase.MESSAGE_SIZE,
+                                      MmsDatabase.EXPIRY,
+                                      MmsDatabase.STATUS,
+                                      MmsSmsColumns.DELIVERY_RECEIPT_COUNT,
+                                      MmsSmsColumns.READ_RECEIPT_COUNT,
+                                      MmsSmsColumns.MISMATCHED_IDENTITIES,
+                                      MmsDatabase.NETWORK_FAILURE,
+                                      MmsSmsColumns.SUBSCRIPTION_ID,
+                                      MmsSmsColumns.EXPIRES_IN,
+                                      MmsSmsColumns.EXPIRE_STARTED,
+                                      MmsSmsColumns.NOTIFIED,
+                                      TRANSPORT,
+                                      MmsDatabase.QUOTE_ID,
+                                      MmsDatabase.QUOTE_AUTHOR,
+                                      MmsDatabase.QUOTE_BODY,
+                                      MmsDatabase.QUOTE_MISSING,
+                                      MmsDatabase.QUOTE_ATTACHMENT,
+                                      MmsDatabase.QUOTE_MENTIONS,
+                                      MmsDatabase.SHARED_CONTACTS,
+                                      MmsDatabase.LINK_PREVIEWS,
+                                      MmsDatabase.VIEW_ONCE,
+                                      MmsSmsColumns.READ,
+                                      MmsSmsColumns.REACTIONS,
+                                      MmsSmsColumns.REACTIONS_UNREAD,
+                                      MmsSmsColumns.REACTIONS_LAST_SEEN,
+                                      MmsSmsColumns.REMOTE_DELETED,
+                                      MmsDatabase.MENTIONS_SELF,
+                                      MmsSmsColumns.NOTIFIED_TIMESTAMP,
+                                      MmsSmsColumns.VIEWED_RECEIPT_COUNT};
 
   public MmsSmsDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
     super(context, databaseHelper);
@@ -137,15 +140,7 @@ public class MmsSmsDatabase extends Database {
   }
 
   public int getMessagePositionOnOrAfterTimestamp(long threadId, long timestamp) {
-    String[] projection = new String[] { "COUNT(*)" };
-    String   selection  = MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " >= " + timestamp;
-
-    try (Cursor cursor = queryTables(projection, selection, null, null)) {
-      if (cursor != null && cursor.moveToNext()) {
-        return cursor.getInt(0);
-      }
-    }
-    return 0;
+    return getMessageCountReceivedSince(threadId, timestamp, true);
   }
 
   public @Nullable MessageRecord getMessageFor(long timestamp, RecipientId author) {
@@ -181,16 +176,101 @@ public class MmsSmsDatabase extends Database {
 
 
   public Cursor getConversation(long threadId, long offset, long limit) {
-    String order     = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC";
     String selection = MmsSmsColumns.THREAD_ID + " = " + threadId;
     String limitStr  = limit > 0 || offset > 0 ? offset + ", " + limit : null;
 
-    Cursor cursor = queryTables(PROJECTION, selection, order, limitStr);
+    Cursor cursor = queryTables(PROJECTION, selection, CONVERSATION_ORDER, limitStr);
     setNotifyConversationListeners(cursor, threadId);
 
     return cursor;
   }
 
+  /**
+   * Returns the same page as {@link #getConversation(long, long, long)}, but without having SQLite
+   * build and then throw away every newer message. Instead, the range of received dates that the
+   * page covers is found using the (thread, date received) indexes first, and then only messages in
+   * that range are read.
+   *
+   * @param after The key of a row that comes before the page, or null to count from the newest message.
+   * @param skip  The number of rows between {@code after} (or the newest message) and the page.
+   */
+  public Cursor getConversation(long threadId, @Nullable PageKey after, long skip, long limit) {
+    Long maxDate;
+    long skipAtMaxDate;
+
+    if (after != null) {
+      maxDate       = after.getDateReceived();
+      skipAtMaxDate = after.getIndex() + 1 + skip;
+    } else if (skip > 0) {
+      maxDate = getDateReceivedAtPosition(threadId, null, skip);
+
+      if (maxDate == null) {
+        return getConversation(threadId, skip, limit);
+      }
+
+      skipAtMaxDate = skip - getMessageCountReceivedSince(threadId, maxDate, false);
+    } else {
+      maxDate       = null;
+      skipAtMaxDate = 0;
+    }
+
+    Long   minDate   = getDateReceivedAtPosition(threadId, maxDate, skipAtMaxDate + limit - 1);
+    String selection = MmsSmsColumns.THREAD_ID + " = " + threadId;
+
+    if (maxDate != null) {
+      selection += " AND " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " <= " + maxDate;
+    }
+
+    if (minDate != null) {
+      selection += " AND " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " >= " + minDate;
+    }
+
+    Cursor cursor = queryTables(PROJECTION, selection, CONVERSATION_ORDER, skipAtMaxDate + ", " + limit);
+    setNotifyConversationListeners(cursor, threadId);
+
+    return cursor;
+  }
+
+  /**
+   * @return The received date of the message at the given position, counting from the newest message
+   *         received at or before {@code maxDate}. Only touches the (thread, date received) indexes.
+   */
+  private @Nullable Long getDateReceivedAtPosition(long threadId, @Nullable Long maxDate, long position) {
+    String smsWhere = MmsSmsColumns.THREAD_ID + " = " + threadId + (maxDate != null ? " AND " + SmsDatabase.DATE_RECEIVED + " <= " + maxDate : "");
+    String mmsWhere = MmsSmsColumns.THREAD_ID + " = " + threadId + (maxDate != null ? " AND " + MmsDatabase.DATE_RECEIVED + " <= " + maxDate : "");
+    String query    = "SELECT " + SmsDatabase.DATE_RECEIVED + " AS " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " FROM " + SmsDatabase.TABLE_NAME + " WHERE " + smsWhere +
+                      " UNION ALL " +
+                      "SELECT " + MmsDatabase.DATE_RECEIVED + " AS " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " FROM " + MmsDatabase.TABLE_NAME + " WHERE " + mmsWhere +
+                      " ORDER BY " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC LIMIT 1 OFFSET " + position;
+
+    try (Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(query, null)) {
+      if (cursor != null && cursor.moveToFirst()) {
+        return cursor.getLong(0);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @return The number of messages received after (or, if inclusive, at or after) the given date.
+   *         Only touches the (thread, date received) indexes.
+   */
+  private int getMessageCountReceivedSince(long threadId, long date, boolean inclusive) {
+    String operator = inclusive ? " >= " : " > ";
+    String query    = "SELECT " +
+                      "(SELECT COUNT(*) FROM " + SmsDatabase.TABLE_NAME + " WHERE " + MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " + SmsDatabase.DATE_RECEIVED + operator + date + ") + " +
+                      "(SELECT COUNT(*) FROM " + MmsDatabase.TABLE_NAME + " WHERE " + MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " + MmsDatabase.DATE_RECEIVED + operator + date + ")";
+
+    try (Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(query, null)) {
+      if (cursor != null && cursor.moveToFirst()) {
+        return cursor.getInt(0);
+      }
+    }
+
+    return 0;
+  }
+
   public Cursor getConversation(long threadId) {
     return getConversation(threadId, 0, 0);
   }
@@ -463,10 +543,9 @@ public class MmsSmsDatabase extends Database {
   }
 
   public int getQuotedMessagePosition(long threadId, long quoteId, @NonNull RecipientId recipientId) {
-    String order     = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC";
     String selection = MmsSmsColumns.THREAD_ID + " = " + threadId;
 
-    try (Cursor cursor = queryTables(new String[]{ MmsSmsColumns.NORMALIZED_DATE_SENT, MmsSmsColumns.RECIPIENT_ID, MmsSmsColumns.REMOTE_DELETED}, selection, order, null)) {
+    try (Cursor cursor = queryTables(new String[]{ MmsSmsColumns.NORMALIZED_DATE_SENT, MmsSmsColumns.RECIPIENT_ID, MmsSmsColumns.REMOTE_DELETED}, selection, CONVERSATION_ORDER, null)) {
       boolean isOwnNumber = Recipient.resolved(recipientId).isSelf();
 
       while (cursor != null && cursor.moveToNext()) {
@@ -486,10 +565,9 @@ public class MmsSmsDatabase extends Database {
   }
 
   public int getMessagePositionInConversation(long threadId, long receivedTimestamp, @NonNull RecipientId recipientId) {
-    String order     = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC";
     String selection = MmsSmsColumns.THREAD_ID + " = " + threadId;
 
-    try (Cursor cursor = queryTables(new String[]{ MmsSmsColumns.NORMALIZED_DATE_RECEIVED, MmsSmsColumns.RECIPIENT_ID, MmsSmsColumns.REMOTE_DELETED}, selection, order, null)) {
+    try (Cursor cursor = queryTables(new String[]{ MmsSmsColumns.NORMALIZED_DATE_RECEIVED, MmsSmsColumns.RECIPIENT_ID, MmsSmsColumns.REMOTE_DELETED}, selection, CONVERSATION_ORDER, null)) {
       boolean isOwnNumber = Recipient.resolved(recipientId).isSelf();
 
       while (cursor != null && cursor.moveToNext()) {
@@ -520,18 +598,28 @@ public class MmsSmsDatabase extends Database {
    * Note: This could give back incorrect results in the situation where multiple messages have the
    * same received timestamp. However, because this was designed to determine where to scroll to,
    * you'll still wind up in about the right spot.
+   *
+   * @return The position, or -1 if there's no message in the thread received at that time.
    */
   public int getMessagePositionInConversation(long threadId, long receivedTimestamp) {
-    String order     = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC";
-    String selection = MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " +
-                       MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " > " + receivedTimestamp;
+    if (!hasMessageReceivedAt(threadId, receivedTimestamp)) {
+      return -1;
+    }
 
-    try (Cursor cursor = queryTables(new String[]{ "COUNT(*)" }, selection, order, null)) {
-      if (cursor != null && cursor.moveToFirst()) {
-        return cursor.getInt(0);
-      }
+    return getMessageCountReceivedSince(threadId, receivedTimestamp, false);
+  }
+
+  /**
+   * Only touches the (thread, date received) indexes.
+   */
+  private boolean hasMessageReceivedAt(long threadId, long receivedTimestamp) {
+    String query = "SELECT " +
+                   "EXISTS (SELECT 1 FROM " + SmsDatabase.TABLE_NAME + " WHERE " + MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " + SmsDatabase.DATE_RECEIVED + " = " + receivedTimestamp + ") OR " +
+                   "EXISTS (SELECT 1 FROM " + MmsDatabase.TABLE_NAME + " WHERE " + MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " + MmsDatabase.DATE_RECEIVED + " = " + receivedTimestamp + ")";
+
+    try (Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(query, null)) {
+      return cursor != null && cursor.moveToFirst() && cursor.getInt(0) != 0;
     }
-    return -1;
   }
 
   public long getTimestampForFirstMessageAfterDate(long date) {
@@ -571,36 +659,6 @@ public class MmsSmsDatabase extends Database {
                               "'MMS::' || " + MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID
                                   + " || '::' || " + MmsDatabase.DATE_SENT
                                   + " AS " + MmsSmsColumns.UNIQUE_ROW_ID,
-                              "json_group_array(json_object(" +
-                              "'" + AttachmentDatabase.ROW_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.ROW_ID + ", " +
-                              "'" + AttachmentDatabase.UNIQUE_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.UNIQUE_ID + ", " +
-                              "'" + AttachmentDatabase.MMS_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.MMS_ID + "," +
-                              "'" + AttachmentDatabase.SIZE + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.SIZE + ", " +
-                              "'" + AttachmentDatabase.FILE_NAME + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.FILE_NAME + ", " +
-                              "'" + AttachmentDatabase.DATA + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.DATA + ", " +
-                              "'" + AttachmentDatabase.CONTENT_TYPE + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.CONTENT_TYPE + ", " +
-                              "'" + AttachmentDatabase.CDN_NUMBER + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.CDN_NUMBER + ", " +
-                              "'" + AttachmentDatabase.CONTENT_LOCATION + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.CONTENT_LOCATION + ", " +
-                              "'" + AttachmentDatabase.FAST_PREFLIGHT_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.FAST_PREFLIGHT_ID + ", " +
-                              "'" + AttachmentDatabase.VOICE_NOTE + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.VOICE_NOTE + ", " +
-                              "'" + AttachmentDatabase.BORDERLESS + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.BORDERLESS + ", " +
-                              "'" + AttachmentDatabase.VIDEO_GIF + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.VIDEO_GIF + ", " +
-                              "'" + AttachmentDatabase.WIDTH + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.WIDTH + ", " +
-                              "'" + AttachmentDatabase.HEIGHT + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.HEIGHT + ", " +
-                              "'" + AttachmentDatabase.QUOTE + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.QUOTE + ", " +
-                              "'" + AttachmentDatabase.CONTENT_DISPOSITION + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.CONTENT_DISPOSITION + ", " +
-                              "'" + AttachmentDatabase.NAME + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.NAME + ", " +
-                              "'" + AttachmentDatabase.TRANSFER_STATE + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.TRANSFER_STATE + ", " +
-                              "'" + AttachmentDatabase.CAPTION + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.CAPTION + ", " +
-                              "'" + AttachmentDatabase.STICKER_PACK_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.STICKER_PACK_ID + ", " +
-                              "'" + AttachmentDatabase.STICKER_PACK_KEY + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.STICKER_PACK_KEY + ", " +
-                              "'" + AttachmentDatabase.STICKER_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.STICKER_ID + ", " +
-                              "'" + AttachmentDatabase.STICKER_EMOJI + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.STICKER_EMOJI + ", " +
-                              "'" + AttachmentDatabase.VISUAL_HASH + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.VISUAL_HASH + ", " +
-                              "'" + AttachmentDatabase.TRANSFORM_PROPERTIES + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.TRANSFORM_PROPERTIES + ", " +
-                              "'" + AttachmentDatabase.DISPLAY_ORDER + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.DISPLAY_ORDER + ", " +
-                              "'" + AttachmentDatabase.UPLOAD_TIMESTAMP + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.UPLOAD_TIMESTAMP +
-                              ")) AS " + AttachmentDatabase.ATTACHMENT_JSON_ALIAS,
                               SmsDatabase.BODY, MmsSmsColumns.READ, MmsSmsColumns.THREAD_ID,
                               SmsDatabase.TYPE, SmsDatabase.RECIPIENT_ID, SmsDatabase.ADDRESS_DEVICE_ID, SmsDatabase.SUBJECT, MmsDatabase.MESSAGE_TYPE,
                               MmsDatabase.MESSAGE_BOX, SmsDatabase.STATUS, MmsDatabase.PART_COUNT,
@@ -636,7 +694,6 @@ public class MmsSmsDatabase extends Database {
                               "'SMS::' || " + MmsSmsColumns.ID
                                   + " || '::' || " + SmsDatabase.DATE_SENT
                                   + " AS " + MmsSmsColumns.UNIQUE_ROW_ID,
-                              "NULL AS " + AttachmentDatabase.ATTACHMENT_JSON_ALIAS,
                               SmsDatabase.BODY, MmsSmsColumns.READ, MmsSmsColumns.THREAD_ID,
                               SmsDatabase.TYPE, SmsDatabase.RECIPIENT_ID, SmsDatabase.ADDRESS_DEVICE_ID, SmsDatabase.SUBJECT, MmsDatabase.MESSAGE_TYPE,
                               MmsDatabase.MESSAGE_BOX, SmsDatabase.STATUS, MmsDatabase.PART_COUNT,
@@ -673,9 +730,7 @@ public class MmsSmsDatabase extends Database {
     smsQueryBuilder.setDistinct(true);
 
     smsQueryBuilder.setTables(SmsDatabase.TABLE_NAME);
-    mmsQueryBuilder.setTables(MmsDatabase.TABLE_NAME + " LEFT OUTER JOIN " +
-                              AttachmentDatabase.TABLE_NAME +
-                              " ON " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.MMS_ID + " = " + MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID);
+    mmsQueryBuilder.setTables(MmsDatabase.TABLE_NAME);
 
 
     Set<String> mmsColumnsPresent = new HashSet<>();
@@ -750,7 +805,7 @@ public class MmsSmsDatabase extends Database {
     smsColumnsPresent.add(MmsSmsColumns.NOTIFIED_TIMESTAMP);
 
     @SuppressWarnings("deprecation")
-    String mmsSubQuery = mmsQueryBuilder.buildUnionSubQuery(TRANSPORT, mmsProjection, mmsColumnsPresent, 4, MMS_TRANSPORT, selection, null, MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID, null);
+    String mmsSubQuery = mmsQueryBuilder.buildUnionSubQuery(TRANSPORT, mmsProjection, mmsColumnsPresent, 4, MMS_TRANSPORT, selection, null, null, null);
     @SuppressWarnings("deprecation")
     String smsSubQuery = smsQueryBuilder.buildUnionSubQuery(TRANSPORT, smsProjection, smsColumnsPresent, 4, SMS_TRANSPORT, selection, null, null, null);
 
@@ -773,12 +828,14 @@ public class MmsSmsDatabase extends Database {
 
   public static class Reader implements Closeable {
 
-    private final Cursor                 cursor;
-    private       SmsDatabase.Reader     smsReader;
-    private       MmsDatabase.Reader     mmsReader;
+    private final Cursor             cursor;
+    private final int                transportColumn;
+    private       SmsDatabase.Reader smsReader;
+    private       MmsDatabase.Reader mmsReader;
 
     public Reader(Cursor cursor) {
-      this.cursor = cursor;
+      this.cursor          = cursor;
+      this.transportColumn = cursor != null ? cursor.getColumnIndex(TRANSPORT) : -1;
     }
 
     private SmsDatabase.Reader getSmsReader() {
@@ -805,7 +862,7 @@ public class MmsSmsDatabase extends Database {
     }
 
     public MessageRecord getCurrent() {
-      String type = cursor.getString(cursor.getColumnIndexOrThrow(TRANSPORT));
+      String type = cursor.getString(transportColumn);
 
       if      (MmsSmsDatabase.MMS_TRANSPORT.equals(type)) return getMmsReader().getCurrent();
       else if (MmsSmsDatabase.SMS_TRANSPORT.equals(type)) return getSmsReader().getCurrent();
@@ -817,4 +874,27 @@ public class MmsSmsDatabase extends Database {
       cursor.close();
     }
   }
+
+  /**
+   * Identifies a row in a conversation for {@link #getConversation(long, PageKey, long, long)}.
+   * Received dates aren't unique, so the row is identified by its received date plus its index among
+   * the rows received at that date, in conversation order.
+   */
+  public static final class PageKey {
+    private final long dateReceived;
+    private final int  index;
+
+    public PageKey(long dateReceived, int index) {
+      this.dateReceived = dateReceived;
+      this.index        = index;
+    }
+
+    public long getDateReceived() {
+      return dateReceived;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+  }
 }
@@ -0,0 +1,489 @@
+package org.thoughtcrime.securesms.database;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import net.sqlcipher.Cursor;
+
+import org.signal.core.util.logging.Log;
+import org.signal.core.util.tracing.Tracer;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects timings for every statement run through {@link SQLiteDatabase}, grouped by a fingerprint
+ * of the SQL in which literals, bind arguments and argument lists are collapsed to a single
+ * {@code ?}, so the same query with different arguments is counted together.
+ * <p>
+ * Cursor queries are timed up to the end of their first window fill, which is where SQLite does the
+ * actual work. Statements slower than {@link #SLOW_QUERY_THRESHOLD_MS} are kept in a short log
+ * along with the class that ran them and their EXPLAIN QUERY PLAN, and are added to the trace on
+ * their own track. Walking the stack for the caller is only otherwise done the first time a
+ * statement is seen.
+ * <p>
+ * Only SQL text is recorded, never the bound arguments.
+ */
+public final class QueryProfiler {
+
+  private static final String TAG = Log.tag(QueryProfiler.class);
+
+  public static final long SLOW_QUERY_THRESHOLD_MS = 50;
+
+  private static final long     SLOW_QUERY_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(SLOW_QUERY_THRESHOLD_MS);
+  private static final long[]   BUCKET_LIMITS_MS           = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024 };
+  private static final int      MAX_FINGERPRINTS           = 500;
+  private static final int      MAX_CACHED_SQL             = 1000;
+  private static final int      MAX_SLOW_QUERIES           = 50;
+  private static final int      TOP_STATEMENTS             = 25;
+  private static final String   OTHER_FINGERPRINT          = "<other>";
+  private static final String   NAME_SLOW_QUERY            = "slow query";
+  private static final String   APP_PACKAGE                = "org.thoughtcrime.securesms.";
+  private static final String[] IGNORED_CALLERS            = { SQLiteDatabase.class.getName(), QueryProfiler.class.getName() };
+
+  private static final QueryProfiler INSTANCE = new QueryProfiler();
+
+  private final Map<String, String>              fingerprints;
+  private final ConcurrentHashMap<String, Stats> stats;
+  private final Deque<SlowQuery>                 slowQueries;
+  private final Tracer                           tracer;
+
+  public static @NonNull QueryProfiler getInstance() {
+    return INSTANCE;
+  }
+
+  private QueryProfiler() {
+    this.fingerprints = new ConcurrentHashMap<>();
+    this.stats        = new ConcurrentHashMap<>();
+    this.slowQueries  = new ArrayDeque<>(MAX_SLOW_QUERIES);
+    this.tracer       = Tracer.getInstance();
+  }
+
+  long start() {
+    return SystemClock.elapsedRealtimeNanos();
+  }
+
+  /**
+   * @param db         The connection the statement ran on, used to explain it if it was slow.
+   * @param sql        The statement, or for inserts, updates and deletes made from parts, an
+   *                   equivalent that is only used for its fingerprint.
+   * @param explainSql A statement with the same plan, or null if there is nothing worth explaining.
+   * @param rows       Rows returned for queries, or rows changed for everything else.
+   */
+  void end(@NonNull net.sqlcipher.database.SQLiteDatabase db,
+           @NonNull String sql,
+           @Nullable String explainSql,
+           @Nullable Object[] args,
+           long startTimeNanos,
+           int rows)
+  {
+    long  endTimeNanos = SystemClock.elapsedRealtimeNanos();
+    long  duration     = endTimeNanos - startTimeNanos;
+    Stats statement    = getStats(getFingerprint(sql));
+
+    statement.record(duration, rows);
+
+    if (duration < SLOW_QUERY_THRESHOLD_NANOS) {
+      if (statement.callers.isEmpty()) {
+        statement.callers.put(findCaller(), Boolean.TRUE);
+      }
+      return;
+    }
+
+    String caller = findCaller();
+    statement.callers.put(caller, Boolean.TRUE);
+
+    if (statement.plan == null && explainSql != null) {
+      statement.plan = explain(db, explainSql, args);
+    }
+
+    SlowQuery slowQuery = new SlowQuery(System.currentTimeMillis(), duration, rows, Thread.currentThread().getName(), caller, statement);
+
+    synchronized (slowQueries) {
+      if (slowQueries.size() >= MAX_SLOW_QUERIES) {
+        slowQueries.removeLast();
+      }
+      slowQueries.addFirst(slowQuery);
+    }
+
+    Map<String, String> values = new HashMap<>();
+    values.put("fingerprint", statement.fingerprint);
+    values.put("caller", caller);
+    values.put("thread", slowQuery.thread);
+    values.put("rows", String.valueOf(rows));
+    if (statement.plan != null) {
+      values.put("plan", statement.plan);
+    }
+
+    tracer.slice(NAME_SLOW_QUERY, Tracer.TrackId.DB_SLOW_QUERY, startTimeNanos, endTimeNanos, values);
+  }
+
+  public @NonNull String getDebugInfo() {
+    List<Stats> byTotalTime = new ArrayList<>(stats.values());
+    Collections.sort(byTotalTime, (lhs, rhs) -> Long.compare(rhs.totalNanos.get(), lhs.totalNanos.get()));
+
+    long count = 0;
+    for (Stats statement : byTotalTime) {
+      count += statement.count.get();
+    }
+
+    StringBuilder builder = new StringBuilder();
+    builder.append("Slow Threshold: ").append(SLOW_QUERY_THRESHOLD_MS).append(" ms\n")
+           .append("Statements    : ").append(count).append(" (").append(byTotalTime.size()).append(" distinct)\n\n");
+
+    builder.append("-- Top ").append(TOP_STATEMENTS).append(" by total time --\n");
+    for (Stats statement : byTotalTime.subList(0, Math.min(TOP_STATEMENTS, byTotalTime.size()))) {
+      statement.appendTo(builder);
+      builder.append("\n");
+    }
+
+    List<SlowQuery> recent;
+    synchronized (slowQueries) {
+      recent = new ArrayList<>(slowQueries);
+    }
+
+    builder.append("-- Slow statements, most recent first --\n");
+    if (recent.isEmpty()) {
+      builder.append("None\n");
+    }
+
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    for (SlowQuery slowQuery : recent) {
+      builder.append("[").append(dateFormat.format(new Date(slowQuery.timestamp))).append("] ")
+             .append(formatMillis(slowQuery.durationNanos)).append(" | ")
+             .append(slowQuery.rows).append(" rows | ")
+             .append(slowQuery.thread).append(" | ")
+             .append(slowQuery.caller).append("\n")
+             .append(slowQuery.statement.fingerprint).append("\n");
+
+      String plan = slowQuery.statement.plan;
+      if (plan != null) {
+        builder.append("  plan: ").append(plan.replace("\n", "\n        ")).append("\n");
+      }
+      builder.append("\n");
+    }
+
+    return builder.toString();
+  }
+
+  /**
+   * @return The statement with its literals replaced by placeholders, which is also what traces
+   *         record so that every distinct literal doesn't become a new interned string.
+   */
+  @NonNull String getFingerprint(@NonNull String sql) {
+    String fingerprint = fingerprints.get(sql);
+
+    if (fingerprint == null) {
+      if (fingerprints.size() >= MAX_CACHED_SQL) {
+        fingerprints.clear();
+      }
+
+      fingerprint = fingerprint(sql);
+      fingerprints.put(sql, fingerprint);
+    }
+
+    return fingerprint;
+  }
+
+  private @NonNull Stats getStats(@NonNull String fingerprint) {
+    Stats statement = stats.get(fingerprint);
+
+    if (statement == null) {
+      if (stats.size() >= MAX_FINGERPRINTS) {
+        fingerprint = OTHER_FINGERPRINT;
+      }
+
+      Stats created  = new Stats(fingerprint);
+      Stats existing = stats.putIfAbsent(fingerprint, created);
+
+      statement = existing != null ? existing : created;
+    }
+
+    return statement;
+  }
+
+  private static @NonNull String explain(@NonNull net.sqlcipher.database.SQLiteDatabase db, @NonNull String sql, @Nullable Object[] args) {
+    try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args != null ? args : new Object[0])) {
+      StringBuilder plan   = new StringBuilder();
+      int           detail = cursor.getColumnIndexOrThrow("detail");
+
+      while (cursor.moveToNext()) {
+        if (plan.length() > 0) {
+          plan.append("\n");
+        }
+        plan.append(cursor.getString(detail));
+      }
+
+      return plan.toString();
+    } catch (Exception e) {
+      Log.w(TAG, "Failed to explain query.", e);
+      return "Unavailable (" + e.getClass().getSimpleName() + ")";
+    }
+  }
+
+  /**
+   * The first method outside of the database wrapper that led to the statement, which is usually a
+   * method on a {@link Database} subclass.
+   */
+  private static @NonNull String findCaller() {
+    for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+      String className = element.getClassName();
+
+      if (!className.startsWith(APP_PACKAGE) || isIgnoredCaller(className)) {
+        continue;
+      }
+
+      String simpleName = className.substring(className.lastIndexOf('.') + 1);
+      int    inner      = simpleName.indexOf('$');
+
+      if (inner > 0) {
+        simpleName = simpleName.substring(0, inner);
+      }
+
+      return simpleName + "." + element.getMethodName();
+    }
+
+    return "unknown";
+  }
+
+  private static boolean isIgnoredCaller(@NonNull String className) {
+    for (String ignored : IGNORED_CALLERS) {
+      if (className.startsWith(ignored)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Normalizes SQL so that statements which only differ by their arguments are the same:
+   * string, blob and numeric literals and bind parameters become {@code ?}, lists of them become a
+   * single {@code ?}, and whitespace is collapsed. Identifiers are left as they are.
+   */
+  @VisibleForTesting
+  static @NonNull String fingerprint(@NonNull String sql) {
+    StringBuilder out    = new StringBuilder(sql.length());
+    int           length = sql.length();
+    int           i      = 0;
+
+    while (i < length) {
+      char c = sql.charAt(i);
+
+      if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+        appendPlaceholder(out);
+      } else if ((c == 'x' || c == 'X') && i + 1 < length && sql.charAt(i + 1) == '\'' && !endsWithIdentifier(out)) {
+        i = skipQuoted(sql, i + 1, '\'');
+        appendPlaceholder(out);
+      } else if (c == '"' || c == '`') {
+        int end = skipQuoted(sql, i, c);
+        out.append(sql, i, end);
+        i = end;
+      } else if (Character.isWhitespace(c)) {
+        while (i < length && Character.isWhitespace(sql.charAt(i))) {
+          i++;
+        }
+        if (out.length() > 0) {
+          out.append(' ');
+        }
+      } else if (Character.isDigit(c) && !endsWithIdentifier(out)) {
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+          i++;
+        }
+        appendPlaceholder(out);
+      } else if (c == '?') {
+        i++;
+        while (i < length && Character.isDigit(sql.charAt(i))) {
+          i++;
+        }
+        appendPlaceholder(out);
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+
+    int end = out.length();
+    while (end > 0 && out.charAt(end - 1) == ' ') {
+      end--;
+    }
+    out.setLength(end);
+
+    return out.toString();
+  }
+
+  /**
+   * @return The index just after the closing quote, where a doubled quote is an escaped one.
+   */
+  private static int skipQuoted(@NonNull String sql, int start, char quote) {
+    int i = start + 1;
+
+    while (i < sql.length()) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          i += 2;
+        } else {
+          return i + 1;
+        }
+      } else {
+        i++;
+      }
+    }
+
+    return sql.length();
+  }
+
+  private static boolean endsWithIdentifier(@NonNull StringBuilder out) {
+    if (out.length() == 0) {
+      return false;
+    }
+
+    char last = out.charAt(out.length() - 1);
+    return Character.isLetterOrDigit(last) || last == '_' || last == '.';
+  }
+
+  /**
+   * Appends a {@code ?}, unless it would only extend a comma-separated list of them.
+   */
+  private static void appendPlaceholder(@NonNull StringBuilder out) {
+    int end = out.length();
+    while (end > 0 && out.charAt(end - 1) == ' ') {
+      end--;
+    }
+
+    if (end > 0 && out.charAt(end - 1) == ',') {
+      int previous = end - 1;
+      while (previous > 0 && out.charAt(previous - 1) == ' ') {
+        previous--;
+      }
+
+      if (previous > 0 && out.charAt(previous - 1) == '?') {
+        out.setLength(previous);
+        return;
+      }
+    }
+
+    out.append('?');
+  }
+
+  private static @NonNull String formatMillis(long nanos) {
+    return String.format(Locale.US, "%.1f ms", nanos / 1_000_000d);
+  }
+
+  private static final class Stats {
+    private final String               fingerprint;
+    private final AtomicLong           count;
+    private final AtomicLong           totalNanos;
+    private final AtomicLong           maxNanos;
+    private final AtomicLong           rows;
+    private final AtomicLongArray      histogram;
+    private final Map<String, Boolean> callers;
+
+    private volatile String plan;
+
+    private Stats(@NonNull String fingerprint) {
+      this.fingerprint = fingerprint;
+      this.count       = new AtomicLong();
+      this.totalNanos  = new AtomicLong();
+      this.maxNanos    = new AtomicLong();
+      this.rows        = new AtomicLong();
+      this.histogram   = new AtomicLongArray(BUCKET_LIMITS_MS.length + 1);
+      this.callers     = new ConcurrentHashMap<>();
+    }
+
+    private void record(long durationNanos, int rowCount) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(durationNanos);
+      rows.addAndGet(rowCount);
+      histogram.incrementAndGet(bucket(durationNanos));
+
+      long max = maxNanos.get();
+      while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)) {
+        max = maxNanos.get();
+      }
+    }
+
+    private void appendTo(@NonNull StringBuilder builder) {
+      long calls = Math.max(1, count.get());
+
+      builder.append("total ").append(formatMillis(totalNanos.get()))
+             .append(" | count ").append(count.get())
+             .append(" | mean ").append(formatMillis(totalNanos.get() / calls))
+             .append(" | p50 ").append(percentile(0.5))
+             .append(" | p90 ").append(percentile(0.9))
+             .append(" | p99 ").append(percentile(0.99))
+             .append(" | max ").append(formatMillis(maxNanos.get()))
+             .append(" | rows ").append(String.format(Locale.US, "%.1f", rows.get() / (double) calls))
+             .append(callers.isEmpty() ? "" : " | " + callers.keySet())
+             .append("\n")
+             .append(fingerprint).append("\n");
+    }
+
+    /**
+     * @return The upper bound of the histogram bucket the percentile falls in.
+     */
+    private @NonNull String percentile(double percentile) {
+      long   total  = 0;
+      long[] counts = new long[histogram.length()];
+
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = histogram.get(i);
+        total    += counts[i];
+      }
+
+      long target     = (long) Math.ceil(percentile * total);
+      long cumulative = 0;
+
+      for (int i = 0; i < BUCKET_LIMITS_MS.length; i++) {
+        cumulative += counts[i];
+        if (cumulative >= target) {
+          return "<" + BUCKET_LIMITS_MS[i] + " ms";
+        }
+      }
+
+      return ">" + BUCKET_LIMITS_MS[BUCKET_LIMITS_MS.length - 1] + " ms";
+    }
+
+    private static int bucket(long durationNanos) {
+      for (int i = 0; i < BUCKET_LIMITS_MS.length; i++) {
+        if (durationNanos < TimeUnit.MILLISECONDS.toNanos(BUCKET_LIMITS_MS[i])) {
+          return i;
+        }
+      }
+      return BUCKET_LIMITS_MS.length;
+    }
+  }
+
+  private static final class SlowQuery {
+    private final long   timestamp;
+    private final long   durationNanos;
+    private final int    rows;
+    private final String thread;
+    private final String caller;
+    private final Stats  statement;
+
+    private SlowQuery(long timestamp, long durationNanos, int rows, @NonNull String thread, @NonNull String caller, @NonNull Stats statement) {
+      this.timestamp     = timestamp;
+      this.durationNanos = durationNanos;
+      this.rows          = rows;
+      this.thread        = thread;
+      this.caller        = caller;
+      this.statement     = statement;
+    }
+  }
+}
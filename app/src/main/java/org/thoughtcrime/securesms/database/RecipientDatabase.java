@@ -186,6 +186,12 @@ public class RecipientDatabase extends Database {
 
   private static final String[] MENTION_SEARCH_PROJECTION  = new String[]{ID, removeWhitespace("COALESCE(" + nullIfEmpty(SYSTEM_JOINED_NAME) + ", " + nullIfEmpty(SYSTEM_GIVEN_NAME) + ", " + nullIfEmpty(PROFILE_JOINED_NAME) + ", " + nullIfEmpty(PROFILE_GIVEN_NAME) + ", " + nullIfEmpty(USERNAME) + ", " + nullIfEmpty(PHONE) + ")") + " AS " + SORT_NAME};
 
+  private static final String[] SEARCH_INDEX_PROJECTION    = new String[]{ID, PHONE, EMAIL, USERNAME, SYSTEM_JOINED_NAME, "COALESCE(" + nullIfEmpty(SYSTEM_JOINED_NAME) + ", " + nullIfEmpty(SYSTEM_GIVEN_NAME) + ", " + nullIfEmpty(PROFILE_JOINED_NAME) + ", " + nullIfEmpty(PROFILE_GIVEN_NAME) + ", " + nullIfEmpty(USERNAME) + ")", removeWhitespace("COALESCE(" + nullIfEmpty(SYSTEM_JOINED_NAME) + ", " + nullIfEmpty(SYSTEM_GIVEN_NAME) + ", " + nullIfEmpty(PROFILE_JOINED_NAME) + ", " + nullIfEmpty(PROFILE_GIVEN_NAME) + ", " + nullIfEmpty(USERNAME) + ", " + nullIfEmpty(PHONE) + ")")};
+
+  private static final String[] SEARCH_INDEX_COLUMNS = new String[]{PHONE, EMAIL, USERNAME, SYSTEM_JOINED_NAME, SYSTEM_GIVEN_NAME, PROFILE_JOINED_NAME, PROFILE_GIVEN_NAME};
+
+  private static final int SEARCH_INDEX_MAX_MATCHES = 1000;
+
   public static final String[] CREATE_INDEXS = new String[] {
       "CREATE INDEX IF NOT EXISTS recipient_group_type_index ON " + TABLE_NAME + " (" + GROUP_TYPE + ");",
   };
@@ -369,8 +375,11 @@ public class RecipientDatabase extends Database {
       ThreadDatabase.TABLE_NAME + "." + ThreadDatabase.DATE + " > ?" +
       " ORDER BY " + ThreadDatabase.TABLE_NAME + "." + ThreadDatabase.DATE + " DESC LIMIT 50";
 
+  private final RecipientSearchIndex searchIndex;
+
   public RecipientDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
     super(context, databaseHelper);
+    this.searchIndex = new RecipientSearchIndex(new SearchIndexSource());
   }
 
   public @NonNull boolean containsPhoneOrUuid(@NonNull String id) {
@@ -782,6 +791,7 @@ public class RecipientDatabase extends Database {
       Log.w(TAG,  "[applyStorageSyncContactInsert] Failed to insert. Possibly merging.");
       recipientId = getAndPossiblyMerge(insert.getAddress().getUuid().get(), insert.getAddress().getNumber().get(), true);
       db.update(TABLE_NAME, values, ID_WHERE, SqlUtil.buildArgs(recipientId));
+      onSearchIndexValuesWritten(recipientId, values);
     } else {
       recipientId = RecipientId.from(id);
     }
@@ -823,6 +833,8 @@ public class RecipientDatabase extends Database {
 
     RecipientId recipientId = getByStorageKeyOrThrow(update.getNew().getId().getRaw());
 
+    onSearchIndexValuesWritten(recipientId, values);
+
     if (StorageSyncHelper.profileKeyChanged(update)) {
       ContentValues clearValues = new ContentValues(1);
       clearValues.putNull(PROFILE_KEY_CREDENTIAL);
@@ -958,6 +970,8 @@ public class RecipientDatabase extends Database {
       throw new AssertionError("Account update didn't match any rows!");
     }
 
+    onSearchIndexValuesWritten(Recipient.self().getId(), values);
+
     if (!remoteKey.equals(localKey)) {
       ApplicationDependencies.getJobManager().add(new RefreshAttributesJob());
     }
@@ -987,6 +1001,8 @@ public class RecipientDatabase extends Database {
     } finally {
       db.endTransaction();
     }
+
+    searchIndex.invalidate();
   }
 
   private @NonNull RecipientId getByStorageKeyOrThrow(byte[] storageKey) {
@@ -1921,6 +1937,7 @@ public class RecipientDatabase extends Database {
     ContentValues values = new ContentValues();
     values.putNull(PHONE);
     db.update(TABLE_NAME, values, ID_WHERE, SqlUtil.buildArgs(recipientId));
+    onSearchIndexValuesWritten(recipientId, values);
   }
 
   /**
@@ -2207,9 +2224,12 @@ public class RecipientDatabase extends Database {
   }
 
   public @Nullable Cursor querySignalContacts(@NonNull String query, boolean includeSelf) {
+    String   matches   = getSearchIndexSelection(query, RecipientSearchIndex.FIELD_PHONE | RecipientSearchIndex.FIELD_SORT_NAME | RecipientSearchIndex.FIELD_USERNAME);
+
     query = buildCaseInsensitiveGlobPattern(query);
 
-    String   selection = BLOCKED     + " = ? AND " +
+    String   selection = matches +
+                         BLOCKED     + " = ? AND " +
                          REGISTERED  + " = ? AND " +
                          GROUP_ID    + " IS NULL AND " +
                          "(" + SYSTEM_JOINED_NAME + " NOT NULL OR " + PROFILE_SHARING + " = ?) AND " +
@@ -2245,9 +2265,12 @@ public class RecipientDatabase extends Database {
   }
 
   public @Nullable Cursor queryNonSignalContacts(@NonNull String query) {
+    String   matches   = getSearchIndexSelection(query, RecipientSearchIndex.FIELD_PHONE | RecipientSearchIndex.FIELD_EMAIL | RecipientSearchIndex.FIELD_SYSTEM_NAME);
+
     query = buildCaseInsensitiveGlobPattern(query);
 
-    String   selection = BLOCKED    + " = ? AND " +
+    String   selection = matches +
+                         BLOCKED    + " = ? AND " +
                          REGISTERED + " != ? AND " +
                          GROUP_ID   + " IS NULL AND " +
                          SYSTEM_CONTACT_URI + " NOT NULL AND " +
@@ -2264,9 +2287,12 @@ public class RecipientDatabase extends Database {
   }
 
   public @Nullable Cursor queryAllContacts(@NonNull String query) {
+    String   matches   = getSearchIndexSelection(query, RecipientSearchIndex.FIELD_SORT_NAME | RecipientSearchIndex.FIELD_USERNAME | RecipientSearchIndex.FIELD_PHONE | RecipientSearchIndex.FIELD_EMAIL);
+
     query = buildCaseInsensitiveGlobPattern(query);
 
-    String   selection = BLOCKED + " = ? AND " +
+    String   selection = matches +
+                         BLOCKED + " = ? AND " +
                          "(" +
                            SORT_NAME + " GLOB ? OR " +
                            USERNAME  + " GLOB ? OR " +
@@ -2283,6 +2309,8 @@ public class RecipientDatabase extends Database {
   }
 
   public @NonNull List<Recipient> queryRecipientsForMentions(@NonNull String query, @Nullable List<RecipientId> recipientIds) {
+    String matches = recipientIds == null ? getSearchIndexSelection(query, RecipientSearchIndex.FIELD_MENTION_NAME) : "";
+
     query = buildCaseInsensitiveGlobPattern(query);
 
     String ids = null;
@@ -2290,7 +2318,8 @@ public class RecipientDatabase extends Database {
       ids = TextUtils.join(",", Stream.of(recipientIds).map(RecipientId::serialize).toList());
     }
 
-    String   selection = BLOCKED + " = 0 AND " +
+    String   selection = matches +
+                         BLOCKED + " = 0 AND " +
                          (ids != null ? ID + " IN (" + ids + ") AND " : "") +
                          SORT_NAME  + " GLOB ?";
 
@@ -2304,6 +2333,48 @@ public class RecipientDatabase extends Database {
     return recipients;
   }
 
+  /**
+   * Looks the query up in the {@link RecipientSearchIndex} so the GLOB only has to be checked against
+   * recipients that could match, rather than every row.
+   *
+   * @return A selection to prefix the query's selection with, or an empty string if the index couldn't
+   *         narrow the search down.
+   */
+  private @NonNull String getSearchIndexSelection(@NonNull String query, int fields) {
+    if (TextUtils.isEmpty(query)) {
+      return "";
+    }
+
+    Set<Long> ids = searchIndex.search(query, fields, SEARCH_INDEX_MAX_MATCHES);
+
+    if (ids == null) {
+      return "";
+    }
+
+    return ID + " IN (" + TextUtils.join(",", ids) + ") AND ";
+  }
+
+  /**
+   * Marks a recipient as changed in the search index. Called whenever a recipient is refreshed.
+   */
+  public void onRecipientChanged(@NonNull RecipientId id) {
+    searchIndex.onRecipientChanged(id.toLong());
+  }
+
+  /**
+   * Marks a recipient as changed in the search index if any of the values written to it are
+   * searched. Called on every such write, since the refresh that follows may come too late or not at
+   * all.
+   */
+  private void onSearchIndexValuesWritten(@NonNull RecipientId id, @NonNull ContentValues values) {
+    for (String column : SEARCH_INDEX_COLUMNS) {
+      if (values.containsKey(column)) {
+        searchIndex.onRecipientChanged(id.toLong());
+        return;
+      }
+    }
+  }
+
   /**
    * Builds a case-insensitive GLOB pattern for fuzzy text queries. Works with all unicode
    * characters.
@@ -2331,7 +2402,7 @@ public class RecipientDatabase extends Database {
     return "*" + pattern.toString() + "*";
   }
 
-  private static @NonNull String getAccentuatedCharRegex(@NonNull String query) {
+  static @NonNull String getAccentuatedCharRegex(@NonNull String query) {
     switch (query) {
       case "a" :
         return "À-Åà-åĀ-ąǍǎǞ-ǡǺ-ǻȀ-ȃȦȧȺɐ-ɒḀḁẚẠ-ặ";
@@ -2669,7 +2740,12 @@ public class RecipientDatabase extends Database {
   private boolean update(@NonNull RecipientId id, @NonNull ContentValues contentValues) {
     SqlUtil.Query updateQuery = SqlUtil.buildTrueUpdateQuery(ID_WHERE, SqlUtil.buildArgs(id), contentValues);
 
-    return update(updateQuery, contentValues);
+    if (update(updateQuery, contentValues)) {
+      onSearchIndexValuesWritten(id, contentValues);
+      return true;
+    } else {
+      return false;
+    }
   }
 
   /**
@@ -2743,6 +2819,7 @@ public class RecipientDatabase extends Database {
     // Recipient
     Log.w(TAG, "Deleting recipient " + byE164);
     db.delete(TABLE_NAME, ID_WHERE, SqlUtil.buildArgs(byE164));
+    searchIndex.onRecipientChanged(byE164.toLong());
     RemappedRecords.getInstance().addRecipient(context, byE164, byUuid);
 
     ContentValues uuidValues = new ContentValues();
@@ -2774,6 +2851,7 @@ public class RecipientDatabase extends Database {
       updateProfileValuesForMerge(uuidValues, e164Settings);
     }
     db.update(TABLE_NAME, uuidValues, ID_WHERE, SqlUtil.buildArgs(byUuid));
+    onSearchIndexValuesWritten(byUuid, uuidValues);
 
     // Identities
     db.delete(IdentityDatabase.TABLE_NAME, IdentityDatabase.RECIPIENT_ID + " = ?", SqlUtil.buildArgs(byE164));
@@ -2909,6 +2987,8 @@ public class RecipientDatabase extends Database {
       database.setTransactionSuccessful();
       database.endTransaction();
 
+      searchIndex.invalidate();
+
       Stream.of(pendingContactInfoMap.entrySet()).forEach(entry -> Recipient.live(entry.getKey()).refresh());
     }
 
@@ -2942,6 +3022,45 @@ public class RecipientDatabase extends Database {
     }
   }
 
+  /**
+   * Reads the columns the {@link RecipientSearchIndex} searches.
+   */
+  private final class SearchIndexSource implements RecipientSearchIndex.Source {
+
+    @Override
+    public @NonNull List<RecipientSearchIndex.Row> readAll() {
+      return read(null, null);
+    }
+
+    @Override
+    public @NonNull List<RecipientSearchIndex.Row> readIds(@NonNull Collection<Long> ids) {
+      return read(ID + " IN (" + TextUtils.join(",", ids) + ")", null);
+    }
+
+    @Override
+    public @NonNull List<RecipientSearchIndex.Row> readAfter(long id) {
+      return read(ID + " > ?", SqlUtil.buildArgs(id));
+    }
+
+    private @NonNull List<RecipientSearchIndex.Row> read(@Nullable String selection, @Nullable String[] args) {
+      List<RecipientSearchIndex.Row> rows = new ArrayList<>();
+
+      try (Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_NAME, SEARCH_INDEX_PROJECTION, selection, args, null, null, null)) {
+        while (cursor != null && cursor.moveToNext()) {
+          rows.add(new RecipientSearchIndex.Row(cursor.getLong(0),
+                                                cursor.getString(1),
+                                                cursor.getString(2),
+                                                cursor.getString(3),
+                                                cursor.getString(4),
+                                                cursor.getString(5),
+                                                cursor.getString(6)));
+        }
+      }
+
+      return rows;
+    }
+  }
+
   private static @NonNull String nullIfEmpty(String column) {
     return "NULLIF(" + column + ", '')";
   }
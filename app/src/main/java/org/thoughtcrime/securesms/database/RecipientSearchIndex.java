@@ -0,0 +1,271 @@
+package org.thoughtcrime.securesms.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import org.signal.core.util.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory copy of the recipient fields that contact and mention search look at, folded for
+ * case and the same accents {@link RecipientDatabase} matches with its GLOB patterns.
+ * <p>
+ * Searching it finds every recipient the GLOB would, plus perhaps a few it wouldn't, so
+ * {@link RecipientDatabase} uses it to narrow a search down to a handful of rows by id and still
+ * applies the GLOB to those. Typing another character only searches the previous matches.
+ * <p>
+ * Kept up to date by marking recipients as changed whenever a searched column is written or they're
+ * refreshed, picking up any newly inserted recipients by id, and reloading entirely after bulk
+ * changes.
+ */
+final class RecipientSearchIndex {
+
+  private static final String TAG = Log.tag(RecipientSearchIndex.class);
+
+  static final int FIELD_PHONE        = 1;
+  static final int FIELD_EMAIL        = 1 << 1;
+  static final int FIELD_USERNAME     = 1 << 2;
+  static final int FIELD_SYSTEM_NAME  = 1 << 3;
+  static final int FIELD_SORT_NAME    = 1 << 4;
+  static final int FIELD_MENTION_NAME = 1 << 5;
+
+  private static final int FIELD_COUNT = 6;
+
+  private static final Map<Integer, Character> FOLDED_CHARACTERS = buildFoldedCharacters();
+
+  private final Source           source;
+  private final Map<Long, Entry> entries;
+  private final Set<Long>        changed;
+
+  private boolean     loaded;
+  private long        maxId;
+  private long        generation;
+  private String      lastNeedle;
+  private int         lastFields;
+  private long        lastGeneration;
+  private List<Entry> lastMatches;
+
+  RecipientSearchIndex(@NonNull Source source) {
+    this.source  = source;
+    this.entries = new HashMap<>();
+    this.changed = new HashSet<>();
+  }
+
+  /**
+   * @return The ids of recipients whose given fields contain the query, or null if there are more
+   *         than the limit.
+   */
+  @WorkerThread
+  synchronized @Nullable Set<Long> search(@NonNull String query, int fields, int limit) {
+    update();
+
+    String            needle     = normalize(query);
+    Collection<Entry> candidates = entries.values();
+
+    if (lastNeedle != null && lastFields == fields && lastGeneration == generation && needle.startsWith(lastNeedle)) {
+      candidates = lastMatches;
+    }
+
+    List<Entry> matches = new ArrayList<>();
+
+    for (Entry entry : candidates) {
+      if (entry.matches(needle, fields)) {
+        matches.add(entry);
+      }
+    }
+
+    lastNeedle     = needle;
+    lastFields     = fields;
+    lastGeneration = generation;
+    lastMatches    = matches;
+
+    if (matches.size() > limit) {
+      return null;
+    }
+
+    Set<Long> ids = new HashSet<>(matches.size());
+    for (Entry entry : matches) {
+      ids.add(entry.id);
+    }
+
+    return ids;
+  }
+
+  /**
+   * Re-reads the recipient the next time the index is searched.
+   */
+  synchronized void onRecipientChanged(long id) {
+    if (loaded) {
+      changed.add(id);
+    }
+  }
+
+  /**
+   * Reloads every recipient the next time the index is searched.
+   */
+  synchronized void invalidate() {
+    loaded = false;
+    changed.clear();
+  }
+
+  private void update() {
+    if (!loaded) {
+      long start = System.currentTimeMillis();
+
+      entries.clear();
+      maxId = 0;
+
+      addAll(source.readAll());
+
+      loaded = true;
+      generation++;
+
+      Log.d(TAG, "Loaded " + entries.size() + " recipients in " + (System.currentTimeMillis() - start) + " ms");
+      return;
+    }
+
+    if (!changed.isEmpty()) {
+      for (Long id : changed) {
+        entries.remove(id);
+      }
+
+      addAll(source.readIds(changed));
+      changed.clear();
+      generation++;
+    }
+
+    List<Row> inserted = source.readAfter(maxId);
+
+    if (!inserted.isEmpty()) {
+      addAll(inserted);
+      generation++;
+    }
+  }
+
+  private void addAll(@NonNull List<Row> rows) {
+    for (Row row : rows) {
+      entries.put(row.id, new Entry(row));
+      maxId = Math.max(maxId, row.id);
+    }
+  }
+
+  /**
+   * Lowercases and removes accents, a character at a time so that matches line up with the GLOB.
+   */
+  @VisibleForTesting
+  static @NonNull String normalize(@NonNull String value) {
+    StringBuilder builder = new StringBuilder(value.length());
+
+    for (int i = 0; i < value.length(); ) {
+      int codePoint = value.codePointAt(i);
+      i += Character.charCount(codePoint);
+
+      Character folded = FOLDED_CHARACTERS.get(codePoint);
+
+      if (folded == null) {
+        codePoint = Character.toLowerCase(codePoint);
+        folded    = FOLDED_CHARACTERS.get(codePoint);
+      }
+
+      if (folded != null) {
+        builder.append(folded.charValue());
+      } else {
+        builder.appendCodePoint(codePoint);
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private static @NonNull Map<Integer, Character> buildFoldedCharacters() {
+    Map<Integer, Character> folded = new HashMap<>();
+
+    for (char letter = 'a'; letter <= 'z'; letter++) {
+      String accents = RecipientDatabase.getAccentuatedCharRegex(String.valueOf(letter));
+
+      for (int i = 0; i < accents.length(); i++) {
+        if (i + 2 < accents.length() && accents.charAt(i + 1) == '-') {
+          for (int c = accents.charAt(i); c <= accents.charAt(i + 2); c++) {
+            folded.put(c, letter);
+          }
+          i += 2;
+        } else {
+          folded.put((int) accents.charAt(i), letter);
+        }
+      }
+    }
+
+    return folded;
+  }
+
+  /**
+   * Reads recipients from the database, with their fields in the order of the FIELD_ flags.
+   */
+  interface Source {
+    @NonNull List<Row> readAll();
+    @NonNull List<Row> readIds(@NonNull Collection<Long> ids);
+    @NonNull List<Row> readAfter(long id);
+  }
+
+  static final class Row {
+    private final long     id;
+    private final String[] fields;
+
+    Row(long id, @Nullable String phone, @Nullable String email, @Nullable String username, @Nullable String systemName, @Nullable String sortName, @Nullable String mentionName) {
+      this.id     = id;
+      this.fields = new String[] { phone, email, username, systemName, sortName, mentionName };
+    }
+
+    long getId() {
+      return id;
+    }
+  }
+
+  private static final class Entry {
+    private final long     id;
+    private final String[] fields;
+
+    private Entry(@NonNull Row row) {
+      this.id     = row.id;
+      this.fields = new String[FIELD_COUNT];
+
+      for (int i = 0; i < FIELD_COUNT; i++) {
+        String value = row.fields[i];
+
+        if (value == null) {
+          continue;
+        }
+
+        String normalized = normalize(value);
+
+        for (int j = 0; j < i; j++) {
+          if (normalized.equals(fields[j])) {
+            normalized = fields[j];
+            break;
+          }
+        }
+
+        fields[i] = normalized;
+      }
+    }
+
+    private boolean matches(@NonNull String needle, int fieldMask) {
+      for (int i = 0; i < FIELD_COUNT; i++) {
+        if ((fieldMask & (1 << i)) != 0 && fields[i] != null && fields[i].contains(needle)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+}
@@ -2,9 +2,13 @@ package org.thoughtcrime.securesms.database;
 
 
 import android.content.ContentValues;
+import android.text.TextUtils;
+
+import androidx.annotation.Nullable;
 
 import net.sqlcipher.Cursor;
 import net.sqlcipher.SQLException;
+import net.sqlcipher.database.SQLiteQueryBuilder;
 import net.sqlcipher.database.SQLiteQueryStats;
 import net.sqlcipher.database.SQLiteStatement;
 import net.sqlcipher.database.SQLiteTransactionListener;
@@ -36,11 +40,27 @@ public class SQLiteDatabase {
   private static final String NAME_LOCK  = "LOCK";
 
   private final net.sqlcipher.database.SQLiteDatabase wrapped;
+  private final SqlCipherReaderPool                   readers;
+  private final CompiledStatementCache                statements;
   private final Tracer                                tracer;
+  private final QueryProfiler                         profiler;
 
   public SQLiteDatabase(net.sqlcipher.database.SQLiteDatabase wrapped) {
-    this.wrapped = wrapped;
-    this.tracer  = Tracer.getInstance();
+    this(wrapped, null, null);
+  }
+
+  /**
+   * @param readers If present, read-only queries made outside of a transaction are served from
+   *                these connections rather than the primary one. Only valid in WAL mode.
+   * @param statements If present, where {@link CachedStatement}s are compiled and kept for reuse.
+   *                   Otherwise they are compiled each time they are run.
+   */
+  public SQLiteDatabase(net.sqlcipher.database.SQLiteDatabase wrapped, @Nullable SqlCipherReaderPool readers, @Nullable CompiledStatementCache statements) {
+    this.wrapped    = wrapped;
+    this.readers    = readers;
+    this.statements = statements;
+    this.tracer     = Tracer.getInstance();
+    this.profiler   = QueryProfiler.getInstance();
   }
 
   private void traceLockStart() {
@@ -62,7 +82,7 @@ public class SQLiteDatabase {
       traceLockStart();
     }
 
-    tracer.start(methodName, KEY_QUERY, query);
+    tracer.start(methodName, KEY_QUERY, query != null ? profiler.getFingerprint(query) : null);
     returnable.run();
     tracer.end(methodName);
 
@@ -82,7 +102,7 @@ public class SQLiteDatabase {
 
     Map<String, String> params = new HashMap<>();
     if (query != null) {
-      params.put(KEY_QUERY, query);
+      params.put(KEY_QUERY, profiler.getFingerprint(query));
     }
     if (table != null) {
       params.put(KEY_TABLE, table);
@@ -99,10 +119,124 @@ public class SQLiteDatabase {
     return result;
   }
 
+  /**
+   * Times a query through its first window fill, which is when SQLite actually runs it. Callers
+   * would trigger the fill anyway as soon as they move the cursor.
+   */
+  private Cursor profileQuery(String methodName, String table, String query, net.sqlcipher.database.SQLiteDatabase db, String sql, Object[] args, Returnable<Cursor> returnable) {
+    long   start  = profiler.start();
+    Cursor cursor = traceSql(methodName, table, query, false, () -> {
+      Cursor result = returnable.run();
+      if (result != null) {
+        result.getCount();
+      }
+      return result;
+    });
+
+    profiler.end(db, sql, sql, args, start, cursor != null ? cursor.getCount() : 0);
+
+    return cursor;
+  }
+
+  private long profileInsert(String methodName, String verb, String table, Returnable<Long> returnable) {
+    long start = profiler.start();
+    long id    = traceSql(methodName, table, null, true, returnable);
+
+    profiler.end(wrapped, verb + table, null, null, start, id != -1 ? 1 : 0);
+
+    return id;
+  }
+
+  /**
+   * Updates and deletes are explained as a SELECT with the same WHERE clause, as that is what
+   * decides their plan.
+   */
+  private int profileChange(String methodName, String verb, String table, String whereClause, String[] whereArgs, Returnable<Integer> returnable) {
+    long   start = profiler.start();
+    int    rows  = traceSql(methodName, table, whereClause, true, returnable);
+    String where = TextUtils.isEmpty(whereClause) ? "" : " WHERE " + whereClause;
+
+    profiler.end(wrapped, verb + table + where, "SELECT rowid FROM " + table + where, whereArgs, start, rows);
+
+    return rows;
+  }
+
+  /**
+   * Compiled statements hold their bindings between uses, so they are only used while holding the
+   * connection lock, taking it for the length of a transaction if the caller isn't already in one.
+   */
+  private long execute(CachedStatement statement, CachedStatement.Binder binder) {
+    long    start          = profiler.start();
+    boolean ownTransaction = !wrapped.inTransaction();
+
+    if (ownTransaction) {
+      wrapped.beginTransaction();
+    }
+
+    try {
+      SQLiteStatement compiled = statements != null ? statements.get(wrapped, statement.getSql()) : wrapped.compileStatement(statement.getSql());
+      long            result;
+
+      try {
+        statement.bind(compiled, binder);
+        result = statement.isInsert() ? compiled.executeInsert() : compiled.executeUpdateDelete();
+      } finally {
+        if (statements == null) {
+          compiled.close();
+        }
+      }
+
+      if (ownTransaction) {
+        wrapped.setTransactionSuccessful();
+      }
+
+      profiler.end(wrapped, statement.getSql(), statement.getExplainSql(), null, start, statement.isInsert() ? (result != -1 ? 1 : 0) : (int) result);
+
+      return result;
+    } finally {
+      if (ownTransaction) {
+        wrapped.endTransaction();
+      }
+    }
+  }
+
   public net.sqlcipher.database.SQLiteDatabase getSqlCipherDatabase() {
     return wrapped;
   }
 
+  /**
+   * The connection to run a read on. Reads inside a transaction stay on the primary connection so
+   * they see the transaction's own uncommitted writes.
+   */
+  private net.sqlcipher.database.SQLiteDatabase reader() {
+    if (readers == null || wrapped.inTransaction()) {
+      return wrapped;
+    }
+
+    return readers.get();
+  }
+
+  /**
+   * As {@link #reader()}, for raw SQL, which is only sent to a reader if it is a plain SELECT.
+   */
+  private net.sqlcipher.database.SQLiteDatabase reader(String sql) {
+    if (readers == null || !isSelect(sql)) {
+      return wrapped;
+    }
+
+    return reader();
+  }
+
+  private static boolean isSelect(String sql) {
+    int start = 0;
+
+    while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+      start++;
+    }
+
+    return sql.regionMatches(true, start, "SELECT", 0, 6);
+  }
+
   private interface Returnable<E> {
     E run();
   }
@@ -127,71 +261,108 @@ public class SQLiteDatabase {
   }
 
   public Cursor query(boolean distinct, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
-    return traceSql("query(9)", table, selection, false, () -> wrapped.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit));
+    net.sqlcipher.database.SQLiteDatabase db  = reader();
+    String                                sql = SQLiteQueryBuilder.buildQueryString(distinct, table, columns, selection, groupBy, having, orderBy, limit);
+
+    return profileQuery("query(9)", table, selection, db, sql, selectionArgs, () -> db.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit));
   }
 
   public Cursor queryWithFactory(net.sqlcipher.database.SQLiteDatabase.CursorFactory cursorFactory, boolean distinct, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
-    return traceSql("queryWithFactory()", table, selection, false, () -> wrapped.queryWithFactory(cursorFactory, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit));
+    net.sqlcipher.database.SQLiteDatabase db  = reader();
+    String                                sql = SQLiteQueryBuilder.buildQueryString(distinct, table, columns, selection, groupBy, having, orderBy, limit);
+
+    return profileQuery("queryWithFactory()", table, selection, db, sql, selectionArgs, () -> db.queryWithFactory(cursorFactory, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit));
   }
 
   public Cursor query(String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy) {
-    return traceSql("query(7)", table, selection, false, () -> wrapped.query(table, columns, selection, selectionArgs, groupBy, having, orderBy));
+    net.sqlcipher.database.SQLiteDatabase db  = reader();
+    String                                sql = SQLiteQueryBuilder.buildQueryString(false, table, columns, selection, groupBy, having, orderBy, null);
+
+    return profileQuery("query(7)", table, selection, db, sql, selectionArgs, () -> db.query(table, columns, selection, selectionArgs, groupBy, having, orderBy));
   }
 
   public Cursor query(String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
-    return traceSql("query(8)", table, selection, false, () -> wrapped.query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit));
+    net.sqlcipher.database.SQLiteDatabase db  = reader();
+    String                                sql = SQLiteQueryBuilder.buildQueryString(false, table, columns, selection, groupBy, having, orderBy, limit);
+
+    return profileQuery("query(8)", table, selection, db, sql, selectionArgs, () -> db.query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit));
   }
 
   public Cursor rawQuery(String sql, String[] selectionArgs) {
-    return traceSql("rawQuery(2a)", sql, false, () -> wrapped.rawQuery(sql, selectionArgs));
+    net.sqlcipher.database.SQLiteDatabase db = reader(sql);
+    return profileQuery("rawQuery(2a)", null, sql, db, sql, selectionArgs, () -> db.rawQuery(sql, selectionArgs));
   }
 
   public Cursor rawQuery(String sql, Object[] args) {
-    return traceSql("rawQuery(2b)", sql, false,() -> wrapped.rawQuery(sql, args));
+    net.sqlcipher.database.SQLiteDatabase db = reader(sql);
+    return profileQuery("rawQuery(2b)", null, sql, db, sql, args, () -> db.rawQuery(sql, args));
   }
 
   public Cursor rawQueryWithFactory(net.sqlcipher.database.SQLiteDatabase.CursorFactory cursorFactory, String sql, String[] selectionArgs, String editTable) {
-    return traceSql("rawQueryWithFactory()", sql, false, () -> wrapped.rawQueryWithFactory(cursorFactory, sql, selectionArgs, editTable));
+    net.sqlcipher.database.SQLiteDatabase db = reader(sql);
+    return profileQuery("rawQueryWithFactory()", null, sql, db, sql, selectionArgs, () -> db.rawQueryWithFactory(cursorFactory, sql, selectionArgs, editTable));
   }
 
   public Cursor rawQuery(String sql, String[] selectionArgs, int initialRead, int maxRead) {
-    return traceSql("rawQuery(4)", sql, false, () -> rawQuery(sql, selectionArgs, initialRead, maxRead));
+    net.sqlcipher.database.SQLiteDatabase db = reader(sql);
+    return profileQuery("rawQuery(4)", null, sql, db, sql, selectionArgs, () -> db.rawQuery(sql, selectionArgs, initialRead, maxRead));
   }
 
   public long insert(String table, String nullColumnHack, ContentValues values) {
-    return traceSql("insert()", table, null, true, () -> wrapped.insert(table, nullColumnHack, values));
+    return profileInsert("insert()", "INSERT INTO ", table, () -> wrapped.insert(table, nullColumnHack, values));
   }
 
   public long insertOrThrow(String table, String nullColumnHack, ContentValues values) throws SQLException {
-    return traceSql("insertOrThrow()", table, null, true, () -> wrapped.insertOrThrow(table, nullColumnHack, values));
+    return profileInsert("insertOrThrow()", "INSERT INTO ", table, () -> wrapped.insertOrThrow(table, nullColumnHack, values));
   }
 
   public long replace(String table, String nullColumnHack, ContentValues initialValues) {
-    return traceSql("replace()", table, null, true,() -> wrapped.replace(table, nullColumnHack, initialValues));
+    return profileInsert("replace()", "REPLACE INTO ", table, () -> wrapped.replace(table, nullColumnHack, initialValues));
   }
 
   public long replaceOrThrow(String table, String nullColumnHack, ContentValues initialValues) throws SQLException {
-    return traceSql("replaceOrThrow()", table, null, true, () -> wrapped.replaceOrThrow(table, nullColumnHack, initialValues));
+    return profileInsert("replaceOrThrow()", "REPLACE INTO ", table, () -> wrapped.replaceOrThrow(table, nullColumnHack, initialValues));
   }
 
   public long insertWithOnConflict(String table, String nullColumnHack, ContentValues initialValues, int conflictAlgorithm) {
-    return traceSql("insertWithOnConflict()", table, null, true, () -> wrapped.insertWithOnConflict(table, nullColumnHack, initialValues, conflictAlgorithm));
+    return profileInsert("insertWithOnConflict()", "INSERT INTO ", table, () -> wrapped.insertWithOnConflict(table, nullColumnHack, initialValues, conflictAlgorithm));
+  }
+
+  /**
+   * Runs an insert from a {@link CachedStatement}. Unlike {@link #insert(String, String, ContentValues)},
+   * failures are thrown rather than logged.
+   *
+   * @return The row ID of the new row, or -1 if it was ignored due to a conflict.
+   */
+  public long insert(CachedStatement statement, CachedStatement.Binder binder) throws SQLException {
+    return traceSql("insert(cached)", statement.getTable(), null, true, () -> execute(statement, binder));
+  }
+
+  /**
+   * Runs an update from a {@link CachedStatement}.
+   *
+   * @return The number of rows changed.
+   */
+  public int update(CachedStatement statement, CachedStatement.Binder binder) throws SQLException {
+    return traceSql("update(cached)", statement.getTable(), null, true, () -> (int) execute(statement, binder));
   }
 
   public int delete(String table, String whereClause, String[] whereArgs) {
-    return traceSql("delete()", table, whereClause, true, () -> wrapped.delete(table, whereClause, whereArgs));
+    return profileChange("delete()", "DELETE FROM ", table, whereClause, whereArgs, () -> wrapped.delete(table, whereClause, whereArgs));
   }
 
   public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
-    return traceSql("update()", table, whereClause, true, () -> wrapped.update(table, values, whereClause, whereArgs));
+    return profileChange("update()", "UPDATE ", table, whereClause, whereArgs, () -> wrapped.update(table, values, whereClause, whereArgs));
   }
 
   public int updateWithOnConflict(String table, ContentValues values, String whereClause, String[] whereArgs, int conflictAlgorithm) {
-    return traceSql("updateWithOnConflict()", table, whereClause, true, () -> wrapped.updateWithOnConflict(table, values, whereClause, whereArgs, conflictAlgorithm));
+    return profileChange("updateWithOnConflict()", "UPDATE ", table, whereClause, whereArgs, () -> wrapped.updateWithOnConflict(table, values, whereClause, whereArgs, conflictAlgorithm));
   }
 
   public void execSQL(String sql) throws SQLException {
+    long start = profiler.start();
     traceSql("execSQL(1)", sql, true, () -> wrapped.execSQL(sql));
+    profiler.end(wrapped, sql, sql, null, start, 0);
   }
 
   public void rawExecSQL(String sql) {
@@ -199,7 +370,9 @@ public class SQLiteDatabase {
   }
 
   public void execSQL(String sql, Object[] bindArgs) throws SQLException {
+    long start = profiler.start();
     traceSql("execSQL(2)", sql, true, () -> wrapped.execSQL(sql, bindArgs));
+    profiler.end(wrapped, sql, sql, bindArgs, start, 0);
   }
 
 
@@ -32,7 +32,7 @@ import net.sqlcipher.database.SQLiteStatement;
 
 import org.signal.core.util.logging.Log;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatch;
-import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatchList;
+import org.thoughtcrime.securesms.database.documents.LazyDocumentList;
 import org.thoughtcrime.securesms.database.documents.NetworkFailure;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.database.model.GroupCallUpdateDetailsUtil;
@@ -55,7 +55,6 @@ import org.thoughtcrime.securesms.sms.IncomingTextMessage;
 import org.thoughtcrime.securesms.sms.OutgoingTextMessage;
 import org.thoughtcrime.securesms.util.Base64;
 import org.thoughtcrime.securesms.util.CursorUtil;
-import org.thoughtcrime.securesms.util.JsonUtils;
 import org.thoughtcrime.securesms.util.SqlUtil;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
 import org.thoughtcrime.securesms.util.Util;
@@ -63,7 +62,6 @@ import org.whispersystems.libsignal.util.Pair;
 import org.whispersystems.libsignal.util.guava.Optional;
 
 import java.io.Closeable;
-import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -1556,10 +1554,14 @@ public class SmsDatabase extends MessageDatabase {
 
     private final Cursor  cursor;
     private final Context context;
+    private final Columns columns;
+    private final boolean readReceiptsEnabled;
 
     public Reader(Cursor cursor) {
-      this.cursor  = cursor;
-      this.context = ApplicationDependencies.getApplication();
+      this.cursor              = cursor;
+      this.context             = ApplicationDependencies.getApplication();
+      this.columns             = cursor != null ? new Columns(cursor) : null;
+      this.readReceiptsEnabled = TextSecurePreferences.isReadReceiptsEnabled(context);
     }
 
     public SmsMessageRecord getNext() {
@@ -1575,32 +1577,32 @@ public class SmsDatabase extends MessageDatabase {
     }
 
     public SmsMessageRecord getCurrent() {
-      long                 messageId            = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.ID));
-      long                 recipientId          = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.RECIPIENT_ID));
-      int                  addressDeviceId      = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.ADDRESS_DEVICE_ID));
-      long                 type                 = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.TYPE));
-      long                 dateReceived         = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.NORMALIZED_DATE_RECEIVED));
-      long                 dateSent             = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.NORMALIZED_DATE_SENT));
-      long                 dateServer           = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.DATE_SERVER));
-      long                 threadId             = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.THREAD_ID));
-      int                  status               = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.STATUS));
-      int                  deliveryReceiptCount = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.DELIVERY_RECEIPT_COUNT));
-      int                  readReceiptCount     = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.READ_RECEIPT_COUNT));
-      String               mismatchDocument     = cursor.getString(cursor.getColumnIndexOrThrow(SmsDatabase.MISMATCHED_IDENTITIES));
-      int                  subscriptionId       = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.SUBSCRIPTION_ID));
-      long                 expiresIn            = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.EXPIRES_IN));
-      long                 expireStarted        = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.EXPIRE_STARTED));
-      String               body                 = cursor.getString(cursor.getColumnIndexOrThrow(SmsDatabase.BODY));
-      boolean              unidentified         = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.UNIDENTIFIED)) == 1;
-      boolean              remoteDelete         = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.REMOTE_DELETED)) == 1;
-      List<ReactionRecord> reactions            = parseReactions(cursor);
-      long                 notifiedTimestamp    = CursorUtil.requireLong(cursor, NOTIFIED_TIMESTAMP);
-
-      if (!TextSecurePreferences.isReadReceiptsEnabled(context)) {
+      long                 messageId            = cursor.getLong(columns.id);
+      long                 recipientId          = cursor.getLong(columns.recipientId);
+      int                  addressDeviceId      = cursor.getInt(columns.addressDeviceId);
+      long                 type                 = cursor.getLong(columns.type);
+      long                 dateReceived         = cursor.getLong(columns.normalizedDateReceived);
+      long                 dateSent             = cursor.getLong(columns.normalizedDateSent);
+      long                 dateServer           = cursor.getLong(columns.dateServer);
+      long                 threadId             = cursor.getLong(columns.threadId);
+      int                  status               = cursor.getInt(columns.status);
+      int                  deliveryReceiptCount = cursor.getInt(columns.deliveryReceiptCount);
+      int                  readReceiptCount     = cursor.getInt(columns.readReceiptCount);
+      String               mismatchDocument     = cursor.getString(columns.mismatchedIdentities);
+      int                  subscriptionId       = cursor.getInt(columns.subscriptionId);
+      long                 expiresIn            = cursor.getLong(columns.expiresIn);
+      long                 expireStarted        = cursor.getLong(columns.expireStarted);
+      String               body                 = cursor.getString(columns.body);
+      boolean              unidentified         = cursor.getInt(columns.unidentified) == 1;
+      boolean              remoteDelete         = cursor.getInt(columns.remoteDeleted) == 1;
+      List<ReactionRecord> reactions            = parseReactions(cursor.getBlob(columns.reactions));
+      long                 notifiedTimestamp    = cursor.getLong(columns.notifiedTimestamp);
+
+      if (!readReceiptsEnabled) {
         readReceiptCount = 0;
       }
 
-      List<IdentityKeyMismatch> mismatches = getMismatches(mismatchDocument);
+      List<IdentityKeyMismatch> mismatches = LazyDocumentList.identityKeyMismatches(mismatchDocument);
       Recipient                 recipient  = Recipient.live(RecipientId.from(recipientId)).get();
 
       return new SmsMessageRecord(messageId, body, recipient,
@@ -1613,22 +1615,60 @@ public class SmsDatabase extends MessageDatabase {
                                   notifiedTimestamp);
     }
 
-    private List<IdentityKeyMismatch> getMismatches(String document) {
-      try {
-        if (!TextUtils.isEmpty(document)) {
-          return JsonUtils.fromJson(document, IdentityKeyMismatchList.class).getList();
-        }
-      } catch (IOException e) {
-        Log.w(TAG, e);
-      }
-
-      return new LinkedList<>();
-    }
-
     @Override
     public void close() {
       cursor.close();
     }
+
+    /**
+     * Column indices, resolved once per cursor rather than looked up by name for every row. A column
+     * the cursor doesn't have is -1, which fails when it's read like any other missing column.
+     */
+    private static final class Columns {
+      private final int id;
+      private final int recipientId;
+      private final int addressDeviceId;
+      private final int type;
+      private final int normalizedDateReceived;
+      private final int normalizedDateSent;
+      private final int dateServer;
+      private final int threadId;
+      private final int status;
+      private final int deliveryReceiptCount;
+      private final int readReceiptCount;
+      private final int mismatchedIdentities;
+      private final int subscriptionId;
+      private final int expiresIn;
+      private final int expireStarted;
+      private final int body;
+      private final int unidentified;
+      private final int remoteDeleted;
+      private final int reactions;
+      private final int notifiedTimestamp;
+
+      private Columns(@NonNull Cursor cursor) {
+        this.id                     = cursor.getColumnIndex(SmsDatabase.ID);
+        this.recipientId            = cursor.getColumnIndex(SmsDatabase.RECIPIENT_ID);
+        this.addressDeviceId        = cursor.getColumnIndex(SmsDatabase.ADDRESS_DEVICE_ID);
+        this.type                   = cursor.getColumnIndex(SmsDatabase.TYPE);
+        this.normalizedDateReceived = cursor.getColumnIndex(SmsDatabase.NORMALIZED_DATE_RECEIVED);
+        this.normalizedDateSent     = cursor.getColumnIndex(SmsDatabase.NORMALIZED_DATE_SENT);
+        this.dateServer             = cursor.getColumnIndex(SmsDatabase.DATE_SERVER);
+        this.threadId               = cursor.getColumnIndex(SmsDatabase.THREAD_ID);
+        this.status                 = cursor.getColumnIndex(SmsDatabase.STATUS);
+        this.deliveryReceiptCount   = cursor.getColumnIndex(SmsDatabase.DELIVERY_RECEIPT_COUNT);
+        this.readReceiptCount       = cursor.getColumnIndex(SmsDatabase.READ_RECEIPT_COUNT);
+        this.mismatchedIdentities   = cursor.getColumnIndex(SmsDatabase.MISMATCHED_IDENTITIES);
+        this.subscriptionId         = cursor.getColumnIndex(SmsDatabase.SUBSCRIPTION_ID);
+        this.expiresIn              = cursor.getColumnIndex(SmsDatabase.EXPIRES_IN);
+        this.expireStarted          = cursor.getColumnIndex(SmsDatabase.EXPIRE_STARTED);
+        this.body                   = cursor.getColumnIndex(SmsDatabase.BODY);
+        this.unidentified           = cursor.getColumnIndex(SmsDatabase.UNIDENTIFIED);
+        this.remoteDeleted          = cursor.getColumnIndex(SmsDatabase.REMOTE_DELETED);
+        this.reactions              = cursor.getColumnIndex(REACTIONS);
+        this.notifiedTimestamp      = cursor.getColumnIndex(NOTIFIED_TIMESTAMP);
+      }
+    }
   }
 
 }
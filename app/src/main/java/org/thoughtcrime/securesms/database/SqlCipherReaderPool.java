@@ -0,0 +1,83 @@
+package org.thoughtcrime.securesms.database;
+
+import androidx.annotation.NonNull;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteDatabaseHook;
+
+import org.signal.core.util.logging.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small, fixed set of read-only connections to a SQLCipher database that is in WAL mode.
+ * <p>
+ * SQLCipher gives each {@link SQLiteDatabase} a single connection that is held for the length of a
+ * transaction, so without these every read waits for whatever write transaction is in progress.
+ * With WAL, readers on other connections see the last committed state instead of blocking.
+ * <p>
+ * Connections are not checked out, as cursors keep using the connection they were created on long
+ * after the query returns. Each connection serializes its own use, so instead callers are given an
+ * idle connection when there is one, and share one round robin when there is not. Connections are
+ * opened on first use.
+ */
+public final class SqlCipherReaderPool {
+
+  private static final String TAG = Log.tag(SqlCipherReaderPool.class);
+
+  private final String             path;
+  private final String             password;
+  private final SQLiteDatabaseHook hook;
+  private final SQLiteDatabase[]   connections;
+  private final AtomicInteger      next;
+
+  public SqlCipherReaderPool(@NonNull String path, @NonNull String password, @NonNull SQLiteDatabaseHook hook, int size) {
+    this.path        = path;
+    this.password    = password;
+    this.hook        = hook;
+    this.connections = new SQLiteDatabase[size];
+    this.next        = new AtomicInteger();
+  }
+
+  public @NonNull SQLiteDatabase get() {
+    int start = (next.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+
+    for (int i = 0; i < connections.length; i++) {
+      SQLiteDatabase connection = getConnection((start + i) % connections.length);
+
+      if (!connection.isDbLockedByOtherThreads()) {
+        return connection;
+      }
+    }
+
+    return getConnection(start);
+  }
+
+  public int size() {
+    return connections.length;
+  }
+
+  public synchronized void close() {
+    for (int i = 0; i < connections.length; i++) {
+      if (connections[i] != null) {
+        connections[i].close();
+        connections[i] = null;
+      }
+    }
+  }
+
+  private synchronized @NonNull SQLiteDatabase getConnection(int index) {
+    SQLiteDatabase connection = connections[index];
+
+    if (connection == null || !connection.isOpen()) {
+      long startTime = System.currentTimeMillis();
+
+      connection         = SQLiteDatabase.openDatabase(path, password, null, SQLiteDatabase.OPEN_READONLY, hook);
+      connections[index] = connection;
+
+      Log.d(TAG, "Opened reader connection " + index + " in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    return connection;
+  }
+}
@@ -12,6 +12,8 @@ import androidx.annotation.Nullable;
 import org.greenrobot.eventbus.EventBus;
 import org.signal.core.util.StreamUtil;
 import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.components.emoji.EmojiUtil;
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiParser;
 import org.thoughtcrime.securesms.crypto.AttachmentSecret;
 import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
 import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
@@ -19,6 +21,7 @@ import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.database.model.IncomingSticker;
 import org.thoughtcrime.securesms.database.model.StickerPackRecord;
 import org.thoughtcrime.securesms.database.model.StickerRecord;
+import org.thoughtcrime.securesms.emoji.EmojiSource;
 import org.thoughtcrime.securesms.mms.DecryptableStreamUriLoader.DecryptableUri;
 import org.thoughtcrime.securesms.stickers.BlessedPacks;
 import org.thoughtcrime.securesms.stickers.StickerPackInstallEvent;
@@ -30,6 +33,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -79,11 +84,13 @@ public class StickerDatabase extends Database {
 
   public static final String DIRECTORY = "stickers";
 
-  private final AttachmentSecret attachmentSecret;
+  private final AttachmentSecret  attachmentSecret;
+  private final StickerEmojiIndex emojiIndex;
 
   public StickerDatabase(Context context, SQLCipherOpenHelper databaseHelper, AttachmentSecret attachmentSecret) {
     super(context, databaseHelper);
     this.attachmentSecret = attachmentSecret;
+    this.emojiIndex       = new StickerEmojiIndex(new EmojiIndexSource(), StickerDatabase::getEmojiSearchKeys);
   }
 
   public void insertSticker(@NonNull IncomingSticker sticker, @NonNull InputStream dataStream, boolean notify) throws IOException {
@@ -112,6 +119,10 @@ public class StickerDatabase extends Database {
     }
 
     if (id > 0) {
+      if (!sticker.isCover()) {
+        emojiIndex.onStickerInserted(sticker.getPackId(), sticker.getStickerId());
+      }
+
       notifyStickerListeners();
 
       if (sticker.isCover()) {
@@ -151,14 +162,21 @@ public class StickerDatabase extends Database {
     return cursor;
   }
 
-  public @Nullable Cursor getStickersByEmoji(@NonNull String emoji) {
-    String   selection = EMOJI + " LIKE ? AND " + COVER + " = ?";
-    String[] args      = new String[] { "%"+emoji+"%", "0" };
-
-    Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_NAME, null, selection, args, null, null, null);
-    setNotifyStickerListeners(cursor);
+  /**
+   * Finds stickers tagged with any of the given emoji, most recently used first. Stickers are looked
+   * up in memory, with the database only read the first time.
+   *
+   * @param emoji Canonical representations of single emoji, see {@link EmojiUtil#getCanonicalRepresentation(String)}.
+   */
+  public @NonNull List<StickerRecord> getStickersByEmoji(@NonNull Collection<String> emoji) {
+    return emojiIndex.search(emoji);
+  }
 
-    return cursor;
+  /**
+   * Reads every sticker into memory ahead of the first {@link #getStickersByEmoji(Collection)}.
+   */
+  public void preloadStickersByEmoji() {
+    emojiIndex.preload();
   }
 
   public @Nullable Cursor getAllStickerPacks() {
@@ -249,6 +267,7 @@ public class StickerDatabase extends Database {
     values.put(LAST_USED, lastUsed);
 
     databaseHelper.getWritableDatabase().update(TABLE_NAME, values, selection, args);
+    emojiIndex.onStickerUsed(rowId, lastUsed);
 
     notifyStickerListeners();
     notifyStickerPackListeners();
@@ -268,31 +287,35 @@ public class StickerDatabase extends Database {
                            ")";
     String[]      args = new String[] { "0" };
 
+    List<String> deletedPackIds = new ArrayList<>();
+
     db.beginTransaction();
 
     try {
-      boolean performedDelete = false;
-
       try (Cursor cursor = db.rawQuery(query, args)) {
         while (cursor != null && cursor.moveToNext()) {
           String packId = cursor.getString(cursor.getColumnIndexOrThrow(PACK_ID));
 
           if (!BlessedPacks.contains(packId)) {
             deletePack(db, packId);
-            performedDelete = true;
+            deletedPackIds.add(packId);
           }
         }
       }
 
       db.setTransactionSuccessful();
 
-      if (performedDelete) {
+      if (!deletedPackIds.isEmpty()) {
         notifyStickerPackListeners();
         notifyStickerListeners();
       }
     } finally {
       db.endTransaction();
     }
+
+    for (String packId : deletedPackIds) {
+      emojiIndex.onPackRemoved(packId);
+    }
   }
 
   public void uninstallPack(@NonNull String packId) {
@@ -309,6 +332,8 @@ public class StickerDatabase extends Database {
     } finally {
       db.endTransaction();
     }
+
+    emojiIndex.onPackRemoved(packId);
   }
 
   public void updatePackOrder(@NonNull List<StickerPackRecord> packsInOrder) {
@@ -436,6 +461,56 @@ public class StickerDatabase extends Database {
     }
   }
 
+  /**
+   * The keys a sticker tagged with the given emoji can be found by in the {@link StickerEmojiIndex}:
+   * the canonical representation of each emoji in the tag, and of the tag as a whole in case it
+   * holds an emoji we don't know about yet.
+   */
+  private static @NonNull Collection<String> getEmojiSearchKeys(@NonNull String emoji) {
+    Set<String>               keys       = new HashSet<>();
+    EmojiParser.CandidateList candidates = new EmojiParser(EmojiSource.getLatest().getEmojiTree()).findCandidates(emoji);
+
+    keys.add(EmojiUtil.getCanonicalRepresentation(emoji));
+
+    for (EmojiParser.Candidate candidate : candidates) {
+      keys.add(EmojiUtil.getCanonicalRepresentation(emoji.substring(candidate.getStartIndex(), candidate.getEndIndex())));
+    }
+
+    return keys;
+  }
+
+  /**
+   * Reads the stickers the {@link StickerEmojiIndex} searches.
+   */
+  private final class EmojiIndexSource implements StickerEmojiIndex.Source {
+
+    @Override
+    public @NonNull List<StickerEmojiIndex.Row> readAll() {
+      return read(COVER + " = ?", new String[] { "0" });
+    }
+
+    @Override
+    public @Nullable StickerEmojiIndex.Row read(@NonNull String packId, int stickerId) {
+      List<StickerEmojiIndex.Row> rows = read(PACK_ID + " = ? AND " + STICKER_ID + " = ? AND " + COVER + " = ?", SqlUtil.buildArgs(packId, stickerId, 0));
+      return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private @NonNull List<StickerEmojiIndex.Row> read(@NonNull String selection, @NonNull String[] args) {
+      List<StickerEmojiIndex.Row> rows = new ArrayList<>();
+
+      try (Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_NAME, null, selection, args, null, null, _ID + " ASC")) {
+        StickerRecordReader reader = new StickerRecordReader(cursor);
+        StickerRecord       record;
+
+        while ((record = reader.getNext()) != null) {
+          rows.add(new StickerEmojiIndex.Row(record, CursorUtil.requireLong(cursor, LAST_USED)));
+        }
+      }
+
+      return rows;
+    }
+  }
+
   private static final class FileInfo {
     private final File   file;
     private final long   length;
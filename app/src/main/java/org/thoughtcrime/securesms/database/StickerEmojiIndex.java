@@ -0,0 +1,225 @@
+package org.thoughtcrime.securesms.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.database.model.StickerRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory map from emoji to the stickers tagged with them, so that suggesting stickers for
+ * what's being typed doesn't have to query {@link StickerDatabase}.
+ * <p>
+ * Stickers are loaded once, the first time the index is used, and from then on kept up to date
+ * with what {@link StickerDatabase} writes: stickers are added as packs are downloaded, dropped as
+ * packs are uninstalled or deleted, and moved up the results as they're sent.
+ */
+final class StickerEmojiIndex {
+
+  private static final String TAG = Log.tag(StickerEmojiIndex.class);
+
+  private final Source                   source;
+  private final KeyFunction              keyFunction;
+  private final Map<Long, Entry>         entries;
+  private final Map<String, List<Entry>> entriesByKey;
+
+  private boolean loaded;
+
+  StickerEmojiIndex(@NonNull Source source, @NonNull KeyFunction keyFunction) {
+    this.source       = source;
+    this.keyFunction  = keyFunction;
+    this.entries      = new HashMap<>();
+    this.entriesByKey = new HashMap<>();
+  }
+
+  /**
+   * @param keys Every way of writing the emoji being searched for, as {@link KeyFunction} would give them.
+   * @return The stickers tagged with any of the keys, most recently used first.
+   */
+  @WorkerThread
+  synchronized @NonNull List<StickerRecord> search(@NonNull Collection<String> keys) {
+    load();
+
+    Set<Entry> matches = new LinkedHashSet<>();
+
+    for (String key : keys) {
+      List<Entry> keyEntries = entriesByKey.get(key);
+
+      if (keyEntries != null) {
+        matches.addAll(keyEntries);
+      }
+    }
+
+    List<Entry> ranked = new ArrayList<>(matches);
+    Collections.sort(ranked, (lhs, rhs) -> lhs.lastUsed != rhs.lastUsed ? Long.compare(rhs.lastUsed, lhs.lastUsed) : Long.compare(lhs.record.getRowId(), rhs.record.getRowId()));
+
+    List<StickerRecord> records = new ArrayList<>(ranked.size());
+    for (Entry entry : ranked) {
+      records.add(entry.record);
+    }
+
+    return records;
+  }
+
+  /**
+   * Loads the index now, if it hasn't been already, so that the first search doesn't have to.
+   */
+  @WorkerThread
+  synchronized void preload() {
+    load();
+  }
+
+  /**
+   * Adds or replaces a sticker that was just written.
+   */
+  @WorkerThread
+  synchronized void onStickerInserted(@NonNull String packId, int stickerId) {
+    if (!loaded) {
+      return;
+    }
+
+    Row row = source.read(packId, stickerId);
+
+    if (row != null) {
+      remove(row.record.getRowId());
+      add(row);
+    }
+  }
+
+  /**
+   * Drops every sticker in the pack. Its cover, if kept, is never in the index.
+   */
+  synchronized void onPackRemoved(@NonNull String packId) {
+    if (!loaded) {
+      return;
+    }
+
+    Iterator<Entry> iterator = entries.values().iterator();
+
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+
+      if (entry.record.getPackId().equals(packId)) {
+        iterator.remove();
+        removeKeys(entry);
+      }
+    }
+  }
+
+  synchronized void onStickerUsed(long rowId, long lastUsed) {
+    Entry entry = entries.get(rowId);
+
+    if (entry != null) {
+      entry.lastUsed = lastUsed;
+    }
+  }
+
+  private void load() {
+    if (loaded) {
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+
+    for (Row row : source.readAll()) {
+      add(row);
+    }
+
+    loaded = true;
+
+    Log.d(TAG, "Loaded " + entries.size() + " stickers with " + entriesByKey.size() + " emoji in " + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  private void add(@NonNull Row row) {
+    Entry entry = new Entry(row.record, new HashSet<>(keyFunction.getKeys(row.record.getEmoji())), row.lastUsed);
+
+    entries.put(row.record.getRowId(), entry);
+
+    for (String key : entry.keys) {
+      List<Entry> keyEntries = entriesByKey.get(key);
+
+      if (keyEntries == null) {
+        keyEntries = new ArrayList<>(1);
+        entriesByKey.put(key, keyEntries);
+      }
+
+      keyEntries.add(entry);
+    }
+  }
+
+  private void remove(long rowId) {
+    Entry entry = entries.remove(rowId);
+
+    if (entry != null) {
+      removeKeys(entry);
+    }
+  }
+
+  private void removeKeys(@NonNull Entry entry) {
+    for (String key : entry.keys) {
+      List<Entry> keyEntries = entriesByKey.get(key);
+
+      if (keyEntries != null) {
+        keyEntries.remove(entry);
+
+        if (keyEntries.isEmpty()) {
+          entriesByKey.remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads stickers, other than pack covers, from the database.
+   */
+  interface Source {
+    @NonNull List<Row> readAll();
+    @Nullable Row read(@NonNull String packId, int stickerId);
+  }
+
+  /**
+   * Splits the emoji a sticker is tagged with into the keys it can be found by.
+   */
+  interface KeyFunction {
+    @NonNull Collection<String> getKeys(@NonNull String emoji);
+  }
+
+  static final class Row {
+    private final StickerRecord record;
+    private final long          lastUsed;
+
+    Row(@NonNull StickerRecord record, long lastUsed) {
+      this.record   = record;
+      this.lastUsed = lastUsed;
+    }
+
+    @NonNull StickerRecord getRecord() {
+      return record;
+    }
+  }
+
+  private static final class Entry {
+    private final StickerRecord record;
+    private final Set<String>   keys;
+
+    private long lastUsed;
+
+    private Entry(@NonNull StickerRecord record, @NonNull Set<String> keys, long lastUsed) {
+      this.record   = record;
+      this.keys     = keys;
+      this.lastUsed = lastUsed;
+    }
+  }
+}
@@ -688,6 +688,22 @@ public class ThreadDatabase extends Database {
     return cursor;
   }
 
+  /**
+   * Returns the same page of unpinned threads as {@link #getUnarchivedConversationList(boolean, long, long)},
+   * but seeks past a thread that comes before the page rather than having SQLite build and skip every
+   * thread before it.
+   *
+   * @param skip The number of threads between {@code after} and the page.
+   */
+  public Cursor getUnarchivedConversationList(@NonNull PageKey after, long skip, long limit) {
+    SQLiteDatabase db    = databaseHelper.getReadableDatabase();
+    String         where = ARCHIVED + " = 0 AND " + MESSAGE_COUNT + " != 0 AND " + PINNED + " = 0 AND " +
+                           "(" + TABLE_NAME + "." + DATE + " < ? OR (" + TABLE_NAME + "." + DATE + " = ? AND " + TABLE_NAME + "." + ID + " < ?))";
+    String         query = createQuery(where, skip, limit, false);
+
+    return db.rawQuery(query, SqlUtil.buildArgs(after.getDate(), after.getDate(), after.getThreadId()));
+  }
+
   private Cursor getConversationList(@NonNull String archived, long offset, long limit) {
     SQLiteDatabase db     = databaseHelper.getReadableDatabase();
     String         query  = createQuery(ARCHIVED + " = ? AND " + MESSAGE_COUNT + " != 0", offset, limit, false);
@@ -1415,7 +1431,7 @@ public class ThreadDatabase extends Database {
   }
 
   private @NonNull String createQuery(@NonNull String where, long offset, long limit, boolean preferPinned) {
-    String orderBy    = (preferPinned ? TABLE_NAME + "." + PINNED + " DESC, " : "") + TABLE_NAME + "." + DATE + " DESC";
+    String orderBy    = (preferPinned ? TABLE_NAME + "." + PINNED + " DESC, " : "") + TABLE_NAME + "." + DATE + " DESC, " + TABLE_NAME + "." + ID + " DESC";
 
     return createQuery(where, orderBy, offset, limit);
   }
@@ -1691,6 +1707,27 @@ public class ThreadDatabase extends Database {
     }
   }
 
+  /**
+   * Identifies a thread in the conversation list for {@link #getUnarchivedConversationList(PageKey, long, long)}.
+   */
+  public static final class PageKey {
+    private final long date;
+    private final long threadId;
+
+    public PageKey(long date, long threadId) {
+      this.date     = date;
+      this.threadId = threadId;
+    }
+
+    public long getDate() {
+      return date;
+    }
+
+    public long getThreadId() {
+      return threadId;
+    }
+  }
+
   public static class ConversationMetadata {
     private final long    lastSeen;
     private final boolean hasSent;
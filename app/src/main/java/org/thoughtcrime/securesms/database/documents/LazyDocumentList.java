@@ -0,0 +1,73 @@
+package org.thoughtcrime.securesms.database.documents;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.util.JsonUtils;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only view of the list in a serialized {@link Document} that is only parsed the first time
+ * it's accessed. Most message records are read to be displayed or measured and never look at their
+ * mismatched identities or network failures, so there's no reason to parse them up front.
+ */
+public final class LazyDocumentList<T> extends AbstractList<T> {
+
+  private static final String TAG = Log.tag(LazyDocumentList.class);
+
+  private static final ObjectReader MISMATCH_READER = JsonUtils.getMapper().readerFor(IdentityKeyMismatchList.class);
+  private static final ObjectReader FAILURE_READER  = JsonUtils.getMapper().readerFor(NetworkFailureList.class);
+
+  private final ObjectReader reader;
+
+  private String  document;
+  private List<T> list;
+
+  private LazyDocumentList(@NonNull String document, @NonNull ObjectReader reader) {
+    this.document = document;
+    this.reader   = reader;
+  }
+
+  public static @NonNull List<IdentityKeyMismatch> identityKeyMismatches(@Nullable String document) {
+    return TextUtils.isEmpty(document) ? Collections.emptyList() : new LazyDocumentList<>(document, MISMATCH_READER);
+  }
+
+  public static @NonNull List<NetworkFailure> networkFailures(@Nullable String document) {
+    return TextUtils.isEmpty(document) ? Collections.emptyList() : new LazyDocumentList<>(document, FAILURE_READER);
+  }
+
+  @Override
+  public T get(int index) {
+    return getList().get(index);
+  }
+
+  @Override
+  public int size() {
+    return getList().size();
+  }
+
+  private synchronized @NonNull List<T> getList() {
+    if (list == null) {
+      try {
+        Document<T> parsed = reader.readValue(document);
+        list = parsed.getList() != null ? parsed.getList() : Collections.emptyList();
+      } catch (IOException e) {
+        Log.w(TAG, e);
+        list = Collections.emptyList();
+      }
+
+      document = null;
+    }
+
+    return list;
+  }
+}
@@ -26,6 +26,7 @@ import org.thoughtcrime.securesms.contacts.avatars.ContactColorsLegacy;
 import org.thoughtcrime.securesms.crypto.DatabaseSecret;
 import org.thoughtcrime.securesms.crypto.MasterSecret;
 import org.thoughtcrime.securesms.database.AttachmentDatabase;
+import org.thoughtcrime.securesms.database.CompiledStatementCache;
 import org.thoughtcrime.securesms.database.DraftDatabase;
 import org.thoughtcrime.securesms.database.GroupDatabase;
 import org.thoughtcrime.securesms.database.GroupReceiptDatabase;
@@ -43,6 +44,7 @@ import org.thoughtcrime.securesms.database.SignalDatabase;
 import org.thoughtcrime.securesms.database.SignedPreKeyDatabase;
 import org.thoughtcrime.securesms.database.SmsDatabase;
 import org.thoughtcrime.securesms.database.SqlCipherDatabaseHook;
+import org.thoughtcrime.securesms.database.SqlCipherReaderPool;
 import org.thoughtcrime.securesms.database.StickerDatabase;
 import org.thoughtcrime.securesms.database.ThreadDatabase;
 import org.thoughtcrime.securesms.database.UnknownStorageIdDatabase;
@@ -59,6 +61,7 @@ import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.service.KeyCachingService;
 import org.thoughtcrime.securesms.storage.StorageSyncHelper;
 import org.thoughtcrime.securesms.util.Base64;
+import org.thoughtcrime.securesms.util.ByteUnit;
 import org.thoughtcrime.securesms.util.CursorUtil;
 import org.thoughtcrime.securesms.util.FileUtils;
 import org.thoughtcrime.securesms.util.Hex;
@@ -185,14 +188,24 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper implements SignalDatab
   private static final int    DATABASE_VERSION = 98;
   private static final String DATABASE_NAME    = "signal.db";
 
-  private final Context        context;
-  private final DatabaseSecret databaseSecret;
+  private static final int  WAL_READER_CONNECTIONS   = 3;
+  private static final int  WAL_AUTOCHECKPOINT_PAGES = 1000;
+  private static final long WAL_SIZE_LIMIT_BYTES     = ByteUnit.MEGABYTES.toBytes(4);
+
+  private final Context                context;
+  private final DatabaseSecret         databaseSecret;
+  private final boolean                walEnabled;
+  private final CompiledStatementCache statements;
+
+  private volatile SqlCipherReaderPool readers;
 
   public SQLCipherOpenHelper(@NonNull Context context, @NonNull DatabaseSecret databaseSecret) {
     super(context, DATABASE_NAME, null, DATABASE_VERSION, new SqlCipherDatabaseHook());
 
     this.context        = context.getApplicationContext();
     this.databaseSecret = databaseSecret;
+    this.walEnabled     = TextSecurePreferences.isDatabaseWalEnabled(context);
+    this.statements     = new CompiledStatementCache();
   }
 
   @Override
@@ -1469,12 +1482,75 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper implements SignalDatab
     Log.i(TAG, "Upgrade complete. Took " + (System.currentTimeMillis() - startTime) + " ms.");
   }
 
+  /**
+   * Runs after any create or upgrade, on every open. When opted in, switches the database to WAL and
+   * sets up reader connections. Journal mode is stored in the database file, so when not opted in,
+   * a database left in WAL by an earlier run is switched back.
+   * <p>
+   * Checkpoint policy while in WAL:
+   * - SQLite checkpoints automatically every {@link #WAL_AUTOCHECKPOINT_PAGES} pages on commit.
+   * - The WAL file is truncated to {@link #WAL_SIZE_LIMIT_BYTES} after each checkpoint.
+   * - {@link #checkpoint()} fully checkpoints and truncates the WAL, for when the app is backgrounded.
+   */
+  @Override
+  public void onOpen(SQLiteDatabase db) {
+    if (walEnabled) {
+      String journalMode = setJournalMode(db, "WAL");
+
+      if ("wal".equalsIgnoreCase(journalMode)) {
+        db.rawExecSQL("PRAGMA synchronous = NORMAL;");
+        db.rawExecSQL("PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES + ";");
+        db.rawExecSQL("PRAGMA journal_size_limit = " + WAL_SIZE_LIMIT_BYTES + ";");
+
+        readers = new SqlCipherReaderPool(db.getPath(), databaseSecret.asString(), new SqlCipherDatabaseHook(), WAL_READER_CONNECTIONS);
+
+        Log.i(TAG, "Database opened in WAL mode with " + WAL_READER_CONNECTIONS + " reader connections.");
+      } else {
+        Log.w(TAG, "Unable to enable WAL, journal mode is " + journalMode);
+      }
+    } else if ("wal".equalsIgnoreCase(getJournalMode(db))) {
+      Log.i(TAG, "WAL no longer enabled, journal mode is now " + setJournalMode(db, "DELETE"));
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    statements.clear();
+
+    if (readers != null) {
+      readers.close();
+      readers = null;
+    }
+
+    super.close();
+  }
+
   public org.thoughtcrime.securesms.database.SQLiteDatabase getReadableDatabase() {
-    return new org.thoughtcrime.securesms.database.SQLiteDatabase(getReadableDatabase(databaseSecret.asString()));
+    return new org.thoughtcrime.securesms.database.SQLiteDatabase(getReadableDatabase(databaseSecret.asString()), readers, statements);
   }
 
   public org.thoughtcrime.securesms.database.SQLiteDatabase getWritableDatabase() {
-    return new org.thoughtcrime.securesms.database.SQLiteDatabase(getWritableDatabase(databaseSecret.asString()));
+    return new org.thoughtcrime.securesms.database.SQLiteDatabase(getWritableDatabase(databaseSecret.asString()), readers, statements);
+  }
+
+  /**
+   * Copies everything in the WAL into the database and truncates it. Does nothing when not in WAL
+   * mode. Gives up rather than waits if readers are active, the next automatic checkpoint will
+   * pick up where this left off.
+   */
+  public void checkpoint() {
+    if (readers == null) {
+      return;
+    }
+
+    long startTime = System.currentTimeMillis();
+
+    try (Cursor cursor = getWritableDatabase(databaseSecret.asString()).rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null)) {
+      if (cursor.moveToFirst()) {
+        Log.i(TAG, String.format(Locale.US, "WAL checkpoint busy: %d, log pages: %d, checkpointed pages: %d, took %d ms",
+                                 cursor.getInt(0), cursor.getInt(1), cursor.getInt(2), System.currentTimeMillis() - startTime));
+      }
+    }
   }
 
   @Override
@@ -1494,6 +1570,18 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper implements SignalDatab
     return context.getDatabasePath(DATABASE_NAME);
   }
 
+  private static String getJournalMode(SQLiteDatabase db) {
+    try (Cursor cursor = db.rawQuery("PRAGMA journal_mode", null)) {
+      return cursor.moveToFirst() ? cursor.getString(0) : null;
+    }
+  }
+
+  private static String setJournalMode(SQLiteDatabase db, String journalMode) {
+    try (Cursor cursor = db.rawQuery("PRAGMA journal_mode = " + journalMode, null)) {
+      return cursor.moveToFirst() ? cursor.getString(0) : null;
+    }
+  }
+
   private void executeStatements(SQLiteDatabase db, String[] statements) {
     for (String statement : statements)
       db.execSQL(statement);
@@ -18,6 +18,7 @@ import org.thoughtcrime.securesms.megaphone.MegaphoneRepository;
 import org.thoughtcrime.securesms.messages.BackgroundMessageRetriever;
 import org.thoughtcrime.securesms.messages.IncomingMessageObserver;
 import org.thoughtcrime.securesms.messages.IncomingMessageProcessor;
+import org.thoughtcrime.securesms.messages.ReceiptAggregator;
 import org.thoughtcrime.securesms.net.ContentProxySelector;
 import org.thoughtcrime.securesms.net.PipeConnectivityListener;
 import org.thoughtcrime.securesms.net.StandardUserAgentInterceptor;
@@ -68,6 +69,7 @@ public class ApplicationDependencies {
   private static volatile SignalServiceMessageReceiver messageReceiver;
   private static volatile IncomingMessageObserver      incomingMessageObserver;
   private static volatile IncomingMessageProcessor     incomingMessageProcessor;
+  private static volatile ReceiptAggregator            receiptAggregator;
   private static volatile BackgroundMessageRetriever   backgroundMessageRetriever;
   private static volatile LiveRecipientCache           recipientCache;
   private static volatile JobManager                   jobManager;
@@ -247,6 +249,18 @@ public class ApplicationDependencies {
     return incomingMessageProcessor;
   }
 
+  public static @NonNull ReceiptAggregator getReceiptAggregator() {
+    if (receiptAggregator == null) {
+      synchronized (LOCK) {
+        if (receiptAggregator == null) {
+          receiptAggregator = provider.provideReceiptAggregator();
+        }
+      }
+    }
+
+    return receiptAggregator;
+  }
+
   public static @NonNull BackgroundMessageRetriever getBackgroundMessageRetriever() {
     if (backgroundMessageRetriever == null) {
       synchronized (LOCK) {
@@ -474,6 +488,7 @@ public class ApplicationDependencies {
     @NonNull SignalServiceMessageReceiver provideSignalServiceMessageReceiver();
     @NonNull SignalServiceNetworkAccess provideSignalServiceNetworkAccess();
     @NonNull IncomingMessageProcessor provideIncomingMessageProcessor();
+    @NonNull ReceiptAggregator provideReceiptAggregator();
     @NonNull BackgroundMessageRetriever provideBackgroundMessageRetriever();
     @NonNull LiveRecipientCache provideRecipientCache();
     @NonNull JobManager provideJobManager();
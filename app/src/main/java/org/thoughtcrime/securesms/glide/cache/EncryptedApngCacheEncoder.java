@@ -6,6 +6,7 @@ import com.bumptech.glide.load.EncodeStrategy;
 import com.bumptech.glide.load.Options;
 import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
 
 import org.signal.core.util.StreamUtil;
 import org.signal.core.util.logging.Log;
@@ -21,10 +22,12 @@ public class EncryptedApngCacheEncoder extends EncryptedCoder implements Resourc
 
   private static final String TAG = Log.tag(EncryptedApngCacheEncoder.class);
 
-  private final byte[] secret;
+  private final byte[]    secret;
+  private final ArrayPool arrayPool;
 
-  public EncryptedApngCacheEncoder(@NonNull byte[] secret) {
-    this.secret = secret;
+  public EncryptedApngCacheEncoder(@NonNull byte[] secret, @NonNull ArrayPool arrayPool) {
+    this.secret    = secret;
+    this.arrayPool = arrayPool;
   }
 
   @Override
@@ -37,7 +40,7 @@ public class EncryptedApngCacheEncoder extends EncryptedCoder implements Resourc
     try {
       Loader       loader = data.get().getLoader();
       InputStream  input  = loader.obtain().toInputStream();
-      OutputStream output = createEncryptedOutputStream(secret, file);
+      OutputStream output = createEncryptedOutputStream(secret, file, arrayPool);
 
       StreamUtil.copy(input, output);
       return true;
@@ -9,6 +9,7 @@ import com.bumptech.glide.load.EncodeStrategy;
 import com.bumptech.glide.load.Options;
 import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapEncoder;
 
 import org.signal.core.util.logging.Log;
@@ -21,10 +22,12 @@ public class EncryptedBitmapResourceEncoder extends EncryptedCoder implements Re
 
   private static final String TAG = Log.tag(EncryptedBitmapResourceEncoder.class);
 
-  private final byte[] secret;
+  private final byte[]    secret;
+  private final ArrayPool arrayPool;
 
-  public EncryptedBitmapResourceEncoder(@NonNull byte[] secret) {
-    this.secret = secret;
+  public EncryptedBitmapResourceEncoder(@NonNull byte[] secret, @NonNull ArrayPool arrayPool) {
+    this.secret    = secret;
+    this.arrayPool = arrayPool;
   }
 
   @Override
@@ -39,7 +42,7 @@ public class EncryptedBitmapResourceEncoder extends EncryptedCoder implements Re
     Bitmap.CompressFormat format  = getFormat(bitmap, options);
     int                   quality = options.get(BitmapEncoder.COMPRESSION_QUALITY);
 
-    try (OutputStream os = createEncryptedOutputStream(secret, file)) {
+    try (OutputStream os = createEncryptedOutputStream(secret, file, arrayPool)) {
       bitmap.compress(format, quality, os);
       os.close();
       return true;
@@ -6,6 +6,7 @@ import androidx.annotation.Nullable;
 import com.bumptech.glide.load.Options;
 import com.bumptech.glide.load.ResourceDecoder;
 import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
 
 import org.signal.core.util.logging.Log;
 
@@ -18,16 +19,20 @@ public class EncryptedCacheDecoder<DecodeType> extends EncryptedCoder implements
   private static final String TAG = Log.tag(EncryptedCacheDecoder.class);
 
   private final byte[]                                   secret;
+  private final TieredDiskCache                          diskCache;
+  private final ArrayPool                                arrayPool;
   private final ResourceDecoder<InputStream, DecodeType> decoder;
 
-  public EncryptedCacheDecoder(byte[] secret, ResourceDecoder<InputStream, DecodeType> decoder) {
-    this.secret  = secret;
-    this.decoder = decoder;
+  public EncryptedCacheDecoder(byte[] secret, @Nullable TieredDiskCache diskCache, ArrayPool arrayPool, ResourceDecoder<InputStream, DecodeType> decoder) {
+    this.secret    = secret;
+    this.diskCache = diskCache;
+    this.arrayPool = arrayPool;
+    this.decoder   = decoder;
   }
 
   @Override
   public boolean handles(@NonNull File source, @NonNull Options options) throws IOException {
-    try (InputStream inputStream = createEncryptedInputStream(secret, source)) {
+    try (InputStream inputStream = open(source)) {
       return decoder.handles(inputStream, options);
     } catch (IOException e) {
       Log.w(TAG, e);
@@ -37,8 +42,16 @@ public class EncryptedCacheDecoder<DecodeType> extends EncryptedCoder implements
 
   @Override
   public @Nullable Resource<DecodeType> decode(@NonNull File source, int width, int height, @NonNull Options options) throws IOException {
-    try (InputStream inputStream = createEncryptedInputStream(secret, source)) {
+    try (InputStream inputStream = open(source)) {
       return decoder.decode(inputStream, width, height, options);
     }
   }
+
+  private @NonNull InputStream open(@NonNull File source) throws IOException {
+    if (diskCache != null && diskCache.isPacked(source)) {
+      return createEncryptedInputStream(secret, diskCache.openPacked(source), arrayPool);
+    } else {
+      return createEncryptedInputStream(secret, source, arrayPool);
+    }
+  }
 }
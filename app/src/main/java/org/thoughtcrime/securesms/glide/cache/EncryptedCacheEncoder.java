@@ -32,7 +32,7 @@ public class EncryptedCacheEncoder extends EncryptedCoder implements Encoder<Inp
   public boolean encode(@NonNull InputStream data, @NonNull File file, @NonNull Options options) {
     byte[] buffer = byteArrayPool.get(ArrayPool.STANDARD_BUFFER_SIZE_BYTES, byte[].class);
 
-    try (OutputStream outputStream = createEncryptedOutputStream(secret, file)) {
+    try (OutputStream outputStream = createEncryptedOutputStream(secret, file, byteArrayPool)) {
       int read;
 
       while ((read = data.read(buffer)) != -1) {
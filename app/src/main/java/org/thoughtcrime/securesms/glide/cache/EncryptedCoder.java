@@ -3,6 +3,8 @@ package org.thoughtcrime.securesms.glide.cache;
 
 import androidx.annotation.NonNull;
 
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
 import org.signal.core.util.StreamUtil;
 import org.thoughtcrime.securesms.util.Util;
 
@@ -10,89 +12,312 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * Reads and writes the encrypted cache format: the magic bytes, 32 random bytes that the file key
+ * is derived from, and then the magic bytes followed by the contents, encrypted with AES-CTR.
+ * <p>
+ * Data is encrypted and decrypted in place in large buffers borrowed from Glide's {@link ArrayPool}
+ * rather than in the small chunks the cipher streams use, and each thread keeps its own Mac and
+ * Cipher instead of looking them up for every file.
+ */
 class EncryptedCoder {
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   private static byte[] MAGIC_BYTES = {(byte)0x91, (byte)0x5e, (byte)0x6d, (byte)0xb4,
                                        (byte)0x09, (byte)0xa6, (byte)0x68, (byte)0xbe,
                                        (byte)0xe5, (byte)0xb1, (byte)0x1b, (byte)0xd7,
                                        (byte)0x29, (byte)0xe5, (byte)0x04, (byte)0xcc};
 
-  OutputStream createEncryptedOutputStream(@NonNull byte[] masterKey, @NonNull File file)
+  private static final ThreadLocal<Mac>    MACS    = new ThreadLocal<>();
+  private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<>();
+
+  OutputStream createEncryptedOutputStream(@NonNull byte[] masterKey, @NonNull File file, @NonNull ArrayPool arrayPool)
       throws IOException
   {
+    FileOutputStream fileOutputStream = new FileOutputStream(file);
+    byte[]           random           = Util.getSecretBytes(32);
+    Cipher           cipher           = obtainCipher(Cipher.ENCRYPT_MODE, deriveKey(masterKey, random));
+
+    fileOutputStream.write(MAGIC_BYTES);
+    fileOutputStream.write(random);
+
+    EncryptingOutputStream outputStream = new EncryptingOutputStream(fileOutputStream, cipher, arrayPool);
+    outputStream.write(MAGIC_BYTES);
+
+    return outputStream;
+  }
+
+  InputStream createEncryptedInputStream(@NonNull byte[] masterKey, @NonNull File file, @NonNull ArrayPool arrayPool) throws IOException {
+    return createEncryptedInputStream(masterKey, new FileInputStream(file), arrayPool);
+  }
+
+  /**
+   * Decrypts a cache file read from the given stream, which is closed when the result is.
+   */
+  InputStream createEncryptedInputStream(@NonNull byte[] masterKey, @NonNull InputStream encrypted, @NonNull ArrayPool arrayPool) throws IOException {
+    byte[] theirMagic          = new byte[MAGIC_BYTES.length];
+    byte[] theirRandom         = new byte[32];
+    byte[] theirEncryptedMagic = new byte[MAGIC_BYTES.length];
+
     try {
-      byte[] random = Util.getSecretBytes(32);
-      Mac    mac    = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+      StreamUtil.readFully(encrypted, theirMagic);
+      StreamUtil.readFully(encrypted, theirRandom);
+    } catch (IOException e) {
+      encrypted.close();
+      throw e;
+    }
+
+    if (!MessageDigest.isEqual(theirMagic, MAGIC_BYTES)) {
+      encrypted.close();
+      throw new IOException("Not an encrypted cache file!");
+    }
 
-      FileOutputStream fileOutputStream = new FileOutputStream(file);
-      byte[]           iv               = new byte[16];
-      byte[]           key              = mac.doFinal(random);
+    Cipher                cipher      = obtainCipher(Cipher.DECRYPT_MODE, deriveKey(masterKey, theirRandom));
+    DecryptingInputStream inputStream = new DecryptingInputStream(encrypted, cipher, arrayPool);
 
-      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+    try {
+      StreamUtil.readFully(inputStream, theirEncryptedMagic);
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
 
-      fileOutputStream.write(MAGIC_BYTES);
-      fileOutputStream.write(random);
+    if (!MessageDigest.isEqual(theirEncryptedMagic, MAGIC_BYTES)) {
+      inputStream.close();
+      throw new IOException("Key change on encrypted cache file!");
+    }
+
+    return inputStream;
+  }
+
+  private static @NonNull byte[] deriveKey(@NonNull byte[] masterKey, @NonNull byte[] random) {
+    try {
+      Mac mac = MACS.get();
 
-      CipherOutputStream outputStream = new CipherOutputStream(fileOutputStream, cipher);
-      outputStream.write(MAGIC_BYTES);
+      if (mac == null) {
+        mac = Mac.getInstance("HmacSHA256");
+        MACS.set(mac);
+      }
 
-      return outputStream;
-    } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException e) {
+      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+      return mac.doFinal(random);
+    } catch (GeneralSecurityException e) {
       throw new AssertionError(e);
     }
   }
 
-  CipherInputStream createEncryptedInputStream(@NonNull byte[] masterKey, @NonNull File file) throws IOException {
+  /**
+   * Takes the calling thread's cipher if it isn't already in use by another stream on the thread,
+   * which must be given back with {@link #releaseCipher(Cipher)}.
+   */
+  private static @NonNull Cipher obtainCipher(int mode, @NonNull byte[] key) {
     try {
-      Mac    mac    = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+      Cipher cipher = CIPHERS.get();
+
+      if (cipher != null) {
+        CIPHERS.set(null);
+      } else {
+        cipher = Cipher.getInstance("AES/CTR/NoPadding");
+      }
+
+      cipher.init(mode, new SecretKeySpec(key, "AES"), new IvParameterSpec(new byte[16]));
+      return cipher;
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static void releaseCipher(@NonNull Cipher cipher) {
+    CIPHERS.set(cipher);
+  }
+
+  private static final class EncryptingOutputStream extends OutputStream {
 
-      FileInputStream fileInputStream     = new FileInputStream(file);
-      byte[]          theirMagic          = new byte[MAGIC_BYTES.length];
-      byte[]          theirRandom         = new byte[32];
-      byte[]          theirEncryptedMagic = new byte[MAGIC_BYTES.length];
+    private final OutputStream out;
+    private final Cipher       cipher;
+    private final ArrayPool    arrayPool;
 
-      StreamUtil.readFully(fileInputStream, theirMagic);
-      StreamUtil.readFully(fileInputStream, theirRandom);
+    private byte[] buffer;
+    private int    count;
 
-      if (!MessageDigest.isEqual(theirMagic, MAGIC_BYTES)) {
-        throw new IOException("Not an encrypted cache file!");
+    private EncryptingOutputStream(@NonNull OutputStream out, @NonNull Cipher cipher, @NonNull ArrayPool arrayPool) {
+      this.out       = out;
+      this.cipher    = cipher;
+      this.arrayPool = arrayPool;
+      this.buffer    = arrayPool.get(BUFFER_SIZE, byte[].class);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length) {
+        flushBuffer();
       }
 
-      byte[] iv  = new byte[16];
-      byte[] key = mac.doFinal(theirRandom);
+      buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (count == buffer.length) {
+          flushBuffer();
+        }
 
-      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        int length = Math.min(len, buffer.length - count);
 
-      CipherInputStream inputStream = new CipherInputStream(fileInputStream, cipher);
-      StreamUtil.readFully(inputStream, theirEncryptedMagic);
+        System.arraycopy(b, off, buffer, count, length);
 
-      if (!MessageDigest.isEqual(theirEncryptedMagic, MAGIC_BYTES)) {
-        throw new IOException("Key change on encrypted cache file!");
+        count += length;
+        off   += length;
+        len   -= length;
       }
+    }
 
-      return inputStream;
-    } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException e) {
-      throw new AssertionError(e);
+    @Override
+    public void flush() throws IOException {
+      flushBuffer();
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (buffer == null) {
+        return;
+      }
+
+      try {
+        flushBuffer();
+      } finally {
+        arrayPool.put(buffer);
+        releaseCipher(cipher);
+        buffer = null;
+        out.close();
+      }
+    }
+
+    private void flushBuffer() throws IOException {
+      if (count == 0) {
+        return;
+      }
+
+      try {
+        cipher.update(buffer, 0, count, buffer, 0);
+      } catch (GeneralSecurityException e) {
+        throw new AssertionError(e);
+      }
+
+      out.write(buffer, 0, count);
+      count = 0;
     }
   }
 
+  private static final class DecryptingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final Cipher      cipher;
+    private final ArrayPool   arrayPool;
+
+    private byte[] buffer;
+    private int    position;
+    private int    count;
+
+    private DecryptingInputStream(@NonNull InputStream in, @NonNull Cipher cipher, @NonNull ArrayPool arrayPool) {
+      this.in        = in;
+      this.cipher    = cipher;
+      this.arrayPool = arrayPool;
+      this.buffer    = arrayPool.get(BUFFER_SIZE, byte[].class);
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (position == count && !fill()) {
+        return -1;
+      }
+
+      return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+
+      if (position == count && !fill()) {
+        return -1;
+      }
+
+      int length = Math.min(len, count - position);
+
+      System.arraycopy(buffer, position, b, off, length);
+      position += length;
+
+      return length;
+    }
 
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = 0;
+
+      while (skipped < n && (position < count || fill())) {
+        int length = (int) Math.min(n - skipped, count - position);
+
+        position += length;
+        skipped  += length;
+      }
+
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buffer != null ? count - position : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (buffer == null) {
+        return;
+      }
+
+      arrayPool.put(buffer);
+      releaseCipher(cipher);
+      buffer = null;
+      in.close();
+    }
+
+    private boolean fill() throws IOException {
+      if (buffer == null) {
+        throw new IOException("Stream closed");
+      }
+
+      int read = in.read(buffer, 0, buffer.length);
+
+      if (read <= 0) {
+        return false;
+      }
+
+      try {
+        cipher.update(buffer, 0, read, buffer, 0);
+      } catch (GeneralSecurityException e) {
+        throw new AssertionError(e);
+      }
+
+      position = 0;
+      count    = read;
+
+      return true;
+    }
+  }
 }
@@ -7,6 +7,7 @@ import com.bumptech.glide.load.EncodeStrategy;
 import com.bumptech.glide.load.Options;
 import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
 import com.bumptech.glide.load.resource.gif.GifDrawable;
 import com.bumptech.glide.util.ByteBufferUtil;
 
@@ -20,10 +21,12 @@ public class EncryptedGifDrawableResourceEncoder extends EncryptedCoder implemen
 
   private static final String TAG = Log.tag(EncryptedGifDrawableResourceEncoder.class);
 
-  private final byte[] secret;
+  private final byte[]    secret;
+  private final ArrayPool arrayPool;
 
-  public EncryptedGifDrawableResourceEncoder(@NonNull byte[] secret) {
-    this.secret = secret;
+  public EncryptedGifDrawableResourceEncoder(@NonNull byte[] secret, @NonNull ArrayPool arrayPool) {
+    this.secret    = secret;
+    this.arrayPool = arrayPool;
   }
 
   @Override
@@ -35,7 +38,7 @@ public class EncryptedGifDrawableResourceEncoder extends EncryptedCoder implemen
   public boolean encode(@NonNull Resource<GifDrawable> data, @NonNull File file, @NonNull Options options) {
     GifDrawable drawable = data.get();
 
-    try (OutputStream outputStream = createEncryptedOutputStream(secret, file)) {
+    try (OutputStream outputStream = createEncryptedOutputStream(secret, file, arrayPool)) {
       ByteBufferUtil.toStream(drawable.getBuffer(), outputStream);
       return true;
     } catch (IOException e) {
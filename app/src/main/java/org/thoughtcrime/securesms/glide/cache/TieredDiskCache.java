@@ -0,0 +1,439 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper;
+import com.bumptech.glide.load.engine.cache.SafeKeyGenerator;
+
+import org.signal.core.util.StreamUtil;
+import org.signal.core.util.logging.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A Glide {@link DiskCache} with two tiers. Entries small enough to be thumbnails are appended to a
+ * handful of larger pack files that are kept open, so reading one is a single positional read
+ * instead of opening, reading and closing a file of its own. Everything else goes to Glide's usual
+ * {@link DiskLruCacheWrapper}.
+ * <p>
+ * Entries are stored exactly as the encoders wrote them, so packed entries are as encrypted as any
+ * other. A packed entry is handed to Glide as a {@link File} that doesn't exist, which only the
+ * {@link EncryptedCacheDecoder} knows to read through {@link #openPacked(File)}.
+ * <p>
+ * Packs are evicted oldest first, a whole pack at a time. Deleting a packed entry appends an empty
+ * entry for its key that hides the old one.
+ */
+public final class TieredDiskCache implements DiskCache {
+
+  private static final String TAG = Log.tag(TieredDiskCache.class);
+
+  static final int SMALL_ENTRY_MAX_SIZE = 48 * 1024;
+
+  private static final long   PACK_SIZE           = 4 * 1024 * 1024;
+  private static final int    PACK_COUNT          = 8;
+  private static final String PACK_DIRECTORY      = "_packed";
+  private static final String PACK_PREFIX         = "pack-";
+  private static final String PACKED_ENTRY_PREFIX = "packed-";
+  private static final String PENDING_PREFIX      = "pending-";
+
+  private final File               directory;
+  private final File               packDirectory;
+  private final long               maxSize;
+  private final SafeKeyGenerator   safeKeyGenerator;
+  private final Map<String, Entry> index;
+  private final Deque<Pack>        packs;
+
+  private DiskCache largeTier;
+  private boolean   initialized;
+
+  /**
+   * @param directory Where the large tier keeps its files, with packs in a directory beside it.
+   * @param maxSize   Total size of both tiers.
+   */
+  public TieredDiskCache(@NonNull File directory, long maxSize) {
+    this.directory        = directory;
+    this.packDirectory    = new File(directory.getParentFile(), directory.getName() + PACK_DIRECTORY);
+    this.maxSize          = maxSize;
+    this.safeKeyGenerator = new SafeKeyGenerator();
+    this.index            = new HashMap<>();
+    this.packs            = new ArrayDeque<>();
+  }
+
+  @Override
+  public @Nullable File get(@NonNull Key key) {
+    String safeKey = safeKeyGenerator.getSafeKey(key);
+
+    synchronized (this) {
+      initialize();
+
+      if (index.containsKey(safeKey)) {
+        return new File(packDirectory, PACKED_ENTRY_PREFIX + safeKey);
+      }
+    }
+
+    return getLargeTier().get(key);
+  }
+
+  @Override
+  public void put(@NonNull Key key, @NonNull Writer writer) {
+    if (get(key) != null) {
+      return;
+    }
+
+    String safeKey = safeKeyGenerator.getSafeKey(key);
+    File   pending = new File(packDirectory, PENDING_PREFIX + Thread.currentThread().getId());
+
+    try {
+      synchronized (this) {
+        initialize();
+      }
+
+      if (!writer.write(pending)) {
+        return;
+      }
+
+      if (pending.length() <= SMALL_ENTRY_MAX_SIZE) {
+        byte[] data = new byte[(int) pending.length()];
+
+        try (InputStream inputStream = new FileInputStream(pending)) {
+          StreamUtil.readFully(inputStream, data);
+        }
+
+        append(safeKey, data);
+      } else {
+        getLargeTier().put(key, file -> pending.renameTo(file));
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write cache entry.", e);
+    } finally {
+      if (pending.exists() && !pending.delete()) {
+        Log.w(TAG, "Failed to delete pending cache entry.");
+      }
+    }
+  }
+
+  @Override
+  public void delete(@NonNull Key key) {
+    String safeKey = safeKeyGenerator.getSafeKey(key);
+
+    synchronized (this) {
+      initialize();
+
+      if (index.containsKey(safeKey)) {
+        try {
+          append(safeKey, new byte[0]);
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to delete packed entry.", e);
+        }
+      }
+    }
+
+    getLargeTier().delete(key);
+  }
+
+  @Override
+  public void clear() {
+    synchronized (this) {
+      initialize();
+
+      for (Pack pack : packs) {
+        pack.delete();
+      }
+
+      packs.clear();
+      index.clear();
+    }
+
+    getLargeTier().clear();
+  }
+
+  boolean isPacked(@NonNull File file) {
+    return file.getName().startsWith(PACKED_ENTRY_PREFIX) && packDirectory.equals(file.getParentFile());
+  }
+
+  /**
+   * Opens a packed entry from a file returned by {@link #get(Key)}.
+   * <p>
+   * The read happens outside of the cache lock, so the pack is held open until it's done even if
+   * it's evicted in the meantime.
+   */
+  @NonNull InputStream openPacked(@NonNull File file) throws IOException {
+    String safeKey = file.getName().substring(PACKED_ENTRY_PREFIX.length());
+    Entry  entry;
+
+    synchronized (this) {
+      entry = index.get(safeKey);
+
+      if (entry == null) {
+        throw new IOException("Packed entry no longer exists.");
+      }
+
+      entry.pack.acquire();
+    }
+
+    try {
+      byte[] data = new byte[entry.length];
+
+      entry.pack.read(entry.offset, data);
+
+      return new ByteArrayInputStream(data);
+    } finally {
+      entry.pack.release();
+    }
+  }
+
+  private synchronized @NonNull DiskCache getLargeTier() {
+    if (largeTier == null) {
+      largeTier = DiskLruCacheWrapper.create(directory, Math.max(PACK_SIZE, maxSize - PACK_SIZE * PACK_COUNT));
+    }
+
+    return largeTier;
+  }
+
+  private synchronized void append(@NonNull String safeKey, @NonNull byte[] data) throws IOException {
+    byte[] key    = safeKey.getBytes(StandardCharsets.UTF_8);
+    int    length = Integer.BYTES + key.length + Integer.BYTES + data.length;
+    Pack   pack   = packs.peekLast();
+
+    if (pack == null || pack.size + length > PACK_SIZE) {
+      pack = new Pack(packDirectory, pack != null ? pack.number + 1 : 0);
+      packs.addLast(pack);
+
+      while (packs.size() > PACK_COUNT) {
+        evict(packs.removeFirst());
+      }
+    }
+
+    ByteBuffer record = ByteBuffer.allocate(length);
+    record.putInt(key.length);
+    record.put(key);
+    record.putInt(data.length);
+    record.put(data);
+
+    long offset = pack.append(record.array());
+
+    if (data.length > 0) {
+      index.put(safeKey, new Entry(pack, offset + length - data.length, data.length));
+    } else {
+      index.remove(safeKey);
+    }
+  }
+
+  private void evict(@NonNull Pack pack) {
+    Iterator<Entry> entries = index.values().iterator();
+
+    while (entries.hasNext()) {
+      if (entries.next().pack == pack) {
+        entries.remove();
+      }
+    }
+
+    pack.delete();
+  }
+
+  /**
+   * Opens every pack and rebuilds the index from them, dropping anything after the last complete
+   * entry of each.
+   */
+  private void initialize() {
+    if (initialized) {
+      return;
+    }
+
+    initialized = true;
+
+    if (!packDirectory.exists() && !packDirectory.mkdirs()) {
+      Log.w(TAG, "Failed to create pack directory.");
+      return;
+    }
+
+    File[] files = packDirectory.listFiles();
+
+    if (files == null) {
+      return;
+    }
+
+    Arrays.sort(files, (lhs, rhs) -> Integer.compare(Pack.getNumber(lhs), Pack.getNumber(rhs)));
+
+    for (File file : files) {
+      if (Pack.getNumber(file) < 0) {
+        if (!file.delete()) {
+          Log.w(TAG, "Failed to delete " + file.getName());
+        }
+        continue;
+      }
+
+      try {
+        Pack pack = new Pack(packDirectory, Pack.getNumber(file));
+        pack.load(index);
+        packs.addLast(pack);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to read pack, deleting it.", e);
+        if (!file.delete()) {
+          Log.w(TAG, "Failed to delete " + file.getName());
+        }
+      }
+    }
+
+    while (packs.size() > PACK_COUNT) {
+      evict(packs.removeFirst());
+    }
+
+    Log.i(TAG, "Loaded " + index.size() + " packed entries from " + packs.size() + " packs.");
+  }
+
+  private static final class Entry {
+    private final Pack pack;
+    private final long offset;
+    private final int  length;
+
+    private Entry(@NonNull Pack pack, long offset, int length) {
+      this.pack   = pack;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * A pack file. Readers {@link #acquire()} it while holding the cache lock and {@link #release()}
+   * it when their read is done, and a deleted pack is only closed once the last of them has.
+   */
+  private static final class Pack {
+    private final int              number;
+    private final File             file;
+    private final RandomAccessFile randomAccessFile;
+
+    private long    size;
+    private int     readers;
+    private boolean deleted;
+
+    private Pack(@NonNull File directory, int number) throws IOException {
+      this.number           = number;
+      this.file             = new File(directory, PACK_PREFIX + number);
+      this.randomAccessFile = new RandomAccessFile(file, "rw");
+      this.size             = randomAccessFile.length();
+    }
+
+    private static int getNumber(@NonNull File file) {
+      String name = file.getName();
+
+      if (!name.startsWith(PACK_PREFIX)) {
+        return -1;
+      }
+
+      try {
+        return Integer.parseInt(name.substring(PACK_PREFIX.length()));
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+
+    private void load(@NonNull Map<String, Entry> index) throws IOException {
+      long   offset = 0;
+      byte[] header = new byte[Integer.BYTES];
+
+      while (offset + Integer.BYTES <= size) {
+        read(offset, header);
+        int keyLength = ByteBuffer.wrap(header).getInt();
+
+        if (keyLength <= 0 || offset + Integer.BYTES + keyLength + Integer.BYTES > size) {
+          break;
+        }
+
+        byte[] key = new byte[keyLength];
+        read(offset + Integer.BYTES, key);
+        read(offset + Integer.BYTES + keyLength, header);
+
+        int  dataLength = ByteBuffer.wrap(header).getInt();
+        long dataOffset = offset + Integer.BYTES + keyLength + Integer.BYTES;
+
+        if (dataLength < 0 || dataOffset + dataLength > size) {
+          break;
+        }
+
+        if (dataLength > 0) {
+          index.put(new String(key, StandardCharsets.UTF_8), new Entry(this, dataOffset, dataLength));
+        } else {
+          index.remove(new String(key, StandardCharsets.UTF_8));
+        }
+        offset = dataOffset + dataLength;
+      }
+
+      if (offset < size) {
+        Log.w(TAG, "Truncating " + (size - offset) + " bytes from " + file.getName());
+        randomAccessFile.setLength(offset);
+        size = offset;
+      }
+    }
+
+    /**
+     * @return The offset the record was written at.
+     */
+    private long append(@NonNull byte[] record) throws IOException {
+      long offset = size;
+
+      randomAccessFile.getChannel().write(ByteBuffer.wrap(record), offset);
+      size += record.length;
+
+      return offset;
+    }
+
+    private void read(long offset, @NonNull byte[] data) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+
+      while (buffer.hasRemaining()) {
+        if (randomAccessFile.getChannel().read(buffer, offset + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of pack.");
+        }
+      }
+    }
+
+    private synchronized void acquire() {
+      readers++;
+    }
+
+    private synchronized void release() {
+      readers--;
+
+      if (deleted && readers == 0) {
+        close();
+      }
+    }
+
+    private synchronized void delete() {
+      deleted = true;
+
+      if (readers == 0) {
+        close();
+      }
+
+      if (!file.delete()) {
+        Log.w(TAG, "Failed to delete " + file.getName());
+      }
+    }
+
+    private void close() {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        Log.w(TAG, e);
+      }
+    }
+  }
+}
@@ -9,6 +9,7 @@ import org.signal.storageservice.protos.groups.local.DecryptedGroupChange;
 import org.whispersystems.signalservice.api.groupsv2.DecryptedGroupUtil;
 import org.whispersystems.signalservice.api.groupsv2.GroupChangeReconstruct;
 import org.whispersystems.signalservice.api.groupsv2.GroupChangeUtil;
+import org.whispersystems.signalservice.api.groupsv2.MutableDecryptedGroup;
 import org.whispersystems.signalservice.api.groupsv2.NotAbleToApplyGroupV2ChangeException;
 
 import java.util.ArrayList;
@@ -131,16 +132,39 @@ final class GroupStateMapper {
 
   private static StateChain<DecryptedGroup, DecryptedGroupChange> createNewMapper() {
     return new StateChain<>(
-      (group, change) -> {
-        try {
-          return DecryptedGroupUtil.applyWithoutRevisionCheck(group, change);
-        } catch (NotAbleToApplyGroupV2ChangeException e) {
-          Log.w(TAG, "Unable to apply V" + change.getRevision(), e);
-          return null;
-        }
-      },
+      new IncrementalApply(),
       (groupB, groupA) -> GroupChangeReconstruct.reconstructGroupChange(groupA, groupB),
       (groupA, groupB) -> groupA.getRevision() == groupB.getRevision() && DecryptedGroupUtil.changeIsEmpty(GroupChangeReconstruct.reconstructGroupChange(groupA, groupB))
     );
   }
+
+  /**
+   * Applies changes to a {@link MutableDecryptedGroup} that follows the chain's latest state, so
+   * catching up many revisions does not copy and rescan the whole group per change. Only when asked
+   * to apply to some other state, such as one supplied by the server, does it start over from it.
+   */
+  private static final class IncrementalApply implements StateChain.AddDelta<DecryptedGroup, DecryptedGroupChange> {
+
+    private MutableDecryptedGroup mutableGroup;
+    private DecryptedGroup        mutableGroupState;
+
+    @Override
+    public @Nullable DecryptedGroup add(@NonNull DecryptedGroup group, @NonNull DecryptedGroupChange change) {
+      if (mutableGroup == null || group != mutableGroupState) {
+        mutableGroup      = new MutableDecryptedGroup(group);
+        mutableGroupState = group;
+      }
+
+      try {
+        mutableGroup.apply(change);
+      } catch (NotAbleToApplyGroupV2ChangeException e) {
+        Log.w(TAG, "Unable to apply V" + change.getRevision(), e);
+        return null;
+      }
+
+      mutableGroupState = mutableGroup.toDecryptedGroup();
+
+      return mutableGroupState;
+    }
+  }
 }
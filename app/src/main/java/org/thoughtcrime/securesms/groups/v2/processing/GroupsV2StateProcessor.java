@@ -403,6 +403,8 @@ public final class GroupsV2StateProcessor {
                                       @Nullable DecryptedGroup previousGroupState,
                                       Collection<LocalGroupLogEntry> processedLogEntries)
     {
+      List<DecryptedGroupV2Context> updates = new ArrayList<>(processedLogEntries.size());
+
       for (LocalGroupLogEntry entry : processedLogEntries) {
         if (entry.getChange() != null && DecryptedGroupUtil.changeIsEmptyExceptForProfileKeyChanges(entry.getChange()) && !DecryptedGroupUtil.changeIsEmpty(entry.getChange())) {
           Log.d(TAG, "Skipping profile key changes only update message");
@@ -417,12 +419,28 @@ public final class GroupsV2StateProcessor {
             }
           }
           if (insert) {
-            storeMessage(GroupProtoUtil.createDecryptedGroupV2Context(masterKey, new GroupMutation(previousGroupState, entry.getChange(), entry.getGroup()), null), timestamp);
-            timestamp++;
+            updates.add(GroupProtoUtil.createDecryptedGroupV2Context(masterKey, new GroupMutation(previousGroupState, entry.getChange(), entry.getGroup()), null));
           }
         }
         previousGroupState = entry.getGroup();
       }
+
+      if (updates.isEmpty()) {
+        return;
+      }
+
+      MessageDatabase mmsDatabase = DatabaseFactory.getMmsDatabase(context);
+
+      mmsDatabase.beginTransaction();
+      try {
+        for (DecryptedGroupV2Context update : updates) {
+          storeMessage(update, timestamp);
+          timestamp++;
+        }
+        mmsDatabase.setTransactionSuccessful();
+      } finally {
+        mmsDatabase.endTransaction();
+      }
     }
 
     private void persistLearnedProfileKeys(@NonNull GlobalGroupState globalGroupState) {
@@ -71,12 +71,20 @@ public final class EditorElement implements Parcelable {
   }
 
   private EditorElement(Parcel in) {
+    this(in, Collections.emptyList());
+    in.readTypedList(children, EditorElement.CREATOR);
+  }
+
+  /**
+   * Reads an element written by {@link #writeSelfToParcel}, with the supplied children.
+   */
+  EditorElement(@NonNull Parcel in, @NonNull List<EditorElement> children) {
     id       = ParcelUtils.readUUID(in);
     flags    = new EditorFlags(in.readInt());
     ParcelUtils.readMatrix(localMatrix, in);
     renderer = in.readParcelable(Renderer.class.getClassLoader());
     zOrder   = in.readInt();
-    in.readTypedList(children, EditorElement.CREATOR);
+    this.children.addAll(children);
   }
 
   UUID getId() {
@@ -344,11 +352,18 @@ public final class EditorElement implements Parcelable {
 
   @Override
   public void writeToParcel(Parcel dest, int flags) {
+    writeSelfToParcel(dest, flags);
+    dest.writeTypedList(children);
+  }
+
+  /**
+   * Writes the persisted state of this element alone, without its children.
+   */
+  void writeSelfToParcel(@NonNull Parcel dest, int flags) {
     ParcelUtils.writeUUID(dest, id);
     dest.writeInt(this.flags.asInt());
     ParcelUtils.writeMatrix(dest, localMatrix);
     dest.writeParcelable(renderer, flags);
     dest.writeInt(zOrder);
-    dest.writeTypedList(children);
   }
 }
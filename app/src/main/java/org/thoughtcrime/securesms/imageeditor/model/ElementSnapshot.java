@@ -0,0 +1,208 @@
+package org.thoughtcrime.securesms.imageeditor.model;
+
+import android.os.Parcel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable copy of the persisted state of an {@link EditorElement} tree.
+ * <p>
+ * Each element is serialized on its own, without its children. Snapshots taken through the same
+ * {@link Cache} share the serialized data of any element that has not changed since the previous
+ * snapshot, and share whole subtrees where nothing in them has changed. So a history of snapshots
+ * only costs the memory of the elements that changed between them, and comparing two snapshots
+ * only has to look at data that isn't shared.
+ */
+final class ElementSnapshot {
+
+  private final byte[]                data;
+  private final List<ElementSnapshot> children;
+
+  private ElementSnapshot(@NonNull byte[] data, @NonNull List<ElementSnapshot> children) {
+    this.data     = data;
+    this.children = children;
+  }
+
+  /**
+   * @return A new mutable element tree in the state of this snapshot.
+   */
+  @NonNull EditorElement restore() {
+    List<EditorElement> restoredChildren = new ArrayList<>(children.size());
+
+    for (ElementSnapshot child : children) {
+      restoredChildren.add(child.restore());
+    }
+
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.unmarshall(data, 0, data.length);
+      parcel.setDataPosition(0);
+      return new EditorElement(parcel, restoredChildren);
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  @VisibleForTesting
+  @NonNull byte[] getData() {
+    return data;
+  }
+
+  @VisibleForTesting
+  @NonNull List<ElementSnapshot> getChildren() {
+    return children;
+  }
+
+  boolean isSameState(@NonNull ElementSnapshot other) {
+    if (this == other) return true;
+    if (children.size() != other.children.size()) return false;
+    if (!Arrays.equals(data, other.data)) return false;
+
+    for (int i = 0; i < children.size(); i++) {
+      if (!children.get(i).isSameState(other.children.get(i))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Writes the snapshots, writing the data of any element shared between them only once.
+   */
+  static void writeToParcel(@NonNull Parcel dest, @NonNull List<ElementSnapshot> snapshots) {
+    Map<ElementSnapshot, Integer> indexes = new IdentityHashMap<>();
+    List<ElementSnapshot>         ordered = new ArrayList<>();
+
+    for (ElementSnapshot snapshot : snapshots) {
+      snapshot.index(indexes, ordered);
+    }
+
+    dest.writeInt(ordered.size());
+    for (ElementSnapshot snapshot : ordered) {
+      dest.writeByteArray(snapshot.data);
+      dest.writeInt(snapshot.children.size());
+      for (ElementSnapshot child : snapshot.children) {
+        dest.writeInt(indexes.get(child));
+      }
+    }
+
+    dest.writeInt(snapshots.size());
+    for (ElementSnapshot snapshot : snapshots) {
+      dest.writeInt(indexes.get(snapshot));
+    }
+  }
+
+  static @NonNull List<ElementSnapshot> readFromParcel(@NonNull Parcel in) {
+    int                   count   = in.readInt();
+    List<ElementSnapshot> ordered = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      byte[]                data       = in.createByteArray();
+      int                   childCount = in.readInt();
+      List<ElementSnapshot> children   = new ArrayList<>(childCount);
+
+      for (int j = 0; j < childCount; j++) {
+        children.add(ordered.get(in.readInt()));
+      }
+
+      ordered.add(new ElementSnapshot(data, Collections.unmodifiableList(children)));
+    }
+
+    int                   snapshotCount = in.readInt();
+    List<ElementSnapshot> snapshots     = new ArrayList<>(snapshotCount);
+
+    for (int i = 0; i < snapshotCount; i++) {
+      snapshots.add(ordered.get(in.readInt()));
+    }
+
+    return snapshots;
+  }
+
+  /**
+   * Children are indexed before their parents, so that they can be read back in a single pass.
+   */
+  private void index(@NonNull Map<ElementSnapshot, Integer> indexes, @NonNull List<ElementSnapshot> ordered) {
+    if (indexes.containsKey(this)) return;
+
+    for (ElementSnapshot child : children) {
+      child.index(indexes, ordered);
+    }
+
+    indexes.put(this, ordered.size());
+    ordered.add(this);
+  }
+
+  /**
+   * Takes snapshots that share whatever they can with the previous snapshot taken.
+   */
+  static final class Cache {
+
+    private Map<UUID, ElementSnapshot> previous = new HashMap<>();
+
+    @NonNull ElementSnapshot snapshot(@NonNull EditorElement root) {
+      Map<UUID, ElementSnapshot> current  = new HashMap<>(previous.size());
+      ElementSnapshot            snapshot = snapshot(root, current);
+
+      previous = current;
+
+      return snapshot;
+    }
+
+    private @NonNull ElementSnapshot snapshot(@NonNull EditorElement element, @NonNull Map<UUID, ElementSnapshot> current) {
+      int                   childCount = element.getChildCount();
+      List<ElementSnapshot> children   = new ArrayList<>(childCount);
+
+      for (int i = 0; i < childCount; i++) {
+        children.add(snapshot(element.getChild(i), current));
+      }
+
+      byte[]          data     = getSelfBytes(element);
+      ElementSnapshot last     = previous.get(element.getId());
+      ElementSnapshot snapshot;
+
+      if (last != null && Arrays.equals(last.data, data)) {
+        snapshot = sameElements(last.children, children) ? last
+                                                         : new ElementSnapshot(last.data, Collections.unmodifiableList(children));
+      } else {
+        snapshot = new ElementSnapshot(data, Collections.unmodifiableList(children));
+      }
+
+      current.put(element.getId(), snapshot);
+
+      return snapshot;
+    }
+
+    private static boolean sameElements(@NonNull List<ElementSnapshot> a, @NonNull List<ElementSnapshot> b) {
+      if (a.size() != b.size()) return false;
+
+      for (int i = 0; i < a.size(); i++) {
+        if (a.get(i) != b.get(i)) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    private static @NonNull byte[] getSelfBytes(@NonNull EditorElement element) {
+      Parcel parcel = Parcel.obtain();
+      try {
+        element.writeSelfToParcel(parcel, 0);
+        return parcel.marshall();
+      } finally {
+        parcel.recycle();
+      }
+    }
+  }
+}
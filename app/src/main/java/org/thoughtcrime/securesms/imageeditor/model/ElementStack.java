@@ -1,43 +1,42 @@
 package org.thoughtcrime.securesms.imageeditor.model;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 /**
  * Contains a stack of elements for undo and redo stacks.
  * <p>
- * Elements are mutable, so this stack serializes the element and keeps a stack of serialized data.
+ * Elements are mutable, so this stack keeps a stack of {@link ElementSnapshot}s. Snapshots share
+ * the state of any element that didn't change between them, so each item only costs the elements
+ * that changed in that edit.
  * <p>
  * The stack has a {@link #limit} and if it exceeds that limit during a push the second to earliest item
  * is removed so that it can always go back to the first state. Effectively collapsing the history for
  * the start of the stack.
  */
-final class ElementStack implements Parcelable {
+final class ElementStack {
 
-  private final int           limit;
-  private final Stack<byte[]> stack = new Stack<>();
+  private final int                    limit;
+  private final ElementSnapshot.Cache  cache;
+  private final Stack<ElementSnapshot> stack = new Stack<>();
 
-  ElementStack(int limit) {
+  ElementStack(int limit, @NonNull ElementSnapshot.Cache cache) {
     this.limit = limit;
+    this.cache = cache;
   }
 
-  private ElementStack(@NonNull Parcel in) {
-    this(in.readInt());
-    final int count = in.readInt();
-    for (int i = 0; i < count; i++) {
-      stack.add(i, in.createByteArray());
-    }
+  ElementStack(int limit, @NonNull ElementSnapshot.Cache cache, @NonNull List<ElementSnapshot> snapshots) {
+    this(limit, cache);
+    stack.addAll(snapshots);
   }
 
   /**
-   * Pushes an element to the stack iff the element's serialized value is different to any found at
-   * the top of the stack.
+   * Pushes an element to the stack iff the element's state is different to that found at the top
+   * of the stack.
    * <p>
    * Removes the second to earliest item if it is overflowing.
    *
@@ -45,11 +44,11 @@ final class ElementStack implements Parcelable {
    * @return true iff the pushed item was different to the top item.
    */
   boolean tryPush(@NonNull EditorElement element) {
-    byte[]  bytes = getBytes(element);
-    boolean push  = stack.isEmpty() || !Arrays.equals(bytes, stack.peek());
+    ElementSnapshot snapshot = cache.snapshot(element);
+    boolean         push     = stack.isEmpty() || !snapshot.isSameState(stack.peek());
 
     if (push) {
-      stack.push(bytes);
+      stack.push(snapshot);
       if (stack.size() > limit) {
         stack.remove(1);
       }
@@ -57,85 +56,47 @@ final class ElementStack implements Parcelable {
     return push;
   }
 
-  static byte[] getBytes(@NonNull Parcelable parcelable) {
-    Parcel parcel = Parcel.obtain();
-    byte[] bytes;
-    try {
-      parcel.writeParcelable(parcelable, 0);
-      bytes = parcel.marshall();
-    } finally {
-      parcel.recycle();
-    }
-    return bytes;
-  }
-
   /**
    * Pops the first different state from the supplied element.
    */
   @Nullable EditorElement pop(@NonNull EditorElement element) {
     if (stack.empty()) return null;
 
-    byte[] elementBytes = getBytes(element);
-    byte[] stackData    = null;
+    ElementSnapshot elementSnapshot = cache.snapshot(element);
+    ElementSnapshot stackSnapshot   = null;
 
-    while (!stack.empty() && stackData == null) {
-      byte[] topData = stack.pop();
+    while (!stack.empty() && stackSnapshot == null) {
+      ElementSnapshot topSnapshot = stack.pop();
 
-      if (!Arrays.equals(topData, elementBytes)) {
-        stackData = topData;
+      if (!topSnapshot.isSameState(elementSnapshot)) {
+        stackSnapshot = topSnapshot;
       }
     }
 
-    if (stackData == null) return null;
+    if (stackSnapshot == null) return null;
 
-    Parcel parcel = Parcel.obtain();
-    try {
-      parcel.unmarshall(stackData, 0, stackData.length);
-      parcel.setDataPosition(0);
-      return parcel.readParcelable(EditorElement.class.getClassLoader());
-    } finally {
-      parcel.recycle();
-    }
+    return stackSnapshot.restore();
   }
 
   void clear() {
     stack.clear();
   }
 
-  public static final Creator<ElementStack> CREATOR = new Creator<ElementStack>() {
-    @Override
-    public ElementStack createFromParcel(Parcel in) {
-      return new ElementStack(in);
-    }
-
-    @Override
-    public ElementStack[] newArray(int size) {
-      return new ElementStack[size];
-    }
-  };
-
-  @Override
-  public int describeContents() {
-    return 0;
+  int getLimit() {
+    return limit;
   }
 
-  @Override
-  public void writeToParcel(Parcel dest, int flags) {
-    dest.writeInt(limit);
-    final int count = stack.size();
-    dest.writeInt(count);
-    for (int i = 0; i < count; i++) {
-      dest.writeByteArray(stack.get(i));
-    }
+  @NonNull List<ElementSnapshot> getSnapshots() {
+    return new ArrayList<>(stack);
   }
 
   boolean stackContainsStateDifferentFrom(@NonNull EditorElement element) {
     if (stack.isEmpty()) return false;
 
-    byte[] currentStateBytes = getBytes(element);
+    ElementSnapshot currentSnapshot = cache.snapshot(element);
 
-    for (byte[] item : stack) {
-      if (!Arrays.equals(item, currentStateBytes)) {
+    for (ElementSnapshot item : stack) {
+      if (!item.isSameState(currentSnapshot)) {
         return true;
       }
     }
@@ -6,33 +6,50 @@ import android.os.Parcelable;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 final class UndoRedoStacks implements Parcelable {
 
-  private final ElementStack undoStack;
-  private final ElementStack redoStack;
+  private final ElementSnapshot.Cache cache;
+  private final ElementStack          undoStack;
+  private final ElementStack          redoStack;
 
-  @NonNull
-  private byte[] unchangedState;
+  @Nullable
+  private ElementSnapshot unchangedState;
 
   UndoRedoStacks(int limit) {
-    this(new ElementStack(limit), new ElementStack(limit), null);
+    this(new ElementSnapshot.Cache(), limit);
   }
 
-  private UndoRedoStacks(ElementStack undoStack, ElementStack redoStack, @Nullable byte[] unchangedState) {
-    this.undoStack = undoStack;
-    this.redoStack = redoStack;
-    this.unchangedState = unchangedState != null ? unchangedState : new byte[0];
+  private UndoRedoStacks(@NonNull ElementSnapshot.Cache cache, int limit) {
+    this(cache, new ElementStack(limit, cache), new ElementStack(limit, cache), null);
+  }
+
+  private UndoRedoStacks(@NonNull ElementSnapshot.Cache cache, @NonNull ElementStack undoStack, @NonNull ElementStack redoStack, @Nullable ElementSnapshot unchangedState) {
+    this.cache          = cache;
+    this.undoStack      = undoStack;
+    this.redoStack      = redoStack;
+    this.unchangedState = unchangedState;
   }
 
   public static final Creator<UndoRedoStacks> CREATOR = new Creator<UndoRedoStacks>() {
     @Override
     public UndoRedoStacks createFromParcel(Parcel in) {
+      int                   undoLimit    = in.readInt();
+      int                   redoLimit    = in.readInt();
+      int                   undoCount    = in.readInt();
+      int                   redoCount    = in.readInt();
+      boolean               hasUnchanged = in.readInt() != 0;
+      List<ElementSnapshot> snapshots    = ElementSnapshot.readFromParcel(in);
+
+      ElementSnapshot.Cache cache = new ElementSnapshot.Cache();
+
       return new UndoRedoStacks(
-      in.readParcelable(ElementStack.class.getClassLoader()),
-      in.readParcelable(ElementStack.class.getClassLoader()),
-      in.createByteArray()
+      cache,
+      new ElementStack(undoLimit, cache, snapshots.subList(0, undoCount)),
+      new ElementStack(redoLimit, cache, snapshots.subList(undoCount, undoCount + redoCount)),
+      hasUnchanged ? snapshots.get(undoCount + redoCount) : null
       );
     }
 
@@ -42,11 +59,27 @@ final class UndoRedoStacks implements Parcelable {
     }
   };
 
+  /**
+   * Both stacks are written together, so that states shared between them are only written once.
+   */
   @Override
   public void writeToParcel(Parcel dest, int flags) {
-    dest.writeParcelable(undoStack, flags);
-    dest.writeParcelable(redoStack, flags);
-    dest.writeByteArray(unchangedState);
+    List<ElementSnapshot> undoSnapshots = undoStack.getSnapshots();
+    List<ElementSnapshot> redoSnapshots = redoStack.getSnapshots();
+    List<ElementSnapshot> snapshots     = new ArrayList<>(undoSnapshots.size() + redoSnapshots.size() + 1);
+
+    snapshots.addAll(undoSnapshots);
+    snapshots.addAll(redoSnapshots);
+    if (unchangedState != null) {
+      snapshots.add(unchangedState);
+    }
+
+    dest.writeInt(undoStack.getLimit());
+    dest.writeInt(redoStack.getLimit());
+    dest.writeInt(undoSnapshots.size());
+    dest.writeInt(redoSnapshots.size());
+    dest.writeInt(unchangedState != null ? 1 : 0);
+    ElementSnapshot.writeToParcel(dest, snapshots);
   }
 
   @Override
@@ -71,11 +104,11 @@ final class UndoRedoStacks implements Parcelable {
   void clear(@NonNull EditorElement element) {
     undoStack.clear();
     redoStack.clear();
-    unchangedState = ElementStack.getBytes(element);
+    unchangedState = cache.snapshot(element);
   }
 
   boolean isChanged(@NonNull EditorElement element) {
-    return !Arrays.equals(ElementStack.getBytes(element), unchangedState);
+    return unchangedState == null || !cache.snapshot(element).isSameState(unchangedState);
   }
 
   /**
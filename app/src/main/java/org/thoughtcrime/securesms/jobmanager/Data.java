@@ -9,6 +9,7 @@ import org.thoughtcrime.securesms.util.Base64;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,7 @@ public class Data {
   @JsonProperty private final Map<String, double[]>  doubleArrays;
   @JsonProperty private final Map<String, Boolean>   booleans;
   @JsonProperty private final Map<String, boolean[]> booleanArrays;
+  @JsonProperty private final Map<String, byte[]>    blobs;
 
   public Data(@JsonProperty("strings")       @NonNull Map<String, String>    strings,
               @JsonProperty("stringArrays")  @NonNull Map<String, String[]>  stringArrays,
@@ -42,7 +44,8 @@ public class Data {
               @JsonProperty("doubles")       @NonNull Map<String, Double>    doubles,
               @JsonProperty("doubleArrays")  @NonNull Map<String, double[]>  doubleArrays,
               @JsonProperty("booleans")      @NonNull Map<String, Boolean>   booleans,
-              @JsonProperty("booleanArrays") @NonNull Map<String, boolean[]> booleanArrays)
+              @JsonProperty("booleanArrays") @NonNull Map<String, boolean[]> booleanArrays,
+              @JsonProperty("blobs")         @Nullable Map<String, byte[]>   blobs)
   {
     this.strings       = strings;
     this.stringArrays  = stringArrays;
@@ -56,6 +59,7 @@ public class Data {
     this.doubleArrays  = doubleArrays;
     this.booleans      = booleans;
     this.booleanArrays = booleanArrays;
+    this.blobs         = blobs != null ? blobs : Collections.emptyMap();
   }
 
   public boolean hasString(@NonNull String key) {
@@ -234,12 +238,78 @@ public class Data {
   }
 
 
+  public boolean hasBlob(@NonNull String key) {
+    return blobs.containsKey(key);
+  }
+
+  public byte[] getBlob(@NonNull String key) {
+    throwIfAbsent(blobs, key);
+    return blobs.get(key);
+  }
+
+
   private void throwIfAbsent(@NonNull Map map, @NonNull String key) {
     if (!map.containsKey(key)) {
       throw new IllegalStateException("Tried to retrieve a value with key '" + key + "', but it wasn't present.");
     }
   }
 
+  /*
+   * The underlying maps, for serializers. Not to be modified.
+   */
+
+  public @NonNull Map<String, String> getStrings() {
+    return strings;
+  }
+
+  public @NonNull Map<String, String[]> getStringArrays() {
+    return stringArrays;
+  }
+
+  public @NonNull Map<String, Integer> getIntegers() {
+    return integers;
+  }
+
+  public @NonNull Map<String, int[]> getIntegerArrays() {
+    return integerArrays;
+  }
+
+  public @NonNull Map<String, Long> getLongs() {
+    return longs;
+  }
+
+  public @NonNull Map<String, long[]> getLongArrays() {
+    return longArrays;
+  }
+
+  public @NonNull Map<String, Float> getFloats() {
+    return floats;
+  }
+
+  public @NonNull Map<String, float[]> getFloatArrays() {
+    return floatArrays;
+  }
+
+  public @NonNull Map<String, Double> getDoubles() {
+    return doubles;
+  }
+
+  public @NonNull Map<String, double[]> getDoubleArrays() {
+    return doubleArrays;
+  }
+
+  public @NonNull Map<String, Boolean> getBooleans() {
+    return booleans;
+  }
+
+  public @NonNull Map<String, boolean[]> getBooleanArrays() {
+    return booleanArrays;
+  }
+
+  public @NonNull Map<String, byte[]> getBlobs() {
+    return blobs;
+  }
+
   public Builder buildUpon() {
     return new Builder(this);
   }
@@ -259,6 +329,7 @@ public class Data {
     private final Map<String, double[]>  doubleArrays  = new HashMap<>();
     private final Map<String, Boolean>   booleans      = new HashMap<>();
     private final Map<String, boolean[]> booleanArrays = new HashMap<>();
+    private final Map<String, byte[]>    blobs         = new HashMap<>();
 
     public Builder() { }
 
@@ -275,6 +346,7 @@ public class Data {
       doubleArrays.putAll(oldData.doubleArrays);
       booleans.putAll(oldData.booleans);
       booleanArrays.putAll(oldData.booleanArrays);
+      blobs.putAll(oldData.blobs);
     }
 
     public Builder putString(@NonNull String key, @Nullable String value) {
@@ -362,6 +434,16 @@ public class Data {
       return this;
     }
 
+    /**
+     * Stores the bytes as they are, rather than Base64 encoded like {@link #putBlobAsString(String, byte[])}.
+     * Replaces any string stored under the same key, so a job can move a value over to a blob.
+     */
+    public Builder putBlob(@NonNull String key, @NonNull byte[] value) {
+      strings.remove(key);
+      blobs.put(key, value);
+      return this;
+    }
+
     public Data build() {
       return new Data(strings,
                       stringArrays,
@@ -374,12 +456,13 @@ public class Data {
                       doubles,
                       doubleArrays,
                       booleans,
-                      booleanArrays);
+                      booleanArrays,
+                      blobs);
     }
   }
 
   public interface Serializer {
-    @NonNull String serialize(@NonNull Data data);
-    @NonNull Data deserialize(@NonNull String serialized);
+    @NonNull byte[] serialize(@NonNull Data data);
+    @NonNull Data deserialize(@NonNull byte[] serialized);
   }
 }
@@ -10,6 +10,7 @@ import com.annimon.stream.Collectors;
 import com.annimon.stream.Stream;
 
 import org.signal.core.util.logging.Log;
+import org.signal.core.util.tracing.Tracer;
 import org.thoughtcrime.securesms.jobmanager.persistence.ConstraintSpec;
 import org.thoughtcrime.securesms.jobmanager.persistence.DependencySpec;
 import org.thoughtcrime.securesms.jobmanager.persistence.FullSpec;
@@ -38,6 +39,8 @@ class JobController {
 
   private static final String TAG = Log.tag(JobController.class);
 
+  private static final String RUNNING_JOBS_COUNTER = "Running jobs";
+
   private final Application            application;
   private final JobStorage             jobStorage;
   private final JobInstantiator        jobInstantiator;
@@ -201,7 +204,7 @@ class JobController {
 
     int    nextRunAttempt     = job.getRunAttempt() + 1;
     long   nextRunAttemptTime = System.currentTimeMillis() + backoffInterval;
-    String serializedData     = dataSerializer.serialize(job.serialize());
+    byte[] serializedData     = dataSerializer.serialize(job.serialize());
 
     jobStorage.updateJobAfterRetry(job.getId(), false, nextRunAttempt, nextRunAttemptTime, serializedData);
     jobTracker.onStateChange(job, JobTracker.JobState.PENDING);
@@ -222,6 +225,7 @@ class JobController {
 
   synchronized void onJobFinished(@NonNull Job job) {
     runningJobs.remove(job.getId());
+    Tracer.getInstance().counter(RUNNING_JOBS_COUNTER, runningJobs.size());
   }
 
   @WorkerThread
@@ -289,6 +293,7 @@ class JobController {
 
       jobStorage.updateJobRunningState(job.getId(), true);
       runningJobs.put(job.getId(), job);
+      Tracer.getInstance().counter(RUNNING_JOBS_COUNTER, runningJobs.size());
       jobTracker.onStateChange(job, JobTracker.JobState.RUNNING);
 
       return job;
@@ -0,0 +1,468 @@
+package org.thoughtcrime.securesms.jobmanager.impl;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thoughtcrime.securesms.jobmanager.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializes {@link Data} into a compact binary form. Numbers are written as variable length
+ * integers, floating point values as their raw bits, and blobs as the bytes themselves, so there's
+ * no JSON to parse and no Base64 to decode when a job is read back.
+ * <p>
+ * Every serialized value starts with a version byte. Anything starting with '{' instead is JSON
+ * written by {@link JsonDataSerializer}, which is still read so that jobs persisted before the switch
+ * keep working until they're rewritten.
+ */
+public final class BinaryDataSerializer implements Data.Serializer {
+
+  private static final byte VERSION = 1;
+  private static final byte JSON    = '{';
+
+  private final JsonDataSerializer jsonDataSerializer = new JsonDataSerializer();
+
+  @Override
+  public @NonNull byte[] serialize(@NonNull Data data) {
+    Writer writer = new Writer();
+
+    writer.writeByte(VERSION);
+
+    Map<String, String> strings = data.getStrings();
+    writer.writeCount(strings.size());
+    for (Map.Entry<String, String> entry : strings.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeString(entry.getValue());
+    }
+
+    Map<String, String[]> stringArrays = data.getStringArrays();
+    writer.writeCount(stringArrays.size());
+    for (Map.Entry<String, String[]> entry : stringArrays.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeNullableLength(entry.getValue() != null ? entry.getValue().length : -1);
+      if (entry.getValue() != null) {
+        for (String value : entry.getValue()) {
+          writer.writeString(value);
+        }
+      }
+    }
+
+    Map<String, Integer> integers = data.getIntegers();
+    writer.writeCount(integers.size());
+    for (Map.Entry<String, Integer> entry : integers.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeSignedVarint(entry.getValue());
+    }
+
+    Map<String, int[]> integerArrays = data.getIntegerArrays();
+    writer.writeCount(integerArrays.size());
+    for (Map.Entry<String, int[]> entry : integerArrays.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeNullableLength(entry.getValue() != null ? entry.getValue().length : -1);
+      if (entry.getValue() != null) {
+        for (int value : entry.getValue()) {
+          writer.writeSignedVarint(value);
+        }
+      }
+    }
+
+    Map<String, Long> longs = data.getLongs();
+    writer.writeCount(longs.size());
+    for (Map.Entry<String, Long> entry : longs.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeSignedVarint(entry.getValue());
+    }
+
+    Map<String, long[]> longArrays = data.getLongArrays();
+    writer.writeCount(longArrays.size());
+    for (Map.Entry<String, long[]> entry : longArrays.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeNullableLength(entry.getValue() != null ? entry.getValue().length : -1);
+      if (entry.getValue() != null) {
+        for (long value : entry.getValue()) {
+          writer.writeSignedVarint(value);
+        }
+      }
+    }
+
+    Map<String, Float> floats = data.getFloats();
+    writer.writeCount(floats.size());
+    for (Map.Entry<String, Float> entry : floats.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeFixed(Float.floatToIntBits(entry.getValue()), 4);
+    }
+
+    Map<String, float[]> floatArrays = data.getFloatArrays();
+    writer.writeCount(floatArrays.size());
+    for (Map.Entry<String, float[]> entry : floatArrays.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeNullableLength(entry.getValue() != null ? entry.getValue().length : -1);
+      if (entry.getValue() != null) {
+        for (float value : entry.getValue()) {
+          writer.writeFixed(Float.floatToIntBits(value), 4);
+        }
+      }
+    }
+
+    Map<String, Double> doubles = data.getDoubles();
+    writer.writeCount(doubles.size());
+    for (Map.Entry<String, Double> entry : doubles.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeFixed(Double.doubleToLongBits(entry.getValue()), 8);
+    }
+
+    Map<String, double[]> doubleArrays = data.getDoubleArrays();
+    writer.writeCount(doubleArrays.size());
+    for (Map.Entry<String, double[]> entry : doubleArrays.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeNullableLength(entry.getValue() != null ? entry.getValue().length : -1);
+      if (entry.getValue() != null) {
+        for (double value : entry.getValue()) {
+          writer.writeFixed(Double.doubleToLongBits(value), 8);
+        }
+      }
+    }
+
+    Map<String, Boolean> booleans = data.getBooleans();
+    writer.writeCount(booleans.size());
+    for (Map.Entry<String, Boolean> entry : booleans.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeByte(entry.getValue() ? 1 : 0);
+    }
+
+    Map<String, boolean[]> booleanArrays = data.getBooleanArrays();
+    writer.writeCount(booleanArrays.size());
+    for (Map.Entry<String, boolean[]> entry : booleanArrays.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeNullableLength(entry.getValue() != null ? entry.getValue().length : -1);
+      if (entry.getValue() != null) {
+        for (boolean value : entry.getValue()) {
+          writer.writeByte(value ? 1 : 0);
+        }
+      }
+    }
+
+    Map<String, byte[]> blobs = data.getBlobs();
+    writer.writeCount(blobs.size());
+    for (Map.Entry<String, byte[]> entry : blobs.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeCount(entry.getValue().length);
+      writer.writeBytes(entry.getValue());
+    }
+
+    return writer.toByteArray();
+  }
+
+  @Override
+  public @NonNull Data deserialize(@NonNull byte[] serialized) {
+    if (serialized.length > 0 && serialized[0] == JSON) {
+      return jsonDataSerializer.deserialize(serialized);
+    }
+
+    if (serialized.length == 0 || serialized[0] != VERSION) {
+      throw new AssertionError("Unknown data version: " + (serialized.length > 0 ? serialized[0] : "empty"));
+    }
+
+    Reader reader = new Reader(serialized, 1);
+
+    try {
+      int                 stringCount = reader.readCount();
+      Map<String, String> strings     = newMap(stringCount);
+      for (int i = 0; i < stringCount; i++) {
+        strings.put(reader.readString(), reader.readString());
+      }
+
+      int                   stringArrayCount = reader.readCount();
+      Map<String, String[]> stringArrays     = newMap(stringArrayCount);
+      for (int i = 0; i < stringArrayCount; i++) {
+        String   key    = reader.readString();
+        int      length = reader.readNullableLength();
+        String[] values = length >= 0 ? new String[length] : null;
+
+        for (int j = 0; j < length; j++) {
+          values[j] = reader.readString();
+        }
+
+        stringArrays.put(key, values);
+      }
+
+      int                  integerCount = reader.readCount();
+      Map<String, Integer> integers     = newMap(integerCount);
+      for (int i = 0; i < integerCount; i++) {
+        integers.put(reader.readString(), (int) reader.readSignedVarint());
+      }
+
+      int                integerArrayCount = reader.readCount();
+      Map<String, int[]> integerArrays     = newMap(integerArrayCount);
+      for (int i = 0; i < integerArrayCount; i++) {
+        String key    = reader.readString();
+        int    length = reader.readNullableLength();
+        int[]  values = length >= 0 ? new int[length] : null;
+
+        for (int j = 0; j < length; j++) {
+          values[j] = (int) reader.readSignedVarint();
+        }
+
+        integerArrays.put(key, values);
+      }
+
+      int               longCount = reader.readCount();
+      Map<String, Long> longs     = newMap(longCount);
+      for (int i = 0; i < longCount; i++) {
+        longs.put(reader.readString(), reader.readSignedVarint());
+      }
+
+      int                 longArrayCount = reader.readCount();
+      Map<String, long[]> longArrays     = newMap(longArrayCount);
+      for (int i = 0; i < longArrayCount; i++) {
+        String key    = reader.readString();
+        int    length = reader.readNullableLength();
+        long[] values = length >= 0 ? new long[length] : null;
+
+        for (int j = 0; j < length; j++) {
+          values[j] = reader.readSignedVarint();
+        }
+
+        longArrays.put(key, values);
+      }
+
+      int                floatCount = reader.readCount();
+      Map<String, Float> floats     = newMap(floatCount);
+      for (int i = 0; i < floatCount; i++) {
+        floats.put(reader.readString(), Float.intBitsToFloat((int) reader.readFixed(4)));
+      }
+
+      int                  floatArrayCount = reader.readCount();
+      Map<String, float[]> floatArrays     = newMap(floatArrayCount);
+      for (int i = 0; i < floatArrayCount; i++) {
+        String  key    = reader.readString();
+        int     length = reader.readNullableLength();
+        float[] values = length >= 0 ? new float[length] : null;
+
+        for (int j = 0; j < length; j++) {
+          values[j] = Float.intBitsToFloat((int) reader.readFixed(4));
+        }
+
+        floatArrays.put(key, values);
+      }
+
+      int                 doubleCount = reader.readCount();
+      Map<String, Double> doubles     = newMap(doubleCount);
+      for (int i = 0; i < doubleCount; i++) {
+        doubles.put(reader.readString(), Double.longBitsToDouble(reader.readFixed(8)));
+      }
+
+      int                   doubleArrayCount = reader.readCount();
+      Map<String, double[]> doubleArrays     = newMap(doubleArrayCount);
+      for (int i = 0; i < doubleArrayCount; i++) {
+        String   key    = reader.readString();
+        int      length = reader.readNullableLength();
+        double[] values = length >= 0 ? new double[length] : null;
+
+        for (int j = 0; j < length; j++) {
+          values[j] = Double.longBitsToDouble(reader.readFixed(8));
+        }
+
+        doubleArrays.put(key, values);
+      }
+
+      int                  booleanCount = reader.readCount();
+      Map<String, Boolean> booleans     = newMap(booleanCount);
+      for (int i = 0; i < booleanCount; i++) {
+        booleans.put(reader.readString(), reader.readByte() != 0);
+      }
+
+      int                    booleanArrayCount = reader.readCount();
+      Map<String, boolean[]> booleanArrays     = newMap(booleanArrayCount);
+      for (int i = 0; i < booleanArrayCount; i++) {
+        String    key    = reader.readString();
+        int       length = reader.readNullableLength();
+        boolean[] values = length >= 0 ? new boolean[length] : null;
+
+        for (int j = 0; j < length; j++) {
+          values[j] = reader.readByte() != 0;
+        }
+
+        booleanArrays.put(key, values);
+      }
+
+      int                 blobCount = reader.readCount();
+      Map<String, byte[]> blobs     = newMap(blobCount);
+      for (int i = 0; i < blobCount; i++) {
+        String key = reader.readString();
+        blobs.put(key, reader.readBytes(reader.readCount()));
+      }
+
+      return new Data(strings, stringArrays, integers, integerArrays, longs, longArrays, floats, floatArrays, doubles, doubleArrays, booleans, booleanArrays, blobs);
+    } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+      throw new AssertionError("Truncated data.", e);
+    }
+  }
+
+  /**
+   * Most jobs only use one or two of the maps, so the rest share the empty map.
+   */
+  private static @NonNull <V> Map<String, V> newMap(int count) {
+    return count == 0 ? Collections.emptyMap() : new HashMap<>(count * 4 / 3 + 1);
+  }
+
+  private static final class Writer {
+
+    private byte[] buffer = new byte[128];
+    private int    length;
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[length++] = (byte) value;
+    }
+
+    void writeBytes(@NonNull byte[] value) {
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, buffer, length, value.length);
+      length += value.length;
+    }
+
+    void writeCount(int count) {
+      writeVarint(count);
+    }
+
+    /**
+     * Lengths of nullable values are stored one higher, so that null can be zero.
+     */
+    void writeNullableLength(int length) {
+      writeVarint(length + 1);
+    }
+
+    void writeString(@Nullable String value) {
+      if (value == null) {
+        writeNullableLength(-1);
+      } else {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeNullableLength(bytes.length);
+        writeBytes(bytes);
+      }
+    }
+
+    void writeSignedVarint(long value) {
+      writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+
+      while ((value & ~0x7FL) != 0) {
+        buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+
+      buffer[length++] = (byte) value;
+    }
+
+    void writeFixed(long value, int bytes) {
+      ensureCapacity(bytes);
+
+      for (int i = bytes - 1; i >= 0; i--) {
+        buffer[length++] = (byte) (value >>> (i * 8));
+      }
+    }
+
+    @NonNull byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+
+    private void ensureCapacity(int extra) {
+      if (length + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+      }
+    }
+  }
+
+  private static final class Reader {
+
+    private final byte[] buffer;
+
+    private int position;
+
+    Reader(@NonNull byte[] buffer, int position) {
+      this.buffer   = buffer;
+      this.position = position;
+    }
+
+    int readByte() {
+      return buffer[position++];
+    }
+
+    @NonNull byte[] readBytes(int length) {
+      if (position + length > buffer.length) {
+        throw new ArrayIndexOutOfBoundsException(position + length);
+      }
+
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    int readCount() {
+      return (int) readVarint();
+    }
+
+    /**
+     * @return The length, or -1 for null.
+     */
+    int readNullableLength() {
+      return (int) readVarint() - 1;
+    }
+
+    @Nullable String readString() {
+      int length = readNullableLength();
+
+      if (length < 0) {
+        return null;
+      }
+
+      if (position + length > buffer.length) {
+        throw new ArrayIndexOutOfBoundsException(position + length);
+      }
+
+      String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    long readSignedVarint() {
+      long value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readVarint() {
+      long value = 0;
+      int  shift = 0;
+
+      while (true) {
+        byte b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+
+        shift += 7;
+      }
+    }
+
+    long readFixed(int bytes) {
+      long value = 0;
+
+      for (int i = 0; i < bytes; i++) {
+        value = (value << 8) | (buffer[position++] & 0xFF);
+      }
+
+      return value;
+    }
+  }
+}
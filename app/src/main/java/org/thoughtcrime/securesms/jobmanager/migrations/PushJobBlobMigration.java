@@ -0,0 +1,45 @@
+package org.thoughtcrime.securesms.jobmanager.migrations;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.jobmanager.Data;
+import org.thoughtcrime.securesms.jobmanager.JobMigration;
+
+/**
+ * The decrypt and process jobs used to keep the envelope and the decrypted content as Base64 strings,
+ * and now keep them as blobs, so that they're stored as-is by the binary data serializer.
+ */
+public class PushJobBlobMigration extends JobMigration {
+
+  private static final String TAG = Log.tag(PushJobBlobMigration.class);
+
+  public PushJobBlobMigration() {
+    super(9);
+  }
+
+  @Override
+  protected @NonNull JobData migrate(@NonNull JobData jobData) {
+    if ("PushDecryptJob".equals(jobData.getFactoryKey())) {
+      return migrateToBlob(jobData, "envelope");
+    } else if ("PushProcessJob".equals(jobData.getFactoryKey())) {
+      return migrateToBlob(jobData, "message_content");
+    } else {
+      return jobData;
+    }
+  }
+
+  private static @NonNull JobData migrateToBlob(@NonNull JobData jobData, @NonNull String key) {
+    Data data = jobData.getData();
+
+    if (!data.hasString(key) || data.getString(key) == null) {
+      return jobData;
+    }
+
+    Log.i(TAG, "Migrating " + key + " of a " + jobData.getFactoryKey() + ".");
+
+    return jobData.withData(data.buildUpon()
+                                .putBlob(key, data.getStringAsBlob(key))
+                                .build());
+  }
+}
@@ -25,6 +25,10 @@ public interface JobStorage {
   @WorkerThread
   @NonNull List<JobSpec> getPendingJobsWithNoDependenciesInCreatedOrder(long currentTime);
 
+  /**
+   * Unlike the other getters, the specs returned here may not have their data loaded. See
+   * {@link JobSpec#isDataLoaded()}.
+   */
   @WorkerThread
   @NonNull List<JobSpec> getJobsInQueue(@NonNull String queue);
 
@@ -41,7 +45,7 @@ public interface JobStorage {
   void updateJobRunningState(@NonNull String id, boolean isRunning);
 
   @WorkerThread
-  void updateJobAfterRetry(@NonNull String id, boolean isRunning, int runAttempt, long nextRunAttemptTime, @NonNull String serializedData);
+  void updateJobAfterRetry(@NonNull String id, boolean isRunning, int runAttempt, long nextRunAttemptTime, @NonNull byte[] serializedData);
 
   @WorkerThread
   void updateAllJobsToBePending();
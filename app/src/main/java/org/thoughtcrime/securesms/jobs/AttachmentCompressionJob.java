@@ -145,6 +145,8 @@ public final class AttachmentCompressionJob extends BaseJob {
                                             : MediaConstraints.getPushMediaConstraints(SentMediaQuality.fromCode(databaseAttachment.getTransformProperties().getSentMediaQuality()));
 
     compress(database, mediaConstraints, databaseAttachment);
+
+    GenerateAudioWaveFormJob.enqueueIfAudio(attachmentId, databaseAttachment);
   }
 
   @Override
@@ -0,0 +1,207 @@
+package org.thoughtcrime.securesms.jobs;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachmentStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The contents of a contact sync attachment, in the format written by
+ * {@link org.whispersystems.signalservice.api.messages.multidevice.DeviceContactsOutputStream}.
+ *
+ * Each contact's details are serialized up front, but avatars aren't read until the stream reaches
+ * them. Since an avatar's length is known without reading it, the total length is known before
+ * anything is read, which lets the attachment be encrypted straight into the upload rather than
+ * being written out to a temporary file and measured first.
+ */
+final class ContactSyncPayload {
+
+  private final List<Entry> entries = new ArrayList<>();
+
+  private long length;
+
+  /**
+   * @param details The output of {@link org.whispersystems.signalservice.api.messages.multidevice.DeviceContactsOutputStream#serializeContactDetails}
+   *                for the contact.
+   * @param avatar  The avatar the contact was serialized with, if any. Its stream should be one from
+   *                {@link #openLazily(Opener)}, so that it isn't held open until it's needed.
+   */
+  void add(@NonNull byte[] details, @Nullable SignalServiceAttachmentStream avatar) {
+    entries.add(new Entry(details, avatar));
+    length += details.length + (avatar != null ? avatar.getLength() : 0);
+  }
+
+  long getLength() {
+    return length;
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Creates a stream of exactly {@link #getLength()} bytes. If an avatar turns out not to be the
+   * length that was promised, say because it changed in the meantime, reading fails rather than
+   * producing a corrupt attachment. Can only be read once.
+   */
+  @NonNull InputStream createInputStream() {
+    List<InputStream> streams = new ArrayList<>(entries.size() * 2);
+
+    for (Entry entry : entries) {
+      streams.add(new ByteArrayInputStream(entry.details));
+
+      if (entry.avatar != null) {
+        streams.add(new ExactLengthInputStream(entry.avatar.getInputStream(), entry.avatar.getLength()));
+      }
+    }
+
+    return new SequenceInputStream(Collections.enumeration(streams));
+  }
+
+  /**
+   * A stream that doesn't open the underlying one until it's first read. A sync can line up
+   * thousands of avatars, but only ever needs one of them open at a time.
+   */
+  static @NonNull InputStream openLazily(@NonNull Opener opener) {
+    return new LazyInputStream(opener);
+  }
+
+  interface Opener {
+    @NonNull InputStream open() throws IOException;
+  }
+
+  private static final class Entry {
+    private final byte[]                        details;
+    private final SignalServiceAttachmentStream avatar;
+
+    private Entry(@NonNull byte[] details, @Nullable SignalServiceAttachmentStream avatar) {
+      this.details = details;
+      this.avatar  = avatar;
+    }
+  }
+
+  private static final class LazyInputStream extends InputStream {
+
+    private final Opener opener;
+
+    private InputStream stream;
+    private boolean     closed;
+
+    private LazyInputStream(@NonNull Opener opener) {
+      this.opener = opener;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return getStream().read();
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+      return getStream().read(buffer, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+
+      if (stream != null) {
+        stream.close();
+      }
+    }
+
+    private @NonNull InputStream getStream() throws IOException {
+      if (closed) {
+        throw new IOException("Closed");
+      }
+
+      if (stream == null) {
+        stream = opener.open();
+      }
+
+      return stream;
+    }
+  }
+
+  /**
+   * Closes the underlying stream as soon as its last byte has been read, and fails if it's not
+   * exactly the expected length.
+   */
+  private static final class ExactLengthInputStream extends InputStream {
+
+    private final InputStream in;
+
+    private long    remaining;
+    private boolean finished;
+
+    private ExactLengthInputStream(@NonNull InputStream in, long length) {
+      this.in        = in;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] buffer = new byte[1];
+      int    read   = read(buffer, 0, 1);
+
+      return read == -1 ? -1 : buffer[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+      if (finished) {
+        return -1;
+      }
+
+      if (remaining == 0) {
+        finish();
+        return -1;
+      }
+
+      int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+
+      if (read == -1) {
+        finish();
+        throw new IOException("Avatar ended " + remaining + " bytes early");
+      }
+
+      remaining -= read;
+
+      if (remaining == 0) {
+        boolean longer = in.read() != -1;
+
+        finish();
+
+        if (longer) {
+          throw new IOException("Avatar is longer than expected");
+        }
+      }
+
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      finish();
+    }
+
+    private void finish() throws IOException {
+      if (!finished) {
+        finished = true;
+        in.close();
+      }
+    }
+  }
+}
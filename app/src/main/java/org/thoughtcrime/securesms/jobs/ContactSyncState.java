@@ -0,0 +1,126 @@
+package org.thoughtcrime.securesms.jobs;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What linked devices were last sent for each contact, as a fingerprint of the serialized contact
+ * and its avatar, along with when they were last sent every contact. Lets a contact sync skip
+ * contacts that haven't changed since the last one that went out.
+ */
+final class ContactSyncState {
+
+  private static final String TAG = Log.tag(ContactSyncState.class);
+
+  private static final int VERSION = 1;
+
+  private final Map<Long, Long> fingerprints;
+  private final long            lastCompleteSyncTime;
+
+  ContactSyncState(long lastCompleteSyncTime) {
+    this(new HashMap<>(), lastCompleteSyncTime);
+  }
+
+  private ContactSyncState(@NonNull Map<Long, Long> fingerprints, long lastCompleteSyncTime) {
+    this.fingerprints         = fingerprints;
+    this.lastCompleteSyncTime = lastCompleteSyncTime;
+  }
+
+  /**
+   * @return The deserialized state, or an empty state if there isn't one or it can't be read.
+   */
+  static @NonNull ContactSyncState deserialize(@Nullable byte[] serialized) {
+    if (serialized == null) {
+      return new ContactSyncState(0);
+    }
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(serialized))) {
+      if (in.readInt() != VERSION) {
+        return new ContactSyncState(0);
+      }
+
+      long            lastCompleteSyncTime = in.readLong();
+      int             count                = in.readInt();
+      Map<Long, Long> fingerprints         = new HashMap<>(count);
+
+      for (int i = 0; i < count; i++) {
+        fingerprints.put(in.readLong(), in.readLong());
+      }
+
+      return new ContactSyncState(fingerprints, lastCompleteSyncTime);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to read contact sync state.", e);
+      return new ContactSyncState(0);
+    }
+  }
+
+  @NonNull byte[] serialize() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + fingerprints.size() * 16);
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(VERSION);
+      out.writeLong(lastCompleteSyncTime);
+      out.writeInt(fingerprints.size());
+
+      for (Map.Entry<Long, Long> entry : fingerprints.entrySet()) {
+        out.writeLong(entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  long getLastCompleteSyncTime() {
+    return lastCompleteSyncTime;
+  }
+
+  boolean isEmpty() {
+    return fingerprints.isEmpty();
+  }
+
+  boolean matches(@NonNull RecipientId recipientId, long fingerprint) {
+    Long previous = fingerprints.get(recipientId.toLong());
+    return previous != null && previous == fingerprint;
+  }
+
+  void put(@NonNull RecipientId recipientId, long fingerprint) {
+    fingerprints.put(recipientId.toLong(), fingerprint);
+  }
+
+  /**
+   * @param details           A contact's serialized details.
+   * @param avatarFingerprint Something that changes whenever the contact's avatar does, if it has one.
+   */
+  static long fingerprint(@NonNull byte[] details, @Nullable byte[] avatarFingerprint) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+      digest.update(details);
+
+      if (avatarFingerprint != null) {
+        digest.update(avatarFingerprint);
+      }
+
+      return ByteBuffer.wrap(digest.digest()).getLong();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -85,7 +85,7 @@ public class FastJobStorage implements JobStorage {
   public synchronized @Nullable JobSpec getJobSpec(@NonNull String id) {
     for (JobSpec jobSpec : jobs) {
       if (jobSpec.getId().equals(id)) {
-        return jobSpec;
+        return loadData(Collections.singletonList(jobSpec), true).get(0);
       }
     }
     return null;
@@ -93,7 +93,7 @@ public class FastJobStorage implements JobStorage {
 
   @Override
   public synchronized @NonNull List<JobSpec> getAllJobSpecs() {
-    return new ArrayList<>(jobs);
+    return loadData(new ArrayList<>(jobs), false);
   }
 
   @Override
@@ -101,33 +101,35 @@ public class FastJobStorage implements JobStorage {
     Optional<JobSpec> migrationJob = getMigrationJob();
 
     if (migrationJob.isPresent() && !migrationJob.get().isRunning() && migrationJob.get().getNextRunAttemptTime() <= currentTime) {
-      return Collections.singletonList(migrationJob.get());
+      return loadData(Collections.singletonList(migrationJob.get()), true);
     } else if (migrationJob.isPresent()) {
       return Collections.emptyList();
     } else {
-      return Stream.of(jobs)
-                   .groupBy(jobSpec -> {
-                     String queueKey = jobSpec.getQueueKey();
-                     if (queueKey != null) {
-                       return queueKey;
-                     } else {
-                       return jobSpec.getId();
-                     }
-                   })
-                   .map(byQueueKey ->
-                     Stream.of(byQueueKey.getValue()).sorted((j1, j2) -> Long.compare(j1.getCreateTime(), j2.getCreateTime()))
-                           .findFirst()
-                           .orElse(null)
-                   )
-                   .withoutNulls()
-                   .filter(j -> {
-                     List<DependencySpec> dependencies = dependenciesByJobId.get(j.getId());
-                     return dependencies == null || dependencies.isEmpty();
-                   })
-                   .filterNot(JobSpec::isRunning)
-                   .filter(j -> j.getNextRunAttemptTime() <= currentTime)
-                   .sorted((j1, j2) -> Long.compare(j1.getCreateTime(), j2.getCreateTime()))
-                   .toList();
+      List<JobSpec> pending = Stream.of(jobs)
+                                    .groupBy(jobSpec -> {
+                                      String queueKey = jobSpec.getQueueKey();
+                                      if (queueKey != null) {
+                                        return queueKey;
+                                      } else {
+                                        return jobSpec.getId();
+                                      }
+                                    })
+                                    .map(byQueueKey ->
+                                      Stream.of(byQueueKey.getValue()).sorted((j1, j2) -> Long.compare(j1.getCreateTime(), j2.getCreateTime()))
+                                            .findFirst()
+                                            .orElse(null)
+                                    )
+                                    .withoutNulls()
+                                    .filter(j -> {
+                                      List<DependencySpec> dependencies = dependenciesByJobId.get(j.getId());
+                                      return dependencies == null || dependencies.isEmpty();
+                                    })
+                                    .filterNot(JobSpec::isRunning)
+                                    .filter(j -> j.getNextRunAttemptTime() <= currentTime)
+                                    .sorted((j1, j2) -> Long.compare(j1.getCreateTime(), j2.getCreateTime()))
+                                    .toList();
+
+      return loadData(pending, true);
     }
   }
 
@@ -211,7 +213,7 @@ public class FastJobStorage implements JobStorage {
   }
 
   @Override
-  public synchronized void updateJobAfterRetry(@NonNull String id, boolean isRunning, int runAttempt, long nextRunAttemptTime, @NonNull String serializedData) {
+  public synchronized void updateJobAfterRetry(@NonNull String id, boolean isRunning, int runAttempt, long nextRunAttemptTime, @NonNull byte[] serializedData) {
     JobSpec job = getJobById(id);
     if (job == null || !job.isMemoryOnly()) {
       jobDatabase.updateJobAfterRetry(id, isRunning, runAttempt, nextRunAttemptTime, serializedData);
@@ -230,7 +232,7 @@ public class FastJobStorage implements JobStorage {
                                       runAttempt,
                                       existing.getMaxAttempts(),
                                       existing.getLifespan(),
-                                      serializedData,
+                                      existing.isDataLoaded() ? serializedData : null,
                                       existing.getSerializedInputData(),
                                       isRunning,
                                       existing.isMemoryOnly());
@@ -384,6 +386,65 @@ public class FastJobStorage implements JobStorage {
                  .toList();
   }
 
+  /**
+   * Jobs are read without their data at startup, since most of them won't run for a while, so the
+   * data is read here in one go for just the jobs that are about to be used.
+   *
+   * @param keep Whether to keep the data in memory, which is only worth it for jobs that are about to
+   *             run.
+   */
+  private @NonNull List<JobSpec> loadData(@NonNull List<JobSpec> jobSpecs, boolean keep) {
+    List<String> unloaded = new ArrayList<>();
+
+    for (JobSpec jobSpec : jobSpecs) {
+      if (!jobSpec.isDataLoaded()) {
+        unloaded.add(jobSpec.getId());
+      }
+    }
+
+    if (unloaded.isEmpty()) {
+      return jobSpecs;
+    }
+
+    Map<String, JobSpec> stored = new HashMap<>();
+
+    for (JobSpec jobSpec : jobDatabase.getJobSpecs(unloaded)) {
+      if (jobSpec.isDataLoaded()) {
+        stored.put(jobSpec.getId(), jobSpec);
+      }
+    }
+
+    List<JobSpec>        loaded = new ArrayList<>(jobSpecs.size());
+    Map<String, JobSpec> byId   = new HashMap<>();
+
+    for (JobSpec jobSpec : jobSpecs) {
+      JobSpec storedSpec = stored.get(jobSpec.getId());
+
+      if (storedSpec != null && !jobSpec.isDataLoaded()) {
+        jobSpec = jobSpec.withSerializedData(storedSpec.getSerializedData(), storedSpec.getSerializedInputData());
+        byId.put(jobSpec.getId(), jobSpec);
+      } else if (!jobSpec.isDataLoaded()) {
+        Log.w(TAG, "Couldn't find the data for JOB::" + jobSpec.getId());
+      }
+
+      loaded.add(jobSpec);
+    }
+
+    if (keep) {
+      ListIterator<JobSpec> iter = jobs.listIterator();
+
+      while (iter.hasNext()) {
+        JobSpec update = byId.get(iter.next().getId());
+
+        if (update != null) {
+          iter.set(update);
+        }
+      }
+    }
+
+    return loaded;
+  }
+
   private JobSpec getJobById(@NonNull String id) {
     for (JobSpec job : jobs) {
       if (job.getId().equals(id)) {
@@ -0,0 +1,108 @@
+package org.thoughtcrime.securesms.jobs;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.attachments.Attachment;
+import org.thoughtcrime.securesms.attachments.AttachmentId;
+import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
+import org.thoughtcrime.securesms.audio.AudioWaveForm;
+import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
+import org.thoughtcrime.securesms.jobmanager.Data;
+import org.thoughtcrime.securesms.jobmanager.Job;
+import org.thoughtcrime.securesms.util.MediaUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the wave form for an audio attachment as soon as its data is available, rather than
+ * the first time it's shown. Decoding a voice note takes a while, and scrolling back through a
+ * conversation with a lot of them would otherwise kick off a decode for each one.
+ */
+public final class GenerateAudioWaveFormJob extends BaseJob {
+
+  public static final String KEY = "GenerateAudioWaveFormJob";
+
+  private static final String TAG = Log.tag(GenerateAudioWaveFormJob.class);
+
+  private static final String KEY_PART_ROW_ID    = "part_row_id";
+  private static final String KEY_PART_UNIQUE_ID = "part_unique_id";
+
+  private final AttachmentId attachmentId;
+
+  /**
+   * Enqueues wave form generation if the attachment is audio and wave forms are supported.
+   */
+  public static void enqueueIfAudio(@NonNull AttachmentId attachmentId, @NonNull Attachment attachment) {
+    if (Build.VERSION.SDK_INT >= 23 && MediaUtil.isAudio(attachment)) {
+      ApplicationDependencies.getJobManager().add(new GenerateAudioWaveFormJob(attachmentId));
+    }
+  }
+
+  private GenerateAudioWaveFormJob(@NonNull AttachmentId attachmentId) {
+    this(new Job.Parameters.Builder()
+                           .setQueue(KEY)
+                           .setLifespan(TimeUnit.DAYS.toMillis(1))
+                           .setMaxAttempts(1)
+                           .build(),
+         attachmentId);
+  }
+
+  private GenerateAudioWaveFormJob(@NonNull Job.Parameters parameters, @NonNull AttachmentId attachmentId) {
+    super(parameters);
+    this.attachmentId = attachmentId;
+  }
+
+  @Override
+  public @NonNull Data serialize() {
+    return new Data.Builder().putLong(KEY_PART_ROW_ID, attachmentId.getRowId())
+                             .putLong(KEY_PART_UNIQUE_ID, attachmentId.getUniqueId())
+                             .build();
+  }
+
+  @Override
+  public @NonNull String getFactoryKey() {
+    return KEY;
+  }
+
+  @Override
+  protected void onRun() throws Exception {
+    if (Build.VERSION.SDK_INT < 23) {
+      return;
+    }
+
+    DatabaseAttachment attachment = DatabaseFactory.getAttachmentDatabase(context).getAttachment(attachmentId);
+
+    if (attachment == null) {
+      Log.w(TAG, "Attachment no longer exists. " + attachmentId);
+      return;
+    }
+
+    if (!attachment.hasData()) {
+      Log.w(TAG, "Attachment has no data. " + attachmentId);
+      return;
+    }
+
+    AudioWaveForm.precompute(context, attachment);
+  }
+
+  @Override
+  protected boolean onShouldRetry(@NonNull Exception e) {
+    return false;
+  }
+
+  @Override
+  public void onFailure() {
+    Log.w(TAG, "Failed to generate wave form for " + attachmentId);
+  }
+
+  public static final class Factory implements Job.Factory<GenerateAudioWaveFormJob> {
+    @Override
+    public @NonNull GenerateAudioWaveFormJob create(@NonNull Parameters parameters, @NonNull Data data) {
+      return new GenerateAudioWaveFormJob(parameters, new AttachmentId(data.getLong(KEY_PART_ROW_ID), data.getLong(KEY_PART_UNIQUE_ID)));
+    }
+  }
+}
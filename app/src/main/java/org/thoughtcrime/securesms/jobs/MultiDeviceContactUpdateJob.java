@@ -4,7 +4,6 @@ import android.Manifest;
 import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.net.Uri;
-import android.os.ParcelFileDescriptor;
 import android.provider.ContactsContract;
 
 import androidx.annotation.NonNull;
@@ -23,7 +22,6 @@ import org.thoughtcrime.securesms.jobmanager.impl.NetworkConstraint;
 import org.thoughtcrime.securesms.keyvalue.SignalStore;
 import org.thoughtcrime.securesms.permissions.Permissions;
 import org.thoughtcrime.securesms.profiles.AvatarHelper;
-import org.thoughtcrime.securesms.providers.BlobProvider;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.recipients.RecipientUtil;
@@ -45,9 +43,12 @@ import org.whispersystems.signalservice.api.push.exceptions.ServerRejectedExcept
 import org.whispersystems.signalservice.api.util.InvalidNumberException;
 
 import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,14 +60,17 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
 
   private static final String TAG = Log.tag(MultiDeviceContactUpdateJob.class);
 
-  private static final long FULL_SYNC_TIME = TimeUnit.HOURS.toMillis(6);
+  private static final long FULL_SYNC_TIME     = TimeUnit.HOURS.toMillis(6);
+  private static final long COMPLETE_SYNC_TIME = TimeUnit.DAYS.toMillis(7);
 
-  private static final String KEY_RECIPIENT  = "recipient";
-  private static final String KEY_FORCE_SYNC = "force_sync";
+  private static final String KEY_RECIPIENT      = "recipient";
+  private static final String KEY_FORCE_SYNC     = "force_sync";
+  private static final String KEY_FORCE_COMPLETE = "force_complete";
 
   private @Nullable RecipientId recipientId;
 
   private boolean forceSync;
+  private boolean forceComplete;
 
   public MultiDeviceContactUpdateJob() {
     this(false);
@@ -81,6 +85,18 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
   }
 
   public MultiDeviceContactUpdateJob(@Nullable RecipientId recipientId, boolean forceSync) {
+    this(recipientId, forceSync, false);
+  }
+
+  /**
+   * Syncs every contact, rather than just the ones that changed since the last sync. For when a
+   * linked device asks for our contacts, since it may not have seen the earlier syncs.
+   */
+  public static @NonNull MultiDeviceContactUpdateJob forCompleteSync() {
+    return new MultiDeviceContactUpdateJob(null, true, true);
+  }
+
+  private MultiDeviceContactUpdateJob(@Nullable RecipientId recipientId, boolean forceSync, boolean forceComplete) {
     this(new Job.Parameters.Builder()
                            .addConstraint(NetworkConstraint.KEY)
                            .setQueue("MultiDeviceContactUpdateJob")
@@ -88,20 +104,23 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
                            .setMaxAttempts(Parameters.UNLIMITED)
                            .build(),
          recipientId,
-         forceSync);
+         forceSync,
+         forceComplete);
   }
 
-  private MultiDeviceContactUpdateJob(@NonNull Job.Parameters parameters, @Nullable RecipientId recipientId, boolean forceSync) {
+  private MultiDeviceContactUpdateJob(@NonNull Job.Parameters parameters, @Nullable RecipientId recipientId, boolean forceSync, boolean forceComplete) {
     super(parameters);
 
-    this.recipientId = recipientId;
-    this.forceSync   = forceSync;
+    this.recipientId   = recipientId;
+    this.forceSync     = forceSync;
+    this.forceComplete = forceComplete;
   }
 
   @Override
   public @NonNull Data serialize() {
     return new Data.Builder().putString(KEY_RECIPIENT, recipientId != null ? recipientId.serialize() : null)
                              .putBoolean(KEY_FORCE_SYNC, forceSync)
+                             .putBoolean(KEY_FORCE_COMPLETE, forceComplete)
                              .build();
   }
 
@@ -126,44 +145,42 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
   private void generateSingleContactUpdate(@NonNull RecipientId recipientId)
       throws IOException, UntrustedIdentityException, NetworkException
   {
-    WriteDetails writeDetails = createTempFile();
-
     try {
-      DeviceContactsOutputStream                out             = new DeviceContactsOutputStream(writeDetails.outputStream);
       Recipient                                 recipient       = Recipient.resolved(recipientId);
       Optional<IdentityDatabase.IdentityRecord> identityRecord  = DatabaseFactory.getIdentityDatabase(context).getIdentity(recipient.getId());
       Optional<VerifiedMessage>                 verifiedMessage = getVerifiedMessage(recipient, identityRecord);
       Map<RecipientId, Integer>                 inboxPositions  = DatabaseFactory.getThreadDatabase(context).getInboxPositions();
       Set<RecipientId>                          archived        = DatabaseFactory.getThreadDatabase(context).getArchivedRecipients();
-
-      out.write(new DeviceContact(RecipientUtil.toSignalServiceAddress(context, recipient),
-                                  Optional.fromNullable(recipient.isGroup() || recipient.isSystemContact() ? recipient.getDisplayName(context) : null),
-                                  getAvatar(recipient.getId(), recipient.getContactUri()),
-                                  Optional.fromNullable(recipient.getColor().serialize()),
-                                  verifiedMessage,
-                                  ProfileKeyUtil.profileKeyOptional(recipient.getProfileKey()),
-                                  recipient.isBlocked(),
-                                  recipient.getExpireMessages() > 0 ? Optional.of(recipient.getExpireMessages())
-                                                                    : Optional.absent(),
-                                  Optional.fromNullable(inboxPositions.get(recipientId)),
-                                  archived.contains(recipientId)));
-
-      out.close();
-
-      long length = BlobProvider.getInstance().calculateFileSize(context, writeDetails.uri);
-
-      sendUpdate(ApplicationDependencies.getSignalServiceMessageSender(),
-                 BlobProvider.getInstance().getStream(context, writeDetails.uri),
-                 length,
-                 false);
-
+      Optional<ContactAvatar>                   avatar          = getAvatar(recipient.getId(), recipient.getContactUri());
+      ContactSyncPayload                        payload         = new ContactSyncPayload();
+
+      DeviceContact contact = new DeviceContact(RecipientUtil.toSignalServiceAddress(context, recipient),
+                                                Optional.fromNullable(recipient.isGroup() || recipient.isSystemContact() ? recipient.getDisplayName(context) : null),
+                                                getAttachment(avatar),
+                                                Optional.fromNullable(recipient.getColor().serialize()),
+                                                verifiedMessage,
+                                                ProfileKeyUtil.profileKeyOptional(recipient.getProfileKey()),
+                                                recipient.isBlocked(),
+                                                recipient.getExpireMessages() > 0 ? Optional.of(recipient.getExpireMessages())
+                                                                                  : Optional.absent(),
+                                                Optional.fromNullable(inboxPositions.get(recipientId)),
+                                                archived.contains(recipientId));
+
+      payload.add(DeviceContactsOutputStream.serializeContactDetails(contact), contact.getAvatar().orNull());
+
+      sendUpdate(ApplicationDependencies.getSignalServiceMessageSender(), payload, false);
     } catch(InvalidNumberException e) {
       Log.w(TAG, e);
-    } finally {
-      BlobProvider.getInstance().delete(context, writeDetails.uri);
     }
   }
 
+  /**
+   * Sends every contact that has changed since the last sync as a partial update, or every contact
+   * as a complete one if a linked device asked for them, we don't know what was sent last time, or
+   * it's been {@link #COMPLETE_SYNC_TIME} since the last complete sync. Whether a contact changed is
+   * decided by a fingerprint of exactly what would be sent for it, avatar included, so an avatar is
+   * only uploaded again if it or its contact actually changed.
+   */
   private void generateFullContactUpdate()
       throws IOException, UntrustedIdentityException, NetworkException
   {
@@ -181,10 +198,16 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     TextSecurePreferences.setLastFullContactSyncTime(context, System.currentTimeMillis());
     TextSecurePreferences.setNeedsFullContactSync(context, false);
 
-    WriteDetails writeDetails = createTempFile();
+    long               now                   = System.currentTimeMillis();
+    ContactSyncState   previousState         = ContactSyncState.deserialize(SignalStore.misc().getContactSyncState());
+    long               timeSinceCompleteSync = now - previousState.getLastCompleteSyncTime();
+    boolean            complete              = forceComplete || previousState.isEmpty() || timeSinceCompleteSync < 0 || timeSinceCompleteSync >= COMPLETE_SYNC_TIME;
+    ContactSyncState   state                 = new ContactSyncState(complete ? now : previousState.getLastCompleteSyncTime());
+    ContactSyncPayload payload               = new ContactSyncPayload();
+
+    Log.d(TAG, "complete = " + complete + ", forceComplete = " + forceComplete + ", timeSinceCompleteSync = " + timeSinceCompleteSync + " ms");
 
     try {
-      DeviceContactsOutputStream out            = new DeviceContactsOutputStream(writeDetails.outputStream);
       List<Recipient>            recipients     = DatabaseFactory.getRecipientDatabase(context).getRecipientsForMultiDeviceSync();
       Map<RecipientId, Integer>  inboxPositions = DatabaseFactory.getThreadDatabase(context).getInboxPositions();
       Set<RecipientId>           archived       = DatabaseFactory.getThreadDatabase(context).getArchivedRecipients();
@@ -198,17 +221,19 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
         boolean                                   blocked       = recipient.isBlocked();
         Optional<Integer>                         expireTimer   = recipient.getExpireMessages() > 0 ? Optional.of(recipient.getExpireMessages()) : Optional.absent();
         Optional<Integer>                         inboxPosition = Optional.fromNullable(inboxPositions.get(recipient.getId()));
-
-        out.write(new DeviceContact(RecipientUtil.toSignalServiceAddress(context, recipient),
-                                    name,
-                                    getAvatar(recipient.getId(), recipient.getContactUri()),
-                                    color,
-                                    verified,
-                                    profileKey,
-                                    blocked,
-                                    expireTimer,
-                                    inboxPosition,
-                                    archived.contains(recipient.getId())));
+        Optional<ContactAvatar>                   avatar        = getAvatar(recipient.getId(), recipient.getContactUri());
+
+        addContact(payload, state, previousState, complete, recipient.getId(), avatar,
+                   new DeviceContact(RecipientUtil.toSignalServiceAddress(context, recipient),
+                                     name,
+                                     getAttachment(avatar),
+                                     color,
+                                     verified,
+                                     profileKey,
+                                     blocked,
+                                     expireTimer,
+                                     inboxPosition,
+                                     archived.contains(recipient.getId())));
       }
 
 
@@ -216,31 +241,61 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
       byte[]    profileKey = self.getProfileKey();
 
       if (profileKey != null) {
-        out.write(new DeviceContact(RecipientUtil.toSignalServiceAddress(context, self),
-                                    Optional.absent(),
-                                    Optional.absent(),
-                                    Optional.of(self.getColor().serialize()),
-                                    Optional.absent(),
-                                    ProfileKeyUtil.profileKeyOptionalOrThrow(self.getProfileKey()),
-                                    false,
-                                    self.getExpireMessages() > 0 ? Optional.of(self.getExpireMessages()) : Optional.absent(),
-                                    Optional.fromNullable(inboxPositions.get(self.getId())),
-                                    archived.contains(self.getId())));
+        addContact(payload, state, previousState, complete, self.getId(), Optional.absent(),
+                   new DeviceContact(RecipientUtil.toSignalServiceAddress(context, self),
+                                     Optional.absent(),
+                                     Optional.absent(),
+                                     Optional.of(self.getColor().serialize()),
+                                     Optional.absent(),
+                                     ProfileKeyUtil.profileKeyOptionalOrThrow(self.getProfileKey()),
+                                     false,
+                                     self.getExpireMessages() > 0 ? Optional.of(self.getExpireMessages()) : Optional.absent(),
+                                     Optional.fromNullable(inboxPositions.get(self.getId())),
+                                     archived.contains(self.getId())));
       }
+    } catch(InvalidNumberException e) {
+      Log.w(TAG, e);
+      return;
+    }
 
-      out.close();
+    if (payload.isEmpty()) {
+      Log.i(TAG, "No contacts have changed since the last sync.");
+    } else {
+      Log.i(TAG, "Syncing " + payload.size() + " contact(s), " + payload.getLength() + " bytes. complete = " + complete);
+      sendUpdate(ApplicationDependencies.getSignalServiceMessageSender(), payload, complete);
+    }
 
-      long length = BlobProvider.getInstance().calculateFileSize(context, writeDetails.uri);
+    SignalStore.misc().setContactSyncState(state.serialize());
+  }
 
-      sendUpdate(ApplicationDependencies.getSignalServiceMessageSender(),
-                 BlobProvider.getInstance().getStream(context, writeDetails.uri),
-                 length,
-                 true);
-    } catch(InvalidNumberException e) {
-      Log.w(TAG, e);
-    } finally {
-      BlobProvider.getInstance().delete(context, writeDetails.uri);
+  /**
+   * Records the contact's fingerprint, and adds it to the payload if this is a complete sync or it
+   * has changed since the last one.
+   */
+  private void addContact(@NonNull ContactSyncPayload payload,
+                          @NonNull ContactSyncState state,
+                          @NonNull ContactSyncState previousState,
+                          boolean complete,
+                          @NonNull RecipientId recipientId,
+                          @NonNull Optional<ContactAvatar> avatar,
+                          @NonNull DeviceContact contact)
+      throws IOException
+  {
+    byte[] details = DeviceContactsOutputStream.serializeContactDetails(contact);
+
+    try {
+      long fingerprint = ContactSyncState.fingerprint(details, avatar.isPresent() ? avatar.get().getFingerprint() : null);
+
+      state.put(recipientId, fingerprint);
+
+      if (!complete && previousState.matches(recipientId, fingerprint)) {
+        return;
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to fingerprint avatar. Sending the contact and leaving it unrecorded.", e);
     }
+
+    payload.add(details, contact.getAvatar().orNull());
   }
 
   @Override
@@ -255,15 +310,15 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
 
   }
 
-  private void sendUpdate(SignalServiceMessageSender messageSender, InputStream stream, long length, boolean complete)
+  private void sendUpdate(SignalServiceMessageSender messageSender, ContactSyncPayload payload, boolean complete)
       throws UntrustedIdentityException, NetworkException
   {
-    if (length > 0) {
+    if (!payload.isEmpty()) {
       try {
         SignalServiceAttachmentStream.Builder attachmentStream = SignalServiceAttachment.newStreamBuilder()
-                                                                                        .withStream(stream)
+                                                                                        .withStream(payload.createInputStream())
                                                                                         .withContentType("application/octet-stream")
-                                                                                        .withLength(length)
+                                                                                        .withLength(payload.getLength())
                                                                                         .withResumableUploadSpec(messageSender.getResumableUploadSpec());
 
         messageSender.sendMessage(SignalServiceSyncMessage.forContacts(new ContactsMessage(attachmentStream.build(), complete)),
@@ -276,45 +331,42 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     }
   }
 
-  private Optional<SignalServiceAttachmentStream> getAvatar(@NonNull RecipientId recipientId, @Nullable Uri uri) {
-    Optional<SignalServiceAttachmentStream> stream;
+  private Optional<ContactAvatar> getAvatar(@NonNull RecipientId recipientId, @Nullable Uri uri) {
+    Optional<ContactAvatar> avatar;
 
     if (SignalStore.settings().isPreferSystemContactPhotos()) {
-      stream = getSystemAvatar(uri);
+      avatar = getSystemAvatar(uri);
 
-      if (!stream.isPresent()) {
-        stream = getProfileAvatar(recipientId);
+      if (!avatar.isPresent()) {
+        avatar = getProfileAvatar(recipientId);
       }
     } else {
-      stream = getProfileAvatar(recipientId);
+      avatar = getProfileAvatar(recipientId);
 
-      if (!stream.isPresent()) {
-        stream = getSystemAvatar(uri);
+      if (!avatar.isPresent()) {
+        avatar = getSystemAvatar(uri);
       }
     }
 
-    return stream;
+    return avatar;
   }
 
-  private Optional<SignalServiceAttachmentStream> getProfileAvatar(@NonNull RecipientId recipientId) {
+  private static Optional<SignalServiceAttachmentStream> getAttachment(@NonNull Optional<ContactAvatar> avatar) {
+    return avatar.isPresent() ? Optional.of(avatar.get().createAttachment()) : Optional.absent();
+  }
+
+  private Optional<ContactAvatar> getProfileAvatar(@NonNull RecipientId recipientId) {
     if (AvatarHelper.hasAvatar(context, recipientId)) {
-      try {
-        long length = AvatarHelper.getAvatarLength(context, recipientId);
-        return Optional.of(SignalServiceAttachmentStream.newStreamBuilder()
-                                                        .withStream(AvatarHelper.getAvatar(context, recipientId))
-                                                        .withContentType("image/*")
-                                                        .withLength(length)
-                                                        .build());
-      } catch (IOException e) {
-        Log.w(TAG, "Failed to read profile avatar!", e);
-        return Optional.absent();
-      }
+      long   length       = AvatarHelper.getAvatarLength(context, recipientId);
+      byte[] lastModified = ByteBuffer.allocate(8).putLong(AvatarHelper.getLastModified(context, recipientId)).array();
+
+      return Optional.of(new ContactAvatar(() -> AvatarHelper.getAvatar(context, recipientId), length, lastModified));
     }
 
     return Optional.absent();
   }
 
-  private Optional<SignalServiceAttachmentStream> getSystemAvatar(@Nullable Uri uri) {
+  private Optional<ContactAvatar> getSystemAvatar(@Nullable Uri uri) {
     if (uri == null) {
       return Optional.absent();
     }
@@ -332,11 +384,12 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
         return Optional.absent();
       }
 
-      return Optional.of(SignalServiceAttachment.newStreamBuilder()
-                                                .withStream(fd.createInputStream())
-                                                .withContentType("image/*")
-                                                .withLength(fd.getLength())
-                                                .build());
+      long length = fd.getLength();
+      fd.close();
+
+      if (length > 0) {
+        return Optional.of(new ContactAvatar(() -> openSystemAvatar(displayPhotoUri), length, null));
+      }
     } catch (IOException e) {
       // Ignored
     }
@@ -357,12 +410,8 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
       if (cursor != null && cursor.moveToNext()) {
         byte[] data = cursor.getBlob(0);
 
-        if (data != null) {
-          return Optional.of(SignalServiceAttachment.newStreamBuilder()
-                                                    .withStream(new ByteArrayInputStream(data))
-                                                    .withContentType("image/*")
-                                                    .withLength(data.length)
-                                                    .build());
+        if (data != null && data.length > 0) {
+          return Optional.of(new ContactAvatar(() -> new ByteArrayInputStream(data), data.length, null));
         }
       }
 
@@ -374,6 +423,16 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     }
   }
 
+  private @NonNull InputStream openSystemAvatar(@NonNull Uri uri) throws IOException {
+    AssetFileDescriptor fd = context.getContentResolver().openAssetFileDescriptor(uri, "r");
+
+    if (fd == null) {
+      throw new FileNotFoundException("No avatar at " + uri);
+    }
+
+    return fd.createInputStream();
+  }
+
   private Optional<VerifiedMessage> getVerifiedMessage(Recipient recipient, Optional<IdentityDatabase.IdentityRecord> identity) throws InvalidNumberException {
     if (!identity.isPresent()) return Optional.absent();
 
@@ -392,19 +451,6 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     return Optional.of(new VerifiedMessage(destination, identityKey, state, System.currentTimeMillis()));
   }
 
-  private @NonNull WriteDetails createTempFile() throws IOException {
-    ParcelFileDescriptor[] pipe        = ParcelFileDescriptor.createPipe();
-    InputStream            inputStream = new ParcelFileDescriptor.AutoCloseInputStream(pipe[0]);
-    Uri                    uri         = BlobProvider.getInstance()
-                                                     .forData(inputStream, 0)
-                                                     .withFileName("multidevice-contact-update")
-                                                     .createForSingleSessionOnDiskAsync(context,
-                                                                                        () -> Log.i(TAG, "Write successful."),
-                                                                                        e  -> Log.w(TAG, "Error during write.", e));
-
-    return new WriteDetails(uri, new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]));
-  }
-
   private static class NetworkException extends Exception {
 
     public NetworkException(Exception ioe) {
@@ -412,13 +458,50 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     }
   }
 
-  private static class WriteDetails {
-    private final Uri          uri;
-    private final OutputStream outputStream;
+  /**
+   * An avatar that isn't opened until it's actually sent.
+   */
+  private static final class ContactAvatar {
+    private final ContactSyncPayload.Opener opener;
+    private final long                      length;
+    private final byte[]                    version;
+
+    /**
+     * @param version Changes whenever the avatar does, if there's a cheaper way to tell than hashing
+     *                its contents.
+     */
+    private ContactAvatar(@NonNull ContactSyncPayload.Opener opener, long length, @Nullable byte[] version) {
+      this.opener  = opener;
+      this.length  = length;
+      this.version = version;
+    }
+
+    @NonNull SignalServiceAttachmentStream createAttachment() {
+      return SignalServiceAttachment.newStreamBuilder()
+                                    .withStream(ContactSyncPayload.openLazily(opener))
+                                    .withContentType("image/*")
+                                    .withLength(length)
+                                    .build();
+    }
 
-    private WriteDetails(@NonNull Uri uri, @NonNull OutputStream outputStream) {
-      this.uri          = uri;
-      this.outputStream = outputStream;
+    @NonNull byte[] getFingerprint() throws IOException {
+      if (version != null) {
+        return version;
+      }
+
+      try (InputStream in = opener.open()) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[]        buffer = new byte[8192];
+        int           read;
+
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+        }
+
+        return digest.digest();
+      } catch (NoSuchAlgorithmException e) {
+        throw new AssertionError(e);
+      }
     }
   }
 
@@ -428,7 +511,7 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
       String      serialized = data.getString(KEY_RECIPIENT);
       RecipientId address    = serialized != null ? RecipientId.from(serialized) : null;
 
-      return new MultiDeviceContactUpdateJob(parameters, address, data.getBoolean(KEY_FORCE_SYNC));
+      return new MultiDeviceContactUpdateJob(parameters, address, data.getBoolean(KEY_FORCE_SYNC), data.getBooleanOrDefault(KEY_FORCE_COMPLETE, false));
     }
   }
 }
@@ -103,7 +103,7 @@ public final class PushDecryptMessageJob extends BaseJob {
 
   @Override
   public @NonNull Data serialize() {
-    return new Data.Builder().putBlobAsString(KEY_ENVELOPE, envelope.serialize())
+    return new Data.Builder().putBlob(KEY_ENVELOPE, envelope.serialize())
                              .putLong(KEY_SMS_MESSAGE_ID, smsMessageId)
                              .build();
   }
@@ -168,7 +168,7 @@ public final class PushDecryptMessageJob extends BaseJob {
     @Override
     public @NonNull PushDecryptMessageJob create(@NonNull Parameters parameters, @NonNull Data data) {
       return new PushDecryptMessageJob(parameters,
-                                       SignalServiceEnvelope.deserialize(data.getStringAsBlob(KEY_ENVELOPE)),
+                                       SignalServiceEnvelope.deserialize(data.getBlob(KEY_ENVELOPE)),
                                        data.getLong(KEY_SMS_MESSAGE_ID));
     }
   }
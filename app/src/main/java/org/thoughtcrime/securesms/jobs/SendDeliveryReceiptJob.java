@@ -22,23 +22,25 @@ import org.whispersystems.signalservice.api.push.exceptions.ServerRejectedExcept
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class SendDeliveryReceiptJob extends BaseJob {
 
   public static final String KEY = "SendDeliveryReceiptJob";
 
-  private static final String KEY_RECIPIENT  = "recipient";
-  private static final String KEY_MESSAGE_ID = "message_id";
-  private static final String KEY_TIMESTAMP  = "timestamp";
+  private static final String KEY_RECIPIENT   = "recipient";
+  private static final String KEY_MESSAGE_ID  = "message_id";
+  private static final String KEY_MESSAGE_IDS = "message_ids";
+  private static final String KEY_TIMESTAMP   = "timestamp";
 
-  private static final String TAG = Log.tag(SendReadReceiptJob.class);
+  private static final String TAG = Log.tag(SendDeliveryReceiptJob.class);
 
   private RecipientId recipientId;
-  private long        messageId;
+  private List<Long>  messageIds;
   private long        timestamp;
 
-  public SendDeliveryReceiptJob(@NonNull RecipientId recipientId, long messageId) {
+  public SendDeliveryReceiptJob(@NonNull RecipientId recipientId, @NonNull List<Long> messageIds) {
     this(new Job.Parameters.Builder()
                            .addConstraint(NetworkConstraint.KEY)
                            .setLifespan(TimeUnit.DAYS.toMillis(1))
@@ -46,26 +48,26 @@ public class SendDeliveryReceiptJob extends BaseJob {
                            .setQueue(recipientId.toQueueKey())
                            .build(),
          recipientId,
-         messageId,
+         SendReadReceiptJob.ensureSize(messageIds, SendReadReceiptJob.MAX_TIMESTAMPS),
          System.currentTimeMillis());
   }
 
   private SendDeliveryReceiptJob(@NonNull Job.Parameters parameters,
                                  @NonNull RecipientId recipientId,
-                                 long messageId,
+                                 @NonNull List<Long> messageIds,
                                  long timestamp)
   {
     super(parameters);
 
     this.recipientId = recipientId;
-    this.messageId   = messageId;
+    this.messageIds  = messageIds;
     this.timestamp   = timestamp;
   }
 
   @Override
   public @NonNull Data serialize() {
     return new Data.Builder().putString(KEY_RECIPIENT, recipientId.serialize())
-                             .putLong(KEY_MESSAGE_ID, messageId)
+                             .putLongListAsArray(KEY_MESSAGE_IDS, messageIds)
                              .putLong(KEY_TIMESTAMP, timestamp)
                              .build();
   }
@@ -81,7 +83,7 @@ public class SendDeliveryReceiptJob extends BaseJob {
     Recipient                   recipient      = Recipient.resolved(recipientId);
     SignalServiceAddress        remoteAddress  = RecipientUtil.toSignalServiceAddress(context, recipient);
     SignalServiceReceiptMessage receiptMessage = new SignalServiceReceiptMessage(SignalServiceReceiptMessage.Type.DELIVERY,
-                                                                                 Collections.singletonList(messageId),
+                                                                                 messageIds,
                                                                                  timestamp);
 
     messageSender.sendReceipt(remoteAddress,
@@ -98,15 +100,18 @@ public class SendDeliveryReceiptJob extends BaseJob {
 
   @Override
   public void onFailure() {
-    Log.w(TAG, "Failed to send delivery receipt to: " + recipientId);
+    Log.w(TAG, "Failed to send delivery receipts to: " + recipientId);
   }
 
   public static final class Factory implements Job.Factory<SendDeliveryReceiptJob> {
     @Override
     public @NonNull SendDeliveryReceiptJob create(@NonNull Parameters parameters, @NonNull Data data) {
+      List<Long> messageIds = data.hasLongArray(KEY_MESSAGE_IDS) ? data.getLongArrayAsList(KEY_MESSAGE_IDS)
+                                                                 : Collections.singletonList(data.getLong(KEY_MESSAGE_ID));
+
       return new SendDeliveryReceiptJob(parameters,
                                         RecipientId.from(data.getString(KEY_RECIPIENT)),
-                                        data.getLong(KEY_MESSAGE_ID),
+                                        messageIds,
                                         data.getLong(KEY_TIMESTAMP));
     }
   }
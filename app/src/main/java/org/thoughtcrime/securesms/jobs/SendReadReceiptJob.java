@@ -10,14 +10,12 @@ import org.thoughtcrime.securesms.crypto.UnidentifiedAccessUtil;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobmanager.Data;
 import org.thoughtcrime.securesms.jobmanager.Job;
-import org.thoughtcrime.securesms.jobmanager.JobManager;
 import org.thoughtcrime.securesms.jobmanager.impl.NetworkConstraint;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.recipients.RecipientUtil;
 import org.thoughtcrime.securesms.transport.UndeliverableMessageException;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
-import org.thoughtcrime.securesms.util.Util;
 import org.whispersystems.signalservice.api.SignalServiceMessageSender;
 import org.whispersystems.signalservice.api.crypto.UntrustedIdentityException;
 import org.whispersystems.signalservice.api.messages.SignalServiceReceiptMessage;
@@ -36,7 +34,7 @@ public class SendReadReceiptJob extends BaseJob {
 
   private static final String TAG = Log.tag(SendReadReceiptJob.class);
 
-  static final int MAX_TIMESTAMPS = 500;
+  public static final int MAX_TIMESTAMPS = 500;
 
   private static final String KEY_THREAD      = "thread";
   private static final String KEY_ADDRESS     = "address";
@@ -76,23 +74,6 @@ public class SendReadReceiptJob extends BaseJob {
     this.timestamp   = timestamp;
   }
 
-  /**
-   * Enqueues all the necessary jobs for read receipts, ensuring that they're all within the
-   * maximum size.
-   */
-  public static void enqueue(long threadId, @NonNull RecipientId recipientId, List<Long> messageIds) {
-    JobManager       jobManager      = ApplicationDependencies.getJobManager();
-    List<List<Long>> messageIdChunks = Util.chunk(messageIds, MAX_TIMESTAMPS);
-
-    if (messageIdChunks.size() > 1) {
-      Log.w(TAG, "Large receipt count! Had to break into multiple chunks. Total count: " + messageIds.size());
-    }
-
-    for (List<Long> chunk : messageIdChunks) {
-      jobManager.add(new SendReadReceiptJob(threadId, recipientId, chunk));
-    }
-  }
-
   @Override
   public @NonNull Data serialize() {
     long[] ids = new long[messageIds.size()];
@@ -1,6 +1,7 @@
 package org.thoughtcrime.securesms.keyvalue;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Collections;
 import java.util.List;
@@ -14,6 +15,7 @@ public final class MiscellaneousValues extends SignalStoreValues {
   private static final String USERNAME_SHOW_REMINDER          = "username.show.reminder";
   private static final String CLIENT_DEPRECATED               = "misc.client_deprecated";
   private static final String OLD_DEVICE_TRANSFER_LOCKED      = "misc.old_device.transfer.locked";
+  private static final String CONTACT_SYNC_STATE              = "misc.contact_sync_state";
 
   MiscellaneousValues(@NonNull KeyValueStore store) {
     super(store);
@@ -88,4 +90,12 @@ public final class MiscellaneousValues extends SignalStoreValues {
   public void clearOldDeviceTransferLocked() {
     putBoolean(OLD_DEVICE_TRANSFER_LOCKED, false);
   }
+
+  public @Nullable byte[] getContactSyncState() {
+    return getBlob(CONTACT_SYNC_STATE, null);
+  }
+
+  public void setContactSyncState(@Nullable byte[] state) {
+    putBlob(CONTACT_SYNC_STATE, state);
+  }
 }
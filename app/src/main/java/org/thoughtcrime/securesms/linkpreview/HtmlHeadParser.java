@@ -0,0 +1,350 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thoughtcrime.securesms.linkpreview.LinkPreviewUtil.HtmlDecoder;
+import org.thoughtcrime.securesms.linkpreview.LinkPreviewUtil.OpenGraph;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pulls the fields we use for link previews out of a page in a single pass over its characters,
+ * without holding the page in memory. Reading stops at the first {@code </head>}, since everything
+ * we look for lives in the head, or once {@code maxChars} characters have been read.
+ *
+ * This is deliberately forgiving rather than a real HTML tokenizer. It understands just enough to
+ * find meta, link and title tags, and to skip over comments, scripts and styles so that markup
+ * inside of them isn't mistaken for the real thing.
+ */
+final class HtmlHeadParser {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final String OPEN_GRAPH_PREFIX = "og:";
+  private static final String ARTICLE_PREFIX    = "article:";
+
+  private final Reader      reader;
+  private final long        maxChars;
+  private final HtmlDecoder htmlDecoder;
+  private final char[]      buffer = new char[BUFFER_SIZE];
+
+  private final Map<String, String> openGraphTags = new HashMap<>();
+  private final Map<String, String> articleTags   = new HashMap<>();
+
+  private int    position;
+  private int    limit;
+  private long   charsRead;
+  private int    pushback = -1;
+  private String htmlTitle;
+  private String faviconUrl;
+
+  private HtmlHeadParser(@NonNull Reader reader, long maxChars, @NonNull HtmlDecoder htmlDecoder) {
+    this.reader      = reader;
+    this.maxChars    = maxChars;
+    this.htmlDecoder = htmlDecoder;
+  }
+
+  static @NonNull OpenGraph parse(@NonNull Reader reader, long maxChars, @NonNull HtmlDecoder htmlDecoder) throws IOException {
+    return new HtmlHeadParser(reader, maxChars, htmlDecoder).parse();
+  }
+
+  private @NonNull OpenGraph parse() throws IOException {
+    int c;
+
+    while ((c = read()) != -1) {
+      if (c != '<') {
+        continue;
+      }
+
+      c = read();
+
+      if (c == '!') {
+        skipDeclaration();
+      } else if (c == '?') {
+        skipPast('>');
+      } else if (c == '/') {
+        c = read();
+
+        String name = readName(Character.isWhitespace(c) ? skipWhitespace() : c);
+        skipPast('>');
+
+        if (name.equals("head")) {
+          break;
+        }
+      } else {
+        if (c != -1 && Character.isWhitespace(c)) {
+          c = skipWhitespace();
+        }
+
+        if (!isNameStart(c)) {
+          unread(c);
+          continue;
+        }
+
+        String              name       = readName(c);
+        Map<String, String> attributes = readAttributes();
+
+        switch (name) {
+          case "meta":   onMeta(attributes);            break;
+          case "link":   onLink(attributes);            break;
+          case "title":  onTitle();                     break;
+          case "script":
+          case "style":  readUntilEndTag(name, null);   break;
+        }
+      }
+    }
+
+    Map<String, String> values = new HashMap<>(openGraphTags);
+    values.putAll(articleTags);
+
+    return new OpenGraph(values,
+                         htmlTitle != null ? htmlTitle : "",
+                         faviconUrl != null ? faviconUrl : "");
+  }
+
+  private void onMeta(@NonNull Map<String, String> attributes) {
+    String property = attributes.get("property");
+    String content  = attributes.get("content");
+
+    if (property == null || content == null) {
+      return;
+    }
+
+    property = property.trim();
+
+    if (startsWithIgnoreCase(property, OPEN_GRAPH_PREFIX) && property.length() > OPEN_GRAPH_PREFIX.length()) {
+      openGraphTags.put(property.substring(OPEN_GRAPH_PREFIX.length()).toLowerCase(), htmlDecoder.fromEncoded(content));
+    } else if (startsWithIgnoreCase(property, ARTICLE_PREFIX) && property.length() > ARTICLE_PREFIX.length()) {
+      articleTags.put(property.substring(ARTICLE_PREFIX.length()).toLowerCase(), htmlDecoder.fromEncoded(content));
+    }
+  }
+
+  private void onLink(@NonNull Map<String, String> attributes) {
+    if (faviconUrl != null) {
+      return;
+    }
+
+    String rel  = attributes.get("rel");
+    String href = attributes.get("href");
+
+    if (rel != null && href != null && rel.toLowerCase().contains("icon")) {
+      faviconUrl = href.trim();
+    }
+  }
+
+  private void onTitle() throws IOException {
+    if (htmlTitle != null) {
+      readUntilEndTag("title", null);
+      return;
+    }
+
+    StringBuilder title = new StringBuilder();
+    readUntilEndTag("title", title);
+
+    htmlTitle = htmlDecoder.fromEncoded(title.toString().trim());
+  }
+
+  /**
+   * Reads the attributes of the tag that's currently open, up to and including the closing '>'.
+   * Names are lowercased. Values may be double quoted, single quoted or unquoted. If an attribute
+   * appears more than once, the first value wins.
+   */
+  private @NonNull Map<String, String> readAttributes() throws IOException {
+    Map<String, String> attributes = new HashMap<>();
+
+    while (true) {
+      int c = skipWhitespace();
+
+      if (c == -1 || c == '>') {
+        return attributes;
+      } else if (c == '<') {
+        unread(c);
+        return attributes;
+      } else if (c == '/') {
+        continue;
+      }
+
+      StringBuilder name = new StringBuilder();
+      while (c != -1 && c != '=' && c != '>' && c != '<' && c != '/' && !Character.isWhitespace(c)) {
+        name.append(Character.toLowerCase((char) c));
+        c = read();
+      }
+
+      if (Character.isWhitespace(c)) {
+        c = skipWhitespace();
+      }
+
+      String value = "";
+
+      if (c == '=') {
+        value = readAttributeValue();
+      } else {
+        unread(c);
+      }
+
+      String key = name.toString();
+      if (!attributes.containsKey(key)) {
+        attributes.put(key, value);
+      }
+    }
+  }
+
+  private @NonNull String readAttributeValue() throws IOException {
+    StringBuilder value = new StringBuilder();
+    int           c     = skipWhitespace();
+
+    if (c == '"' || c == '\'') {
+      int quote = c;
+
+      while ((c = read()) != -1 && c != quote) {
+        value.append((char) c);
+      }
+    } else {
+      while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+        value.append((char) c);
+        c = read();
+      }
+
+      unread(c);
+    }
+
+    return value.toString();
+  }
+
+  /**
+   * Consumes everything up to and including the end tag with the provided (lowercase) name,
+   * appending the raw text in between to {@code text} if it's provided. Used for elements whose
+   * contents aren't markup, like titles and scripts.
+   */
+  private void readUntilEndTag(@NonNull String name, @Nullable StringBuilder text) throws IOException {
+    int c;
+
+    while ((c = read()) != -1) {
+      if (c != '<') {
+        if (text != null) text.append((char) c);
+        continue;
+      }
+
+      StringBuilder candidate = new StringBuilder("<");
+
+      c = read();
+      if (c == '/') {
+        candidate.append('/');
+
+        int matched = 0;
+        while (matched < name.length() && (c = read()) != -1 && Character.toLowerCase((char) c) == name.charAt(matched)) {
+          candidate.append((char) c);
+          matched++;
+        }
+
+        if (matched == name.length()) {
+          c = read();
+
+          if (c == -1 || c == '>' || Character.isWhitespace(c)) {
+            if (c != '>') skipPast('>');
+            return;
+          }
+        }
+      }
+
+      unread(c);
+      if (text != null) text.append(candidate);
+    }
+  }
+
+  /**
+   * Skips a comment, doctype or other declaration. The leading "<!" has already been consumed.
+   */
+  private void skipDeclaration() throws IOException {
+    int c = read();
+
+    if (c != '-') {
+      unread(c);
+      skipPast('>');
+      return;
+    }
+
+    c = read();
+
+    if (c != '-') {
+      unread(c);
+      skipPast('>');
+      return;
+    }
+
+    int dashes = 0;
+
+    while ((c = read()) != -1) {
+      if (c == '>' && dashes >= 2) {
+        return;
+      }
+
+      dashes = c == '-' ? dashes + 1 : 0;
+    }
+  }
+
+  private void skipPast(char target) throws IOException {
+    int c;
+    while ((c = read()) != -1 && c != target) { }
+  }
+
+  private int skipWhitespace() throws IOException {
+    int c;
+    while ((c = read()) != -1 && Character.isWhitespace(c)) { }
+    return c;
+  }
+
+  private @NonNull String readName(int first) throws IOException {
+    StringBuilder name = new StringBuilder();
+    int           c    = first;
+
+    while (c != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == ':' || c == '_')) {
+      name.append(Character.toLowerCase((char) c));
+      c = read();
+    }
+
+    unread(c);
+    return name.toString();
+  }
+
+  private int read() throws IOException {
+    if (pushback != -1) {
+      int c = pushback;
+      pushback = -1;
+      return c;
+    }
+
+    if (position == limit) {
+      if (charsRead >= maxChars) {
+        return -1;
+      }
+
+      int count = reader.read(buffer, 0, (int) Math.min(buffer.length, maxChars - charsRead));
+      if (count <= 0) {
+        return -1;
+      }
+
+      position   = 0;
+      limit      = count;
+      charsRead += count;
+    }
+
+    return buffer[position++];
+  }
+
+  private void unread(int c) {
+    pushback = c;
+  }
+
+  private static boolean isNameStart(int c) {
+    return c != -1 && Character.isLetter(c);
+  }
+
+  private static boolean startsWithIgnoreCase(@NonNull String value, @NonNull String prefix) {
+    return value.regionMatches(true, 0, prefix, 0, prefix.length());
+  }
+}
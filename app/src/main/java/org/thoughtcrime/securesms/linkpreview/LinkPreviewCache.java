@@ -0,0 +1,204 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.util.Consumer;
+
+import org.thoughtcrime.securesms.net.RequestController;
+import org.thoughtcrime.securesms.util.LRUCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+
+/**
+ * A small, bounded cache of things fetched for link previews, keyed by normalized URL. Entries
+ * expire after a fixed time, so that an edited page will eventually be picked up again.
+ *
+ * Requests for a URL that's already being fetched join the outstanding fetch instead of starting
+ * their own. Canceling a request only cancels the underlying fetch once nobody else is waiting on
+ * it.
+ *
+ * Fetchers report failure with a null result. Failures are passed along but never cached, so that
+ * a flaky network doesn't stop a preview from showing up the next time it's requested.
+ */
+final class LinkPreviewCache<T> {
+
+  private final LRUCache<String, Entry<T>> entries;
+  private final Map<String, Pending<T>>    pending = new HashMap<>();
+  private final long                       ttl;
+  private final Clock                      clock;
+
+  LinkPreviewCache(int maxSize, long ttl) {
+    this(maxSize, ttl, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  LinkPreviewCache(int maxSize, long ttl, @NonNull Clock clock) {
+    this.entries = new LRUCache<>(maxSize);
+    this.ttl     = ttl;
+    this.clock   = clock;
+  }
+
+  /**
+   * Delivers the value for the URL to the callback, either straight from the cache on the calling
+   * thread, or from the fetcher's callback thread once it's been fetched.
+   */
+  @NonNull RequestController get(@NonNull String url, @NonNull Fetcher<T> fetcher, @NonNull Consumer<T> callback) {
+    String     key = normalize(url);
+    T          cached;
+    Pending<T> request;
+    boolean    start;
+
+    synchronized (this) {
+      cached = getCached(key);
+
+      if (cached != null) {
+        request = null;
+        start   = false;
+      } else {
+        request = pending.get(key);
+        start   = request == null;
+
+        if (start) {
+          request = new Pending<>();
+          pending.put(key, request);
+        }
+
+        request.callbacks.add(callback);
+      }
+    }
+
+    if (cached != null) {
+      callback.accept(cached);
+      return () -> {};
+    }
+
+    if (start) {
+      Pending<T>        fetch      = request;
+      RequestController controller = fetcher.fetch(result -> onFetched(key, fetch, result));
+      boolean           canceled;
+
+      synchronized (this) {
+        fetch.controller = controller;
+        canceled         = fetch.canceled;
+      }
+
+      if (canceled) {
+        controller.cancel();
+      }
+    }
+
+    Pending<T> joined = request;
+    return () -> cancel(key, joined, callback);
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  private @Nullable T getCached(@NonNull String key) {
+    Entry<T> entry = entries.get(key);
+
+    if (entry == null) {
+      return null;
+    } else if (entry.expiresAt <= clock.currentTimeMillis()) {
+      entries.remove(key);
+      return null;
+    } else {
+      return entry.value;
+    }
+  }
+
+  private void onFetched(@NonNull String key, @NonNull Pending<T> fetch, @Nullable T result) {
+    List<Consumer<T>> callbacks;
+
+    synchronized (this) {
+      if (pending.get(key) == fetch) {
+        pending.remove(key);
+      }
+
+      if (result != null && !fetch.canceled) {
+        entries.remove(key);
+        entries.put(key, new Entry<>(result, clock.currentTimeMillis() + ttl));
+      }
+
+      callbacks = new ArrayList<>(fetch.callbacks);
+      fetch.callbacks.clear();
+    }
+
+    for (Consumer<T> callback : callbacks) {
+      callback.accept(result);
+    }
+  }
+
+  private void cancel(@NonNull String key, @NonNull Pending<T> fetch, @NonNull Consumer<T> callback) {
+    RequestController controller;
+
+    synchronized (this) {
+      if (!fetch.callbacks.remove(callback) || !fetch.callbacks.isEmpty() || fetch.canceled) {
+        return;
+      }
+
+      if (pending.get(key) == fetch) {
+        pending.remove(key);
+      }
+
+      fetch.canceled = true;
+      controller     = fetch.controller;
+    }
+
+    if (controller != null) {
+      controller.cancel();
+    }
+  }
+
+  /**
+   * Scheme and host are lowercased, default ports are dropped, and so is the fragment, which never
+   * makes it to the server anyway. Anything that isn't a valid http(s) URL is used as-is.
+   */
+  @VisibleForTesting
+  static @NonNull String normalize(@NonNull String url) {
+    HttpUrl parsed = HttpUrl.parse(url.trim());
+
+    if (parsed == null) {
+      return url;
+    }
+
+    return parsed.newBuilder().fragment(null).build().toString();
+  }
+
+  interface Fetcher<T> {
+    /**
+     * Starts fetching, eventually passing the result to the callback, or null if it couldn't be
+     * fetched. The callback must be invoked exactly once, unless the returned controller is canceled.
+     */
+    @NonNull RequestController fetch(@NonNull Consumer<T> callback);
+  }
+
+  @VisibleForTesting
+  interface Clock {
+    long currentTimeMillis();
+  }
+
+  private static final class Entry<T> {
+    private final T    value;
+    private final long expiresAt;
+
+    private Entry(@NonNull T value, long expiresAt) {
+      this.value     = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final class Pending<T> {
+    private final List<Consumer<T>> callbacks = new ArrayList<>();
+
+    private RequestController controller;
+    private boolean           canceled;
+  }
+}
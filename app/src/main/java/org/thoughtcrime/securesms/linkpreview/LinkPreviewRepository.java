@@ -56,12 +56,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.CacheControl;
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 public class LinkPreviewRepository {
 
@@ -72,13 +74,19 @@ public class LinkPreviewRepository {
   private static final long FAILSAFE_MAX_TEXT_SIZE  = ByteUnit.MEGABYTES.toBytes(2);
   private static final long FAILSAFE_MAX_IMAGE_SIZE = ByteUnit.MEGABYTES.toBytes(2);
 
+  private static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(10);
+
+  private static final LinkPreviewCache<Metadata>  METADATA_CACHE  = new LinkPreviewCache<>(50, CACHE_TTL);
+  private static final LinkPreviewCache<Thumbnail> THUMBNAIL_CACHE = new LinkPreviewCache<>(10, CACHE_TTL);
+
   private final OkHttpClient client;
 
   public LinkPreviewRepository() {
-    this.client = new OkHttpClient.Builder()
-                                  .cache(null)
-                                  .addInterceptor(new UserAgentInterceptor("WhatsApp/2"))
-                                  .build();
+    this.client = ApplicationDependencies.getOkHttpClient()
+                                         .newBuilder()
+                                         .cache(null)
+                                         .addInterceptor(new UserAgentInterceptor("WhatsApp/2"))
+                                         .build();
   }
 
   @Nullable RequestController getLinkPreview(@NonNull Context context,
@@ -104,8 +112,8 @@ public class LinkPreviewRepository {
     } else if (GroupInviteLinkUrl.isGroupLink(url)) {
       metadataController = fetchGroupLinkPreview(context, url, callback);
     } else {
-      metadataController = fetchMetadata(url, metadata -> {
-        if (metadata.isEmpty()) {
+      metadataController = METADATA_CACHE.get(url, this::fetchMetadata, metadata -> {
+        if (metadata == null || metadata.isEmpty()) {
           callback.onError(Error.PREVIEW_NOT_AVAILABLE);
           return;
         }
@@ -115,7 +123,9 @@ public class LinkPreviewRepository {
           return;
         }
 
-        RequestController imageController = fetchThumbnail(metadata.getImageUrl().get(), attachment -> {
+        RequestController imageController = THUMBNAIL_CACHE.get(metadata.getImageUrl().get(), this::fetchThumbnail, thumbnail -> {
+          Optional<Attachment> attachment = thumbnail != null ? Optional.of(thumbnail.toAttachment()) : Optional.absent();
+
           if (!metadata.getTitle().isPresent() && !attachment.isPresent()) {
             callback.onError(Error.PREVIEW_NOT_AVAILABLE);
           } else {
@@ -131,64 +141,77 @@ public class LinkPreviewRepository {
     return compositeController;
   }
 
-  private @NonNull RequestController fetchMetadata(@NonNull String url, Consumer<Metadata> callback) {
+  /**
+   * Passes the page's metadata to the callback, or null if the page couldn't be fetched. Only the
+   * head of the page is read, after which the connection is closed.
+   */
+  private @NonNull RequestController fetchMetadata(@NonNull String url, @NonNull Consumer<Metadata> callback) {
     Call call = client.newCall(new Request.Builder().url(url).cacheControl(NO_CACHE).build());
 
     call.enqueue(new okhttp3.Callback() {
       @Override
       public void onFailure(@NonNull Call call, @NonNull IOException e) {
         Log.w(TAG, "Request failed.", e);
-        callback.accept(Metadata.empty());
+        callback.accept(null);
       }
 
       @Override
-      public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-        if (!response.isSuccessful()) {
-          Log.w(TAG, "Non-successful response. Code: " + response.code());
-          callback.accept(Metadata.empty());
-          return;
-        } else if (response.body() == null) {
-          Log.w(TAG, "No response body.");
-          callback.accept(Metadata.empty());
-          return;
-        }
-
-        String           body        = OkHttpUtil.readAsString(response.body(), FAILSAFE_MAX_TEXT_SIZE);
-        OpenGraph        openGraph   = LinkPreviewUtil.parseOpenGraphFields(body);
-        Optional<String> title       = openGraph.getTitle();
-        Optional<String> description = openGraph.getDescription();
-        Optional<String> imageUrl    = openGraph.getImageUrl();
-        long             date        = openGraph.getDate();
-
-        if (imageUrl.isPresent() && !LinkPreviewUtil.isValidPreviewUrl(imageUrl.get())) {
-          Log.i(TAG, "Image URL was invalid or for a non-whitelisted domain. Skipping.");
-          imageUrl = Optional.absent();
+      public void onResponse(@NonNull Call call, @NonNull Response response) {
+        try (ResponseBody body = response.body()) {
+          if (!response.isSuccessful()) {
+            Log.w(TAG, "Non-successful response. Code: " + response.code());
+            callback.accept(null);
+          } else if (body == null) {
+            Log.w(TAG, "No response body.");
+            callback.accept(null);
+          } else {
+            callback.accept(readMetadata(body));
+          }
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to read response.", e);
+          callback.accept(null);
         }
-
-        callback.accept(new Metadata(title, description, date, imageUrl));
       }
     });
 
     return new CallRequestController(call);
   }
 
-  private @NonNull RequestController fetchThumbnail(@NonNull String imageUrl, @NonNull Consumer<Optional<Attachment>> callback) {
+  private static @NonNull Metadata readMetadata(@NonNull ResponseBody body) throws IOException {
+    OpenGraph        openGraph   = LinkPreviewUtil.parseOpenGraphFields(body.charStream(), FAILSAFE_MAX_TEXT_SIZE);
+    Optional<String> title       = openGraph.getTitle();
+    Optional<String> description = openGraph.getDescription();
+    Optional<String> imageUrl    = openGraph.getImageUrl();
+    long             date        = openGraph.getDate();
+
+    if (imageUrl.isPresent() && !LinkPreviewUtil.isValidPreviewUrl(imageUrl.get())) {
+      Log.i(TAG, "Image URL was invalid or for a non-whitelisted domain. Skipping.");
+      imageUrl = Optional.absent();
+    }
+
+    return new Metadata(title, description, date, imageUrl);
+  }
+
+  /**
+   * Passes the compressed image to the callback, or null if it couldn't be fetched or decoded.
+   */
+  private @NonNull RequestController fetchThumbnail(@NonNull String imageUrl, @NonNull Consumer<Thumbnail> callback) {
     Call                  call       = client.newCall(new Request.Builder().url(imageUrl).build());
     CallRequestController controller = new CallRequestController(call);
 
     SignalExecutors.UNBOUNDED.execute(() -> {
-      try {
-        Response response = call.execute();
+      try (Response response = call.execute()) {
         if (!response.isSuccessful() || response.body() == null) {
+          callback.accept(null);
           return;
         }
 
         InputStream bodyStream = response.body().byteStream();
         controller.setStream(bodyStream);
 
-        byte[]               data      = OkHttpUtil.readAsBytes(bodyStream, FAILSAFE_MAX_IMAGE_SIZE);
-        Bitmap               bitmap    = BitmapFactory.decodeByteArray(data, 0, data.length);
-        Optional<Attachment> thumbnail = bitmapToAttachment(bitmap, Bitmap.CompressFormat.JPEG, MediaUtil.IMAGE_JPEG);
+        byte[]    data      = OkHttpUtil.readAsBytes(bodyStream, FAILSAFE_MAX_IMAGE_SIZE);
+        Bitmap    bitmap    = BitmapFactory.decodeByteArray(data, 0, data.length);
+        Thumbnail thumbnail = Thumbnail.fromBitmap(bitmap, Bitmap.CompressFormat.JPEG, MediaUtil.IMAGE_JPEG);
 
         if (bitmap != null) bitmap.recycle();
 
@@ -196,7 +219,7 @@ public class LinkPreviewRepository {
       } catch (IOException e) {
         Log.w(TAG, "Exception during link preview image retrieval.", e);
         controller.cancel();
-        callback.accept(Optional.absent());
+        callback.accept(null);
       }
     });
 
@@ -323,34 +346,63 @@ public class LinkPreviewRepository {
                                                          @NonNull Bitmap.CompressFormat format,
                                                          @NonNull String contentType)
   {
-    if (bitmap == null) {
-      return Optional.absent();
+    Thumbnail thumbnail = Thumbnail.fromBitmap(bitmap, format, contentType);
+    return thumbnail != null ? Optional.of(thumbnail.toAttachment()) : Optional.absent();
+  }
+
+  /**
+   * A compressed preview image. Cached rather than the attachment itself, since the attachment's
+   * blob only lives for a single session and each preview needs its own.
+   */
+  private static class Thumbnail {
+    private final byte[] data;
+    private final String contentType;
+    private final int    width;
+    private final int    height;
+
+    private Thumbnail(@NonNull byte[] data, @NonNull String contentType, int width, int height) {
+      this.data        = data;
+      this.contentType = contentType;
+      this.width       = width;
+      this.height      = height;
+    }
+
+    static @Nullable Thumbnail fromBitmap(@Nullable Bitmap bitmap,
+                                          @NonNull Bitmap.CompressFormat format,
+                                          @NonNull String contentType)
+    {
+      if (bitmap == null) {
+        return null;
+      }
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+      bitmap.compress(format, 80, baos);
+
+      return new Thumbnail(baos.toByteArray(), contentType, bitmap.getWidth(), bitmap.getHeight());
     }
 
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-    bitmap.compress(format, 80, baos);
-
-    byte[] bytes = baos.toByteArray();
-    Uri    uri   = BlobProvider.getInstance().forData(bytes).createForSingleSessionInMemory();
-
-    return Optional.of(new UriAttachment(uri,
-                                         contentType,
-                                         AttachmentDatabase.TRANSFER_PROGRESS_STARTED,
-                                         bytes.length,
-                                         bitmap.getWidth(),
-                                         bitmap.getHeight(),
-                                         null,
-                                         null,
-                                         false,
-                                         false,
-                                         false,
-                                         false,
-                                         null,
-                                         null,
-                                         null,
-                                         null,
-                                         null));
+    @NonNull Attachment toAttachment() {
+      Uri uri = BlobProvider.getInstance().forData(data).createForSingleSessionInMemory();
+
+      return new UriAttachment(uri,
+                               contentType,
+                               AttachmentDatabase.TRANSFER_PROGRESS_STARTED,
+                               data.length,
+                               width,
+                               height,
+                               null,
+                               null,
+                               false,
+                               false,
+                               false,
+                               false,
+                               null,
+                               null,
+                               null,
+                               null,
+                               null);
+    }
   }
 
   private static class Metadata {
@@ -366,10 +418,6 @@ public class LinkPreviewRepository {
       this.imageUrl    = imageUrl;
     }
 
-    static Metadata empty() {
-      return new Metadata(Optional.absent(), Optional.absent(), 0, Optional.absent());
-    }
-
     Optional<String> getTitle() {
       return title;
     }
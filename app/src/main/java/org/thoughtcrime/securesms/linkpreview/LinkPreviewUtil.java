@@ -22,8 +22,10 @@ import org.thoughtcrime.securesms.util.Util;
 import org.whispersystems.libsignal.util.guava.Optional;
 import org.whispersystems.signalservice.api.util.OptionalUtil;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,15 +38,9 @@ public final class LinkPreviewUtil {
 
   private static final String TAG = Log.tag(LinkPreviewUtil.class);
 
-  private static final Pattern DOMAIN_PATTERN             = Pattern.compile("^(https?://)?([^/]+).*$");
-  private static final Pattern ALL_ASCII_PATTERN          = Pattern.compile("^[\\x00-\\x7F]*$");
-  private static final Pattern ALL_NON_ASCII_PATTERN      = Pattern.compile("^[^\\x00-\\x7F]*$");
-  private static final Pattern OPEN_GRAPH_TAG_PATTERN     = Pattern.compile("<\\s*meta[^>]*property\\s*=\\s*\"\\s*og:([^\"]+)\"[^>]*/?\\s*>");
-  private static final Pattern ARTICLE_TAG_PATTERN        = Pattern.compile("<\\s*meta[^>]*property\\s*=\\s*\"\\s*article:([^\"]+)\"[^>]*/?\\s*>");
-  private static final Pattern OPEN_GRAPH_CONTENT_PATTERN = Pattern.compile("content\\s*=\\s*\"([^\"]*)\"");
-  private static final Pattern TITLE_PATTERN              = Pattern.compile("<\\s*title[^>]*>(.*)<\\s*/title[^>]*>");
-  private static final Pattern FAVICON_PATTERN            = Pattern.compile("<\\s*link[^>]*rel\\s*=\\s*\".*icon.*\"[^>]*>");
-  private static final Pattern FAVICON_HREF_PATTERN       = Pattern.compile("href\\s*=\\s*\"([^\"]*)\"");
+  private static final Pattern DOMAIN_PATTERN        = Pattern.compile("^(https?://)?([^/]+).*$");
+  private static final Pattern ALL_ASCII_PATTERN     = Pattern.compile("^[\\x00-\\x7F]*$");
+  private static final Pattern ALL_NON_ASCII_PATTERN = Pattern.compile("^[^\\x00-\\x7F]*$");
 
   private static final Set<String> INVALID_TOP_LEVEL_DOMAINS = SetUtil.newHashSet("onion", "i2p");
 
@@ -108,54 +104,19 @@ public final class LinkPreviewUtil {
       return new OpenGraph(Collections.emptyMap(), null, null);
     }
 
-    Map<String, String> openGraphTags    = new HashMap<>();
-    Matcher             openGraphMatcher = OPEN_GRAPH_TAG_PATTERN.matcher(html);
-
-    while (openGraphMatcher.find()) {
-      String tag      = openGraphMatcher.group();
-      String property = openGraphMatcher.groupCount() > 0 ? openGraphMatcher.group(1) : null;
-
-      if (property != null) {
-        Matcher contentMatcher = OPEN_GRAPH_CONTENT_PATTERN.matcher(tag);
-        if (contentMatcher.find() && contentMatcher.groupCount() > 0) {
-          String content = htmlDecoder.fromEncoded(contentMatcher.group(1));
-          openGraphTags.put(property.toLowerCase(), content);
-        }
-      }
-    }
-
-    Matcher articleMatcher = ARTICLE_TAG_PATTERN.matcher(html);
-
-    while (articleMatcher.find()) {
-      String tag      = articleMatcher.group();
-      String property = articleMatcher.groupCount() > 0 ? articleMatcher.group(1) : null;
-
-      if (property != null) {
-        Matcher contentMatcher = OPEN_GRAPH_CONTENT_PATTERN.matcher(tag);
-        if (contentMatcher.find() && contentMatcher.groupCount() > 0) {
-          String content = htmlDecoder.fromEncoded(contentMatcher.group(1));
-          openGraphTags.put(property.toLowerCase(), content);
-        }
-      }
-    }
-
-    String htmlTitle  = "";
-    String faviconUrl = "";
-
-    Matcher titleMatcher = TITLE_PATTERN.matcher(html);
-    if (titleMatcher.find() && titleMatcher.groupCount() > 0) {
-      htmlTitle = htmlDecoder.fromEncoded(titleMatcher.group(1));
-    }
-
-    Matcher faviconMatcher = FAVICON_PATTERN.matcher(html);
-    if (faviconMatcher.find()) {
-      Matcher faviconHrefMatcher = FAVICON_HREF_PATTERN.matcher(faviconMatcher.group());
-      if (faviconHrefMatcher.find() && faviconHrefMatcher.groupCount() > 0) {
-        faviconUrl = faviconHrefMatcher.group(1);
-      }
+    try {
+      return HtmlHeadParser.parse(new StringReader(html), html.length(), htmlDecoder);
+    } catch (IOException e) {
+      throw new AssertionError(e);
     }
+  }
 
-    return new OpenGraph(openGraphTags, htmlTitle, faviconUrl);
+  /**
+   * Parses the fields we need from the head of a page as it's read, stopping at the end of the head
+   * or after {@code maxChars} characters, whichever comes first.
+   */
+  public static @NonNull OpenGraph parseOpenGraphFields(@NonNull Reader html, long maxChars) throws IOException {
+    return HtmlHeadParser.parse(html, maxChars, text -> Html.fromHtml(text).toString());
   }
 
   private static @Nullable String parseTopLevelDomain(@NonNull String domain) {
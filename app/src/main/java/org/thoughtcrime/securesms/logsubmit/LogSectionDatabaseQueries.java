@@ -0,0 +1,20 @@
+package org.thoughtcrime.securesms.logsubmit;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import org.thoughtcrime.securesms.database.QueryProfiler;
+
+public class LogSectionDatabaseQueries implements LogSection {
+
+  @Override
+  public @NonNull String getTitle() {
+    return "DATABASE QUERIES";
+  }
+
+  @Override
+  public @NonNull CharSequence getContent(@NonNull Context context) {
+    return QueryProfiler.getInstance().getDebugInfo();
+  }
+}
@@ -0,0 +1,51 @@
+package org.thoughtcrime.securesms.logsubmit;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
+import org.thoughtcrime.securesms.util.TextSecurePreferences;
+import org.whispersystems.signalservice.internal.push.http.ConnectionMetrics;
+
+import java.util.Map;
+
+/**
+ * Per-endpoint latency and connection reuse for each of the service sockets.
+ */
+public final class LogSectionNetwork implements LogSection {
+
+  @Override
+  public @NonNull String getTitle() {
+    return "NETWORK";
+  }
+
+  @Override
+  public @NonNull CharSequence getContent(@NonNull Context context) {
+    if (!TextSecurePreferences.isPushRegistered(context)) {
+      return "Unregistered";
+    }
+
+    StringBuilder builder = new StringBuilder();
+
+    append(builder, "Account manager", ApplicationDependencies.getSignalServiceAccountManager().getConnectionMetrics());
+    append(builder, "Message sender", ApplicationDependencies.getSignalServiceMessageSender().getConnectionMetrics());
+    append(builder, "Message receiver", ApplicationDependencies.getSignalServiceMessageReceiver().getConnectionMetrics());
+
+    return builder;
+  }
+
+  private static void append(@NonNull StringBuilder builder, @NonNull String title, @NonNull Map<String, ConnectionMetrics.Snapshot> metrics) {
+    builder.append("-- ").append(title).append("\n");
+
+    if (metrics.isEmpty()) {
+      builder.append("None").append("\n");
+    }
+
+    for (Map.Entry<String, ConnectionMetrics.Snapshot> entry : metrics.entrySet()) {
+      builder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+    }
+
+    builder.append("\n");
+  }
+}
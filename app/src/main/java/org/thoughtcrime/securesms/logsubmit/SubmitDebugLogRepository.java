@@ -64,6 +64,8 @@ public class SubmitDebugLogRepository {
     add(new LogSectionNotifications());
     add(new LogSectionKeyPreferences());
     add(new LogSectionPermissions());
+    add(new LogSectionNetwork());
+    add(new LogSectionDatabaseQueries());
     add(new LogSectionTrace());
     add(new LogSectionThreads());
     add(new LogSectionBlockedThreads());
@@ -244,6 +244,10 @@ public class IncomingMessageObserver {
                 try (Processor processor = ApplicationDependencies.getIncomingMessageProcessor().acquire()) {
                   processor.processEnvelope(envelope);
                 }
+
+                // The envelope is acknowledged as soon as this returns, so any receipts it produced
+                // have to be handed off rather than left waiting in the aggregator.
+                ApplicationDependencies.getReceiptAggregator().flush();
               });
 
               if (!result.isPresent() && !networkDrained) {
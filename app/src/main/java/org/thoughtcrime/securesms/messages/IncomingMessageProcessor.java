@@ -12,7 +12,6 @@ import org.thoughtcrime.securesms.crypto.IdentityKeyUtil;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.GroupDatabase;
 import org.thoughtcrime.securesms.database.MessageDatabase.SyncMessageId;
-import org.thoughtcrime.securesms.database.MmsSmsDatabase;
 import org.thoughtcrime.securesms.database.PushDatabase;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.groups.BadGroupIdException;
@@ -70,12 +69,10 @@ public class IncomingMessageProcessor {
   public class Processor implements Closeable {
 
     private final Context           context;
-    private final MmsSmsDatabase    mmsSmsDatabase;
     private final JobManager        jobManager;
 
     private Processor(@NonNull Context context) {
       this.context           = context;
-      this.mmsSmsDatabase    = DatabaseFactory.getMmsSmsDatabase(context);
       this.jobManager        = ApplicationDependencies.getJobManager();
     }
 
@@ -167,8 +164,7 @@ public class IncomingMessageProcessor {
 
     private void processReceipt(@NonNull SignalServiceEnvelope envelope) {
       Log.i(TAG, "Received server receipt for " + envelope.getTimestamp());
-      mmsSmsDatabase.incrementDeliveryReceiptCount(new SyncMessageId(Recipient.externalHighTrustPush(context, envelope.getSourceAddress()).getId(), envelope.getTimestamp()),
-                                                   System.currentTimeMillis());
+      ApplicationDependencies.getReceiptAggregator().addIncomingDeliveryReceipt(new SyncMessageId(Recipient.externalHighTrustPush(context, envelope.getSourceAddress()).getId(), envelope.getTimestamp()));
     }
 
     private boolean needsToEnqueueDecryption() {
@@ -71,7 +71,6 @@ import org.thoughtcrime.securesms.jobs.RefreshAttributesJob;
 import org.thoughtcrime.securesms.jobs.RefreshOwnProfileJob;
 import org.thoughtcrime.securesms.jobs.RequestGroupInfoJob;
 import org.thoughtcrime.securesms.jobs.RetrieveProfileJob;
-import org.thoughtcrime.securesms.jobs.SendDeliveryReceiptJob;
 import org.thoughtcrime.securesms.jobs.StickerPackDownloadJob;
 import org.thoughtcrime.securesms.jobs.TrimThreadJob;
 import org.thoughtcrime.securesms.keyvalue.SignalStore;
@@ -991,7 +990,7 @@ public final class MessageContentProcessor {
   private void handleSynchronizeRequestMessage(@NonNull RequestMessage message)
   {
     if (message.isContactsRequest()) {
-      ApplicationDependencies.getJobManager().add(new MultiDeviceContactUpdateJob(true));
+      ApplicationDependencies.getJobManager().add(MultiDeviceContactUpdateJob.forCompleteSync());
     }
 
     if (message.isGroupsRequest()) {
@@ -1521,7 +1520,7 @@ public final class MessageContentProcessor {
   private void handleNeedsDeliveryReceipt(@NonNull SignalServiceContent content,
                                           @NonNull SignalServiceDataMessage message)
   {
-    ApplicationDependencies.getJobManager().add(new SendDeliveryReceiptJob(RecipientId.fromHighTrust(content.getSender()), message.getTimestamp()));
+    ApplicationDependencies.getReceiptAggregator().addDeliveryReceipt(RecipientId.fromHighTrust(content.getSender()), message.getTimestamp());
   }
 
   private void handleViewedReceipt(@NonNull SignalServiceContent content,
@@ -0,0 +1,305 @@
+package org.thoughtcrime.securesms.messages;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import org.signal.core.util.logging.Log;
+import org.signal.core.util.tracing.Tracer;
+import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.database.MessageDatabase.SyncMessageId;
+import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
+import org.thoughtcrime.securesms.jobmanager.Job;
+import org.thoughtcrime.securesms.jobs.SendDeliveryReceiptJob;
+import org.thoughtcrime.securesms.jobs.SendReadReceiptJob;
+import org.thoughtcrime.securesms.jobs.SendViewedReceiptJob;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+import org.thoughtcrime.securesms.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces receipts over a short window, so that a burst of messages results in a handful of
+ * multi-timestamp receipts and database transactions rather than one of each per message.
+ *
+ * Outgoing receipts are grouped by type, thread and recipient and sent as a single receipt message
+ * per group. Incoming server delivery receipts are applied in bulk, which results in one
+ * transaction and one update per affected thread for the whole batch.
+ *
+ * Receipts are held in memory for up to {@link #WINDOW_MS} before they're handed off, so anything
+ * that needs them handed off sooner (like finishing a background fetch) should call {@link #flush()}.
+ */
+public final class ReceiptAggregator {
+
+  private static final String TAG = Log.tag(ReceiptAggregator.class);
+
+  private static final long WINDOW_MS          = 500;
+  private static final int  MAX_INCOMING_BATCH = 500;
+
+  enum Type {
+    DELIVERY, READ, VIEWED
+  }
+
+  private final Sink                        sink;
+  private final ScheduledExecutorService    executor;
+  private final long                        windowMs;
+  private final Map<OutgoingKey, Set<Long>> outgoing;
+  private final List<SyncMessageId>         incoming;
+
+  private long    incomingTimestamp;
+  private boolean flushScheduled;
+
+  private long outgoingReceiptCount;
+  private long outgoingMessageCount;
+  private long incomingReceiptCount;
+  private long incomingBatchCount;
+
+  public ReceiptAggregator(@NonNull Context context) {
+    this(new ApplicationSink(context.getApplicationContext()),
+         Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "signal-receipts")),
+         WINDOW_MS);
+  }
+
+  @VisibleForTesting
+  ReceiptAggregator(@NonNull Sink sink, @NonNull ScheduledExecutorService executor, long windowMs) {
+    this.sink     = sink;
+    this.executor = executor;
+    this.windowMs = windowMs;
+    this.outgoing = new LinkedHashMap<>();
+    this.incoming = new ArrayList<>();
+  }
+
+  public void addDeliveryReceipt(@NonNull RecipientId recipientId, long sentTimestamp) {
+    addOutgoing(new OutgoingKey(Type.DELIVERY, -1, recipientId), Collections.singletonList(sentTimestamp));
+  }
+
+  public void addReadReceipts(long threadId, @NonNull RecipientId recipientId, @NonNull List<Long> sentTimestamps) {
+    addOutgoing(new OutgoingKey(Type.READ, threadId, recipientId), sentTimestamps);
+  }
+
+  public void addViewedReceipt(long threadId, @NonNull RecipientId recipientId, long sentTimestamp) {
+    addOutgoing(new OutgoingKey(Type.VIEWED, threadId, recipientId), Collections.singletonList(sentTimestamp));
+  }
+
+  /**
+   * Queues a delivery receipt from the server to be applied with the rest of the batch. The batch
+   * is recorded as received at the time its first receipt arrived.
+   */
+  public void addIncomingDeliveryReceipt(@NonNull SyncMessageId syncMessageId) {
+    List<SyncMessageId> full = null;
+    long                fullTimestamp;
+
+    synchronized (this) {
+      if (incoming.isEmpty()) {
+        incomingTimestamp = System.currentTimeMillis();
+      }
+
+      incoming.add(syncMessageId);
+      incomingReceiptCount++;
+
+      fullTimestamp = incomingTimestamp;
+
+      if (incoming.size() >= MAX_INCOMING_BATCH) {
+        full = new ArrayList<>(incoming);
+        incoming.clear();
+        incomingBatchCount++;
+      } else {
+        scheduleFlush();
+      }
+    }
+
+    if (full != null) {
+      sink.applyDeliveryReceipts(full, fullTimestamp);
+    }
+  }
+
+  /**
+   * Hands off everything that's currently buffered, rather than waiting for the window to close.
+   */
+  public void flush() {
+    Map<OutgoingKey, List<List<Long>>> outgoingBatch = new LinkedHashMap<>();
+    List<SyncMessageId>                incomingBatch;
+    long                               incomingBatchTimestamp;
+
+    synchronized (this) {
+      flushScheduled = false;
+
+      if (outgoing.isEmpty() && incoming.isEmpty()) {
+        return;
+      }
+
+      for (Map.Entry<OutgoingKey, Set<Long>> entry : outgoing.entrySet()) {
+        outgoingBatch.put(entry.getKey(), chunk(entry.getValue()));
+      }
+
+      incomingBatch          = new ArrayList<>(incoming);
+      incomingBatchTimestamp = incomingTimestamp;
+
+      outgoing.clear();
+      incoming.clear();
+
+      if (!incomingBatch.isEmpty()) {
+        incomingBatchCount++;
+      }
+    }
+
+    for (Map.Entry<OutgoingKey, List<List<Long>>> entry : outgoingBatch.entrySet()) {
+      send(entry.getKey(), entry.getValue());
+    }
+
+    if (!incomingBatch.isEmpty()) {
+      sink.applyDeliveryReceipts(incomingBatch, incomingBatchTimestamp);
+    }
+
+    Log.d(TAG, "Flushed. Outgoing coalescing ratio: " + getOutgoingCoalescingRatio() + ", incoming coalescing ratio: " + getIncomingCoalescingRatio());
+  }
+
+  /**
+   * @return The average number of outgoing receipts that were sent in each receipt message.
+   */
+  public synchronized float getOutgoingCoalescingRatio() {
+    return outgoingMessageCount > 0 ? (float) outgoingReceiptCount / outgoingMessageCount : 0;
+  }
+
+  /**
+   * @return The average number of incoming receipts that were applied in each transaction.
+   */
+  public synchronized float getIncomingCoalescingRatio() {
+    return incomingBatchCount > 0 ? (float) incomingReceiptCount / incomingBatchCount : 0;
+  }
+
+  private void addOutgoing(@NonNull OutgoingKey key, @NonNull Collection<Long> sentTimestamps) {
+    if (sentTimestamps.isEmpty()) {
+      return;
+    }
+
+    List<List<Long>> full = null;
+
+    synchronized (this) {
+      Set<Long> pending = outgoing.get(key);
+
+      if (pending == null) {
+        pending = new LinkedHashSet<>();
+        outgoing.put(key, pending);
+      }
+
+      pending.addAll(sentTimestamps);
+      outgoingReceiptCount += sentTimestamps.size();
+
+      if (pending.size() >= SendReadReceiptJob.MAX_TIMESTAMPS) {
+        full = chunk(pending);
+        outgoing.remove(key);
+      } else {
+        scheduleFlush();
+      }
+    }
+
+    if (full != null) {
+      send(key, full);
+    }
+  }
+
+  private void send(@NonNull OutgoingKey key, @NonNull List<List<Long>> chunks) {
+    for (List<Long> chunk : chunks) {
+      sink.sendReceipts(key.type, key.threadId, key.recipientId, chunk);
+    }
+  }
+
+  /**
+   * Must be called while holding the lock, since it counts the resulting messages.
+   */
+  private @NonNull List<List<Long>> chunk(@NonNull Set<Long> sentTimestamps) {
+    List<List<Long>> chunks = Util.chunk(new ArrayList<>(sentTimestamps), SendReadReceiptJob.MAX_TIMESTAMPS);
+
+    outgoingMessageCount += chunks.size();
+
+    return chunks;
+  }
+
+  private void scheduleFlush() {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      executor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  interface Sink {
+    void sendReceipts(@NonNull Type type, long threadId, @NonNull RecipientId recipientId, @NonNull List<Long> sentTimestamps);
+
+    void applyDeliveryReceipts(@NonNull List<SyncMessageId> syncMessageIds, long timestamp);
+  }
+
+  private static final class ApplicationSink implements Sink {
+
+    private static final String OUTGOING_COUNTER = "Receipts per outgoing message";
+    private static final String INCOMING_COUNTER = "Receipts per incoming batch";
+
+    private final Context context;
+
+    private ApplicationSink(@NonNull Context context) {
+      this.context = context;
+    }
+
+    @Override
+    public void sendReceipts(@NonNull Type type, long threadId, @NonNull RecipientId recipientId, @NonNull List<Long> sentTimestamps) {
+      Job job;
+
+      switch (type) {
+        case DELIVERY: job = new SendDeliveryReceiptJob(recipientId, sentTimestamps);         break;
+        case READ:     job = new SendReadReceiptJob(threadId, recipientId, sentTimestamps);   break;
+        case VIEWED:   job = new SendViewedReceiptJob(threadId, recipientId, sentTimestamps); break;
+        default:       throw new AssertionError();
+      }
+
+      Tracer.getInstance().counter(OUTGOING_COUNTER, sentTimestamps.size());
+      ApplicationDependencies.getJobManager().add(job);
+    }
+
+    @WorkerThread
+    @Override
+    public void applyDeliveryReceipts(@NonNull List<SyncMessageId> syncMessageIds, long timestamp) {
+      Tracer.getInstance().counter(INCOMING_COUNTER, syncMessageIds.size());
+      DatabaseFactory.getMmsSmsDatabase(context).incrementDeliveryReceiptCounts(syncMessageIds, timestamp);
+    }
+  }
+
+  private static final class OutgoingKey {
+    private final Type        type;
+    private final long        threadId;
+    private final RecipientId recipientId;
+
+    private OutgoingKey(@NonNull Type type, long threadId, @NonNull RecipientId recipientId) {
+      this.type        = type;
+      this.threadId    = threadId;
+      this.recipientId = recipientId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      OutgoingKey that = (OutgoingKey) o;
+      return threadId == that.threadId &&
+             type == that.type &&
+             recipientId.equals(that.recipientId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, threadId, recipientId);
+    }
+  }
+}
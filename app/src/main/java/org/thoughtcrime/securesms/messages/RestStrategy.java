@@ -12,6 +12,7 @@ import org.thoughtcrime.securesms.jobs.PushDecryptMessageJob;
 import org.thoughtcrime.securesms.jobs.PushProcessMessageJob;
 import org.whispersystems.libsignal.util.guava.Optional;
 import org.whispersystems.signalservice.api.SignalServiceMessageReceiver;
+import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
 
 import java.io.IOException;
 import java.util.Iterator;
@@ -71,6 +72,7 @@ public class RestStrategy extends MessageRetrievalStrategy {
       return false;
     } finally {
       jobManager.removeListener(queueListener);
+      ApplicationDependencies.getReceiptAggregator().flush();
     }
   }
 
@@ -82,16 +84,29 @@ public class RestStrategy extends MessageRetrievalStrategy {
 
     receiver.setSoTimeoutMillis(timeout);
 
-    receiver.retrieveMessages(envelope -> {
-      Log.i(TAG, "Retrieved an envelope." + timeSuffix(startTime));
-      String jobId = processor.processEnvelope(envelope);
+    int envelopeCount = receiver.drainMessages(new SignalServiceMessageReceiver.BatchedMessageReceivedCallback() {
+      @Override
+      public void onMessage(SignalServiceEnvelope envelope) {
+        Log.i(TAG, "Retrieved an envelope." + timeSuffix(startTime));
+        String jobId = processor.processEnvelope(envelope);
 
-      if (jobId != null) {
-        jobCount.incrementAndGet();
+        if (jobId != null) {
+          jobCount.incrementAndGet();
+        }
+        Log.i(TAG, "Successfully processed an envelope." + timeSuffix(startTime));
+      }
+
+      @Override
+      public void onBatchComplete() {
+        // The server drops envelopes once they're acknowledged, so anything we did with them has to be
+        // written down first. Jobs are persisted on the JobManager's executor, and receipts are batched.
+        ApplicationDependencies.getJobManager().flush();
+        ApplicationDependencies.getReceiptAggregator().flush();
       }
-      Log.i(TAG, "Successfully processed an envelope." + timeSuffix(startTime));
     });
 
+    Log.d(TAG, "Drained " + envelopeCount + " envelope(s)." + timeSuffix(startTime));
+
     return jobCount.get();
   }
 
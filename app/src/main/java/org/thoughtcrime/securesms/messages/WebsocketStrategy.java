@@ -51,6 +51,8 @@ class WebsocketStrategy extends MessageRetrievalStrategy {
     } catch (IOException e) {
       Log.w(TAG, "Encountered an exception while draining the websocket.", e);
       return false;
+    } finally {
+      ApplicationDependencies.getReceiptAggregator().flush();
     }
   }
 
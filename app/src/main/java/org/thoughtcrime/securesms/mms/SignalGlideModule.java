@@ -41,6 +41,7 @@ import org.thoughtcrime.securesms.glide.cache.EncryptedBitmapResourceEncoder;
 import org.thoughtcrime.securesms.glide.cache.EncryptedCacheDecoder;
 import org.thoughtcrime.securesms.glide.cache.EncryptedCacheEncoder;
 import org.thoughtcrime.securesms.glide.cache.EncryptedGifDrawableResourceEncoder;
+import org.thoughtcrime.securesms.glide.cache.TieredDiskCache;
 import org.thoughtcrime.securesms.mms.AttachmentStreamUriLoader.AttachmentModel;
 import org.thoughtcrime.securesms.mms.DecryptableStreamUriLoader.DecryptableUri;
 import org.thoughtcrime.securesms.stickers.StickerRemoteUri;
@@ -54,6 +55,8 @@ import java.nio.ByteBuffer;
 @GlideModule
 public class SignalGlideModule extends AppGlideModule {
 
+  private TieredDiskCache diskCache;
+
   @Override
   public boolean isManifestParsingEnabled() {
     return false;
@@ -62,6 +65,9 @@ public class SignalGlideModule extends AppGlideModule {
   @Override
   public void applyOptions(Context context, GlideBuilder builder) {
     builder.setLogLevel(Log.ERROR);
+
+    diskCache = new TieredDiskCache(new File(context.getCacheDir(), DiskCache.Factory.DEFAULT_DISK_CACHE_DIR), DiskCache.Factory.DEFAULT_DISK_CACHE_SIZE);
+    builder.setDiskCache(() -> diskCache);
   }
 
   @Override
@@ -73,19 +79,19 @@ public class SignalGlideModule extends AppGlideModule {
 
     registry.prepend(InputStream.class, new EncryptedCacheEncoder(secret, glide.getArrayPool()));
 
-    registry.prepend(Bitmap.class, new EncryptedBitmapResourceEncoder(secret));
-    registry.prepend(File.class, Bitmap.class, new EncryptedCacheDecoder<>(secret, new StreamBitmapDecoder(new Downsampler(registry.getImageHeaderParsers(), context.getResources().getDisplayMetrics(), glide.getBitmapPool(), glide.getArrayPool()), glide.getArrayPool())));
+    registry.prepend(Bitmap.class, new EncryptedBitmapResourceEncoder(secret, glide.getArrayPool()));
+    registry.prepend(File.class, Bitmap.class, new EncryptedCacheDecoder<>(secret, diskCache, glide.getArrayPool(), new StreamBitmapDecoder(new Downsampler(registry.getImageHeaderParsers(), context.getResources().getDisplayMetrics(), glide.getBitmapPool(), glide.getArrayPool()), glide.getArrayPool())));
 
-    registry.prepend(GifDrawable.class, new EncryptedGifDrawableResourceEncoder(secret));
-    registry.prepend(File.class, GifDrawable.class, new EncryptedCacheDecoder<>(secret, new StreamGifDecoder(registry.getImageHeaderParsers(), new ByteBufferGifDecoder(context, registry.getImageHeaderParsers(), glide.getBitmapPool(), glide.getArrayPool()), glide.getArrayPool())));
+    registry.prepend(GifDrawable.class, new EncryptedGifDrawableResourceEncoder(secret, glide.getArrayPool()));
+    registry.prepend(File.class, GifDrawable.class, new EncryptedCacheDecoder<>(secret, diskCache, glide.getArrayPool(), new StreamGifDecoder(registry.getImageHeaderParsers(), new ByteBufferGifDecoder(context, registry.getImageHeaderParsers(), glide.getBitmapPool(), glide.getArrayPool()), glide.getArrayPool())));
 
     ApngBufferCacheDecoder apngBufferCacheDecoder = new ApngBufferCacheDecoder();
     ApngStreamCacheDecoder apngStreamCacheDecoder = new ApngStreamCacheDecoder(apngBufferCacheDecoder);
 
     registry.prepend(InputStream.class, APNGDecoder.class, apngStreamCacheDecoder);
     registry.prepend(ByteBuffer.class, APNGDecoder.class, apngBufferCacheDecoder);
-    registry.prepend(APNGDecoder.class, new EncryptedApngCacheEncoder(secret));
-    registry.prepend(File.class, APNGDecoder.class, new EncryptedCacheDecoder<>(secret, apngStreamCacheDecoder));
+    registry.prepend(APNGDecoder.class, new EncryptedApngCacheEncoder(secret, glide.getArrayPool()));
+    registry.prepend(File.class, APNGDecoder.class, new EncryptedCacheDecoder<>(secret, diskCache, glide.getArrayPool(), apngStreamCacheDecoder));
     registry.register(APNGDecoder.class, Drawable.class, new ApngFrameDrawableTranscoder());
 
     registry.prepend(BlurHash.class, Bitmap.class, new BlurHashResourceDecoder());
@@ -18,7 +18,6 @@ import org.thoughtcrime.securesms.database.MessageDatabase.MarkedMessageInfo;
 import org.thoughtcrime.securesms.database.MessageDatabase.SyncMessageId;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobs.MultiDeviceReadUpdateJob;
-import org.thoughtcrime.securesms.jobs.SendReadReceiptJob;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.service.ExpiringMessageManager;
 
@@ -99,7 +98,7 @@ public class MarkReadReceiver extends BroadcastReceiver {
       Stream.of(idMapForThread).forEach(entry -> {
         List<Long> timestamps = Stream.of(entry.getValue()).map(SyncMessageId::getTimetamp).toList();
 
-        SendReadReceiptJob.enqueue(threadToInfoEntry.getKey(), entry.getKey(), timestamps);
+        ApplicationDependencies.getReceiptAggregator().addReadReceipts(threadToInfoEntry.getKey(), entry.getKey(), timestamps);
       });
     });
   }
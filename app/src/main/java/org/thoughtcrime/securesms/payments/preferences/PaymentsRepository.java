@@ -17,6 +17,7 @@ import org.thoughtcrime.securesms.payments.Direction;
 import org.thoughtcrime.securesms.payments.MobileCoinLedgerWrapper;
 import org.thoughtcrime.securesms.payments.Payment;
 import org.thoughtcrime.securesms.payments.reconciliation.LedgerReconcile;
+import org.thoughtcrime.securesms.payments.reconciliation.LedgerReconciler;
 import org.thoughtcrime.securesms.util.livedata.LiveDataUtil;
 
 import java.util.Collection;
@@ -30,6 +31,8 @@ public class PaymentsRepository {
 
   private static final String TAG = Log.tag(PaymentsRepository.class);
 
+  private static final LedgerReconciler LEDGER_RECONCILER = new LedgerReconciler();
+
   private final PaymentDatabase         paymentDatabase;
   private final LiveData<List<Payment>> recentPayments;
   private final LiveData<List<Payment>> recentSentPayments;
@@ -49,7 +52,7 @@ public class PaymentsRepository {
 
   @WorkerThread
   private @NonNull List<Payment> reconcile(@NonNull Collection<PaymentDatabase.PaymentTransaction> paymentTransactions, @NonNull MobileCoinLedgerWrapper ledger) {
-    List<Payment> reconcile = LedgerReconcile.reconcile(paymentTransactions, ledger);
+    List<Payment> reconcile = LEDGER_RECONCILER.reconcile(paymentTransactions, ledger);
 
     updateDatabaseWithNewBlockInformation(reconcile);
 
@@ -90,10 +90,7 @@ public final class LedgerReconcile {
     List<Payment> blockDecoratedLocalPayments = decoratePaymentsWithBlockIndexes(allLocalPaymentTransactions, allTxOuts);
 
     for (DetailedTransaction detailedTransaction : detailedTransactions) {
-      reconstructedPayments.add(new ReconstructedPayment(detailedTransaction.blockDetail.getBlockIndex(),
-                                                         detailedTransaction.blockDetail.getBlockTimestampOrZero(),
-                                                         detailedTransaction.transaction.getDirection(),
-                                                         detailedTransaction.transaction.getValue()));
+      reconstructedPayments.add(toPayment(detailedTransaction));
     }
 
     Collections.sort(reconstructedPayments, Payment.DESCENDING_BLOCK_INDEX);
@@ -104,7 +101,6 @@ public final class LedgerReconcile {
   private static List<Payment> decoratePaymentsWithBlockIndexes(@NonNull Collection<? extends Payment> localPaymentTransactions,
                                                                 @NonNull List<MobileCoinLedgerWrapper.OwnedTxo> allTxOuts)
   {
-    List<Payment>                                     result         = new ArrayList<>(localPaymentTransactions.size());
     Map<ByteString, MobileCoinLedgerWrapper.OwnedTxo> blockDetailMap = new HashMap<>(allTxOuts.size() * 2);
 
     for (MobileCoinLedgerWrapper.OwnedTxo txo : allTxOuts) {
@@ -112,6 +108,17 @@ public final class LedgerReconcile {
       blockDetailMap.put(txo.getKeyImage(), txo);
     }
 
+    return decoratePaymentsWithBlockIndexes(localPaymentTransactions, blockDetailMap);
+  }
+
+  /**
+   * @param blockDetailMap Every TXO on the ledger, by both its public key and its key image.
+   */
+  static List<Payment> decoratePaymentsWithBlockIndexes(@NonNull Collection<? extends Payment> localPaymentTransactions,
+                                                        @NonNull Map<ByteString, MobileCoinLedgerWrapper.OwnedTxo> blockDetailMap)
+  {
+    List<Payment> result = new ArrayList<>(localPaymentTransactions.size());
+
     for (Payment local : localPaymentTransactions) {
       result.add(findBlock(local, blockDetailMap));
     }
@@ -203,32 +210,51 @@ public final class LedgerReconcile {
 
     return Stream.of(allBlocksWithActivity)
                  .sorted((a, b) -> b.compareTo(a))
-                 .flatMap(blockIndex -> {
-                   List<MobileCoinLedgerWrapper.OwnedTxo> unspent = MapUtil.getOrDefault(receivedInBlock, blockIndex, Collections.emptyList());
-                   List<MobileCoinLedgerWrapper.OwnedTxo> spent   = MapUtil.getOrDefault(spentInBlock, blockIndex, Collections.emptyList());
-
-                   if (spent.size() + unspent.size() == 0) {
-                     throw new AssertionError();
-                   }
-
-                   Long timeStamp = null;
-                   if (spent.size() > 0) {
-                     timeStamp = spent.get(0).getSpentInBlockTimestamp();
-                   }
-                   if (timeStamp == null && unspent.size() > 0) {
-                     timeStamp = unspent.get(0).getReceivedInBlockTimestamp();
-                   }
-
-                   TransactionReconstruction transactionReconstruction = TransactionReconstruction.estimateBlockLevelActivity(toMobileCoinList(spent), toMobileCoinList(unspent));
-
-                   BlockDetail blockDetail = new BlockDetail(blockIndex, timeStamp);
-                   return Stream.of(transactionReconstruction.getAllTransactions())
-                                .map(t -> new DetailedTransaction(blockDetail, t));
-                 })
+                 .flatMap(blockIndex -> Stream.of(reconstructBlock(blockIndex,
+                                                                   MapUtil.getOrDefault(receivedInBlock, blockIndex, Collections.emptyList()),
+                                                                   MapUtil.getOrDefault(spentInBlock, blockIndex, Collections.emptyList()))))
                  .sorted(DetailedTransaction.DESCENDING)
                  .toList();
   }
 
+  /**
+   * Estimates the activity in a single block from the TXOs received and spent in it that no local
+   * payment accounts for.
+   *
+   * @return The transactions, in {@link DetailedTransaction#DESCENDING} order.
+   */
+  static @NonNull List<DetailedTransaction> reconstructBlock(long blockIndex,
+                                                             @NonNull List<MobileCoinLedgerWrapper.OwnedTxo> unspent,
+                                                             @NonNull List<MobileCoinLedgerWrapper.OwnedTxo> spent)
+  {
+    if (spent.size() + unspent.size() == 0) {
+      throw new AssertionError();
+    }
+
+    Long timeStamp = null;
+    if (spent.size() > 0) {
+      timeStamp = spent.get(0).getSpentInBlockTimestamp();
+    }
+    if (timeStamp == null && unspent.size() > 0) {
+      timeStamp = unspent.get(0).getReceivedInBlockTimestamp();
+    }
+
+    TransactionReconstruction transactionReconstruction = TransactionReconstruction.estimateBlockLevelActivity(toMobileCoinList(spent), toMobileCoinList(unspent));
+
+    BlockDetail blockDetail = new BlockDetail(blockIndex, timeStamp);
+    return Stream.of(transactionReconstruction.getAllTransactions())
+                 .map(t -> new DetailedTransaction(blockDetail, t))
+                 .sorted(DetailedTransaction.DESCENDING)
+                 .toList();
+  }
+
+  static @NonNull Payment toPayment(@NonNull DetailedTransaction detailedTransaction) {
+    return new ReconstructedPayment(detailedTransaction.blockDetail.getBlockIndex(),
+                                    detailedTransaction.blockDetail.getBlockTimestampOrZero(),
+                                    detailedTransaction.transaction.getDirection(),
+                                    detailedTransaction.transaction.getValue());
+  }
+
   private static @NonNull List<Money.MobileCoin> toMobileCoinList(@NonNull List<MobileCoinLedgerWrapper.OwnedTxo> spent) {
     return Stream.of(spent)
                  .map(MobileCoinLedgerWrapper.OwnedTxo::getValue)
@@ -0,0 +1,275 @@
+package org.thoughtcrime.securesms.payments.reconciliation;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.google.protobuf.ByteString;
+
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.payments.MobileCoinLedgerWrapper;
+import org.thoughtcrime.securesms.payments.Payment;
+import org.thoughtcrime.securesms.payments.State;
+import org.thoughtcrime.securesms.payments.proto.PaymentMetaData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Gives the same results as {@link LedgerReconcile#reconcile}, but remembers what it worked out
+ * last time so that each call only has to look at what changed since.
+ * <p>
+ * The ledger only ever grows: TXOs are added, and unspent TXOs become spent, always in blocks above
+ * the highest block the ledger had seen before. So the highest block index seen so far is kept as a
+ * watermark, and any TXO entirely at or below it is skipped without further work. Only blocks that
+ * gained TXOs, or that hold a TXO a local payment started or stopped accounting for, have their
+ * activity reconstructed again. If the ledger turns out to have changed in any other way, say after
+ * a wallet restore, everything is reconciled again from scratch.
+ */
+public final class LedgerReconciler {
+
+  private static final String TAG = Log.tag(LedgerReconciler.class);
+
+  private static final long NO_BLOCKS = -1;
+
+  private final Map<ByteString, MobileCoinLedgerWrapper.OwnedTxo> txosByKey            = new HashMap<>();
+  private final Map<Long, List<MobileCoinLedgerWrapper.OwnedTxo>> receivedInBlock      = new HashMap<>();
+  private final Map<Long, List<MobileCoinLedgerWrapper.OwnedTxo>> spentInBlock         = new HashMap<>();
+  private final Map<Long, List<Payment>>                          reconstructedByBlock = new TreeMap<>(Collections.reverseOrder());
+  private final Map<ByteString, Integer>                          knownPublicKeys      = new HashMap<>();
+  private final Map<ByteString, Integer>                          knownKeyImages       = new HashMap<>();
+
+  private Map<UUID, PaymentMetaData.MobileCoinTxoIdentification> localIdentifications = new HashMap<>();
+
+  private long watermark = NO_BLOCKS;
+  private int  txoCount;
+
+  @WorkerThread
+  public synchronized @NonNull List<Payment> reconcile(@NonNull Collection<? extends Payment> localPaymentTransactions,
+                                                       @NonNull MobileCoinLedgerWrapper ledgerWrapper)
+  {
+    long                                   start       = System.currentTimeMillis();
+    List<MobileCoinLedgerWrapper.OwnedTxo> allTxOuts   = ledgerWrapper.getAllTxos();
+    Set<Long>                              dirtyBlocks = new HashSet<>();
+
+    if (!updateTxos(allTxOuts, dirtyBlocks)) {
+      Log.i(TAG, "Ledger history changed, reconciling from scratch.");
+      reset();
+      updateTxos(allTxOuts, dirtyBlocks);
+    }
+
+    updateLocalPayments(localPaymentTransactions, dirtyBlocks);
+
+    for (long blockIndex : dirtyBlocks) {
+      reconstructBlock(blockIndex);
+    }
+
+    Log.d(TAG, String.format(Locale.US, "Took %d ms - Ledger %d, Local %d, Reconstructed blocks %d", System.currentTimeMillis() - start, allTxOuts.size(), localPaymentTransactions.size(), dirtyBlocks.size()));
+
+    if (reconstructedByBlock.isEmpty()) {
+      return new ArrayList<>(localPaymentTransactions);
+    }
+
+    List<Payment> reconstructedPayments = new ArrayList<>();
+
+    for (List<Payment> payments : reconstructedByBlock.values()) {
+      reconstructedPayments.addAll(payments);
+    }
+
+    List<Payment> blockDecoratedLocalPayments = LedgerReconcile.decoratePaymentsWithBlockIndexes(localPaymentTransactions, txosByKey);
+
+    return ZipList.zipList(blockDecoratedLocalPayments, reconstructedPayments, Payment.DESCENDING_BLOCK_INDEX_UNKNOWN_FIRST);
+  }
+
+  private void reset() {
+    txosByKey.clear();
+    receivedInBlock.clear();
+    spentInBlock.clear();
+    reconstructedByBlock.clear();
+    knownPublicKeys.clear();
+    knownKeyImages.clear();
+    localIdentifications.clear();
+
+    watermark = NO_BLOCKS;
+    txoCount  = 0;
+  }
+
+  /**
+   * Takes in any TXOs that are new or newly spent since the last call.
+   *
+   * @return false without changing anything if the ledger changed in a way other than growing.
+   */
+  private boolean updateTxos(@NonNull List<MobileCoinLedgerWrapper.OwnedTxo> allTxOuts, @NonNull Set<Long> dirtyBlocks) {
+    List<MobileCoinLedgerWrapper.OwnedTxo> changed  = new ArrayList<>();
+    int                                    settled  = 0;
+    int                                    existing = 0;
+
+    for (MobileCoinLedgerWrapper.OwnedTxo txo : allTxOuts) {
+      Long spentInBlock = txo.getSpentInBlock();
+
+      if (txo.getReceivedInBlock() <= watermark && (spentInBlock == null || spentInBlock <= watermark)) {
+        settled++;
+        continue;
+      }
+
+      MobileCoinLedgerWrapper.OwnedTxo previous = txosByKey.get(txo.getPublicKey());
+
+      if (previous != null) {
+        if (previous.isSpent() || !txo.isSpent() || previous.getReceivedInBlock() != txo.getReceivedInBlock()) {
+          return false;
+        }
+        existing++;
+      }
+
+      changed.add(txo);
+    }
+
+    if (settled + existing != txoCount) {
+      return false;
+    }
+
+    for (MobileCoinLedgerWrapper.OwnedTxo txo : changed) {
+      boolean isNew = !txosByKey.containsKey(txo.getPublicKey());
+
+      if (isNew) {
+        getOrCreate(receivedInBlock, txo.getReceivedInBlock()).add(txo);
+        dirtyBlocks.add(txo.getReceivedInBlock());
+        watermark = Math.max(watermark, txo.getReceivedInBlock());
+      }
+
+      Long spentInBlock = txo.getSpentInBlock();
+      if (spentInBlock != null) {
+        getOrCreate(this.spentInBlock, spentInBlock).add(txo);
+        dirtyBlocks.add(spentInBlock);
+        watermark = Math.max(watermark, spentInBlock);
+      }
+
+      txosByKey.put(txo.getPublicKey(), txo);
+      txosByKey.put(txo.getKeyImage(), txo);
+    }
+
+    txoCount = allTxOuts.size();
+
+    return true;
+  }
+
+  /**
+   * Updates which public keys and key images the non-failed local payments account for, marking
+   * the blocks of any TXOs whose keys were gained or lost as dirty.
+   */
+  private void updateLocalPayments(@NonNull Collection<? extends Payment> localPaymentTransactions, @NonNull Set<Long> dirtyBlocks) {
+    Map<UUID, PaymentMetaData.MobileCoinTxoIdentification> identifications = new HashMap<>(localPaymentTransactions.size());
+
+    for (Payment payment : localPaymentTransactions) {
+      if (payment.getState() != State.FAILED) {
+        identifications.put(payment.getUuid(), payment.getPaymentMetaData().getMobileCoinTxoIdentification());
+      }
+    }
+
+    for (Map.Entry<UUID, PaymentMetaData.MobileCoinTxoIdentification> previous : localIdentifications.entrySet()) {
+      if (!Objects.equals(previous.getValue(), identifications.get(previous.getKey()))) {
+        updateKnownKeys(previous.getValue(), -1, dirtyBlocks);
+      }
+    }
+
+    for (Map.Entry<UUID, PaymentMetaData.MobileCoinTxoIdentification> current : identifications.entrySet()) {
+      if (!Objects.equals(current.getValue(), localIdentifications.get(current.getKey()))) {
+        updateKnownKeys(current.getValue(), 1, dirtyBlocks);
+      }
+    }
+
+    localIdentifications = identifications;
+  }
+
+  private void updateKnownKeys(@NonNull PaymentMetaData.MobileCoinTxoIdentification identification, int delta, @NonNull Set<Long> dirtyBlocks) {
+    for (ByteString publicKey : identification.getPublicKeyList()) {
+      updateCount(knownPublicKeys, publicKey, delta);
+      markDirty(publicKey, dirtyBlocks);
+    }
+
+    for (ByteString keyImage : identification.getKeyImagesList()) {
+      updateCount(knownKeyImages, keyImage, delta);
+      markDirty(keyImage, dirtyBlocks);
+    }
+  }
+
+  private void markDirty(@NonNull ByteString key, @NonNull Set<Long> dirtyBlocks) {
+    MobileCoinLedgerWrapper.OwnedTxo txo = txosByKey.get(key);
+
+    if (txo != null) {
+      dirtyBlocks.add(txo.getReceivedInBlock());
+
+      Long spentInBlock = txo.getSpentInBlock();
+      if (spentInBlock != null) {
+        dirtyBlocks.add(spentInBlock);
+      }
+    }
+  }
+
+  private void reconstructBlock(long blockIndex) {
+    List<MobileCoinLedgerWrapper.OwnedTxo> unknownReceived = new ArrayList<>();
+    List<MobileCoinLedgerWrapper.OwnedTxo> unknownSpent    = new ArrayList<>();
+
+    for (MobileCoinLedgerWrapper.OwnedTxo txo : getOrEmpty(receivedInBlock, blockIndex)) {
+      if (!knownPublicKeys.containsKey(txo.getPublicKey())) {
+        unknownReceived.add(txo);
+      }
+    }
+
+    for (MobileCoinLedgerWrapper.OwnedTxo txo : getOrEmpty(spentInBlock, blockIndex)) {
+      if (!knownKeyImages.containsKey(txo.getKeyImage())) {
+        unknownSpent.add(txo);
+      }
+    }
+
+    if (unknownReceived.isEmpty() && unknownSpent.isEmpty()) {
+      reconstructedByBlock.remove(blockIndex);
+      return;
+    }
+
+    List<LedgerReconcile.DetailedTransaction> detailedTransactions = LedgerReconcile.reconstructBlock(blockIndex, unknownReceived, unknownSpent);
+    List<Payment>                             payments             = new ArrayList<>(detailedTransactions.size());
+
+    for (LedgerReconcile.DetailedTransaction detailedTransaction : detailedTransactions) {
+      payments.add(LedgerReconcile.toPayment(detailedTransaction));
+    }
+
+    reconstructedByBlock.put(blockIndex, payments);
+  }
+
+  private static void updateCount(@NonNull Map<ByteString, Integer> counts, @NonNull ByteString key, int delta) {
+    Integer count    = counts.get(key);
+    int     newCount = (count != null ? count : 0) + delta;
+
+    if (newCount > 0) {
+      counts.put(key, newCount);
+    } else {
+      counts.remove(key);
+    }
+  }
+
+  private static @NonNull List<MobileCoinLedgerWrapper.OwnedTxo> getOrCreate(@NonNull Map<Long, List<MobileCoinLedgerWrapper.OwnedTxo>> map, long blockIndex) {
+    List<MobileCoinLedgerWrapper.OwnedTxo> list = map.get(blockIndex);
+
+    if (list == null) {
+      list = new ArrayList<>();
+      map.put(blockIndex, list);
+    }
+
+    return list;
+  }
+
+  private static @NonNull List<MobileCoinLedgerWrapper.OwnedTxo> getOrEmpty(@NonNull Map<Long, List<MobileCoinLedgerWrapper.OwnedTxo>> map, long blockIndex) {
+    List<MobileCoinLedgerWrapper.OwnedTxo> list = map.get(blockIndex);
+    return list != null ? list : Collections.emptyList();
+  }
+}
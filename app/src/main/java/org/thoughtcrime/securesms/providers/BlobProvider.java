@@ -11,6 +11,7 @@ import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import org.signal.core.util.StreamUtil;
@@ -31,14 +32,22 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Allows for the creation and retrieval of blobs.
+ * <p>
+ * Nothing here holds a lock while it reads or writes blob data, so a slow read or write of one blob
+ * doesn't hold up any other. In-memory blobs are kept within a budget of heap. Any that would go
+ * over it are moved to encrypted single-session files in the background, but are still found by
+ * their original URI.
  */
 public class BlobProvider {
 
@@ -62,12 +71,21 @@ public class BlobProvider {
     addURI(AUTHORITY, PATH, MATCH);
   }};
 
-  private static final BlobProvider INSTANCE = new BlobProvider();
+  private static final BlobProvider INSTANCE = new BlobProvider(Runtime.getRuntime().maxMemory() / 8);
 
-  private final Map<Uri, byte[]> memoryBlobs = new HashMap<>();
+  private final Map<Uri, byte[]> memoryBlobs  = new ConcurrentHashMap<>();
+  private final Set<Uri>         spilledBlobs = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private final AtomicLong       memoryBytes  = new AtomicLong();
+  private final long             memoryBudget;
 
+  private volatile Context applicationContext;
   private volatile boolean initialized = false;
 
+  @VisibleForTesting
+  BlobProvider(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
 
   public static BlobProvider getInstance() {
     return INSTANCE;
@@ -91,7 +109,7 @@ public class BlobProvider {
    * Retrieve a stream for the content with the specified URI.
    * @throws IOException If the stream fails to open or the spec of the URI doesn't match.
    */
-  public synchronized @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri) throws IOException {
+  public @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri) throws IOException {
     waitUntilInitialized();
     return getStream(context, uri, 0L);
   }
@@ -100,7 +118,7 @@ public class BlobProvider {
    * Retrieve a stream for the content with the specified URI starting from the specified position.
    * @throws IOException If the stream fails to open or the spec of the URI doesn't match.
    */
-  public synchronized @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri, long position) throws IOException {
+  public @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri, long position) throws IOException {
     waitUntilInitialized();
     return getBlobRepresentation(context,
                                  uri,
@@ -117,7 +135,7 @@ public class BlobProvider {
   }
 
   @RequiresApi(23)
-  public synchronized @NonNull MediaDataSource getMediaDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
+  public @NonNull MediaDataSource getMediaDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
     waitUntilInitialized();
     return getBlobRepresentation(context,
                                  uri,
@@ -125,23 +143,24 @@ public class BlobProvider {
                                  file -> EncryptedMediaDataSource.createForDiskBlob(getAttachmentSecret(context), file));
   }
 
-  private synchronized @NonNull <T> T getBlobRepresentation(@NonNull Context context,
-                                                            @NonNull Uri uri,
-                                                            @NonNull IOFunction<byte[], T> getByteRepresentation,
-                                                            @NonNull IOFunction<File, T> getFileRepresentation)
+  private @NonNull <T> T getBlobRepresentation(@NonNull Context context,
+                                               @NonNull Uri uri,
+                                               @NonNull IOFunction<byte[], T> getByteRepresentation,
+                                               @NonNull IOFunction<File, T> getFileRepresentation)
       throws IOException
   {
     if (isAuthority(uri)) {
       StorageType storageType = StorageType.decode(uri.getPathSegments().get(STORAGE_TYPE_PATH_SEGMENT));
 
       if (storageType.isMemory()) {
-        byte[] data = memoryBlobs.get(uri);
+        boolean singleUse = storageType == StorageType.SINGLE_USE_MEMORY;
+        byte[]  data      = singleUse ? removeMemoryBlob(uri) : memoryBlobs.get(uri);
 
         if (data != null) {
-          if (storageType == StorageType.SINGLE_USE_MEMORY) {
-            memoryBlobs.remove(uri);
-          }
           return getByteRepresentation.apply(data);
+        } else if (singleUse ? spilledBlobs.remove(uri) : spilledBlobs.contains(uri)) {
+          // A spilled single-use file is left for the next session to clear, as a MediaDataSource reopens it on each read
+          return getFileRepresentation.apply(getSpilledFile(context, uri));
         } else {
           throw new IOException("Failed to find in-memory blob for: " + uri);
         }
@@ -157,14 +176,14 @@ public class BlobProvider {
     }
   }
 
-  private synchronized AttachmentSecret getAttachmentSecret(@NonNull Context context) {
+  private AttachmentSecret getAttachmentSecret(@NonNull Context context) {
     return AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
   }
 
   /**
    * Delete the content with the specified URI.
    */
-  public synchronized void delete(@NonNull Context context, @NonNull Uri uri) {
+  public void delete(@NonNull Context context, @NonNull Uri uri) {
     waitUntilInitialized();
 
     if (!isAuthority(uri)) {
@@ -178,7 +197,11 @@ public class BlobProvider {
       StorageType storageType = StorageType.decode(uri.getPathSegments().get(STORAGE_TYPE_PATH_SEGMENT));
 
       if (storageType.isMemory()) {
-        memoryBlobs.remove(uri);
+        removeMemoryBlob(uri);
+
+        if (spilledBlobs.remove(uri) && !getSpilledFile(context, uri).delete()) {
+          throw new IOException("Spilled file wasn't deleted.");
+        }
       } else {
         String id        = uri.getPathSegments().get(ID_PATH_SEGMENT);
         String directory = getDirectory(storageType);
@@ -202,6 +225,8 @@ public class BlobProvider {
    */
   @AnyThread
   public synchronized void initialize(@NonNull Context context) {
+    this.applicationContext = context.getApplicationContext();
+
     SignalExecutors.BOUNDED.execute(() -> {
       synchronized (this) {
         File   directory = getOrCreateDirectory(context, SINGLE_SESSION_DIRECTORY);
@@ -258,14 +283,39 @@ public class BlobProvider {
     return null;
   }
 
+  /**
+   * The length of the blob's content, found without reading it. For a disk blob that is still being
+   * written, this is the length written so far.
+   */
   @WorkerThread
   public long calculateFileSize(@NonNull Context context, @NonNull Uri uri) {
     if (!isAuthority(uri)) {
       return 0;
     }
 
-    try (InputStream stream = getStream(context, uri)) {
-      return StreamUtil.getStreamLength(stream);
+    waitUntilInitialized();
+
+    try {
+      StorageType storageType = StorageType.decode(uri.getPathSegments().get(STORAGE_TYPE_PATH_SEGMENT));
+      File        file;
+
+      if (storageType.isMemory()) {
+        byte[] data = memoryBlobs.get(uri);
+
+        if (data != null) {
+          return data.length;
+        }
+
+        file = getSpilledFile(context, uri);
+      } else {
+        file = new File(getOrCreateDirectory(context, getDirectory(storageType)), buildFileName(uri.getPathSegments().get(ID_PATH_SEGMENT)));
+      }
+
+      if (!file.exists()) {
+        throw new IOException("Failed to find blob for: " + uri);
+      }
+
+      return Math.max(0, ModernEncryptingPartOutputStream.getPlaintextLength(file.length()));
     } catch (IOException e) {
       Log.w(TAG, e);
       return 0;
@@ -277,7 +327,7 @@ public class BlobProvider {
   }
 
   @WorkerThread
-  private synchronized @NonNull Uri writeBlobSpecToDisk(@NonNull Context context, @NonNull BlobSpec blobSpec)
+  private @NonNull Uri writeBlobSpecToDisk(@NonNull Context context, @NonNull BlobSpec blobSpec)
       throws IOException
   {
     waitUntilInitialized();
@@ -304,10 +354,10 @@ public class BlobProvider {
 
 
   @WorkerThread
-  private synchronized @NonNull Uri writeBlobSpecToDiskAsync(@NonNull Context context,
-                                                             @NonNull BlobSpec blobSpec,
-                                                             @Nullable SuccessListener successListener,
-                                                             @Nullable ErrorListener errorListener)
+  private @NonNull Uri writeBlobSpecToDiskAsync(@NonNull Context context,
+                                                @NonNull BlobSpec blobSpec,
+                                                @Nullable SuccessListener successListener,
+                                                @Nullable ErrorListener errorListener)
       throws IOException
   {
     AttachmentSecret attachmentSecret = AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
@@ -333,12 +383,64 @@ public class BlobProvider {
     return buildUri(blobSpec);
   }
 
-  private synchronized @NonNull Uri writeBlobSpecToMemory(@NonNull BlobSpec blobSpec, @NonNull byte[] data) {
+  private @NonNull Uri writeBlobSpecToMemory(@NonNull BlobSpec blobSpec, @NonNull byte[] data) {
     Uri uri = buildUri(blobSpec);
+
     memoryBlobs.put(uri, data);
+
+    if (memoryBytes.addAndGet(data.length) > memoryBudget) {
+      SignalExecutors.BOUNDED.execute(() -> spillToDisk(uri, data));
+    }
+
     return uri;
   }
 
+  private @Nullable byte[] removeMemoryBlob(@NonNull Uri uri) {
+    byte[] data = memoryBlobs.remove(uri);
+
+    if (data != null) {
+      memoryBytes.addAndGet(-data.length);
+    }
+
+    return data;
+  }
+
+  /**
+   * Moves an in-memory blob to an encrypted single-session file. The blob stays readable from memory
+   * until the file is complete, and the file is discarded if the blob was read or deleted meanwhile.
+   */
+  @WorkerThread
+  private void spillToDisk(@NonNull Uri uri, @NonNull byte[] data) {
+    waitUntilInitialized();
+
+    if (memoryBlobs.get(uri) != data) {
+      return;
+    }
+
+    File file = getSpilledFile(applicationContext, uri);
+
+    try (OutputStream outputStream = ModernEncryptingPartOutputStream.createFor(getAttachmentSecret(applicationContext), file, true).second) {
+      outputStream.write(data);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to spill " + getId(uri) + " to disk, keeping it in memory.", e);
+      file.delete();
+      return;
+    }
+
+    spilledBlobs.add(uri);
+
+    if (memoryBlobs.remove(uri, data)) {
+      memoryBytes.addAndGet(-data.length);
+      Log.d(TAG, "Spilled " + getId(uri) + " to disk, " + memoryBytes.get() + " bytes in memory.");
+    } else if (spilledBlobs.remove(uri)) {
+      file.delete();
+    }
+  }
+
+  private static @NonNull File getSpilledFile(@NonNull Context context, @NonNull Uri uri) {
+    return new File(getOrCreateDirectory(context, SINGLE_SESSION_DIRECTORY), buildFileName(uri.getPathSegments().get(ID_PATH_SEGMENT)));
+  }
+
   private static @NonNull String buildFileName(@NonNull String id) {
     return id + ".blob";
   }
@@ -440,7 +542,7 @@ public class BlobProvider {
     }
   }
 
-  private synchronized void waitUntilInitialized() {
+  private void waitUntilInitialized() {
     if (!initialized) {
       Log.i(TAG, "Waiting for initialization...");
       synchronized (this) {
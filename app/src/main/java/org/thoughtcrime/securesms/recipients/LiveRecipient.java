@@ -167,6 +167,8 @@ public final class LiveRecipient {
       Log.w(TAG, "[Refresh][MAIN] " + id, new Throwable());
     }
 
+    recipientDatabase.onRecipientChanged(id);
+
     Recipient       recipient    = fetchAndCacheRecipientFromDisk(id);
     List<Recipient> participants = Stream.of(recipient.getParticipants())
                                          .map(Recipient::getId)
@@ -12,7 +12,6 @@ import org.thoughtcrime.securesms.database.MmsDatabase;
 import org.thoughtcrime.securesms.database.model.MmsMessageRecord;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobs.MultiDeviceViewedUpdateJob;
-import org.thoughtcrime.securesms.jobs.SendViewedReceiptJob;
 import org.thoughtcrime.securesms.util.FeatureFlags;
 import org.whispersystems.libsignal.util.guava.Optional;
 
@@ -36,9 +35,9 @@ class ViewOnceMessageRepository {
         if (FeatureFlags.sendViewedReceipts()) {
           MessageDatabase.MarkedMessageInfo info = mmsDatabase.setIncomingMessageViewed(record.getId());
           if (info != null) {
-            ApplicationDependencies.getJobManager().add(new SendViewedReceiptJob(record.getThreadId(),
-                                                                                 info.getSyncMessageId().getRecipientId(),
-                                                                                 info.getSyncMessageId().getTimetamp()));
+            ApplicationDependencies.getReceiptAggregator().addViewedReceipt(record.getThreadId(),
+                                                                            info.getSyncMessageId().getRecipientId(),
+                                                                            info.getSyncMessageId().getTimetamp());
             MultiDeviceViewedUpdateJob.enqueue(Collections.singletonList(info.getSyncMessageId()));
           }
         }
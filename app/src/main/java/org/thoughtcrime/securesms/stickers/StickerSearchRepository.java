@@ -14,7 +14,6 @@ import org.thoughtcrime.securesms.database.StickerDatabase;
 import org.thoughtcrime.securesms.database.StickerDatabase.StickerRecordReader;
 import org.thoughtcrime.securesms.database.model.StickerRecord;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -30,23 +29,21 @@ public final class StickerSearchRepository {
 
   public void searchByEmoji(@NonNull String emoji, @NonNull Callback<List<StickerRecord>> callback) {
     SignalExecutors.BOUNDED.execute(() -> {
-      String              searchEmoji = EmojiUtil.getCanonicalRepresentation(emoji);
-      List<StickerRecord> out         = new ArrayList<>();
-      Set<String>         possible    = EmojiUtil.getAllRepresentations(searchEmoji);
+      String      searchEmoji = EmojiUtil.getCanonicalRepresentation(emoji);
+      Set<String> possible    = EmojiUtil.getAllRepresentations(searchEmoji);
 
-      for (String candidate : possible) {
-        try (StickerRecordReader reader = new StickerRecordReader(stickerDatabase.getStickersByEmoji(candidate))) {
-          StickerRecord record = null;
-          while ((record = reader.getNext()) != null) {
-            out.add(record);
-          }
-        }
-      }
-
-      callback.onResult(out);
+      callback.onResult(stickerDatabase.getStickersByEmoji(possible));
     });
   }
 
+  /**
+   * Loads installed stickers ahead of the first {@link #searchByEmoji(String, Callback)}, so that
+   * searching never has to wait on the database.
+   */
+  public void preloadStickersByEmoji() {
+    SignalExecutors.BOUNDED.execute(stickerDatabase::preloadStickersByEmoji);
+  }
+
   public void getStickerFeatureAvailability(@NonNull Callback<Boolean> callback) {
     SignalExecutors.BOUNDED.execute(() -> {
       try (Cursor cursor = stickerDatabase.getAllStickerPacks("1")) {
@@ -3,18 +3,28 @@ package org.thoughtcrime.securesms.util;
 import android.app.Application;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 
 import org.signal.core.util.concurrent.SignalExecutors;
 import org.signal.core.util.logging.Log;
+import org.signal.core.util.tracing.Tracer;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages our app startup flow.
+ *
+ * Blocking tasks can declare which other blocking tasks they depend on. Those that don't need the
+ * main thread run in parallel on a small pool as soon as their dependencies are done, while the
+ * main thread works through the rest.
  */
 public final class AppStartup {
 
@@ -28,10 +38,13 @@ public final class AppStartup {
 
   private static final AppStartup INSTANCE = new AppStartup();
 
-  private final List<Task> blocking;
-  private final List<Task> nonBlocking;
-  private final List<Task> postRender;
-  private final Handler    postRenderHandler;
+  private static final int    MAX_BLOCKING_THREADS = 3;
+  private static final String TRACE_PREFIX         = "AppStartup#";
+
+  private final StartupTaskRunner blocking;
+  private final List<Task>        nonBlocking;
+  private final List<Task>        postRender;
+  private final Handler           postRenderHandler;
 
   private int outstandingCriticalRenderEvents;
 
@@ -44,7 +57,7 @@ public final class AppStartup {
   }
 
   private AppStartup() {
-    this.blocking          = new LinkedList<>();
+    this.blocking          = new StartupTaskRunner(command -> getBlockingExecutor().execute(command), new TracingListener());
     this.nonBlocking       = new LinkedList<>();
     this.postRender        = new LinkedList<>();
     this.postRenderHandler = new Handler(Looper.getMainLooper());
@@ -55,11 +68,32 @@ public final class AppStartup {
   }
 
   /**
-   * Schedules a task that must happen during app startup in a blocking fashion.
+   * Schedules a task that must happen during app startup in a blocking fashion. It will run on the
+   * main thread after every blocking task scheduled before it.
    */
   @MainThread
   public @NonNull AppStartup addBlocking(@NonNull String name, @NonNull Runnable task) {
-    blocking.add(new Task(name, task));
+    blocking.add(name, true, null, task);
+    return this;
+  }
+
+  /**
+   * Schedules a blocking task that must run on the main thread, but only has to wait for the named
+   * blocking tasks, which must already be scheduled.
+   */
+  @MainThread
+  public @NonNull AppStartup addBlocking(@NonNull String name, @NonNull Collection<String> dependencies, @NonNull Runnable task) {
+    blocking.add(name, true, dependencies, task);
+    return this;
+  }
+
+  /**
+   * Schedules a blocking task that can run on any thread once the named blocking tasks, which must
+   * already be scheduled, have finished. App startup still waits for it to finish.
+   */
+  @MainThread
+  public @NonNull AppStartup addBackgroundBlocking(@NonNull String name, @NonNull Collection<String> dependencies, @NonNull Runnable task) {
+    blocking.add(name, false, dependencies, task);
     return this;
   }
 
@@ -136,21 +170,16 @@ public final class AppStartup {
    */
   @MainThread
   public void execute() {
-    Stopwatch stopwatch = new Stopwatch("init");
-
-    for (Task task : blocking) {
-      task.getRunnable().run();
-      stopwatch.split(task.getName());
-    }
-    blocking.clear();
+    long                         start = System.nanoTime();
+    List<StartupTaskRunner.Task> ran   = blocking.run();
+    long                         end   = System.nanoTime();
 
     for (Task task : nonBlocking) {
       SignalExecutors.BOUNDED.execute(task.getRunnable());
     }
     nonBlocking.clear();
 
-    stopwatch.split("schedule-non-blocking");
-    stopwatch.stop(TAG);
+    logBlockingTasks(ran, start, end);
 
     postRenderHandler.postDelayed(() -> {
       Log.i(TAG, "Assuming the application has started in the background. Running post-render tasks.");
@@ -158,6 +187,46 @@ public final class AppStartup {
     }, UI_WAIT_TIME);
   }
 
+  /**
+   * Logs how long each blocking task took and where it ran, and the chain of tasks that startup
+   * actually waited on, which is also added to the trace.
+   */
+  private static void logBlockingTasks(@NonNull List<StartupTaskRunner.Task> tasks, long start, long end) {
+    StringBuilder timings = new StringBuilder("[init] ");
+
+    for (StartupTaskRunner.Task task : tasks) {
+      timings.append(task.getName()).append(": ")
+             .append(TimeUnit.NANOSECONDS.toMillis(task.getDurationNanos()))
+             .append(" (").append(task.getThread()).append(")  ");
+    }
+
+    timings.append("total: ").append(TimeUnit.NANOSECONDS.toMillis(end - start));
+
+    Log.d(TAG, timings.toString());
+
+    List<StartupTaskRunner.Task> criticalPath = StartupTaskRunner.getCriticalPath(tasks);
+    StringBuilder                path         = new StringBuilder("Critical path: ");
+    long                         offset       = SystemClock.elapsedRealtimeNanos() - System.nanoTime();
+
+    for (int i = 0; i < criticalPath.size(); i++) {
+      StartupTaskRunner.Task task = criticalPath.get(i);
+
+      if (i > 0) {
+        path.append(" -> ");
+      }
+
+      path.append(task.getName()).append(" (").append(TimeUnit.NANOSECONDS.toMillis(task.getDurationNanos())).append(" ms)");
+
+      Tracer.getInstance().slice(TRACE_PREFIX + task.getName(), Tracer.TrackId.STARTUP_CRITICAL_PATH, task.getStartNanos() + offset, task.getEndNanos() + offset, Collections.singletonMap("thread", task.getThread()));
+    }
+
+    Log.i(TAG, path.toString());
+  }
+
+  private static @NonNull ExecutorService getBlockingExecutor() {
+    return BlockingExecutorHolder.EXECUTOR;
+  }
+
   private void executePostRender() {
     for (Task task : postRender) {
       SignalExecutors.BOUNDED.execute(task.getRunnable());
@@ -165,6 +234,26 @@ public final class AppStartup {
     postRender.clear();
   }
 
+  /**
+   * Only created if a blocking task can run in the background, and its threads exit shortly after
+   * startup.
+   */
+  private static final class BlockingExecutorHolder {
+    private static final ExecutorService EXECUTOR = SignalExecutors.newCachedBoundedExecutor("signal-startup", 0, MAX_BLOCKING_THREADS);
+  }
+
+  private static final class TracingListener implements StartupTaskRunner.Listener {
+    @Override
+    public void onTaskStarted(@NonNull StartupTaskRunner.Task task) {
+      Tracer.getInstance().start(TRACE_PREFIX + task.getName());
+    }
+
+    @Override
+    public void onTaskFinished(@NonNull StartupTaskRunner.Task task) {
+      Tracer.getInstance().end(TRACE_PREFIX + task.getName());
+    }
+  }
+
   private class Task {
     private final String   name;
     private final Runnable runnable;
@@ -0,0 +1,282 @@
+package org.thoughtcrime.securesms.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs a set of startup tasks that each name the tasks they depend on. A task starts as soon as
+ * everything it depends on has finished. Tasks that must be on the main thread are run on the
+ * calling thread in the order they were added, and everything else is handed to the background
+ * executor, so the calling thread only waits when it has nothing of its own left to run.
+ * <p>
+ * Tasks may only depend on tasks added before them, which keeps the graph free of cycles.
+ */
+final class StartupTaskRunner {
+
+  private final Executor          backgroundExecutor;
+  private final Listener          listener;
+  private final List<Task>        tasks;
+  private final Map<String, Task> tasksByName;
+
+  StartupTaskRunner(@NonNull Executor backgroundExecutor, @NonNull Listener listener) {
+    this.backgroundExecutor = backgroundExecutor;
+    this.listener           = listener;
+    this.tasks              = new ArrayList<>();
+    this.tasksByName        = new HashMap<>();
+  }
+
+  /**
+   * @param dependencies The names of tasks that must finish first, or null to depend on every task
+   *                     added so far.
+   */
+  void add(@NonNull String name, boolean mainThread, @Nullable Collection<String> dependencies, @NonNull Runnable runnable) {
+    if (tasksByName.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate startup task: " + name);
+    }
+
+    Set<Task> resolved = new LinkedHashSet<>();
+
+    if (dependencies == null) {
+      resolved.addAll(tasks);
+    } else {
+      for (String dependency : dependencies) {
+        Task task = tasksByName.get(dependency);
+
+        if (task == null) {
+          throw new IllegalArgumentException(name + " depends on " + dependency + ", which must be added first.");
+        }
+
+        resolved.add(task);
+      }
+    }
+
+    Task task = new Task(tasks.size(), name, mainThread, resolved, runnable);
+
+    tasks.add(task);
+    tasksByName.put(name, task);
+  }
+
+  /**
+   * Runs every task, returning once all of them have finished. If a task throws, the exception is
+   * rethrown here once the tasks already running have finished.
+   *
+   * @return The tasks that ran, with their timings.
+   */
+  @NonNull List<Task> run() {
+    List<Task>                ran        = new ArrayList<>(tasks);
+    Map<Task, List<Task>>     dependents = new HashMap<>();
+    Map<Task, Integer>        waiting    = new HashMap<>();
+    PriorityQueue<Task>       readyMain  = new PriorityQueue<>((lhs, rhs) -> Integer.compare(lhs.index, rhs.index));
+    List<Task>                readyOther = new ArrayList<>();
+    BlockingQueue<Completion> completed  = new LinkedBlockingQueue<>();
+
+    for (Task task : ran) {
+      waiting.put(task, task.dependencies.size());
+
+      for (Task dependency : task.dependencies) {
+        List<Task> list = dependents.get(dependency);
+
+        if (list == null) {
+          list = new ArrayList<>();
+          dependents.put(dependency, list);
+        }
+
+        list.add(task);
+      }
+
+      if (task.dependencies.isEmpty()) {
+        (task.mainThread ? readyMain : readyOther).add(task);
+      }
+    }
+
+    tasks.clear();
+    tasksByName.clear();
+
+    int       finished    = 0;
+    int       running     = 0;
+    Throwable failure     = null;
+    boolean   interrupted = false;
+
+    while (finished < ran.size()) {
+      if (failure == null) {
+        for (Task task : readyOther) {
+          running++;
+          backgroundExecutor.execute(() -> completed.add(runTask(task)));
+        }
+        readyOther.clear();
+      }
+
+      Completion completion = completed.poll();
+
+      if (completion == null && failure == null && !readyMain.isEmpty()) {
+        completion = runTask(readyMain.poll());
+        running++;
+      }
+
+      if (completion == null) {
+        if (running == 0) {
+          break;
+        }
+
+        try {
+          completion = completed.take();
+        } catch (InterruptedException e) {
+          interrupted = true;
+          continue;
+        }
+      }
+
+      running--;
+      finished++;
+
+      if (completion.failure != null) {
+        if (failure == null) {
+          failure = completion.failure;
+        }
+        continue;
+      }
+
+      List<Task> unblocked = dependents.get(completion.task);
+
+      if (unblocked != null) {
+        for (Task task : unblocked) {
+          int remaining = waiting.get(task) - 1;
+
+          waiting.put(task, remaining);
+
+          if (remaining == 0) {
+            (task.mainThread ? readyMain : readyOther).add(task);
+          }
+        }
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new AssertionError(failure);
+    }
+
+    return ran;
+  }
+
+  private @NonNull Completion runTask(@NonNull Task task) {
+    task.thread     = Thread.currentThread().getName();
+    task.startNanos = System.nanoTime();
+    listener.onTaskStarted(task);
+
+    try {
+      task.runnable.run();
+      return new Completion(task, null);
+    } catch (Throwable t) {
+      return new Completion(task, t);
+    } finally {
+      task.endNanos = System.nanoTime();
+      listener.onTaskFinished(task);
+    }
+  }
+
+  /**
+   * @return The chain of tasks that determined how long the whole run took: the task that finished
+   *         last, preceded by whichever of its dependencies finished last, and so on.
+   */
+  static @NonNull List<Task> getCriticalPath(@NonNull List<Task> tasks) {
+    List<Task> path = new ArrayList<>();
+    Task       last = latest(tasks);
+
+    while (last != null) {
+      path.add(last);
+      last = latest(last.dependencies);
+    }
+
+    Collections.reverse(path);
+
+    return path;
+  }
+
+  private static @Nullable Task latest(@NonNull Collection<Task> tasks) {
+    Task latest = null;
+
+    for (Task task : tasks) {
+      if (latest == null || task.endNanos > latest.endNanos) {
+        latest = task;
+      }
+    }
+
+    return latest;
+  }
+
+  interface Listener {
+    void onTaskStarted(@NonNull Task task);
+    void onTaskFinished(@NonNull Task task);
+  }
+
+  static final class Task {
+    private final int       index;
+    private final String    name;
+    private final boolean   mainThread;
+    private final Set<Task> dependencies;
+    private final Runnable  runnable;
+
+    private volatile String thread;
+    private volatile long   startNanos;
+    private volatile long   endNanos;
+
+    private Task(int index, @NonNull String name, boolean mainThread, @NonNull Set<Task> dependencies, @NonNull Runnable runnable) {
+      this.index        = index;
+      this.name         = name;
+      this.mainThread   = mainThread;
+      this.dependencies = dependencies;
+      this.runnable     = runnable;
+    }
+
+    @NonNull String getName() {
+      return name;
+    }
+
+    @NonNull String getThread() {
+      return thread;
+    }
+
+    long getStartNanos() {
+      return startNanos;
+    }
+
+    long getEndNanos() {
+      return endNanos;
+    }
+
+    long getDurationNanos() {
+      return endNanos - startNanos;
+    }
+  }
+
+  private static final class Completion {
+    private final Task      task;
+    private final Throwable failure;
+
+    private Completion(@NonNull Task task, @Nullable Throwable failure) {
+      this.task    = task;
+      this.failure = failure;
+    }
+  }
+}
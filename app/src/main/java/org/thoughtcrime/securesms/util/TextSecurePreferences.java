@@ -215,6 +215,8 @@ public class TextSecurePreferences {
 
   private static final String ARGON2_TESTED = "argon2_tested";
 
+  private static final String DATABASE_WAL = "pref_database_wal";
+
   private static final String[] booleanPreferencesToBackup = {SCREEN_SECURITY_PREF,
                                                               INCOGNITO_KEYBORAD_PREF,
                                                               ALWAYS_RELAY_CALLS_PREF,
@@ -455,6 +457,17 @@ public class TextSecurePreferences {
     return getStringPreference(context, DATABASE_ENCRYPTED_SECRET, null);
   }
 
+  /**
+   * Read when the database is opened, so changes take effect on the next app start.
+   */
+  public static void setDatabaseWalEnabled(@NonNull Context context, boolean enabled) {
+    setBooleanPreference(context, DATABASE_WAL, enabled);
+  }
+
+  public static boolean isDatabaseWalEnabled(@NonNull Context context) {
+    return getBooleanPreference(context, DATABASE_WAL, false);
+  }
+
   public static void setHasSuccessfullyRetrievedDirectory(Context context, boolean value) {
     setBooleanPreference(context, SUCCESSFUL_DIRECTORY_PREF, value);
   }
@@ -0,0 +1,113 @@
+package org.thoughtcrime.securesms.audio;
+
+import androidx.annotation.NonNull;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.testutil.SystemOutLogger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual benchmarks for {@link WaveFormAccumulator}.
+ */
+@Ignore("Benchmarks, run manually")
+public final class WaveFormAccumulatorBenchmark {
+
+  private static final String TAG = Log.tag(WaveFormAccumulatorBenchmark.class);
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  /**
+   * Reduces a minute of 48kHz stereo PCM, in 4KB buffers as a decoder would hand them over, both
+   * with the previous per-sample reads of every fourth sample and with {@link WaveFormAccumulator}.
+   */
+  @Test
+  public void reduce_one_minute() {
+    int          bufferBytes = 4096;
+    int          buffers     = 48_000 * 2 * 2 * 60 / bufferBytes;
+    ByteBuffer[] pcm         = createPcm(buffers, bufferBytes);
+    long         durationUs  = TimeUnit.MINUTES.toMicros(1);
+    long         usPerBuffer = durationUs / buffers;
+
+    for (int i = 0; i < 20; i++) {
+      reduceLegacy(pcm, usPerBuffer, durationUs);
+      reduce(pcm, usPerBuffer, durationUs);
+    }
+
+    int  iterations = 50;
+    long legacy     = 0;
+    long current    = 0;
+
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      reduceLegacy(pcm, usPerBuffer, durationUs);
+      legacy += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      reduce(pcm, usPerBuffer, durationUs);
+      current += System.nanoTime() - start;
+    }
+
+    double samples = buffers * (bufferBytes / 2.0) * iterations;
+
+    Log.i(TAG, String.format(Locale.US, "Every fourth sample, per-sample reads: %.1f ms per minute of audio, %.0f Msamples/s", legacy / 1e6 / iterations, samples / 4 / (legacy / 1e3)));
+    Log.i(TAG, String.format(Locale.US, "All samples, bulk reads: %.1f ms per minute of audio, %.0f Msamples/s", current / 1e6 / iterations, samples / (current / 1e3)));
+  }
+
+  private static @NonNull byte[] reduce(@NonNull ByteBuffer[] pcm, long usPerBuffer, long durationUs) {
+    WaveFormAccumulator accumulator = new WaveFormAccumulator(46, durationUs);
+
+    for (int i = 0; i < pcm.length; i++) {
+      ByteBuffer buffer = pcm[i];
+      buffer.clear();
+      accumulator.add(i * usPerBuffer, buffer.slice().order(ByteOrder.nativeOrder()).asShortBuffer());
+    }
+
+    return accumulator.toWaveForm();
+  }
+
+  private static long[] reduceLegacy(@NonNull ByteBuffer[] pcm, long usPerBuffer, long durationUs) {
+    long[] wave = new long[46];
+
+    for (int b = 0; b < pcm.length; b++) {
+      ByteBuffer buf      = pcm[b];
+      int        barIndex = (int) ((wave.length * b * usPerBuffer) / durationUs);
+      long       total    = 0;
+
+      for (int i = 0; i < buf.capacity(); i += 2 * 4) {
+        total += Math.abs(buf.getShort(i));
+      }
+
+      if (barIndex >= 0 && barIndex < wave.length) {
+        wave[barIndex] += total;
+      }
+    }
+
+    return wave;
+  }
+
+  private static @NonNull ByteBuffer[] createPcm(int buffers, int bufferBytes) {
+    Random       random = new Random(1);
+    ByteBuffer[] pcm    = new ByteBuffer[buffers];
+
+    for (int i = 0; i < buffers; i++) {
+      pcm[i] = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.nativeOrder());
+
+      while (pcm[i].hasRemaining()) {
+        pcm[i].putShort((short) random.nextInt());
+      }
+    }
+
+    return pcm;
+  }
+}
@@ -0,0 +1,60 @@
+package org.thoughtcrime.securesms.audio;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public final class WaveFormAccumulatorTest {
+
+  @Test
+  public void sumOfMagnitudes_acrossChunks() {
+    short[] samples  = { 1, -2, 3, -4, 5, Short.MIN_VALUE, Short.MAX_VALUE };
+    long    expected = 1 + 2 + 3 + 4 + 5 + 32768 + 32767;
+
+    assertEquals(expected, WaveFormAccumulator.sumOfMagnitudes(ShortBuffer.wrap(samples), new short[3]));
+  }
+
+  @Test
+  public void sumOfMagnitudes_consumesBuffer() {
+    ShortBuffer samples = ShortBuffer.wrap(new short[] { 1, 2, 3 });
+
+    WaveFormAccumulator.sumOfMagnitudes(samples, new short[2]);
+
+    assertFalse(samples.hasRemaining());
+  }
+
+  @Test
+  public void sumOfMagnitudes_fullScaleDoesNotOverflow() {
+    short[] samples = new short[100_000];
+    Arrays.fill(samples, Short.MIN_VALUE);
+
+    assertEquals(100_000L * 32768, WaveFormAccumulator.sumOfMagnitudes(ShortBuffer.wrap(samples), new short[4096]));
+  }
+
+  @Test
+  public void toWaveForm_meanPerBarScaledToLoudest() {
+    WaveFormAccumulator accumulator = new WaveFormAccumulator(4, 4_000);
+
+    accumulator.add(0, ShortBuffer.wrap(new short[] { 100, -100 }));
+    accumulator.add(500, ShortBuffer.wrap(new short[] { 100, 100, 100, 100 }));
+    accumulator.add(1_000, ShortBuffer.wrap(new short[] { 50, -50 }));
+    accumulator.add(3_000, ShortBuffer.wrap(new short[] { -200, 200 }));
+    accumulator.add(4_000, ShortBuffer.wrap(new short[] { 1_000 }));
+
+    assertArrayEquals(new byte[] { (byte) 127, (byte) 63, 0, (byte) 255 }, accumulator.toWaveForm());
+  }
+
+  @Test
+  public void toWaveForm_silence() {
+    WaveFormAccumulator accumulator = new WaveFormAccumulator(2, 1_000);
+
+    accumulator.add(0, ShortBuffer.wrap(new short[] { 0, 0 }));
+
+    assertArrayEquals(new byte[2], accumulator.toWaveForm());
+  }
+}
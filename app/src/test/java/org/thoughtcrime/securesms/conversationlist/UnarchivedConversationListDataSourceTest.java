@@ -9,6 +9,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.rule.PowerMockRule;
@@ -260,6 +261,56 @@ public class UnarchivedConversationListDataSourceTest {
   }
 
 
+  @Test
+  public void givenFirstPageLoaded_whenIGetNextPage_thenIExpectSeekFromLastUnpinnedConversation() {
+    // GIVEN
+    Cursor unpinnedCursor = mock(Cursor.class);
+    when(unpinnedCursor.getCount()).thenReturn(100);
+    when(unpinnedCursor.moveToLast()).thenReturn(true);
+    when(unpinnedCursor.getPosition()).thenReturn(99);
+    when(unpinnedCursor.getColumnIndexOrThrow(ThreadDatabase.DATE)).thenReturn(0);
+    when(unpinnedCursor.getColumnIndexOrThrow(ThreadDatabase.ID)).thenReturn(1);
+    when(unpinnedCursor.getLong(0)).thenReturn(1000L);
+    when(unpinnedCursor.getLong(1)).thenReturn(7L);
+
+    setupThreadDatabaseCursors(0, 0);
+    when(threadDatabase.getUnarchivedConversationList(eq(false), anyLong(), anyLong())).thenReturn(unpinnedCursor);
+    when(threadDatabase.getUnarchivedConversationList(any(ThreadDatabase.PageKey.class), anyLong(), anyLong())).thenReturn(unpinnedCursor);
+    when(threadDatabase.getUnarchivedConversationListCount()).thenReturn(300);
+    testSubject.getTotalCount();
+    testSubject.getCursor(0, 100);
+
+    // WHEN
+    testSubject.getCursor(100, 100);
+
+    // THEN
+    ArgumentCaptor<ThreadDatabase.PageKey> key = ArgumentCaptor.forClass(ThreadDatabase.PageKey.class);
+    verify(threadDatabase).getUnarchivedConversationList(key.capture(), eq(0L), eq(100L));
+    assertEquals(1000L, key.getValue().getDate());
+    assertEquals(7L, key.getValue().getThreadId());
+  }
+
+  @Test
+  public void givenFirstPageLoadedAndDataInvalidated_whenIGetNextPage_thenIExpectOffset() {
+    // GIVEN
+    Cursor unpinnedCursor = mock(Cursor.class);
+    when(unpinnedCursor.moveToLast()).thenReturn(true);
+    when(unpinnedCursor.getPosition()).thenReturn(99);
+
+    setupThreadDatabaseCursors(0, 0);
+    when(threadDatabase.getUnarchivedConversationList(eq(false), anyLong(), anyLong())).thenReturn(unpinnedCursor);
+    when(threadDatabase.getUnarchivedConversationListCount()).thenReturn(300);
+    testSubject.getTotalCount();
+    testSubject.getCursor(0, 100);
+    testSubject.getTotalCount();
+
+    // WHEN
+    testSubject.getCursor(100, 100);
+
+    // THEN
+    verify(threadDatabase).getUnarchivedConversationList(false, 100, 100);
+  }
+
   private void setupThreadDatabaseCursors(int pinned, int unpinned) {
     Cursor pinnedCursor = mock(Cursor.class);
     when(pinnedCursor.getCount()).thenReturn(pinned);
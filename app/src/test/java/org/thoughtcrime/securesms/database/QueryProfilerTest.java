@@ -0,0 +1,47 @@
+package org.thoughtcrime.securesms.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class QueryProfilerTest {
+
+  @Test
+  public void fingerprint_replaces_literals() {
+    assertEquals("SELECT * FROM sms WHERE thread_id = ? AND body LIKE ? AND date > ?",
+                 QueryProfiler.fingerprint("SELECT * FROM sms WHERE thread_id = 12 AND body LIKE '%it''s%' AND date > 1.5e3"));
+  }
+
+  @Test
+  public void fingerprint_is_the_same_for_different_arguments() {
+    assertEquals(QueryProfiler.fingerprint("SELECT * FROM mms WHERE _id = 1 LIMIT 10"),
+                 QueryProfiler.fingerprint("SELECT * FROM mms WHERE _id = ?  LIMIT 500"));
+  }
+
+  @Test
+  public void fingerprint_collapses_lists() {
+    assertEquals("DELETE FROM mms WHERE _id IN (?)", QueryProfiler.fingerprint("DELETE FROM mms WHERE _id IN (1, 2,3)"));
+    assertEquals("DELETE FROM mms WHERE _id IN (?)", QueryProfiler.fingerprint("DELETE FROM mms WHERE _id IN (?, ?, ?, ?)"));
+  }
+
+  @Test
+  public void fingerprint_keeps_separate_arguments() {
+    assertEquals("UPDATE sms SET read = ?, seen = ? WHERE _id = ?", QueryProfiler.fingerprint("UPDATE sms SET read = 1, seen = 1 WHERE _id = 5"));
+  }
+
+  @Test
+  public void fingerprint_collapses_whitespace() {
+    assertEquals("SELECT a FROM b WHERE c = ?", QueryProfiler.fingerprint("\n  SELECT\n    a\tFROM  b\n  WHERE c = ?1  \n"));
+  }
+
+  @Test
+  public void fingerprint_keeps_identifiers() {
+    assertEquals("SELECT part1, \"column 2\", t2.x FROM t2", QueryProfiler.fingerprint("SELECT part1, \"column 2\", t2.x FROM t2"));
+  }
+
+  @Test
+  public void fingerprint_replaces_blob_literals() {
+    assertEquals("SELECT * FROM recipient WHERE profile_key = ? AND index_x = ?",
+                 QueryProfiler.fingerprint("SELECT * FROM recipient WHERE profile_key = X'0A0B' AND index_x = x'FF'"));
+  }
+}
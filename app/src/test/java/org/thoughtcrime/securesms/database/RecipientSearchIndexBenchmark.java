@@ -0,0 +1,84 @@
+package org.thoughtcrime.securesms.database;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.testutil.SystemOutLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.thoughtcrime.securesms.database.RecipientSearchIndexTest.NAMES;
+
+/**
+ * Manual benchmark for {@link RecipientSearchIndex}.
+ */
+@Ignore("Benchmark, run manually")
+public final class RecipientSearchIndexBenchmark {
+
+  private static final String TAG = Log.tag(RecipientSearchIndexBenchmark.class);
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  /**
+   * Loads 50,000 recipients and then searches as if typing a name, which is what the contact list
+   * does on each keystroke.
+   */
+  @Test
+  public void recipient_search_50k() {
+    Random                         random = new Random(50_000);
+    String[]                       first  = { "Anna", "Bruno", "Chloé", "Dmitri", "Élodie", "Fatima", "Gustav", "Hiroshi", "Ingrid", "José", "Kwame", "Léa", "Mohammed", "Nadia", "Oskar", "Priya" };
+    String[]                       last   = { "Andersson", "Björk", "Castillo", "Dubois", "Eriksen", "Fernández", "García", "Hoffmann", "Ivanova", "Jensen", "Kowalski", "López", "Müller", "Nakamura", "Okafor", "Petrović" };
+    List<RecipientSearchIndex.Row> rows   = new ArrayList<>();
+    List<String>                   names  = new ArrayList<>();
+
+    for (int i = 1; i <= 50_000; i++) {
+      String name  = first[random.nextInt(first.length)] + " " + last[random.nextInt(last.length)] + " " + i;
+      String phone = "+1555" + String.format("%07d", random.nextInt(10_000_000));
+
+      names.add(name);
+      rows.add(new RecipientSearchIndex.Row(i, phone, null, "user" + i, name, name, name.replace(" ", "")));
+    }
+
+    RecipientSearchIndex index = new RecipientSearchIndex(new RecipientSearchIndexTest.TestSource(rows.toArray(new RecipientSearchIndex.Row[0])));
+
+    long loadStart = System.nanoTime();
+    index.search("x", NAMES, 1000);
+    long loadMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - loadStart);
+
+    String typed = "hoffmann 4";
+
+    for (int warmup = 0; warmup < 20; warmup++) {
+      for (int i = 1; i <= typed.length(); i++) {
+        index.search(typed.substring(0, i), NAMES, 1000);
+      }
+      index.search("z", NAMES, 1000);
+    }
+
+    long searchStart = System.nanoTime();
+    for (int i = 1; i <= typed.length(); i++) {
+      index.search(typed.substring(0, i), NAMES, 1000);
+    }
+    long searchMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - searchStart);
+
+    long fullScanStart = System.nanoTime();
+    for (int i = 1; i <= typed.length(); i++) {
+      Pattern glob = RecipientSearchIndexTest.globPattern(typed.substring(0, i));
+
+      for (String name : names) {
+        glob.matcher(name).matches();
+      }
+    }
+    long fullScanMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - fullScanStart);
+
+    Log.i(TAG, String.format(Locale.US, "Load: %d us, index for %d keystrokes: %d us, pattern scan: %d us", loadMicros, typed.length(), searchMicros, fullScanMicros));
+  }
+}
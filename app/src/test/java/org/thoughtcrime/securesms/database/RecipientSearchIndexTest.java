@@ -0,0 +1,193 @@
+package org.thoughtcrime.securesms.database;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class RecipientSearchIndexTest {
+
+  static final int NAMES = RecipientSearchIndex.FIELD_SORT_NAME | RecipientSearchIndex.FIELD_USERNAME | RecipientSearchIndex.FIELD_PHONE;
+
+  @Test
+  public void normalize_folds_case_and_accents() {
+    assertEquals("zoe", RecipientSearchIndex.normalize("Zoë"));
+    assertEquals("francois", RecipientSearchIndex.normalize("FRANÇOIS"));
+    assertEquals("+15555550123", RecipientSearchIndex.normalize("+15555550123"));
+  }
+
+  @Test
+  public void search_matches_anywhere_in_the_name() {
+    TestSource           source = new TestSource(row(1, "Anna Bell"),
+                                                 row(2, "Bella Swan"),
+                                                 row(3, "Isabella"),
+                                                 row(4, "Nobody"));
+    RecipientSearchIndex index  = new RecipientSearchIndex(source);
+
+    assertEquals(ids(1, 2, 3), index.search("bel", NAMES, 100));
+    assertEquals(ids(1, 2, 3), index.search("BÉL", NAMES, 100));
+    assertEquals(ids(2), index.search("bella s", NAMES, 100));
+  }
+
+  @Test
+  public void search_only_checks_requested_fields() {
+    TestSource           source = new TestSource(new RecipientSearchIndex.Row(1, "+15555550123", "bob@example.com", null, null, "Bob", "Bob"));
+    RecipientSearchIndex index  = new RecipientSearchIndex(source);
+
+    assertEquals(ids(), index.search("example", NAMES, 100));
+    assertEquals(ids(1), index.search("example", RecipientSearchIndex.FIELD_EMAIL, 100));
+  }
+
+  @Test
+  public void search_returns_null_over_limit() {
+    TestSource           source = new TestSource(row(1, "Al"), row(2, "Alice"), row(3, "Alan"));
+    RecipientSearchIndex index  = new RecipientSearchIndex(source);
+
+    assertNull(index.search("a", NAMES, 2));
+    assertNull(index.search("al", NAMES, 2));
+    assertEquals(ids(2), index.search("ali", NAMES, 2));
+  }
+
+  @Test
+  public void search_picks_up_changes_and_inserts() {
+    TestSource           source = new TestSource(row(1, "Alice"), row(2, "Bob"));
+    RecipientSearchIndex index  = new RecipientSearchIndex(source);
+
+    assertEquals(ids(1), index.search("al", NAMES, 100));
+
+    source.rows.set(1, row(2, "Alfred"));
+    source.rows.add(row(3, "Alan"));
+    index.onRecipientChanged(2);
+
+    assertEquals(ids(1, 2, 3), index.search("al", NAMES, 100));
+    assertEquals(ids(2), index.search("alf", NAMES, 100));
+
+    source.rows.set(0, row(1, "Carol"));
+    index.invalidate();
+
+    assertEquals(ids(2, 3), index.search("al", NAMES, 100));
+  }
+
+  @Test
+  public void search_finds_everything_the_glob_does() {
+    String[]                       names  = { "Zoë Ångström", "ZOE", "Łukasz", "Jürgen Müller", "Ñandú", "Chloé", "Ærin", "İlker", "李小龙", "O'Brien", "+15555550123" };
+    String[]                       terms  = { "z", "zo", "zoe", "ÖE", "ang", "AN", "l", "łu", "u", "mu", "MÜ", "nan", "cl", "é", "æ", "i", "il", "李", "小龙", "o'", "555", "+1", "x" };
+    List<RecipientSearchIndex.Row> rows   = new ArrayList<>();
+
+    for (int i = 0; i < names.length; i++) {
+      rows.add(row(i + 1, names[i]));
+    }
+
+    RecipientSearchIndex index = new RecipientSearchIndex(new TestSource(rows.toArray(new RecipientSearchIndex.Row[0])));
+
+    for (String term : terms) {
+      Pattern   glob  = globPattern(term);
+      Set<Long> found = index.search(term, NAMES, 100);
+
+      for (int i = 0; i < names.length; i++) {
+        if (glob.matcher(names[i]).matches()) {
+          assertTrue(names[i] + " matches " + term, found.contains((long) (i + 1)));
+        }
+      }
+    }
+  }
+
+  private static @NonNull Set<Long> ids(long... ids) {
+    Set<Long> set = new HashSet<>();
+
+    for (long id : ids) {
+      set.add(id);
+    }
+
+    return set;
+  }
+
+  private static @NonNull RecipientSearchIndex.Row row(long id, @NonNull String name) {
+    return new RecipientSearchIndex.Row(id, null, null, null, name, name, name.replace(" ", ""));
+  }
+
+  /**
+   * The GLOB {@link RecipientDatabase} builds for a query, as a regular expression.
+   */
+  static @NonNull Pattern globPattern(@NonNull String query) {
+    StringBuilder pattern = new StringBuilder(".*");
+
+    for (int i = 0; i < query.length(); ) {
+      int    codePoint = query.codePointAt(i);
+      String point     = new String(Character.toChars(codePoint));
+
+      pattern.append("[")
+             .append(escape(point.toLowerCase()))
+             .append(escape(point.toUpperCase()))
+             .append(RecipientDatabase.getAccentuatedCharRegex(point.toLowerCase()))
+             .append("]");
+
+      i += Character.charCount(codePoint);
+    }
+
+    return Pattern.compile(pattern.append(".*").toString(), Pattern.DOTALL);
+  }
+
+  private static @NonNull String escape(@NonNull String value) {
+    StringBuilder escaped = new StringBuilder();
+
+    for (int i = 0; i < value.length(); ) {
+      int codePoint = value.codePointAt(i);
+      escaped.append(String.format("\\x{%x}", codePoint));
+      i += Character.charCount(codePoint);
+    }
+
+    return escaped.toString();
+  }
+
+  static final class TestSource implements RecipientSearchIndex.Source {
+
+    private final List<RecipientSearchIndex.Row> rows;
+
+    TestSource(@NonNull RecipientSearchIndex.Row... rows) {
+      this.rows = new ArrayList<>(Arrays.asList(rows));
+    }
+
+    @Override
+    public @NonNull List<RecipientSearchIndex.Row> readAll() {
+      return new ArrayList<>(rows);
+    }
+
+    @Override
+    public @NonNull List<RecipientSearchIndex.Row> readIds(@NonNull Collection<Long> ids) {
+      List<RecipientSearchIndex.Row> result = new ArrayList<>();
+
+      for (RecipientSearchIndex.Row row : rows) {
+        if (ids.contains(row.getId())) {
+          result.add(row);
+        }
+      }
+
+      return result;
+    }
+
+    @Override
+    public @NonNull List<RecipientSearchIndex.Row> readAfter(long id) {
+      List<RecipientSearchIndex.Row> result = new ArrayList<>();
+
+      for (RecipientSearchIndex.Row row : rows) {
+        if (row.getId() > id) {
+          result.add(row);
+        }
+      }
+
+      return result;
+    }
+  }
+}
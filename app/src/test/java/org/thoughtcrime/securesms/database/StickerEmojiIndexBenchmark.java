@@ -0,0 +1,75 @@
+package org.thoughtcrime.securesms.database;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.testutil.SystemOutLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual benchmark for {@link StickerEmojiIndex}.
+ */
+@Ignore("Benchmark, run manually")
+public final class StickerEmojiIndexBenchmark {
+
+  private static final String TAG = Log.tag(StickerEmojiIndexBenchmark.class);
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  /**
+   * 100 installed packs of 30 stickers, searched for each of the emoji they use, which is what
+   * typing an emoji into the compose box does.
+   */
+  @Test
+  public void sticker_search_100_packs() {
+    int[]                       emoji = { 0x1F600, 0x1F602, 0x1F60D, 0x1F44D, 0x2764, 0x1F389, 0x1F525, 0x1F914, 0x1F622, 0x1F621, 0x1F44B, 0x1F64F };
+    List<StickerEmojiIndex.Row> rows  = new ArrayList<>();
+
+    for (int pack = 0; pack < 100; pack++) {
+      for (int sticker = 0; sticker < 30; sticker++) {
+        long   rowId = pack * 30L + sticker + 1;
+        String tag   = new String(Character.toChars(emoji[(pack + sticker) % emoji.length]));
+
+        if (sticker % 5 == 0) {
+          tag += new String(Character.toChars(emoji[(pack + sticker + 1) % emoji.length]));
+        }
+
+        rows.add(StickerEmojiIndexTest.row(rowId, "pack" + pack, sticker, tag, rowId % 7 == 0 ? rowId : 0));
+      }
+    }
+
+    StickerEmojiIndex index = new StickerEmojiIndex(new StickerEmojiIndexTest.TestSource(rows.toArray(new StickerEmojiIndex.Row[0])), StickerEmojiIndexTest.CODE_POINTS);
+
+    long loadStart = System.nanoTime();
+    index.preload();
+    long loadMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - loadStart);
+
+    for (int warmup = 0; warmup < 1000; warmup++) {
+      for (int codePoint : emoji) {
+        index.search(Collections.singleton(new String(Character.toChars(codePoint))));
+      }
+    }
+
+    int  searches    = 0;
+    int  results     = 0;
+    long searchStart = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      for (int codePoint : emoji) {
+        results += index.search(Collections.singleton(new String(Character.toChars(codePoint)))).size();
+        searches++;
+      }
+    }
+    long searchMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - searchStart);
+
+    Log.i(TAG, String.format(Locale.US, "Load %d stickers: %d us, search with ~%d results: %.1f us", rows.size(), loadMicros, results / searches, searchMicros / (float) searches));
+  }
+}
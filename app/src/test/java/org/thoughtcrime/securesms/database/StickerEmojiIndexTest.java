@@ -0,0 +1,173 @@
+package org.thoughtcrime.securesms.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+import org.thoughtcrime.securesms.database.model.StickerRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public final class StickerEmojiIndexTest {
+
+  static final StickerEmojiIndex.KeyFunction CODE_POINTS = StickerEmojiIndexTest::codePoints;
+
+  @Test
+  public void search_finds_stickers_by_any_of_their_emoji() {
+    TestSource        source = new TestSource(row(1, "a", 1, "😀", 0),
+                                              row(2, "a", 2, "😀🎉", 0),
+                                              row(3, "b", 1, "🎉", 0));
+    StickerEmojiIndex index  = new StickerEmojiIndex(source, CODE_POINTS);
+
+    assertEquals(Arrays.asList(1L, 2L), rowIds(index.search(Collections.singleton("😀"))));
+    assertEquals(Arrays.asList(2L, 3L), rowIds(index.search(Collections.singleton("🎉"))));
+    assertEquals(Arrays.asList(1L, 2L, 3L), rowIds(index.search(Arrays.asList("😀", "🎉"))));
+    assertEquals(Collections.emptyList(), rowIds(index.search(Collections.singleton("👍"))));
+  }
+
+  @Test
+  public void search_ranks_most_recently_used_first() {
+    TestSource        source = new TestSource(row(1, "a", 1, "😀", 0),
+                                              row(2, "a", 2, "😀", 200),
+                                              row(3, "b", 1, "😀", 100));
+    StickerEmojiIndex index  = new StickerEmojiIndex(source, CODE_POINTS);
+
+    assertEquals(Arrays.asList(2L, 3L, 1L), rowIds(index.search(Collections.singleton("😀"))));
+
+    index.onStickerUsed(1, 300);
+
+    assertEquals(Arrays.asList(1L, 2L, 3L), rowIds(index.search(Collections.singleton("😀"))));
+  }
+
+  @Test
+  public void search_only_reads_database_once() {
+    TestSource        source = new TestSource(row(1, "a", 1, "😀", 0));
+    StickerEmojiIndex index  = new StickerEmojiIndex(source, CODE_POINTS);
+
+    index.preload();
+    index.search(Collections.singleton("😀"));
+    index.search(Collections.singleton("🎉"));
+
+    assertEquals(1, source.reads);
+  }
+
+  @Test
+  public void search_picks_up_installs_and_removals() {
+    TestSource        source = new TestSource(row(1, "a", 1, "😀", 0));
+    StickerEmojiIndex index  = new StickerEmojiIndex(source, CODE_POINTS);
+
+    assertEquals(Collections.singletonList(1L), rowIds(index.search(Collections.singleton("😀"))));
+
+    source.rows.add(row(2, "b", 1, "😀", 0));
+    source.rows.add(row(3, "b", 2, "🎉", 0));
+    index.onStickerInserted("b", 1);
+    index.onStickerInserted("b", 2);
+
+    assertEquals(Arrays.asList(1L, 2L), rowIds(index.search(Collections.singleton("😀"))));
+    assertEquals(Collections.singletonList(3L), rowIds(index.search(Collections.singleton("🎉"))));
+
+    index.onPackRemoved("a");
+
+    assertEquals(Collections.singletonList(2L), rowIds(index.search(Collections.singleton("😀"))));
+
+    index.onPackRemoved("b");
+
+    assertEquals(Collections.emptyList(), rowIds(index.search(Arrays.asList("😀", "🎉"))));
+  }
+
+  @Test
+  public void onStickerInserted_replaces_existing_sticker() {
+    TestSource        source = new TestSource(row(1, "a", 1, "😀", 0));
+    StickerEmojiIndex index  = new StickerEmojiIndex(source, CODE_POINTS);
+
+    index.preload();
+
+    source.rows.set(0, row(1, "a", 1, "🎉", 0));
+    index.onStickerInserted("a", 1);
+
+    assertEquals(Collections.emptyList(), rowIds(index.search(Collections.singleton("😀"))));
+    assertEquals(Collections.singletonList(1L), rowIds(index.search(Collections.singleton("🎉"))));
+  }
+
+  @Test
+  public void changes_before_load_are_read_from_source() {
+    TestSource        source = new TestSource(row(1, "a", 1, "😀", 0));
+    StickerEmojiIndex index  = new StickerEmojiIndex(source, CODE_POINTS);
+
+    source.rows.add(row(2, "b", 1, "😀", 0));
+    index.onStickerInserted("b", 1);
+    index.onPackRemoved("a");
+    source.rows.remove(0);
+
+    assertEquals(Collections.singletonList(2L), rowIds(index.search(Collections.singleton("😀"))));
+    assertEquals(0, source.singleReads);
+  }
+
+  static @NonNull StickerEmojiIndex.Row row(long rowId, @NonNull String packId, int stickerId, @NonNull String emoji, long lastUsed) {
+    return new StickerEmojiIndex.Row(new StickerRecord(rowId, packId, "key", stickerId, emoji, "image/webp", 100, false), lastUsed);
+  }
+
+  private static @NonNull List<Long> rowIds(@NonNull List<StickerRecord> records) {
+    List<Long> ids = new ArrayList<>(records.size());
+
+    for (StickerRecord record : records) {
+      ids.add(record.getRowId());
+    }
+
+    return ids;
+  }
+
+  /**
+   * Stands in for splitting a tag into emoji, treating each code point as one.
+   */
+  private static @NonNull Collection<String> codePoints(@NonNull String emoji) {
+    Set<String> keys = new HashSet<>();
+
+    for (int i = 0; i < emoji.length(); ) {
+      int codePoint = emoji.codePointAt(i);
+      keys.add(new String(Character.toChars(codePoint)));
+      i += Character.charCount(codePoint);
+    }
+
+    return keys;
+  }
+
+  static final class TestSource implements StickerEmojiIndex.Source {
+
+    private final List<StickerEmojiIndex.Row> rows;
+
+    private int reads;
+    private int singleReads;
+
+    TestSource(@NonNull StickerEmojiIndex.Row... rows) {
+      this.rows = new ArrayList<>(Arrays.asList(rows));
+    }
+
+    @Override
+    public @NonNull List<StickerEmojiIndex.Row> readAll() {
+      reads++;
+      return new ArrayList<>(rows);
+    }
+
+    @Override
+    public @Nullable StickerEmojiIndex.Row read(@NonNull String packId, int stickerId) {
+      singleReads++;
+
+      for (StickerEmojiIndex.Row row : rows) {
+        if (row.getRecord().getPackId().equals(packId) && row.getRecord().getStickerId() == stickerId) {
+          return row;
+        }
+      }
+
+      return null;
+    }
+  }
+}
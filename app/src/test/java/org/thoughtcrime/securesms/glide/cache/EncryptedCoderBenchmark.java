@@ -0,0 +1,118 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruArrayPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.TestKey;
+import org.thoughtcrime.securesms.testutil.SystemOutLogger;
+import org.thoughtcrime.securesms.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.delete;
+import static org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.openWithCipherStream;
+import static org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.randomBytes;
+import static org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.writeWithCipherStream;
+
+/**
+ * Manual benchmarks for {@link EncryptedCoder} and {@link TieredDiskCache}.
+ */
+@Ignore("Benchmarks, run manually")
+public final class EncryptedCoderBenchmark {
+
+  private static final String TAG = Log.tag(EncryptedCoderBenchmark.class);
+
+  private final byte[]         secret    = Util.getSecretBytes(32);
+  private final ArrayPool      arrayPool = new LruArrayPool();
+  private final EncryptedCoder coder     = new EncryptedCoder();
+
+  private File directory;
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("glide-", null);
+    directory.delete();
+    directory.mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    delete(directory);
+  }
+
+  /**
+   * Reads back 1,000 encrypted thumbnails of 24 KB, as scrolling a media-heavy chat would, once
+   * through cipher streams with a new Mac and Cipher per file, and once through the pooled coder
+   * from packs.
+   */
+  @Test
+  public void thumbnail_decode() throws IOException, GeneralSecurityException {
+    int    thumbnails = 1_000;
+    byte[] thumbnail  = randomBytes(24 * 1024);
+    byte[] buffer     = new byte[ArrayPool.STANDARD_BUFFER_SIZE_BYTES];
+
+    TieredDiskCache cache = new TieredDiskCache(new File(directory, "image_manager_disk_cache"), 256 * 1024 * 1024);
+
+    for (int i = 0; i < thumbnails; i++) {
+      writeWithCipherStream(secret, new File(directory, "legacy-" + i), thumbnail);
+      cache.put(new TestKey("thumbnail-" + i), file -> write(file, thumbnail));
+    }
+
+    long legacyStart = System.nanoTime();
+    for (int i = 0; i < thumbnails; i++) {
+      try (InputStream inputStream = openWithCipherStream(secret, new File(directory, "legacy-" + i))) {
+        drain(inputStream, buffer);
+      }
+    }
+    long legacyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - legacyStart);
+
+    long pooledStart = System.nanoTime();
+    for (int i = 0; i < thumbnails; i++) {
+      File file = cache.get(new TestKey("thumbnail-" + i));
+
+      try (InputStream inputStream = coder.createEncryptedInputStream(secret, cache.openPacked(file), arrayPool)) {
+        drain(inputStream, buffer);
+      }
+    }
+    long pooledMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooledStart);
+
+    long megabytes = (long) thumbnails * thumbnail.length / (1024 * 1024);
+
+    Log.i(TAG, String.format(Locale.US, "Cipher streams: %d ms (%d MB/s)", legacyMillis, megabytes * 1000 / Math.max(1, legacyMillis)));
+    Log.i(TAG, String.format(Locale.US, "Pooled coder/packs: %d ms (%d MB/s)", pooledMillis, megabytes * 1000 / Math.max(1, pooledMillis)));
+  }
+
+  private boolean write(@NonNull File file, @NonNull byte[] data) {
+    try (OutputStream outputStream = coder.createEncryptedOutputStream(secret, file, arrayPool)) {
+      outputStream.write(data);
+      return true;
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static void drain(@NonNull InputStream inputStream, @NonNull byte[] buffer) throws IOException {
+    //noinspection StatementWithEmptyBody
+    while (inputStream.read(buffer) != -1) {
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruArrayPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.core.util.StreamUtil;
+import org.thoughtcrime.securesms.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class EncryptedCoderTest {
+
+  private static final byte[] MAGIC_BYTES = {(byte)0x91, (byte)0x5e, (byte)0x6d, (byte)0xb4,
+                                             (byte)0x09, (byte)0xa6, (byte)0x68, (byte)0xbe,
+                                             (byte)0xe5, (byte)0xb1, (byte)0x1b, (byte)0xd7,
+                                             (byte)0x29, (byte)0xe5, (byte)0x04, (byte)0xcc};
+
+  private final byte[]         secret    = Util.getSecretBytes(32);
+  private final ArrayPool      arrayPool = new LruArrayPool();
+  private final EncryptedCoder coder     = new EncryptedCoder();
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("glide-", null);
+    directory.delete();
+    directory.mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    delete(directory);
+  }
+
+  @Test
+  public void round_trips_through_pooled_buffers() throws IOException {
+    byte[] data = randomBytes(200_000);
+    File   file = new File(directory, "entry");
+
+    try (OutputStream outputStream = coder.createEncryptedOutputStream(secret, file, arrayPool)) {
+      outputStream.write(data, 0, 1000);
+      outputStream.write(data[1000]);
+      outputStream.write(data, 1001, data.length - 1001);
+    }
+
+    assertArrayEquals(data, readAll(coder.createEncryptedInputStream(secret, file, arrayPool)));
+  }
+
+  @Test
+  public void reads_files_written_with_cipher_streams() throws IOException, GeneralSecurityException {
+    byte[] data = randomBytes(50_000);
+    File   file = new File(directory, "legacy");
+
+    writeWithCipherStream(secret, file, data);
+
+    assertArrayEquals(data, readAll(coder.createEncryptedInputStream(secret, file, arrayPool)));
+  }
+
+  @Test
+  public void writes_files_readable_with_cipher_streams() throws IOException, GeneralSecurityException {
+    byte[] data = randomBytes(50_000);
+    File   file = new File(directory, "entry");
+
+    try (OutputStream outputStream = coder.createEncryptedOutputStream(secret, file, arrayPool)) {
+      outputStream.write(data);
+    }
+
+    assertArrayEquals(data, readWithCipherStream(secret, file));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejects_another_key() throws IOException {
+    File file = new File(directory, "entry");
+
+    try (OutputStream outputStream = coder.createEncryptedOutputStream(secret, file, arrayPool)) {
+      outputStream.write(randomBytes(100));
+    }
+
+    coder.createEncryptedInputStream(Util.getSecretBytes(32), file, arrayPool);
+  }
+
+  @Test
+  public void packs_small_entries_and_reloads_them() throws IOException {
+    File            cacheDirectory = new File(directory, "image_manager_disk_cache");
+    TieredDiskCache cache          = new TieredDiskCache(cacheDirectory, 64 * 1024 * 1024);
+    byte[]          small          = randomBytes(10_000);
+    byte[]          large          = randomBytes(TieredDiskCache.SMALL_ENTRY_MAX_SIZE + 1);
+
+    cache.put(new TestKey("small"), file -> write(file, small));
+    cache.put(new TestKey("large"), file -> write(file, large));
+
+    File smallFile = cache.get(new TestKey("small"));
+    File largeFile = cache.get(new TestKey("large"));
+
+    assertTrue(cache.isPacked(smallFile));
+    assertFalse(cache.isPacked(largeFile));
+    assertArrayEquals(small, decrypt(cache.openPacked(smallFile)));
+    assertArrayEquals(large, decrypt(new FileInputStream(largeFile)));
+
+    TieredDiskCache reopened = new TieredDiskCache(cacheDirectory, 64 * 1024 * 1024);
+
+    assertArrayEquals(small, decrypt(reopened.openPacked(reopened.get(new TestKey("small")))));
+
+    reopened.delete(new TestKey("small"));
+
+    assertNull(reopened.get(new TestKey("small")));
+    assertNull(new TieredDiskCache(cacheDirectory, 64 * 1024 * 1024).get(new TestKey("small")));
+  }
+
+  private boolean write(@NonNull File file, @NonNull byte[] data) {
+    try (OutputStream outputStream = coder.createEncryptedOutputStream(secret, file, arrayPool)) {
+      outputStream.write(data);
+      return true;
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private byte[] decrypt(@NonNull InputStream encrypted) throws IOException {
+    return readAll(coder.createEncryptedInputStream(secret, encrypted, arrayPool));
+  }
+
+  private static byte[] readAll(@NonNull InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    StreamUtil.copy(inputStream, outputStream);
+    return outputStream.toByteArray();
+  }
+
+  static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+
+  /**
+   * Writes a file the way the cache did before, through a {@link CipherOutputStream}.
+   */
+  static void writeWithCipherStream(@NonNull byte[] secret, @NonNull File file, @NonNull byte[] data) throws IOException, GeneralSecurityException {
+    byte[] random = Util.getSecretBytes(32);
+
+    try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+      fileOutputStream.write(MAGIC_BYTES);
+      fileOutputStream.write(random);
+
+      try (OutputStream outputStream = new CipherOutputStream(fileOutputStream, cipher(Cipher.ENCRYPT_MODE, secret, random))) {
+        outputStream.write(MAGIC_BYTES);
+        outputStream.write(data);
+      }
+    }
+  }
+
+  private static byte[] readWithCipherStream(@NonNull byte[] secret, @NonNull File file) throws IOException, GeneralSecurityException {
+    try (InputStream inputStream = openWithCipherStream(secret, file)) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      StreamUtil.copy(inputStream, outputStream);
+      return outputStream.toByteArray();
+    }
+  }
+
+  static InputStream openWithCipherStream(@NonNull byte[] secret, @NonNull File file) throws IOException, GeneralSecurityException {
+    FileInputStream fileInputStream = new FileInputStream(file);
+    byte[]          random          = new byte[32];
+
+    StreamUtil.readFully(fileInputStream, new byte[MAGIC_BYTES.length]);
+    StreamUtil.readFully(fileInputStream, random);
+
+    InputStream inputStream = new CipherInputStream(fileInputStream, cipher(Cipher.DECRYPT_MODE, secret, random));
+    StreamUtil.readFully(inputStream, new byte[MAGIC_BYTES.length]);
+
+    return inputStream;
+  }
+
+  private static Cipher cipher(int mode, @NonNull byte[] secret, @NonNull byte[] random) throws GeneralSecurityException {
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+
+    Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+    cipher.init(mode, new SecretKeySpec(mac.doFinal(random), "AES"), new IvParameterSpec(new byte[16]));
+
+    return cipher;
+  }
+
+  static void delete(@NonNull File file) {
+    File[] children = file.listFiles();
+
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+
+    file.delete();
+  }
+
+  static final class TestKey implements Key {
+    private final String name;
+
+    TestKey(@NonNull String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+      messageDigest.update(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof TestKey && ((TestKey) o).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+  }
+}
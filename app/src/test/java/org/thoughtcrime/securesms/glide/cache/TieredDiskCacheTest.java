@@ -0,0 +1,206 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.core.util.StreamUtil;
+import org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.TestKey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.delete;
+import static org.thoughtcrime.securesms.glide.cache.EncryptedCoderTest.randomBytes;
+
+public final class TieredDiskCacheTest {
+
+  private static final long MAX_SIZE   = 64 * 1024 * 1024;
+  private static final int  ENTRY_SIZE = 40 * 1024;
+
+  /** Enough entries of {@link #ENTRY_SIZE} to fill more packs than are kept. */
+  private static final int ENTRIES_TO_EVICT = 1000;
+
+  private File directory;
+  private File cacheDirectory;
+  private File packDirectory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("glide-", null);
+    directory.delete();
+    directory.mkdirs();
+
+    cacheDirectory = new File(directory, "image_manager_disk_cache");
+    packDirectory  = new File(directory, "image_manager_disk_cache_packed");
+  }
+
+  @After
+  public void tearDown() {
+    delete(directory);
+  }
+
+  @Test
+  public void evicts_the_oldest_pack_once_full() throws IOException {
+    TieredDiskCache cache = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+
+    for (int i = 0; i < ENTRIES_TO_EVICT; i++) {
+      put(cache, "entry-" + i, entry(i));
+    }
+
+    assertNull(cache.get(new TestKey("entry-0")));
+    assertArrayEquals(entry(ENTRIES_TO_EVICT - 1), read(cache, "entry-" + (ENTRIES_TO_EVICT - 1)));
+    assertTrue(packDirectory.listFiles().length <= 8);
+
+    TieredDiskCache reopened = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+
+    assertNull(reopened.get(new TestKey("entry-0")));
+    assertArrayEquals(entry(ENTRIES_TO_EVICT - 1), read(reopened, "entry-" + (ENTRIES_TO_EVICT - 1)));
+  }
+
+  @Test
+  public void deleted_entries_stay_deleted_after_reload() throws IOException {
+    TieredDiskCache cache = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+
+    put(cache, "deleted", entry(1));
+    put(cache, "kept", entry(2));
+    put(cache, "replaced", entry(3));
+
+    cache.delete(new TestKey("deleted"));
+    cache.delete(new TestKey("replaced"));
+    put(cache, "replaced", entry(4));
+
+    TieredDiskCache reopened = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+
+    assertNull(reopened.get(new TestKey("deleted")));
+    assertArrayEquals(entry(2), read(reopened, "kept"));
+    assertArrayEquals(entry(4), read(reopened, "replaced"));
+  }
+
+  @Test
+  public void truncated_pack_keeps_complete_entries() throws IOException {
+    TieredDiskCache cache = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+
+    put(cache, "complete", entry(1));
+    put(cache, "partial", entry(2));
+
+    File pack = new File(packDirectory, "pack-0");
+
+    try (RandomAccessFile file = new RandomAccessFile(pack, "rw")) {
+      file.setLength(file.length() - 100);
+    }
+
+    TieredDiskCache reopened = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+
+    assertArrayEquals(entry(1), read(reopened, "complete"));
+    assertNull(reopened.get(new TestKey("partial")));
+
+    put(reopened, "after", entry(3));
+
+    TieredDiskCache reopenedAgain = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+
+    assertArrayEquals(entry(1), read(reopenedAgain, "complete"));
+    assertArrayEquals(entry(3), read(reopenedAgain, "after"));
+  }
+
+  @Test
+  public void reads_finish_while_their_pack_is_evicted() throws Exception {
+    TieredDiskCache cache    = new TieredDiskCache(cacheDirectory, MAX_SIZE);
+    AtomicInteger   written  = new AtomicInteger();
+    AtomicBoolean   done     = new AtomicBoolean();
+    List<Throwable> failures = new CopyOnWriteArrayList<>();
+    Thread[]        readers  = new Thread[4];
+
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = new Thread(() -> {
+        int oldest = 0;
+
+        while (!done.get()) {
+          int newest = Math.min(oldest + 50, written.get());
+
+          for (int j = oldest; j < newest; j++) {
+            File file = cache.get(new TestKey("entry-" + j));
+
+            if (file == null) {
+              oldest = j + 1;
+              continue;
+            }
+
+            try {
+              assertArrayEquals(entry(j), readAll(cache.openPacked(file)));
+            } catch (ClosedChannelException e) {
+              failures.add(e);
+            } catch (IOException e) {
+              // Evicted between the lookup and the read, which is a miss like any other.
+            } catch (Throwable t) {
+              failures.add(t);
+            }
+          }
+        }
+      });
+      readers[i].start();
+    }
+
+    for (int i = 0; i < ENTRIES_TO_EVICT * 3; i++) {
+      put(cache, "entry-" + i, entry(i));
+      written.incrementAndGet();
+    }
+
+    done.set(true);
+
+    for (Thread reader : readers) {
+      reader.join();
+    }
+
+    assertNull(cache.get(new TestKey("entry-0")));
+    assertEquals(0, failures.size());
+  }
+
+  private static void put(@NonNull TieredDiskCache cache, @NonNull String key, @NonNull byte[] data) {
+    cache.put(new TestKey(key), file -> {
+      try (FileOutputStream outputStream = new FileOutputStream(file)) {
+        outputStream.write(data);
+        return true;
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+    });
+  }
+
+  private static byte[] read(@NonNull TieredDiskCache cache, @NonNull String key) throws IOException {
+    File file = cache.get(new TestKey(key));
+
+    assertNotNull(file);
+    assertTrue(cache.isPacked(file));
+
+    return readAll(cache.openPacked(file));
+  }
+
+  private static byte[] readAll(@NonNull InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    StreamUtil.copy(inputStream, outputStream);
+    return outputStream.toByteArray();
+  }
+
+  private static byte[] entry(int seed) {
+    byte[] data = randomBytes(ENTRY_SIZE);
+    data[0] = (byte) seed;
+    data[1] = (byte) (seed >> 8);
+    return data;
+  }
+}
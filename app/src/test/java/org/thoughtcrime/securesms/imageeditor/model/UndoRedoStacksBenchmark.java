@@ -0,0 +1,117 @@
+package org.thoughtcrime.securesms.imageeditor.model;
+
+import android.app.Application;
+import android.os.Parcel;
+
+import androidx.annotation.NonNull;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.testutil.SystemOutLogger;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import static org.thoughtcrime.securesms.imageeditor.model.UndoRedoStacksTest.stroke;
+
+/**
+ * Manual benchmarks for {@link UndoRedoStacks}.
+ */
+@Ignore("Benchmarks, run manually")
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class UndoRedoStacksBenchmark {
+
+  private static final String TAG = Log.tag(UndoRedoStacksBenchmark.class);
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  /**
+   * Draws 500 strokes, pushing an undo point after each, the way {@link EditorModel} does, with
+   * full copies of the tree and with {@link UndoRedoStacks}, and reports the time taken and memory
+   * retained by the undo history.
+   */
+  @Test
+  public void push_500_strokes() {
+    int strokes = 500;
+    int limit   = 50;
+
+    EditorElement root  = new EditorElement(null);
+    Stack<byte[]> full  = new Stack<>();
+    long          start = System.nanoTime();
+
+    for (int i = 0; i < strokes; i++) {
+      byte[] bytes = getBytes(root);
+      if (full.isEmpty() || !Arrays.equals(bytes, full.peek())) {
+        full.push(bytes);
+        if (full.size() > limit) full.remove(1);
+      }
+      byte[] current = getBytes(root);
+      for (byte[] item : full) {
+        if (!Arrays.equals(item, current)) break;
+      }
+      root.addElement(stroke(i));
+    }
+
+    long fullTime  = System.nanoTime() - start;
+    long fullBytes = 0;
+    for (byte[] item : full) fullBytes += item.length;
+
+    UndoRedoStacks stacks = new UndoRedoStacks(limit);
+    root  = new EditorElement(null);
+    start = System.nanoTime();
+
+    for (int i = 0; i < strokes; i++) {
+      stacks.pushState(root);
+      stacks.canUndo(root);
+      root.addElement(stroke(i));
+    }
+
+    long deltaTime  = System.nanoTime() - start;
+    long deltaBytes = 0;
+    Map<byte[], Boolean> seen = new IdentityHashMap<>();
+    for (ElementSnapshot snapshot : stacks.getUndoStack().getSnapshots()) {
+      for (ElementSnapshot node : nodes(snapshot).keySet()) {
+        if (seen.put(node.getData(), true) == null) deltaBytes += node.getData().length;
+      }
+    }
+
+    Log.i(TAG, String.format(Locale.US, "Full snapshots: %d ms, %d KB retained", TimeUnit.NANOSECONDS.toMillis(fullTime), fullBytes / 1024));
+    Log.i(TAG, String.format(Locale.US, "Shared snapshots: %d ms, %d KB retained", TimeUnit.NANOSECONDS.toMillis(deltaTime), deltaBytes / 1024));
+  }
+
+  private static byte[] getBytes(@NonNull EditorElement element) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.writeParcelable(element, 0);
+      return parcel.marshall();
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  private static Map<ElementSnapshot, Boolean> nodes(@NonNull ElementSnapshot snapshot) {
+    Map<ElementSnapshot, Boolean> nodes = new IdentityHashMap<>();
+    addNodes(snapshot, nodes);
+    return nodes;
+  }
+
+  private static void addNodes(@NonNull ElementSnapshot snapshot, @NonNull Map<ElementSnapshot, Boolean> nodes) {
+    nodes.put(snapshot, true);
+    for (ElementSnapshot child : snapshot.getChildren()) {
+      addNodes(child, nodes);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package org.thoughtcrime.securesms.imageeditor.model;
+
+import android.app.Application;
+import android.os.Parcel;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.thoughtcrime.securesms.imageeditor.Renderer;
+import org.thoughtcrime.securesms.imageeditor.RendererContext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class UndoRedoStacksTest {
+
+  @Test
+  public void undo_and_redo_restore_each_state() {
+    UndoRedoStacks stacks = new UndoRedoStacks(50);
+    EditorElement  root   = new EditorElement(null);
+
+    for (int i = 0; i < 3; i++) {
+      stacks.pushState(root);
+      root.addElement(stroke(i));
+    }
+
+    assertTrue(stacks.canUndo(root));
+    assertFalse(stacks.canRedo(root));
+
+    EditorElement undone = undoRedo(stacks.getUndoStack(), stacks.getRedoStack(), root);
+    assertEquals(2, undone.getChildCount());
+    assertStroke(1, undone.getChild(1));
+    assertTrue(stacks.canRedo(undone));
+
+    EditorElement redone = undoRedo(stacks.getRedoStack(), stacks.getUndoStack(), undone);
+    assertEquals(3, redone.getChildCount());
+    assertStroke(2, redone.getChild(2));
+    assertFalse(stacks.canRedo(redone));
+  }
+
+  @Test
+  public void snapshot_shares_unchanged_elements() {
+    ElementSnapshot.Cache cache = new ElementSnapshot.Cache();
+    EditorElement         root  = new EditorElement(null);
+
+    root.addElement(stroke(0));
+    root.addElement(stroke(1));
+
+    ElementSnapshot first = cache.snapshot(root);
+    assertSame(first, cache.snapshot(root));
+
+    root.getChild(1).getLocalMatrix().setTranslate(10, 10);
+
+    ElementSnapshot second = cache.snapshot(root);
+    assertNotSame(first, second);
+    assertFalse(first.isSameState(second));
+
+    assertSame(first.getData(), second.getData());
+    assertSame(first.getChildren().get(0), second.getChildren().get(0));
+    assertNotSame(first.getChildren().get(1).getData(), second.getChildren().get(1).getData());
+  }
+
+  @Test
+  public void parcel_round_trip_keeps_history_and_unchanged_state() {
+    UndoRedoStacks stacks = new UndoRedoStacks(50);
+    EditorElement  root   = new EditorElement(null);
+
+    stacks.clear(root);
+    for (int i = 0; i < 5; i++) {
+      stacks.pushState(root);
+      root.addElement(stroke(i));
+    }
+    root = undoRedo(stacks.getUndoStack(), stacks.getRedoStack(), root);
+
+    UndoRedoStacks restored = parcel(stacks);
+
+    assertTrue(restored.isChanged(root));
+    assertTrue(restored.canUndo(root));
+    assertTrue(restored.canRedo(root));
+
+    EditorElement redone = undoRedo(restored.getRedoStack(), restored.getUndoStack(), root);
+    assertEquals(5, redone.getChildCount());
+    assertStroke(4, redone.getChild(4));
+
+    EditorElement original = root;
+    for (int i = 0; i < 4; i++) {
+      original = undoRedo(restored.getUndoStack(), restored.getRedoStack(), original);
+      assertNotNull(original);
+    }
+    assertEquals(0, original.getChildCount());
+    assertFalse(restored.isChanged(original));
+  }
+
+  @Test
+  public void limit_collapses_start_of_history() {
+    UndoRedoStacks stacks = new UndoRedoStacks(3);
+    EditorElement  root   = new EditorElement(null);
+
+    for (int i = 0; i < 10; i++) {
+      stacks.pushState(root);
+      root.addElement(stroke(i));
+    }
+
+    assertEquals(3, stacks.getUndoStack().getSnapshots().size());
+
+    EditorElement state = root;
+    for (int expected : new int[] { 9, 8, 0 }) {
+      state = undoRedo(stacks.getUndoStack(), stacks.getRedoStack(), state);
+      assertEquals(expected, state.getChildCount());
+    }
+  }
+
+  private static EditorElement undoRedo(@NonNull ElementStack from, @NonNull ElementStack to, @NonNull EditorElement current) {
+    EditorElement popped = from.pop(current);
+    assertNotNull(popped);
+    to.tryPush(current);
+    return popped;
+  }
+
+  private static UndoRedoStacks parcel(@NonNull UndoRedoStacks stacks) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      stacks.writeToParcel(parcel, 0);
+      parcel.setDataPosition(0);
+      return UndoRedoStacks.CREATOR.createFromParcel(parcel);
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  static EditorElement stroke(int index) {
+    float[] points = new float[2 * (100 + index)];
+    for (int i = 0; i < points.length; i++) {
+      points[i] = index + i;
+    }
+    return new EditorElement(new StrokeRenderer(points));
+  }
+
+  private static void assertStroke(int index, @NonNull EditorElement element) {
+    assertArrayEquals(((StrokeRenderer) stroke(index).getRenderer()).points, ((StrokeRenderer) element.getRenderer()).points, 0);
+  }
+
+  public static final class StrokeRenderer implements Renderer {
+
+    private final float[] points;
+
+    StrokeRenderer(@NonNull float[] points) {
+      this.points = points;
+    }
+
+    @Override
+    public void render(@NonNull RendererContext rendererContext) {
+    }
+
+    @Override
+    public boolean hitTest(float x, float y) {
+      return false;
+    }
+
+    public static final Creator<StrokeRenderer> CREATOR = new Creator<StrokeRenderer>() {
+      @Override
+      public StrokeRenderer createFromParcel(Parcel in) {
+        return new StrokeRenderer(in.createFloatArray());
+      }
+
+      @Override
+      public StrokeRenderer[] newArray(int size) {
+        return new StrokeRenderer[size];
+      }
+    };
+
+    @Override
+    public int describeContents() {
+      return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+      dest.writeFloatArray(points);
+    }
+  }
+}
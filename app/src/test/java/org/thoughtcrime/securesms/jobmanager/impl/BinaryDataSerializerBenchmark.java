@@ -0,0 +1,79 @@
+package org.thoughtcrime.securesms.jobmanager.impl;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.jobmanager.Data;
+import org.thoughtcrime.securesms.testutil.SystemOutLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.thoughtcrime.securesms.jobmanager.impl.BinaryDataSerializerTest.randomBytes;
+
+/**
+ * Manual benchmarks for {@link BinaryDataSerializer}.
+ */
+@Ignore("Benchmarks, run manually")
+public final class BinaryDataSerializerBenchmark {
+
+  private static final String TAG = Log.tag(BinaryDataSerializerBenchmark.class);
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  /**
+   * Serializes and reads back 50,000 jobs shaped like the decrypt jobs that pile up when a lot of
+   * messages arrive at once, with each serializer.
+   */
+  @Test
+  public void round_trip_50k_jobs() {
+    JsonDataSerializer   jsonSerializer   = new JsonDataSerializer();
+    BinaryDataSerializer binarySerializer = new BinaryDataSerializer();
+    List<Data>           jsonJobs         = new ArrayList<>();
+    List<Data>           binaryJobs       = new ArrayList<>();
+
+    for (int i = 0; i < 50_000; i++) {
+      byte[] envelope = randomBytes(600 + i % 400);
+
+      jsonJobs.add(new Data.Builder().putBlobAsString("envelope", envelope).putLong("timestamp", 1_600_000_000_000L + i).build());
+      binaryJobs.add(new Data.Builder().putBlob("envelope", envelope).putLong("timestamp", 1_600_000_000_000L + i).build());
+    }
+
+    for (int warmup = 0; warmup < 3; warmup++) {
+      roundTrip(jsonSerializer, jsonJobs);
+      roundTrip(binarySerializer, binaryJobs);
+    }
+
+    long[] json   = roundTrip(jsonSerializer, jsonJobs);
+    long[] binary = roundTrip(binarySerializer, binaryJobs);
+
+    Log.i(TAG, String.format(Locale.US, "JSON: serialize %d ms, deserialize %d ms, %d KB", json[0], json[1], json[2] / 1024));
+    Log.i(TAG, String.format(Locale.US, "Binary: serialize %d ms, deserialize %d ms, %d KB", binary[0], binary[1], binary[2] / 1024));
+  }
+
+  private static long[] roundTrip(Data.Serializer serializer, List<Data> jobs) {
+    List<byte[]> serialized = new ArrayList<>(jobs.size());
+    long         bytes      = 0;
+
+    long serializeStart = System.nanoTime();
+    for (Data data : jobs) {
+      serialized.add(serializer.serialize(data));
+    }
+    long serializeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - serializeStart);
+
+    long deserializeStart = System.nanoTime();
+    for (byte[] data : serialized) {
+      serializer.deserialize(data);
+      bytes += data.length;
+    }
+    long deserializeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deserializeStart);
+
+    return new long[] { serializeMillis, deserializeMillis, bytes };
+  }
+}
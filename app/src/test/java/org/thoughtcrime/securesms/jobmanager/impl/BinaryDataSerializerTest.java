@@ -0,0 +1,125 @@
+package org.thoughtcrime.securesms.jobmanager.impl;
+
+import org.junit.Test;
+import org.signal.core.util.StreamUtil;
+import org.thoughtcrime.securesms.jobmanager.Data;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class BinaryDataSerializerTest {
+
+  private static final float FloatDelta = 0.00001f;
+
+  private final BinaryDataSerializer serializer = new BinaryDataSerializer();
+
+  @Test
+  public void serialize_roundTripsEveryType() {
+    Data data = new Data.Builder().putString("s1", "s1 value")
+                                  .putString("null", null)
+                                  .putString("unicode", "Zoë 李小龙 😀")
+                                  .putStringArray("s_array", new String[]{ "a", null, "" })
+                                  .putInt("i1", -1)
+                                  .putInt("max", Integer.MAX_VALUE)
+                                  .putInt("min", Integer.MIN_VALUE)
+                                  .putIntArray("i_array", new int[]{ 0, 1, -300, Integer.MAX_VALUE, Integer.MIN_VALUE })
+                                  .putLong("l1", 1_600_000_000_000L)
+                                  .putLong("max", Long.MAX_VALUE)
+                                  .putLong("min", Long.MIN_VALUE)
+                                  .putLongArray("l_array", new long[]{ 0, -1, Long.MAX_VALUE, Long.MIN_VALUE })
+                                  .putFloat("f1", 1.2f)
+                                  .putFloatArray("f_array", new float[]{ Float.NaN, -0f, 7.8f })
+                                  .putDouble("d1", 10.2)
+                                  .putDoubleArray("d_array", new double[]{ Double.MAX_VALUE, 70.8 })
+                                  .putBoolean("b1", true)
+                                  .putBoolean("b2", false)
+                                  .putBooleanArray("b_array", new boolean[]{ false, true })
+                                  .putBlob("blob", new byte[]{ 0, 1, (byte) 0xFF })
+                                  .build();
+
+    Data result = serializer.deserialize(serializer.serialize(data));
+
+    assertEquals("s1 value", result.getString("s1"));
+    assertTrue(result.hasString("null"));
+    assertNull(result.getString("null"));
+    assertEquals("Zoë 李小龙 😀", result.getString("unicode"));
+    assertArrayEquals(new String[]{ "a", null, "" }, result.getStringArray("s_array"));
+
+    assertEquals(-1, result.getInt("i1"));
+    assertEquals(Integer.MAX_VALUE, result.getInt("max"));
+    assertEquals(Integer.MIN_VALUE, result.getInt("min"));
+    assertArrayEquals(new int[]{ 0, 1, -300, Integer.MAX_VALUE, Integer.MIN_VALUE }, result.getIntegerArray("i_array"));
+
+    assertEquals(1_600_000_000_000L, result.getLong("l1"));
+    assertEquals(Long.MAX_VALUE, result.getLong("max"));
+    assertEquals(Long.MIN_VALUE, result.getLong("min"));
+    assertArrayEquals(new long[]{ 0, -1, Long.MAX_VALUE, Long.MIN_VALUE }, result.getLongArray("l_array"));
+
+    assertEquals(1.2f, result.getFloat("f1"), FloatDelta);
+    assertArrayEquals(new float[]{ Float.NaN, -0f, 7.8f }, result.getFloatArray("f_array"), 0);
+    assertEquals(10.2, result.getDouble("d1"), 0);
+    assertArrayEquals(new double[]{ Double.MAX_VALUE, 70.8 }, result.getDoubleArray("d_array"), 0);
+
+    assertTrue(result.getBoolean("b1"));
+    assertFalse(result.getBoolean("b2"));
+    assertArrayEquals(new boolean[]{ false, true }, result.getBooleanArray("b_array"));
+
+    assertArrayEquals(new byte[]{ 0, 1, (byte) 0xFF }, result.getBlob("blob"));
+  }
+
+  @Test
+  public void deserialize_readsLegacyJson() throws IOException {
+    Data data = serializer.deserialize(StreamUtil.readFully(ClassLoader.getSystemClassLoader().getResourceAsStream("data/data_serialized.json")));
+
+    assertEquals("s1 value", data.getString("s1"));
+    assertArrayEquals(new String[]{ "a", "b", "c" }, data.getStringArray("s_array_1"));
+    assertEquals(Integer.MIN_VALUE, data.getInt("min"));
+    assertArrayEquals(new long[]{ 1, 2, 3, Long.MAX_VALUE, Long.MIN_VALUE }, data.getLongArray("l_array_1"));
+    assertArrayEquals(new boolean[]{ false, true }, data.getBooleanArray("b_array_1"));
+    assertFalse(data.hasBlob("s1"));
+  }
+
+  @Test
+  public void serialize_storesBlobsWithoutEncoding() {
+    byte[] envelope = randomBytes(4096);
+    Data   data     = new Data.Builder().putBlob("envelope", envelope).build();
+
+    byte[] serialized = serializer.serialize(data);
+
+    assertTrue(serialized.length < envelope.length + 32);
+    assertArrayEquals(envelope, serializer.deserialize(serialized).getBlob("envelope"));
+  }
+
+  @Test
+  public void putBlob_replacesStringWithSameKey() {
+    Data legacy = new Data.Builder().putBlobAsString("envelope", new byte[]{ 1, 2, 3 }).build();
+    Data data   = legacy.buildUpon().putBlob("envelope", legacy.getStringAsBlob("envelope")).build();
+
+    Data result = serializer.deserialize(serializer.serialize(data));
+
+    assertFalse(result.hasString("envelope"));
+    assertArrayEquals(new byte[]{ 1, 2, 3 }, result.getBlob("envelope"));
+  }
+
+  @Test(expected = AssertionError.class)
+  public void deserialize_rejectsTruncatedData() {
+    byte[] serialized = serializer.serialize(new Data.Builder().putString("key", "value").build());
+    byte[] truncated  = new byte[serialized.length - 2];
+
+    System.arraycopy(serialized, 0, truncated, 0, truncated.length);
+
+    serializer.deserialize(truncated);
+  }
+
+  static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,79 @@
+package org.thoughtcrime.securesms.jobmanager.migrations;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.jobmanager.Data;
+import org.thoughtcrime.securesms.jobmanager.JobMigration.JobData;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+public class PushJobBlobMigrationTest {
+
+  private static final byte[] BYTES = new byte[] { 0, 1, 2, 3, (byte) 0xff, 42 };
+
+  private final PushJobBlobMigration testSubject = new PushJobBlobMigration();
+
+  @BeforeClass
+  public static void init() {
+    Log.initialize(mock(Log.Logger.class));
+  }
+
+  @Test
+  public void migrate_pushDecryptJob() {
+    JobData jobData = new JobData("PushDecryptJob", "__PUSH_DECRYPT_JOB__", new Data.Builder().putBlobAsString("envelope", BYTES)
+                                                                                             .putLong("sms_message_id", 7)
+                                                                                             .build());
+
+    JobData converted = testSubject.migrate(jobData);
+
+    assertEquals("PushDecryptJob", converted.getFactoryKey());
+    assertEquals("__PUSH_DECRYPT_JOB__", converted.getQueueKey());
+    assertFalse(converted.getData().hasString("envelope"));
+    assertArrayEquals(BYTES, converted.getData().getBlob("envelope"));
+    assertEquals(7, converted.getData().getLong("sms_message_id"));
+  }
+
+  @Test
+  public void migrate_pushProcessJob() {
+    JobData jobData = new JobData("PushProcessJob", "__PUSH_PROCESS_JOB__", new Data.Builder().putBlobAsString("message_content", BYTES)
+                                                                                             .putInt("message_state", 0)
+                                                                                             .build());
+
+    JobData converted = testSubject.migrate(jobData);
+
+    assertEquals("PushProcessJob", converted.getFactoryKey());
+    assertEquals("__PUSH_PROCESS_JOB__", converted.getQueueKey());
+    assertFalse(converted.getData().hasString("message_content"));
+    assertArrayEquals(BYTES, converted.getData().getBlob("message_content"));
+    assertEquals(0, converted.getData().getInt("message_state"));
+  }
+
+  @Test
+  public void migrate_pushDecryptJob_withoutEnvelope() {
+    JobData jobData = new JobData("PushDecryptJob", "__PUSH_DECRYPT_JOB__", new Data.Builder().putLong("sms_message_id", 7).build());
+
+    assertEquals(jobData, testSubject.migrate(jobData));
+  }
+
+  @Test
+  public void migrate_pushProcessJob_withNullContent() {
+    JobData jobData = new JobData("PushProcessJob", "__PUSH_PROCESS_JOB__", new Data.Builder().putString("message_content", null)
+                                                                                             .putInt("message_state", 2)
+                                                                                             .build());
+
+    assertEquals(jobData, testSubject.migrate(jobData));
+  }
+
+  @Test
+  public void migrate_otherJob() {
+    JobData jobData = new JobData("SomeOtherJob", null, new Data.Builder().putBlobAsString("envelope", BYTES)
+                                                                          .putBlobAsString("message_content", BYTES)
+                                                                          .build());
+
+    assertEquals(jobData, testSubject.migrate(jobData));
+  }
+}
@@ -0,0 +1,147 @@
+package org.thoughtcrime.securesms.jobs;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.whispersystems.libsignal.util.guava.Optional;
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachment;
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachmentStream;
+import org.whispersystems.signalservice.api.messages.multidevice.DeviceContact;
+import org.whispersystems.signalservice.api.messages.multidevice.DeviceContactsOutputStream;
+import org.whispersystems.signalservice.api.push.SignalServiceAddress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public final class ContactSyncPayloadTest {
+
+  @Test
+  public void createInputStream_matchesDeviceContactsOutputStream() throws IOException {
+    byte[]                avatar   = new byte[10_000];
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+    for (int i = 0; i < avatar.length; i++) {
+      avatar[i] = (byte) i;
+    }
+
+    DeviceContactsOutputStream out = new DeviceContactsOutputStream(expected);
+    out.write(contact("Alice", attachment(new ByteArrayInputStream(avatar), avatar.length)));
+    out.write(contact("Bob", null));
+    out.close();
+
+    ContactSyncPayload payload = new ContactSyncPayload();
+    add(payload, contact("Alice", attachment(ContactSyncPayload.openLazily(() -> new ByteArrayInputStream(avatar)), avatar.length)));
+    add(payload, contact("Bob", null));
+
+    byte[] actual = readFully(payload.createInputStream());
+
+    assertEquals(expected.size(), payload.getLength());
+    assertArrayEquals(expected.toByteArray(), actual);
+  }
+
+  @Test
+  public void createInputStream_opensAvatarsOneAtATime() throws IOException {
+    AtomicInteger      open    = new AtomicInteger();
+    AtomicInteger      opened  = new AtomicInteger();
+    ContactSyncPayload payload = new ContactSyncPayload();
+
+    for (int i = 0; i < 3; i++) {
+      payload.add(new byte[] { 1, 2, 3 }, attachment(ContactSyncPayload.openLazily(() -> {
+        assertEquals(0, open.getAndIncrement());
+        opened.incrementAndGet();
+        return new TrackingInputStream(new byte[100], open);
+      }), 100));
+    }
+
+    assertEquals(0, opened.get());
+    assertEquals(3 * 103, readFully(payload.createInputStream()).length);
+    assertEquals(3, opened.get());
+    assertEquals(0, open.get());
+  }
+
+  @Test
+  public void createInputStream_avatarShorterThanPromised() {
+    ContactSyncPayload payload = new ContactSyncPayload();
+    payload.add(new byte[] { 1 }, attachment(ContactSyncPayload.openLazily(() -> new ByteArrayInputStream(new byte[9])), 10));
+
+    try {
+      readFully(payload.createInputStream());
+      fail();
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void createInputStream_avatarLongerThanPromised() {
+    ContactSyncPayload payload = new ContactSyncPayload();
+    payload.add(new byte[] { 1 }, attachment(ContactSyncPayload.openLazily(() -> new ByteArrayInputStream(new byte[11])), 10));
+
+    try {
+      readFully(payload.createInputStream());
+      fail();
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  private static void add(@NonNull ContactSyncPayload payload, @NonNull DeviceContact contact) throws IOException {
+    payload.add(DeviceContactsOutputStream.serializeContactDetails(contact), contact.getAvatar().orNull());
+  }
+
+  private static @NonNull DeviceContact contact(@NonNull String name, SignalServiceAttachmentStream avatar) {
+    return new DeviceContact(new SignalServiceAddress(UUID.nameUUIDFromBytes(name.getBytes()), "+1555000" + name.length()),
+                             Optional.of(name),
+                             Optional.fromNullable(avatar),
+                             Optional.of("blue"),
+                             Optional.absent(),
+                             Optional.absent(),
+                             false,
+                             Optional.of(60),
+                             Optional.of(name.length()),
+                             false);
+  }
+
+  private static @NonNull SignalServiceAttachmentStream attachment(@NonNull InputStream stream, long length) {
+    return SignalServiceAttachment.newStreamBuilder()
+                                  .withStream(stream)
+                                  .withContentType("image/*")
+                                  .withLength(length)
+                                  .build();
+  }
+
+  private static @NonNull byte[] readFully(@NonNull InputStream in) throws IOException {
+    ByteArrayOutputStream out    = new ByteArrayOutputStream();
+    byte[]                buffer = new byte[4096];
+    int                   read;
+
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+
+    return out.toByteArray();
+  }
+
+  private static final class TrackingInputStream extends ByteArrayInputStream {
+
+    private final AtomicInteger open;
+
+    private TrackingInputStream(@NonNull byte[] data, @NonNull AtomicInteger open) {
+      super(data);
+      this.open = open;
+    }
+
+    @Override
+    public void close() {
+      open.decrementAndGet();
+    }
+  }
+}
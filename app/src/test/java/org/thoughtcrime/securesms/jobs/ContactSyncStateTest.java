@@ -0,0 +1,45 @@
+package org.thoughtcrime.securesms.jobs;
+
+import org.junit.Test;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ContactSyncStateTest {
+
+  @Test
+  public void serialize_roundTrip() {
+    ContactSyncState state = new ContactSyncState(1234);
+    state.put(RecipientId.from(1), 10);
+    state.put(RecipientId.from(2), 20);
+
+    ContactSyncState deserialized = ContactSyncState.deserialize(state.serialize());
+
+    assertEquals(1234, deserialized.getLastCompleteSyncTime());
+    assertTrue(deserialized.matches(RecipientId.from(1), 10));
+    assertTrue(deserialized.matches(RecipientId.from(2), 20));
+    assertFalse(deserialized.matches(RecipientId.from(2), 10));
+    assertFalse(deserialized.matches(RecipientId.from(3), 10));
+  }
+
+  @Test
+  public void deserialize_missingOrUnreadable_isEmpty() {
+    assertTrue(ContactSyncState.deserialize(null).isEmpty());
+    assertTrue(ContactSyncState.deserialize(new byte[] { 0, 0, 0, 1, 2 }).isEmpty());
+    assertEquals(0, ContactSyncState.deserialize(new byte[0]).getLastCompleteSyncTime());
+  }
+
+  @Test
+  public void fingerprint_coversDetailsAndAvatar() {
+    long plain = ContactSyncState.fingerprint(new byte[] { 1, 2, 3 }, null);
+
+    assertEquals(plain, ContactSyncState.fingerprint(new byte[] { 1, 2, 3 }, null));
+    assertNotEquals(plain, ContactSyncState.fingerprint(new byte[] { 1, 2, 4 }, null));
+    assertNotEquals(plain, ContactSyncState.fingerprint(new byte[] { 1, 2, 3 }, new byte[] { 1 }));
+    assertNotEquals(ContactSyncState.fingerprint(new byte[] { 1, 2, 3 }, new byte[] { 1 }),
+                    ContactSyncState.fingerprint(new byte[] { 1, 2, 3 }, new byte[] { 2 }));
+  }
+}
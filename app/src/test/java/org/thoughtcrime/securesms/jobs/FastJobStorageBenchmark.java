@@ -0,0 +1,81 @@
+package org.thoughtcrime.securesms.jobs;
+
+import com.annimon.stream.Stream;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.jobmanager.persistence.FullSpec;
+import org.thoughtcrime.securesms.jobmanager.persistence.JobSpec;
+import org.thoughtcrime.securesms.testutil.SystemOutLogger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.thoughtcrime.securesms.jobs.FastJobStorageTest.fixedDataDatabase;
+import static org.thoughtcrime.securesms.jobs.FastJobStorageTest.lazyDataDatabase;
+
+/**
+ * Manual benchmarks for {@link FastJobStorage}.
+ */
+@Ignore("Benchmarks, run manually")
+public final class FastJobStorageBenchmark {
+
+  private static final String TAG = Log.tag(FastJobStorageBenchmark.class);
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  /**
+   * Starts up with 50,000 pending jobs spread over 100 queues and pulls the first jobs to run, once
+   * with every job's data read up front and once with the data read as needed.
+   */
+  @Test
+  public void startup_50k_jobs() {
+    JobSpec[] jobSpecs = new JobSpec[50_000];
+    byte[]    data     = new byte[1024];
+
+    for (int i = 0; i < jobSpecs.length; i++) {
+      jobSpecs[i] = new JobSpec("id" + i, "f", "q" + (i % 100), i, 0, 0, 0, -1, data.clone(), null, false, false);
+    }
+
+    List<FullSpec> fullSpecs = Stream.of(jobSpecs).map(j -> new FullSpec(j, Collections.emptyList(), Collections.emptyList())).toList();
+
+    long           eagerStart = System.nanoTime();
+    FastJobStorage eager      = new FastJobStorage(fixedDataDatabase(fullSpecs));
+
+    eager.init();
+    eager.getPendingJobsWithNoDependenciesInCreatedOrder(0);
+
+    long eagerMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - eagerStart);
+    long eagerBytes  = loadedBytes(eager);
+
+    long           lazyStart = System.nanoTime();
+    FastJobStorage lazy      = new FastJobStorage(lazyDataDatabase(jobSpecs));
+
+    lazy.init();
+    lazy.getPendingJobsWithNoDependenciesInCreatedOrder(0);
+
+    long lazyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lazyStart);
+    long lazyBytes  = loadedBytes(lazy);
+
+    Log.i(TAG, String.format(Locale.US, "Eager: %d ms, %d KB of data in memory. Lazy: %d ms, %d KB of data in memory", eagerMillis, eagerBytes / 1024, lazyMillis, lazyBytes / 1024));
+  }
+
+  private static long loadedBytes(FastJobStorage storage) {
+    long bytes = 0;
+
+    for (int i = 0; i < 100; i++) {
+      for (JobSpec jobSpec : storage.getJobsInQueue("q" + i)) {
+        bytes += jobSpec.isDataLoaded() ? jobSpec.getSerializedData().length : 0;
+      }
+    }
+
+    return bytes;
+  }
+}
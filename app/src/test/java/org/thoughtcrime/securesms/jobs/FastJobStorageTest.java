@@ -14,14 +14,18 @@ import org.thoughtcrime.securesms.jobmanager.persistence.DependencySpec;
 import org.thoughtcrime.securesms.jobmanager.persistence.FullSpec;
 import org.thoughtcrime.securesms.jobmanager.persistence.JobSpec;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -31,7 +35,7 @@ import static org.thoughtcrime.securesms.testutil.TestHelpers.setOf;
 public class FastJobStorageTest {
 
   private static final JsonDataSerializer serializer = new JsonDataSerializer();
-  private static final String             EMPTY_DATA = serializer.serialize(Data.EMPTY);
+  private static final byte[]             EMPTY_DATA = serializer.serialize(Data.EMPTY);
 
   @Test
   public void init_allStoredDataAvailable() {
@@ -151,8 +155,8 @@ public class FastJobStorageTest {
 
     FastJobStorage subject = new FastJobStorage(fixedDataDatabase(Arrays.asList(fullSpec1, fullSpec2, fullSpec3)));
 
-    JobSpec update1 = new JobSpec("1", "g1", "q1", 2, 2, 2, 2, 2, "abc", null, true, false);
-    JobSpec update2 = new JobSpec("2", "g2", "q2", 3, 3, 3, 3, 3, "def", "ghi", true, false);
+    JobSpec update1 = new JobSpec("1", "g1", "q1", 2, 2, 2, 2, 2, "abc".getBytes(), null, true, false);
+    JobSpec update2 = new JobSpec("2", "g2", "q2", 3, 3, 3, 3, 3, "def".getBytes(), "ghi".getBytes(), true, false);
 
     subject.init();
     subject.updateJobs(Arrays.asList(update1, update2));
@@ -191,9 +195,9 @@ public class FastJobStorageTest {
     FastJobStorage subject  = new FastJobStorage(database);
 
     subject.init();
-    subject.updateJobAfterRetry("id1", true, 1, 10, "a");
+    subject.updateJobAfterRetry("id1", true, 1, 10, "a".getBytes());
 
-    verify(database).updateJobAfterRetry("id1", true, 1, 10, "a");
+    verify(database).updateJobAfterRetry("id1", true, 1, 10, "a".getBytes());
   }
 
   @Test
@@ -202,9 +206,9 @@ public class FastJobStorageTest {
     FastJobStorage subject  = new FastJobStorage(database);
 
     subject.init();
-    subject.updateJobAfterRetry("id1", true, 1, 10, "a");
+    subject.updateJobAfterRetry("id1", true, 1, 10, "a".getBytes());
 
-    verify(database, times(0)).updateJobAfterRetry("id1", true, 1, 10, "a");
+    verify(database, times(0)).updateJobAfterRetry("id1", true, 1, 10, "a".getBytes());
   }
 
   @Test
@@ -216,7 +220,7 @@ public class FastJobStorageTest {
     FastJobStorage subject = new FastJobStorage(fixedDataDatabase(Collections.singletonList(fullSpec)));
 
     subject.init();
-    subject.updateJobAfterRetry("1", false, 1, 10, "a");
+    subject.updateJobAfterRetry("1", false, 1, 10, "a".getBytes());
 
     JobSpec job = subject.getJobSpec("1");
 
@@ -224,7 +228,7 @@ public class FastJobStorageTest {
     assertFalse(job.isRunning());
     assertEquals(1, job.getRunAttempt());
     assertEquals(10, job.getNextRunAttemptTime());
-    assertEquals("a", job.getSerializedData());
+    assertArrayEquals("a".getBytes(), job.getSerializedData());
   }
 
   @Test
@@ -587,6 +591,34 @@ public class FastJobStorageTest {
     assertTrue(subject.areQueuesEmpty(setOf("q4", "q5")));
   }
 
+  @Test
+  public void getPendingJobsWithNoDependenciesInCreatedOrder_onlyLoadsDataForPendingJobs() {
+    JobSpec stored1 = new JobSpec("1", "f1", null, 0, 0, 0, 0, -1, "a".getBytes(), "b".getBytes(), false, false);
+    JobSpec stored2 = new JobSpec("2", "f2", null, 0, 10, 0, 0, -1, "c".getBytes(), null, false, false);
+
+    JobDatabase    database = lazyDataDatabase(stored1, stored2);
+    FastJobStorage subject  = new FastJobStorage(database);
+
+    subject.init();
+    List<JobSpec> jobs = subject.getPendingJobsWithNoDependenciesInCreatedOrder(5);
+
+    assertEquals(Collections.singletonList(stored1), jobs);
+    assertEquals(stored1, subject.getJobSpec("1"));
+    verify(database, times(1)).getJobSpecs(any());
+  }
+
+  @Test
+  public void getAllJobSpecs_loadsDataForAllJobs() {
+    JobSpec stored1 = new JobSpec("1", "f1", null, 0, 0, 0, 0, -1, "a".getBytes(), "b".getBytes(), false, false);
+    JobSpec stored2 = new JobSpec("2", "f2", null, 0, 10, 0, 0, -1, "c".getBytes(), null, false, false);
+
+    FastJobStorage subject = new FastJobStorage(lazyDataDatabase(stored1, stored2));
+
+    subject.init();
+
+    assertEquals(Arrays.asList(stored1, stored2), subject.getAllJobSpecs());
+  }
+
   private JobDatabase noopDatabase() {
     JobDatabase database = mock(JobDatabase.class);
 
@@ -597,7 +629,7 @@ public class FastJobStorageTest {
     return database;
   }
 
-  private JobDatabase fixedDataDatabase(List<FullSpec> fullSpecs) {
+  static JobDatabase fixedDataDatabase(List<FullSpec> fullSpecs) {
     JobDatabase database = mock(JobDatabase.class);
 
     when(database.getAllJobSpecs()).thenReturn(Stream.of(fullSpecs).map(FullSpec::getJobSpec).toList());
@@ -607,6 +639,28 @@ public class FastJobStorageTest {
     return database;
   }
 
+  /**
+   * A database that reads jobs without their data at first, like the real one.
+   */
+  static JobDatabase lazyDataDatabase(JobSpec... jobSpecs) {
+    JobDatabase   database    = mock(JobDatabase.class);
+    List<JobSpec> withoutData = new ArrayList<>();
+
+    for (JobSpec jobSpec : jobSpecs) {
+      withoutData.add(new JobSpec(jobSpec.getId(), jobSpec.getFactoryKey(), jobSpec.getQueueKey(), jobSpec.getCreateTime(), jobSpec.getNextRunAttemptTime(), jobSpec.getRunAttempt(), jobSpec.getMaxAttempts(), jobSpec.getLifespan(), null, null, jobSpec.isRunning(), jobSpec.isMemoryOnly()));
+    }
+
+    when(database.getAllJobSpecs()).thenReturn(withoutData);
+    when(database.getAllConstraintSpecs()).thenReturn(Collections.emptyList());
+    when(database.getAllDependencySpecs()).thenReturn(Collections.emptyList());
+    when(database.getJobSpecs(any())).thenAnswer(invocation -> {
+      Collection<String> ids = invocation.getArgument(0);
+      return Stream.of(jobSpecs).filter(j -> ids.contains(j.getId())).toList();
+    });
+
+    return database;
+  }
+
   private static final class DataSet1 {
     static final JobSpec        JOB_1        = new JobSpec("id1", "f1", "q1", 1, 2, 3, 4, 5, EMPTY_DATA, null, false, false);
     static final JobSpec        JOB_2        = new JobSpec("id2", "f2", "q2", 1, 2, 3, 4, 5, EMPTY_DATA, null, false, false);
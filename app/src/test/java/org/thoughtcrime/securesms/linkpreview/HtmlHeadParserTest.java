@@ -0,0 +1,138 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.thoughtcrime.securesms.linkpreview.LinkPreviewUtil.OpenGraph;
+import org.whispersystems.libsignal.util.guava.Optional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class HtmlHeadParserTest {
+
+  private static final LinkPreviewUtil.HtmlDecoder DECODER = html -> html.replace("&amp;", "&")
+                                                                         .replace("&quot;", "\"")
+                                                                         .replaceAll("\\s+", " ")
+                                                                         .trim();
+
+  @Test
+  public void parse_article() throws IOException {
+    OpenGraph openGraph = parse("linkpreview_article.html");
+
+    assertEquals(Optional.of("Spider-Man Spotted Downtown"), openGraph.getTitle());
+    assertEquals(Optional.of("A \"menace\", says J. Jonah Jameson"), openGraph.getDescription());
+    assertEquals(Optional.of("https://images.com/spider-man.jpg"), openGraph.getImageUrl());
+    assertEquals(694051200000L, openGraph.getDate());
+  }
+
+  @Test
+  public void parse_article_fallsBackToHeadTitleAndFirstIcon() throws IOException {
+    String    html      = readFixture("linkpreview_article.html").replaceAll("<(META|meta) (PROPERTY|property)=['\"]?og:(title|image)[^>]*>", "");
+    OpenGraph openGraph = LinkPreviewUtil.parseOpenGraphFields(html, DECODER);
+
+    assertEquals(Optional.of("Daily Bugle & Friends"), openGraph.getTitle());
+    assertEquals(Optional.of("https://images.com/favicon.ico"), openGraph.getImageUrl());
+  }
+
+  @Test
+  public void parse_withoutHead_readsWholeDocument() throws IOException {
+    OpenGraph openGraph = parse("linkpreview_no_head.html");
+
+    assertEquals(Optional.of("Untitled"), openGraph.getTitle());
+    assertEquals(Optional.of("https://images.com/late.jpg"), openGraph.getImageUrl());
+  }
+
+  @Test
+  public void parse_stopsReadingAtEndOfHead() throws IOException {
+    CountingReader reader    = new CountingReader(readFixture("linkpreview_article.html"));
+    OpenGraph      openGraph = HtmlHeadParser.parse(reader, Long.MAX_VALUE, DECODER);
+
+    assertEquals(Optional.of("Spider-Man Spotted Downtown"), openGraph.getTitle());
+    assertTrue(reader.read <= 8192);
+  }
+
+  @Test
+  public void parse_stopsReadingAtLimit() throws IOException {
+    String html  = "<meta property=\"og:title\" content=\"Daily Bugle\">";
+    char[] large = new char[100_000];
+
+    Arrays.fill(large, ' ');
+
+    OpenGraph openGraph = HtmlHeadParser.parse(new StringReader(html + new String(large) + "<meta property=\"og:description\" content=\"Too far\">"),
+                                               html.length() + large.length,
+                                               DECODER);
+
+    assertEquals(Optional.of("Daily Bugle"), openGraph.getTitle());
+    assertEquals(Optional.absent(), openGraph.getDescription());
+  }
+
+  @Test
+  public void parse_unterminatedTag() throws IOException {
+    OpenGraph openGraph = HtmlHeadParser.parse(new StringReader("<title>Daily Bugle</title><meta property=\"og:image"), Long.MAX_VALUE, DECODER);
+
+    assertEquals(Optional.of("Daily Bugle"), openGraph.getTitle());
+    assertEquals(Optional.absent(), openGraph.getImageUrl());
+  }
+
+  private static @NonNull OpenGraph parse(@NonNull String fixture) throws IOException {
+    try (Reader reader = new InputStreamReader(openFixture(fixture), StandardCharsets.UTF_8)) {
+      return HtmlHeadParser.parse(reader, Long.MAX_VALUE, DECODER);
+    }
+  }
+
+  private static @NonNull String readFixture(@NonNull String fixture) throws IOException {
+    try (Reader reader = new InputStreamReader(openFixture(fixture), StandardCharsets.UTF_8)) {
+      StringBuilder builder = new StringBuilder();
+      char[]        buffer  = new char[4096];
+      int           read;
+
+      while ((read = reader.read(buffer)) != -1) {
+        builder.append(buffer, 0, read);
+      }
+
+      return builder.toString();
+    }
+  }
+
+  private static @NonNull InputStream openFixture(@NonNull String fixture) {
+    return ClassLoader.getSystemClassLoader().getResourceAsStream("data/" + fixture);
+  }
+
+  /**
+   * Serves the provided html followed by an endless body, counting how much was read.
+   */
+  private static final class CountingReader extends Reader {
+
+    private final String html;
+
+    private int read;
+
+    private CountingReader(@NonNull String html) {
+      this.html = html;
+    }
+
+    @Override
+    public int read(@NonNull char[] buffer, int offset, int length) {
+      for (int i = 0; i < length; i++) {
+        int position = read + i;
+        buffer[offset + i] = position < html.length() ? html.charAt(position) : 'x';
+      }
+
+      read += length;
+      return length;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import androidx.annotation.NonNull;
+import androidx.core.util.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thoughtcrime.securesms.net.RequestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class LinkPreviewCacheTest {
+
+  private static final long TTL = 1000;
+
+  private long                     now;
+  private LinkPreviewCache<String> cache;
+  private TestFetcher              fetcher;
+
+  @Before
+  public void setUp() {
+    now     = 0;
+    cache   = new LinkPreviewCache<>(2, TTL, () -> now);
+    fetcher = new TestFetcher();
+  }
+
+  @Test
+  public void get_cachedUntilExpired() {
+    List<String> results = new ArrayList<>();
+
+    cache.get("https://signal.org", fetcher, results::add);
+    fetcher.complete(0, "first");
+
+    now = TTL - 1;
+    cache.get("https://signal.org", fetcher, results::add);
+
+    now = TTL;
+    cache.get("https://signal.org", fetcher, results::add);
+    fetcher.complete(1, "second");
+
+    assertEquals(2, fetcher.requests.size());
+    assertEquals(3, results.size());
+    assertEquals("first", results.get(0));
+    assertEquals("first", results.get(1));
+    assertEquals("second", results.get(2));
+  }
+
+  @Test
+  public void get_normalizesUrl() {
+    List<String> results = new ArrayList<>();
+
+    cache.get("https://Signal.org:443/#top", fetcher, results::add);
+    fetcher.complete(0, "first");
+
+    cache.get("https://signal.org", fetcher, results::add);
+    cache.get("https://signal.org/#bottom", fetcher, results::add);
+
+    assertEquals(1, fetcher.requests.size());
+    assertEquals(3, results.size());
+  }
+
+  @Test
+  public void get_joinsOutstandingFetch() {
+    List<String> first  = new ArrayList<>();
+    List<String> second = new ArrayList<>();
+
+    cache.get("https://signal.org", fetcher, first::add);
+    cache.get("https://signal.org", fetcher, second::add);
+
+    assertEquals(1, fetcher.requests.size());
+
+    fetcher.complete(0, "result");
+
+    assertEquals(1, first.size());
+    assertEquals(1, second.size());
+  }
+
+  @Test
+  public void get_failureIsNotCached() {
+    List<String> results = new ArrayList<>();
+
+    cache.get("https://signal.org", fetcher, results::add);
+    fetcher.complete(0, null);
+
+    cache.get("https://signal.org", fetcher, results::add);
+    fetcher.complete(1, "result");
+
+    assertEquals(2, fetcher.requests.size());
+    assertNull(results.get(0));
+    assertEquals("result", results.get(1));
+  }
+
+  @Test
+  public void get_evictsOldestBeyondMaxSize() {
+    List<String> results = new ArrayList<>();
+
+    cache.get("https://one.signal.org", fetcher, results::add);
+    fetcher.complete(0, "one");
+    cache.get("https://two.signal.org", fetcher, results::add);
+    fetcher.complete(1, "two");
+    cache.get("https://three.signal.org", fetcher, results::add);
+    fetcher.complete(2, "three");
+
+    cache.get("https://three.signal.org", fetcher, results::add);
+    cache.get("https://two.signal.org", fetcher, results::add);
+    cache.get("https://one.signal.org", fetcher, results::add);
+
+    assertEquals(4, fetcher.requests.size());
+  }
+
+  @Test
+  public void cancel_onlyCancelsFetchOnceNobodyIsWaiting() {
+    List<String> first  = new ArrayList<>();
+    List<String> second = new ArrayList<>();
+
+    RequestController firstController  = cache.get("https://signal.org", fetcher, first::add);
+    RequestController secondController = cache.get("https://signal.org", fetcher, second::add);
+
+    firstController.cancel();
+    assertFalse(fetcher.requests.get(0).canceled);
+
+    fetcher.complete(0, "result");
+
+    assertTrue(first.isEmpty());
+    assertEquals(1, second.size());
+
+    secondController.cancel();
+    assertFalse(fetcher.requests.get(0).canceled);
+  }
+
+  @Test
+  public void cancel_allWaiters_cancelsFetchAndStartsOverNextTime() {
+    List<String> results = new ArrayList<>();
+
+    cache.get("https://signal.org", fetcher, results::add).cancel();
+
+    assertTrue(fetcher.requests.get(0).canceled);
+
+    fetcher.complete(0, "late");
+    cache.get("https://signal.org", fetcher, results::add);
+
+    assertEquals(2, fetcher.requests.size());
+    assertTrue(results.isEmpty());
+  }
+
+  private static final class TestFetcher implements LinkPreviewCache.Fetcher<String> {
+
+    private final List<TestRequest> requests = new ArrayList<>();
+
+    @Override
+    public @NonNull RequestController fetch(@NonNull Consumer<String> callback) {
+      TestRequest request = new TestRequest(callback);
+      requests.add(request);
+      return request;
+    }
+
+    void complete(int index, String result) {
+      requests.get(index).callback.accept(result);
+    }
+  }
+
+  private static final class TestRequest implements RequestController {
+
+    private final Consumer<String> callback;
+
+    private boolean canceled;
+
+    private TestRequest(@NonNull Consumer<String> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void cancel() {
+      canceled = true;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package org.thoughtcrime.securesms.messages;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thoughtcrime.securesms.database.MessageDatabase.SyncMessageId;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ReceiptAggregatorTest {
+
+  private static final RecipientId ALICE = RecipientId.from(1);
+  private static final RecipientId BOB   = RecipientId.from(2);
+
+  private RecordingSink            sink;
+  private ScheduledExecutorService executor;
+  private ReceiptAggregator        aggregator;
+
+  @Before
+  public void setUp() {
+    sink       = new RecordingSink();
+    executor   = Executors.newSingleThreadScheduledExecutor();
+    aggregator = new ReceiptAggregator(sink, executor, TimeUnit.HOURS.toMillis(1));
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void addDeliveryReceipt_nothingSentUntilFlush() {
+    aggregator.addDeliveryReceipt(ALICE, 1);
+
+    assertTrue(sink.sent.isEmpty());
+
+    aggregator.flush();
+
+    assertEquals(1, sink.sent.size());
+  }
+
+  @Test
+  public void addDeliveryReceipt_coalescesPerRecipient() {
+    aggregator.addDeliveryReceipt(ALICE, 1);
+    aggregator.addDeliveryReceipt(BOB, 2);
+    aggregator.addDeliveryReceipt(ALICE, 3);
+    aggregator.addDeliveryReceipt(ALICE, 3);
+    aggregator.flush();
+
+    assertEquals(2, sink.sent.size());
+    assertEquals(new Sent(ReceiptAggregator.Type.DELIVERY, -1, ALICE, Arrays.asList(1L, 3L)), sink.sent.get(0));
+    assertEquals(new Sent(ReceiptAggregator.Type.DELIVERY, -1, BOB, Arrays.asList(2L)), sink.sent.get(1));
+  }
+
+  @Test
+  public void addReadReceipts_keptSeparateByThreadAndType() {
+    aggregator.addReadReceipts(10, ALICE, Arrays.asList(1L, 2L));
+    aggregator.addReadReceipts(11, ALICE, Arrays.asList(3L));
+    aggregator.addReadReceipts(10, ALICE, Arrays.asList(4L));
+    aggregator.addViewedReceipt(10, ALICE, 5);
+    aggregator.flush();
+
+    assertEquals(3, sink.sent.size());
+    assertEquals(new Sent(ReceiptAggregator.Type.READ, 10, ALICE, Arrays.asList(1L, 2L, 4L)), sink.sent.get(0));
+    assertEquals(new Sent(ReceiptAggregator.Type.READ, 11, ALICE, Arrays.asList(3L)), sink.sent.get(1));
+    assertEquals(new Sent(ReceiptAggregator.Type.VIEWED, 10, ALICE, Arrays.asList(5L)), sink.sent.get(2));
+  }
+
+  @Test
+  public void addReadReceipts_fullBatchSentWithoutWaitingAndChunked() {
+    aggregator.addReadReceipts(10, ALICE, timestamps(0, 1200));
+
+    assertEquals(3, sink.sent.size());
+    assertEquals(500, sink.sent.get(0).timestamps.size());
+    assertEquals(500, sink.sent.get(1).timestamps.size());
+    assertEquals(200, sink.sent.get(2).timestamps.size());
+
+    aggregator.flush();
+
+    assertEquals(3, sink.sent.size());
+  }
+
+  @Test
+  public void addIncomingDeliveryReceipt_appliedInOneBatch() {
+    for (int i = 0; i < 300; i++) {
+      aggregator.addIncomingDeliveryReceipt(new SyncMessageId(i % 2 == 0 ? ALICE : BOB, i));
+    }
+
+    assertTrue(sink.applied.isEmpty());
+
+    aggregator.flush();
+
+    assertEquals(1, sink.applied.size());
+    assertEquals(300, sink.applied.get(0).size());
+    assertEquals(300, aggregator.getIncomingCoalescingRatio(), 0);
+  }
+
+  @Test
+  public void addIncomingDeliveryReceipt_fullBatchAppliedWithoutWaiting() {
+    for (int i = 0; i < 500; i++) {
+      aggregator.addIncomingDeliveryReceipt(new SyncMessageId(ALICE, i));
+    }
+
+    assertEquals(1, sink.applied.size());
+  }
+
+  @Test
+  public void getOutgoingCoalescingRatio_receiptsPerMessage() {
+    for (int i = 0; i < 300; i++) {
+      aggregator.addDeliveryReceipt(ALICE, i);
+    }
+    aggregator.addDeliveryReceipt(BOB, 1000);
+    aggregator.flush();
+
+    assertEquals(2, sink.sent.size());
+    assertEquals(150.5f, aggregator.getOutgoingCoalescingRatio(), 0);
+  }
+
+  @Test
+  public void flush_afterWindow() throws Exception {
+    ReceiptAggregator aggregator = new ReceiptAggregator(sink, executor, 10);
+
+    aggregator.addDeliveryReceipt(ALICE, 1);
+    aggregator.addIncomingDeliveryReceipt(new SyncMessageId(BOB, 2));
+
+    executor.schedule(() -> {}, 50, TimeUnit.MILLISECONDS).get();
+
+    assertEquals(1, sink.sent.size());
+    assertEquals(1, sink.applied.size());
+  }
+
+  private static @NonNull List<Long> timestamps(long start, int count) {
+    List<Long> timestamps = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      timestamps.add(start + i);
+    }
+    return timestamps;
+  }
+
+  private static final class RecordingSink implements ReceiptAggregator.Sink {
+    private final List<Sent>                sent    = new ArrayList<>();
+    private final List<List<SyncMessageId>> applied = new ArrayList<>();
+
+    @Override
+    public synchronized void sendReceipts(@NonNull ReceiptAggregator.Type type, long threadId, @NonNull RecipientId recipientId, @NonNull List<Long> sentTimestamps) {
+      sent.add(new Sent(type, threadId, recipientId, sentTimestamps));
+    }
+
+    @Override
+    public synchronized void applyDeliveryReceipts(@NonNull List<SyncMessageId> syncMessageIds, long timestamp) {
+      applied.add(syncMessageIds);
+    }
+  }
+
+  private static final class Sent {
+    private final ReceiptAggregator.Type type;
+    private final long                   threadId;
+    private final RecipientId            recipientId;
+    private final List<Long>             timestamps;
+
+    private Sent(@NonNull ReceiptAggregator.Type type, long threadId, @NonNull RecipientId recipientId, @NonNull List<Long> timestamps) {
+      this.type        = type;
+      this.threadId    = threadId;
+      this.recipientId = recipientId;
+      this.timestamps  = timestamps;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Sent)) return false;
+      Sent that = (Sent) o;
+      return type == that.type && threadId == that.threadId && recipientId.equals(that.recipientId) && timestamps.equals(that.timestamps);
+    }
+
+    @Override
+    public int hashCode() {
+      return timestamps.hashCode();
+    }
+
+    @Override
+    public @NonNull String toString() {
+      return type + " " + threadId + " " + recipientId + " " + timestamps;
+    }
+  }
+}
@@ -0,0 +1,348 @@
+package org.thoughtcrime.securesms.payments.reconciliation;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.annimon.stream.Stream;
+import com.google.protobuf.ByteString;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.payments.Direction;
+import org.thoughtcrime.securesms.payments.FailureReason;
+import org.thoughtcrime.securesms.payments.MobileCoinLedgerWrapper;
+import org.thoughtcrime.securesms.payments.Payee;
+import org.thoughtcrime.securesms.payments.Payment;
+import org.thoughtcrime.securesms.payments.State;
+import org.thoughtcrime.securesms.payments.proto.MobileCoinLedger;
+import org.thoughtcrime.securesms.payments.proto.PaymentMetaData;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+import org.thoughtcrime.securesms.testutil.LogRecorder;
+import org.whispersystems.libsignal.util.ByteUtil;
+import org.whispersystems.signalservice.api.payments.Money;
+import org.whispersystems.signalservice.api.util.Uint64RangeException;
+import org.whispersystems.signalservice.api.util.Uint64Util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link LedgerReconciler} against a full {@link LedgerReconcile#reconcile} after each change
+ * to the ledger and local payments.
+ */
+public final class LedgerReconcilerTest {
+
+  @BeforeClass
+  public static void setup() {
+    Log.initialize(new LogRecorder());
+  }
+
+  @Test
+  public void empty_lists() {
+    assertReconcilesAsFull(new LedgerReconciler(), Collections.emptyList(), new MobileCoinLedgerWrapper(MobileCoinLedger.getDefaultInstance()));
+  }
+
+  @Test
+  public void new_txos_in_new_blocks() {
+    LedgerReconciler reconciler = new LedgerReconciler();
+    List<Payment>    local      = new ArrayList<>();
+
+    MobileCoinLedger.Builder ledger = MobileCoinLedger.newBuilder()
+                                                      .addUnspentTxos(unspentTxo(mob(10), 1, 1));
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    ledger.addUnspentTxos(unspentTxo(mob(2), 2, 3));
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    ledger.addUnspentTxos(unspentTxo(mob(3), 3, 3));
+    assertReconcilesAsFull(reconciler, local, ledger);
+  }
+
+  @Test
+  public void txo_becomes_spent_with_change() {
+    LedgerReconciler reconciler = new LedgerReconciler();
+    List<Payment>    local      = new ArrayList<>();
+
+    MobileCoinLedger.Builder ledger = MobileCoinLedger.newBuilder()
+                                                      .addUnspentTxos(unspentTxo(mob(10), 1, 1))
+                                                      .addUnspentTxos(unspentTxo(mob(5), 2, 2));
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    ledger.removeUnspentTxos(0)
+          .addSpentTxos(spentTxo(mob(10), 1, 1, 4))
+          .addUnspentTxos(unspentTxo(mob(7.5), 3, 4));
+    assertReconcilesAsFull(reconciler, local, ledger);
+  }
+
+  @Test
+  public void local_payment_arrives_after_its_txos() {
+    LedgerReconciler reconciler = new LedgerReconciler();
+    List<Payment>    local      = new ArrayList<>();
+
+    MobileCoinLedger.Builder ledger = MobileCoinLedger.newBuilder()
+                                                      .addSpentTxos(spentTxo(mob(10), 1, 1, 3))
+                                                      .addUnspentTxos(unspentTxo(mob(7.5), 2, 3))
+                                                      .addUnspentTxos(unspentTxo(mob(1), 3, 2));
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    local.add(payment("sent", mob(-2.5), State.SUCCESSFUL, new long[] { 1 }, new long[] { 2 }));
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    local.add(payment("received", mob(1), State.SUCCESSFUL, new long[0], new long[] { 3 }));
+    assertReconcilesAsFull(reconciler, local, ledger);
+  }
+
+  @Test
+  public void local_payment_fails() {
+    LedgerReconciler reconciler = new LedgerReconciler();
+    List<Payment>    local      = new ArrayList<>();
+
+    MobileCoinLedger.Builder ledger = MobileCoinLedger.newBuilder()
+                                                      .addSpentTxos(spentTxo(mob(10), 1, 1, 3))
+                                                      .addUnspentTxos(unspentTxo(mob(7.5), 2, 3));
+
+    Payment sent = payment("sent", mob(-2.5), State.SUCCESSFUL, new long[] { 1 }, new long[] { 2 });
+    local.add(sent);
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    local.set(0, payment(sent.getUuid(), "sent", mob(-2.5), State.FAILED, new long[] { 1 }, new long[] { 2 }));
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    local.clear();
+    assertReconcilesAsFull(reconciler, local, ledger);
+  }
+
+  @Test
+  public void ledger_replaced_reconciles_from_scratch() {
+    LedgerReconciler reconciler = new LedgerReconciler();
+    List<Payment>    local      = new ArrayList<>();
+
+    MobileCoinLedger.Builder ledger = MobileCoinLedger.newBuilder()
+                                                      .addUnspentTxos(unspentTxo(mob(10), 1, 5))
+                                                      .addUnspentTxos(unspentTxo(mob(3), 2, 6));
+    assertReconcilesAsFull(reconciler, local, ledger);
+
+    MobileCoinLedger.Builder restored = MobileCoinLedger.newBuilder()
+                                                        .addUnspentTxos(unspentTxo(mob(4), 10, 2));
+    assertReconcilesAsFull(reconciler, local, restored);
+
+    restored.addUnspentTxos(unspentTxo(mob(1), 11, 1));
+    assertReconcilesAsFull(reconciler, local, restored);
+  }
+
+  @Test
+  public void random_wallet_history() {
+    Random           random     = new Random(1234);
+    LedgerReconciler reconciler = new LedgerReconciler();
+    List<Payment>    local      = new ArrayList<>();
+
+    List<Long>                      unspent = new ArrayList<>();
+    Map<Long, Long>                 blocks  = new HashMap<>();
+    List<MobileCoinLedger.OwnedTXO> spent   = new ArrayList<>();
+
+    long block = 1;
+    long id    = 1;
+
+    for (int i = 0; i < 200; i++) {
+      block += 1 + random.nextInt(3);
+
+      if (!unspent.isEmpty() && random.nextBoolean()) {
+        long input  = unspent.remove(random.nextInt(unspent.size()));
+        long change = id++;
+
+        spent.add(spentTxo(mob(1.5), input, blocks.get(input), block));
+        unspent.add(change);
+        blocks.put(change, block);
+
+        if (random.nextInt(4) != 0) {
+          local.add(payment("sent " + i, mob(-1), random.nextInt(5) == 0 ? State.FAILED : State.SUCCESSFUL, new long[] { input }, new long[] { change }));
+        }
+      } else {
+        long received = id++;
+
+        unspent.add(received);
+        blocks.put(received, block);
+
+        if (random.nextBoolean()) {
+          local.add(payment("received " + i, mob(1), State.SUCCESSFUL, new long[0], new long[] { received }));
+        }
+      }
+
+      if (random.nextInt(10) == 0 && !local.isEmpty()) {
+        local.remove(random.nextInt(local.size()));
+      }
+
+      MobileCoinLedger.Builder ledger = MobileCoinLedger.newBuilder().addAllSpentTxos(spent);
+      for (long unspentId : unspent) {
+        ledger.addUnspentTxos(unspentTxo(mob(1.5), unspentId, blocks.get(unspentId)));
+      }
+
+      assertReconcilesAsFull(reconciler, local, ledger);
+    }
+  }
+
+  private static void assertReconcilesAsFull(@NonNull LedgerReconciler reconciler, @NonNull Collection<Payment> local, @NonNull MobileCoinLedger.Builder ledger) {
+    assertReconcilesAsFull(reconciler, local, new MobileCoinLedgerWrapper(ledger.build()));
+  }
+
+  private static void assertReconcilesAsFull(@NonNull LedgerReconciler reconciler, @NonNull Collection<Payment> local, @NonNull MobileCoinLedgerWrapper ledger) {
+    List<String> expected = describe(LedgerReconcile.reconcile(local, ledger));
+    List<String> actual   = describe(reconciler.reconcile(local, ledger));
+
+    assertEquals(expected, actual);
+  }
+
+  private static @NonNull List<String> describe(@NonNull List<Payment> payments) {
+    return Stream.of(payments)
+                 .map(p -> String.format(Locale.US, "%s %s %s %s block %d at %d",
+                                         p.getUuid(),
+                                         p.getNote(),
+                                         p.getDirection(),
+                                         p.getAmount(),
+                                         p.getBlockIndex(),
+                                         p.getBlockTimestamp()))
+                 .toList();
+  }
+
+  private static Payment payment(String note, Money.MobileCoin valueAndDirection, State state, long[] keyImages, long[] publicKeys) {
+    return payment(UUID.randomUUID(), note, valueAndDirection, state, keyImages, publicKeys);
+  }
+
+  private static Payment payment(UUID uuid, String note, Money.MobileCoin valueAndDirection, State state, long[] keyImages, long[] publicKeys) {
+    PaymentMetaData.MobileCoinTxoIdentification.Builder builderForValue = PaymentMetaData.MobileCoinTxoIdentification.newBuilder();
+
+    for (long id : keyImages) {
+      builderForValue.addKeyImages(keyImage(id));
+    }
+
+    for (long id : publicKeys) {
+      builderForValue.addPublicKey(publicKey(id));
+    }
+
+    PaymentMetaData paymentMetaData = PaymentMetaData.newBuilder()
+                                                     .setMobileCoinTxoIdentification(builderForValue)
+                                                     .build();
+
+    return new Payment() {
+      @Override
+      public @NonNull UUID getUuid() {
+        return uuid;
+      }
+
+      @Override
+      public @NonNull Payee getPayee() {
+        return new Payee(RecipientId.from(1));
+      }
+
+      @Override
+      public long getBlockIndex() {
+        return 0;
+      }
+
+      @Override
+      public long getBlockTimestamp() {
+        return 0;
+      }
+
+      @Override
+      public long getTimestamp() {
+        return 0;
+      }
+
+      @Override
+      public @NonNull Direction getDirection() {
+        return valueAndDirection.isNegative() ? Direction.SENT : Direction.RECEIVED;
+      }
+
+      @Override
+      public @NonNull State getState() {
+        return state;
+      }
+
+      @Override
+      public @Nullable FailureReason getFailureReason() {
+        return null;
+      }
+
+      @Override
+      public @NonNull String getNote() {
+        return note;
+      }
+
+      @Override
+      public @NonNull Money getAmount() {
+        return valueAndDirection.abs();
+      }
+
+      @Override
+      public @NonNull Money getFee() {
+        return getAmount().toZero();
+      }
+
+      @Override
+      public @NonNull PaymentMetaData getPaymentMetaData() {
+        return paymentMetaData;
+      }
+
+      @Override
+      public boolean isSeen() {
+        return true;
+      }
+    };
+  }
+
+  private static MobileCoinLedger.OwnedTXO unspentTxo(Money.MobileCoin mob, long id, long receivedBlock) {
+    return txo(mob, id, receivedBlock).build();
+  }
+
+  private static MobileCoinLedger.OwnedTXO spentTxo(Money.MobileCoin mob, long id, long receivedBlock, long spentBlock) {
+    return txo(mob, id, receivedBlock).setSpentInBlock(block(spentBlock)).build();
+  }
+
+  private static MobileCoinLedger.OwnedTXO.Builder txo(Money.MobileCoin mob, long id, long receivedBlock) {
+    MobileCoinLedger.OwnedTXO.Builder builder = MobileCoinLedger.OwnedTXO.newBuilder()
+                                                                         .setReceivedInBlock(block(receivedBlock))
+                                                                         .setKeyImage(keyImage(id))
+                                                                         .setPublicKey(publicKey(id));
+    try {
+      builder.setAmount(Uint64Util.bigIntegerToUInt64(mob.toPicoMobBigInteger()));
+    } catch (Uint64RangeException e) {
+      throw new AssertionError(e);
+    }
+    return builder;
+  }
+
+  private static MobileCoinLedger.Block block(long blockIndex) {
+    return MobileCoinLedger.Block.newBuilder()
+                                 .setBlockNumber(blockIndex)
+                                 .setTimestamp(blockIndex * 1000)
+                                 .build();
+  }
+
+  private static ByteString keyImage(long id) {
+    return id(0x7f00000000000000L | id);
+  }
+
+  private static ByteString publicKey(long id) {
+    return id(0x0f00000000000000L | id);
+  }
+
+  private static ByteString id(long id) {
+    return ByteString.copyFrom(ByteUtil.longToByteArray(id));
+  }
+
+  private static Money.MobileCoin mob(double value) {
+    return Money.mobileCoin(BigDecimal.valueOf(value));
+  }
+}
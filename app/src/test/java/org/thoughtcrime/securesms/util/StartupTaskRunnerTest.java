@@ -0,0 +1,139 @@
+package org.thoughtcrime.securesms.util;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class StartupTaskRunnerTest {
+
+  private final ExecutorService   executor = Executors.newFixedThreadPool(3);
+  private final StartupTaskRunner runner   = new StartupTaskRunner(executor, new NoopListener());
+  private final List<String>      order    = Collections.synchronizedList(new ArrayList<>());
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void tasks_without_dependencies_run_in_order_on_the_calling_thread() {
+    Thread caller = Thread.currentThread();
+
+    runner.add("a", true, null, () -> record("a", caller));
+    runner.add("b", true, null, () -> record("b", caller));
+    runner.add("c", true, null, () -> record("c", caller));
+
+    runner.run();
+
+    assertEquals(Arrays.asList("a", "b", "c"), order);
+  }
+
+  @Test
+  public void background_tasks_run_in_parallel_after_their_dependencies() {
+    Thread         caller  = Thread.currentThread();
+    CountDownLatch started = new CountDownLatch(2);
+
+    runner.add("first", true, null, () -> order.add("first"));
+    runner.add("db", false, Collections.singletonList("first"), () -> awaitBoth(started, "db", caller));
+    runner.add("rtc", false, Collections.singletonList("first"), () -> awaitBoth(started, "rtc", caller));
+    runner.add("main", true, Collections.singletonList("first"), () -> record("main", caller));
+    runner.add("last", true, Arrays.asList("db", "rtc", "main"), () -> record("last", caller));
+
+    runner.run();
+
+    assertEquals("first", order.get(0));
+    assertEquals("last", order.get(order.size() - 1));
+    assertTrue(order.containsAll(Arrays.asList("db", "rtc", "main")));
+  }
+
+  @Test
+  public void critical_path_follows_the_latest_dependency() {
+    runner.add("a", true, null, () -> sleep(1));
+    runner.add("slow", false, Collections.singletonList("a"), () -> sleep(50));
+    runner.add("fast", true, Collections.singletonList("a"), () -> {});
+    runner.add("b", true, Arrays.asList("slow", "fast"), () -> {});
+
+    List<String> path = new ArrayList<>();
+    for (StartupTaskRunner.Task task : StartupTaskRunner.getCriticalPath(runner.run())) {
+      path.add(task.getName());
+    }
+
+    assertEquals(Arrays.asList("a", "slow", "b"), path);
+  }
+
+  @Test
+  public void failures_are_rethrown_and_dependents_skipped() {
+    runner.add("a", true, null, () -> order.add("a"));
+    runner.add("broken", false, Collections.singletonList("a"), () -> { throw new IllegalStateException("broken"); });
+    runner.add("b", true, Collections.singletonList("broken"), () -> order.add("b"));
+
+    try {
+      runner.run();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("broken", e.getMessage());
+    }
+
+    assertEquals(Collections.singletonList("a"), order);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void dependencies_must_be_added_first() {
+    runner.add("a", true, Collections.singletonList("b"), () -> {});
+  }
+
+  private void record(@NonNull String name, @NonNull Thread expected) {
+    assertEquals(expected, Thread.currentThread());
+    order.add(name);
+  }
+
+  /**
+   * Only returns once the other background task has started too, so fails if they're run one at a
+   * time.
+   */
+  private void awaitBoth(@NonNull CountDownLatch started, @NonNull String name, @NonNull Thread caller) {
+    assertNotEquals(caller, Thread.currentThread());
+    started.countDown();
+
+    try {
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+
+    order.add(name);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final class NoopListener implements StartupTaskRunner.Listener {
+    @Override
+    public void onTaskStarted(@NonNull StartupTaskRunner.Task task) {
+    }
+
+    @Override
+    public void onTaskFinished(@NonNull StartupTaskRunner.Task task) {
+    }
+  }
+}
@@ -25,6 +25,11 @@ import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * Log files are a series of records, each of which is a random IV, a 4 byte length, and the
+ * AES-CBC ciphertext of one or more newline-separated log lines. Older writers put a single line in
+ * each record, the current one encrypts a whole block of lines per record. Both read the same way.
+ */
 class LogFile {
 
   public static class Writer {
@@ -32,14 +37,17 @@ class LogFile {
     private final byte[]        ivBuffer         = new byte[16];
     private final GrowingBuffer ciphertextBuffer = new GrowingBuffer();
 
-    private final byte[]               secret;
-    private final File                 file;
+    private final SecretKeySpec        key;
+    private final SecureRandom         random;
     private final Cipher               cipher;
     private final BufferedOutputStream outputStream;
 
+    private long size;
+
     Writer(@NonNull byte[] secret, @NonNull File file) throws IOException {
-      this.secret       = secret;
-      this.file         = file;
+      this.key          = new SecretKeySpec(secret, "AES");
+      this.random       = new SecureRandom();
+      this.size         = file.length();
       this.outputStream = new BufferedOutputStream(new FileOutputStream(file, true));
 
       try {
@@ -49,12 +57,14 @@ class LogFile {
       }
     }
 
-    void writeEntry(@NonNull String entry) throws IOException {
-      new SecureRandom().nextBytes(ivBuffer);
+    /**
+     * Encrypts and writes a block of newline-separated entries as a single record, then flushes.
+     */
+    void writeBlock(@NonNull byte[] plaintext) throws IOException {
+      random.nextBytes(ivBuffer);
 
-      byte[] plaintext = entry.getBytes();
       try {
-        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(secret, "AES"), new IvParameterSpec(ivBuffer));
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(ivBuffer));
 
         int    cipherLength = cipher.getOutputSize(plaintext.length);
         byte[] ciphertext   = ciphertextBuffer.get(cipherLength);
@@ -65,13 +75,18 @@ class LogFile {
         outputStream.write(ciphertext, 0, cipherLength);
 
         outputStream.flush();
+
+        size += ivBuffer.length + 4 + cipherLength;
       } catch (ShortBufferException | InvalidAlgorithmParameterException | InvalidKeyException | BadPaddingException | IllegalBlockSizeException e) {
         throw new AssertionError(e);
       }
     }
 
+    /**
+     * The size of the file, tracked as records are written rather than asked of the file system.
+     */
     long getLogSize() {
-      return file.length();
+      return size;
     }
 
     void close() {
@@ -85,12 +100,12 @@ class LogFile {
     private final byte[]        intBuffer        = new byte[4];
     private final GrowingBuffer ciphertextBuffer = new GrowingBuffer();
 
-    private final byte[]              secret;
+    private final SecretKeySpec       key;
     private final Cipher              cipher;
     private final BufferedInputStream inputStream;
 
     Reader(@NonNull byte[] secret, @NonNull File file) throws IOException {
-      this.secret      = secret;
+      this.key         = new SecretKeySpec(secret, "AES");
       this.inputStream = new BufferedInputStream(new FileInputStream(file));
 
       try {
@@ -103,14 +118,22 @@ class LogFile {
     String readAll() throws IOException {
       StringBuilder builder = new StringBuilder();
 
-      String entry;
-      while ((entry = readEntry()) != null) {
-        builder.append(entry).append('\n');
+      try {
+        String entry;
+        while ((entry = readEntry()) != null) {
+          builder.append(entry).append('\n');
+        }
+      } finally {
+        StreamUtil.close(inputStream);
       }
 
       return builder.toString();
     }
 
+    /**
+     * @return The next record, which may hold several lines, or null at the end of the file. A
+     *         record cut short by the process dying mid-write is treated as the end of the file.
+     */
     private String readEntry() throws IOException {
       try {
         StreamUtil.readFully(inputStream, ivBuffer);
@@ -122,12 +145,14 @@ class LogFile {
         StreamUtil.readFully(inputStream, ciphertext, length);
 
         try {
-          cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(secret, "AES"), new IvParameterSpec(ivBuffer));
+          cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(ivBuffer));
           byte[] plaintext = cipher.doFinal(ciphertext, 0, length);
 
           return new String(plaintext);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
           throw new AssertionError(e);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+          throw new IOException("Corrupt log record", e);
         }
       } catch (EOFException e) {
         return null;
@@ -19,9 +19,14 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 @SuppressLint("LogNotSignal")
@@ -36,18 +41,27 @@ public final class PersistentLogger extends Log.Logger {
   private static final String LOG_E   = "E";
   private static final String LOG_WTF = "A";
 
-  private static final String           LOG_DIRECTORY   = "log";
-  private static final String           FILENAME_PREFIX = "log-";
-  private static final int              MAX_LOG_FILES   = 7;
-  private static final int              MAX_LOG_SIZE    = 300 * 1024;
-  private static final SimpleDateFormat DATE_FORMAT     = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS zzz", Locale.US);
-
-  private final Context  context;
-  private final Executor executor;
-  private final byte[]   secret;
-  private final String   logTag;
+  private static final String           LOG_DIRECTORY     = "log";
+  private static final String           FILENAME_PREFIX   = "log-";
+  private static final int              MAX_LOG_FILES     = 7;
+  private static final int              MAX_LOG_SIZE      = 300 * 1024;
+  private static final int              MAX_BLOCK_SIZE    = 16 * 1024;
+  private static final int              FLUSH_ENTRIES     = 256;
+  private static final long             FLUSH_INTERVAL_MS = 500;
+  private static final SimpleDateFormat DATE_FORMAT       = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS zzz", Locale.US);
+
+  private final Context                  context;
+  private final ScheduledExecutorService executor;
+  private final byte[]                   secret;
+  private final String                   logTag;
+  private final Queue<LogRequest>        pending;
+  private final AtomicInteger            pendingCount;
+  private final AtomicBoolean            flushScheduled;
+  private final StringBuilder            block;
 
   private LogFile.Writer writer;
+  private long           lastTimestamp;
+  private String         lastFormattedDate;
 
   private ThreadLocal<String> cachedThreadString;
 
@@ -56,7 +70,11 @@ public final class PersistentLogger extends Log.Logger {
     this.secret             = secret;
     this.logTag             = logTag;
     this.cachedThreadString = new ThreadLocal<>();
-    this.executor           = Executors.newSingleThreadExecutor(r -> {
+    this.pending            = new ConcurrentLinkedQueue<>();
+    this.pendingCount       = new AtomicInteger();
+    this.flushScheduled     = new AtomicBoolean();
+    this.block              = new StringBuilder(MAX_BLOCK_SIZE);
+    this.executor           = Executors.newSingleThreadScheduledExecutor(r -> {
       Thread thread = new Thread(r, "signal-PersistentLogger");
       thread.setPriority(Thread.MIN_PRIORITY);
       return thread;
@@ -99,7 +117,10 @@ public final class PersistentLogger extends Log.Logger {
   public void blockUntilAllWritesFinished() {
     CountDownLatch latch = new CountDownLatch(1);
 
-    executor.execute(latch::countDown);
+    executor.execute(() -> {
+      flush();
+      latch.countDown();
+    });
 
     try {
       latch.await();
@@ -114,6 +135,8 @@ public final class PersistentLogger extends Log.Logger {
     AtomicReference<CharSequence> logs  = new AtomicReference<>();
 
     executor.execute(() -> {
+      flush();
+
       StringBuilder builder = new StringBuilder();
 
       try {
@@ -154,6 +177,11 @@ public final class PersistentLogger extends Log.Logger {
     }
   }
 
+  /**
+   * Queues the line without locking. Lines are written out by {@link #flush()} on the executor,
+   * either once {@link #FLUSH_ENTRIES} are waiting or {@link #FLUSH_INTERVAL_MS} after the first of
+   * them was queued, whichever comes first.
+   */
   @AnyThread
   private void write(String level, String tag, String message, Throwable t) {
     String threadString = cachedThreadString.get();
@@ -168,30 +196,65 @@ public final class PersistentLogger extends Log.Logger {
       cachedThreadString.set(threadString);
     }
 
-    final String finalThreadString = threadString;
+    pending.add(new LogRequest(level, tag, message, t, threadString, System.currentTimeMillis()));
 
-    executor.execute(() -> {
-      try {
-        if (writer == null) {
-          return;
-        }
+    if (pendingCount.incrementAndGet() == FLUSH_ENTRIES) {
+      executor.execute(this::flush);
+    } else if (flushScheduled.compareAndSet(false, true)) {
+      executor.schedule(this::flush, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+  }
 
-        if (writer.getLogSize() >= MAX_LOG_SIZE) {
-          writer.close();
-          writer = new LogFile.Writer(secret, createNewLogFile());
-          trimLogFilesOverMax();
-        }
+  /**
+   * Writes out everything queued so far, encrypting up to {@link #MAX_BLOCK_SIZE} characters of
+   * lines at a time as one record.
+   */
+  @WorkerThread
+  private void flush() {
+    flushScheduled.set(false);
 
-        for (String entry : buildLogEntries(level, tag, message, t, finalThreadString)) {
-          writer.writeEntry(entry);
+    LogRequest request;
+    while ((request = pending.poll()) != null) {
+      pendingCount.decrementAndGet();
+
+      for (String entry : buildLogEntries(request)) {
+        if (block.length() > 0) {
+          block.append('\n');
         }
+        block.append(entry);
+      }
 
-      } catch (IOException e) {
-        android.util.Log.w(TAG, "Failed to write line. Deleting all logs and starting over.");
-        deleteAllLogs();
-        initializeWriter();
+      if (block.length() >= MAX_BLOCK_SIZE) {
+        writeBlock();
       }
-    });
+    }
+
+    if (block.length() > 0) {
+      writeBlock();
+    }
+  }
+
+  @WorkerThread
+  private void writeBlock() {
+    try {
+      if (writer == null) {
+        return;
+      }
+
+      if (writer.getLogSize() >= MAX_LOG_SIZE) {
+        writer.close();
+        writer = new LogFile.Writer(secret, createNewLogFile());
+        trimLogFilesOverMax();
+      }
+
+      writer.writeBlock(block.toString().getBytes());
+    } catch (IOException e) {
+      android.util.Log.w(TAG, "Failed to write lines. Deleting all logs and starting over.");
+      deleteAllLogs();
+      initializeWriter();
+    } finally {
+      block.setLength(0);
+    }
   }
 
   private void trimLogFilesOverMax() throws IOException {
@@ -245,28 +308,58 @@ public final class PersistentLogger extends Log.Logger {
     return logDir;
   }
 
-  private List<String> buildLogEntries(String level, String tag, String message, Throwable t, String threadString) {
+  private List<String> buildLogEntries(LogRequest request) {
     List<String> entries = new LinkedList<>();
-    Date         date    = new Date();
+    String       date    = formatDate(request.timestamp);
 
-    entries.add(buildEntry(level, tag, message, date, threadString));
+    entries.add(buildEntry(request.level, request.tag, request.message, date, request.threadString));
 
-    if (t != null) {
+    if (request.throwable != null) {
       ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-      t.printStackTrace(new PrintStream(outputStream));
+      request.throwable.printStackTrace(new PrintStream(outputStream));
 
       String   trace = new String(outputStream.toByteArray());
       String[] lines = trace.split("\\n");
 
       for (String line : lines) {
-        entries.add(buildEntry(level, tag, line, date, threadString));
+        entries.add(buildEntry(request.level, request.tag, line, date, request.threadString));
       }
     }
 
     return entries;
   }
 
-  private String buildEntry(String level, String tag, String message, Date date, String threadString) {
-    return '[' + logTag + "] [" + threadString + "] " + DATE_FORMAT.format(date) + ' ' + level + ' ' + tag + ": " + message;
+  /**
+   * Bursts of lines tend to share a timestamp, so the last one formatted is reused.
+   */
+  private String formatDate(long timestamp) {
+    if (timestamp != lastTimestamp || lastFormattedDate == null) {
+      lastTimestamp     = timestamp;
+      lastFormattedDate = DATE_FORMAT.format(new Date(timestamp));
+    }
+
+    return lastFormattedDate;
+  }
+
+  private String buildEntry(String level, String tag, String message, String date, String threadString) {
+    return '[' + logTag + "] [" + threadString + "] " + date + ' ' + level + ' ' + tag + ": " + message;
+  }
+
+  private static final class LogRequest {
+    private final String    level;
+    private final String    tag;
+    private final String    message;
+    private final Throwable throwable;
+    private final String    threadString;
+    private final long      timestamp;
+
+    private LogRequest(String level, String tag, String message, Throwable throwable, String threadString, long timestamp) {
+      this.level        = level;
+      this.tag          = tag;
+      this.message      = message;
+      this.throwable    = throwable;
+      this.threadString = threadString;
+      this.timestamp    = timestamp;
+    }
   }
 }
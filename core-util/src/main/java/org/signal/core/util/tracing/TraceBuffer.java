@@ -0,0 +1,128 @@
+package org.signal.core.util.tracing;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ring of fixed-size events with a single writer, the thread that owns it, and a single reader,
+ * the {@link TraceRecorder}. Neither side locks; the positions are published with ordered writes so
+ * the reader only ever sees whole events.
+ * <p>
+ * An event is four longs: a timestamp, a track, the type and interned name, and a value that is
+ * either the interned debug annotations or a counter value. When the reader falls behind, new
+ * events are dropped and counted rather than overwriting ones it hasn't read.
+ */
+final class TraceBuffer {
+
+  static final int EVENT_SIZE = 4 * Long.BYTES;
+
+  private final Thread     owner;
+  private final long[]     events;
+  private final int        capacity;
+  private final int        mask;
+  private final AtomicLong writePosition;
+  private final AtomicLong readPosition;
+  private final AtomicLong dropped;
+
+  /**
+   * @param capacity Number of events, which must be a power of two.
+   */
+  TraceBuffer(@NonNull Thread owner, int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+
+    this.owner         = owner;
+    this.events        = new long[capacity * 4];
+    this.capacity      = capacity;
+    this.mask          = capacity - 1;
+    this.writePosition = new AtomicLong();
+    this.readPosition  = new AtomicLong();
+    this.dropped       = new AtomicLong();
+  }
+
+  /**
+   * Called only by the owning thread.
+   *
+   * @return The number of events waiting to be read, including this one, or -1 if it was dropped.
+   */
+  int add(long timestamp, long trackId, int type, int nameId, long value) {
+    long write   = writePosition.get();
+    long waiting = write - readPosition.get();
+
+    if (waiting >= capacity) {
+      dropped.lazySet(dropped.get() + 1);
+      return -1;
+    }
+
+    int offset = (int) (write & mask) * 4;
+
+    events[offset]     = timestamp;
+    events[offset + 1] = trackId;
+    events[offset + 2] = ((long) type << 32) | (nameId & 0xFFFFFFFFL);
+    events[offset + 3] = value;
+
+    writePosition.lazySet(write + 1);
+
+    return (int) waiting + 1;
+  }
+
+  /**
+   * Called only by the reader. Copies as many whole events as fit.
+   *
+   * @return Whether the buffer was emptied.
+   */
+  boolean drainTo(@NonNull ByteBuffer out) {
+    long read  = readPosition.get();
+    long write = writePosition.get();
+
+    while (read < write && out.remaining() >= EVENT_SIZE) {
+      int offset = (int) (read & mask) * 4;
+
+      out.putLong(events[offset]);
+      out.putLong(events[offset + 1]);
+      out.putLong(events[offset + 2]);
+      out.putLong(events[offset + 3]);
+
+      read++;
+    }
+
+    readPosition.lazySet(read);
+
+    return read == write;
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  long getDropped() {
+    return dropped.get();
+  }
+
+  boolean isOwnerAlive() {
+    return owner.isAlive();
+  }
+
+  static long timestamp(@NonNull ByteBuffer in, int index) {
+    return in.getLong(index * EVENT_SIZE);
+  }
+
+  static long trackId(@NonNull ByteBuffer in, int index) {
+    return in.getLong(index * EVENT_SIZE + Long.BYTES);
+  }
+
+  static int type(@NonNull ByteBuffer in, int index) {
+    return (int) (in.getLong(index * EVENT_SIZE + 2 * Long.BYTES) >>> 32);
+  }
+
+  static int nameId(@NonNull ByteBuffer in, int index) {
+    return (int) in.getLong(index * EVENT_SIZE + 2 * Long.BYTES);
+  }
+
+  static long value(@NonNull ByteBuffer in, int index) {
+    return in.getLong(index * EVENT_SIZE + 3 * Long.BYTES);
+  }
+}
@@ -0,0 +1,337 @@
+package org.signal.core.util.tracing;
+
+import android.annotation.SuppressLint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.signal.core.util.tracing.TraceProtos.TrackEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The streaming mode of the {@link Tracer}. Events are written as fixed-size binary records into a
+ * {@link TraceBuffer} owned by the calling thread, with names and debug annotations interned to ids.
+ * A background thread moves them from the buffers into an encrypted, fixed-size {@link TraceRing}
+ * on disk, and they are only turned into Perfetto protos when the trace is exported.
+ * <p>
+ * Keeps far more history than the in-memory mode for the same memory, at the cost of losing
+ * anything from a previous process.
+ * <p>
+ * Interned ids carry the generation of the string table they came from. A new generation starts
+ * each time the ring wraps around, and only the current and previous tables are kept, since every
+ * segment that could refer to anything older has been overwritten. That way the tables stay as
+ * bounded as the ring instead of filling up with one-off annotations over a long session.
+ */
+@SuppressLint("LogNotSignal")
+final class TraceRecorder {
+
+  private static final String TAG = TraceRecorder.class.getSimpleName();
+
+  private static final int  BUFFER_CAPACITY   = 1024;
+  private static final long SPILL_INTERVAL_MS = 250;
+  private static final int  MAX_STRINGS       = 16_384;
+  private static final int  NO_STRING         = 0;
+  private static final int  DROPPED_STRING    = 1;
+  private static final int  GENERATION_SHIFT  = 24;
+  private static final int  INDEX_MASK        = (1 << GENERATION_SHIFT) - 1;
+  private static final int  GENERATIONS       = 256;
+  private static final char SEPARATOR         = '\u0000';
+
+  private final TraceRing                ring;
+  private final ThreadLocal<TraceBuffer> buffers;
+  private final List<TraceBuffer>        allBuffers;
+  private final ByteBuffer               segment;
+  private final Thread                   spiller;
+
+  private volatile StringTable strings;
+  private volatile StringTable previousStrings;
+
+  private long droppedFromDeadThreads;
+  private long segmentsWritten;
+
+  TraceRecorder(@NonNull File file, @NonNull byte[] secret, long maxSizeBytes) throws IOException {
+    this.ring       = new TraceRing(file, secret, maxSizeBytes);
+    this.allBuffers = new CopyOnWriteArrayList<>();
+    this.strings    = new StringTable(0);
+    this.segment    = ByteBuffer.allocate(TraceRing.SEGMENT_CAPACITY - TraceRing.SEGMENT_CAPACITY % TraceBuffer.EVENT_SIZE);
+    this.buffers    = new ThreadLocal<TraceBuffer>() {
+      @Override
+      protected TraceBuffer initialValue() {
+        TraceBuffer buffer = new TraceBuffer(Thread.currentThread(), BUFFER_CAPACITY);
+        allBuffers.add(buffer);
+        return buffer;
+      }
+    };
+
+    this.spiller = new Thread(this::runSpiller, "signal-TraceSpiller");
+    this.spiller.setPriority(Thread.MIN_PRIORITY);
+    this.spiller.setDaemon(true);
+    this.spiller.start();
+  }
+
+  void record(int type, long trackId, long timestamp, @NonNull String name, @Nullable Map<String, String> values) {
+    record(type, trackId, timestamp, name, values != null && !values.isEmpty() ? intern(encode(values)) : NO_STRING);
+  }
+
+  void record(int type, long trackId, long timestamp, @NonNull String name, long value) {
+    int waiting = buffers.get().add(timestamp, trackId, type, intern(name), value);
+
+    if (waiting == BUFFER_CAPACITY / 2) {
+      LockSupport.unpark(spiller);
+    }
+  }
+
+  long getDroppedCount() {
+    long dropped = droppedFromDeadThreads;
+
+    for (TraceBuffer buffer : allBuffers) {
+      dropped += buffer.getDropped();
+    }
+
+    return dropped;
+  }
+
+  /**
+   * Moves everything out of the thread buffers and turns all recorded events into packets, oldest
+   * first.
+   */
+  synchronized @NonNull List<TraceProtos.TracePacket> export(int trustedSequenceId) {
+    List<ByteBuffer> chunks = new ArrayList<>();
+
+    try {
+      spill();
+
+      for (byte[] contents : ring.readAll()) {
+        chunks.add(ByteBuffer.wrap(contents));
+      }
+    } catch (IOException e) {
+      android.util.Log.w(TAG, "Failed to read trace ring.", e);
+    }
+
+    ByteBuffer pending = ByteBuffer.allocate(segment.position());
+    pending.put(segment.array(), 0, segment.position());
+    chunks.add(pending);
+
+    List<long[]> events = new ArrayList<>();
+    for (ByteBuffer chunk : chunks) {
+      int count = chunk.capacity() / TraceBuffer.EVENT_SIZE;
+
+      for (int i = 0; i < count; i++) {
+        events.add(new long[] { TraceBuffer.timestamp(chunk, i),
+                                TraceBuffer.trackId(chunk, i),
+                                TraceBuffer.type(chunk, i),
+                                TraceBuffer.nameId(chunk, i),
+                                TraceBuffer.value(chunk, i) });
+      }
+    }
+
+    Collections.sort(events, (lhs, rhs) -> Long.compare(lhs[0], rhs[0]));
+
+    StringTable[] tables = new StringTable[GENERATIONS];
+    for (StringTable table : Arrays.asList(previousStrings, strings)) {
+      if (table != null) {
+        tables[table.generation] = table.copy();
+      }
+    }
+
+    List<TraceProtos.TracePacket> packets = new ArrayList<>(events.size());
+    for (long[] event : events) {
+      packets.add(toPacket(event, tables, trustedSequenceId));
+    }
+
+    return packets;
+  }
+
+  private void runSpiller() {
+    //noinspection InfiniteLoopStatement
+    while (true) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(SPILL_INTERVAL_MS));
+
+      synchronized (this) {
+        try {
+          spill();
+        } catch (IOException e) {
+          android.util.Log.w(TAG, "Failed to spill trace events.", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Drains every thread buffer into the current segment, writing the segment to the ring each time
+   * it fills. Whatever doesn't fill a segment is kept for next time.
+   */
+  private void spill() throws IOException {
+    for (TraceBuffer buffer : allBuffers) {
+      boolean empty;
+
+      while (!(empty = buffer.drainTo(segment))) {
+        writeSegment();
+      }
+
+      if (segment.remaining() < TraceBuffer.EVENT_SIZE) {
+        writeSegment();
+      }
+
+      if (empty && !buffer.isOwnerAlive()) {
+        droppedFromDeadThreads += buffer.getDropped();
+        allBuffers.remove(buffer);
+      }
+    }
+  }
+
+  private void writeSegment() throws IOException {
+    ring.write(segment.array(), segment.position());
+    segment.clear();
+
+    segmentsWritten++;
+
+    if (segmentsWritten % ring.getSegmentCount() == 0) {
+      StringTable current = strings;
+
+      previousStrings = current;
+      strings         = new StringTable((current.generation + 1) % GENERATIONS);
+    }
+  }
+
+  private int intern(@NonNull String value) {
+    return strings.intern(value);
+  }
+
+  private static @NonNull String resolve(@NonNull StringTable[] tables, long id) {
+    int index = (int) id & INDEX_MASK;
+
+    if (index == NO_STRING) {
+      return "";
+    } else if (index == DROPPED_STRING) {
+      return "<dropped>";
+    }
+
+    StringTable table = tables[(int) (id >>> GENERATION_SHIFT) & (GENERATIONS - 1)];
+
+    return table != null ? table.get(index) : "";
+  }
+
+  private static @NonNull String encode(@NonNull Map<String, String> values) {
+    StringBuilder builder = new StringBuilder();
+
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      builder.append(entry.getKey()).append(SEPARATOR)
+             .append(entry.getValue() != null ? entry.getValue() : "").append(SEPARATOR);
+    }
+
+    return builder.toString();
+  }
+
+  private static @NonNull Map<String, String> decode(@NonNull String encoded) {
+    Map<String, String> values = new LinkedHashMap<>();
+    String[]            parts  = encoded.split(String.valueOf(SEPARATOR), -1);
+
+    for (int i = 0; i + 1 < parts.length; i += 2) {
+      values.put(parts[i], parts[i + 1]);
+    }
+
+    return values;
+  }
+
+  private static @NonNull TraceProtos.TracePacket toPacket(@NonNull long[] event, @NonNull StringTable[] tables, int trustedSequenceId) {
+    int                type  = (int) event[2];
+    int                id    = (int) event[3];
+    TrackEvent.Builder track = TrackEvent.newBuilder()
+                                         .setTrackUuid(event[1])
+                                         .setType(TrackEvent.Type.forNumber(type));
+
+    if (type == TrackEvent.Type.TYPE_COUNTER_VALUE) {
+      track.setCounterValue(event[4]);
+    } else {
+      track.setName(resolve(tables, id));
+    }
+
+    if (type == TrackEvent.Type.TYPE_SLICE_BEGIN_VALUE && event[4] != NO_STRING) {
+      for (Map.Entry<String, String> entry : decode(resolve(tables, event[4])).entrySet()) {
+        track.addDebugAnnotations(TraceProtos.DebugAnnotation.newBuilder()
+                                                             .setName(entry.getKey())
+                                                             .setStringValue(entry.getValue()));
+      }
+    }
+
+    return TraceProtos.TracePacket.newBuilder()
+                                  .setTrustedPacketSequenceId(trustedSequenceId)
+                                  .setTimestamp(event[0])
+                                  .setTrackEvent(track)
+                                  .build();
+  }
+
+  /**
+   * One generation of interned strings. Ids are tagged with the generation so that events can be
+   * resolved against the table that was current when they were recorded.
+   */
+  private static final class StringTable {
+
+    private final int                  generation;
+    private final Map<String, Integer> ids;
+    private final List<String>         values;
+
+    private StringTable(int generation) {
+      this.generation = generation;
+      this.ids        = new ConcurrentHashMap<>();
+      this.values     = new ArrayList<>();
+
+      values.add("");
+      values.add("<dropped>");
+    }
+
+    private StringTable(int generation, @NonNull List<String> values) {
+      this.generation = generation;
+      this.ids        = Collections.emptyMap();
+      this.values     = values;
+    }
+
+    int intern(@NonNull String value) {
+      Integer id = ids.get(value);
+
+      if (id != null) {
+        return id;
+      }
+
+      synchronized (values) {
+        id = ids.get(value);
+
+        if (id == null) {
+          if (values.size() >= MAX_STRINGS) {
+            return DROPPED_STRING;
+          }
+
+          id = (generation << GENERATION_SHIFT) | values.size();
+          values.add(value);
+          ids.put(value, id);
+        }
+
+        return id;
+      }
+    }
+
+    @NonNull String get(int index) {
+      return index < values.size() ? values.get(index) : "";
+    }
+
+    @NonNull StringTable copy() {
+      synchronized (values) {
+        return new StringTable(generation, new ArrayList<>(values));
+      }
+    }
+  }
+}
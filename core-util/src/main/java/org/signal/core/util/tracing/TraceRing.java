@@ -0,0 +1,158 @@
+package org.signal.core.util.tracing;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A file of fixed-size, encrypted segments written round robin, so that it always holds the most
+ * recent segments and never grows past the size it was created with.
+ * <p>
+ * Each segment is a magic number, a sequence number, an IV, the length of the contents, and the
+ * contents encrypted with AES-CTR. The sequence number orders the segments when reading them back.
+ * Any segments from before the ring was opened are discarded, as the strings they refer to only
+ * existed in the process that wrote them.
+ */
+final class TraceRing {
+
+  static final int SEGMENT_SIZE     = 64 * 1024;
+  static final int SEGMENT_CAPACITY = SEGMENT_SIZE - Integer.BYTES - Long.BYTES - 16 - Integer.BYTES;
+
+  private static final int MAGIC = 0x5452_4143;
+
+  private final RandomAccessFile file;
+  private final SecretKeySpec    key;
+  private final SecureRandom     random;
+  private final Cipher           cipher;
+  private final int              segmentCount;
+  private final byte[]           iv;
+  private final byte[]           segment;
+
+  private long sequence;
+
+  TraceRing(@NonNull File file, @NonNull byte[] secret, long maxSizeBytes) throws IOException {
+    this.file         = new RandomAccessFile(file, "rw");
+    this.key          = new SecretKeySpec(secret, "AES");
+    this.random       = new SecureRandom();
+    this.segmentCount = (int) Math.max(2, maxSizeBytes / SEGMENT_SIZE);
+    this.iv           = new byte[16];
+    this.segment      = new byte[SEGMENT_SIZE];
+
+    try {
+      this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+
+    this.file.setLength(0);
+  }
+
+  int getSegmentCount() {
+    return segmentCount;
+  }
+
+  void write(@NonNull byte[] contents, int length) throws IOException {
+    if (length > SEGMENT_CAPACITY) {
+      throw new IllegalArgumentException("Segment too large: " + length);
+    }
+
+    random.nextBytes(iv);
+
+    ByteBuffer buffer = ByteBuffer.wrap(segment);
+    buffer.putInt(MAGIC);
+    buffer.putLong(sequence);
+    buffer.put(iv);
+    buffer.putInt(length);
+
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+      cipher.doFinal(contents, 0, length, segment, buffer.position());
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+
+    file.seek((sequence % segmentCount) * SEGMENT_SIZE);
+    file.write(segment, 0, buffer.position() + length);
+
+    sequence++;
+  }
+
+  /**
+   * @return The contents of every segment still in the ring, oldest first.
+   */
+  @NonNull List<byte[]> readAll() throws IOException {
+    List<Segment> segments = new ArrayList<>(segmentCount);
+    byte[]        header   = new byte[SEGMENT_SIZE - SEGMENT_CAPACITY];
+
+    for (int i = 0; i < segmentCount; i++) {
+      long offset = (long) i * SEGMENT_SIZE;
+
+      if (offset + header.length > file.length()) {
+        break;
+      }
+
+      file.seek(offset);
+      file.readFully(header);
+
+      ByteBuffer buffer = ByteBuffer.wrap(header);
+
+      if (buffer.getInt() != MAGIC) {
+        continue;
+      }
+
+      long   segmentSequence = buffer.getLong();
+      byte[] segmentIv       = new byte[16];
+      buffer.get(segmentIv);
+      int    length          = buffer.getInt();
+
+      if (length < 0 || length > SEGMENT_CAPACITY) {
+        continue;
+      }
+
+      byte[] ciphertext = new byte[length];
+      file.readFully(ciphertext);
+
+      try {
+        cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(segmentIv));
+        segments.add(new Segment(segmentSequence, cipher.doFinal(ciphertext)));
+      } catch (GeneralSecurityException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    Collections.sort(segments, (lhs, rhs) -> Long.compare(lhs.sequence, rhs.sequence));
+
+    List<byte[]> contents = new ArrayList<>(segments.size());
+    for (Segment segment : segments) {
+      contents.add(segment.contents);
+    }
+
+    return contents;
+  }
+
+  void close() throws IOException {
+    file.close();
+  }
+
+  private static final class Segment {
+    private final long   sequence;
+    private final byte[] contents;
+
+    private Segment(long sequence, byte[] contents) {
+      this.sequence = sequence;
+      this.contents = contents;
+    }
+  }
+}
@@ -12,8 +12,11 @@ import org.signal.core.util.tracing.TraceProtos.TracePacket;
 import org.signal.core.util.tracing.TraceProtos.TrackDescriptor;
 import org.signal.core.util.tracing.TraceProtos.TrackEvent;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
@@ -21,6 +24,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class to create Perfetto-compatible traces. Currently keeps the entire trace in memory to
@@ -46,18 +50,28 @@ import java.util.concurrent.atomic.AtomicInteger;
  * for example, keep a perfect circular buffer size if it allows us to reduce overhead. The only
  * cost of screwing up would be dropping a trace packet or something, which, while sad, won't affect
  * how the app functions.
+ *
+ * Alternatively, {@link #startStreaming(File, byte[], long)} switches to a {@link TraceRecorder},
+ * which keeps events as small binary records in per-thread buffers and spills them to an encrypted
+ * ring on disk, so far more history can be kept without building protos on the calling thread.
  */
 public final class Tracer {
 
   public static final class TrackId {
-    public static final long DB_LOCK        = -8675309;
+    public static final long DB_LOCK               = -8675309;
+    public static final long DB_SLOW_QUERY         = -8675310;
+    public static final long STARTUP_CRITICAL_PATH = -8675311;
 
-    private static final String DB_LOCK_NAME = "Database Lock";
+    private static final String DB_LOCK_NAME               = "Database Lock";
+    private static final String DB_SLOW_QUERY_NAME         = "Slow Queries";
+    private static final String STARTUP_CRITICAL_PATH_NAME = "Startup Critical Path";
   }
 
   private static final Tracer INSTANCE = new Tracer();
 
   private static final int    TRUSTED_SEQUENCE_ID      = 1;
+  private static final long   COUNTER_TRACK_BASE       = -1_000_000_000L;
+  private static final String DROPPED_EVENTS           = "Dropped trace events";
   private static final byte[] SYNCHRONIZATION_MARKER   = toByteArray(UUID.fromString("82477a76-b28d-42ba-81dc-33326d57a079"));
   private static final long   SYNCHRONIZATION_INTERVAL = TimeUnit.SECONDS.toNanos(3);
 
@@ -65,16 +79,26 @@ public final class Tracer {
   private final Map<Long, TracePacket> threadPackets;
   private final Queue<TracePacket>     eventPackets;
   private final AtomicInteger          eventCount;
+  private final Map<String, Long>      counterTracks;
+  private final AtomicLong             nextCounterTrack;
+  private final ThreadLocal<Sampler>   samplers;
+
+  private volatile TraceRecorder        recorder;
+  private volatile Map<String, Integer> sampleIntervals;
 
   private long lastSyncTime;
   private long maxBufferSize;
 
   private Tracer() {
-    this.clock         = SystemClock::elapsedRealtimeNanos;
-    this.threadPackets = new ConcurrentHashMap<>();
-    this.eventPackets  = new ConcurrentLinkedQueue<>();
-    this.eventCount    = new AtomicInteger(0);
-    this.maxBufferSize = 3_500;
+    this.clock            = SystemClock::elapsedRealtimeNanos;
+    this.threadPackets    = new ConcurrentHashMap<>();
+    this.eventPackets     = new ConcurrentLinkedQueue<>();
+    this.eventCount       = new AtomicInteger(0);
+    this.counterTracks    = new ConcurrentHashMap<>();
+    this.nextCounterTrack = new AtomicLong(COUNTER_TRACK_BASE);
+    this.samplers         = new ThreadLocal<>();
+    this.sampleIntervals  = Collections.emptyMap();
+    this.maxBufferSize    = 3_500;
   }
 
   public static @NonNull Tracer getInstance() {
@@ -85,6 +109,33 @@ public final class Tracer {
     this.maxBufferSize = maxBufferSize;
   }
 
+  /**
+   * Records all further events to an encrypted ring at the given location instead of in memory.
+   * The ring never grows past the given size, and anything left in it from a previous process is
+   * discarded. Does nothing if already streaming.
+   */
+  public synchronized void startStreaming(@NonNull File file, @NonNull byte[] secret, long maxSizeBytes) throws IOException {
+    if (recorder == null) {
+      recorder = new TraceRecorder(file, secret, maxSizeBytes);
+    }
+  }
+
+  /**
+   * Only records one in every so many calls of the given method on each thread, for methods that
+   * are called too often to trace every time. A rate of 1 or more records every call.
+   */
+  public synchronized void setSampleRate(@NonNull String methodName, float rate) {
+    Map<String, Integer> updated = new HashMap<>(sampleIntervals);
+
+    if (rate >= 1) {
+      updated.remove(methodName);
+    } else {
+      updated.put(methodName, Math.max(1, Math.round(1 / Math.max(rate, Float.MIN_NORMAL))));
+    }
+
+    sampleIntervals = updated.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(updated);
+  }
+
   public void start(@NonNull String methodName) {
     start(methodName, Thread.currentThread().getId(), null);
   }
@@ -117,19 +168,87 @@ public final class Tracer {
       threadPackets.put(trackId, forTrackId(trackId));
     }
 
-    addPacket(forMethodStart(methodName, time, trackId, values));
+    if (!sampleIntervals.isEmpty() && !sampleStart(methodName)) {
+      return;
+    }
+
+    TraceRecorder recorder = this.recorder;
+
+    if (recorder != null) {
+      recorder.record(TrackEvent.Type.TYPE_SLICE_BEGIN_VALUE, trackId, time, methodName, values);
+    } else {
+      addPacket(forMethodStart(methodName, time, trackId, values));
+    }
   }
 
   public void end(@NonNull String methodName) {
-    addPacket(forMethodEnd(methodName, clock.getTimeNanos(), Thread.currentThread().getId()));
+    end(methodName, Thread.currentThread().getId());
   }
 
   public void end(@NonNull String methodName, long trackId) {
-    addPacket(forMethodEnd(methodName, clock.getTimeNanos(), trackId));
+    long time = clock.getTimeNanos();
+
+    if (!sampleIntervals.isEmpty() && !sampleEnd(methodName)) {
+      return;
+    }
+
+    TraceRecorder recorder = this.recorder;
+
+    if (recorder != null) {
+      recorder.record(TrackEvent.Type.TYPE_SLICE_END_VALUE, trackId, time, methodName, null);
+    } else {
+      addPacket(forMethodEnd(methodName, time, trackId));
+    }
+  }
+
+  /**
+   * Records the current value of a counter, like the depth of a queue or the size of a cache, which
+   * is shown as its own track.
+   */
+  public void counter(@NonNull String name, long value) {
+    long time    = clock.getTimeNanos();
+    Long trackId = counterTracks.get(name);
+
+    if (trackId == null) {
+      trackId = registerCounter(name);
+    }
+
+    TraceRecorder recorder = this.recorder;
+
+    if (recorder != null) {
+      recorder.record(TrackEvent.Type.TYPE_COUNTER_VALUE, trackId, time, name, value);
+    } else {
+      addPacket(forCounter(time, trackId, value));
+    }
+  }
+
+  /**
+   * Records a slice that has already finished, for when the values to attach are only known at the
+   * end. Times are in the {@link SystemClock#elapsedRealtimeNanos()} time base.
+   */
+  public void slice(@NonNull String methodName, long trackId, long startTimeNanos, long endTimeNanos, @Nullable Map<String, String> values) {
+    if (!threadPackets.containsKey(trackId)) {
+      threadPackets.put(trackId, forTrackId(trackId));
+    }
+
+    TraceRecorder recorder = this.recorder;
+
+    if (recorder != null) {
+      recorder.record(TrackEvent.Type.TYPE_SLICE_BEGIN_VALUE, trackId, startTimeNanos, methodName, values);
+      recorder.record(TrackEvent.Type.TYPE_SLICE_END_VALUE, trackId, endTimeNanos, methodName, null);
+    } else {
+      addPacket(forMethodStart(methodName, startTimeNanos, trackId, values));
+      addPacket(forMethodEnd(methodName, endTimeNanos, trackId));
+    }
   }
 
   public @NonNull byte[] serialize() {
-    Trace.Builder trace = Trace.newBuilder();
+    Trace.Builder trace    = Trace.newBuilder();
+    TraceRecorder recorder = this.recorder;
+
+    if (recorder != null) {
+      counter(DROPPED_EVENTS, recorder.getDroppedCount());
+    }
 
     for (TracePacket thread : threadPackets.values()) {
       trace.addPacket(thread);
@@ -139,6 +258,10 @@ public final class Tracer {
       trace.addPacket(event);
     }
 
+    if (recorder != null) {
+      trace.addAllPacket(recorder.export(TRUSTED_SEQUENCE_ID));
+    }
+
     trace.addPacket(forSynchronization(clock.getTimeNanos()));
 
     return trace.build().toByteArray();
@@ -164,9 +287,50 @@ public final class Tracer {
     }
   }
 
+  private boolean sampleStart(@NonNull String methodName) {
+    Integer interval = sampleIntervals.get(methodName);
+
+    if (interval == null) {
+      return true;
+    }
+
+    return getSampler().start(methodName, interval);
+  }
+
+  private boolean sampleEnd(@NonNull String methodName) {
+    return !sampleIntervals.containsKey(methodName) || getSampler().end(methodName);
+  }
+
+  private @NonNull Sampler getSampler() {
+    Sampler sampler = samplers.get();
+
+    if (sampler == null) {
+      sampler = new Sampler();
+      samplers.set(sampler);
+    }
+
+    return sampler;
+  }
+
+  private synchronized long registerCounter(@NonNull String name) {
+    Long trackId = counterTracks.get(name);
+
+    if (trackId == null) {
+      trackId = nextCounterTrack.getAndDecrement();
+      threadPackets.put(trackId, forCounterTrack(trackId, name));
+      counterTracks.put(name, trackId);
+    }
+
+    return trackId;
+  }
+
   private TracePacket forTrackId(long id) {
     if (id == TrackId.DB_LOCK) {
       return forTrack(id, TrackId.DB_LOCK_NAME);
+    } else if (id == TrackId.DB_SLOW_QUERY) {
+      return forTrack(id, TrackId.DB_SLOW_QUERY_NAME);
+    } else if (id == TrackId.STARTUP_CRITICAL_PATH) {
+      return forTrack(id, TrackId.STARTUP_CRITICAL_PATH_NAME);
     } else {
       Thread currentThread = Thread.currentThread();
       return forTrack(currentThread.getId(), currentThread.getName());
@@ -183,6 +347,28 @@ public final class Tracer {
 
   }
 
+  private static TracePacket forCounterTrack(long id, String name) {
+    return TracePacket.newBuilder()
+                      .setTrustedPacketSequenceId(TRUSTED_SEQUENCE_ID)
+                      .setTrackDescriptor(TrackDescriptor.newBuilder()
+                                                         .setUuid(id)
+                                                         .setName(name)
+                                                         .setCounter(TraceProtos.CounterDescriptor.newBuilder()
+                                                                                                  .setUnit(TraceProtos.CounterDescriptor.Unit.UNIT_COUNT)))
+                      .build();
+  }
+
+  private static TracePacket forCounter(long time, long trackId, long value) {
+    return TracePacket.newBuilder()
+                      .setTrustedPacketSequenceId(TRUSTED_SEQUENCE_ID)
+                      .setTimestamp(time)
+                      .setTrackEvent(TrackEvent.newBuilder()
+                                               .setTrackUuid(trackId)
+                                               .setType(TrackEvent.Type.TYPE_COUNTER)
+                                               .setCounterValue(value))
+                      .build();
+  }
+
   private static TracePacket forMethodStart(@NonNull String name, long time, long threadId, @Nullable Map<String, String> values) {
     TrackEvent.Builder event = TrackEvent.newBuilder()
                                          .setTrackUuid(threadId)
@@ -239,4 +425,64 @@ public final class Tracer {
   private interface Clock {
     long getTimeNanos();
   }
+
+  /**
+   * Decides which calls of sampled methods are recorded on a single thread. Remembers the decision
+   * for each open call so that an end is only recorded when its start was.
+   */
+  private static final class Sampler {
+    private final Map<String, State> states = new HashMap<>();
+
+    boolean start(@NonNull String methodName, int interval) {
+      State state = getState(methodName);
+
+      if (state.depth >= Long.SIZE) {
+        state.depth++;
+        return true;
+      }
+
+      boolean record = state.calls++ % interval == 0;
+
+      state.decisions = (state.decisions << 1) | (record ? 1 : 0);
+      state.depth++;
+
+      return record;
+    }
+
+    boolean end(@NonNull String methodName) {
+      State state = getState(methodName);
+
+      if (state.depth == 0) {
+        return true;
+      }
+
+      state.depth--;
+
+      if (state.depth >= Long.SIZE) {
+        return true;
+      }
+
+      boolean recorded = (state.decisions & 1) == 1;
+      state.decisions >>>= 1;
+
+      return recorded;
+    }
+
+    private @NonNull State getState(@NonNull String methodName) {
+      State state = states.get(methodName);
+
+      if (state == null) {
+        state = new State();
+        states.put(methodName, state);
+      }
+
+      return state;
+    }
+  }
+
+  private static final class State {
+    private long calls;
+    private long decisions;
+    private int  depth;
+  }
 }
@@ -0,0 +1,136 @@
+package org.signal.core.util.logging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.signal.core.util.logging.LogFileTest.writeSingleLineRecord;
+
+/**
+ * Manual benchmarks for {@link LogFile}.
+ */
+@Ignore("Benchmarks, run manually")
+public final class LogFileBenchmark {
+
+  private static final String TAG = Log.tag(LogFileBenchmark.class);
+
+  private final byte[] secret = new byte[32];
+
+  private File file;
+
+  @BeforeClass
+  public static void setUpClass() {
+    Log.initialize(new SystemOutLogger());
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    new SecureRandom().nextBytes(secret);
+    file = File.createTempFile("log-", null);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  /**
+   * Writes 100k lines the way each line used to be written, with its own record, SecureRandom and
+   * flush, and then in blocks of 16 KB.
+   */
+  @Test
+  public void write_100k_lines() throws IOException, GeneralSecurityException {
+    int    lines = 100_000;
+    String line  = "[1.0.0] [12   ] 2021-01-01 12:00:00.000 GMT D MessageRetrievalService: Retrieved an envelope from the server.";
+
+    long singleStart = System.nanoTime();
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      for (int i = 0; i < lines; i++) {
+        writeSingleLineRecord(outputStream, secret, line);
+        file.length();
+      }
+    }
+    long singleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - singleStart);
+
+    file.delete();
+
+    long           blockStart = System.nanoTime();
+    LogFile.Writer writer     = new LogFile.Writer(secret, file);
+    StringBuilder  block      = new StringBuilder();
+
+    for (int i = 0; i < lines; i++) {
+      if (block.length() > 0) {
+        block.append('\n');
+      }
+      block.append(line);
+
+      if (block.length() >= 16 * 1024) {
+        writer.writeBlock(block.toString().getBytes());
+        block.setLength(0);
+      }
+    }
+    writer.writeBlock(block.toString().getBytes());
+    writer.close();
+    long blockMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - blockStart);
+
+    assertEquals(lines, new LogFile.Reader(secret, file).readAll().split("\n").length);
+
+    Log.i(TAG, String.format(Locale.US, "Record per line: %d ms (%d lines/s)", singleMillis, lines * 1000L / Math.max(1, singleMillis)));
+    Log.i(TAG, String.format(Locale.US, "16 KB blocks: %d ms (%d lines/s)", blockMillis, lines * 1000L / Math.max(1, blockMillis)));
+  }
+
+  private static final class SystemOutLogger extends Log.Logger {
+    @Override
+    public void v(String tag, String message, Throwable t) {
+      println('v', tag, message, t);
+    }
+
+    @Override
+    public void d(String tag, String message, Throwable t) {
+      println('d', tag, message, t);
+    }
+
+    @Override
+    public void i(String tag, String message, Throwable t) {
+      println('i', tag, message, t);
+    }
+
+    @Override
+    public void w(String tag, String message, Throwable t) {
+      println('w', tag, message, t);
+    }
+
+    @Override
+    public void e(String tag, String message, Throwable t) {
+      println('e', tag, message, t);
+    }
+
+    @Override
+    public void wtf(String tag, String message, Throwable t) {
+      println('x', tag, message, t);
+    }
+
+    @Override
+    public void blockUntilAllWritesFinished() { }
+
+    private static void println(char level, String tag, String message, Throwable t) {
+      if (t != null) {
+        System.out.println(String.format("%c[%s] %s %s:%s", level, tag, message, t.getClass().getSimpleName(), t.getMessage()));
+      } else {
+        System.out.println(String.format("%c[%s] %s", level, tag, message));
+      }
+    }
+  }
+}
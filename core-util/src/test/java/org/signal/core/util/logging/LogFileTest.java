@@ -0,0 +1,100 @@
+package org.signal.core.util.logging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.core.util.Conversions;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertEquals;
+
+public final class LogFileTest {
+
+  private final byte[] secret = new byte[32];
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    new SecureRandom().nextBytes(secret);
+    file = File.createTempFile("log-", null);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void reads_single_line_records_and_blocks() throws IOException, GeneralSecurityException {
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      writeSingleLineRecord(outputStream, secret, "one");
+    }
+
+    LogFile.Writer writer = new LogFile.Writer(secret, file);
+    writer.writeBlock("two\nthree".getBytes());
+    writer.writeBlock("four".getBytes());
+    writer.close();
+
+    assertEquals("one\ntwo\nthree\nfour\n", new LogFile.Reader(secret, file).readAll());
+  }
+
+  @Test
+  public void tracks_size_without_asking_the_file() throws IOException {
+    LogFile.Writer writer = new LogFile.Writer(secret, file);
+    writer.writeBlock("a line".getBytes());
+    writer.writeBlock(new byte[1000]);
+    writer.close();
+
+    assertEquals(file.length(), writer.getLogSize());
+
+    LogFile.Writer appending = new LogFile.Writer(secret, file);
+    appending.writeBlock("another line".getBytes());
+    appending.close();
+
+    assertEquals(file.length(), appending.getLogSize());
+  }
+
+  @Test
+  public void ignores_a_record_cut_short() throws IOException {
+    LogFile.Writer writer = new LogFile.Writer(secret, file);
+    writer.writeBlock("complete".getBytes());
+    writer.writeBlock("cut short".getBytes());
+    writer.close();
+
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(file.length() - 5);
+    }
+
+    assertEquals("complete\n", new LogFile.Reader(secret, file).readAll());
+  }
+
+  /**
+   * A record as the previous writer made them, one line each.
+   */
+  static void writeSingleLineRecord(OutputStream outputStream, byte[] secret, String line) throws IOException, GeneralSecurityException {
+    byte[] iv = new byte[16];
+    new SecureRandom().nextBytes(iv);
+
+    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(secret, "AES"), new IvParameterSpec(iv));
+
+    byte[] ciphertext = cipher.doFinal(line.getBytes());
+
+    outputStream.write(iv);
+    outputStream.write(Conversions.intToByteArray(ciphertext.length));
+    outputStream.write(ciphertext);
+    outputStream.flush();
+  }
+}
@@ -0,0 +1,157 @@
+package org.signal.core.util.tracing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.core.util.tracing.TraceProtos.TracePacket;
+import org.signal.core.util.tracing.TraceProtos.TrackEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class TraceRecorderTest {
+
+  private final byte[] secret = new byte[32];
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    new SecureRandom().nextBytes(secret);
+    file = File.createTempFile("trace-", null);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void buffer_drops_when_full_and_drains_in_order() {
+    TraceBuffer buffer = new TraceBuffer(Thread.currentThread(), 4);
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals(i + 1, buffer.add(i, 10, 1, i + 2, 100 + i));
+    }
+
+    assertEquals(-1, buffer.add(4, 10, 1, 6, 104));
+    assertEquals(1, buffer.getDropped());
+
+    ByteBuffer out = ByteBuffer.allocate(3 * TraceBuffer.EVENT_SIZE);
+    assertFalse(buffer.drainTo(out));
+
+    assertEquals(2, TraceBuffer.timestamp(out, 2));
+    assertEquals(10, TraceBuffer.trackId(out, 2));
+    assertEquals(1, TraceBuffer.type(out, 2));
+    assertEquals(4, TraceBuffer.nameId(out, 2));
+    assertEquals(102, TraceBuffer.value(out, 2));
+
+    out.clear();
+    assertTrue(buffer.drainTo(out));
+    assertEquals(3, TraceBuffer.timestamp(out, 0));
+  }
+
+  @Test
+  public void ring_keeps_most_recent_segments() throws IOException {
+    TraceRing ring = new TraceRing(file, secret, 3 * TraceRing.SEGMENT_SIZE);
+
+    for (int i = 0; i < 5; i++) {
+      ring.write(new byte[] { (byte) i, 1, 2 }, 3);
+    }
+
+    List<byte[]> contents = ring.readAll();
+    ring.close();
+
+    assertEquals(3, contents.size());
+    assertArrayEquals(new byte[] { 2, 1, 2 }, contents.get(0));
+    assertArrayEquals(new byte[] { 3, 1, 2 }, contents.get(1));
+    assertArrayEquals(new byte[] { 4, 1, 2 }, contents.get(2));
+    assertTrue(file.length() <= 3 * TraceRing.SEGMENT_SIZE);
+  }
+
+  @Test
+  public void export_converts_events_to_packets() throws IOException {
+    TraceRecorder recorder = new TraceRecorder(file, secret, 4 * TraceRing.SEGMENT_SIZE);
+
+    recorder.record(TrackEvent.Type.TYPE_SLICE_BEGIN_VALUE, 7, 100, "method", Collections.singletonMap("key", "value"));
+    recorder.record(TrackEvent.Type.TYPE_COUNTER_VALUE, -5, 150, "queue", 42);
+    recorder.record(TrackEvent.Type.TYPE_SLICE_END_VALUE, 7, 200, "method", null);
+
+    List<TracePacket> packets = recorder.export(1);
+
+    assertEquals(3, packets.size());
+    assertEquals(Arrays.asList(100L, 150L, 200L), Arrays.asList(packets.get(0).getTimestamp(), packets.get(1).getTimestamp(), packets.get(2).getTimestamp()));
+
+    TrackEvent begin = packets.get(0).getTrackEvent();
+    assertEquals(TrackEvent.Type.TYPE_SLICE_BEGIN, begin.getType());
+    assertEquals(7, begin.getTrackUuid());
+    assertEquals("method", begin.getName());
+    assertEquals("key", begin.getDebugAnnotations(0).getName());
+    assertEquals("value", begin.getDebugAnnotations(0).getStringValue());
+
+    TrackEvent counter = packets.get(1).getTrackEvent();
+    assertEquals(TrackEvent.Type.TYPE_COUNTER, counter.getType());
+    assertEquals(42, counter.getCounterValue());
+
+    assertEquals(TrackEvent.Type.TYPE_SLICE_END, packets.get(2).getTrackEvent().getType());
+  }
+
+  @Test
+  public void export_includes_events_spilled_to_disk() throws IOException {
+    TraceRecorder recorder = new TraceRecorder(file, secret, 64 * TraceRing.SEGMENT_SIZE);
+    int           events   = 3 * TraceRing.SEGMENT_CAPACITY / TraceBuffer.EVENT_SIZE;
+
+    for (int i = 0; i < events; i++) {
+      recorder.record(TrackEvent.Type.TYPE_SLICE_BEGIN_VALUE, 1, i, "method", null);
+
+      if (i % 256 == 0) {
+        recorder.export(1);
+      }
+    }
+
+    List<TracePacket> packets = recorder.export(1);
+
+    assertEquals(0, recorder.getDroppedCount());
+    assertEquals(events, packets.size());
+    assertEquals(events - 1, packets.get(events - 1).getTimestamp());
+    assertTrue(file.length() > 2 * TraceRing.SEGMENT_SIZE);
+  }
+
+  @Test
+  public void unique_annotations_do_not_fill_the_string_table() throws IOException {
+    TraceRecorder recorder = new TraceRecorder(file, secret, 2 * TraceRing.SEGMENT_SIZE);
+    int           events   = 20_000;
+
+    for (int i = 0; i < events; i++) {
+      recorder.record(TrackEvent.Type.TYPE_SLICE_BEGIN_VALUE, 1, i, "method", Collections.singletonMap("query", "SELECT * FROM sms WHERE _id = " + i));
+
+      if (i % 256 == 0) {
+        recorder.export(1);
+      }
+    }
+
+    List<TracePacket> packets = recorder.export(1);
+    TrackEvent        last    = packets.get(packets.size() - 1).getTrackEvent();
+
+    assertEquals(0, recorder.getDroppedCount());
+    assertTrue(packets.size() < events);
+    assertEquals(events - 1, packets.get(packets.size() - 1).getTimestamp());
+    assertEquals("method", last.getName());
+    assertEquals("SELECT * FROM sms WHERE _id = " + (events - 1), last.getDebugAnnotations(0).getStringValue());
+
+    for (TracePacket packet : packets) {
+      assertEquals("method", packet.getTrackEvent().getName());
+      assertEquals("SELECT * FROM sms WHERE _id = " + packet.getTimestamp(), packet.getTrackEvent().getDebugAnnotations(0).getStringValue());
+    }
+  }
+}
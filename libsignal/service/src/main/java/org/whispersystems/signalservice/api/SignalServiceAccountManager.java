@@ -63,6 +63,7 @@ import org.whispersystems.signalservice.internal.push.RemoteAttestationUtil;
 import org.whispersystems.signalservice.internal.push.RemoteConfigResponse;
 import org.whispersystems.signalservice.internal.push.SignalServiceProtos;
 import org.whispersystems.signalservice.internal.push.VerifyAccountResponse;
+import org.whispersystems.signalservice.internal.push.http.ConnectionMetrics;
 import org.whispersystems.signalservice.internal.push.http.ProfileCipherOutputStreamFactory;
 import org.whispersystems.signalservice.internal.storage.protos.ManifestRecord;
 import org.whispersystems.signalservice.internal.storage.protos.ReadOperation;
@@ -731,6 +732,10 @@ public class SignalServiceAccountManager {
     this.pushServiceSocket.cancelInFlightRequests();
   }
 
+  public Map<String, ConnectionMetrics.Snapshot> getConnectionMetrics() {
+    return this.pushServiceSocket.getConnectionMetrics();
+  }
+
   private String createDirectoryServerToken(String e164number, boolean urlSafe) {
     try {
       MessageDigest digest  = MessageDigest.getInstance("SHA1");
@@ -30,9 +30,11 @@ import org.whispersystems.signalservice.api.util.SleepTimer;
 import org.whispersystems.signalservice.api.util.UuidUtil;
 import org.whispersystems.signalservice.api.websocket.ConnectivityListener;
 import org.whispersystems.signalservice.internal.configuration.SignalServiceConfiguration;
+import org.whispersystems.signalservice.internal.push.MessageQueueDrainer;
 import org.whispersystems.signalservice.internal.push.PushServiceSocket;
 import org.whispersystems.signalservice.internal.push.SignalServiceEnvelopeEntity;
 import org.whispersystems.signalservice.internal.push.SignalServiceMessagesResult;
+import org.whispersystems.signalservice.internal.push.http.ConnectionMetrics;
 import org.whispersystems.signalservice.internal.sticker.StickerProtos;
 import org.whispersystems.signalservice.internal.util.StaticCredentialsProvider;
 import org.whispersystems.signalservice.internal.util.Util;
@@ -48,6 +50,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -274,28 +277,7 @@ public class SignalServiceMessageReceiver {
     SignalServiceMessagesResult messageResult = socket.getMessages();
 
     for (SignalServiceEnvelopeEntity entity : messageResult.getEnvelopes()) {
-      SignalServiceEnvelope envelope;
-
-      if (entity.hasSource() && entity.getSourceDevice() > 0) {
-        SignalServiceAddress address = new SignalServiceAddress(UuidUtil.parseOrNull(entity.getSourceUuid()), entity.getSourceE164());
-        envelope = new SignalServiceEnvelope(entity.getType(),
-                                             Optional.of(address),
-                                             entity.getSourceDevice(),
-                                             entity.getTimestamp(),
-                                             entity.getMessage(),
-                                             entity.getContent(),
-                                             entity.getServerTimestamp(),
-                                             messageResult.getServerDeliveredTimestamp(),
-                                             entity.getServerUuid());
-      } else {
-        envelope = new SignalServiceEnvelope(entity.getType(),
-                                             entity.getTimestamp(),
-                                             entity.getMessage(),
-                                             entity.getContent(),
-                                             entity.getServerTimestamp(),
-                                             messageResult.getServerDeliveredTimestamp(),
-                                             entity.getServerUuid());
-      }
+      SignalServiceEnvelope envelope = toEnvelope(entity, messageResult.getServerDeliveredTimestamp());
 
       callback.onMessage(envelope);
       results.add(envelope);
@@ -307,14 +289,86 @@ public class SignalServiceMessageReceiver {
     return results;
   }
 
+  /**
+   * Retrieves messages until the server's queue is empty, handing each to the callback as soon as
+   * it's read. Unlike {@link #retrieveMessages(MessageReceivedCallback)}, this doesn't wait on a
+   * round trip to acknowledge each message before moving on to the next. Acknowledgements are sent
+   * in the background, in batches, each after {@link BatchedMessageReceivedCallback#onBatchComplete()}
+   * returns.
+   *
+   * @return The number of messages retrieved.
+   */
+  public int drainMessages(BatchedMessageReceivedCallback callback) throws IOException {
+    MessageQueueDrainer drainer = new MessageQueueDrainer(new MessageQueueDrainer.Source() {
+      @Override
+      public boolean getMessages(MessageQueueDrainer.EnvelopeConsumer consumer) throws IOException {
+        return socket.getMessages(consumer);
+      }
+
+      @Override
+      public ListenableFuture<?> acknowledge(SignalServiceEnvelopeEntity entity) {
+        if (entity.getServerUuid() != null) return socket.acknowledgeMessageAsync(entity.getServerUuid());
+        else                                return socket.acknowledgeMessageAsync(entity.getSourceE164(), entity.getTimestamp());
+      }
+    });
+
+    return drainer.drain(new MessageQueueDrainer.Sink() {
+      @Override
+      public void onMessage(SignalServiceEnvelopeEntity entity, long serverDeliveredTimestamp) {
+        callback.onMessage(toEnvelope(entity, serverDeliveredTimestamp));
+      }
+
+      @Override
+      public void flush() {
+        callback.onBatchComplete();
+      }
+    });
+  }
+
+  private static SignalServiceEnvelope toEnvelope(SignalServiceEnvelopeEntity entity, long serverDeliveredTimestamp) {
+    if (entity.hasSource() && entity.getSourceDevice() > 0) {
+      SignalServiceAddress address = new SignalServiceAddress(UuidUtil.parseOrNull(entity.getSourceUuid()), entity.getSourceE164());
+      return new SignalServiceEnvelope(entity.getType(),
+                                       Optional.of(address),
+                                       entity.getSourceDevice(),
+                                       entity.getTimestamp(),
+                                       entity.getMessage(),
+                                       entity.getContent(),
+                                       entity.getServerTimestamp(),
+                                       serverDeliveredTimestamp,
+                                       entity.getServerUuid());
+    } else {
+      return new SignalServiceEnvelope(entity.getType(),
+                                       entity.getTimestamp(),
+                                       entity.getMessage(),
+                                       entity.getContent(),
+                                       entity.getServerTimestamp(),
+                                       serverDeliveredTimestamp,
+                                       entity.getServerUuid());
+    }
+  }
+
   public void setSoTimeoutMillis(long soTimeoutMillis) {
     socket.setSoTimeoutMillis(soTimeoutMillis);
   }
 
+  public Map<String, ConnectionMetrics.Snapshot> getConnectionMetrics() {
+    return socket.getConnectionMetrics();
+  }
+
   public interface MessageReceivedCallback {
     public void onMessage(SignalServiceEnvelope envelope);
   }
 
+  public interface BatchedMessageReceivedCallback extends MessageReceivedCallback {
+    /**
+     * Called before the messages handed to {@link #onMessage(SignalServiceEnvelope)} since the last
+     * call are acknowledged, after which the server forgets about them. Whatever was done with them
+     * has to be durable by the time this returns.
+     */
+    public void onBatchComplete();
+  }
+
   public static class NullMessageReceivedCallback implements MessageReceivedCallback {
     @Override
     public void onMessage(SignalServiceEnvelope envelope) {}
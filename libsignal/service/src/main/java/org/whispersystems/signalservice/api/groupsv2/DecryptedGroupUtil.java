@@ -489,7 +489,7 @@ public final class DecryptedGroupUtil {
     }
   }
 
-  private static void applyInviteLinkPassword(DecryptedGroup.Builder builder, DecryptedGroupChange change) {
+  protected static void applyInviteLinkPassword(DecryptedGroup.Builder builder, DecryptedGroupChange change) {
     if (!change.getNewInviteLinkPassword().isEmpty()) {
       builder.setInviteLinkPassword(change.getNewInviteLinkPassword());
     }
@@ -539,7 +539,7 @@ public final class DecryptedGroupUtil {
     }
   }
 
-  private static void ensureKnownRole(Member.Role role) throws NotAbleToApplyGroupV2ChangeException {
+  protected static void ensureKnownRole(Member.Role role) throws NotAbleToApplyGroupV2ChangeException {
     if (role != Member.Role.ADMINISTRATOR && role != Member.Role.DEFAULT) {
       throw new NotAbleToApplyGroupV2ChangeException();
     }
@@ -0,0 +1,96 @@
+package org.whispersystems.signalservice.api.groupsv2;
+
+import com.google.protobuf.ByteString;
+
+import org.signal.zkgroup.profiles.ProfileKey;
+import org.whispersystems.signalservice.api.util.UuidUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes zkgroup decryptions for a single set of group secret params.
+ * <p>
+ * UUID and profile key ciphertexts are deterministic for a given group, so the same member shows
+ * up with the same ciphertext in every revision of the group state and in every change that
+ * references them. Replaying a long history therefore decrypts each member once instead of once
+ * per revision.
+ * <p>
+ * Only successful decryptions are cached, failures are always retried.
+ */
+final class GroupDecryptionCache {
+
+  /** Caches for this many groups are kept before the least recently used is dropped. */
+  private static final int MAX_GROUPS = 32;
+
+  /** Each map is cleared when it grows past this, bounding memory for pathological groups. */
+  private static final int MAX_ENTRIES_PER_MAP = 10_000;
+
+  private final ConcurrentHashMap<ByteString, UUID>       uuids       = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<ByteString, ProfileKey> profileKeys = new ConcurrentHashMap<>();
+
+  UUID getUuid(ByteString uuidCiphertext) {
+    return uuids.get(uuidCiphertext);
+  }
+
+  void putUuid(ByteString uuidCiphertext, UUID uuid) {
+    if (uuids.size() >= MAX_ENTRIES_PER_MAP) {
+      uuids.clear();
+    }
+    uuids.put(uuidCiphertext, uuid);
+  }
+
+  ProfileKey getProfileKey(ByteString profileKeyCiphertext, UUID uuid) {
+    return profileKeys.get(profileKeyKey(profileKeyCiphertext, uuid));
+  }
+
+  void putProfileKey(ByteString profileKeyCiphertext, UUID uuid, ProfileKey profileKey) {
+    if (profileKeys.size() >= MAX_ENTRIES_PER_MAP) {
+      profileKeys.clear();
+    }
+    profileKeys.put(profileKeyKey(profileKeyCiphertext, uuid), profileKey);
+  }
+
+  int size() {
+    return uuids.size() + profileKeys.size();
+  }
+
+  /**
+   * Profile key decryption is bound to the member's UUID, so the UUID is part of the key.
+   */
+  private static ByteString profileKeyKey(ByteString profileKeyCiphertext, UUID uuid) {
+    return profileKeyCiphertext.concat(UuidUtil.toByteString(uuid));
+  }
+
+  /**
+   * Hands out one {@link GroupDecryptionCache} per group, keyed by the serialized group secret
+   * params, keeping only the most recently used groups.
+   */
+  static final class Store {
+
+    private final Map<ByteString, GroupDecryptionCache> caches = new LinkedHashMap<ByteString, GroupDecryptionCache>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ByteString, GroupDecryptionCache> eldest) {
+        return size() > MAX_GROUPS;
+      }
+    };
+
+    synchronized GroupDecryptionCache forGroup(byte[] serializedGroupSecretParams) {
+      ByteString           key   = ByteString.copyFrom(serializedGroupSecretParams);
+      GroupDecryptionCache cache = caches.get(key);
+
+      if (cache == null) {
+        cache = new GroupDecryptionCache();
+        caches.put(key, cache);
+      }
+
+      return cache;
+    }
+
+    synchronized void clear() {
+      caches.clear();
+    }
+  }
+}
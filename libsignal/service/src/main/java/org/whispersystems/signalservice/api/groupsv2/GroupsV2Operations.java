@@ -42,11 +42,17 @@ import org.whispersystems.signalservice.api.util.UuidUtil;
 
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Contains operations to create, modify and validate groups and group changes.
@@ -61,16 +67,36 @@ public final class GroupsV2Operations {
   /** Highest change epoch this class knows now to decrypt */
   public static final int HIGHEST_KNOWN_EPOCH = 2;
 
-  private final ServerPublicParams        serverPublicParams;
-  private final ClientZkProfileOperations clientZkProfileOperations;
-  private final ClientZkAuthOperations    clientZkAuthOperations;
-  private final SecureRandom              random;
+  /** Member lists shorter than this are decrypted on the calling thread. */
+  private static final int MIN_PARALLEL_MEMBERS = 32;
+
+  private final ServerPublicParams         serverPublicParams;
+  private final ClientZkProfileOperations  clientZkProfileOperations;
+  private final ClientZkAuthOperations     clientZkAuthOperations;
+  private final SecureRandom               random;
+  private final ExecutorService            decryptionExecutor;
+  private final int                        decryptionParallelism;
+  private final GroupDecryptionCache.Store decryptionCaches;
 
   public GroupsV2Operations(ClientZkOperations clientZkOperations) {
+    this(clientZkOperations, null, 1);
+  }
+
+  /**
+   * @param decryptionExecutor    If present, large member lists are split into up to
+   *                              {@code decryptionParallelism} chunks and decrypted concurrently on
+   *                              this executor and the calling thread. It should be dedicated to
+   *                              this purpose, as callers block on the submitted work.
+   * @param decryptionParallelism The maximum number of chunks a member list is split into.
+   */
+  public GroupsV2Operations(ClientZkOperations clientZkOperations, ExecutorService decryptionExecutor, int decryptionParallelism) {
     this.serverPublicParams        = clientZkOperations.getServerPublicParams();
     this.clientZkProfileOperations = clientZkOperations.getProfileOperations();
     this.clientZkAuthOperations    = clientZkOperations.getAuthOperations();
     this.random                    = new SecureRandom();
+    this.decryptionExecutor        = decryptionExecutor;
+    this.decryptionParallelism     = decryptionExecutor != null ? Math.max(1, decryptionParallelism) : 1;
+    this.decryptionCaches          = new GroupDecryptionCache.Store();
   }
 
   /**
@@ -130,17 +156,50 @@ public final class GroupsV2Operations {
     return clientZkAuthOperations;
   }
 
+  /**
+   * Drops all memoized member decryptions.
+   */
+  public void clearDecryptionCaches() {
+    decryptionCaches.clear();
+  }
+
+  private interface Decryptor<I, O> {
+    O decrypt(I input) throws VerificationFailedException, InvalidGroupStateException;
+  }
+
+  /**
+   * A range of a member list, decrypted by whichever thread claims it first.
+   */
+  private static final class Chunk {
+    private final int           start;
+    private final int           end;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    private Future<?> future;
+
+    private Chunk(int start, int end) {
+      this.start = start;
+      this.end   = end;
+    }
+
+    boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+  }
+
   /**
    * Operations on a single group.
    */
   public final class GroupOperations {
 
-    private final GroupSecretParams   groupSecretParams;
-    private final ClientZkGroupCipher clientZkGroupCipher;
+    private final GroupSecretParams    groupSecretParams;
+    private final ClientZkGroupCipher  clientZkGroupCipher;
+    private final GroupDecryptionCache decryptionCache;
 
     private GroupOperations(GroupSecretParams groupSecretParams) {
       this.groupSecretParams   = groupSecretParams;
       this.clientZkGroupCipher = new ClientZkGroupCipher(groupSecretParams);
+      this.decryptionCache     = decryptionCaches.forGroup(groupSecretParams.serialize());
     }
 
     public GroupChange.Actions.Builder createModifyGroupTitle(final String title) {
@@ -360,28 +419,9 @@ public final class GroupsV2Operations {
     public DecryptedGroup decryptGroup(Group group)
         throws VerificationFailedException, InvalidGroupStateException
     {
-      List<Member>                    membersList                = group.getMembersList();
-      List<PendingMember>             pendingMembersList         = group.getPendingMembersList();
-      List<RequestingMember>          requestingMembersList      = group.getRequestingMembersList();
-      List<DecryptedMember>           decryptedMembers           = new ArrayList<>(membersList.size());
-      List<DecryptedPendingMember>    decryptedPendingMembers    = new ArrayList<>(pendingMembersList.size());
-      List<DecryptedRequestingMember> decryptedRequestingMembers = new ArrayList<>(requestingMembersList.size());
-
-      for (Member member : membersList) {
-        try {
-          decryptedMembers.add(decryptMember(member).build());
-        } catch (InvalidInputException e) {
-          throw new InvalidGroupStateException(e);
-        }
-      }
-
-      for (PendingMember member : pendingMembersList) {
-        decryptedPendingMembers.add(decryptMember(member));
-      }
-
-      for (RequestingMember member : requestingMembersList) {
-        decryptedRequestingMembers.add(decryptRequestingMember(member));
-      }
+      List<DecryptedMember>           decryptedMembers           = decryptAll(group.getMembersList(), member -> decryptMemberOrThrow(member).build());
+      List<DecryptedPendingMember>    decryptedPendingMembers    = decryptAll(group.getPendingMembersList(), this::decryptMember);
+      List<DecryptedRequestingMember> decryptedRequestingMembers = decryptAll(group.getRequestingMembersList(), this::decryptRequestingMember);
 
       return DecryptedGroup.newBuilder()
                            .setTitle(decryptTitle(group.getTitle()))
@@ -440,13 +480,7 @@ public final class GroupsV2Operations {
       builder.setRevision(actions.getRevision());
 
       // Field 3
-      for (GroupChange.Actions.AddMemberAction addMemberAction : actions.getAddMembersList()) {
-        try {
-          builder.addNewMembers(decryptMember(addMemberAction.getAdded()).setJoinedAtRevision(actions.getRevision()));
-        } catch (InvalidInputException e) {
-          throw new InvalidGroupStateException(e);
-        }
-      }
+      builder.addAllNewMembers(decryptAll(actions.getAddMembersList(), addMemberAction -> decryptMemberOrThrow(addMemberAction.getAdded()).setJoinedAtRevision(actions.getRevision()).build()));
 
       // Field 4
       for (GroupChange.Actions.DeleteMemberAction deleteMemberAction : actions.getDeleteMembersList()) {
@@ -510,8 +544,8 @@ public final class GroupsV2Operations {
         } catch (InvalidInputException e) {
           throw new InvalidGroupStateException(e);
         }
-        UUID       uuid       = clientZkGroupCipher.decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
-        ProfileKey profileKey = clientZkGroupCipher.decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
+        UUID       uuid       = decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
+        ProfileKey profileKey = decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
         builder.addPromotePendingMembers(DecryptedMember.newBuilder()
                                                         .setJoinedAtRevision(-1)
                                                         .setRole(Member.Role.DEFAULT)
@@ -590,6 +624,121 @@ public final class GroupsV2Operations {
                                    .build();
     }
 
+    /**
+     * Decrypts every input, preserving order. Large lists are split into chunks that are decrypted
+     * concurrently on the decryption executor, with the first chunk on the calling thread.
+     * <p>
+     * Each chunk is claimed by whichever thread gets to it first, and the calling thread decrypts any
+     * chunk the executor hasn't started yet rather than waiting for it. That way an interrupt, a busy
+     * executor or one that has been shut down only costs parallelism: the calling thread waits
+     * uninterruptibly for the chunks already running, finishes the rest itself, and restores the
+     * interrupt once done.
+     */
+    private <I, O> List<O> decryptAll(List<I> inputs, Decryptor<I, O> decryptor)
+        throws VerificationFailedException, InvalidGroupStateException
+    {
+      int size   = inputs.size();
+      int chunks = Math.min(decryptionParallelism, size / MIN_PARALLEL_MEMBERS);
+
+      if (chunks <= 1) {
+        List<O> results = new ArrayList<>(size);
+
+        for (I input : inputs) {
+          results.add(decryptor.decrypt(input));
+        }
+
+        return results;
+      }
+
+      Object[]    results     = new Object[size];
+      int         chunkSize   = (size + chunks - 1) / chunks;
+      List<Chunk> remaining   = new ArrayList<>(chunks - 1);
+      boolean     interrupted = false;
+
+      for (int start = chunkSize; start < size; start += chunkSize) {
+        Chunk chunk = new Chunk(start, Math.min(size, start + chunkSize));
+
+        try {
+          chunk.future = decryptionExecutor.submit(() -> {
+            if (chunk.claim()) {
+              decryptRange(inputs, results, chunk.start, chunk.end, decryptor);
+            }
+            return null;
+          });
+        } catch (RejectedExecutionException e) {
+          Log.w(TAG, "Decryption executor rejected chunk, decrypting on calling thread");
+        }
+
+        remaining.add(chunk);
+      }
+
+      try {
+        decryptRange(inputs, results, 0, chunkSize, decryptor);
+
+        for (Chunk chunk : remaining) {
+          if (chunk.claim()) {
+            decryptRange(inputs, results, chunk.start, chunk.end, decryptor);
+          } else {
+            interrupted |= awaitUninterruptibly(chunk.future);
+          }
+        }
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+
+        if (cause instanceof VerificationFailedException) throw (VerificationFailedException) cause;
+        if (cause instanceof InvalidGroupStateException)  throw (InvalidGroupStateException) cause;
+        if (cause instanceof RuntimeException)            throw (RuntimeException) cause;
+        throw new AssertionError(cause);
+      } finally {
+        for (Chunk chunk : remaining) {
+          if (chunk.future != null) {
+            chunk.future.cancel(false);
+          }
+        }
+
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      //noinspection unchecked
+      return (List<O>) Arrays.asList(results);
+    }
+
+    /**
+     * @return True if the calling thread was interrupted while waiting.
+     */
+    private boolean awaitUninterruptibly(Future<?> future) throws ExecutionException {
+      boolean interrupted = false;
+
+      while (true) {
+        try {
+          future.get();
+          return interrupted;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+
+    private <I, O> void decryptRange(List<I> inputs, Object[] results, int start, int end, Decryptor<I, O> decryptor)
+        throws VerificationFailedException, InvalidGroupStateException
+    {
+      for (int i = start; i < end; i++) {
+        results[i] = decryptor.decrypt(inputs.get(i));
+      }
+    }
+
+    private DecryptedMember.Builder decryptMemberOrThrow(Member member)
+        throws InvalidGroupStateException, VerificationFailedException
+    {
+      try {
+        return decryptMember(member);
+      } catch (InvalidInputException e) {
+        throw new InvalidGroupStateException(e);
+      }
+    }
+
     private DecryptedMember.Builder decryptMember(Member member)
         throws InvalidGroupStateException, VerificationFailedException, InvalidInputException
     {
@@ -603,8 +752,8 @@ public final class GroupsV2Operations {
                               .setRole(member.getRole());
       } else {
         ProfileKeyCredentialPresentation profileKeyCredentialPresentation = new ProfileKeyCredentialPresentation(member.getPresentation().toByteArray());
-        UUID                             uuid                             = clientZkGroupCipher.decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
-        ProfileKey                       profileKey                       = clientZkGroupCipher.decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
+        UUID                             uuid                             = decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
+        ProfileKey                       profileKey                       = decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
 
         return DecryptedMember.newBuilder()
                               .setUuid(UuidUtil.toByteString(uuid))
@@ -655,8 +804,8 @@ public final class GroupsV2Operations {
           throw new InvalidGroupStateException(e);
         }
 
-        UUID       uuid       = clientZkGroupCipher.decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
-        ProfileKey profileKey = clientZkGroupCipher.decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
+        UUID       uuid       = decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
+        ProfileKey profileKey = decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
 
         return DecryptedRequestingMember.newBuilder()
                                         .setUuid(UuidUtil.toByteString(uuid))
@@ -666,14 +815,39 @@ public final class GroupsV2Operations {
     }
 
     private ProfileKey decryptProfileKey(ByteString profileKey, UUID uuid) throws VerificationFailedException, InvalidGroupStateException {
+      ProfileKey cached = decryptionCache.getProfileKey(profileKey, uuid);
+
+      if (cached != null) {
+        return cached;
+      }
+
       try {
         ProfileKeyCiphertext profileKeyCiphertext = new ProfileKeyCiphertext(profileKey.toByteArray());
-        return clientZkGroupCipher.decryptProfileKey(profileKeyCiphertext, uuid);
+        ProfileKey           decrypted            = clientZkGroupCipher.decryptProfileKey(profileKeyCiphertext, uuid);
+
+        decryptionCache.putProfileKey(profileKey, uuid, decrypted);
+
+        return decrypted;
       } catch (InvalidInputException e) {
         throw new InvalidGroupStateException(e);
       }
     }
 
+    private ProfileKey decryptProfileKey(ProfileKeyCiphertext profileKeyCiphertext, UUID uuid) throws VerificationFailedException {
+      ByteString key    = ByteString.copyFrom(profileKeyCiphertext.serialize());
+      ProfileKey cached = decryptionCache.getProfileKey(key, uuid);
+
+      if (cached != null) {
+        return cached;
+      }
+
+      ProfileKey decrypted = clientZkGroupCipher.decryptProfileKey(profileKeyCiphertext, uuid);
+
+      decryptionCache.putProfileKey(key, uuid, decrypted);
+
+      return decrypted;
+    }
+
     private ByteString decryptProfileKeyToByteString(ByteString profileKey, UUID uuid) throws VerificationFailedException, InvalidGroupStateException {
       return ByteString.copyFrom(decryptProfileKey(profileKey, uuid).serialize());
     }
@@ -687,20 +861,45 @@ public final class GroupsV2Operations {
     }
 
     private UUID decryptUuid(ByteString userId) throws InvalidGroupStateException, VerificationFailedException {
+      UUID cached = decryptionCache.getUuid(userId);
+
+      if (cached != null) {
+        return cached;
+      }
+
       try {
-        return clientZkGroupCipher.decryptUuid(new UuidCiphertext(userId.toByteArray()));
+        UUID uuid = clientZkGroupCipher.decryptUuid(new UuidCiphertext(userId.toByteArray()));
+
+        decryptionCache.putUuid(userId, uuid);
+
+        return uuid;
       } catch (InvalidInputException e) {
         throw new InvalidGroupStateException(e);
       }
     }
 
+    private UUID decryptUuid(UuidCiphertext uuidCiphertext) throws VerificationFailedException {
+      ByteString key    = ByteString.copyFrom(uuidCiphertext.serialize());
+      UUID       cached = decryptionCache.getUuid(key);
+
+      if (cached != null) {
+        return cached;
+      }
+
+      UUID uuid = clientZkGroupCipher.decryptUuid(uuidCiphertext);
+
+      decryptionCache.putUuid(key, uuid);
+
+      return uuid;
+    }
+
     /**
      * Attempts to decrypt a UUID, but will return {@link #UNKNOWN_UUID} if it cannot.
      */
     private UUID decryptUuidOrUnknown(ByteString userId) {
       try {
-        return clientZkGroupCipher.decryptUuid(new UuidCiphertext(userId.toByteArray()));
-      } catch (InvalidInputException | VerificationFailedException e) {
+        return decryptUuid(userId);
+      } catch (InvalidGroupStateException | VerificationFailedException e) {
         return UNKNOWN_UUID;
       }
     }
@@ -0,0 +1,333 @@
+package org.whispersystems.signalservice.api.groupsv2;
+
+import com.google.protobuf.ByteString;
+
+import org.signal.storageservice.protos.groups.Member;
+import org.signal.storageservice.protos.groups.local.DecryptedApproveMember;
+import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.signal.storageservice.protos.groups.local.DecryptedGroupChange;
+import org.signal.storageservice.protos.groups.local.DecryptedMember;
+import org.signal.storageservice.protos.groups.local.DecryptedModifyMemberRole;
+import org.signal.storageservice.protos.groups.local.DecryptedPendingMember;
+import org.signal.storageservice.protos.groups.local.DecryptedPendingMemberRemoval;
+import org.signal.storageservice.protos.groups.local.DecryptedRequestingMember;
+import org.whispersystems.libsignal.logging.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A group state that changes are applied to in place, with full members indexed by UUID.
+ * <p>
+ * {@link DecryptedGroupUtil#applyWithoutRevisionCheck} copies the whole group and scans the member
+ * list for each action, so replaying a long history of a large group is quadratic. Here each member
+ * action is a hash lookup and the group is only copied when a snapshot is asked for with
+ * {@link #toDecryptedGroup()}.
+ * <p>
+ * Results are identical to {@link DecryptedGroupUtil#applyWithoutRevisionCheck}, including member
+ * order and which changes fail to apply. A change that fails leaves the state untouched.
+ */
+public final class MutableDecryptedGroup {
+
+  private static final String TAG = MutableDecryptedGroup.class.getSimpleName();
+
+  private final DecryptedGroup.Builder                     attributes;
+  private final LinkedHashMap<ByteString, DecryptedMember> members;
+
+  private List<DecryptedPendingMember>    pendingMembers;
+  private List<DecryptedRequestingMember> requestingMembers;
+
+  /** Most recent snapshot, null when the state has changed since it was taken. */
+  private DecryptedGroup snapshot;
+
+  /**
+   * Set once the group holds the same UUID as a full member more than once, which the index cannot
+   * represent. From then on changes are applied with {@link DecryptedGroupUtil} to this instead.
+   */
+  private DecryptedGroup unindexed;
+
+  public MutableDecryptedGroup(DecryptedGroup group) {
+    this.attributes        = DecryptedGroup.newBuilder(group)
+                                           .clearMembers()
+                                           .clearPendingMembers()
+                                           .clearRequestingMembers();
+    this.members           = new LinkedHashMap<>(group.getMembersCount());
+    this.pendingMembers    = new ArrayList<>(group.getPendingMembersList());
+    this.requestingMembers = new ArrayList<>(group.getRequestingMembersList());
+    this.snapshot          = group;
+
+    for (DecryptedMember member : group.getMembersList()) {
+      if (members.put(member.getUuid(), member) != null) {
+        unindexed = group;
+        members.clear();
+        break;
+      }
+    }
+  }
+
+  public int getRevision() {
+    return unindexed != null ? unindexed.getRevision() : attributes.getRevision();
+  }
+
+  /**
+   * Applies the change, ignoring its revision in the same way as
+   * {@link DecryptedGroupUtil#applyWithoutRevisionCheck}.
+   *
+   * @throws NotAbleToApplyGroupV2ChangeException if the change does not apply to this state, in
+   *                                              which case the state is not modified.
+   */
+  public void apply(DecryptedGroupChange change) throws NotAbleToApplyGroupV2ChangeException {
+    if (unindexed != null) {
+      unindexed = DecryptedGroupUtil.applyWithoutRevisionCheck(unindexed, change);
+      return;
+    }
+
+    // Everything that can fail is worked out before the state is touched.
+    Set<ByteString> added   = membersToUuidSet(change.getNewMembersList());
+    Set<ByteString> deleted = new HashSet<>(change.getDeleteMembersList());
+
+    for (DecryptedModifyMemberRole modifyMemberRole : change.getModifyMemberRolesList()) {
+      if (!isMemberAfterDeletes(modifyMemberRole.getUuid(), added, deleted)) {
+        throw new NotAbleToApplyGroupV2ChangeException();
+      }
+      DecryptedGroupUtil.ensureKnownRole(modifyMemberRole.getRole());
+    }
+
+    for (DecryptedMember modifyProfileKey : change.getModifiedProfileKeysList()) {
+      if (!isMemberAfterDeletes(modifyProfileKey.getUuid(), added, deleted)) {
+        throw new NotAbleToApplyGroupV2ChangeException();
+      }
+    }
+
+    List<DecryptedPendingMember>    newPendingMembers    = new ArrayList<>(pendingMembers);
+    List<DecryptedRequestingMember> newRequestingMembers = new ArrayList<>(requestingMembers);
+    List<DecryptedMember>           promotedMembers      = new ArrayList<>(change.getPromotePendingMembersCount());
+    List<DecryptedMember>           approvedMembers      = new ArrayList<>(change.getPromoteRequestingMembersCount());
+    Set<ByteString>                 promotedUuids        = new HashSet<>();
+    boolean                         duplicatesMember     = false;
+
+    if (!added.isEmpty()) {
+      removeNowFullMembers(newPendingMembers, newRequestingMembers, added);
+    }
+
+    Set<ByteString> pendingCipherTexts = pendingToCipherTextSet(newPendingMembers);
+
+    for (DecryptedPendingMember pendingMember : change.getNewPendingMembersList()) {
+      if (isMemberAfterDeletes(pendingMember.getUuid(), added, deleted)) {
+        throw new NotAbleToApplyGroupV2ChangeException();
+      }
+
+      if (!pendingCipherTexts.contains(pendingMember.getUuidCipherText())) {
+        newPendingMembers.add(pendingMember);
+      }
+    }
+
+    for (DecryptedPendingMemberRemoval removedMember : change.getDeletePendingMembersList()) {
+      int index = indexOfPendingCipherText(newPendingMembers, removedMember.getUuidCipherText());
+
+      if (index == -1) {
+        Log.w(TAG, "Deleted pending member on change not found in group");
+        continue;
+      }
+
+      newPendingMembers.remove(index);
+    }
+
+    for (DecryptedMember newMember : change.getPromotePendingMembersList()) {
+      int index = indexOfPendingUuid(newPendingMembers, newMember.getUuid());
+
+      if (index == -1) {
+        throw new NotAbleToApplyGroupV2ChangeException();
+      }
+
+      duplicatesMember |= isMemberAfterDeletes(newMember.getUuid(), added, deleted) || !promotedUuids.add(newMember.getUuid());
+
+      newPendingMembers.remove(index);
+      promotedMembers.add(newMember);
+    }
+
+    newRequestingMembers.addAll(change.getNewRequestingMembersList());
+
+    for (ByteString removedMember : change.getDeleteRequestingMembersList()) {
+      int index = indexOfRequestingUuid(newRequestingMembers, removedMember);
+
+      if (index == -1) {
+        Log.w(TAG, "Deleted member on change not found in group");
+        continue;
+      }
+
+      newRequestingMembers.remove(index);
+    }
+
+    for (DecryptedApproveMember approvedMember : change.getPromoteRequestingMembersList()) {
+      int index = indexOfRequestingUuid(newRequestingMembers, approvedMember.getUuid());
+
+      if (index == -1) {
+        Log.w(TAG, "Deleted member on change not found in group");
+        continue;
+      }
+
+      DecryptedRequestingMember requestingMember = newRequestingMembers.get(index);
+      Member.Role               role             = approvedMember.getRole();
+
+      DecryptedGroupUtil.ensureKnownRole(role);
+
+      duplicatesMember |= isMemberAfterDeletes(approvedMember.getUuid(), added, deleted) || !promotedUuids.add(approvedMember.getUuid());
+
+      newRequestingMembers.remove(index);
+      approvedMembers.add(DecryptedMember.newBuilder()
+                                         .setUuid(approvedMember.getUuid())
+                                         .setProfileKey(requestingMember.getProfileKey())
+                                         .setRole(role)
+                                         .build());
+    }
+
+    if (duplicatesMember) {
+      Log.w(TAG, "Change adds a full member twice, no longer indexing group");
+      unindexed = DecryptedGroupUtil.applyWithoutRevisionCheck(toDecryptedGroup(), change);
+      members.clear();
+      return;
+    }
+
+    // Nothing below can fail, commit in the same order as DecryptedGroupUtil.
+    for (DecryptedMember member : change.getNewMembersList()) {
+      members.put(member.getUuid(), member);
+    }
+
+    for (ByteString removedMember : change.getDeleteMembersList()) {
+      if (members.remove(removedMember) == null) {
+        Log.w(TAG, "Deleted member on change not found in group");
+      }
+    }
+
+    for (DecryptedModifyMemberRole modifyMemberRole : change.getModifyMemberRolesList()) {
+      members.put(modifyMemberRole.getUuid(), DecryptedMember.newBuilder(members.get(modifyMemberRole.getUuid()))
+                                                             .setRole(modifyMemberRole.getRole())
+                                                             .build());
+    }
+
+    for (DecryptedMember modifyProfileKey : change.getModifiedProfileKeysList()) {
+      members.put(modifyProfileKey.getUuid(), DecryptedMember.newBuilder(members.get(modifyProfileKey.getUuid()))
+                                                             .setProfileKey(modifyProfileKey.getProfileKey())
+                                                             .build());
+    }
+
+    for (DecryptedMember member : promotedMembers) {
+      members.put(member.getUuid(), member);
+    }
+
+    for (DecryptedMember member : approvedMembers) {
+      members.put(member.getUuid(), member);
+    }
+
+    pendingMembers    = newPendingMembers;
+    requestingMembers = newRequestingMembers;
+    snapshot          = null;
+
+    attributes.setRevision(change.getRevision());
+
+    DecryptedGroupUtil.applyModifyTitleAction(attributes, change);
+    DecryptedGroupUtil.applyModifyDescriptionAction(attributes, change);
+    DecryptedGroupUtil.applyModifyAvatarAction(attributes, change);
+    DecryptedGroupUtil.applyModifyDisappearingMessagesTimerAction(attributes, change);
+    DecryptedGroupUtil.applyModifyAttributesAccessControlAction(attributes, change);
+    DecryptedGroupUtil.applyModifyMembersAccessControlAction(attributes, change);
+    DecryptedGroupUtil.applyModifyAddFromInviteLinkAccessControlAction(attributes, change);
+    DecryptedGroupUtil.applyInviteLinkPassword(attributes, change);
+  }
+
+  /**
+   * @return An immutable copy of the current state. Repeated calls without an intervening change
+   *         return the same instance.
+   */
+  public DecryptedGroup toDecryptedGroup() {
+    if (unindexed != null) {
+      return unindexed;
+    }
+
+    if (snapshot == null) {
+      snapshot = attributes.build()
+                           .toBuilder()
+                           .addAllMembers(members.values())
+                           .addAllPendingMembers(pendingMembers)
+                           .addAllRequestingMembers(requestingMembers)
+                           .build();
+    }
+
+    return snapshot;
+  }
+
+  /**
+   * Whether the UUID is a full member once the change's member additions and deletions are applied.
+   * Roles, profile keys and invites are all applied after those and checked against that state.
+   */
+  private boolean isMemberAfterDeletes(ByteString uuid, Set<ByteString> added, Set<ByteString> deleted) {
+    return !deleted.contains(uuid) && (added.contains(uuid) || members.containsKey(uuid));
+  }
+
+  /**
+   * Adding members drops any pending or requesting entries for them, this happens before deletes.
+   */
+  private void removeNowFullMembers(List<DecryptedPendingMember> pending,
+                                    List<DecryptedRequestingMember> requesting,
+                                    Set<ByteString> added)
+  {
+    for (int i = pending.size() - 1; i >= 0; i--) {
+      ByteString uuid = pending.get(i).getUuid();
+      if (added.contains(uuid) || members.containsKey(uuid)) {
+        pending.remove(i);
+      }
+    }
+
+    for (int i = requesting.size() - 1; i >= 0; i--) {
+      ByteString uuid = requesting.get(i).getUuid();
+      if (added.contains(uuid) || members.containsKey(uuid)) {
+        requesting.remove(i);
+      }
+    }
+  }
+
+  private static Set<ByteString> membersToUuidSet(List<DecryptedMember> members) {
+    Set<ByteString> uuids = new HashSet<>(members.size());
+
+    for (DecryptedMember member : members) {
+      uuids.add(member.getUuid());
+    }
+
+    return uuids;
+  }
+
+  private static Set<ByteString> pendingToCipherTextSet(List<DecryptedPendingMember> pendingMembers) {
+    Set<ByteString> cipherTexts = new HashSet<>(pendingMembers.size());
+
+    for (DecryptedPendingMember pendingMember : pendingMembers) {
+      cipherTexts.add(pendingMember.getUuidCipherText());
+    }
+
+    return cipherTexts;
+  }
+
+  private static int indexOfPendingCipherText(List<DecryptedPendingMember> pendingMembers, ByteString cipherText) {
+    for (int i = 0; i < pendingMembers.size(); i++) {
+      if (cipherText.equals(pendingMembers.get(i).getUuidCipherText())) return i;
+    }
+    return -1;
+  }
+
+  private static int indexOfPendingUuid(List<DecryptedPendingMember> pendingMembers, ByteString uuid) {
+    for (int i = 0; i < pendingMembers.size(); i++) {
+      if (uuid.equals(pendingMembers.get(i).getUuid())) return i;
+    }
+    return -1;
+  }
+
+  private static int indexOfRequestingUuid(List<DecryptedRequestingMember> requestingMembers, ByteString uuid) {
+    for (int i = 0; i < requestingMembers.size(); i++) {
+      if (uuid.equals(requestingMembers.get(i).getUuid())) return i;
+    }
+    return -1;
+  }
+}
@@ -10,6 +10,7 @@ import com.google.protobuf.ByteString;
 
 import org.whispersystems.signalservice.internal.push.SignalServiceProtos;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -28,6 +29,19 @@ public class DeviceContactsOutputStream extends ChunkedOutputStream {
     out.close();
   }
 
+  /**
+   * Serializes the length prefixed details that {@link #write(DeviceContact)} writes ahead of the
+   * contact's avatar. Along with the avatar's length, that's exactly what will be written for the
+   * contact, so a stream of contacts can be sized up front without reading any avatars.
+   */
+  public static byte[] serializeContactDetails(DeviceContact contact) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    new DeviceContactsOutputStream(bytes).writeContactDetails(contact);
+
+    return bytes.toByteArray();
+  }
+
   private void writeAvatarImage(DeviceContact contact) throws IOException {
     if (contact.getAvatar().isPresent()) {
       writeStream(contact.getAvatar().get().getInputStream());
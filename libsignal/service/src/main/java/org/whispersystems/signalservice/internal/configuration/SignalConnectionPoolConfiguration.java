@@ -0,0 +1,54 @@
+package org.whispersystems.signalservice.internal.configuration;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+
+/**
+ * Sizing for the connection pool and dispatcher that every client built by a
+ * {@link org.whispersystems.signalservice.internal.push.PushServiceSocket} shares.
+ */
+public final class SignalConnectionPoolConfiguration {
+
+  public static final SignalConnectionPoolConfiguration DEFAULT = new SignalConnectionPoolConfiguration(10, TimeUnit.SECONDS.toMillis(45), 64, 10);
+
+  private final int  maxIdleConnections;
+  private final long keepAliveDurationMillis;
+  private final int  maxRequests;
+  private final int  maxRequestsPerHost;
+
+  public SignalConnectionPoolConfiguration(int maxIdleConnections, long keepAliveDurationMillis, int maxRequests, int maxRequestsPerHost) {
+    this.maxIdleConnections      = maxIdleConnections;
+    this.keepAliveDurationMillis = keepAliveDurationMillis;
+    this.maxRequests             = maxRequests;
+    this.maxRequestsPerHost      = maxRequestsPerHost;
+  }
+
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  public long getKeepAliveDurationMillis() {
+    return keepAliveDurationMillis;
+  }
+
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  public int getMaxRequestsPerHost() {
+    return maxRequestsPerHost;
+  }
+
+  public ConnectionPool createConnectionPool() {
+    return new ConnectionPool(maxIdleConnections, keepAliveDurationMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public Dispatcher createDispatcher() {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    return dispatcher;
+  }
+}
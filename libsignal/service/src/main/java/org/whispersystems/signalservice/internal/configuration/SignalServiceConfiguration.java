@@ -10,15 +10,16 @@ import okhttp3.Interceptor;
 
 public final class SignalServiceConfiguration {
 
-  private final SignalServiceUrl[]           signalServiceUrls;
-  private final Map<Integer, SignalCdnUrl[]> signalCdnUrlMap;
-  private final SignalContactDiscoveryUrl[]  signalContactDiscoveryUrls;
-  private final SignalKeyBackupServiceUrl[]  signalKeyBackupServiceUrls;
-  private final SignalStorageUrl[]           signalStorageUrls;
-  private final List<Interceptor>            networkInterceptors;
-  private final Optional<Dns>                dns;
-  private final Optional<SignalProxy>        proxy;
-  private final byte[]                       zkGroupServerPublicParams;
+  private final SignalServiceUrl[]                signalServiceUrls;
+  private final Map<Integer, SignalCdnUrl[]>      signalCdnUrlMap;
+  private final SignalContactDiscoveryUrl[]       signalContactDiscoveryUrls;
+  private final SignalKeyBackupServiceUrl[]       signalKeyBackupServiceUrls;
+  private final SignalStorageUrl[]                signalStorageUrls;
+  private final List<Interceptor>                 networkInterceptors;
+  private final Optional<Dns>                     dns;
+  private final Optional<SignalProxy>             proxy;
+  private final byte[]                            zkGroupServerPublicParams;
+  private final SignalConnectionPoolConfiguration connectionPoolConfiguration;
 
   public SignalServiceConfiguration(SignalServiceUrl[] signalServiceUrls,
                                     Map<Integer, SignalCdnUrl[]> signalCdnUrlMap,
@@ -30,15 +31,30 @@ public final class SignalServiceConfiguration {
                                     Optional<SignalProxy> proxy,
                                     byte[] zkGroupServerPublicParams)
   {
-    this.signalServiceUrls          = signalServiceUrls;
-    this.signalCdnUrlMap            = signalCdnUrlMap;
-    this.signalContactDiscoveryUrls = signalContactDiscoveryUrls;
-    this.signalKeyBackupServiceUrls = signalKeyBackupServiceUrls;
-    this.signalStorageUrls          = signalStorageUrls;
-    this.networkInterceptors        = networkInterceptors;
-    this.dns                        = dns;
-    this.proxy                      = proxy;
-    this.zkGroupServerPublicParams  = zkGroupServerPublicParams;
+    this(signalServiceUrls, signalCdnUrlMap, signalContactDiscoveryUrls, signalKeyBackupServiceUrls, signalStorageUrls, networkInterceptors, dns, proxy, zkGroupServerPublicParams, SignalConnectionPoolConfiguration.DEFAULT);
+  }
+
+  public SignalServiceConfiguration(SignalServiceUrl[] signalServiceUrls,
+                                    Map<Integer, SignalCdnUrl[]> signalCdnUrlMap,
+                                    SignalContactDiscoveryUrl[] signalContactDiscoveryUrls,
+                                    SignalKeyBackupServiceUrl[] signalKeyBackupServiceUrls,
+                                    SignalStorageUrl[] signalStorageUrls,
+                                    List<Interceptor> networkInterceptors,
+                                    Optional<Dns> dns,
+                                    Optional<SignalProxy> proxy,
+                                    byte[] zkGroupServerPublicParams,
+                                    SignalConnectionPoolConfiguration connectionPoolConfiguration)
+  {
+    this.signalServiceUrls           = signalServiceUrls;
+    this.signalCdnUrlMap             = signalCdnUrlMap;
+    this.signalContactDiscoveryUrls  = signalContactDiscoveryUrls;
+    this.signalKeyBackupServiceUrls  = signalKeyBackupServiceUrls;
+    this.signalStorageUrls           = signalStorageUrls;
+    this.networkInterceptors         = networkInterceptors;
+    this.dns                         = dns;
+    this.proxy                       = proxy;
+    this.zkGroupServerPublicParams   = zkGroupServerPublicParams;
+    this.connectionPoolConfiguration = connectionPoolConfiguration;
   }
 
   public SignalServiceUrl[] getSignalServiceUrls() {
@@ -76,4 +92,8 @@ public final class SignalServiceConfiguration {
   public Optional<SignalProxy> getSignalProxy() {
     return proxy;
   }
+
+  public SignalConnectionPoolConfiguration getConnectionPoolConfiguration() {
+    return connectionPoolConfiguration;
+  }
 }
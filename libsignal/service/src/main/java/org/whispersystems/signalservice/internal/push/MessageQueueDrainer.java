@@ -0,0 +1,152 @@
+package org.whispersystems.signalservice.internal.push;
+
+import org.whispersystems.signalservice.internal.util.concurrent.ListenableFuture;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Empties the server's message queue over REST, a page at a time.
+ *
+ * Envelopes are handed to the {@link Sink} as they're read off the wire, and acknowledgements are
+ * sent asynchronously in batches instead of blocking on a round trip per envelope. A batch is only
+ * acknowledged once {@link Sink#flush()} has returned, which is the sink's chance to make sure that
+ * everything it's been handed so far will survive the process dying. Every acknowledgement for a
+ * page has to succeed before the next page is requested, since the server would otherwise hand the
+ * unacknowledged envelopes right back.
+ */
+public final class MessageQueueDrainer {
+
+  private static final int ACK_BATCH_SIZE = 20;
+
+  private final Source source;
+  private final int    ackBatchSize;
+
+  public MessageQueueDrainer(Source source) {
+    this(source, ACK_BATCH_SIZE);
+  }
+
+  MessageQueueDrainer(Source source, int ackBatchSize) {
+    this.source       = source;
+    this.ackBatchSize = ackBatchSize;
+  }
+
+  /**
+   * @return The number of envelopes handed to the sink.
+   */
+  public int drain(Sink sink) throws IOException {
+    int     count = 0;
+    boolean more  = true;
+
+    while (more) {
+      Page page = new Page(sink);
+
+      more   = source.getMessages(page);
+      count += page.finish();
+
+      if (page.isEmpty()) {
+        break;
+      }
+    }
+
+    return count;
+  }
+
+  private final class Page implements EnvelopeConsumer {
+
+    private final Sink                              sink;
+    private final List<SignalServiceEnvelopeEntity> unacknowledged   = new ArrayList<>();
+    private final List<ListenableFuture<?>>         acknowledgements = new ArrayList<>();
+
+    private int count;
+
+    private Page(Sink sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    public void accept(SignalServiceEnvelopeEntity entity, long serverDeliveredTimestamp) throws IOException {
+      sink.onMessage(entity, serverDeliveredTimestamp);
+      unacknowledged.add(entity);
+      count++;
+
+      if (unacknowledged.size() >= ackBatchSize) {
+        acknowledgeBatch();
+      }
+    }
+
+    private void acknowledgeBatch() throws IOException {
+      if (unacknowledged.isEmpty()) {
+        return;
+      }
+
+      sink.flush();
+
+      for (SignalServiceEnvelopeEntity entity : unacknowledged) {
+        acknowledgements.add(source.acknowledge(entity));
+      }
+
+      unacknowledged.clear();
+    }
+
+    /**
+     * Acknowledges whatever is left of the page and waits for every acknowledgement to land.
+     *
+     * @return The number of envelopes in the page.
+     */
+    private int finish() throws IOException {
+      acknowledgeBatch();
+
+      try {
+        for (ListenableFuture<?> acknowledgement : acknowledgements) {
+          acknowledgement.get();
+        }
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while waiting for acknowledgements");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        } else {
+          throw new IOException(e.getCause());
+        }
+      }
+
+      return count;
+    }
+
+    private boolean isEmpty() {
+      return count == 0;
+    }
+  }
+
+  public interface Source {
+    /**
+     * Requests a page of queued envelopes, handing each to the consumer as it's read.
+     *
+     * @return Whether the server has more envelopes queued beyond this page.
+     */
+    boolean getMessages(EnvelopeConsumer consumer) throws IOException;
+
+    /**
+     * Starts acknowledging an envelope, after which the server will drop it from the queue.
+     */
+    ListenableFuture<?> acknowledge(SignalServiceEnvelopeEntity entity);
+  }
+
+  public interface EnvelopeConsumer {
+    void accept(SignalServiceEnvelopeEntity entity, long serverDeliveredTimestamp) throws IOException;
+  }
+
+  public interface Sink {
+    void onMessage(SignalServiceEnvelopeEntity entity, long serverDeliveredTimestamp) throws IOException;
+
+    /**
+     * Called before any of the envelopes handed over so far are acknowledged. Must not return
+     * until whatever was done with them is durable.
+     */
+    void flush() throws IOException;
+  }
+}
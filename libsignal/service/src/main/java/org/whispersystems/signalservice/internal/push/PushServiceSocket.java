@@ -93,6 +93,8 @@ import org.whispersystems.signalservice.internal.push.exceptions.NotInGroupExcep
 import org.whispersystems.signalservice.internal.push.exceptions.PaymentsRegionException;
 import org.whispersystems.signalservice.internal.push.exceptions.StaleDevicesException;
 import org.whispersystems.signalservice.internal.push.http.CancelationSignal;
+import org.whispersystems.signalservice.internal.push.http.ClientCache;
+import org.whispersystems.signalservice.internal.push.http.ConnectionMetrics;
 import org.whispersystems.signalservice.internal.push.http.DigestingRequestBody;
 import org.whispersystems.signalservice.internal.push.http.NoCipherOutputStreamFactory;
 import org.whispersystems.signalservice.internal.push.http.OutputStreamFactory;
@@ -143,6 +145,7 @@ import okhttp3.Callback;
 import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
 import okhttp3.Credentials;
+import okhttp3.Dispatcher;
 import okhttp3.Dns;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
@@ -248,6 +251,7 @@ public class PushServiceSocket {
   private final SecureRandom                     random;
   private final ClientZkProfileOperations        clientZkProfileOperations;
   private final boolean                          automaticNetworkRetry;
+  private final ConnectionMetrics                connectionMetrics;
 
   public PushServiceSocket(SignalServiceConfiguration configuration,
                            CredentialsProvider credentialsProvider,
@@ -258,11 +262,17 @@ public class PushServiceSocket {
     this.credentialsProvider       = credentialsProvider;
     this.signalAgent               = signalAgent;
     this.automaticNetworkRetry     = automaticNetworkRetry;
-    this.serviceClients            = createServiceConnectionHolders(configuration.getSignalServiceUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy());
-    this.cdnClientsMap             = createCdnClientsMap(configuration.getSignalCdnUrlMap(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy());
-    this.contactDiscoveryClients   = createConnectionHolders(configuration.getSignalContactDiscoveryUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy());
-    this.keyBackupServiceClients   = createConnectionHolders(configuration.getSignalKeyBackupServiceUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy());
-    this.storageClients            = createConnectionHolders(configuration.getSignalStorageUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy());
+    this.connectionMetrics         = new ConnectionMetrics();
+
+    SharedResources shared = new SharedResources(configuration.getConnectionPoolConfiguration().createConnectionPool(),
+                                                 configuration.getConnectionPoolConfiguration().createDispatcher(),
+                                                 connectionMetrics);
+
+    this.serviceClients            = createServiceConnectionHolders(configuration.getSignalServiceUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy(), shared);
+    this.cdnClientsMap             = createCdnClientsMap(configuration.getSignalCdnUrlMap(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy(), shared);
+    this.contactDiscoveryClients   = createConnectionHolders(configuration.getSignalContactDiscoveryUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy(), shared);
+    this.keyBackupServiceClients   = createConnectionHolders(configuration.getSignalKeyBackupServiceUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy(), shared);
+    this.storageClients            = createConnectionHolders(configuration.getSignalStorageUrls(), configuration.getNetworkInterceptors(), configuration.getDns(), configuration.getSignalProxy(), shared);
     this.random                    = new SecureRandom();
     this.clientZkProfileOperations = clientZkProfileOperations;
   }
@@ -433,17 +443,42 @@ public class PushServiceSocket {
 
     List<SignalServiceEnvelopeEntity> envelopes = readBodyJson(response.body(), SignalServiceEnvelopeEntityList.class).getMessages();
 
-    long serverDeliveredTimestamp = 0;
+    return new SignalServiceMessagesResult(envelopes, getServerDeliveredTimestamp(response));
+  }
+
+  /**
+   * Requests a page of queued messages, handing each to the consumer as soon as it's read off the
+   * wire rather than after the whole response has been buffered.
+   *
+   * @return Whether the server has more messages queued beyond this page.
+   */
+  public boolean getMessages(MessageQueueDrainer.EnvelopeConsumer consumer) throws IOException {
+    Response response                 = makeServiceRequest(String.format(MESSAGE_PATH, ""), "GET", (RequestBody) null, NO_HEADERS, NO_HANDLER, Optional.absent());
+    long     serverDeliveredTimestamp = getServerDeliveredTimestamp(response);
+
+    try (ResponseBody body = response.body()) {
+      if (body == null) {
+        throw new PushNetworkException("No body!");
+      }
+
+      return SignalServiceEnvelopeEntityList.read(JsonUtil.createParser(body.byteStream()),
+                                                  entity -> consumer.accept(entity, serverDeliveredTimestamp));
+    } catch (JsonProcessingException e) {
+      Log.w(TAG, e);
+      throw new MalformedResponseException("Unable to parse entity", e);
+    }
+  }
+
+  private static long getServerDeliveredTimestamp(Response response) {
     try {
       String stringValue = response.header(SERVER_DELIVERED_TIMESTAMP_HEADER);
       stringValue = stringValue != null ? stringValue : "0";
 
-      serverDeliveredTimestamp = Long.parseLong(stringValue);
+      return Long.parseLong(stringValue);
     } catch (NumberFormatException e) {
       Log.w(TAG, e);
+      return 0;
     }
-
-    return new SignalServiceMessagesResult(envelopes, serverDeliveredTimestamp);
   }
 
   public void acknowledgeMessage(String sender, long timestamp) throws IOException {
@@ -454,6 +489,14 @@ public class PushServiceSocket {
     makeServiceRequest(String.format(UUID_ACK_MESSAGE_PATH, uuid), "DELETE", null);
   }
 
+  public ListenableFuture<String> acknowledgeMessageAsync(String sender, long timestamp) {
+    return submitServiceRequest(String.format(Locale.US, SENDER_ACK_MESSAGE_PATH, sender, timestamp), "DELETE", null, NO_HEADERS, Optional.absent());
+  }
+
+  public ListenableFuture<String> acknowledgeMessageAsync(String uuid) {
+    return submitServiceRequest(String.format(UUID_ACK_MESSAGE_PATH, uuid), "DELETE", null, NO_HEADERS, Optional.absent());
+  }
+
   public void registerPreKeys(IdentityKey identityKey,
                               SignedPreKeyRecord signedPreKey,
                               List<PreKeyRecord> records)
@@ -930,6 +973,13 @@ public class PushServiceSocket {
     return JsonUtil.fromJson(response, RemoteConfigResponse.class);
   }
 
+  /**
+   * @return Latency and connection reuse counts for every endpoint this socket has talked to.
+   */
+  public Map<String, ConnectionMetrics.Snapshot> getConnectionMetrics() {
+    return connectionMetrics.getSnapshot();
+  }
+
   public void setSoTimeoutMillis(long soTimeoutMillis) {
     this.soTimeoutMillis = soTimeoutMillis;
   }
@@ -1035,11 +1085,7 @@ public class PushServiceSocket {
       throw new MissingConfigurationException("Attempted to download from unsupported CDN number: " + cdnNumber + ", Our configuration supports: " + cdnClientsMap.keySet());
     }
     ConnectionHolder   connectionHolder = getRandom(cdnNumberClients, random);
-    OkHttpClient       okHttpClient     = connectionHolder.getClient()
-                                                          .newBuilder()
-                                                          .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                          .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                          .build();
+    OkHttpClient       okHttpClient     = connectionHolder.getClient(soTimeoutMillis);
 
     Request.Builder request = new Request.Builder().url(connectionHolder.getUrl() + "/" + path).get();
 
@@ -1113,11 +1159,7 @@ public class PushServiceSocket {
       throws PushNetworkException, NonSuccessfulResponseCodeException
   {
     ConnectionHolder connectionHolder = getRandom(cdnClientsMap.get(0), random);
-    OkHttpClient     okHttpClient     = connectionHolder.getClient()
-                                                        .newBuilder()
-                                                        .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .build();
+    OkHttpClient     okHttpClient     = connectionHolder.getClient(soTimeoutMillis);
 
     DigestingRequestBody file = new DigestingRequestBody(data, outputStreamFactory, contentType, length, progressListener, cancelationSignal, 0);
 
@@ -1168,11 +1210,7 @@ public class PushServiceSocket {
 
   private String getResumableUploadUrl(String signedUrl, Map<String, String> headers) throws IOException {
     ConnectionHolder connectionHolder = getRandom(cdnClientsMap.get(2), random);
-    OkHttpClient     okHttpClient     = connectionHolder.getClient()
-                                                        .newBuilder()
-                                                        .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .build();
+    OkHttpClient     okHttpClient     = connectionHolder.getClient(soTimeoutMillis);
 
     Request.Builder request = new Request.Builder().url(buildConfiguredUrl(connectionHolder, signedUrl))
                                                    .post(RequestBody.create(null, ""));
@@ -1219,11 +1257,7 @@ public class PushServiceSocket {
 
   private byte[] uploadToCdn2(String resumableUrl, InputStream data, String contentType, long length, OutputStreamFactory outputStreamFactory, ProgressListener progressListener, CancelationSignal cancelationSignal) throws IOException {
     ConnectionHolder connectionHolder = getRandom(cdnClientsMap.get(2), random);
-    OkHttpClient     okHttpClient     = connectionHolder.getClient()
-                                                        .newBuilder()
-                                                        .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .build();
+    OkHttpClient     okHttpClient     = connectionHolder.getClient(soTimeoutMillis);
 
     ResumeInfo           resumeInfo = getResumeInfo(resumableUrl, length);
     DigestingRequestBody file       = new DigestingRequestBody(data, outputStreamFactory, contentType, length, progressListener, cancelationSignal, resumeInfo.contentStart);
@@ -1270,11 +1304,7 @@ public class PushServiceSocket {
 
   private ResumeInfo getResumeInfo(String resumableUrl, long contentLength) throws IOException {
     ConnectionHolder connectionHolder = getRandom(cdnClientsMap.get(2), random);
-    OkHttpClient     okHttpClient     = connectionHolder.getClient()
-                                                        .newBuilder()
-                                                        .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .build();
+    OkHttpClient     okHttpClient     = connectionHolder.getClient(soTimeoutMillis);
 
     final long   offset;
     final String contentRange;
@@ -1409,6 +1439,10 @@ public class PushServiceSocket {
     call.enqueue(new Callback() {
       @Override
       public void onResponse(Call call, Response response) {
+        synchronized (connections) {
+          connections.remove(call);
+        }
+
         try (ResponseBody body = validateServiceResponse(response).body()) {
           bodyFuture.set(readBodyString(body));
         } catch (IOException e) {
@@ -1418,6 +1452,10 @@ public class PushServiceSocket {
 
       @Override
       public void onFailure(Call call, IOException e) {
+        synchronized (connections) {
+          connections.remove(call);
+        }
+
         bodyFuture.setException(e);
       }
     });
@@ -1532,13 +1570,9 @@ public class PushServiceSocket {
 
   private OkHttpClient buildOkHttpClient(boolean unidentified) {
     ServiceConnectionHolder connectionHolder = (ServiceConnectionHolder) getRandom(serviceClients, random);
-    OkHttpClient            baseClient       = unidentified ? connectionHolder.getUnidentifiedClient() : connectionHolder.getClient();
 
-    return baseClient.newBuilder()
-                     .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                     .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                     .retryOnConnectionFailure(automaticNetworkRetry)
-                     .build();
+    return unidentified ? connectionHolder.getUnidentifiedClient(soTimeoutMillis, automaticNetworkRetry)
+                        : connectionHolder.getClient(soTimeoutMillis, automaticNetworkRetry, true);
   }
 
   private Request buildServiceRequest(String urlFragment, String method, RequestBody body, Map<String, String> headers, Optional<UnidentifiedAccess> unidentifiedAccess) {
@@ -1597,11 +1631,7 @@ public class PushServiceSocket {
   private Response makeRequest(ConnectionHolder connectionHolder, String authorization, List<String> cookies, String path, String method, String body)
       throws PushNetworkException, NonSuccessfulResponseCodeException
   {
-    OkHttpClient okHttpClient = connectionHolder.getClient()
-                                                .newBuilder()
-                                                .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                .build();
+    OkHttpClient okHttpClient = connectionHolder.getClient(soTimeoutMillis);
 
     Request.Builder request = new Request.Builder().url(connectionHolder.getUrl() + path);
 
@@ -1674,11 +1704,7 @@ public class PushServiceSocket {
       throws PushNetworkException, NonSuccessfulResponseCodeException
   {
     ConnectionHolder connectionHolder = getRandom(storageClients, random);
-    OkHttpClient     okHttpClient     = connectionHolder.getClient()
-                                                        .newBuilder()
-                                                        .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .build();
+    OkHttpClient     okHttpClient     = connectionHolder.getClient(soTimeoutMillis);
 
 //    Log.d(TAG, "Opening URL: " + connectionHolder.getUrl());
 
@@ -1742,12 +1768,7 @@ public class PushServiceSocket {
 
   public CallingResponse makeCallingRequest(long requestId, String url, String httpMethod, List<Pair<String, String>> headers, byte[] body) {
     ConnectionHolder connectionHolder = getRandom(serviceClients, random);
-    OkHttpClient     okHttpClient     = connectionHolder.getClient()
-                                                        .newBuilder()
-                                                        .followRedirects(false)
-                                                        .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
-                                                        .build();
+    OkHttpClient     okHttpClient     = connectionHolder.getClient(soTimeoutMillis, true, false);
 
     RequestBody     requestBody = body != null ? RequestBody.create(null, body) : null;
     Request.Builder builder     = new Request.Builder()
@@ -1793,13 +1814,14 @@ public class PushServiceSocket {
   private ServiceConnectionHolder[] createServiceConnectionHolders(SignalUrl[] urls,
                                                                    List<Interceptor> interceptors,
                                                                    Optional<Dns> dns,
-                                                                   Optional<SignalProxy> proxy)
+                                                                   Optional<SignalProxy> proxy,
+                                                                   SharedResources shared)
   {
     List<ServiceConnectionHolder> serviceConnectionHolders = new LinkedList<>();
 
     for (SignalUrl url : urls) {
-      serviceConnectionHolders.add(new ServiceConnectionHolder(createConnectionClient(url, interceptors, dns, proxy),
-                                                               createConnectionClient(url, interceptors, dns, proxy),
+      serviceConnectionHolders.add(new ServiceConnectionHolder(createConnectionClient(url, interceptors, dns, proxy, shared),
+                                                               createConnectionClient(url, interceptors, dns, proxy, shared),
                                                                url.getUrl(), url.getHostHeader()));
     }
 
@@ -1809,12 +1831,13 @@ public class PushServiceSocket {
   private static Map<Integer, ConnectionHolder[]> createCdnClientsMap(final Map<Integer, SignalCdnUrl[]> signalCdnUrlMap,
                                                                       final List<Interceptor> interceptors,
                                                                       final Optional<Dns> dns,
-                                                                      final Optional<SignalProxy> proxy) {
+                                                                      final Optional<SignalProxy> proxy,
+                                                                      final SharedResources shared) {
     validateConfiguration(signalCdnUrlMap);
     final Map<Integer, ConnectionHolder[]> result = new HashMap<>();
     for (Map.Entry<Integer, SignalCdnUrl[]> entry : signalCdnUrlMap.entrySet()) {
       result.put(entry.getKey(),
-                 createConnectionHolders(entry.getValue(), interceptors, dns, proxy));
+                 createConnectionHolders(entry.getValue(), interceptors, dns, proxy, shared));
     }
     return Collections.unmodifiableMap(result);
   }
@@ -1825,17 +1848,17 @@ public class PushServiceSocket {
     }
   }
 
-  private static ConnectionHolder[] createConnectionHolders(SignalUrl[] urls, List<Interceptor> interceptors, Optional<Dns> dns, Optional<SignalProxy> proxy) {
+  private static ConnectionHolder[] createConnectionHolders(SignalUrl[] urls, List<Interceptor> interceptors, Optional<Dns> dns, Optional<SignalProxy> proxy, SharedResources shared) {
     List<ConnectionHolder> connectionHolders = new LinkedList<>();
 
     for (SignalUrl url : urls) {
-      connectionHolders.add(new ConnectionHolder(createConnectionClient(url, interceptors, dns, proxy), url.getUrl(), url.getHostHeader()));
+      connectionHolders.add(new ConnectionHolder(createConnectionClient(url, interceptors, dns, proxy, shared), url.getUrl(), url.getHostHeader()));
     }
 
     return connectionHolders.toArray(new ConnectionHolder[0]);
   }
 
-  private static OkHttpClient createConnectionClient(SignalUrl url, List<Interceptor> interceptors, Optional<Dns> dns, Optional<SignalProxy> proxy) {
+  private static OkHttpClient createConnectionClient(SignalUrl url, List<Interceptor> interceptors, Optional<Dns> dns, Optional<SignalProxy> proxy, SharedResources shared) {
     try {
       TrustManager[] trustManagers = BlacklistingTrustManager.createFor(url.getTrustStore());
 
@@ -1855,7 +1878,9 @@ public class PushServiceSocket {
              .connectionSpecs(url.getConnectionSpecs().or(Util.immutableList(ConnectionSpec.RESTRICTED_TLS)))
              .build();
 
-      builder.connectionPool(new ConnectionPool(5, 45, TimeUnit.SECONDS));
+      builder.connectionPool(shared.connectionPool)
+             .dispatcher(shared.dispatcher)
+             .eventListenerFactory(shared.connectionMetrics);
 
       for (Interceptor interceptor : interceptors) {
         builder.addInterceptor(interceptor);
@@ -1990,20 +2015,40 @@ public class PushServiceSocket {
     private AuthCredentials backupCredentials;
   }
 
+  /**
+   * The connection pool, dispatcher and metrics shared by every client this socket creates.
+   */
+  private static final class SharedResources {
+
+    private final ConnectionPool    connectionPool;
+    private final Dispatcher        dispatcher;
+    private final ConnectionMetrics connectionMetrics;
+
+    private SharedResources(ConnectionPool connectionPool, Dispatcher dispatcher, ConnectionMetrics connectionMetrics) {
+      this.connectionPool    = connectionPool;
+      this.dispatcher        = dispatcher;
+      this.connectionMetrics = connectionMetrics;
+    }
+  }
+
   private static class ConnectionHolder {
 
-    private final OkHttpClient     client;
+    private final ClientCache      clients;
     private final String           url;
     private final Optional<String> hostHeader;
 
     private ConnectionHolder(OkHttpClient client, String url, Optional<String> hostHeader) {
-      this.client     = client;
+      this.clients    = new ClientCache(client);
       this.url        = url;
       this.hostHeader = hostHeader;
     }
 
-    OkHttpClient getClient() {
-      return client;
+    OkHttpClient getClient(long timeoutMillis) {
+      return clients.get(timeoutMillis);
+    }
+
+    OkHttpClient getClient(long timeoutMillis, boolean retryOnConnectionFailure, boolean followRedirects) {
+      return clients.get(timeoutMillis, retryOnConnectionFailure, followRedirects);
     }
 
     public String getUrl() {
@@ -2017,15 +2062,15 @@ public class PushServiceSocket {
 
   private static class ServiceConnectionHolder extends ConnectionHolder {
 
-    private final OkHttpClient unidentifiedClient;
+    private final ClientCache unidentifiedClients;
 
     private ServiceConnectionHolder(OkHttpClient identifiedClient, OkHttpClient unidentifiedClient, String url, Optional<String> hostHeader) {
       super(identifiedClient, url, hostHeader);
-      this.unidentifiedClient = unidentifiedClient;
+      this.unidentifiedClients = new ClientCache(unidentifiedClient);
     }
 
-    OkHttpClient getUnidentifiedClient() {
-      return unidentifiedClient;
+    OkHttpClient getUnidentifiedClient(long timeoutMillis, boolean retryOnConnectionFailure) {
+      return unidentifiedClients.get(timeoutMillis, retryOnConnectionFailure, true);
     }
   }
 
@@ -1,14 +1,64 @@
 package org.whispersystems.signalservice.internal.push;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
 import java.util.List;
 
 public class SignalServiceEnvelopeEntityList {
 
   private List<SignalServiceEnvelopeEntity> messages;
 
+  private boolean more;
+
   public SignalServiceEnvelopeEntityList() {}
 
   public List<SignalServiceEnvelopeEntity> getMessages() {
     return messages;
   }
+
+  public boolean hasMore() {
+    return more;
+  }
+
+  /**
+   * Reads a response one message at a time, handing each to the consumer as soon as it's parsed
+   * rather than building up the whole list first. Closes the parser.
+   *
+   * @return Whether the server has more messages queued beyond the ones in this response.
+   */
+  public static boolean read(JsonParser parser, EntityConsumer consumer) throws IOException {
+    try {
+      boolean more = false;
+
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected an object");
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String    field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+
+        if ("messages".equals(field) && value == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            consumer.accept(parser.readValueAs(SignalServiceEnvelopeEntity.class));
+          }
+        } else if ("more".equals(field) && value.isBoolean()) {
+          more = parser.getBooleanValue();
+        } else {
+          parser.skipChildren();
+        }
+      }
+
+      return more;
+    } finally {
+      parser.close();
+    }
+  }
+
+  public interface EntityConsumer {
+    void accept(SignalServiceEnvelopeEntity entity) throws IOException;
+  }
 }
@@ -0,0 +1,87 @@
+package org.whispersystems.signalservice.internal.push.http;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Hands out clients derived from a single base client, keyed by the per-request settings that
+ * differ between call sites. Each derived client is built once and reused, rather than calling
+ * {@link OkHttpClient#newBuilder()} on every request. Derived clients share the base client's
+ * connection pool and dispatcher.
+ */
+public final class ClientCache {
+
+  private final OkHttpClient                         baseClient;
+  private final ConcurrentHashMap<Key, OkHttpClient> clients;
+
+  public ClientCache(OkHttpClient baseClient) {
+    this.baseClient = baseClient;
+    this.clients    = new ConcurrentHashMap<>();
+  }
+
+  public OkHttpClient getBaseClient() {
+    return baseClient;
+  }
+
+  public OkHttpClient get(long timeoutMillis) {
+    return get(timeoutMillis, true, true);
+  }
+
+  public OkHttpClient get(long timeoutMillis, boolean retryOnConnectionFailure, boolean followRedirects) {
+    Key          key    = new Key(timeoutMillis, retryOnConnectionFailure, followRedirects);
+    OkHttpClient client = clients.get(key);
+
+    if (client == null) {
+      OkHttpClient built = baseClient.newBuilder()
+                                     .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                                     .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                                     .retryOnConnectionFailure(retryOnConnectionFailure)
+                                     .followRedirects(followRedirects)
+                                     .build();
+
+      client = clients.putIfAbsent(key, built);
+
+      if (client == null) {
+        client = built;
+      }
+    }
+
+    return client;
+  }
+
+  int size() {
+    return clients.size();
+  }
+
+  private static final class Key {
+    private final long    timeoutMillis;
+    private final boolean retryOnConnectionFailure;
+    private final boolean followRedirects;
+
+    private Key(long timeoutMillis, boolean retryOnConnectionFailure, boolean followRedirects) {
+      this.timeoutMillis            = timeoutMillis;
+      this.retryOnConnectionFailure = retryOnConnectionFailure;
+      this.followRedirects          = followRedirects;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return timeoutMillis            == key.timeoutMillis            &&
+             retryOnConnectionFailure == key.retryOnConnectionFailure &&
+             followRedirects          == key.followRedirects;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (timeoutMillis ^ (timeoutMillis >>> 32));
+      result = 31 * result + (retryOnConnectionFailure ? 1 : 0);
+      result = 31 * result + (followRedirects ? 1 : 0);
+      return result;
+    }
+  }
+}
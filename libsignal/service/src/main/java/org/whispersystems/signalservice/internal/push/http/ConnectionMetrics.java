@@ -0,0 +1,211 @@
+package org.whispersystems.signalservice.internal.push.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Request;
+
+/**
+ * Collects per-endpoint latency and connection reuse counts for every call made through a client
+ * it is installed on. An endpoint is the host, method and the first two path segments of the
+ * request, e.g. "chat.signal.org GET /v1/profile". Segments that look like identifiers, such as
+ * the attachment id in "cdn.signal.org GET /attachments/1234", are collapsed to "*", and once
+ * {@link #MAX_ENDPOINTS} have been seen any new endpoint is counted under its host and method alone,
+ * so the metrics never fan out into one entry per request.
+ */
+public final class ConnectionMetrics implements EventListener.Factory {
+
+  private static final int     ENDPOINT_PATH_SEGMENTS = 2;
+  private static final int     MAX_ENDPOINTS          = 128;
+  private static final Pattern NAMED_SEGMENT          = Pattern.compile("v[0-9]+|[a-z_-]+");
+
+  private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  @Override
+  public EventListener create(Call call) {
+    return new CallListener(getEndpoint(endpointKey(call.request())));
+  }
+
+  /**
+   * @return A point-in-time copy of the metrics for every endpoint seen so far, sorted by endpoint.
+   */
+  public Map<String, Snapshot> getSnapshot() {
+    Map<String, Snapshot> snapshot = new TreeMap<>();
+
+    for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().snapshot());
+    }
+
+    return Collections.unmodifiableMap(snapshot);
+  }
+
+  static String endpointKey(Request request) {
+    List<String>  segments = request.url().pathSegments();
+    StringBuilder key      = new StringBuilder(request.url().host()).append(' ').append(request.method()).append(' ');
+
+    for (int i = 0; i < Math.min(ENDPOINT_PATH_SEGMENTS, segments.size()); i++) {
+      String segment = segments.get(i);
+
+      key.append('/').append(segment.isEmpty() || NAMED_SEGMENT.matcher(segment).matches() ? segment : "*");
+    }
+
+    return key.toString();
+  }
+
+  private Endpoint getEndpoint(String key) {
+    Endpoint endpoint = endpoints.get(key);
+
+    if (endpoint == null && endpoints.size() >= MAX_ENDPOINTS) {
+      key      = overflowKey(key);
+      endpoint = endpoints.get(key);
+    }
+
+    if (endpoint == null) {
+      Endpoint created = new Endpoint();
+
+      endpoint = endpoints.putIfAbsent(key, created);
+
+      if (endpoint == null) {
+        endpoint = created;
+      }
+    }
+
+    return endpoint;
+  }
+
+  /**
+   * @return The host and method of an endpoint key, which is where endpoints seen after the limit is
+   *         reached are counted.
+   */
+  private static String overflowKey(String key) {
+    return key.substring(0, key.lastIndexOf(' ')) + " *";
+  }
+
+  private static final class CallListener extends EventListener {
+
+    private final Endpoint endpoint;
+
+    private long startNanos;
+    private int  connectionsOpened;
+    private int  connectionsAcquired;
+
+    private CallListener(Endpoint endpoint) {
+      this.endpoint = endpoint;
+    }
+
+    @Override
+    public void callStart(Call call) {
+      startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+      connectionsOpened++;
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+      connectionsAcquired++;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+      endpoint.record(System.nanoTime() - startNanos, connectionsOpened, connectionsAcquired, false);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+      endpoint.record(System.nanoTime() - startNanos, connectionsOpened, connectionsAcquired, true);
+    }
+  }
+
+  private static final class Endpoint {
+
+    private long requests;
+    private long failures;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    private long connectionsOpened;
+    private long connectionsReused;
+
+    synchronized void record(long latencyNanos, int opened, int acquired, boolean failed) {
+      requests++;
+      totalLatencyNanos += latencyNanos;
+      maxLatencyNanos    = Math.max(maxLatencyNanos, latencyNanos);
+      connectionsOpened += opened;
+      connectionsReused += Math.max(0, acquired - opened);
+
+      if (failed) {
+        failures++;
+      }
+    }
+
+    synchronized Snapshot snapshot() {
+      return new Snapshot(requests, failures, totalLatencyNanos, maxLatencyNanos, connectionsOpened, connectionsReused);
+    }
+  }
+
+  public static final class Snapshot {
+
+    private final long requests;
+    private final long failures;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+    private final long connectionsOpened;
+    private final long connectionsReused;
+
+    private Snapshot(long requests, long failures, long totalLatencyNanos, long maxLatencyNanos, long connectionsOpened, long connectionsReused) {
+      this.requests          = requests;
+      this.failures          = failures;
+      this.totalLatencyNanos = totalLatencyNanos;
+      this.maxLatencyNanos   = maxLatencyNanos;
+      this.connectionsOpened = connectionsOpened;
+      this.connectionsReused = connectionsReused;
+    }
+
+    public long getRequestCount() {
+      return requests;
+    }
+
+    public long getFailureCount() {
+      return failures;
+    }
+
+    public long getAverageLatencyMillis() {
+      return requests > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos / requests) : 0;
+    }
+
+    public long getMaxLatencyMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+    }
+
+    public long getConnectionsOpened() {
+      return connectionsOpened;
+    }
+
+    public long getConnectionsReused() {
+      return connectionsReused;
+    }
+
+    @Override
+    public String toString() {
+      return "requests: " + requests +
+             ", failures: " + failures +
+             ", avg: " + getAverageLatencyMillis() + " ms" +
+             ", max: " + getMaxLatencyMillis() + " ms" +
+             ", opened: " + connectionsOpened +
+             ", reused: " + connectionsReused;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.whispersystems.signalservice.api.groupsv2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.storageservice.protos.groups.Group;
+import org.signal.zkgroup.InvalidInputException;
+import org.signal.zkgroup.VerificationFailedException;
+import org.signal.zkgroup.groups.GroupMasterKey;
+import org.signal.zkgroup.groups.GroupSecretParams;
+import org.whispersystems.libsignal.logging.Log;
+import org.whispersystems.libsignal.logging.SignalProtocolLoggerProvider;
+import org.whispersystems.signalservice.internal.util.Util;
+import org.whispersystems.signalservice.testutil.ZkGroupLibraryUtil;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.whispersystems.signalservice.api.groupsv2.GroupsV2Operations_decrypt_parallel_Test.createHistory;
+
+/**
+ * Manual benchmark for parallel, memoized group decryption in {@link GroupsV2Operations}.
+ */
+@Ignore("Benchmark, run manually")
+public final class GroupsV2OperationsBenchmark {
+
+  private static final String TAG = GroupsV2OperationsBenchmark.class.getSimpleName();
+
+  private static final int PARALLELISM = 4;
+
+  private ClientZkOperations clientZkOperations;
+  private GroupSecretParams  groupSecretParams;
+  private ExecutorService    executor;
+
+  @BeforeClass
+  public static void setUpClass() {
+    SignalProtocolLoggerProvider.setProvider((priority, tag, message) -> System.out.println(tag + ": " + message));
+  }
+
+  @Before
+  public void setup() throws InvalidInputException {
+    ZkGroupLibraryUtil.assumeZkGroupSupportedOnOS();
+
+    clientZkOperations = new ClientZkOperations(new TestZkGroupServer().getServerPublicParams());
+    groupSecretParams  = GroupSecretParams.deriveFromMasterKey(new GroupMasterKey(Util.getSecretBytes(32)));
+    executor           = Executors.newFixedThreadPool(PARALLELISM);
+  }
+
+  @After
+  public void tearDown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Replays 200 revisions of a 1000 member group, once decrypting every revision from scratch on a
+   * single thread, as it used to be, and once with a shared, parallel, memoizing instance.
+   * <p>
+   * Takes minutes for the baseline.
+   */
+  @Test
+  public void decrypt_1000_members_200_revisions() throws VerificationFailedException, InvalidGroupStateException {
+    List<Group> history = createHistory(groupSecretParams, 1000, 200);
+
+    long baselineStart = System.nanoTime();
+    for (Group revision : history) {
+      new GroupsV2Operations(clientZkOperations).forGroup(groupSecretParams).decryptGroup(revision);
+    }
+    long baselineMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - baselineStart);
+
+    GroupsV2Operations engine = new GroupsV2Operations(clientZkOperations, executor, PARALLELISM);
+
+    long engineStart = System.nanoTime();
+    for (Group revision : history) {
+      engine.forGroup(groupSecretParams).decryptGroup(revision);
+    }
+    long engineMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - engineStart);
+
+    Log.i(TAG, String.format(Locale.US, "Serial and uncached: %d ms, parallel and memoized: %d ms", baselineMillis, engineMillis));
+  }
+}
@@ -0,0 +1,285 @@
+package org.whispersystems.signalservice.api.groupsv2;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.storageservice.protos.groups.Group;
+import org.signal.storageservice.protos.groups.GroupChange;
+import org.signal.storageservice.protos.groups.Member;
+import org.signal.storageservice.protos.groups.PendingMember;
+import org.signal.storageservice.protos.groups.RequestingMember;
+import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.signal.storageservice.protos.groups.local.DecryptedGroupChange;
+import org.signal.zkgroup.InvalidInputException;
+import org.signal.zkgroup.VerificationFailedException;
+import org.signal.zkgroup.groups.ClientZkGroupCipher;
+import org.signal.zkgroup.groups.GroupMasterKey;
+import org.signal.zkgroup.groups.GroupSecretParams;
+import org.signal.zkgroup.groups.UuidCiphertext;
+import org.signal.zkgroup.profiles.ProfileKey;
+import org.whispersystems.signalservice.internal.util.Util;
+import org.whispersystems.signalservice.testutil.ZkGroupLibraryUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class GroupsV2Operations_decrypt_parallel_Test {
+
+  private static final int PARALLELISM = 4;
+
+  private ClientZkOperations clientZkOperations;
+  private GroupSecretParams  groupSecretParams;
+  private ExecutorService    executor;
+
+  @Before
+  public void setup() throws InvalidInputException {
+    ZkGroupLibraryUtil.assumeZkGroupSupportedOnOS();
+
+    clientZkOperations = new ClientZkOperations(new TestZkGroupServer().getServerPublicParams());
+    groupSecretParams  = GroupSecretParams.deriveFromMasterKey(new GroupMasterKey(Util.getSecretBytes(32)));
+    executor           = Executors.newFixedThreadPool(PARALLELISM);
+  }
+
+  @After
+  public void tearDown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void parallel_decryption_matches_serial_decryption() throws VerificationFailedException, InvalidGroupStateException {
+    Group group = createGroup(300, 50, 50, 1);
+
+    DecryptedGroup serial   = serialOperations().decryptGroup(group);
+    DecryptedGroup parallel = parallelOperations().decryptGroup(group);
+
+    assertEquals(300, parallel.getMembersCount());
+    assertEquals(50, parallel.getPendingMembersCount());
+    assertEquals(50, parallel.getRequestingMembersCount());
+    assertEquals(serial, parallel);
+  }
+
+  @Test
+  public void parallel_change_decryption_matches_serial_decryption() throws VerificationFailedException, InvalidGroupStateException {
+    GroupsV2Operations.GroupOperations encrypter = serialOperations();
+    GroupChange.Actions.Builder        actions   = GroupChange.Actions.newBuilder()
+                                                                      .setSourceUuid(encrypter.encryptUuid(UUID.randomUUID()))
+                                                                      .setRevision(10);
+
+    for (Member member : createGroup(200, 0, 0, 1).getMembersList()) {
+      actions.addAddMembers(GroupChange.Actions.AddMemberAction.newBuilder().setAdded(member));
+    }
+
+    DecryptedGroupChange serial   = serialOperations().decryptChange(actions.build());
+    DecryptedGroupChange parallel = parallelOperations().decryptChange(actions.build());
+
+    assertEquals(200, parallel.getNewMembersCount());
+    assertEquals(serial, parallel);
+  }
+
+  @Test
+  public void memoized_decryption_across_revisions_matches_fresh_decryption() throws VerificationFailedException, InvalidGroupStateException {
+    GroupsV2Operations memoized = new GroupsV2Operations(clientZkOperations, executor, PARALLELISM);
+    List<Group>        history  = createHistory(groupSecretParams, 100, 20);
+
+    for (Group revision : history) {
+      DecryptedGroup fresh  = serialOperations().decryptGroup(revision);
+      DecryptedGroup cached = memoized.forGroup(groupSecretParams).decryptGroup(revision);
+
+      assertEquals(fresh, cached);
+    }
+  }
+
+  @Test
+  public void memoization_is_per_group() throws VerificationFailedException, InvalidGroupStateException, InvalidInputException {
+    GroupsV2Operations operations = new GroupsV2Operations(clientZkOperations);
+    Group              group      = createGroup(40, 0, 0, 1);
+
+    operations.forGroup(groupSecretParams).decryptGroup(group);
+
+    GroupSecretParams otherGroupSecretParams = GroupSecretParams.deriveFromMasterKey(new GroupMasterKey(Util.getSecretBytes(32)));
+    Group             otherGroup             = createGroup(otherGroupSecretParams, 40, 0, 0, 1);
+
+    assertEquals(new GroupsV2Operations(clientZkOperations).forGroup(otherGroupSecretParams).decryptGroup(otherGroup),
+                 operations.forGroup(otherGroupSecretParams).decryptGroup(otherGroup));
+  }
+
+  @Test
+  public void interrupt_while_waiting_finishes_decryption_on_calling_thread() throws Exception {
+    CountDownLatch  release = new CountDownLatch(1);
+    ExecutorService blocked = Executors.newFixedThreadPool(PARALLELISM);
+
+    try {
+      for (int i = 0; i < PARALLELISM; i++) {
+        blocked.execute(() -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        });
+      }
+
+      Group          group    = createGroup(300, 0, 0, 1);
+      DecryptedGroup serial   = serialOperations().decryptGroup(group);
+      DecryptedGroup parallel;
+      boolean        interrupted;
+
+      Thread.currentThread().interrupt();
+
+      try {
+        parallel = new GroupsV2Operations(clientZkOperations, blocked, PARALLELISM).forGroup(groupSecretParams).decryptGroup(group);
+      } finally {
+        interrupted = Thread.interrupted();
+      }
+
+      assertEquals(serial, parallel);
+      assertTrue(interrupted);
+    } finally {
+      release.countDown();
+      blocked.shutdownNow();
+    }
+  }
+
+  @Test
+  public void interrupt_mid_decrypt_does_not_fail() throws Exception {
+    Group                   group      = createGroup(600, 0, 0, 1);
+    DecryptedGroup          serial     = serialOperations().decryptGroup(group);
+    AtomicReference<Object> result     = new AtomicReference<>();
+    CountDownLatch          started    = new CountDownLatch(1);
+    Thread                  decrypting = new Thread(() -> {
+      started.countDown();
+      try {
+        result.set(parallelOperations().decryptGroup(group));
+      } catch (Throwable t) {
+        result.set(t);
+      }
+    });
+
+    decrypting.start();
+    started.await();
+
+    while (decrypting.isAlive()) {
+      decrypting.interrupt();
+      decrypting.join(5);
+    }
+
+    assertEquals(serial, result.get());
+  }
+
+  @Test
+  public void shut_down_executor_decrypts_on_calling_thread() throws VerificationFailedException, InvalidGroupStateException {
+    Group group = createGroup(300, 0, 0, 1);
+
+    executor.shutdownNow();
+
+    assertEquals(serialOperations().decryptGroup(group), parallelOperations().decryptGroup(group));
+  }
+
+  private GroupsV2Operations.GroupOperations serialOperations() {
+    return new GroupsV2Operations(clientZkOperations).forGroup(groupSecretParams);
+  }
+
+  private GroupsV2Operations.GroupOperations parallelOperations() {
+    return new GroupsV2Operations(clientZkOperations, executor, PARALLELISM).forGroup(groupSecretParams);
+  }
+
+  /**
+   * Each revision rotates the profile key of one member, leaving the rest untouched.
+   */
+  static List<Group> createHistory(GroupSecretParams groupSecretParams, int memberCount, int revisions) {
+    ClientZkGroupCipher cipher  = new ClientZkGroupCipher(groupSecretParams);
+    Group               group   = createGroup(groupSecretParams, memberCount, 0, 0, 0);
+    List<Group>         history = new ArrayList<>(revisions);
+
+    for (int revision = 1; revision <= revisions; revision++) {
+      int    index  = revision % memberCount;
+      Member member = group.getMembers(index);
+      UUID   uuid   = uuid(cipher, member.getUserId());
+
+      group = group.toBuilder()
+                   .setRevision(revision)
+                   .setMembers(index, member.toBuilder().setProfileKey(encryptProfileKey(cipher, uuid, newProfileKey())))
+                   .build();
+
+      history.add(group);
+    }
+
+    return history;
+  }
+
+  private Group createGroup(int members, int pending, int requesting, int revision) {
+    return createGroup(groupSecretParams, members, pending, requesting, revision);
+  }
+
+  private static Group createGroup(GroupSecretParams groupSecretParams, int members, int pending, int requesting, int revision) {
+    ClientZkGroupCipher cipher  = new ClientZkGroupCipher(groupSecretParams);
+    ByteString          inviter = encryptUuid(cipher, UUID.randomUUID());
+    Group.Builder       group   = Group.newBuilder().setRevision(revision);
+
+    for (int i = 0; i < members; i++) {
+      UUID uuid = UUID.randomUUID();
+
+      group.addMembers(Member.newBuilder()
+                             .setRole(i == 0 ? Member.Role.ADMINISTRATOR : Member.Role.DEFAULT)
+                             .setUserId(encryptUuid(cipher, uuid))
+                             .setProfileKey(encryptProfileKey(cipher, uuid, newProfileKey()))
+                             .setJoinedAtRevision(revision));
+    }
+
+    for (int i = 0; i < pending; i++) {
+      group.addPendingMembers(PendingMember.newBuilder()
+                                           .setAddedByUserId(inviter)
+                                           .setTimestamp(i)
+                                           .setMember(Member.newBuilder()
+                                                            .setRole(Member.Role.DEFAULT)
+                                                            .setUserId(encryptUuid(cipher, UUID.randomUUID()))));
+    }
+
+    for (int i = 0; i < requesting; i++) {
+      UUID uuid = UUID.randomUUID();
+
+      group.addRequestingMembers(RequestingMember.newBuilder()
+                                                 .setUserId(encryptUuid(cipher, uuid))
+                                                 .setProfileKey(encryptProfileKey(cipher, uuid, newProfileKey()))
+                                                 .setTimestamp(i));
+    }
+
+    return group.build();
+  }
+
+  private static ByteString encryptUuid(ClientZkGroupCipher cipher, UUID uuid) {
+    return ByteString.copyFrom(cipher.encryptUuid(uuid).serialize());
+  }
+
+  private static UUID uuid(ClientZkGroupCipher cipher, ByteString uuidCiphertext) {
+    try {
+      return cipher.decryptUuid(new UuidCiphertext(uuidCiphertext.toByteArray()));
+    } catch (InvalidInputException | VerificationFailedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static ByteString encryptProfileKey(ClientZkGroupCipher cipher, UUID uuid, ProfileKey profileKey) {
+    return ByteString.copyFrom(cipher.encryptProfileKey(profileKey, uuid).serialize());
+  }
+
+  private static ProfileKey newProfileKey() {
+    try {
+      return new ProfileKey(Util.getSecretBytes(32));
+    } catch (InvalidInputException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
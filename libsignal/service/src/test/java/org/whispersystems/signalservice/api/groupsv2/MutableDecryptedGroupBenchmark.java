@@ -0,0 +1,87 @@
+package org.whispersystems.signalservice.api.groupsv2;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.signal.storageservice.protos.groups.Member;
+import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.signal.storageservice.protos.groups.local.DecryptedGroupChange;
+import org.signal.storageservice.protos.groups.local.DecryptedMember;
+import org.signal.storageservice.protos.groups.local.DecryptedModifyMemberRole;
+import org.whispersystems.libsignal.logging.Log;
+import org.whispersystems.libsignal.logging.SignalProtocolLoggerProvider;
+import org.whispersystems.signalservice.api.util.UuidUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.whispersystems.signalservice.api.groupsv2.MutableDecryptedGroup_apply_Test.randomBytes;
+import static org.whispersystems.signalservice.api.groupsv2.ProtoTestUtils.member;
+
+/**
+ * Manual benchmark for replaying group changes with {@link MutableDecryptedGroup}.
+ */
+@Ignore("Benchmark, run manually")
+public final class MutableDecryptedGroupBenchmark {
+
+  private static final String TAG = MutableDecryptedGroupBenchmark.class.getSimpleName();
+
+  @BeforeClass
+  public static void setUpClass() {
+    SignalProtocolLoggerProvider.setProvider((priority, tag, message) -> System.out.println(tag + ": " + message));
+  }
+
+  /**
+   * Replays 500 revisions of a 1000 member group with {@link DecryptedGroupUtil} and with
+   * {@link MutableDecryptedGroup}, taking a snapshot after every revision as the state processor does.
+   */
+  @Test
+  public void apply_1000_members_500_revisions() throws NotAbleToApplyGroupV2ChangeException {
+    Random                 random = new Random(1);
+    DecryptedGroup.Builder start  = DecryptedGroup.newBuilder().setRevision(0);
+    List<ByteString>       uuids  = new ArrayList<>();
+
+    for (int i = 0; i < 1000; i++) {
+      UUID uuid = UUID.randomUUID();
+      uuids.add(UuidUtil.toByteString(uuid));
+      start.addMembers(member(uuid, randomBytes(random), 0));
+    }
+
+    List<DecryptedGroupChange> changes = new ArrayList<>();
+
+    for (int revision = 1; revision <= 500; revision++) {
+      ByteString uuid = uuids.get(random.nextInt(uuids.size()));
+      changes.add(DecryptedGroupChange.newBuilder()
+                                      .setRevision(revision)
+                                      .addModifiedProfileKeys(DecryptedMember.newBuilder().setUuid(uuid).setProfileKey(randomBytes(random)))
+                                      .addModifyMemberRoles(DecryptedModifyMemberRole.newBuilder().setUuid(uuid).setRole(Member.Role.ADMINISTRATOR))
+                                      .build());
+    }
+
+    DecryptedGroup baselineGroup = start.build();
+    long           baselineStart = System.nanoTime();
+    for (DecryptedGroupChange change : changes) {
+      baselineGroup = DecryptedGroupUtil.applyWithoutRevisionCheck(baselineGroup, change);
+    }
+    long baselineMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - baselineStart);
+
+    MutableDecryptedGroup mutable      = new MutableDecryptedGroup(start.build());
+    long                  mutableStart = System.nanoTime();
+    for (DecryptedGroupChange change : changes) {
+      mutable.apply(change);
+      mutable.toDecryptedGroup();
+    }
+    long mutableMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mutableStart);
+
+    assertEquals(baselineGroup, mutable.toDecryptedGroup());
+
+    Log.i(TAG, String.format(Locale.US, "DecryptedGroupUtil: %d ms, MutableDecryptedGroup: %d ms", baselineMillis, mutableMillis));
+  }
+}
@@ -0,0 +1,242 @@
+package org.whispersystems.signalservice.api.groupsv2;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Test;
+import org.signal.storageservice.protos.groups.AccessControl;
+import org.signal.storageservice.protos.groups.Member;
+import org.signal.storageservice.protos.groups.local.DecryptedApproveMember;
+import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.signal.storageservice.protos.groups.local.DecryptedGroupChange;
+import org.signal.storageservice.protos.groups.local.DecryptedMember;
+import org.signal.storageservice.protos.groups.local.DecryptedModifyMemberRole;
+import org.signal.storageservice.protos.groups.local.DecryptedPendingMemberRemoval;
+import org.signal.storageservice.protos.groups.local.DecryptedRequestingMember;
+import org.signal.storageservice.protos.groups.local.DecryptedString;
+import org.signal.storageservice.protos.groups.local.DecryptedTimer;
+import org.whispersystems.signalservice.api.util.UuidUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.whispersystems.signalservice.api.groupsv2.ProtoTestUtils.member;
+import static org.whispersystems.signalservice.api.groupsv2.ProtoTestUtils.pendingMember;
+import static org.whispersystems.signalservice.api.groupsv2.ProtoTestUtils.pendingMemberRemoval;
+
+public final class MutableDecryptedGroup_apply_Test {
+
+  @Test
+  public void apply_matches_DecryptedGroupUtil_over_random_history() {
+    for (long seed = 0; seed < 50; seed++) {
+      assertReplayMatches(new Random(seed), 30, 200);
+    }
+  }
+
+  @Test
+  public void failed_change_leaves_state_untouched() throws NotAbleToApplyGroupV2ChangeException {
+    UUID                  member1 = UUID.randomUUID();
+    UUID                  member2 = UUID.randomUUID();
+    DecryptedGroup        group   = DecryptedGroup.newBuilder()
+                                                  .setRevision(10)
+                                                  .addMembers(member(member1))
+                                                  .build();
+    MutableDecryptedGroup mutable = new MutableDecryptedGroup(group);
+
+    mutable.apply(DecryptedGroupChange.newBuilder().setRevision(11).setNewTitle(DecryptedString.newBuilder().setValue("Title")).build());
+
+    DecryptedGroup before = mutable.toDecryptedGroup();
+
+    try {
+      mutable.apply(DecryptedGroupChange.newBuilder()
+                                        .setRevision(12)
+                                        .addNewMembers(member(member2))
+                                        .addDeleteMembers(UuidUtil.toByteString(member1))
+                                        .addModifyMemberRoles(DecryptedModifyMemberRole.newBuilder()
+                                                                                       .setUuid(UuidUtil.toByteString(member1))
+                                                                                       .setRole(Member.Role.ADMINISTRATOR))
+                                        .build());
+      fail();
+    } catch (NotAbleToApplyGroupV2ChangeException e) {
+      // expected
+    }
+
+    assertSame(before, mutable.toDecryptedGroup());
+    assertEquals(11, mutable.getRevision());
+  }
+
+  @Test
+  public void snapshot_is_reused_until_next_change() throws NotAbleToApplyGroupV2ChangeException {
+    DecryptedGroup        group   = DecryptedGroup.newBuilder().setRevision(1).addMembers(member(UUID.randomUUID())).build();
+    MutableDecryptedGroup mutable = new MutableDecryptedGroup(group);
+
+    assertSame(group, mutable.toDecryptedGroup());
+
+    mutable.apply(DecryptedGroupChange.newBuilder().setRevision(2).build());
+
+    DecryptedGroup snapshot = mutable.toDecryptedGroup();
+
+    assertSame(snapshot, mutable.toDecryptedGroup());
+    assertEquals(2, snapshot.getRevision());
+  }
+
+  @Test
+  public void promoting_an_existing_member_duplicates_them_as_DecryptedGroupUtil_does() throws NotAbleToApplyGroupV2ChangeException {
+    UUID                 member1 = UUID.randomUUID();
+    UUID                 member2 = UUID.randomUUID();
+    DecryptedGroup       group   = DecryptedGroup.newBuilder()
+                                                 .setRevision(10)
+                                                 .addMembers(member(member1))
+                                                 .addPendingMembers(pendingMember(member1))
+                                                 .build();
+    DecryptedGroupChange promote = DecryptedGroupChange.newBuilder()
+                                                       .setRevision(11)
+                                                       .addPromotePendingMembers(member(member1))
+                                                       .build();
+    DecryptedGroupChange add     = DecryptedGroupChange.newBuilder()
+                                                       .setRevision(12)
+                                                       .addNewMembers(member(member2))
+                                                       .build();
+
+    MutableDecryptedGroup mutable = new MutableDecryptedGroup(group);
+    mutable.apply(promote);
+    mutable.apply(add);
+
+    DecryptedGroup expected = DecryptedGroupUtil.applyWithoutRevisionCheck(DecryptedGroupUtil.applyWithoutRevisionCheck(group, promote), add);
+
+    assertEquals(expected, mutable.toDecryptedGroup());
+  }
+
+  private static void assertReplayMatches(Random random, int universeSize, int revisions) {
+    List<UUID> universe = new ArrayList<>(universeSize);
+
+    for (int i = 0; i < universeSize; i++) {
+      universe.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+
+    DecryptedGroup.Builder initial = DecryptedGroup.newBuilder().setRevision(0);
+
+    for (int i = 0; i < universeSize / 3; i++) {
+      initial.addMembers(member(universe.get(i), randomBytes(random), 0));
+    }
+
+    DecryptedGroup        expected = initial.build();
+    MutableDecryptedGroup actual   = new MutableDecryptedGroup(expected);
+
+    for (int revision = 1; revision <= revisions; revision++) {
+      DecryptedGroupChange change = randomChange(random, universe, revision);
+
+      boolean expectedFailure = false;
+      boolean actualFailure   = false;
+
+      try {
+        expected = DecryptedGroupUtil.applyWithoutRevisionCheck(expected, change);
+      } catch (NotAbleToApplyGroupV2ChangeException e) {
+        expectedFailure = true;
+      }
+
+      try {
+        actual.apply(change);
+      } catch (NotAbleToApplyGroupV2ChangeException e) {
+        actualFailure = true;
+      }
+
+      assertEquals("Failure mismatch at revision " + revision, expectedFailure, actualFailure);
+      assertEquals("State mismatch at revision " + revision, expected, actual.toDecryptedGroup());
+    }
+  }
+
+  private static DecryptedGroupChange randomChange(Random random, List<UUID> universe, int revision) {
+    DecryptedGroupChange.Builder change = DecryptedGroupChange.newBuilder().setRevision(revision);
+
+    for (int i = random.nextInt(3); i > 0; i--) {
+      change.addNewMembers(member(pick(random, universe), randomBytes(random), revision));
+    }
+    for (int i = random.nextInt(3); i > 0; i--) {
+      change.addDeleteMembers(UuidUtil.toByteString(pick(random, universe)));
+    }
+    if (random.nextInt(4) == 0) {
+      change.addModifyMemberRoles(DecryptedModifyMemberRole.newBuilder()
+                                                           .setUuid(UuidUtil.toByteString(pick(random, universe)))
+                                                           .setRole(randomRole(random)));
+    }
+    if (random.nextInt(4) == 0) {
+      change.addModifiedProfileKeys(DecryptedMember.newBuilder()
+                                                   .setUuid(UuidUtil.toByteString(pick(random, universe)))
+                                                   .setProfileKey(randomBytes(random)));
+    }
+    for (int i = random.nextInt(3); i > 0; i--) {
+      change.addNewPendingMembers(pendingMember(pick(random, universe)));
+    }
+    if (random.nextBoolean()) {
+      DecryptedPendingMemberRemoval removal = pendingMemberRemoval(pick(random, universe));
+      change.addDeletePendingMembers(removal);
+    }
+    if (random.nextInt(4) == 0) {
+      change.addPromotePendingMembers(member(pick(random, universe), randomBytes(random), revision));
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewTitle(DecryptedString.newBuilder().setValue("Title " + revision));
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewDescription(DecryptedString.newBuilder().setValue("Description " + revision));
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewAvatar(DecryptedString.newBuilder().setValue("Avatar " + revision));
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewTimer(DecryptedTimer.newBuilder().setDuration(random.nextInt(100)));
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewAttributeAccess(AccessControl.AccessRequired.ADMINISTRATOR);
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewMemberAccess(AccessControl.AccessRequired.MEMBER);
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewInviteLinkAccess(AccessControl.AccessRequired.ANY);
+    }
+    for (int i = random.nextInt(3); i > 0; i--) {
+      change.addNewRequestingMembers(DecryptedRequestingMember.newBuilder()
+                                                              .setUuid(UuidUtil.toByteString(pick(random, universe)))
+                                                              .setProfileKey(randomBytes(random)));
+    }
+    if (random.nextBoolean()) {
+      change.addDeleteRequestingMembers(UuidUtil.toByteString(pick(random, universe)));
+    }
+    if (random.nextInt(3) == 0) {
+      change.addPromoteRequestingMembers(DecryptedApproveMember.newBuilder()
+                                                               .setUuid(UuidUtil.toByteString(pick(random, universe)))
+                                                               .setRole(randomRole(random)));
+    }
+    if (random.nextInt(5) == 0) {
+      change.setNewInviteLinkPassword(randomBytes(random));
+    }
+
+    return change.build();
+  }
+
+  private static UUID pick(Random random, List<UUID> universe) {
+    return universe.get(random.nextInt(universe.size()));
+  }
+
+  private static Member.Role randomRole(Random random) {
+    switch (random.nextInt(10)) {
+      case 0:  return Member.Role.UNKNOWN;
+      case 1:
+      case 2:
+      case 3:  return Member.Role.ADMINISTRATOR;
+      default: return Member.Role.DEFAULT;
+    }
+  }
+
+  static ByteString randomBytes(Random random) {
+    byte[] bytes = new byte[16];
+    random.nextBytes(bytes);
+    return ByteString.copyFrom(bytes);
+  }
+}
@@ -0,0 +1,107 @@
+package org.whispersystems.signalservice.internal.push;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.whispersystems.libsignal.logging.Log;
+import org.whispersystems.libsignal.logging.SignalProtocolLoggerProvider;
+import org.whispersystems.signalservice.internal.configuration.SignalConnectionPoolConfiguration;
+import org.whispersystems.signalservice.internal.push.MessageQueueDrainerTest.HttpSource;
+import org.whispersystems.signalservice.internal.push.MessageQueueDrainerTest.RecordingSink;
+import org.whispersystems.signalservice.internal.push.MessageQueueDrainerTest.StubQueue;
+import org.whispersystems.signalservice.internal.util.JsonUtil;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.whispersystems.signalservice.internal.push.MessageQueueDrainerTest.acknowledgement;
+
+/**
+ * Manual benchmarks for {@link MessageQueueDrainer}.
+ */
+@Ignore("Benchmarks, run manually")
+public final class MessageQueueDrainerBenchmark {
+
+  private static final String TAG = MessageQueueDrainerBenchmark.class.getSimpleName();
+
+  private MockWebServer server;
+  private StubQueue     queue;
+  private OkHttpClient  client;
+
+  @BeforeClass
+  public static void setUpClass() {
+    SignalProtocolLoggerProvider.setProvider((priority, tag, message) -> System.out.println(tag + ": " + message));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    queue  = new StubQueue();
+    server = new MockWebServer();
+    server.setDispatcher(queue);
+    server.start();
+
+    client = new OkHttpClient.Builder()
+                             .connectionPool(SignalConnectionPoolConfiguration.DEFAULT.createConnectionPool())
+                             .dispatcher(SignalConnectionPoolConfiguration.DEFAULT.createDispatcher())
+                             .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  /**
+   * Drains 300 envelopes from a stub server that takes 10ms to answer each request, both the way
+   * messages used to be retrieved, with a blocking acknowledgement per envelope, and with
+   * {@link MessageQueueDrainer}.
+   */
+  @Test
+  public void drain_with_latency() throws IOException {
+    int envelopes = 300;
+
+    queue.latencyMs = 10;
+
+    queue.fill(envelopes);
+    long sequentialStart = System.nanoTime();
+    drainSequentially();
+    long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sequentialStart);
+
+    queue.fill(envelopes);
+    long pipelinedStart = System.nanoTime();
+    new MessageQueueDrainer(new HttpSource(client, server)).drain(new RecordingSink());
+    long pipelinedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pipelinedStart);
+
+    Log.i(TAG, String.format(Locale.US, "Blocking acks: %d ms for %d envelopes", sequentialMillis, envelopes));
+    Log.i(TAG, String.format(Locale.US, "Pipelined acks: %d ms for %d envelopes", pipelinedMillis, envelopes));
+  }
+
+  /**
+   * The previous approach: buffer and parse a single page, then acknowledge one envelope at a time.
+   */
+  private void drainSequentially() throws IOException {
+    List<SignalServiceEnvelopeEntity> page;
+
+    do {
+      try (Response response = client.newCall(new Request.Builder().url(server.url("/v1/messages/")).build()).execute()) {
+        page = JsonUtil.fromJson(response.body().string(), SignalServiceEnvelopeEntityList.class).getMessages();
+      }
+
+      for (SignalServiceEnvelopeEntity entity : page) {
+        try (Response response = client.newCall(acknowledgement(server, entity)).execute()) {
+          assertEquals(204, response.code());
+        }
+      }
+    } while (!page.isEmpty());
+  }
+}
@@ -0,0 +1,324 @@
+package org.whispersystems.signalservice.internal.push;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.whispersystems.signalservice.internal.configuration.SignalConnectionPoolConfiguration;
+import org.whispersystems.signalservice.internal.util.JsonUtil;
+import org.whispersystems.signalservice.internal.util.concurrent.ListenableFuture;
+import org.whispersystems.signalservice.internal.util.concurrent.SettableFuture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class MessageQueueDrainerTest {
+
+  private static final int PAGE_SIZE = 100;
+
+  private MockWebServer server;
+  private StubQueue     queue;
+  private OkHttpClient  client;
+
+  @Before
+  public void setUp() throws IOException {
+    queue  = new StubQueue();
+    server = new MockWebServer();
+    server.setDispatcher(queue);
+    server.start();
+
+    client = new OkHttpClient.Builder()
+                             .connectionPool(SignalConnectionPoolConfiguration.DEFAULT.createConnectionPool())
+                             .dispatcher(SignalConnectionPoolConfiguration.DEFAULT.createDispatcher())
+                             .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  public void drain_fetchesPagesUntilQueueIsEmpty() throws IOException {
+    queue.fill(250);
+
+    RecordingSink sink  = new RecordingSink();
+    int           count = new MessageQueueDrainer(new HttpSource(client, server)).drain(sink);
+
+    assertEquals(250, count);
+    assertEquals(250, sink.messages.size());
+    assertEquals(0, queue.size());
+    assertEquals(3, queue.pagesServed);
+  }
+
+  @Test
+  public void drain_emptyQueue() throws IOException {
+    RecordingSink sink = new RecordingSink();
+
+    assertEquals(0, new MessageQueueDrainer(new HttpSource(client, server)).drain(sink));
+    assertEquals(0, sink.flushes);
+    assertEquals(1, queue.pagesServed);
+  }
+
+  @Test
+  public void drain_acknowledgesOnlyWhatWasHandedOverBeforeFlush() throws IOException {
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    FakeSource   source = new FakeSource(events, entities(7), 7);
+
+    new MessageQueueDrainer(source, 3).drain(new MessageQueueDrainer.Sink() {
+      @Override
+      public void onMessage(SignalServiceEnvelopeEntity entity, long serverDeliveredTimestamp) {
+        events.add("message " + entity.getServerUuid());
+      }
+
+      @Override
+      public void flush() {
+        events.add("flush");
+      }
+    });
+
+    assertEquals(7, source.acknowledged.size());
+
+    for (int i = 0; i < 7; i++) {
+      int message = events.indexOf("message " + i);
+      int ack     = events.indexOf("ack " + i);
+      int flush   = events.subList(message, events.size()).indexOf("flush") + message;
+
+      assertTrue("Ack for " + i + " came before a flush", flush > message && flush < ack);
+    }
+  }
+
+  @Test
+  public void drain_waitsForAcknowledgementsBeforeNextPage() throws IOException {
+    FakeSource source = new FakeSource(new ArrayList<>(), entities(10), 4);
+    source.ackDelayMs = 20;
+
+    assertEquals(10, new MessageQueueDrainer(source, 2).drain(new RecordingSink()));
+    assertEquals(3, source.pagesServed);
+  }
+
+  @Test
+  public void drain_failedAcknowledgement_stopsBeforeNextPage() {
+    queue.fill(150);
+    queue.failAcks = true;
+
+    try {
+      new MessageQueueDrainer(new HttpSource(client, server)).drain(new RecordingSink());
+      fail();
+    } catch (IOException e) {
+      assertEquals(1, queue.pagesServed);
+      assertEquals(150, queue.size());
+    }
+  }
+
+  static Request acknowledgement(MockWebServer server, SignalServiceEnvelopeEntity entity) {
+    return new Request.Builder().url(server.url("/v1/messages/uuid/" + entity.getServerUuid())).delete().build();
+  }
+
+  private static List<SignalServiceEnvelopeEntity> entities(int count) throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      entities.add(JsonUtil.fromJson(entityJson(i), SignalServiceEnvelopeEntity.class));
+    }
+
+    return entities;
+  }
+
+  private static String entityJson(int i) {
+    return "{\"type\":1,\"timestamp\":" + i + ",\"guid\":\"" + i + "\",\"content\":\"AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=\"}";
+  }
+
+  static final class HttpSource implements MessageQueueDrainer.Source {
+
+    private final OkHttpClient  client;
+    private final MockWebServer server;
+
+    HttpSource(OkHttpClient client, MockWebServer server) {
+      this.client = client;
+      this.server = server;
+    }
+
+    @Override
+    public boolean getMessages(MessageQueueDrainer.EnvelopeConsumer consumer) throws IOException {
+      try (Response response = client.newCall(new Request.Builder().url(server.url("/v1/messages/")).build()).execute();
+           ResponseBody body = response.body())
+      {
+        return SignalServiceEnvelopeEntityList.read(JsonUtil.createParser(body.byteStream()), entity -> consumer.accept(entity, 0));
+      }
+    }
+
+    @Override
+    public ListenableFuture<?> acknowledge(SignalServiceEnvelopeEntity entity) {
+      SettableFuture<Void> future = new SettableFuture<>();
+
+      client.newCall(acknowledgement(server, entity)).enqueue(new Callback() {
+        @Override
+        public void onFailure(Call call, IOException e) {
+          future.setException(e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+          response.close();
+
+          if (response.isSuccessful()) future.set(null);
+          else                         future.setException(new IOException("Bad response: " + response.code()));
+        }
+      });
+
+      return future;
+    }
+  }
+
+  /**
+   * Serves the queue a page at a time, the way the server does: unacknowledged envelopes stay at
+   * the front of the queue and will be served again.
+   */
+  static final class StubQueue extends Dispatcher {
+
+    private final List<Integer> queued = new LinkedList<>();
+
+    volatile long    latencyMs;
+    volatile boolean failAcks;
+    volatile int     pagesServed;
+
+    synchronized void fill(int count) {
+      for (int i = 0; i < count; i++) {
+        queued.add(i);
+      }
+    }
+
+    synchronized int size() {
+      return queued.size();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      MockResponse response = respond(request);
+
+      return latencyMs > 0 ? response.setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS) : response;
+    }
+
+    private synchronized MockResponse respond(RecordedRequest request) {
+      if ("GET".equals(request.getMethod()) && "/v1/messages/".equals(request.getPath())) {
+        StringBuilder body = new StringBuilder("{\"messages\":[");
+        int           page = Math.min(PAGE_SIZE, queued.size());
+
+        for (int i = 0; i < page; i++) {
+          if (i > 0) body.append(',');
+          body.append(entityJson(queued.get(i)));
+        }
+
+        body.append("],\"more\":").append(queued.size() > page).append('}');
+        pagesServed++;
+
+        return new MockResponse().setBody(body.toString());
+      } else if ("DELETE".equals(request.getMethod()) && request.getPath().startsWith("/v1/messages/uuid/")) {
+        if (failAcks) {
+          return new MockResponse().setResponseCode(500);
+        }
+
+        queued.remove(Integer.valueOf(request.getPath().substring("/v1/messages/uuid/".length())));
+        return new MockResponse().setResponseCode(204);
+      } else {
+        return new MockResponse().setResponseCode(404);
+      }
+    }
+  }
+
+  /**
+   * Serves fixed size pages without a network, and checks that a page is never requested while
+   * acknowledgements for the previous one are still outstanding.
+   */
+  private static final class FakeSource implements MessageQueueDrainer.Source {
+
+    private final List<String>                      events;
+    private final List<SignalServiceEnvelopeEntity> queued;
+    private final int                               pageSize;
+    private final List<SettableFuture<Void>>        outstanding  = new ArrayList<>();
+    private final List<String>                      acknowledged = Collections.synchronizedList(new ArrayList<>());
+
+    private long ackDelayMs;
+    private int  pagesServed;
+
+    private FakeSource(List<String> events, List<SignalServiceEnvelopeEntity> queued, int pageSize) {
+      this.events   = events;
+      this.queued   = new ArrayList<>(queued);
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean getMessages(MessageQueueDrainer.EnvelopeConsumer consumer) throws IOException {
+      for (SettableFuture<Void> future : outstanding) {
+        assertTrue("Requested a page with acknowledgements outstanding", future.isDone());
+      }
+
+      List<SignalServiceEnvelopeEntity> page = new ArrayList<>(queued.subList(0, Math.min(pageSize, queued.size())));
+
+      queued.removeAll(page);
+      pagesServed++;
+
+      for (SignalServiceEnvelopeEntity entity : page) {
+        consumer.accept(entity, 0);
+      }
+
+      return !queued.isEmpty();
+    }
+
+    @Override
+    public ListenableFuture<?> acknowledge(SignalServiceEnvelopeEntity entity) {
+      SettableFuture<Void> future = new SettableFuture<>();
+      outstanding.add(future);
+      events.add("ack " + entity.getServerUuid());
+
+      new Thread(() -> {
+        try {
+          Thread.sleep(ackDelayMs);
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+
+        acknowledged.add(entity.getServerUuid());
+        future.set(null);
+      }).start();
+
+      return future;
+    }
+  }
+
+  static final class RecordingSink implements MessageQueueDrainer.Sink {
+
+    private final List<SignalServiceEnvelopeEntity> messages = new ArrayList<>();
+
+    private int flushes;
+
+    @Override
+    public void onMessage(SignalServiceEnvelopeEntity entity, long serverDeliveredTimestamp) {
+      messages.add(entity);
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+  }
+}
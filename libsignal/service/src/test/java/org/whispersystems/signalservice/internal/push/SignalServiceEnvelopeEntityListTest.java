@@ -0,0 +1,67 @@
+package org.whispersystems.signalservice.internal.push;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import org.junit.Test;
+import org.whispersystems.signalservice.internal.util.JsonUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class SignalServiceEnvelopeEntityListTest {
+
+  @Test
+  public void read_handsOverEachMessage() throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new ArrayList<>();
+
+    boolean more = read("{\"messages\":[{\"type\":1,\"timestamp\":100,\"guid\":\"a\",\"content\":\"AQI=\"},{\"type\":3,\"timestamp\":200,\"source\":\"+14151231234\",\"sourceDevice\":2}],\"more\":true}", entities);
+
+    assertTrue(more);
+    assertEquals(2, entities.size());
+    assertEquals(100, entities.get(0).getTimestamp());
+    assertEquals("a", entities.get(0).getServerUuid());
+    assertEquals(2, entities.get(0).getContent().length);
+    assertEquals("+14151231234", entities.get(1).getSourceE164());
+    assertEquals(2, entities.get(1).getSourceDevice());
+  }
+
+  @Test
+  public void read_skipsUnknownFields_inAnyOrder() throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new ArrayList<>();
+
+    boolean more = read("{\"more\":true,\"extra\":{\"messages\":[{\"timestamp\":1}]},\"messages\":[{\"timestamp\":2,\"unknown\":[1,2]}],\"trailing\":[]}", entities);
+
+    assertTrue(more);
+    assertEquals(1, entities.size());
+    assertEquals(2, entities.get(0).getTimestamp());
+  }
+
+  @Test
+  public void read_missingMore_isFalse() throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new ArrayList<>();
+
+    assertFalse(read("{\"messages\":[]}", entities));
+    assertTrue(entities.isEmpty());
+  }
+
+  @Test(expected = JsonProcessingException.class)
+  public void read_notAnObject() throws IOException {
+    read("[]", new ArrayList<>());
+  }
+
+  @Test(expected = JsonProcessingException.class)
+  public void read_truncated() throws IOException {
+    read("{\"messages\":[{\"timestamp\":1},{\"timest", new ArrayList<>());
+  }
+
+  private static boolean read(String json, List<SignalServiceEnvelopeEntity> entities) throws IOException {
+    return SignalServiceEnvelopeEntityList.read(JsonUtil.createParser(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))), entities::add);
+  }
+}
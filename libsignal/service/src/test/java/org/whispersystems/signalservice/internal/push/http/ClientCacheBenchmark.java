@@ -0,0 +1,111 @@
+package org.whispersystems.signalservice.internal.push.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.whispersystems.libsignal.logging.Log;
+import org.whispersystems.libsignal.logging.SignalProtocolLoggerProvider;
+import org.whispersystems.signalservice.internal.configuration.SignalConnectionPoolConfiguration;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Manual benchmark for {@link ClientCache}.
+ */
+@Ignore("Benchmark, run manually")
+public final class ClientCacheBenchmark {
+
+  private static final String TAG = ClientCacheBenchmark.class.getSimpleName();
+
+  private static final int REQUESTS = 2000;
+
+  private MockWebServer     server;
+  private ConnectionMetrics metrics;
+  private OkHttpClient      baseClient;
+
+  @BeforeClass
+  public static void setUpClass() {
+    SignalProtocolLoggerProvider.setProvider((priority, tag, message) -> System.out.println(tag + ": " + message));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().setBody("ok");
+      }
+    });
+    server.setServerSocketFactory(new ClientCacheTest.NoDelayServerSocketFactory());
+    server.start();
+
+    metrics    = new ConnectionMetrics();
+    baseClient = new OkHttpClient.Builder()
+                                 .connectionPool(SignalConnectionPoolConfiguration.DEFAULT.createConnectionPool())
+                                 .dispatcher(SignalConnectionPoolConfiguration.DEFAULT.createDispatcher())
+                                 .eventListenerFactory(metrics)
+                                 .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  /**
+   * Sends the same requests against a local server with a client built per request, as request
+   * paths used to, and with the cached clients, and reports requests per second for each.
+   */
+  @Test
+  public void requests_per_second() throws IOException {
+    ClientCache cache = new ClientCache(baseClient);
+
+    for (int i = 0; i < 200; i++) {
+      execute(cache.get(30_000), "/v1/warmup");
+    }
+
+    long perRequestStart = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      execute(baseClient.newBuilder()
+                        .connectTimeout(30_000, TimeUnit.MILLISECONDS)
+                        .readTimeout(30_000, TimeUnit.MILLISECONDS)
+                        .build(), "/v1/per-request");
+    }
+    long perRequestNanos = System.nanoTime() - perRequestStart;
+
+    long cachedStart = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      execute(cache.get(30_000), "/v1/cached");
+    }
+    long cachedNanos = System.nanoTime() - cachedStart;
+
+    Log.i(TAG, String.format(Locale.US, "Per-request clients: %.0f requests/s, cached clients: %.0f requests/s", requestsPerSecond(perRequestNanos), requestsPerSecond(cachedNanos)));
+    Log.i(TAG, String.valueOf(metrics.getSnapshot()));
+  }
+
+  private void execute(OkHttpClient client, String path) throws IOException {
+    try (Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute()) {
+      assertEquals(200, response.code());
+      response.body().string();
+    }
+  }
+
+  private static double requestsPerSecond(long nanos) {
+    return REQUESTS / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+}
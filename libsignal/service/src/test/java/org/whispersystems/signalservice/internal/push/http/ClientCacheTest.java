@@ -0,0 +1,174 @@
+package org.whispersystems.signalservice.internal.push.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.whispersystems.signalservice.internal.configuration.SignalConnectionPoolConfiguration;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public final class ClientCacheTest {
+
+  private static final int REUSE_TEST_REQUESTS = 100;
+
+  private MockWebServer     server;
+  private ConnectionMetrics metrics;
+  private OkHttpClient      baseClient;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().setBody("ok");
+      }
+    });
+    server.setServerSocketFactory(new NoDelayServerSocketFactory());
+    server.start();
+
+    metrics    = new ConnectionMetrics();
+    baseClient = new OkHttpClient.Builder()
+                                 .connectionPool(SignalConnectionPoolConfiguration.DEFAULT.createConnectionPool())
+                                 .dispatcher(SignalConnectionPoolConfiguration.DEFAULT.createDispatcher())
+                                 .eventListenerFactory(metrics)
+                                 .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  public void get_sameConfiguration_returnsSameClient() {
+    ClientCache cache = new ClientCache(baseClient);
+
+    assertSame(cache.get(30_000), cache.get(30_000));
+    assertSame(cache.get(30_000, false, true), cache.get(30_000, false, true));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void get_differentConfiguration_returnsDifferentClients() {
+    ClientCache cache = new ClientCache(baseClient);
+
+    OkHttpClient defaults    = cache.get(30_000);
+    OkHttpClient noRetry     = cache.get(30_000, false, true);
+    OkHttpClient noRedirects = cache.get(30_000, true, false);
+    OkHttpClient longer      = cache.get(60_000);
+
+    assertNotSame(defaults, noRetry);
+    assertNotSame(defaults, noRedirects);
+    assertNotSame(defaults, longer);
+    assertEquals(60_000, longer.readTimeoutMillis());
+    assertEquals(false, noRetry.retryOnConnectionFailure());
+    assertEquals(false, noRedirects.followRedirects());
+  }
+
+  @Test
+  public void get_derivedClients_shareConnectionPoolAndDispatcher() {
+    ClientCache  cache   = new ClientCache(baseClient);
+    OkHttpClient derived = cache.get(30_000, false, false);
+
+    assertSame(baseClient.connectionPool(), derived.connectionPool());
+    assertSame(baseClient.dispatcher(), derived.dispatcher());
+  }
+
+  @Test
+  public void metrics_recordLatencyAndConnectionReusePerEndpoint() throws IOException {
+    ClientCache cache = new ClientCache(baseClient);
+
+    for (int i = 0; i < 10; i++) {
+      execute(cache.get(30_000), "/v1/profile/" + i);
+    }
+
+    Map<String, ConnectionMetrics.Snapshot> snapshot = metrics.getSnapshot();
+    ConnectionMetrics.Snapshot              profile  = snapshot.get(server.getHostName() + " GET /v1/profile");
+
+    assertEquals(1, snapshot.size());
+    assertEquals(10, profile.getRequestCount());
+    assertEquals(0, profile.getFailureCount());
+    assertEquals(1, profile.getConnectionsOpened());
+    assertEquals(9, profile.getConnectionsReused());
+  }
+
+  @Test
+  public void cachedClients_reuseConnectionsAcrossManyRequests() throws IOException {
+    ClientCache cache = new ClientCache(baseClient);
+
+    execute(cache.get(30_000), "/v1/warmup");
+
+    for (int i = 0; i < REUSE_TEST_REQUESTS; i++) {
+      execute(cache.get(30_000), "/v1/cached");
+      execute(cache.get(30_000, false, true), "/v1/cached");
+    }
+
+    ConnectionMetrics.Snapshot cached = metrics.getSnapshot().get(server.getHostName() + " GET /v1/cached");
+
+    assertEquals(2, cache.size());
+    assertEquals(REUSE_TEST_REQUESTS * 2, cached.getRequestCount());
+    assertEquals(0, cached.getConnectionsOpened());
+    assertEquals(REUSE_TEST_REQUESTS * 2, cached.getConnectionsReused());
+  }
+
+  private void execute(OkHttpClient client, String path) throws IOException {
+    Request request = new Request.Builder().url(server.url(path)).build();
+
+    try (Response response = client.newCall(request).execute()) {
+      assertEquals(200, response.code());
+      response.body().string();
+    }
+  }
+
+  /**
+   * Disables Nagle's algorithm on accepted sockets, otherwise loopback round trips are dominated
+   * by delayed ACKs and the tests spend most of their time waiting on the TCP stack.
+   */
+  static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+      return new ServerSocket() {
+        @Override
+        public Socket accept() throws IOException {
+          Socket socket = super.accept();
+          socket.setTcpNoDelay(true);
+          return socket;
+        }
+      };
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog, InetAddress address) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.whispersystems.signalservice.internal.push.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ConnectionMetricsTest {
+
+  private MockWebServer     server;
+  private ConnectionMetrics metrics;
+  private OkHttpClient      client;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().setBody("ok");
+      }
+    });
+    server.setServerSocketFactory(new ClientCacheTest.NoDelayServerSocketFactory());
+    server.start();
+
+    metrics = new ConnectionMetrics();
+    client  = new OkHttpClient.Builder().eventListenerFactory(metrics).build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  public void endpointKey_keepsNamedSegments() {
+    assertEquals("chat.signal.org GET /v1/profile", key("GET", "https://chat.signal.org/v1/profile/abc"));
+    assertEquals("chat.signal.org PUT /v2/keys", key("PUT", "https://chat.signal.org/v2/keys"));
+    assertEquals("chat.signal.org GET /v1/keep_alive", key("GET", "https://chat.signal.org/v1/keep_alive"));
+  }
+
+  @Test
+  public void endpointKey_collapsesIdentifiers() {
+    assertEquals("cdn.signal.org GET /attachments/*", key("GET", "https://cdn.signal.org/attachments/1234567890123"));
+    assertEquals("cdn2.signal.org GET /attachments/*", key("GET", "https://cdn2.signal.org/attachments/vDQQ8Yy0mGc3WnYSaT1f"));
+    assertEquals("cdn.signal.org GET /stickers/*", key("GET", "https://cdn.signal.org/stickers/a8b7c6d5e4f3a2b1/manifest.proto"));
+  }
+
+  @Test
+  public void endpointKey_noPath() {
+    assertEquals("chat.signal.org GET /", key("GET", "https://chat.signal.org/"));
+  }
+
+  @Test
+  public void attachmentDownloads_shareOneEndpoint() throws IOException {
+    for (int i = 0; i < 20; i++) {
+      execute("/attachments/" + (1_000_000 + i));
+    }
+
+    Map<String, ConnectionMetrics.Snapshot> snapshot = metrics.getSnapshot();
+
+    assertEquals(1, snapshot.size());
+    assertEquals(20, snapshot.get(server.getHostName() + " GET /attachments/*").getRequestCount());
+  }
+
+  @Test
+  public void endpoints_overLimit_countedUnderHostAndMethod() throws IOException {
+    int endpoints = 200;
+
+    for (int i = 0; i < endpoints; i++) {
+      execute("/v1/" + letters(i));
+    }
+
+    Map<String, ConnectionMetrics.Snapshot> snapshot = metrics.getSnapshot();
+    ConnectionMetrics.Snapshot              overflow = snapshot.get(server.getHostName() + " GET *");
+    long                                    total    = 0;
+
+    for (ConnectionMetrics.Snapshot endpoint : snapshot.values()) {
+      total += endpoint.getRequestCount();
+    }
+
+    assertTrue(snapshot.size() <= 129);
+    assertTrue(overflow.getRequestCount() > 0);
+    assertEquals(endpoints, total);
+  }
+
+  private void execute(String path) throws IOException {
+    try (Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute()) {
+      assertEquals(200, response.code());
+      response.body().string();
+    }
+  }
+
+  private static String key(String method, String url) {
+    RequestBody body = "GET".equals(method) ? null : RequestBody.create(null, new byte[0]);
+
+    return ConnectionMetrics.endpointKey(new Request.Builder().url(url).method(method, body).build());
+  }
+
+  private static String letters(int value) {
+    StringBuilder builder = new StringBuilder();
+
+    do {
+      builder.append((char) ('a' + value % 26));
+      value /= 26;
+    } while (value > 0);
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,70 @@
+package org.signal.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers the keys of rows at positions that have already been loaded, so that a
+ * {@link PagedDataSource} can seek to a page from the nearest known row (keyset pagination) rather
+ * than having its database build and throw away every row before the page with an offset.
+ *
+ * Positions shift whenever the underlying data changes, so the anchors must be cleared whenever the
+ * data is invalidated. {@link PagedDataSource#size()} is called at the start of every invalidation
+ * cycle, which makes it a convenient place to do that. Loads that were started before a clear can't
+ * add stale anchors afterwards, as long as they pass along the version they read at the start.
+ */
+public final class PageAnchors<K> {
+
+  private final TreeMap<Integer, K> anchors = new TreeMap<>();
+
+  private long version;
+
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return The anchor with the greatest position that is less than or equal to the one provided,
+   *         or null if there isn't one.
+   */
+  public synchronized @Nullable Anchor<K> floor(int position) {
+    Map.Entry<Integer, K> entry = anchors.floorEntry(position);
+    return entry != null ? new Anchor<>(entry.getKey(), entry.getValue()) : null;
+  }
+
+  /**
+   * Records the key of the row at the given position, unless the anchors have been cleared since
+   * {@code version} was read.
+   */
+  public synchronized void put(long version, int position, @NonNull K key) {
+    if (version == this.version) {
+      anchors.put(position, key);
+    }
+  }
+
+  public synchronized void clear() {
+    anchors.clear();
+    version++;
+  }
+
+  public static final class Anchor<K> {
+    private final int position;
+    private final K   key;
+
+    private Anchor(int position, @NonNull K key) {
+      this.position = position;
+      this.key      = key;
+    }
+
+    public int getPosition() {
+      return position;
+    }
+
+    public @NonNull K getKey() {
+      return key;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package org.signal.paging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public final class PageAnchorsTest {
+
+  private final PageAnchors<String> anchors = new PageAnchors<>();
+
+  @Test
+  public void floor_empty() {
+    assertNull(anchors.floor(10));
+  }
+
+  @Test
+  public void floor_returnsNearestAnchorAtOrBeforePosition() {
+    long version = anchors.getVersion();
+
+    anchors.put(version, 49, "a");
+    anchors.put(version, 99, "b");
+
+    assertNull(anchors.floor(48));
+    assertEquals("a", anchors.floor(49).getKey());
+    assertEquals(49, anchors.floor(98).getPosition());
+    assertEquals("b", anchors.floor(99).getKey());
+    assertEquals(99, anchors.floor(10_000).getPosition());
+  }
+
+  @Test
+  public void clear_removesAnchors() {
+    anchors.put(anchors.getVersion(), 49, "a");
+    anchors.clear();
+
+    assertNull(anchors.floor(49));
+  }
+
+  @Test
+  public void put_ignoredIfClearedSinceVersionWasRead() {
+    long version = anchors.getVersion();
+
+    anchors.clear();
+    anchors.put(version, 49, "stale");
+
+    assertNull(anchors.floor(49));
+  }
+}